@@ -16,6 +16,8 @@
  */
 package org.aksw.palmetto;
 
+import org.aksw.palmetto.corpus.CorpusVocabulary;
+
 /**
  * A coherence measure calculates the coherence of a given set of top word sets.
  * 
@@ -34,6 +36,27 @@ public interface Coherence {
      */
     public double[] calculateCoherences(String[][] wordsets);
 
+    /**
+     * Calculates the coherence for the given set of top word sets. The word
+     * sets consist of the ids of the
+     * given {@link CorpusVocabulary} of the corpus, i.e., callers that already
+     * work with word ids do not have to create strings. The ids are only valid
+     * as long as the vocabulary they have been taken from is current. After
+     * the corpus adapter has been reopened, the ids have to be taken from the
+     * new vocabulary.
+     * 
+     * @param wordsets
+     *            set of topic top words given as word ids
+     * @param vocabulary
+     *            the vocabulary the word ids have been taken from
+     * @return a double array containing the coherences for the given top word
+     *         sets.
+     * @throws IllegalArgumentException
+     *             if the vocabulary is not the current vocabulary of the
+     *             corpus (see {@link CorpusVocabulary#isCurrent(org.aksw.palmetto.corpus.CorpusAdapter)})
+     */
+    public double[] calculateCoherences(int[][] wordsets, CorpusVocabulary vocabulary);
+
     /**
      * Returns the name of the coherence.
      * 
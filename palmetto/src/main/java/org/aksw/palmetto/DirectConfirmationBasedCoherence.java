@@ -18,6 +18,7 @@ package org.aksw.palmetto;
 
 import org.aksw.palmetto.aggregation.Aggregation;
 import org.aksw.palmetto.calculations.direct.DirectConfirmationMeasure;
+import org.aksw.palmetto.corpus.CorpusVocabulary;
 import org.aksw.palmetto.data.SegmentationDefinition;
 import org.aksw.palmetto.data.SubsetProbabilities;
 import org.aksw.palmetto.prob.ProbabilityEstimator;
@@ -84,9 +85,22 @@ public class DirectConfirmationBasedCoherence implements Coherence {
         }
 
         // get the probabilities
-        SubsetProbabilities probabilities[] = probEstimator.getProbabilities(wordsets, definitions);
-        definitions = null;
+        return calculateCoherences(probEstimator.getProbabilities(wordsets, definitions));
+    }
+
+    @Override
+    public double[] calculateCoherences(int[][] wordsets, CorpusVocabulary vocabulary) {
+        // create subset definitions
+        SegmentationDefinition definitions[] = new SegmentationDefinition[wordsets.length];
+        for (int i = 0; i < definitions.length; i++) {
+            definitions[i] = segmentation.getSubsetDefinition(wordsets[i].length);
+        }
+
+        // get the probabilities
+        return calculateCoherences(probEstimator.getProbabilities(wordsets, vocabulary, definitions));
+    }
 
+    protected double[] calculateCoherences(SubsetProbabilities probabilities[]) {
         double coherences[] = new double[probabilities.length];
         if (weighter != null) {
             for (int i = 0; i < probabilities.length; i++) {
@@ -0,0 +1,163 @@
+/**
+ * This file is part of Palmetto.
+ *
+ * Palmetto is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Palmetto is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Palmetto.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.aksw.palmetto;
+
+import org.aksw.palmetto.corpus.CorpusVocabulary;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * <p>
+ * A coherence that splits large batches of word sets into chunks and hands
+ * them to the given executor, i.e., the segmentation, the counting, the
+ * probability estimation, the confirmation and the aggregation of the single
+ * chunks are done in parallel by the decorated coherence. The coherences are
+ * returned in the order of the given word sets.
+ * </p>
+ * 
+ * <p>
+ * The decorated coherence (including its probability estimator, determiners
+ * and corpus adapter) is used by several threads at the same time. Note that
+ * a batch is handled by the calling thread if it does not exceed the chunk
+ * size. The calling thread waits for the chunks, i.e., it should not be a
+ * thread of a bounded executor that is used for the chunks (or for querying
+ * the shards of a {@link org.aksw.palmetto.corpus.sharded.ShardedCorpusAdapter}).
+ * </p>
+ * 
+ * @author Michael R&ouml;der (roeder@informatik.uni-leipzig.de)
+ *
+ */
+public class ParallelCoherence implements Coherence {
+
+    public static final int DEFAULT_CHUNK_SIZE = 100;
+
+    protected Coherence coherence;
+    protected ExecutorService executor;
+    protected int chunkSize;
+
+    public ParallelCoherence(Coherence coherence, ExecutorService executor) {
+        this(coherence, executor, DEFAULT_CHUNK_SIZE);
+    }
+
+    public ParallelCoherence(Coherence coherence, ExecutorService executor, int chunkSize) {
+        this.coherence = coherence;
+        this.executor = executor;
+        setChunkSize(chunkSize);
+    }
+
+    @Override
+    public double[] calculateCoherences(final String[][] wordsets) {
+        if (wordsets.length <= chunkSize) {
+            return coherence.calculateCoherences(wordsets);
+        }
+        List<Callable<double[]>> tasks = new ArrayList<Callable<double[]>>();
+        for (int start = 0; start < wordsets.length; start += chunkSize) {
+            final String chunk[][] = Arrays.copyOfRange(wordsets, start, Math.min(start + chunkSize,
+                    wordsets.length));
+            tasks.add(new Callable<double[]>() {
+                @Override
+                public double[] call() throws Exception {
+                    return coherence.calculateCoherences(chunk);
+                }
+            });
+        }
+        return execute(tasks, wordsets.length);
+    }
+
+    @Override
+    public double[] calculateCoherences(final int[][] wordsets, final CorpusVocabulary vocabulary) {
+        if (wordsets.length <= chunkSize) {
+            return coherence.calculateCoherences(wordsets, vocabulary);
+        }
+        List<Callable<double[]>> tasks = new ArrayList<Callable<double[]>>();
+        for (int start = 0; start < wordsets.length; start += chunkSize) {
+            final int chunk[][] = Arrays.copyOfRange(wordsets, start, Math.min(start + chunkSize, wordsets.length));
+            tasks.add(new Callable<double[]>() {
+                @Override
+                public double[] call() throws Exception {
+                    return coherence.calculateCoherences(chunk, vocabulary);
+                }
+            });
+        }
+        return execute(tasks, wordsets.length);
+    }
+
+    /**
+     * Executes the given tasks and concatenates their results in the order of
+     * the tasks. An exception thrown by one of the tasks is rethrown.
+     */
+    protected double[] execute(List<Callable<double[]>> tasks, int numberOfWordsets) {
+        double coherences[] = new double[numberOfWordsets];
+        List<Future<double[]>> futures;
+        try {
+            futures = executor.invokeAll(tasks);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the coherences of the chunks.", e);
+        }
+        int pos = 0;
+        double chunkCoherences[];
+        for (Future<double[]> future : futures) {
+            try {
+                chunkCoherences = future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for the coherences of the chunks.", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                } else if (e.getCause() instanceof Error) {
+                    throw (Error) e.getCause();
+                }
+                throw new IllegalStateException("Exception while calculating the coherences of a chunk.",
+                        e.getCause());
+            }
+            System.arraycopy(chunkCoherences, 0, coherences, pos, chunkCoherences.length);
+            pos += chunkCoherences.length;
+        }
+        return coherences;
+    }
+
+    public Coherence getCoherence() {
+        return coherence;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public void setChunkSize(int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("The chunk size has to be positive. Got " + chunkSize + ".");
+        }
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * The coherences do not depend on the parallelization, i.e., the name of
+     * the decorated coherence is returned.
+     */
+    @Override
+    public String getName() {
+        return coherence.getName();
+    }
+}
@@ -18,6 +18,7 @@ package org.aksw.palmetto;
 
 import org.aksw.palmetto.aggregation.Aggregation;
 import org.aksw.palmetto.calculations.indirect.VectorBasedConfirmationMeasure;
+import org.aksw.palmetto.corpus.CorpusVocabulary;
 import org.aksw.palmetto.data.SegmentationDefinition;
 import org.aksw.palmetto.data.SubsetVectors;
 import org.aksw.palmetto.subsets.Segmentator;
@@ -83,9 +84,22 @@ public class VectorBasedCoherence implements Coherence {
         }
 
         // get the probabilities
-        SubsetVectors vectors[] = vectorCreator.getVectors(wordsets, definitions);
-        definitions = null;
+        return calculateCoherences(vectorCreator.getVectors(wordsets, definitions));
+    }
+
+    @Override
+    public double[] calculateCoherences(int[][] wordsets, CorpusVocabulary vocabulary) {
+        // create subset definitions
+        SegmentationDefinition definitions[] = new SegmentationDefinition[wordsets.length];
+        for (int i = 0; i < definitions.length; i++) {
+            definitions[i] = segmentator.getSubsetDefinition(wordsets[i].length);
+        }
+
+        // get the probabilities
+        return calculateCoherences(vectorCreator.getVectors(wordsets, vocabulary, definitions));
+    }
 
+    protected double[] calculateCoherences(SubsetVectors vectors[]) {
         double coherences[] = new double[vectors.length];
         if (weighter != null) {
             for (int i = 0; i < vectors.length; i++) {
@@ -43,8 +43,7 @@ public class DifferenceBasedConfirmationMeasure implements DirectConfirmationMea
             if (marginalProbability > 0) {
                 for (int j = 0; j < subsetProbabilities.conditions[i].length; ++j) {
                     if (subsetProbabilities.probabilities[subsetProbabilities.conditions[i][j]] > 0) {
-                        conditionalProbability = subsetProbabilities.probabilities[subsetProbabilities.segments[i]
-                                | subsetProbabilities.conditions[i][j]]
+                        conditionalProbability = subsetProbabilities.getIntersectionProbability(i, j)
                                 / subsetProbabilities.probabilities[subsetProbabilities.conditions[i][j]];
                     } else {
                         conditionalProbability = 0;
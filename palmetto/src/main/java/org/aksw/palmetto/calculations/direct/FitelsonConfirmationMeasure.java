@@ -51,8 +51,7 @@ public class FitelsonConfirmationMeasure extends AbstractUndefinedResultHandling
             segmentProbability = subsetProbabilities.probabilities[subsetProbabilities.segments[i]];
             for (int j = 0; j < subsetProbabilities.conditions[i].length; ++j) {
                 conditionProbability = subsetProbabilities.probabilities[subsetProbabilities.conditions[i][j]];
-                intersectionProbability = subsetProbabilities.probabilities[subsetProbabilities.segments[i]
-                        | subsetProbabilities.conditions[i][j]];
+                intersectionProbability = subsetProbabilities.getIntersectionProbability(i, j);
                 if (conditionProbability > 0) {
                     conditionalProbability = intersectionProbability
                             / subsetProbabilities.probabilities[subsetProbabilities.conditions[i][j]];
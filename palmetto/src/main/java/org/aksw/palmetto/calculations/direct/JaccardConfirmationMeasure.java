@@ -50,8 +50,7 @@ public class JaccardConfirmationMeasure extends AbstractUndefinedResultHandlingC
             for (int j = 0; j < subsetProbabilities.conditions[i].length; ++j) {
                 joinProbability = segmentProbability
                         + subsetProbabilities.probabilities[subsetProbabilities.conditions[i][j]];
-                intersectionProbability = subsetProbabilities.probabilities[subsetProbabilities.segments[i]
-                        | subsetProbabilities.conditions[i][j]];
+                intersectionProbability = subsetProbabilities.getIntersectionProbability(i, j);
                 joinProbability -= intersectionProbability;
                 if (joinProbability > 0) {
                     values[pos] = intersectionProbability / joinProbability;
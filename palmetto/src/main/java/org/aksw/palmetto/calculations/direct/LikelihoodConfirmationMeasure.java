@@ -54,8 +54,7 @@ public class LikelihoodConfirmationMeasure extends AbstractUndefinedResultHandli
                 for (int j = 0; j < subsetProbabilities.conditions[i].length; ++j) {
                     conditionProbability = subsetProbabilities.probabilities[subsetProbabilities.conditions[i][j]];
                     if (conditionProbability > 0) {
-                        intersectionProbability = subsetProbabilities.probabilities[subsetProbabilities.segments[i]
-                                | subsetProbabilities.conditions[i][j]];
+                        intersectionProbability = subsetProbabilities.getIntersectionProbability(i, j);
                         conditionalProbability = intersectionProbability / conditionProbability;
                         if (conditionProbability < 1) {
                             inverseCondProbability = (segmentProbability - intersectionProbability)
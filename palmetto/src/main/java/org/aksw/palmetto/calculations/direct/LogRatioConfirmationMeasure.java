@@ -57,8 +57,7 @@ public class LogRatioConfirmationMeasure extends AbstractUndefinedResultHandling
             if (segmentProbability > 0) {
                 for (int j = 0; j < subsetProbabilities.conditions[i].length; ++j) {
                     conditionProbability = subsetProbabilities.probabilities[subsetProbabilities.conditions[i][j]];
-                    intersectionProbability = subsetProbabilities.probabilities[subsetProbabilities.segments[i]
-                            | subsetProbabilities.conditions[i][j]];
+                    intersectionProbability = subsetProbabilities.getIntersectionProbability(i, j);
                     if (conditionProbability > 0) {
                         values[pos] = Math.log((intersectionProbability + LogBasedCalculation.EPSILON)
                                 / (segmentProbability * conditionProbability));
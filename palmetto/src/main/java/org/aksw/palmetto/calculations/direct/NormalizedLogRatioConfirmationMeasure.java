@@ -59,8 +59,7 @@ public class NormalizedLogRatioConfirmationMeasure extends AbstractUndefinedResu
             if (segmentProbability > 0) {
                 for (int j = 0; j < subsetProbabilities.conditions[i].length; ++j) {
                     conditionProbability = subsetProbabilities.probabilities[subsetProbabilities.conditions[i][j]];
-                    intersectionProbability = subsetProbabilities.probabilities[subsetProbabilities.segments[i]
-                            | subsetProbabilities.conditions[i][j]];
+                    intersectionProbability = subsetProbabilities.getIntersectionProbability(i, j);
                     if (conditionProbability > 0) {
                         intersectionProbability += LogBasedCalculation.EPSILON;
                         values[pos] = Math.log(intersectionProbability / (segmentProbability * conditionProbability))
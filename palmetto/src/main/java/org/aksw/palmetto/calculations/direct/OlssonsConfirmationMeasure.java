@@ -16,6 +16,9 @@
  */
 package org.aksw.palmetto.calculations.direct;
 
+import java.util.Arrays;
+
+import org.aksw.palmetto.data.SubsetLattice;
 import org.aksw.palmetto.data.SubsetProbabilities;
 
 /**
@@ -43,13 +46,19 @@ public class OlssonsConfirmationMeasure extends AbstractUndefinedResultHandlingC
         double values[] = new double[pos];
 
         double intersectionProbability, jointProbability;
+        int joint;
         pos = 0;
         for (int i = 0; i < subsetProbabilities.segments.length; ++i) {
             for (int j = 0; j < subsetProbabilities.conditions[i].length; ++j) {
-                intersectionProbability = subsetProbabilities.probabilities[subsetProbabilities.segments[i]
-                        | subsetProbabilities.conditions[i][j]];
-                jointProbability = determineJointProbability(subsetProbabilities.segments[i]
-                        | subsetProbabilities.conditions[i][j], subsetProbabilities.probabilities);
+                intersectionProbability = subsetProbabilities.getIntersectionProbability(i, j);
+                joint = subsetProbabilities.getUnion(subsetProbabilities.segments[i],
+                        subsetProbabilities.conditions[i][j]);
+                if (subsetProbabilities.lattice != null) {
+                    jointProbability = determineJointProbability(joint, subsetProbabilities.lattice,
+                            subsetProbabilities.probabilities);
+                } else {
+                    jointProbability = determineJointProbability(joint, subsetProbabilities.probabilities);
+                }
                 if (jointProbability > 0) {
                     values[pos] = intersectionProbability / jointProbability;
                 } else {
@@ -78,6 +87,41 @@ public class OlssonsConfirmationMeasure extends AbstractUndefinedResultHandlingC
         return jointProbability;
     }
 
+    /**
+     * Determines the probability of the union of the events of the single
+     * words of the given subset using the inclusion-exclusion principle. All
+     * subsets of the given subset have to be part of the lattice. Otherwise,
+     * 0 is returned, i.e., the result is handled as undefined.
+     */
+    private double determineJointProbability(int joint, SubsetLattice lattice, double[] probabilities) {
+        int words[] = lattice.getWords(joint);
+        // if the lattice is too small to contain all subsets, the probability can not be determined
+        if ((words.length >= Integer.SIZE - 1) || (((1 << words.length) - 1) > lattice.size())) {
+            return 0;
+        }
+        double jointProbability = 0;
+        int subsetWords[] = new int[words.length];
+        int size, slot;
+        for (int subset = 1; subset < (1 << words.length); ++subset) {
+            size = 0;
+            for (int s = subset; s != 0; s &= s - 1) {
+                subsetWords[size] = words[Integer.numberOfTrailingZeros(s)];
+                ++size;
+            }
+            slot = lattice.getSlot(Arrays.copyOf(subsetWords, size));
+            if (slot == SubsetLattice.NOT_CONTAINED) {
+                return 0;
+            }
+            // if the number of elements are even
+            if ((size & 1) == 0) {
+                jointProbability -= probabilities[slot];
+            } else {
+                jointProbability += probabilities[slot];
+            }
+        }
+        return jointProbability;
+    }
+
     @Override
     public String getName() {
         return "m_o";
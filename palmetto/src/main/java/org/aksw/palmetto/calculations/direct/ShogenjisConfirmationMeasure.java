@@ -48,8 +48,7 @@ public class ShogenjisConfirmationMeasure extends AbstractUndefinedResultHandlin
             // if (subsetProbabilities.probabilities[subsetProbabilities.segments[i]] > 0) {
             for (int j = 0; j < subsetProbabilities.conditions[i].length; ++j) {
                 conditionProbability = subsetProbabilities.probabilities[subsetProbabilities.conditions[i][j]];
-                intersectionProbability = subsetProbabilities.probabilities[subsetProbabilities.segments[i]
-                        | subsetProbabilities.conditions[i][j]];
+                intersectionProbability = subsetProbabilities.getIntersectionProbability(i, j);
                 // if (conditionProbability > 0) {
                 values[pos] = Math.log(intersectionProbability + LogBasedCalculation.EPSILON) - numberOfPairs
                         * Math.log(conditionProbability + LogBasedCalculation.EPSILON);
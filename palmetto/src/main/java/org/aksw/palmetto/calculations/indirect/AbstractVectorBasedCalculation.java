@@ -32,7 +32,7 @@ public abstract class AbstractVectorBasedCalculation implements VectorBasedConfi
 
         IntObjectOpenHashMap<double[]> vectorCache = new IntObjectOpenHashMap<double[]>();
         for (int i = 0; i < subsetVectors.vectors.length; ++i) {
-            vectorCache.put(1 << i, subsetVectors.vectors[i]);
+            vectorCache.put(subsetVectors.getSingle(i), subsetVectors.vectors[i]);
         }
         double segmentVector[], conditionVector[];
         pos = 0;
@@ -40,14 +40,14 @@ public abstract class AbstractVectorBasedCalculation implements VectorBasedConfi
             if (vectorCache.containsKey(subsetVectors.segments[i])) {
                 segmentVector = vectorCache.lget();
             } else {
-                segmentVector = createVector(subsetVectors.segments[i], subsetVectors.vectors);
+                segmentVector = createVector(subsetVectors.segments[i], subsetVectors);
                 vectorCache.put(subsetVectors.segments[i], segmentVector);
             }
             for (int j = 0; j < subsetVectors.conditions[i].length; ++j) {
                 if (vectorCache.containsKey(subsetVectors.conditions[i][j])) {
                     conditionVector = vectorCache.lget();
                 } else {
-                    conditionVector = createVector(subsetVectors.conditions[i][j], subsetVectors.vectors);
+                    conditionVector = createVector(subsetVectors.conditions[i][j], subsetVectors);
                     vectorCache.put(subsetVectors.conditions[i][j], conditionVector);
                 }
                 values[pos] = calculateSimilarity(segmentVector, conditionVector);
@@ -59,6 +59,29 @@ public abstract class AbstractVectorBasedCalculation implements VectorBasedConfi
 
     protected abstract double calculateSimilarity(double[] vector1, double[] vector2);
 
+    /**
+     * Creates the vector of the given subset. If the subsets are slots of a
+     * lattice, the vectors of its words are summed up. Otherwise, the id is
+     * handled as bit mask of the words (see
+     * {@link #createVector(int, double[][])}).
+     */
+    protected double[] createVector(int id, SubsetVectors subsetVectors) {
+        if (subsetVectors.lattice == null) {
+            return createVector(id, subsetVectors.vectors);
+        }
+        int words[] = subsetVectors.lattice.getWords(id);
+        if (words.length == 1) {
+            return subsetVectors.vectors[words[0]];
+        }
+        double vector[] = new double[subsetVectors.vectors[words[0]].length];
+        for (int j = 0; j < words.length; ++j) {
+            for (int i = 0; i < vector.length; ++i) {
+                vector[i] += subsetVectors.vectors[words[j]][i];
+            }
+        }
+        return vector;
+    }
+
     protected double[] createVector(int id, double[][] vectors) {
         int vectorCount = Integer.bitCount(id);
         if (vectorCount == 1) {
@@ -35,7 +35,7 @@ public class CentroidConfirmationMeasure extends CosinusConfirmationMeasure {
         double centroid[] = new double[subsetVectors.vectors[0].length];
         IntObjectOpenHashMap<double[]> vectorCache = new IntObjectOpenHashMap<double[]>();
         for (int i = 0; i < subsetVectors.vectors.length; ++i) {
-            vectorCache.put(1 << i, subsetVectors.vectors[i]);
+            vectorCache.put(subsetVectors.getSingle(i), subsetVectors.vectors[i]);
             for (int j = 0; j < centroid.length; j++) {
                 centroid[j] += subsetVectors.vectors[i][j];
             }
@@ -48,7 +48,7 @@ public class CentroidConfirmationMeasure extends CosinusConfirmationMeasure {
             if (vectorCache.containsKey(subsetVectors.segments[i])) {
                 segmentVector = vectorCache.lget();
             } else {
-                segmentVector = createVector(subsetVectors.segments[i], subsetVectors.vectors);
+                segmentVector = createVector(subsetVectors.segments[i], subsetVectors);
                 vectorCache.put(subsetVectors.segments[i], segmentVector);
             }
             values[i] = calculateSimilarity(segmentVector, centroid);
@@ -0,0 +1,118 @@
+/**
+ * This file is part of Palmetto.
+ *
+ * Palmetto is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Palmetto is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Palmetto.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.aksw.palmetto.corpus;
+
+/**
+ * Abstract {@link DocumentCursor} for sorted document ids with random access.
+ * {@link #advance(int)} uses a galloping search, i.e., it needs logarithmic
+ * time in the distance between the current and the found document.
+ * 
+ * @author Michael R&ouml;der (roeder@informatik.uni-leipzig.de)
+ * 
+ */
+public abstract class AbstractRandomAccessDocumentCursor implements DocumentCursor {
+
+    /**
+     * The number of documents.
+     */
+    protected int size;
+    /**
+     * The position of the current document.
+     */
+    protected int pos = -1;
+    /**
+     * The id of the current document.
+     */
+    protected int docId = -1;
+
+    public AbstractRandomAccessDocumentCursor(int size) {
+        this.size = size;
+    }
+
+    /**
+     * Returns the id of the document at the given position.
+     */
+    protected abstract int getDocument(int position);
+
+    @Override
+    public int getDocumentFrequency() {
+        return size;
+    }
+
+    @Override
+    public int docId() {
+        return docId;
+    }
+
+    @Override
+    public int nextDoc() {
+        ++pos;
+        if (pos < size) {
+            docId = getDocument(pos);
+        } else {
+            pos = size;
+            docId = NO_MORE_DOCS;
+        }
+        return docId;
+    }
+
+    @Override
+    public int advance(int target) {
+        // gallop until the target has been passed
+        int low = pos + 1;
+        int step = 1;
+        int high = low;
+        while ((high < size) && (getDocument(high) < target)) {
+            low = high + 1;
+            high += step;
+            step <<= 1;
+        }
+        if (high >= size) {
+            high = size;
+        }
+        // binary search for the first document >= target inside [low, high)
+        int middle;
+        while (low < high) {
+            middle = (low + high) >>> 1;
+            if (getDocument(middle) < target) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        pos = low;
+        if (pos < size) {
+            docId = getDocument(pos);
+        } else {
+            docId = NO_MORE_DOCS;
+        }
+        return docId;
+    }
+
+    @Override
+    public void reset() {
+        pos = -1;
+        docId = -1;
+    }
+
+    /**
+     * The documents are held in memory, i.e., there is nothing to release.
+     */
+    @Override
+    public void close() {
+    }
+}
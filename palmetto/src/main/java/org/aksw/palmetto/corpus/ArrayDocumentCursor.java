@@ -0,0 +1,63 @@
+/**
+ * This file is part of Palmetto.
+ *
+ * Palmetto is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Palmetto is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Palmetto.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.aksw.palmetto.corpus;
+
+import java.util.Arrays;
+
+import com.carrotsearch.hppc.IntArrayList;
+
+/**
+ * A {@link DocumentCursor} based on a sorted array of document ids.
+ * 
+ * @author Michael R&ouml;der (roeder@informatik.uni-leipzig.de)
+ * 
+ */
+public class ArrayDocumentCursor extends AbstractRandomAccessDocumentCursor {
+
+    /**
+     * Creates a cursor for the given document ids. Note that the buffer of the
+     * list is sorted and used by the cursor.
+     * 
+     * @param documents
+     *            the ids of the documents
+     * @return a cursor over the given documents
+     */
+    public static ArrayDocumentCursor create(IntArrayList documents) {
+        Arrays.sort(documents.buffer, 0, documents.elementsCount);
+        return new ArrayDocumentCursor(documents.buffer, documents.elementsCount);
+    }
+
+    private int documents[];
+
+    /**
+     * Constructor.
+     * 
+     * @param documents
+     *            the sorted document ids
+     * @param size
+     *            the number of document ids of the given array that are used
+     */
+    public ArrayDocumentCursor(int documents[], int size) {
+        super(size);
+        this.documents = documents;
+    }
+
+    @Override
+    protected int getDocument(int position) {
+        return documents[position];
+    }
+}
@@ -0,0 +1,328 @@
+/**
+ * This file is part of Palmetto.
+ *
+ * Palmetto is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Palmetto is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Palmetto.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.aksw.palmetto.corpus;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.Arrays;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.carrotsearch.hppc.IntIntOpenHashMap;
+import com.carrotsearch.hppc.LongLongOpenHashMap;
+
+/**
+ * Statistics of a corpus that are determined while the corpus is indexed: the
+ * number of documents, the number of tokens, the histogram of the document
+ * lengths and the number of sliding windows for several window sizes. All
+ * counts are 64-bit values.
+ * 
+ * <p>
+ * The statistics are stored in a small binary file (big endian) with the
+ * following layout: magic number, version, number of documents, number of
+ * tokens, number of histogram entries followed by (length, count) pairs sorted
+ * by length and the number of window sizes followed by (window size, number of
+ * windows) pairs.
+ * </p>
+ * 
+ * @author Michael R&ouml;der (roeder@informatik.uni-leipzig.de)
+ *
+ */
+public class CorpusStatistics {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CorpusStatistics.class);
+
+    public static final int MAGIC_NUMBER = 0x50535453;
+    public static final int VERSION = 1;
+
+    /**
+     * The window sizes of the boolean sliding windows used by the coherences
+     * of Palmetto.
+     */
+    public static final int DEFAULT_WINDOW_SIZES[] = { 5, 10, 20, 50, 70, 100, 110 };
+
+    /**
+     * Creates the statistics from the given histogram of document lengths.
+     * 
+     * @param histogram
+     *            a mapping of document lengths to the number of documents with
+     *            this length
+     * @param windowSizes
+     *            the window sizes for which the number of windows should be
+     *            determined
+     */
+    public static CorpusStatistics create(IntIntOpenHashMap histogram, int windowSizes[]) {
+        int lengths[] = new int[histogram.size()];
+        int pos = 0;
+        for (int i = 0; i < histogram.keys.length; ++i) {
+            if (histogram.allocated[i]) {
+                lengths[pos] = histogram.keys[i];
+                ++pos;
+            }
+        }
+        Arrays.sort(lengths);
+        long histogramArray[][] = new long[lengths.length][2];
+        for (int i = 0; i < lengths.length; ++i) {
+            histogramArray[i][0] = lengths[i];
+            histogramArray[i][1] = histogram.get(lengths[i]);
+        }
+        return create(histogramArray, windowSizes);
+    }
+
+    /**
+     * Creates the statistics from the given histogram of document lengths.
+     * 
+     * @param histogram
+     *            pairs of document lengths and the number of documents with
+     *            this length
+     * @param windowSizes
+     *            the window sizes for which the number of windows should be
+     *            determined
+     */
+    public static CorpusStatistics create(int histogram[][], int windowSizes[]) {
+        long histogramArray[][] = new long[histogram.length][2];
+        for (int i = 0; i < histogram.length; ++i) {
+            histogramArray[i][0] = histogram[i][0];
+            histogramArray[i][1] = histogram[i][1];
+        }
+        return create(histogramArray, windowSizes);
+    }
+
+    protected static CorpusStatistics create(long histogram[][], int windowSizes[]) {
+        long numberOfDocuments = 0;
+        long numberOfTokens = 0;
+        for (int i = 0; i < histogram.length; ++i) {
+            numberOfDocuments += histogram[i][1];
+            numberOfTokens += histogram[i][0] * histogram[i][1];
+        }
+        long numberOfWindows[] = new long[windowSizes.length];
+        for (int i = 0; i < windowSizes.length; ++i) {
+            numberOfWindows[i] = countWindows(histogram, windowSizes[i]);
+        }
+        return new CorpusStatistics(numberOfDocuments, numberOfTokens, histogram, windowSizes.clone(),
+                numberOfWindows);
+    }
+
+    /**
+     * Creates the statistics of the union of the documents described by the
+     * two given statistics, e.g., the statistics of an index to which
+     * documents have been appended. The numbers of windows are determined for
+     * the window sizes of the first statistics.
+     */
+    public static CorpusStatistics merge(CorpusStatistics statistics, CorpusStatistics additionalStatistics) {
+        LongLongOpenHashMap histogram = new LongLongOpenHashMap();
+        addToHistogram(statistics.histogram, histogram);
+        addToHistogram(additionalStatistics.histogram, histogram);
+        long lengths[] = new long[histogram.size()];
+        int pos = 0;
+        for (int i = 0; i < histogram.keys.length; ++i) {
+            if (histogram.allocated[i]) {
+                lengths[pos] = histogram.keys[i];
+                ++pos;
+            }
+        }
+        Arrays.sort(lengths);
+        long histogramArray[][] = new long[lengths.length][2];
+        for (int i = 0; i < lengths.length; ++i) {
+            histogramArray[i][0] = lengths[i];
+            histogramArray[i][1] = histogram.get(lengths[i]);
+        }
+        return create(histogramArray, statistics.windowSizes);
+    }
+
+    private static void addToHistogram(long histogramArray[][], LongLongOpenHashMap histogram) {
+        for (int i = 0; i < histogramArray.length; ++i) {
+            histogram.putOrAdd(histogramArray[i][0], histogramArray[i][1], histogramArray[i][1]);
+        }
+    }
+
+    /**
+     * Counts the boolean sliding windows of the given size inside the
+     * documents of the given histogram. A document that is shorter than the
+     * window forms a single window.
+     */
+    public static long countWindows(long histogram[][], int windowSize) {
+        long numberOfWindows = 0;
+        for (int i = 0; i < histogram.length; ++i) {
+            if (histogram[i][0] < windowSize) {
+                numberOfWindows += histogram[i][1];
+            } else {
+                numberOfWindows += histogram[i][1] * (histogram[i][0] - (windowSize - 1));
+            }
+        }
+        return numberOfWindows;
+    }
+
+    /**
+     * Counts the boolean sliding windows of the given size inside the
+     * documents of the given histogram. A document that is shorter than the
+     * window forms a single window.
+     */
+    public static long countWindows(int histogram[][], int windowSize) {
+        long numberOfWindows = 0;
+        for (int i = 0; i < histogram.length; ++i) {
+            if (histogram[i][0] < windowSize) {
+                numberOfWindows += histogram[i][1];
+            } else {
+                numberOfWindows += ((long) histogram[i][1]) * (histogram[i][0] - (windowSize - 1));
+            }
+        }
+        return numberOfWindows;
+    }
+
+    /**
+     * Reads the statistics from the given file by mapping it into memory.
+     * Returns null if the file does not exist or can not be read.
+     */
+    public static CorpusStatistics read(String fileName) {
+        File file = new File(fileName);
+        if (!file.exists()) {
+            return null;
+        }
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(file, "r");
+            MappedByteBuffer buffer = raf.getChannel().map(MapMode.READ_ONLY, 0, raf.length());
+            if (buffer.getInt() != MAGIC_NUMBER) {
+                LOGGER.error("The file \"" + fileName + "\" is not a statistics file.");
+                return null;
+            }
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                LOGGER.error("The statistics file \"" + fileName + "\" has the unsupported version " + version + ".");
+                return null;
+            }
+            long numberOfDocuments = buffer.getLong();
+            long numberOfTokens = buffer.getLong();
+            long histogram[][] = new long[buffer.getInt()][2];
+            for (int i = 0; i < histogram.length; ++i) {
+                histogram[i][0] = buffer.getInt();
+                histogram[i][1] = buffer.getLong();
+            }
+            int windowSizes[] = new int[buffer.getInt()];
+            long numberOfWindows[] = new long[windowSizes.length];
+            for (int i = 0; i < windowSizes.length; ++i) {
+                windowSizes[i] = buffer.getInt();
+                numberOfWindows[i] = buffer.getLong();
+            }
+            return new CorpusStatistics(numberOfDocuments, numberOfTokens, histogram, windowSizes, numberOfWindows);
+        } catch (Exception e) {
+            LOGGER.error("Couldn't read statistics file \"" + fileName + "\".", e);
+            return null;
+        } finally {
+            if (raf != null) {
+                try {
+                    raf.close();
+                } catch (IOException e) {
+                }
+            }
+        }
+    }
+
+    protected long numberOfDocuments;
+    protected long numberOfTokens;
+    protected long histogram[][];
+    protected int windowSizes[];
+    protected long numberOfWindows[];
+
+    public CorpusStatistics(long numberOfDocuments, long numberOfTokens, long histogram[][], int windowSizes[],
+            long numberOfWindows[]) {
+        this.numberOfDocuments = numberOfDocuments;
+        this.numberOfTokens = numberOfTokens;
+        this.histogram = histogram;
+        this.windowSizes = windowSizes;
+        this.numberOfWindows = numberOfWindows;
+    }
+
+    /**
+     * Writes the statistics to the given file.
+     */
+    public void write(String fileName) throws IOException {
+        File file = new File(fileName);
+        if ((file.getParentFile() != null) && (!file.getParentFile().exists())) {
+            file.getParentFile().mkdirs();
+        }
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+            out.writeInt(MAGIC_NUMBER);
+            out.writeInt(VERSION);
+            out.writeLong(numberOfDocuments);
+            out.writeLong(numberOfTokens);
+            out.writeInt(histogram.length);
+            for (int i = 0; i < histogram.length; ++i) {
+                out.writeInt((int) histogram[i][0]);
+                out.writeLong(histogram[i][1]);
+            }
+            out.writeInt(windowSizes.length);
+            for (int i = 0; i < windowSizes.length; ++i) {
+                out.writeInt(windowSizes[i]);
+                out.writeLong(numberOfWindows[i]);
+            }
+        } finally {
+            if (out != null) {
+                out.close();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of boolean sliding windows of the given size. If the
+     * number has not been determined while indexing, it is calculated using
+     * the histogram.
+     */
+    public long getNumberOfWindows(int windowSize) {
+        for (int i = 0; i < windowSizes.length; ++i) {
+            if (windowSizes[i] == windowSize) {
+                return numberOfWindows[i];
+            }
+        }
+        return countWindows(histogram, windowSize);
+    }
+
+    /**
+     * Returns the histogram of document lengths in the format of
+     * {@link WindowSupportingAdapter#getDocumentSizeHistogram()}.
+     */
+    public int[][] getDocumentSizeHistogram() {
+        int result[][] = new int[histogram.length][2];
+        for (int i = 0; i < histogram.length; ++i) {
+            result[i][0] = (int) histogram[i][0];
+            result[i][1] = (int) histogram[i][1];
+        }
+        return result;
+    }
+
+    public long getNumberOfDocuments() {
+        return numberOfDocuments;
+    }
+
+    public long getNumberOfTokens() {
+        return numberOfTokens;
+    }
+
+    public int[] getWindowSizes() {
+        return windowSizes;
+    }
+}
@@ -0,0 +1,261 @@
+/**
+ * This file is part of Palmetto.
+ *
+ * Palmetto is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Palmetto is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Palmetto.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.aksw.palmetto.corpus;
+
+import java.io.IOException;
+
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.util.BytesRef;
+
+import com.carrotsearch.hppc.ObjectArrayList;
+import com.carrotsearch.hppc.ObjectIntOpenHashMap;
+
+/**
+ * The vocabulary of a corpus mapping every word to a dense int id. The ids
+ * are assigned in the order the words are added, i.e., in the order of the
+ * term dictionary of the index. Word sets can be handed to the frequency
+ * determiners as arrays of these ids. Words that are not part of the
+ * vocabulary get the id {@link #UNKNOWN_WORD_ID} and are handled as words
+ * that do not occur in the corpus.
+ * 
+ * <p>
+ * The ids belong to a single version of the corpus. If the corpus changes,
+ * e.g., because the adapter has been reopened after documents have been
+ * appended (see {@link VersionSupportingAdapter}), the adapter offers a new
+ * vocabulary in which the same id can name a different word. Thus, callers
+ * that keep word ids have to check whether the vocabulary they used to
+ * create them is still current (see {@link #isCurrent(CorpusAdapter)}) and
+ * have to map their words again if it is not. Word ids are always handed to
+ * the frequency determiners together with the vocabulary they have been
+ * taken from and the determiners reject a vocabulary that is not current.
+ * </p>
+ * 
+ * <p>
+ * Instances are immutable and can be shared between threads.
+ * </p>
+ * 
+ * @author Michael R&ouml;der (roeder@informatik.uni-leipzig.de)
+ *
+ */
+public class CorpusVocabulary {
+
+    public static final int UNKNOWN_WORD_ID = -1;
+    /**
+     * The corpus version of a vocabulary whose corpus can not change.
+     */
+    public static final long NO_VERSION = -1;
+
+    /**
+     * Reads the vocabulary from the given terms enum.
+     */
+    public static CorpusVocabulary create(TermsEnum termsEnum) throws IOException {
+        return create(termsEnum, NO_VERSION);
+    }
+
+    /**
+     * Reads the vocabulary of the given version of a corpus from the given
+     * terms enum.
+     */
+    public static CorpusVocabulary create(TermsEnum termsEnum, long corpusVersion) throws IOException {
+        ObjectArrayList<String> words = new ObjectArrayList<String>();
+        if (termsEnum != null) {
+            BytesRef term = termsEnum.next();
+            while (term != null) {
+                words.add(term.utf8ToString());
+                term = termsEnum.next();
+            }
+        }
+        return new CorpusVocabulary(words.toArray(String.class), corpusVersion);
+    }
+
+    /**
+     * Returns the vocabulary of the given adapter.
+     * 
+     * @throws IllegalArgumentException
+     *             if the adapter does not offer a vocabulary
+     */
+    public static CorpusVocabulary getVocabulary(CorpusAdapter adapter) {
+        CorpusVocabulary vocabulary = null;
+        if (adapter instanceof VocabularySupportingAdapter) {
+            vocabulary = ((VocabularySupportingAdapter) adapter).getVocabulary();
+        }
+        if (vocabulary == null) {
+            throw new IllegalArgumentException("The corpus adapter " + adapter
+                    + " does not offer a vocabulary. Word ids can not be used with this adapter.");
+        }
+        return vocabulary;
+    }
+
+    protected String words[];
+    protected ObjectIntOpenHashMap<String> wordIds;
+    protected long corpusVersion;
+
+    public CorpusVocabulary(String words[]) {
+        this(words, NO_VERSION);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param words
+     *            the words of the vocabulary in the order of their ids
+     * @param corpusVersion
+     *            the version of the corpus the vocabulary belongs to (see
+     *            {@link VersionSupportingAdapter#getCorpusVersion()}) or
+     *            {@link #NO_VERSION} if the corpus can not change
+     */
+    public CorpusVocabulary(String words[], long corpusVersion) {
+        this.words = words;
+        this.corpusVersion = corpusVersion;
+        wordIds = new ObjectIntOpenHashMap<String>(words.length);
+        for (int i = 0; i < words.length; ++i) {
+            wordIds.put(words[i], i);
+        }
+    }
+
+    /**
+     * Returns the id of the given word or {@link #UNKNOWN_WORD_ID} if the word
+     * is not part of the vocabulary.
+     */
+    public int getId(String word) {
+        if (wordIds.containsKey(word)) {
+            return wordIds.lget();
+        } else {
+            return UNKNOWN_WORD_ID;
+        }
+    }
+
+    /**
+     * Returns the word with the given id or null if the id is not known.
+     */
+    public String getWord(int wordId) {
+        if ((wordId >= 0) && (wordId < words.length)) {
+            return words[wordId];
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the word with the given id. In contrast to
+     * {@link #getWord(int)}, an id that is not part of the vocabulary is
+     * handled as error since it must have been created with another
+     * vocabulary, e.g., of a former version of the corpus.
+     * 
+     * @throws IllegalArgumentException
+     *             if the id is not part of the vocabulary
+     */
+    public String getKnownWord(int wordId) {
+        if ((wordId >= 0) && (wordId < words.length)) {
+            return words[wordId];
+        } else {
+            throw new IllegalArgumentException("The word id " + wordId
+                    + " is not part of the vocabulary of the corpus version " + corpusVersion
+                    + ". It might have been created with the vocabulary of another version.");
+        }
+    }
+
+    /**
+     * Returns the version of the corpus this vocabulary belongs to or
+     * {@link #NO_VERSION} if the corpus can not change.
+     */
+    public long getCorpusVersion() {
+        return corpusVersion;
+    }
+
+    /**
+     * Returns true if the word ids of this vocabulary can be used with the
+     * given adapter, i.e., if the adapter can not change or its corpus still
+     * has the version of this vocabulary.
+     */
+    public boolean isCurrent(CorpusAdapter adapter) {
+        return !(adapter instanceof VersionSupportingAdapter)
+                || (((VersionSupportingAdapter) adapter).getCorpusVersion() == corpusVersion);
+    }
+
+    /**
+     * Checks whether the word ids of this vocabulary can be used with the
+     * given adapter (see {@link #isCurrent(CorpusAdapter)}).
+     * 
+     * @throws IllegalArgumentException
+     *             if the corpus of the adapter has another version
+     */
+    public void checkIsCurrent(CorpusAdapter adapter) {
+        if (!isCurrent(adapter)) {
+            throw new IllegalArgumentException("The word ids belong to the vocabulary of the corpus version "
+                    + corpusVersion + " while the corpus adapter has the version "
+                    + ((VersionSupportingAdapter) adapter).getCorpusVersion()
+                    + ". The word ids have to be taken from the current vocabulary of the adapter.");
+        }
+    }
+
+    /**
+     * Transforms the given word sets into arrays of word ids.
+     */
+    public int[][] getIds(String wordsets[][]) {
+        int ids[][] = new int[wordsets.length][];
+        for (int i = 0; i < wordsets.length; ++i) {
+            ids[i] = new int[wordsets[i].length];
+            for (int j = 0; j < wordsets[i].length; ++j) {
+                ids[i][j] = getId(wordsets[i][j]);
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Transforms the given arrays of word ids into word sets. Note that the
+     * returned word sets contain the instances of this vocabulary, i.e., no
+     * new strings are created. Unknown ids are transformed into null.
+     */
+    public String[][] getWords(int wordsets[][]) {
+        String words[][] = new String[wordsets.length][];
+        for (int i = 0; i < wordsets.length; ++i) {
+            words[i] = new String[wordsets[i].length];
+            for (int j = 0; j < wordsets[i].length; ++j) {
+                words[i][j] = getWord(wordsets[i][j]);
+            }
+        }
+        return words;
+    }
+
+    /**
+     * Transforms the given arrays of word ids into word sets like
+     * {@link #getWords(int[][])}. However, only {@link #UNKNOWN_WORD_ID} is
+     * transformed into null while other ids that are not part of the
+     * vocabulary are handled as error (see {@link #getKnownWord(int)}).
+     * 
+     * @throws IllegalArgumentException
+     *             if an id is not part of the vocabulary
+     */
+    public String[][] getKnownWords(int wordsets[][]) {
+        String words[][] = new String[wordsets.length][];
+        for (int i = 0; i < wordsets.length; ++i) {
+            words[i] = new String[wordsets[i].length];
+            for (int j = 0; j < wordsets[i].length; ++j) {
+                if (wordsets[i][j] != UNKNOWN_WORD_ID) {
+                    words[i][j] = getKnownWord(wordsets[i][j]);
+                }
+            }
+        }
+        return words;
+    }
+
+    public int size() {
+        return words.length;
+    }
+}
@@ -0,0 +1,85 @@
+/**
+ * This file is part of Palmetto.
+ *
+ * Palmetto is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Palmetto is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Palmetto.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.aksw.palmetto.corpus;
+
+/**
+ * A cursor iterating over the sorted ids of the documents containing a single
+ * word. In contrast to a list of document ids, the cursor can skip documents
+ * using {@link #advance(int)} without reading them, i.e., the intersection of
+ * several cursors can be driven by the cursor with the least documents.
+ * 
+ * <p>
+ * A cursor is not thread safe.
+ * </p>
+ * 
+ * @author Michael R&ouml;der (roeder@informatik.uni-leipzig.de)
+ * 
+ */
+public interface DocumentCursor {
+
+    /**
+     * The id returned after the last document of the cursor has been
+     * reached.
+     */
+    public static final int NO_MORE_DOCS = Integer.MAX_VALUE;
+
+    /**
+     * Returns the number of documents this cursor contains.
+     * 
+     * @return the number of documents containing the word
+     */
+    public int getDocumentFrequency();
+
+    /**
+     * Returns the id of the current document, -1 if the cursor has not been
+     * moved since its creation or its last reset or {@link #NO_MORE_DOCS} if
+     * all documents have been read.
+     * 
+     * @return the id of the current document
+     */
+    public int docId();
+
+    /**
+     * Moves the cursor to the next document.
+     * 
+     * @return the id of the next document or {@link #NO_MORE_DOCS}
+     */
+    public int nextDoc();
+
+    /**
+     * Moves the cursor to the first document with an id greater than or equal
+     * to the given target. The target has to be larger than the current
+     * document id.
+     * 
+     * @param target
+     *            the smallest document id that is accepted
+     * @return the id of the found document or {@link #NO_MORE_DOCS}
+     */
+    public int advance(int target);
+
+    /**
+     * Moves the cursor in front of its first document, i.e., the documents can
+     * be read again.
+     */
+    public void reset();
+
+    /**
+     * Releases the resources of the cursor, e.g., the index version it reads
+     * from. The cursor must not be used after it has been closed.
+     */
+    public void close();
+}
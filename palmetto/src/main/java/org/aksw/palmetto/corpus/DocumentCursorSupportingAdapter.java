@@ -0,0 +1,38 @@
+/**
+ * This file is part of Palmetto.
+ *
+ * Palmetto is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Palmetto is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Palmetto.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.aksw.palmetto.corpus;
+
+/**
+ * This is an interface for a {@link BooleanDocumentSupportingAdapter} that can
+ * return the documents of a word as {@link DocumentCursor}, i.e., without
+ * materializing the complete list of document ids.
+ * 
+ * @author Michael R&ouml;der (roeder@informatik.uni-leipzig.de)
+ * 
+ */
+public interface DocumentCursorSupportingAdapter extends BooleanDocumentSupportingAdapter {
+
+    /**
+     * Returns a cursor over the sorted ids of the documents containing the
+     * given word. If the word is unknown, the cursor is empty.
+     * 
+     * @param word
+     *            the word which should be searched
+     * @return a cursor over the documents containing the word
+     */
+    public DocumentCursor getDocumentCursor(String word);
+}
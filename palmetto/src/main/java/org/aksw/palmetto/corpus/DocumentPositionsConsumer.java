@@ -0,0 +1,45 @@
+/**
+ * This file is part of Palmetto.
+ *
+ * Palmetto is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Palmetto is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Palmetto.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.aksw.palmetto.corpus;
+
+import com.carrotsearch.hppc.IntArrayList;
+
+/**
+ * A callback receiving the positions of words inside a single document from a
+ * {@link StreamingWindowSupportingAdapter}.
+ * 
+ * @author Michael R&ouml;der (roeder@informatik.uni-leipzig.de)
+ * 
+ */
+public interface DocumentPositionsConsumer {
+
+    /**
+     * Consumes the positions of the requested words inside the given document.
+     * The i-th list contains the positions of the i-th requested word or is
+     * null if the document does not contain the word. Note that the array and
+     * the lists are reused for the next document, i.e., they must not be
+     * referenced after this method returned. Sorting the lists is allowed.
+     * 
+     * @param docId
+     *            the id of the document
+     * @param positions
+     *            the positions of the words inside the document
+     * @param docLength
+     *            the length of the document
+     */
+    public void consumeDocument(int docId, IntArrayList positions[], int docLength);
+}
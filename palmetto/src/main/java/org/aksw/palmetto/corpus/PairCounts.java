@@ -0,0 +1,532 @@
+/**
+ * This file is part of Palmetto.
+ *
+ * Palmetto is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Palmetto is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Palmetto.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.aksw.palmetto.corpus;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Comparator;
+
+import org.aksw.palmetto.corpus.mapped.LargeMappedFile;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.carrotsearch.hppc.ObjectIntOpenHashMap;
+
+/**
+ * Precomputed counts of single words and word pairs of a bounded vocabulary.
+ * The counts are determined offline (see
+ * {@link org.aksw.palmetto.corpus.lucene.creation.PairCountsCreator}) for the
+ * boolean document model and several boolean sliding window sizes. They can
+ * be used to answer queries of segmentations that only need the counts of
+ * single words and pairs (e.g., one-one) without accessing the index.
+ * 
+ * <p>
+ * The counts are stored in a single binary file (big endian) that is mapped
+ * into memory. The file starts with a header (magic number, version, number of
+ * documents and maximum document id of the index, minimum pair count, number
+ * of words) followed by the words sorted by their UTF-8 bytes (byte length and
+ * bytes). Every model has its own section containing a sparse, symmetric
+ * matrix of which only the upper triangle is stored row by row: the counts of
+ * the single words, the start of every row, the pair counts and the column ids
+ * of the pair counts. The sections are followed by a table with the model,
+ * the total (i.e., number of documents or windows), the section position and
+ * the number of pairs of every model and, finally, the position of this table
+ * and the number of models. Pairs with a count lower than the minimum count
+ * are not stored, i.e., they have a count of 0. Instances are immutable and
+ * can be shared between threads.
+ * </p>
+ * 
+ * @author Michael R&ouml;der (roeder@informatik.uni-leipzig.de)
+ *
+ */
+public class PairCounts {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PairCounts.class);
+
+    public static final int MAGIC_NUMBER = 0x50504143;
+    public static final int VERSION = 1;
+    /**
+     * The model id of the boolean document model. Boolean sliding window
+     * models are identified by their window size.
+     */
+    public static final int BOOLEAN_DOCUMENT_MODEL = 0;
+    /**
+     * The id of words that are not part of the vocabulary.
+     */
+    public static final int UNKNOWN_WORD_ID = -1;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final int TRAILER_SIZE = 12;
+    private static final int MODEL_TABLE_ENTRY_SIZE = 32;
+
+    /**
+     * Reads the counts from the given file by mapping it into memory. Returns
+     * null if the file does not exist or can not be read.
+     */
+    public static PairCounts read(String fileName) {
+        File file = new File(fileName);
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            LargeMappedFile mappedFile = LargeMappedFile.map(file);
+            if (mappedFile.getInt(0) != MAGIC_NUMBER) {
+                LOGGER.error("The file \"" + fileName + "\" is not a pair counts file.");
+                return null;
+            }
+            int version = mappedFile.getInt(4);
+            if (version != VERSION) {
+                LOGGER.error("The pair counts file \"" + fileName + "\" has the unsupported version " + version
+                        + ".");
+                return null;
+            }
+            long numberOfDocuments = mappedFile.getLong(8);
+            int maxDoc = mappedFile.getInt(16);
+            int minCount = mappedFile.getInt(20);
+            int numberOfWords = mappedFile.getInt(24);
+            // the vocabulary is small enough to be held in memory
+            ObjectIntOpenHashMap<String> wordIds = new ObjectIntOpenHashMap<String>(numberOfWords);
+            DataInputStream in = null;
+            try {
+                in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+                in.skipBytes(28);
+                byte word[];
+                for (int i = 0; i < numberOfWords; ++i) {
+                    word = new byte[in.readInt()];
+                    in.readFully(word);
+                    wordIds.put(new String(word, UTF8), i);
+                }
+            } finally {
+                IOUtils.closeQuietly(in);
+            }
+            long tablePosition = mappedFile.getLong(mappedFile.length() - TRAILER_SIZE);
+            int numberOfModels = mappedFile.getInt(mappedFile.length() - 4);
+            Section sections[] = new Section[numberOfModels];
+            long position;
+            for (int i = 0; i < numberOfModels; ++i) {
+                position = tablePosition + (i * MODEL_TABLE_ENTRY_SIZE);
+                sections[i] = new Section(mappedFile.getInt(position), mappedFile.getLong(position + 8),
+                        mappedFile.getLong(position + 16), mappedFile.getLong(position + 24), numberOfWords);
+            }
+            return new PairCounts(numberOfDocuments, maxDoc, minCount, wordIds, mappedFile, sections);
+        } catch (Exception e) {
+            LOGGER.error("Couldn't read pair counts file \"" + fileName + "\".", e);
+            return null;
+        }
+    }
+
+    protected long numberOfDocuments;
+    protected int maxDoc;
+    protected int minCount;
+    protected ObjectIntOpenHashMap<String> wordIds;
+    protected LargeMappedFile file;
+    protected Section sections[];
+
+    protected PairCounts(long numberOfDocuments, int maxDoc, int minCount, ObjectIntOpenHashMap<String> wordIds,
+            LargeMappedFile file, Section sections[]) {
+        this.numberOfDocuments = numberOfDocuments;
+        this.maxDoc = maxDoc;
+        this.minCount = minCount;
+        this.wordIds = wordIds;
+        this.file = file;
+        this.sections = sections;
+    }
+
+    /**
+     * Returns the id of the given word or {@link #UNKNOWN_WORD_ID} if the word
+     * is not part of the vocabulary. Note that a word of the vocabulary does
+     * not have to occur inside the corpus.
+     */
+    public int getWordId(String word) {
+        if (wordIds.containsKey(word)) {
+            return wordIds.lget();
+        } else {
+            return UNKNOWN_WORD_ID;
+        }
+    }
+
+    /**
+     * Returns whether the counts of the given model are available.
+     */
+    public boolean hasModel(int model) {
+        return getSection(model) != null;
+    }
+
+    /**
+     * Returns the number of documents (boolean document model) or windows
+     * (boolean sliding window model) of the given model or -1 if the model is
+     * not available.
+     */
+    public long getTotal(int model) {
+        Section section = getSection(model);
+        return (section != null) ? section.total : -1;
+    }
+
+    /**
+     * Returns the count of the word with the given id or -1 if the model is
+     * not available.
+     */
+    public long getCount(int model, int wordId) {
+        Section section = getSection(model);
+        if (section == null) {
+            return -1;
+        }
+        return file.getLong(section.singlesPosition + (8L * wordId));
+    }
+
+    /**
+     * Returns the count of the pair of words with the given ids or -1 if the
+     * model is not available. Pairs that have been pruned have a count of 0.
+     */
+    public long getCount(int model, int wordId1, int wordId2) {
+        Section section = getSection(model);
+        if (section == null) {
+            return -1;
+        }
+        if (wordId1 == wordId2) {
+            return file.getLong(section.singlesPosition + (8L * wordId1));
+        }
+        int row = Math.min(wordId1, wordId2);
+        int column = Math.max(wordId1, wordId2);
+        long low = file.getLong(section.rowStartsPosition + (8L * row));
+        long high = file.getLong(section.rowStartsPosition + (8L * (row + 1))) - 1;
+        long middle;
+        int middleColumn;
+        while (low <= high) {
+            middle = (low + high) >>> 1;
+            middleColumn = file.getInt(section.columnsPosition + (4L * middle));
+            if (middleColumn < column) {
+                low = middle + 1;
+            } else if (middleColumn > column) {
+                high = middle - 1;
+            } else {
+                return file.getLong(section.countsPosition + (8L * middle));
+            }
+        }
+        return 0;
+    }
+
+    protected Section getSection(int model) {
+        for (int i = 0; i < sections.length; ++i) {
+            if (sections[i].model == model) {
+                return sections[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the number of documents of the index these counts have been
+     * determined for. It is used to detect whether the index has been changed
+     * afterwards.
+     */
+    public long getNumberOfDocuments() {
+        return numberOfDocuments;
+    }
+
+    /**
+     * Returns the maximum document id (exclusive) of the index these counts
+     * have been determined for.
+     */
+    public int getMaxDoc() {
+        return maxDoc;
+    }
+
+    public int getMinCount() {
+        return minCount;
+    }
+
+    public int getNumberOfWords() {
+        return wordIds.size();
+    }
+
+    /**
+     * Returns the ids of the available models.
+     */
+    public int[] getModels() {
+        int models[] = new int[sections.length];
+        for (int i = 0; i < sections.length; ++i) {
+            models[i] = sections[i].model;
+        }
+        return models;
+    }
+
+    /**
+     * Returns the number of stored pairs of the given model or -1 if the model
+     * is not available.
+     */
+    public long getNumberOfPairs(int model) {
+        Section section = getSection(model);
+        return (section != null) ? section.numberOfPairs : -1;
+    }
+
+    /**
+     * The positions of the single parts of a model section.
+     */
+    protected static class Section {
+        public final int model;
+        public final long total;
+        public final long numberOfPairs;
+        public final long singlesPosition;
+        public final long rowStartsPosition;
+        public final long countsPosition;
+        public final long columnsPosition;
+
+        public Section(int model, long total, long position, long numberOfPairs, int numberOfWords) {
+            this.model = model;
+            this.total = total;
+            this.numberOfPairs = numberOfPairs;
+            singlesPosition = position;
+            rowStartsPosition = singlesPosition + (8L * numberOfWords);
+            countsPosition = rowStartsPosition + (8L * (numberOfWords + 1));
+            columnsPosition = countsPosition + (8L * numberOfPairs);
+        }
+    }
+
+    /**
+     * Writes a pair counts file. The models are written one after the other.
+     * The pairs of a model have to be added ordered by their first and second
+     * word id.
+     * 
+     * @author Michael R&ouml;der (roeder@informatik.uni-leipzig.de)
+     *
+     */
+    public static class Writer {
+
+        protected File file;
+        protected DataOutputStream out;
+        protected long position;
+        protected int numberOfWords;
+        protected DataOutputStream countsOut;
+        protected DataOutputStream columnsOut;
+        protected File countsFile;
+        protected File columnsFile;
+        protected int model;
+        protected long total;
+        protected long singles[];
+        protected long rowStarts[];
+        protected int lastRow;
+        protected int lastColumn;
+        protected long numberOfPairs;
+        protected DataOutputStream tableOut;
+        protected ByteArrayOutputStream table = new ByteArrayOutputStream();
+        protected int numberOfModels = 0;
+
+        /**
+         * Creates a writer and writes the header and the vocabulary.
+         * 
+         * @param words
+         *            the vocabulary sorted by the UTF-8 bytes of the words.
+         *            The position of a word is its id.
+         */
+        public Writer(String fileName, long numberOfDocuments, int maxDoc, int minCount, byte words[][])
+                throws IOException {
+            file = new File(fileName);
+            if ((file.getParentFile() != null) && (!file.getParentFile().exists())) {
+                file.getParentFile().mkdirs();
+            }
+            numberOfWords = words.length;
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+            out.writeInt(MAGIC_NUMBER);
+            out.writeInt(VERSION);
+            out.writeLong(numberOfDocuments);
+            out.writeInt(maxDoc);
+            out.writeInt(minCount);
+            out.writeInt(numberOfWords);
+            position = 28;
+            for (int i = 0; i < words.length; ++i) {
+                out.writeInt(words[i].length);
+                out.write(words[i]);
+                position += 4 + words[i].length;
+            }
+            tableOut = new DataOutputStream(table);
+        }
+
+        /**
+         * Starts the section of the given model.
+         * 
+         * @param model
+         *            the id of the model
+         * @param total
+         *            the number of documents or windows of the model
+         * @param singles
+         *            the counts of the single words
+         */
+        public void startModel(int model, long total, long singles[]) throws IOException {
+            this.model = model;
+            this.total = total;
+            this.singles = singles;
+            rowStarts = new long[numberOfWords + 1];
+            lastRow = 0;
+            lastColumn = -1;
+            numberOfPairs = 0;
+            countsFile = File.createTempFile("paircounts", ".counts");
+            columnsFile = File.createTempFile("paircounts", ".columns");
+            countsOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(countsFile)));
+            columnsOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(columnsFile)));
+        }
+
+        /**
+         * Adds the count of the given pair (wordId1 &lt; wordId2).
+         */
+        public void addPair(int wordId1, int wordId2, long count) throws IOException {
+            if ((wordId1 < lastRow) || ((wordId1 == lastRow) && (wordId2 <= lastColumn)) || (wordId2 <= wordId1)) {
+                throw new IllegalArgumentException("The pairs have to be added in ascending order.");
+            }
+            while (lastRow < wordId1) {
+                ++lastRow;
+                rowStarts[lastRow] = numberOfPairs;
+            }
+            lastColumn = wordId2;
+            countsOut.writeLong(count);
+            columnsOut.writeInt(wordId2);
+            ++numberOfPairs;
+        }
+
+        /**
+         * Finishes the section of the current model.
+         */
+        public void finishModel() throws IOException {
+            try {
+                countsOut.close();
+                columnsOut.close();
+                while (lastRow < numberOfWords) {
+                    ++lastRow;
+                    rowStarts[lastRow] = numberOfPairs;
+                }
+                padToLongs();
+                tableOut.writeInt(model);
+                tableOut.writeInt(0);
+                tableOut.writeLong(total);
+                tableOut.writeLong(position);
+                tableOut.writeLong(numberOfPairs);
+                ++numberOfModels;
+                for (int i = 0; i < singles.length; ++i) {
+                    out.writeLong(singles[i]);
+                }
+                for (int i = 0; i < rowStarts.length; ++i) {
+                    out.writeLong(rowStarts[i]);
+                }
+                position += 8L * (singles.length + rowStarts.length);
+                position += copy(countsFile);
+                position += copy(columnsFile);
+            } finally {
+                countsFile.delete();
+                columnsFile.delete();
+            }
+        }
+
+        private long copy(File source) throws IOException {
+            FileInputStream in = new FileInputStream(source);
+            try {
+                return IOUtils.copyLarge(in, out);
+            } finally {
+                in.close();
+            }
+        }
+
+        private void padToLongs() throws IOException {
+            while ((position & 7) != 0) {
+                out.writeByte(0);
+                ++position;
+            }
+        }
+
+        /**
+         * Writes the model table and closes the file.
+         */
+        public void close() throws IOException {
+            try {
+                padToLongs();
+                long tablePosition = position;
+                tableOut.flush();
+                table.writeTo(out);
+                out.writeLong(tablePosition);
+                out.writeInt(numberOfModels);
+            } finally {
+                out.close();
+            }
+        }
+
+        /**
+         * Closes the file without finishing it, e.g., after an error.
+         */
+        public void abort() {
+            IOUtils.closeQuietly(out);
+            IOUtils.closeQuietly(countsOut);
+            IOUtils.closeQuietly(columnsOut);
+            if (countsFile != null) {
+                countsFile.delete();
+            }
+            if (columnsFile != null) {
+                columnsFile.delete();
+            }
+            file.delete();
+        }
+    }
+
+    /**
+     * Sorts the given words by their UTF-8 bytes (the order of the ids of a
+     * pair counts file) and removes duplicates.
+     */
+    public static byte[][] sortWords(String words[]) {
+        byte wordBytes[][] = new byte[words.length][];
+        for (int i = 0; i < words.length; ++i) {
+            wordBytes[i] = words[i].getBytes(UTF8);
+        }
+        Arrays.sort(wordBytes, new Comparator<byte[]>() {
+            @Override
+            public int compare(byte[] b1, byte[] b2) {
+                return compareBytes(b1, b2);
+            }
+        });
+        int count = 0;
+        for (int i = 0; i < wordBytes.length; ++i) {
+            if ((count == 0) || (compareBytes(wordBytes[count - 1], wordBytes[i]) != 0)) {
+                wordBytes[count] = wordBytes[i];
+                ++count;
+            }
+        }
+        return Arrays.copyOf(wordBytes, count);
+    }
+
+    /**
+     * Compares the given words using the unsigned values of their UTF-8 bytes
+     * (i.e., the order of the Lucene term dictionary).
+     */
+    public static int compareBytes(byte word1[], byte word2[]) {
+        int minLength = Math.min(word1.length, word2.length);
+        int diff;
+        for (int i = 0; i < minLength; ++i) {
+            diff = (word1[i] & 0xff) - (word2[i] & 0xff);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return word1.length - word2.length;
+    }
+}
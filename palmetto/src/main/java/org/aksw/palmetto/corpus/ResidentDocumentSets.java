@@ -0,0 +1,290 @@
+/**
+ * This file is part of Palmetto.
+ *
+ * Palmetto is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Palmetto is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Palmetto.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.aksw.palmetto.corpus;
+
+import java.util.Arrays;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.ObjectIntOpenHashMap;
+
+/**
+ * The document sets of the most frequent words of a corpus held in memory.
+ * The sets of the most frequent words are stored as dense bit sets over the
+ * global document id space (<code>[0, maxDoc)</code>) while the sets of the
+ * other words are stored as sorted arrays of document ids. The sets are
+ * loaded once (e.g., at startup) and their size is bounded by a byte budget.
+ * Words that do not fit into the budget are not resident and have to be
+ * requested from the corpus adapter.
+ * 
+ * <p>
+ * Instances are immutable and can be shared between threads.
+ * </p>
+ * 
+ * @author Michael R&ouml;der (roeder@informatik.uni-leipzig.de)
+ *
+ */
+public class ResidentDocumentSets {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ResidentDocumentSets.class);
+
+    /**
+     * The default number of words that are stored as dense bit sets.
+     */
+    public static final int DEFAULT_NUMBER_OF_DENSE_WORDS = 1000;
+    /**
+     * The default number of bytes the document sets may occupy (512MB).
+     */
+    public static final long DEFAULT_BYTE_BUDGET = 512L * 1024L * 1024L;
+    /**
+     * The id of words that are not resident.
+     */
+    public static final int NOT_RESIDENT = -1;
+
+    /**
+     * Requests the documents of the given words from the given adapter and
+     * creates the resident document sets. The words have to be sorted by
+     * their document frequencies in descending order. The first
+     * <code>numberOfDenseWords</code> words are stored as dense bit sets
+     * unless a sorted array would need less memory. Words are added in the
+     * given order as long as their estimated size fits into the remaining
+     * budget. A word that does not fit is skipped and the next (less
+     * frequent) word is tried.
+     * 
+     * @param adapter
+     *            the adapter the documents are requested from
+     * @param words
+     *            the words sorted by their document frequencies in descending
+     *            order
+     * @param documentFrequencies
+     *            the (estimated) document frequencies of the words
+     * @param maxDoc
+     *            the upper bound (exclusive) of the document ids
+     * @param numberOfDenseWords
+     *            the maximum number of words stored as dense bit sets
+     * @param byteBudget
+     *            the maximum number of bytes the document sets may occupy
+     */
+    public static ResidentDocumentSets create(BooleanDocumentSupportingAdapter adapter, String words[],
+            int documentFrequencies[], int maxDoc, int numberOfDenseWords, long byteBudget) {
+        int numberOfBlocks = (maxDoc + 63) >>> 6;
+        long denseSetSize = 8L * numberOfBlocks;
+        long remainingBudget = byteBudget;
+        ObjectIntOpenHashMap<String> wordIds = new ObjectIntOpenHashMap<String>();
+        long denseSets[][] = new long[Math.min(numberOfDenseWords, words.length)][];
+        int sparseSets[][] = new int[words.length][];
+        int counts[] = new int[words.length];
+        int denseIds[] = new int[words.length];
+        int numberOfDenseSets = 0, numberOfSets = 0;
+        IntArrayList documents = new IntArrayList();
+        int sortedDocuments[];
+        long size;
+        boolean dense;
+        for (int i = 0; i < words.length; ++i) {
+            dense = (numberOfDenseSets < denseSets.length) && (denseSetSize < (4L * documentFrequencies[i]));
+            size = (dense ? denseSetSize : (4L * documentFrequencies[i])) + getWordOverhead(words[i]);
+            if ((size > remainingBudget) || (documentFrequencies[i] == 0) || wordIds.containsKey(words[i])) {
+                continue;
+            }
+            documents.clear();
+            adapter.getDocumentsWithWord(words[i], documents);
+            sortedDocuments = toSortedSet(documents);
+            if ((sortedDocuments.length > 0) && (sortedDocuments[sortedDocuments.length - 1] >= maxDoc)) {
+                throw new IllegalArgumentException("The adapter returned the document id "
+                        + sortedDocuments[sortedDocuments.length - 1] + " for the word \"" + words[i]
+                        + "\" which is not smaller than maxDoc=" + maxDoc + ".");
+            }
+            if (dense) {
+                denseSets[numberOfDenseSets] = toBitSet(sortedDocuments, numberOfBlocks);
+                denseIds[numberOfSets] = numberOfDenseSets;
+                ++numberOfDenseSets;
+            } else {
+                sparseSets[numberOfSets] = sortedDocuments;
+                denseIds[numberOfSets] = NOT_RESIDENT;
+                size = (4L * sortedDocuments.length) + getWordOverhead(words[i]);
+            }
+            counts[numberOfSets] = sortedDocuments.length;
+            wordIds.put(words[i], numberOfSets);
+            ++numberOfSets;
+            remainingBudget -= size;
+        }
+        ResidentDocumentSets residentSets = new ResidentDocumentSets(maxDoc, wordIds, Arrays.copyOf(denseIds,
+                numberOfSets), Arrays.copyOf(denseSets, numberOfDenseSets), Arrays.copyOf(sparseSets, numberOfSets),
+                Arrays.copyOf(counts, numberOfSets), byteBudget - remainingBudget);
+        LOGGER.info("Loaded the document sets of " + numberOfSets + " words (" + numberOfDenseSets
+                + " dense) occupying " + residentSets.getNumberOfBytes() + " bytes.");
+        return residentSets;
+    }
+
+    /**
+     * Returns the number of bytes a word is assumed to need inside the map
+     * and the arrays in addition to its document set.
+     */
+    protected static long getWordOverhead(String word) {
+        return (2L * word.length()) + 64;
+    }
+
+    /**
+     * Sorts the given documents and removes duplicates.
+     */
+    protected static int[] toSortedSet(IntArrayList documents) {
+        int sorted[] = documents.toArray();
+        Arrays.sort(sorted);
+        int size = 0;
+        for (int i = 0; i < sorted.length; ++i) {
+            if ((size == 0) || (sorted[size - 1] != sorted[i])) {
+                sorted[size] = sorted[i];
+                ++size;
+            }
+        }
+        return (size < sorted.length) ? Arrays.copyOf(sorted, size) : sorted;
+    }
+
+    protected static long[] toBitSet(int sortedDocuments[], int numberOfBlocks) {
+        long bitSet[] = new long[numberOfBlocks];
+        for (int i = 0; i < sortedDocuments.length; ++i) {
+            bitSet[sortedDocuments[i] >>> 6] |= 1L << sortedDocuments[i];
+        }
+        return bitSet;
+    }
+
+    private final int maxDoc;
+    private final ObjectIntOpenHashMap<String> wordIds;
+    /**
+     * The id of the dense set of every resident word or {@link #NOT_RESIDENT}
+     * if the set of the word is stored as sorted array.
+     */
+    private final int denseIds[];
+    private final long denseSets[][];
+    private final int firstBlocks[];
+    private final int lastBlocks[];
+    private final int sparseSets[][];
+    private final int counts[];
+    private final long numberOfBytes;
+
+    protected ResidentDocumentSets(int maxDoc, ObjectIntOpenHashMap<String> wordIds, int denseIds[],
+            long denseSets[][], int sparseSets[][], int counts[], long numberOfBytes) {
+        this.maxDoc = maxDoc;
+        this.wordIds = wordIds;
+        this.denseIds = denseIds;
+        this.denseSets = denseSets;
+        this.sparseSets = sparseSets;
+        this.counts = counts;
+        this.numberOfBytes = numberOfBytes;
+        firstBlocks = new int[denseSets.length];
+        lastBlocks = new int[denseSets.length];
+        for (int i = 0; i < denseSets.length; ++i) {
+            firstBlocks[i] = Integer.MAX_VALUE;
+            lastBlocks[i] = -1;
+            for (int b = 0; b < denseSets[i].length; ++b) {
+                if (denseSets[i][b] != 0) {
+                    if (firstBlocks[i] > b) {
+                        firstBlocks[i] = b;
+                    }
+                    lastBlocks[i] = b;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the id of the given word or {@link #NOT_RESIDENT} if the
+     * documents of the word are not resident.
+     */
+    public int getId(String word) {
+        if ((word != null) && wordIds.containsKey(word)) {
+            return wordIds.lget();
+        } else {
+            return NOT_RESIDENT;
+        }
+    }
+
+    /**
+     * Returns true if the documents of the word with the given id are stored
+     * as dense bit set.
+     */
+    public boolean isDense(int wordId) {
+        return denseIds[wordId] != NOT_RESIDENT;
+    }
+
+    /**
+     * Returns the dense bit set of the word with the given id. The bit set
+     * has {@link #getNumberOfBlocks()} blocks and must not be changed.
+     */
+    public long[] getDenseSet(int wordId) {
+        return denseSets[denseIds[wordId]];
+    }
+
+    /**
+     * Returns the first non-zero block of the dense bit set of the word with
+     * the given id or {@link Integer#MAX_VALUE} if the set is empty.
+     */
+    public int getFirstBlock(int wordId) {
+        return firstBlocks[denseIds[wordId]];
+    }
+
+    /**
+     * Returns the last non-zero block of the dense bit set of the word with
+     * the given id or -1 if the set is empty.
+     */
+    public int getLastBlock(int wordId) {
+        return lastBlocks[denseIds[wordId]];
+    }
+
+    /**
+     * Returns the sorted document ids of the word with the given id if they
+     * are not stored as dense bit set. The array must not be changed.
+     */
+    public int[] getSparseSet(int wordId) {
+        return sparseSets[wordId];
+    }
+
+    /**
+     * Returns the number of documents containing the word with the given id.
+     */
+    public int getDocumentFrequency(int wordId) {
+        return counts[wordId];
+    }
+
+    public int getMaxDoc() {
+        return maxDoc;
+    }
+
+    public int getNumberOfBlocks() {
+        return (maxDoc + 63) >>> 6;
+    }
+
+    /**
+     * Returns the number of resident words.
+     */
+    public int size() {
+        return counts.length;
+    }
+
+    public int getNumberOfDenseSets() {
+        return denseSets.length;
+    }
+
+    /**
+     * Returns the (estimated) number of bytes occupied by the document sets.
+     */
+    public long getNumberOfBytes() {
+        return numberOfBytes;
+    }
+}
@@ -0,0 +1,65 @@
+/**
+ * This file is part of Palmetto.
+ *
+ * Palmetto is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Palmetto is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Palmetto.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.aksw.palmetto.corpus;
+
+/**
+ * A {@link WindowSupportingAdapter} that can hand the positions of words to a
+ * consumer document by document. In contrast to
+ * {@link #requestWordPositionsInDocuments(String[], com.carrotsearch.hppc.IntIntOpenHashMap)}
+ * , the positions of all documents do not have to be held in memory at the
+ * same time, i.e., the memory needed for a request is bounded by the largest
+ * single document.
+ * 
+ * @author Michael R&ouml;der (roeder@informatik.uni-leipzig.de)
+ * 
+ */
+public interface StreamingWindowSupportingAdapter extends WindowSupportingAdapter {
+
+    /**
+     * Determines the positions of the given words and hands them to the given
+     * consumer. Every document containing at least one of the words is handed
+     * to the consumer exactly once. The documents are handed over in the order
+     * of their ids by the calling thread.
+     * 
+     * @param words
+     *            the words for which the positions inside the documents should
+     *            be determined
+     * @param consumer
+     *            the consumer receiving the positions of the single documents
+     */
+    public void streamWordPositionsInDocuments(String words[], DocumentPositionsConsumer consumer);
+
+    /**
+     * Determines the positions of the given words and hands them to the given
+     * consumer. In contrast to
+     * {@link #streamWordPositionsInDocuments(String[], DocumentPositionsConsumer)}
+     * , only documents containing at least the given number of the words are
+     * handed to the consumer. Note that a word that occurs several times in
+     * the given array is counted several times. Implementations should skip
+     * the positions of the other documents without reading them.
+     * 
+     * @param words
+     *            the words for which the positions inside the documents should
+     *            be determined
+     * @param minNumberOfWords
+     *            the minimum number of words a document has to contain
+     * @param consumer
+     *            the consumer receiving the positions of the single documents
+     */
+    public void streamWordPositionsInDocuments(String words[], int minNumberOfWords,
+            DocumentPositionsConsumer consumer);
+}
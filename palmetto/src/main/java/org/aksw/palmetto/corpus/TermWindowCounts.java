@@ -0,0 +1,362 @@
+/**
+ * This file is part of Palmetto.
+ *
+ * Palmetto is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Palmetto is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Palmetto.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.aksw.palmetto.corpus;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.Charset;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.carrotsearch.hppc.LongArrayList;
+
+/**
+ * The number of boolean sliding windows containing a single word for every
+ * word of a corpus and several window sizes. These totals are determined
+ * while indexing and are used by the sliding window based frequency
+ * determiners for the counts of single words, i.e., only documents containing
+ * at least two words of a word set have to be retrieved.
+ * 
+ * <p>
+ * The counts are stored in a binary file (big endian) that is mapped into
+ * memory. The file has the following layout: magic number, version, number of
+ * documents and maximum document id of the index the counts belong to, number
+ * of window sizes followed by the window sizes, the entries of the single
+ * words sorted by their UTF-8 bytes (byte length, bytes and one count per
+ * window size), the offsets of the single entries and, finally, the position
+ * of the offsets and the number of words. Instances are immutable and can be
+ * shared between threads.
+ * </p>
+ * 
+ * @author Michael R&ouml;der (roeder@informatik.uni-leipzig.de)
+ *
+ */
+public class TermWindowCounts {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TermWindowCounts.class);
+
+    public static final int MAGIC_NUMBER = 0x50545743;
+    public static final int VERSION = 1;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final int TRAILER_SIZE = 12;
+
+    /**
+     * Counts the boolean sliding windows of the given size that contain a word
+     * with the given sorted positions inside a document with the given length.
+     * A document that is not longer than the window forms a single window.
+     * Positions that are not smaller than the document length are ignored
+     * (like the sliding window counting of the frequency determiners does).
+     * 
+     * @param positions
+     *            the sorted positions of the word
+     * @param numberOfPositions
+     *            the number of positions inside the given array
+     * @param docLength
+     *            the length of the document
+     * @param windowSize
+     *            the size of the window
+     * @return the number of windows containing the word
+     */
+    public static long countWindowsContainingWord(int positions[], int numberOfPositions, int docLength,
+            int windowSize) {
+        if (numberOfPositions == 0) {
+            return 0;
+        }
+        if (docLength <= windowSize) {
+            return 1;
+        }
+        // the windows are identified by their last position, i.e., [windowSize - 1, docLength - 1]
+        long count = 0;
+        int lastCoveredWindow = windowSize - 2;
+        int start, end;
+        for (int i = 0; i < numberOfPositions; ++i) {
+            start = Math.max(positions[i], lastCoveredWindow + 1);
+            end = Math.min(positions[i] + windowSize - 1, docLength - 1);
+            if (end >= start) {
+                count += end - start + 1;
+                lastCoveredWindow = end;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Reads the counts from the given file by mapping it into memory. Returns
+     * null if the file does not exist or can not be read.
+     */
+    public static TermWindowCounts read(String fileName) {
+        File file = new File(fileName);
+        if (!file.exists()) {
+            return null;
+        }
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(file, "r");
+            if (raf.length() > Integer.MAX_VALUE) {
+                LOGGER.error("The term window counts file \"" + fileName + "\" is too large to be mapped.");
+                return null;
+            }
+            ByteBuffer buffer = raf.getChannel().map(MapMode.READ_ONLY, 0, raf.length());
+            if (buffer.getInt() != MAGIC_NUMBER) {
+                LOGGER.error("The file \"" + fileName + "\" is not a term window counts file.");
+                return null;
+            }
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                LOGGER.error("The term window counts file \"" + fileName + "\" has the unsupported version "
+                        + version + ".");
+                return null;
+            }
+            long numberOfDocuments = buffer.getLong();
+            int maxDoc = buffer.getInt();
+            int windowSizes[] = new int[buffer.getInt()];
+            for (int i = 0; i < windowSizes.length; ++i) {
+                windowSizes[i] = buffer.getInt();
+            }
+            int offsetsPosition = (int) buffer.getLong(buffer.limit() - TRAILER_SIZE);
+            int numberOfWords = buffer.getInt(buffer.limit() - 4);
+            return new TermWindowCounts(numberOfDocuments, maxDoc, windowSizes, buffer, offsetsPosition,
+                    numberOfWords);
+        } catch (Exception e) {
+            LOGGER.error("Couldn't read term window counts file \"" + fileName + "\".", e);
+            return null;
+        } finally {
+            // the mapping stays valid after the channel has been closed
+            if (raf != null) {
+                try {
+                    raf.close();
+                } catch (IOException e) {
+                }
+            }
+        }
+    }
+
+    protected long numberOfDocuments;
+    protected int maxDoc;
+    protected int windowSizes[];
+    protected ByteBuffer buffer;
+    protected int offsetsPosition;
+    protected int numberOfWords;
+
+    protected TermWindowCounts(long numberOfDocuments, int maxDoc, int windowSizes[], ByteBuffer buffer,
+            int offsetsPosition, int numberOfWords) {
+        this.numberOfDocuments = numberOfDocuments;
+        this.maxDoc = maxDoc;
+        this.windowSizes = windowSizes;
+        this.buffer = buffer;
+        this.offsetsPosition = offsetsPosition;
+        this.numberOfWords = numberOfWords;
+    }
+
+    /**
+     * Returns the number of windows of the given size containing the given
+     * word or -1 if the counts of this window size are not available. Words
+     * that are not part of the corpus have a count of 0.
+     */
+    public long getWindowCount(String word, int windowSize) {
+        int windowSizeId = getWindowSizeId(windowSize);
+        if (windowSizeId < 0) {
+            return -1;
+        }
+        int entryOffset = searchEntry(word.getBytes(UTF8));
+        if (entryOffset < 0) {
+            return 0;
+        }
+        return buffer.getLong(entryOffset + 4 + buffer.getInt(entryOffset) + (8 * windowSizeId));
+    }
+
+    /**
+     * Returns whether the counts of the given window size are available.
+     */
+    public boolean hasWindowSize(int windowSize) {
+        return getWindowSizeId(windowSize) >= 0;
+    }
+
+    protected int getWindowSizeId(int windowSize) {
+        for (int i = 0; i < windowSizes.length; ++i) {
+            if (windowSizes[i] == windowSize) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Searches the entry of the given word using a binary search over the
+     * sorted entries.
+     * 
+     * @return the offset of the entry or -1 if the word is not known
+     */
+    protected int searchEntry(byte word[]) {
+        int low = 0, high = numberOfWords - 1, middle, entryOffset, comparison;
+        while (low <= high) {
+            middle = (low + high) >>> 1;
+            entryOffset = getEntryOffset(middle);
+            comparison = compare(entryOffset, word);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return entryOffset;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Compares the word of the entry at the given offset with the given word
+     * using the unsigned values of their UTF-8 bytes (i.e., the order of the
+     * Lucene term dictionary).
+     */
+    protected int compare(int entryOffset, byte word[]) {
+        int length = buffer.getInt(entryOffset);
+        int minLength = Math.min(length, word.length);
+        int diff;
+        for (int i = 0; i < minLength; ++i) {
+            diff = (buffer.get(entryOffset + 4 + i) & 0xff) - (word[i] & 0xff);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return length - word.length;
+    }
+
+    /**
+     * Returns the UTF-8 bytes of the word with the given index, i.e., the
+     * position of the word inside the sorted entries.
+     */
+    public byte[] getWordBytes(int index) {
+        int entryOffset = getEntryOffset(index);
+        byte word[] = new byte[buffer.getInt(entryOffset)];
+        for (int i = 0; i < word.length; ++i) {
+            word[i] = buffer.get(entryOffset + 4 + i);
+        }
+        return word;
+    }
+
+    /**
+     * Writes the counts of the word with the given index into the given array
+     * (in the order of the window sizes).
+     */
+    public void getWindowCounts(int index, long counts[]) {
+        int entryOffset = getEntryOffset(index);
+        int countsOffset = entryOffset + 4 + buffer.getInt(entryOffset);
+        for (int i = 0; i < windowSizes.length; ++i) {
+            counts[i] = buffer.getLong(countsOffset + (8 * i));
+        }
+    }
+
+    protected int getEntryOffset(int index) {
+        return (int) buffer.getLong(offsetsPosition + (8 * index));
+    }
+
+    /**
+     * Returns the number of documents of the index these counts have been
+     * determined for. It is used to detect whether the index has been changed
+     * afterwards.
+     */
+    public long getNumberOfDocuments() {
+        return numberOfDocuments;
+    }
+
+    /**
+     * Returns the maximum document id (exclusive) of the index these counts
+     * have been determined for.
+     */
+    public int getMaxDoc() {
+        return maxDoc;
+    }
+
+    public int[] getWindowSizes() {
+        return windowSizes;
+    }
+
+    public int getNumberOfWords() {
+        return numberOfWords;
+    }
+
+    /**
+     * Writes term window counts file. The words have to be added in the order
+     * of their unsigned UTF-8 bytes.
+     * 
+     * @author Michael R&ouml;der (roeder@informatik.uni-leipzig.de)
+     *
+     */
+    public static class Writer {
+
+        protected DataOutputStream out;
+        protected int windowSizes[];
+        protected LongArrayList offsets = new LongArrayList();
+        protected long position;
+
+        public Writer(String fileName, long numberOfDocuments, int maxDoc, int windowSizes[]) throws IOException {
+            File file = new File(fileName);
+            if ((file.getParentFile() != null) && (!file.getParentFile().exists())) {
+                file.getParentFile().mkdirs();
+            }
+            this.windowSizes = windowSizes;
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+            out.writeInt(MAGIC_NUMBER);
+            out.writeInt(VERSION);
+            out.writeLong(numberOfDocuments);
+            out.writeInt(maxDoc);
+            out.writeInt(windowSizes.length);
+            for (int i = 0; i < windowSizes.length; ++i) {
+                out.writeInt(windowSizes[i]);
+            }
+            position = 24 + (4 * windowSizes.length);
+        }
+
+        /**
+         * Adds the window counts of the given word. The counts have to be in
+         * the order of the window sizes.
+         */
+        public void add(byte word[], int offset, int length, long counts[]) throws IOException {
+            offsets.add(position);
+            out.writeInt(length);
+            out.write(word, offset, length);
+            for (int i = 0; i < windowSizes.length; ++i) {
+                out.writeLong(counts[i]);
+            }
+            position += 4 + length + (8 * windowSizes.length);
+        }
+
+        /**
+         * Writes the offsets of the entries and closes the file.
+         */
+        public void close() throws IOException {
+            try {
+                for (int i = 0; i < offsets.elementsCount; ++i) {
+                    out.writeLong(offsets.buffer[i]);
+                }
+                out.writeLong(position);
+                out.writeInt(offsets.elementsCount);
+            } finally {
+                out.close();
+            }
+        }
+    }
+}
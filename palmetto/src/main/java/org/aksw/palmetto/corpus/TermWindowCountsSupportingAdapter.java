@@ -0,0 +1,36 @@
+/**
+ * This file is part of Palmetto.
+ *
+ * Palmetto is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Palmetto is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Palmetto.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.aksw.palmetto.corpus;
+
+/**
+ * Interface of a {@link WindowSupportingAdapter} that offers the
+ * {@link TermWindowCounts} of its corpus, i.e., the number of sliding windows
+ * containing the single words that have been determined while indexing.
+ * 
+ * @author Michael R&ouml;der (roeder@informatik.uni-leipzig.de)
+ *
+ */
+public interface TermWindowCountsSupportingAdapter extends WindowSupportingAdapter {
+
+    /**
+     * Returns the window counts of the single words or null if they are not
+     * available or do not fit to the current state of the corpus.
+     * 
+     * @return the window counts of the single words
+     */
+    public TermWindowCounts getTermWindowCounts();
+}
@@ -0,0 +1,36 @@
+/**
+ * This file is part of Palmetto.
+ *
+ * Palmetto is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Palmetto is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Palmetto.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.aksw.palmetto.corpus;
+
+/**
+ * Interface of an adapter whose corpus can change while it is used, e.g.,
+ * because the adapter can be reopened. Classes that cache data derived from
+ * the corpus can use the version to detect that their data is outdated.
+ * 
+ * @author Michael R&ouml;der (roeder@informatik.uni-leipzig.de)
+ *
+ */
+public interface VersionSupportingAdapter extends CorpusAdapter {
+
+    /**
+     * Returns the version of the corpus that is currently used by the
+     * adapter. The version increases every time the corpus changes.
+     * 
+     * @return the current version of the corpus
+     */
+    public long getCorpusVersion();
+}
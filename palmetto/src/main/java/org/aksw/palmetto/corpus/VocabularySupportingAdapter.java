@@ -0,0 +1,35 @@
+/**
+ * This file is part of Palmetto.
+ *
+ * Palmetto is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Palmetto is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Palmetto.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.aksw.palmetto.corpus;
+
+/**
+ * Interface of an adapter that offers the vocabulary of its corpus. The ids of
+ * this vocabulary can be used instead of the words when calculating
+ * coherences, e.g., by callers that already work with word ids.
+ * 
+ * @author Michael R&ouml;der (roeder@informatik.uni-leipzig.de)
+ *
+ */
+public interface VocabularySupportingAdapter extends CorpusAdapter {
+
+    /**
+     * Returns the vocabulary of the corpus or null if it is not available.
+     * 
+     * @return the vocabulary of the corpus
+     */
+    public CorpusVocabulary getVocabulary();
+}
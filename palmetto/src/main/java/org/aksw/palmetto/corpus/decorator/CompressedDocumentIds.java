@@ -0,0 +1,113 @@
+/**
+ * This file is part of Palmetto.
+ *
+ * Palmetto is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Palmetto is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Palmetto.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.aksw.palmetto.corpus.decorator;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.IntOpenHashSet;
+
+/**
+ * Encodes lists of document ids as byte arrays. The first value is the number
+ * of ids followed by the differences between consecutive ids. All values are
+ * stored using a variable number of bytes (7 bits per byte). Since the
+ * differences are zig-zag encoded, the ids do not have to be sorted but sorted
+ * lists lead to the smallest arrays.
+ * 
+ * @author Michael R&ouml;der (roeder@informatik.uni-leipzig.de)
+ *
+ */
+public class CompressedDocumentIds {
+
+    /**
+     * Encodes the given document ids.
+     * 
+     * @param documents
+     *            the list of document ids
+     * @return the compressed ids
+     */
+    public static byte[] encode(IntArrayList documents) {
+        // every value needs at most 5 bytes
+        byte buffer[] = new byte[5 * (documents.elementsCount + 1)];
+        int pos = writeVInt(documents.elementsCount, buffer, 0);
+        int lastId = 0, delta;
+        for (int i = 0; i < documents.elementsCount; ++i) {
+            delta = documents.buffer[i] - lastId;
+            pos = writeVInt((delta << 1) ^ (delta >> 31), buffer, pos);
+            lastId = documents.buffer[i];
+        }
+        byte encoded[] = new byte[pos];
+        System.arraycopy(buffer, 0, encoded, 0, pos);
+        return encoded;
+    }
+
+    /**
+     * Decodes the given ids and appends them to the given list.
+     */
+    public static void decode(byte encoded[], IntArrayList documents) {
+        int pos[] = new int[1];
+        int count = readVInt(encoded, pos);
+        documents.ensureCapacity(documents.elementsCount + count);
+        int id = 0, zigZag;
+        for (int i = 0; i < count; ++i) {
+            zigZag = readVInt(encoded, pos);
+            id += (zigZag >>> 1) ^ -(zigZag & 1);
+            documents.add(id);
+        }
+    }
+
+    /**
+     * Decodes the given ids and adds them to the given set.
+     */
+    public static void decode(byte encoded[], IntOpenHashSet documents) {
+        int pos[] = new int[1];
+        int count = readVInt(encoded, pos);
+        int id = 0, zigZag;
+        for (int i = 0; i < count; ++i) {
+            zigZag = readVInt(encoded, pos);
+            id += (zigZag >>> 1) ^ -(zigZag & 1);
+            documents.add(id);
+        }
+    }
+
+    /**
+     * Returns the number of ids stored in the given array.
+     */
+    public static int size(byte encoded[]) {
+        return readVInt(encoded, new int[1]);
+    }
+
+    private static int writeVInt(int value, byte buffer[], int pos) {
+        while ((value & ~0x7F) != 0) {
+            buffer[pos] = (byte) ((value & 0x7F) | 0x80);
+            ++pos;
+            value >>>= 7;
+        }
+        buffer[pos] = (byte) value;
+        return pos + 1;
+    }
+
+    private static int readVInt(byte buffer[], int pos[]) {
+        byte b = buffer[pos[0]];
+        ++pos[0];
+        int value = b & 0x7F;
+        for (int shift = 7; b < 0; shift += 7) {
+            b = buffer[pos[0]];
+            ++pos[0];
+            value |= (b & 0x7F) << shift;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,560 @@
+/**
+ * This file is part of Palmetto.
+ *
+ * Palmetto is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Palmetto is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Palmetto.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.aksw.palmetto.corpus.decorator;
+
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.aksw.palmetto.corpus.CorpusStatistics;
+import org.aksw.palmetto.corpus.CorpusVocabulary;
+import org.aksw.palmetto.corpus.DocumentPositionsConsumer;
+import org.aksw.palmetto.corpus.StatisticsSupportingAdapter;
+import org.aksw.palmetto.corpus.StreamingWindowSupportingAdapter;
+import org.aksw.palmetto.corpus.TermWindowCounts;
+import org.aksw.palmetto.corpus.TermWindowCountsSupportingAdapter;
+import org.aksw.palmetto.corpus.VersionSupportingAdapter;
+import org.aksw.palmetto.corpus.VocabularySupportingAdapter;
+import org.aksw.palmetto.corpus.WindowSupportingAdapter;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.IntIntOpenHashMap;
+import com.carrotsearch.hppc.IntObjectOpenHashMap;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * A decorator for a {@link WindowSupportingAdapter} that caches the positions
+ * of single words. Since the cache sits behind
+ * {@link #requestWordPositionsInDocuments(String[], IntIntOpenHashMap)}, it is
+ * shared by all frequency determiners using this adapter, e.g., determiners
+ * with different window sizes.
+ * 
+ * <p>
+ * The positions of a word are stored in a single int array containing for
+ * every document its id, its length, the number of occurrences of the word and
+ * the positions of these occurrences (ordered by the document ids). The cache
+ * is bounded by a given number of bytes and evicts the least recently used
+ * entries first.
+ * </p>
+ * 
+ * <p>
+ * If the positions are streamed, the cached words are read from their packed
+ * arrays while the positions of the other words are streamed from the
+ * decorated adapter (if it supports streaming). The positions of a streamed
+ * word are added to the cache if all documents of the word have been streamed
+ * and the word does not need more than {@link #MAX_ENTRY_SHARE} of the cache.
+ * </p>
+ * 
+ * @author Michael R&ouml;der (roeder@informatik.uni-leipzig.de)
+ *
+ */
+public class PositionsCachingAdapterDecorator implements StreamingWindowSupportingAdapter,
+        TermWindowCountsSupportingAdapter, VocabularySupportingAdapter, StatisticsSupportingAdapter,
+        VersionSupportingAdapter {
+
+    /**
+     * The default size of the cache in bytes (512MB).
+     */
+    public static final long DEFAULT_BYTE_BUDGET = 512L * 1024L * 1024L;
+
+    /**
+     * The maximum share of the byte budget the positions of a single streamed
+     * word may have to be collected for the cache.
+     */
+    public static final int MAX_ENTRY_SHARE = 8;
+
+    protected WindowSupportingAdapter decorated;
+    protected Cache<VersionedWord, int[]> cache;
+    protected AtomicLong residentBytes = new AtomicLong();
+    /**
+     * The latest version of the corpus seen by the cache.
+     */
+    protected volatile long cachedVersion;
+    /**
+     * The maximum number of ints of the packed positions of a single streamed
+     * word that are collected for the cache.
+     */
+    protected long maxStreamedEntrySize;
+
+    public PositionsCachingAdapterDecorator(WindowSupportingAdapter decorated) {
+        this(decorated, DEFAULT_BYTE_BUDGET);
+    }
+
+    public PositionsCachingAdapterDecorator(WindowSupportingAdapter decorated, long byteBudget) {
+        this.decorated = decorated;
+        maxStreamedEntrySize = byteBudget / (4 * MAX_ENTRY_SHARE);
+        cachedVersion = getCorpusVersion();
+        cache = CacheBuilder.newBuilder().maximumWeight(byteBudget).weigher(new Weigher<VersionedWord, int[]>() {
+            @Override
+            public int weigh(VersionedWord key, int[] packedPositions) {
+                return getWeight(key.word, packedPositions);
+            }
+        }).removalListener(new RemovalListener<VersionedWord, int[]>() {
+            @Override
+            public void onRemoval(RemovalNotification<VersionedWord, int[]> notification) {
+                residentBytes.addAndGet(-getWeight(notification.getKey().word, notification.getValue()));
+            }
+        }).recordStats().build();
+    }
+
+    /**
+     * Returns the number of bytes an entry is assumed to need inside the cache.
+     */
+    protected static int getWeight(String word, int[] packedPositions) {
+        return (4 * packedPositions.length) + (2 * word.length());
+    }
+
+    @Override
+    public IntObjectOpenHashMap<IntArrayList[]> requestWordPositionsInDocuments(String[] words,
+            IntIntOpenHashMap docLengths) {
+        IntObjectOpenHashMap<IntArrayList[]> positionsInDocs = new IntObjectOpenHashMap<IntArrayList[]>();
+        long version = getCurrentVersion();
+        for (int i = 0; i < words.length; ++i) {
+            addPositions(getPackedPositions(words[i], version), positionsInDocs, docLengths, i, words.length);
+        }
+        return positionsInDocs;
+    }
+
+    /**
+     * Returns the packed positions of the given word in the given version of
+     * the corpus. If they are not cached, they are requested from the
+     * decorated adapter.
+     */
+    protected int[] getPackedPositions(final String word, long version) {
+        try {
+            return cache.get(new VersionedWord(word, version), new Callable<int[]>() {
+                @Override
+                public int[] call() throws Exception {
+                    IntIntOpenHashMap docLengths = new IntIntOpenHashMap();
+                    int packedPositions[] = pack(
+                            decorated.requestWordPositionsInDocuments(new String[] { word }, docLengths),
+                            docLengths);
+                    residentBytes.addAndGet(getWeight(word, packedPositions));
+                    return packedPositions;
+                }
+            });
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Couldn't request positions of \"" + word + "\".", e.getCause());
+        } catch (UncheckedExecutionException e) {
+            throw new IllegalStateException("Couldn't request positions of \"" + word + "\".", e.getCause());
+        }
+    }
+
+    /**
+     * Returns the current version of the corpus. If the version changed since
+     * the last request, the entries of the former version are removed from
+     * the cache. Entries that are added by requests that are still running on
+     * the former version are never hit and are evicted later on.
+     */
+    protected long getCurrentVersion() {
+        long version = getCorpusVersion();
+        if (version > cachedVersion) {
+            synchronized (this) {
+                if (version > cachedVersion) {
+                    cache.invalidateAll();
+                    cachedVersion = version;
+                }
+            }
+        }
+        return version;
+    }
+
+    /**
+     * Packs the positions of a single word into an int array. The documents
+     * are ordered by their ids.
+     */
+    protected static int[] pack(IntObjectOpenHashMap<IntArrayList[]> positionsInDocs, IntIntOpenHashMap docLengths) {
+        int size = 0;
+        IntArrayList positions;
+        Object values[] = (Object[]) positionsInDocs.values;
+        for (int i = 0; i < positionsInDocs.allocated.length; ++i) {
+            if (positionsInDocs.allocated[i]) {
+                positions = ((IntArrayList[]) values[i])[0];
+                size += 3 + ((positions != null) ? positions.elementsCount : 0);
+            }
+        }
+        int docIds[] = positionsInDocs.keys().toArray();
+        Arrays.sort(docIds);
+        int packedPositions[] = new int[size];
+        int pos = 0;
+        for (int i = 0; i < docIds.length; ++i) {
+            positions = positionsInDocs.get(docIds[i])[0];
+            packedPositions[pos] = docIds[i];
+            packedPositions[pos + 1] = docLengths.get(docIds[i]);
+            if (positions != null) {
+                packedPositions[pos + 2] = positions.elementsCount;
+                System.arraycopy(positions.buffer, 0, packedPositions, pos + 3, positions.elementsCount);
+                pos += 3 + positions.elementsCount;
+            } else {
+                pos += 3;
+            }
+        }
+        return packedPositions;
+    }
+
+    /**
+     * Adds the given packed positions of the word with the given id to the
+     * given map.
+     */
+    protected static void addPositions(int packedPositions[], IntObjectOpenHashMap<IntArrayList[]> positionsInDocs,
+            IntIntOpenHashMap docLengths, int wordId, int numberOfWords) {
+        int pos = 0, docId, freq;
+        IntArrayList positions[];
+        while (pos < packedPositions.length) {
+            docId = packedPositions[pos];
+            if (positionsInDocs.containsKey(docId)) {
+                positions = positionsInDocs.lget();
+            } else {
+                positions = new IntArrayList[numberOfWords];
+                positionsInDocs.put(docId, positions);
+            }
+            if (!docLengths.containsKey(docId)) {
+                docLengths.put(docId, packedPositions[pos + 1]);
+            }
+            freq = packedPositions[pos + 2];
+            if (positions[wordId] == null) {
+                positions[wordId] = new IntArrayList(freq);
+            }
+            // the positions are copied since the determiners might sort them
+            positions[wordId].add(packedPositions, pos + 3, freq);
+            pos += 3 + freq;
+        }
+    }
+
+    @Override
+    public void streamWordPositionsInDocuments(String[] words, DocumentPositionsConsumer consumer) {
+        streamWordPositionsInDocuments(words, 1, consumer);
+    }
+
+    /**
+     * Hands the positions of the given words to the given consumer. The
+     * positions of cached words are taken from the cache while the other
+     * words are streamed from the decorated adapter. If the decorated adapter
+     * can not stream positions, the positions of the missing words are
+     * requested and cached.
+     */
+    @Override
+    public void streamWordPositionsInDocuments(String[] words, int minNumberOfWords,
+            DocumentPositionsConsumer consumer) {
+        int packedPositions[][] = new int[words.length][];
+        int numberOfCachedWords = 0;
+        long version = getCurrentVersion();
+        for (int i = 0; i < words.length; ++i) {
+            packedPositions[i] = cache.getIfPresent(new VersionedWord(words[i], version));
+            if (packedPositions[i] != null) {
+                ++numberOfCachedWords;
+            }
+        }
+        if ((numberOfCachedWords < words.length) && !(decorated instanceof StreamingWindowSupportingAdapter)) {
+            for (int i = 0; i < words.length; ++i) {
+                if (packedPositions[i] == null) {
+                    packedPositions[i] = getPackedPositions(words[i], version);
+                }
+            }
+            numberOfCachedWords = words.length;
+        }
+        CachedPositionsMerger merger = new CachedPositionsMerger(words, packedPositions, minNumberOfWords, consumer,
+                version);
+        if (numberOfCachedWords < words.length) {
+            // a document has to contain the remaining number of words that can not be found in the cache
+            int minNumberOfStreamedWords = Math.max(1, minNumberOfWords - numberOfCachedWords);
+            merger.collectForCache = (minNumberOfStreamedWords == 1);
+            ((StreamingWindowSupportingAdapter) decorated).streamWordPositionsInDocuments(merger.streamedWords,
+                    minNumberOfStreamedWords, merger);
+        }
+        merger.finish();
+    }
+
+    /**
+     * Adds the given packed positions of a word streamed from the given version
+     * of the corpus to the cache.
+     */
+    protected void addToCache(String word, long version, int packedPositions[]) {
+        if (cache.asMap().putIfAbsent(new VersionedWord(word, version), packedPositions) == null) {
+            residentBytes.addAndGet(getWeight(word, packedPositions));
+        }
+    }
+
+    @Override
+    public int[][] getDocumentSizeHistogram() {
+        return decorated.getDocumentSizeHistogram();
+    }
+
+    /**
+     * Returns the statistics of the cache, e.g., its hit and miss counts.
+     */
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    public long getHitCount() {
+        return cache.stats().hitCount();
+    }
+
+    public long getMissCount() {
+        return cache.stats().missCount();
+    }
+
+    /**
+     * Returns the number of bytes currently used by the cached entries.
+     */
+    public long getResidentBytes() {
+        return residentBytes.get();
+    }
+
+    /**
+     * Returns the statistics of the decorated adapter or null if it does not
+     * offer statistics.
+     */
+    @Override
+    public CorpusStatistics getStatistics() {
+        if (decorated instanceof StatisticsSupportingAdapter) {
+            return ((StatisticsSupportingAdapter) decorated).getStatistics();
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the window counts of the decorated adapter or null if it does
+     * not offer them.
+     */
+    @Override
+    public TermWindowCounts getTermWindowCounts() {
+        if (decorated instanceof TermWindowCountsSupportingAdapter) {
+            return ((TermWindowCountsSupportingAdapter) decorated).getTermWindowCounts();
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the vocabulary of the decorated adapter or null if it does not
+     * offer a vocabulary.
+     */
+    @Override
+    public CorpusVocabulary getVocabulary() {
+        if (decorated instanceof VocabularySupportingAdapter) {
+            return ((VocabularySupportingAdapter) decorated).getVocabulary();
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the version of the decorated adapter or 0 if the corpus of the
+     * decorated adapter is not versioned.
+     */
+    @Override
+    public long getCorpusVersion() {
+        if (decorated instanceof VersionSupportingAdapter) {
+            return ((VersionSupportingAdapter) decorated).getCorpusVersion();
+        } else {
+            return 0;
+        }
+    }
+
+    public WindowSupportingAdapter getDecorated() {
+        return decorated;
+    }
+
+    @Override
+    public void close() {
+        cache.invalidateAll();
+        decorated.close();
+    }
+
+    /**
+     * Merges the documents of the cached words with the documents streamed
+     * from the decorated adapter. Both are ordered by the document ids, i.e.,
+     * the documents that contain only cached words are handed to the consumer
+     * before the next streamed document.
+     */
+    protected class CachedPositionsMerger implements DocumentPositionsConsumer {
+
+        private int packedPositions[][];
+        private int minNumberOfWords;
+        private DocumentPositionsConsumer consumer;
+        /**
+         * The words that are streamed and their ids in the requested words.
+         */
+        private String streamedWords[];
+        private int streamedWordIds[];
+        /**
+         * The position of the next document inside the packed positions of
+         * every cached word.
+         */
+        private int nextDocPos[];
+        private IntArrayList positions[];
+        private IntArrayList cachedPositions[];
+        /**
+         * Whether all documents of the streamed words are handed to this
+         * merger, i.e., whether their positions can be added to the cache.
+         */
+        private boolean collectForCache = false;
+        private IntArrayList collectedPositions[];
+        /**
+         * The version of the corpus the cached words have been taken from.
+         */
+        private long version;
+
+        public CachedPositionsMerger(String words[], int packedPositions[][], int minNumberOfWords,
+                DocumentPositionsConsumer consumer, long version) {
+            this.packedPositions = packedPositions;
+            this.version = version;
+            this.minNumberOfWords = minNumberOfWords;
+            this.consumer = consumer;
+            nextDocPos = new int[words.length];
+            positions = new IntArrayList[words.length];
+            cachedPositions = new IntArrayList[words.length];
+            int numberOfStreamedWords = 0;
+            for (int i = 0; i < words.length; ++i) {
+                if (packedPositions[i] == null) {
+                    ++numberOfStreamedWords;
+                } else {
+                    cachedPositions[i] = new IntArrayList();
+                }
+            }
+            streamedWords = new String[numberOfStreamedWords];
+            streamedWordIds = new int[numberOfStreamedWords];
+            collectedPositions = new IntArrayList[numberOfStreamedWords];
+            int pos = 0;
+            for (int i = 0; i < words.length; ++i) {
+                if (packedPositions[i] == null) {
+                    streamedWords[pos] = words[i];
+                    streamedWordIds[pos] = i;
+                    collectedPositions[pos] = new IntArrayList();
+                    ++pos;
+                }
+            }
+        }
+
+        @Override
+        public void consumeDocument(int docId, IntArrayList[] streamedPositions, int docLength) {
+            consumeCachedDocuments(docId);
+            if (collectForCache) {
+                collect(docId, streamedPositions, docLength);
+            }
+            Arrays.fill(positions, null);
+            for (int i = 0; i < streamedPositions.length; ++i) {
+                positions[streamedWordIds[i]] = streamedPositions[i];
+            }
+            addCachedPositions(docId);
+            consume(docId, docLength);
+        }
+
+        /**
+         * Hands all documents with an id lower than the given id that contain
+         * only cached words to the consumer.
+         */
+        private void consumeCachedDocuments(int maxDocId) {
+            int docId;
+            while (true) {
+                docId = Integer.MAX_VALUE;
+                for (int i = 0; i < packedPositions.length; ++i) {
+                    if ((packedPositions[i] != null) && (nextDocPos[i] < packedPositions[i].length)
+                            && (packedPositions[i][nextDocPos[i]] < docId)) {
+                        docId = packedPositions[i][nextDocPos[i]];
+                    }
+                }
+                if (docId >= maxDocId) {
+                    return;
+                }
+                Arrays.fill(positions, null);
+                consume(docId, addCachedPositions(docId));
+            }
+        }
+
+        /**
+         * Adds the positions of the cached words inside the given document and
+         * returns the length of the document (or 0 if no cached word occurs in
+         * the document).
+         */
+        private int addCachedPositions(int docId) {
+            int docLength = 0, pos, freq;
+            for (int i = 0; i < packedPositions.length; ++i) {
+                if ((packedPositions[i] != null) && (nextDocPos[i] < packedPositions[i].length)
+                        && (packedPositions[i][nextDocPos[i]] == docId)) {
+                    pos = nextDocPos[i];
+                    docLength = packedPositions[i][pos + 1];
+                    freq = packedPositions[i][pos + 2];
+                    cachedPositions[i].clear();
+                    cachedPositions[i].add(packedPositions[i], pos + 3, freq);
+                    positions[i] = cachedPositions[i];
+                    nextDocPos[i] = pos + 3 + freq;
+                }
+            }
+            return docLength;
+        }
+
+        private void consume(int docId, int docLength) {
+            int count = 0;
+            for (int i = 0; i < positions.length; ++i) {
+                if (positions[i] != null) {
+                    ++count;
+                }
+            }
+            if (count >= minNumberOfWords) {
+                consumer.consumeDocument(docId, positions, docLength);
+            }
+        }
+
+        /**
+         * Adds the given streamed positions to the packed positions that are
+         * collected for the cache. The collection of a word is stopped if it
+         * becomes too large.
+         */
+        private void collect(int docId, IntArrayList[] streamedPositions, int docLength) {
+            for (int i = 0; i < streamedPositions.length; ++i) {
+                if ((collectedPositions[i] != null) && (streamedPositions[i] != null)) {
+                    if ((collectedPositions[i].elementsCount + 3 + streamedPositions[i].elementsCount)
+                            > maxStreamedEntrySize) {
+                        collectedPositions[i] = null;
+                    } else {
+                        collectedPositions[i].add(docId);
+                        collectedPositions[i].add(docLength);
+                        collectedPositions[i].add(streamedPositions[i].elementsCount);
+                        collectedPositions[i].add(streamedPositions[i].buffer, 0,
+                                streamedPositions[i].elementsCount);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Hands the remaining documents of the cached words to the consumer
+         * and adds the collected positions of the streamed words to the cache.
+         */
+        public void finish() {
+            consumeCachedDocuments(Integer.MAX_VALUE);
+            if (collectForCache) {
+                for (int i = 0; i < collectedPositions.length; ++i) {
+                    if (collectedPositions[i] != null) {
+                        addToCache(streamedWords[i], version, collectedPositions[i].toArray());
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,233 @@
+/**
+ * This file is part of Palmetto.
+ *
+ * Palmetto is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Palmetto is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Palmetto.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.aksw.palmetto.corpus.decorator;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.aksw.palmetto.corpus.BooleanDocumentSupportingAdapter;
+import org.aksw.palmetto.corpus.CorpusVocabulary;
+import org.aksw.palmetto.corpus.VersionSupportingAdapter;
+import org.aksw.palmetto.corpus.VocabularySupportingAdapter;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.IntOpenHashSet;
+import com.carrotsearch.hppc.ObjectObjectOpenHashMap;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * A decorator for a {@link BooleanDocumentSupportingAdapter} that caches the
+ * documents of the requested words. The document ids are stored in compressed
+ * form (see {@link CompressedDocumentIds}) and the cache is bounded by a given
+ * number of bytes. Entries are evicted based on their size and the time of
+ * their last access. The decorator can be used by several threads at the same
+ * time if the decorated adapter supports this. Concurrent requests for the same
+ * word lead to a single request of the decorated adapter. If the decorated
+ * adapter is a {@link VersionSupportingAdapter}, the entries are bound to the
+ * version of the corpus, i.e., the cached documents of a former version are
+ * discarded after the corpus has been changed.
+ * 
+ * @author Michael R&ouml;der (roeder@informatik.uni-leipzig.de)
+ *
+ */
+public class PostingListCachingAdapterDecorator implements BooleanDocumentSupportingAdapter,
+        VocabularySupportingAdapter, VersionSupportingAdapter {
+
+    /**
+     * The default size of the cache in bytes (256MB).
+     */
+    public static final long DEFAULT_BYTE_BUDGET = 256L * 1024L * 1024L;
+
+    protected BooleanDocumentSupportingAdapter decorated;
+    protected Cache<VersionedWord, byte[]> cache;
+    protected AtomicLong residentBytes = new AtomicLong();
+    /**
+     * The latest version of the corpus seen by the cache.
+     */
+    protected volatile long cachedVersion;
+
+    public PostingListCachingAdapterDecorator(BooleanDocumentSupportingAdapter decorated) {
+        this(decorated, DEFAULT_BYTE_BUDGET);
+    }
+
+    public PostingListCachingAdapterDecorator(BooleanDocumentSupportingAdapter decorated, long byteBudget) {
+        this.decorated = decorated;
+        cachedVersion = getCorpusVersion();
+        cache = CacheBuilder.newBuilder().maximumWeight(byteBudget).weigher(new Weigher<VersionedWord, byte[]>() {
+            @Override
+            public int weigh(VersionedWord key, byte[] documents) {
+                return getWeight(key.word, documents);
+            }
+        }).removalListener(new RemovalListener<VersionedWord, byte[]>() {
+            @Override
+            public void onRemoval(RemovalNotification<VersionedWord, byte[]> notification) {
+                residentBytes.addAndGet(-getWeight(notification.getKey().word, notification.getValue()));
+            }
+        }).recordStats().build();
+    }
+
+    /**
+     * Returns the number of bytes an entry is assumed to need inside the cache.
+     */
+    protected static int getWeight(String word, byte[] documents) {
+        return documents.length + (2 * word.length());
+    }
+
+    /**
+     * Returns the compressed documents of the given word. If they are not
+     * cached, they are requested from the decorated adapter.
+     */
+    protected byte[] getCompressedDocuments(final String word) {
+        try {
+            return cache.get(new VersionedWord(word, getCurrentVersion()), new Callable<byte[]>() {
+                @Override
+                public byte[] call() throws Exception {
+                    IntArrayList documents = new IntArrayList();
+                    decorated.getDocumentsWithWord(word, documents);
+                    byte compressed[] = CompressedDocumentIds.encode(documents);
+                    residentBytes.addAndGet(getWeight(word, compressed));
+                    return compressed;
+                }
+            });
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Couldn't request documents of \"" + word + "\".", e.getCause());
+        } catch (UncheckedExecutionException e) {
+            throw new IllegalStateException("Couldn't request documents of \"" + word + "\".", e.getCause());
+        }
+    }
+
+    /**
+     * Returns the current version of the corpus. If the version changed since
+     * the last request, the entries of the former version are removed from
+     * the cache. Entries that are added by requests that are still running on
+     * the former version are never hit and are evicted later on.
+     */
+    protected long getCurrentVersion() {
+        long version = getCorpusVersion();
+        if (version > cachedVersion) {
+            synchronized (this) {
+                if (version > cachedVersion) {
+                    cache.invalidateAll();
+                    cachedVersion = version;
+                }
+            }
+        }
+        return version;
+    }
+
+    @Override
+    public void getDocumentsWithWordsAsSet(ObjectObjectOpenHashMap<String, IntOpenHashSet> wordDocMapping) {
+        Object keys[] = (Object[]) wordDocMapping.keys;
+        Object values[] = (Object[]) wordDocMapping.values;
+        for (int i = 0; i < wordDocMapping.allocated.length; ++i) {
+            if (wordDocMapping.allocated[i]) {
+                getDocumentsWithWordAsSet((String) keys[i], (IntOpenHashSet) values[i]);
+            }
+        }
+    }
+
+    @Override
+    public void getDocumentsWithWordAsSet(String word, IntOpenHashSet documents) {
+        CompressedDocumentIds.decode(getCompressedDocuments(word), documents);
+    }
+
+    @Override
+    public void getDocumentsWithWords(ObjectObjectOpenHashMap<String, IntArrayList> wordDocMapping) {
+        Object keys[] = (Object[]) wordDocMapping.keys;
+        Object values[] = (Object[]) wordDocMapping.values;
+        for (int i = 0; i < wordDocMapping.allocated.length; ++i) {
+            if (wordDocMapping.allocated[i]) {
+                getDocumentsWithWord((String) keys[i], (IntArrayList) values[i]);
+            }
+        }
+    }
+
+    @Override
+    public void getDocumentsWithWord(String word, IntArrayList documents) {
+        CompressedDocumentIds.decode(getCompressedDocuments(word), documents);
+    }
+
+    @Override
+    public int getNumberOfDocuments() {
+        return decorated.getNumberOfDocuments();
+    }
+
+    /**
+     * Returns the statistics of the cache, e.g., its hit and miss counts.
+     */
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    public long getHitCount() {
+        return cache.stats().hitCount();
+    }
+
+    public long getMissCount() {
+        return cache.stats().missCount();
+    }
+
+    /**
+     * Returns the number of bytes currently used by the cached entries.
+     */
+    public long getResidentBytes() {
+        return residentBytes.get();
+    }
+
+    /**
+     * Returns the vocabulary of the decorated adapter or null if it does not
+     * offer a vocabulary.
+     */
+    @Override
+    public CorpusVocabulary getVocabulary() {
+        if (decorated instanceof VocabularySupportingAdapter) {
+            return ((VocabularySupportingAdapter) decorated).getVocabulary();
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the version of the decorated adapter or 0 if the corpus of the
+     * decorated adapter is not versioned.
+     */
+    @Override
+    public long getCorpusVersion() {
+        if (decorated instanceof VersionSupportingAdapter) {
+            return ((VersionSupportingAdapter) decorated).getCorpusVersion();
+        } else {
+            return 0;
+        }
+    }
+
+    public BooleanDocumentSupportingAdapter getDecorated() {
+        return decorated;
+    }
+
+    @Override
+    public void close() {
+        cache.invalidateAll();
+        decorated.close();
+    }
+}
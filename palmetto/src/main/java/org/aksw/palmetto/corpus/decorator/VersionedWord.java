@@ -0,0 +1,59 @@
+/**
+ * This file is part of Palmetto.
+ *
+ * Palmetto is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Palmetto is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Palmetto.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.aksw.palmetto.corpus.decorator;
+
+/**
+ * The key of a cache entry of a caching decorator, i.e., a word together with
+ * the version of the corpus its data has been requested from (see
+ * {@link org.aksw.palmetto.corpus.VersionSupportingAdapter}). Entries of a
+ * former version are never hit again after the corpus has been changed.
+ * 
+ * @author Michael R&ouml;der (roeder@informatik.uni-leipzig.de)
+ *
+ */
+public class VersionedWord {
+
+    public final String word;
+    public final long version;
+
+    public VersionedWord(String word, long version) {
+        this.word = word;
+        this.version = version;
+    }
+
+    @Override
+    public int hashCode() {
+        return (31 * word.hashCode()) + (int) (version ^ (version >>> 32));
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof VersionedWord)) {
+            return false;
+        }
+        VersionedWord other = (VersionedWord) obj;
+        return (version == other.version) && word.equals(other.word);
+    }
+
+    @Override
+    public String toString() {
+        return word + "@" + version;
+    }
+}
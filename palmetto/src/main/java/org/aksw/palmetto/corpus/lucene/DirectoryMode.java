@@ -0,0 +1,42 @@
+/**
+ * This file is part of Palmetto.
+ *
+ * Palmetto is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Palmetto is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Palmetto.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.aksw.palmetto.corpus.lucene;
+
+/**
+ * Defines how the Lucene index is accessed by the corpus adapters.
+ * 
+ * @author Michael R&ouml;der (roeder@informatik.uni-leipzig.de)
+ * 
+ */
+public enum DirectoryMode {
+    /**
+     * The index files are read using a {@link org.apache.lucene.store.NIOFSDirectory}, i.e., every read is a
+     * positional read system call. This is the default.
+     */
+    NIO,
+    /**
+     * The index files are memory-mapped using a {@link org.apache.lucene.store.MMapDirectory}.
+     */
+    MMAP,
+    /**
+     * Like {@link #MMAP} but the term dictionary, postings and positions files are touched when the adapter is
+     * created, i.e., they are resident before the first request arrives.
+     */
+    MMAP_PRELOAD;
+
+    public static final DirectoryMode DEFAULT = NIO;
+}
@@ -18,22 +18,49 @@ package org.aksw.palmetto.corpus.lucene;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
 
+import org.aksw.palmetto.corpus.ArrayDocumentCursor;
 import org.aksw.palmetto.corpus.BooleanDocumentSupportingAdapter;
+import org.aksw.palmetto.corpus.CorpusVocabulary;
+import org.aksw.palmetto.corpus.DocumentCursor;
+import org.aksw.palmetto.corpus.DocumentCursorSupportingAdapter;
+import org.aksw.palmetto.corpus.ResidentDocumentSets;
+import org.aksw.palmetto.corpus.VersionSupportingAdapter;
+import org.aksw.palmetto.corpus.VocabularySupportingAdapter;
 import org.apache.lucene.index.AtomicReader;
 import org.apache.lucene.index.AtomicReaderContext;
 import org.apache.lucene.index.CorruptIndexException;
 import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.DocsAndPositionsEnum;
 import org.apache.lucene.index.DocsEnum;
-import org.apache.lucene.index.Term;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexReader.ReaderClosedListener;
+import org.apache.lucene.index.MultiFields;
+import org.apache.lucene.index.TermState;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.MMapDirectory;
 import org.apache.lucene.store.NIOFSDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.CloseableThreadLocal;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.carrotsearch.hppc.IntArrayList;
 import com.carrotsearch.hppc.IntOpenHashSet;
+import com.carrotsearch.hppc.LongArrayList;
 import com.carrotsearch.hppc.ObjectObjectOpenHashMap;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 
 /**
  * This class can make usage of a given Lucene index as corpus.
@@ -41,14 +68,39 @@ import com.carrotsearch.hppc.ObjectObjectOpenHashMap;
  * @author m.roeder
  * 
  */
-public class LuceneCorpusAdapter implements BooleanDocumentSupportingAdapter {
+public class LuceneCorpusAdapter implements DocumentCursorSupportingAdapter, VocabularySupportingAdapter,
+        VersionSupportingAdapter {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(LuceneCorpusAdapter.class);
 
+    /**
+     * The default number of words for which the resolved term states are
+     * cached.
+     */
+    public static final int DEFAULT_TERM_STATE_CACHE_SIZE = 10000;
+
     protected String fieldName;
-    protected DirectoryReader dirReader;
-    protected AtomicReader reader[];
-    protected AtomicReaderContext contexts[];
+    /**
+     * The current version of the index. Every request acquires the snapshot
+     * before reading from it and releases it afterwards, i.e., the reader of a
+     * former snapshot is closed when the last request using it is done.
+     */
+    protected volatile IndexSnapshot snapshot;
+    /**
+     * The pool used to traverse the leaves of the index in parallel or null if
+     * the leaves are traversed sequentially.
+     */
+    protected ForkJoinPool leafTraversalPool = null;
+    /**
+     * The listeners that are informed after the adapter has been reopened.
+     */
+    protected List<ReopenListener> reopenListeners = new CopyOnWriteArrayList<ReopenListener>();
+    /**
+     * The result of the warm up that has been done while opening the index
+     * or null if it has not been preloaded.
+     */
+    protected LuceneIndexWarmer.WarmUpResult preloadResult = null;
+    private boolean closed = false;
 
     /**
      * Creates a corpus adapter which uses the Lucene index with the given path
@@ -62,7 +114,25 @@ public class LuceneCorpusAdapter implements BooleanDocumentSupportingAdapter {
      */
     public static LuceneCorpusAdapter create(String indexPath, String fieldName)
             throws CorruptIndexException, IOException {
-        DirectoryReader dirReader = DirectoryReader.open(new NIOFSDirectory(new File(indexPath)));
+        return create(indexPath, fieldName, DirectoryMode.DEFAULT);
+    }
+
+    /**
+     * Creates a corpus adapter which uses the Lucene index with the given path
+     * and searches on the field with the given field name. The index is
+     * accessed using the given directory mode.
+     * 
+     * @param indexPath
+     * @param fieldName
+     * @param mode
+     * @return
+     * @throws CorruptIndexException
+     * @throws IOException
+     */
+    public static LuceneCorpusAdapter create(String indexPath, String fieldName, DirectoryMode mode)
+            throws CorruptIndexException, IOException {
+        DirectoryReader dirReader = openIndex(indexPath, mode);
+        LuceneIndexWarmer.WarmUpResult preloadResult = preload(dirReader, mode);
         List<AtomicReaderContext> leaves = dirReader.leaves();
         AtomicReader reader[] = new AtomicReader[leaves.size()];
         AtomicReaderContext contexts[] = new AtomicReaderContext[leaves.size()];
@@ -70,27 +140,128 @@ public class LuceneCorpusAdapter implements BooleanDocumentSupportingAdapter {
             contexts[i] = leaves.get(i);
             reader[i] = contexts[i].reader();
         }
-        return new LuceneCorpusAdapter(dirReader, reader, contexts, fieldName);
+        LuceneCorpusAdapter adapter = new LuceneCorpusAdapter(dirReader, reader, contexts, fieldName);
+        adapter.preloadResult = preloadResult;
+        return adapter;
+    }
+
+    /**
+     * Opens the Lucene index with the given path using the given directory
+     * mode.
+     */
+    protected static DirectoryReader openIndex(String indexPath, DirectoryMode mode) throws IOException {
+        Directory directory;
+        switch (mode) {
+        case MMAP: // falls through
+        case MMAP_PRELOAD:
+            directory = new MMapDirectory(new File(indexPath));
+            break;
+        case NIO: // falls through
+        default:
+            directory = new NIOFSDirectory(new File(indexPath));
+            break;
+        }
+        return DirectoryReader.open(directory);
+    }
+
+    /**
+     * Touches the postings files of the given reader if the mode is
+     * {@link DirectoryMode#MMAP_PRELOAD}. If the warm up fails, the reader is
+     * closed.
+     * 
+     * @return the result of the warm up or null if the mode does not preload
+     *         the index
+     * @throws IOException
+     *             if the index files couldn't be read
+     */
+    protected static LuceneIndexWarmer.WarmUpResult preload(DirectoryReader dirReader, DirectoryMode mode)
+            throws IOException {
+        if (mode != DirectoryMode.MMAP_PRELOAD) {
+            return null;
+        }
+        try {
+            return LuceneIndexWarmer.warmUp(dirReader);
+        } catch (IOException | RuntimeException e) {
+            dirReader.close();
+            throw e;
+        }
     }
 
     protected LuceneCorpusAdapter(DirectoryReader dirReader, AtomicReader reader[], AtomicReaderContext contexts[],
             String fieldName) {
-        this.dirReader = dirReader;
-        this.reader = reader;
-        this.contexts = contexts;
+        this(fieldName);
+        this.snapshot = new IndexSnapshot(dirReader, reader, contexts);
+    }
+
+    /**
+     * Constructor for sub classes that create the first snapshot on their
+     * own.
+     */
+    protected LuceneCorpusAdapter(String fieldName) {
         this.fieldName = fieldName;
     }
 
+    /**
+     * Returns the current snapshot after incrementing the reference count of
+     * its reader. The snapshot has to be released using
+     * {@link #releaseSnapshot(IndexSnapshot)}.
+     * 
+     * @throws IllegalStateException
+     *             if the adapter has been closed
+     */
+    protected IndexSnapshot acquireSnapshot() {
+        IndexSnapshot current;
+        while (true) {
+            current = snapshot;
+            if (current.dirReader.tryIncRef()) {
+                return current;
+            }
+            // if the snapshot has not been replaced in the meantime, its reader has been closed with the adapter
+            if (current == snapshot) {
+                throw new IllegalStateException("The corpus adapter has already been closed.");
+            }
+        }
+    }
+
+    /**
+     * Decrements the reference count of the reader of the given snapshot,
+     * i.e., the reader is closed if the snapshot has been replaced and this
+     * has been its last request.
+     */
+    protected void releaseSnapshot(IndexSnapshot snapshot) {
+        try {
+            snapshot.dirReader.decRef();
+        } catch (IOException e) {
+            LOGGER.error("Error while closing a former version of the index.", e);
+        }
+    }
+
     @Override
     public void getDocumentsWithWordAsSet(String word, IntOpenHashSet documents) {
-        DocsEnum docs = null;
-        Term term = new Term(fieldName, word);
+        IndexSnapshot snapshot = acquireSnapshot();
+        try {
+            getDocumentsWithWordAsSet(snapshot, word, documents);
+        } finally {
+            releaseSnapshot(snapshot);
+        }
+    }
+
+    protected void getDocumentsWithWordAsSet(IndexSnapshot snapshot, String word, IntOpenHashSet documents) {
+        if (isTraversingLeavesInParallel(snapshot)) {
+            IntArrayList leafDocuments[] = requestDocumentsPerLeaf(snapshot, word);
+            for (int i = 0; i < leafDocuments.length; i++) {
+                documents.addAll(leafDocuments[i]);
+            }
+            return;
+        }
         try {
+            TermState states[] = snapshot.getTermStates(word);
+            DocsEnum docs;
             int baseDocId;
-            for (int i = 0; i < reader.length; i++) {
-                docs = reader[i].termDocsEnum(term);
-                baseDocId = contexts[i].docBase;
-                if (docs != null) {
+            for (int i = 0; i < snapshot.reader.length; i++) {
+                if (states[i] != null) {
+                    docs = snapshot.getDocsEnum(word, i, states[i]);
+                    baseDocId = snapshot.contexts[i].docBase;
                     while (docs.nextDoc() != DocsEnum.NO_MORE_DOCS) {
                         documents.add(baseDocId + docs.docID());
                     }
@@ -102,70 +273,833 @@ public class LuceneCorpusAdapter implements BooleanDocumentSupportingAdapter {
     }
 
     /**
-     * Closes the Lucene index.
+     * Touches the postings files of the index. If the index has been opened
+     * using a memory-mapping directory, this makes them resident.
+     * 
+     * @return the number of touched bytes and the time the warm up needed
+     * @throws IOException
+     *             if the index files couldn't be read
      */
-    public void close() {
-        for (int i = 0; i < reader.length; i++) {
+    public LuceneIndexWarmer.WarmUpResult warmUp() throws IOException {
+        IndexSnapshot snapshot = acquireSnapshot();
+        try {
+            return LuceneIndexWarmer.warmUp(snapshot.dirReader);
+        } finally {
+            releaseSnapshot(snapshot);
+        }
+    }
+
+    /**
+     * Returns the result of the warm up that has been done while opening the
+     * index with {@link DirectoryMode#MMAP_PRELOAD} or null if the index has
+     * been opened with another mode.
+     */
+    public LuceneIndexWarmer.WarmUpResult getPreloadResult() {
+        return preloadResult;
+    }
+
+    /**
+     * Loads the document sets of the most frequent words of the index into
+     * memory (see {@link ResidentDocumentSets}). The words are ordered by
+     * their document frequencies. The document ids are the global ids of this
+     * adapter, i.e., the sets have to be loaded again after the adapter has
+     * been reopened.
+     *
+     * @param numberOfDenseWords
+     *            the maximum number of words stored as dense bit sets
+     * @param byteBudget
+     *            the maximum number of bytes the document sets may occupy
+     * @throws IOException
+     *             if the term dictionary couldn't be read
+     */
+    public ResidentDocumentSets loadResidentDocumentSets(int numberOfDenseWords, long byteBudget)
+            throws IOException {
+        IndexSnapshot snapshot = acquireSnapshot();
+        try {
+            List<String> terms = new ArrayList<String>();
+            LongArrayList sortKeys = new LongArrayList();
+            Terms indexTerms = MultiFields.getTerms(snapshot.dirReader, fieldName);
+            if (indexTerms != null) {
+                TermsEnum termsEnum = indexTerms.iterator(null);
+                BytesRef term;
+                while ((term = termsEnum.next()) != null) {
+                    // sort by descending document frequency and keep the order of the dictionary for equal
+                    // frequencies
+                    sortKeys.add((((long) (Integer.MAX_VALUE - termsEnum.docFreq())) << 32) | terms.size());
+                    terms.add(term.utf8ToString());
+                }
+            }
+            long keys[] = sortKeys.toArray();
+            Arrays.sort(keys);
+            String words[] = new String[keys.length];
+            int documentFrequencies[] = new int[keys.length];
+            for (int i = 0; i < keys.length; ++i) {
+                words[i] = terms.get((int) keys[i]);
+                documentFrequencies[i] = Integer.MAX_VALUE - ((int) (keys[i] >>> 32));
+            }
+            // the sets are read from the same snapshot as the dictionary even if the adapter is reopened meanwhile
+            return ResidentDocumentSets.create(new SnapshotDocumentsAdapter(snapshot), words, documentFrequencies,
+                    snapshot.dirReader.maxDoc(), numberOfDenseWords, byteBudget);
+        } finally {
+            releaseSnapshot(snapshot);
+        }
+    }
+
+    /**
+     * Switches to the latest commit of the index if the index has been
+     * changed since it has been opened, e.g., because documents have been
+     * appended to it. The new commit is published as a new snapshot with its
+     * own term states and vocabulary. Requests and document cursors that are
+     * still using the former snapshot are not affected, i.e., the former
+     * reader is closed when the last of them has been finished. Registered
+     * {@link ReopenListener}s are informed after the switch.
+     * 
+     * @return true if the adapter switched to a new commit, false if the index
+     *         has not been changed
+     * @throws IOException
+     *             if the new commit couldn't be opened
+     */
+    public synchronized boolean reopen() throws IOException {
+        if (closed) {
+            throw new IllegalStateException("The corpus adapter has already been closed.");
+        }
+        IndexSnapshot oldSnapshot = snapshot;
+        DirectoryReader newDirReader = DirectoryReader.openIfChanged(oldSnapshot.dirReader);
+        if (newDirReader == null) {
+            return false;
+        }
+        IndexSnapshot newSnapshot;
+        try {
+            newSnapshot = createSnapshot(newDirReader, oldSnapshot);
+        } catch (IOException e) {
+            newDirReader.close();
+            throw e;
+        }
+        snapshot = newSnapshot;
+        // segments that did not change are shared with the new reader and stay open
+        releaseSnapshot(oldSnapshot);
+        LOGGER.info("Switched to the index version " + newDirReader.getVersion() + " containing "
+                + newDirReader.numDocs() + " documents.");
+        for (ReopenListener listener : reopenListeners) {
             try {
-                reader[i].close();
-            } catch (IOException e) {
-                // nothing to do
+                listener.onReopen(this);
+            } catch (RuntimeException e) {
+                LOGGER.error("Reopen listener " + listener + " failed. It will be ignored.", e);
             }
         }
+        return true;
+    }
+
+    /**
+     * Adds a listener that is informed every time the adapter switched to a
+     * new version of the index (see {@link #reopen()}).
+     */
+    public void addReopenListener(ReopenListener listener) {
+        reopenListeners.add(listener);
+    }
+
+    public void removeReopenListener(ReopenListener listener) {
+        reopenListeners.remove(listener);
+    }
+
+    /**
+     * Returns the version of the index commit the adapter is currently using.
+     */
+    @Override
+    public long getCorpusVersion() {
+        return snapshot.dirReader.getVersion();
+    }
+
+    /**
+     * Creates the snapshot of the given reader which replaces the given
+     * former snapshot.
+     */
+    protected IndexSnapshot createSnapshot(DirectoryReader dirReader, IndexSnapshot formerSnapshot)
+            throws IOException {
+        return new IndexSnapshot(dirReader);
+    }
+
+    /**
+     * Closes the Lucene index. If other threads are still using the index,
+     * it is closed as soon as they are done.
+     */
+    public synchronized void close() {
+        if (!closed) {
+            closed = true;
+            releaseSnapshot(snapshot);
+        }
+    }
+
+    @Override
+    public CorpusVocabulary getVocabulary() {
+        IndexSnapshot snapshot = acquireSnapshot();
+        try {
+            return snapshot.getVocabulary();
+        } finally {
+            releaseSnapshot(snapshot);
+        }
     }
 
     public int getNumberOfDocuments() {
+        IndexSnapshot snapshot = acquireSnapshot();
         try {
-            int numDocs = dirReader.getDocCount(fieldName);
-            if (numDocs < 0) {
-                LOGGER.warn("Coudln't get the number of documents with the indexed field \"" + fieldName
-                        + "\". Using the number of all documents in the index instead.");
-            }
-        } catch (IOException e) {
-            LOGGER.warn("Coudln't get the number of documents with the indexed field \"" + fieldName
-                    + "\". Using the number of all documents in the index instead.", e);
+            return snapshot.getNumberOfDocuments();
+        } finally {
+            releaseSnapshot(snapshot);
         }
-        return dirReader.numDocs();
     }
 
     public void getDocumentsWithWordsAsSet(ObjectObjectOpenHashMap<String, IntOpenHashSet> wordDocMapping) {
-        Object keys[] = (Object[]) wordDocMapping.keys;
-        Object values[] = (Object[]) wordDocMapping.values;
-        for (int i = 0; i < wordDocMapping.allocated.length; ++i) {
-            if (wordDocMapping.allocated[i]) {
-                getDocumentsWithWordAsSet((String) keys[i], (IntOpenHashSet) values[i]);
+        IndexSnapshot snapshot = acquireSnapshot();
+        try {
+            Object keys[] = (Object[]) wordDocMapping.keys;
+            Object values[] = (Object[]) wordDocMapping.values;
+            for (int i = 0; i < wordDocMapping.allocated.length; ++i) {
+                if (wordDocMapping.allocated[i]) {
+                    getDocumentsWithWordAsSet(snapshot, (String) keys[i], (IntOpenHashSet) values[i]);
+                }
             }
+        } finally {
+            releaseSnapshot(snapshot);
         }
     }
 
     @Override
     public void getDocumentsWithWords(ObjectObjectOpenHashMap<String, IntArrayList> wordDocMapping) {
-        Object keys[] = (Object[]) wordDocMapping.keys;
-        Object values[] = (Object[]) wordDocMapping.values;
-        for (int i = 0; i < wordDocMapping.allocated.length; ++i) {
-            if (wordDocMapping.allocated[i]) {
-                getDocumentsWithWord((String) keys[i], (IntArrayList) values[i]);
+        IndexSnapshot snapshot = acquireSnapshot();
+        try {
+            Object keys[] = (Object[]) wordDocMapping.keys;
+            Object values[] = (Object[]) wordDocMapping.values;
+            for (int i = 0; i < wordDocMapping.allocated.length; ++i) {
+                if (wordDocMapping.allocated[i]) {
+                    getDocumentsWithWord(snapshot, (String) keys[i], (IntArrayList) values[i]);
+                }
             }
+        } finally {
+            releaseSnapshot(snapshot);
         }
     }
 
     @Override
     public void getDocumentsWithWord(String word, IntArrayList documents) {
-        DocsEnum docs = null;
-        Term term = new Term(fieldName, word);
+        IndexSnapshot snapshot = acquireSnapshot();
         try {
-            int baseDocId;
-            for (int i = 0; i < reader.length; i++) {
-                docs = reader[i].termDocsEnum(term);
-                baseDocId = contexts[i].docBase;
-                if (docs != null) {
-                    while (docs.nextDoc() != DocsEnum.NO_MORE_DOCS) {
-                        documents.add(docs.docID() + baseDocId);
-                    }
+            getDocumentsWithWord(snapshot, word, documents);
+        } finally {
+            releaseSnapshot(snapshot);
+        }
+    }
+
+    protected void getDocumentsWithWord(IndexSnapshot snapshot, String word, IntArrayList documents) {
+        if (isTraversingLeavesInParallel(snapshot)) {
+            IntArrayList leafDocuments[] = requestDocumentsPerLeaf(snapshot, word);
+            for (int i = 0; i < leafDocuments.length; i++) {
+                documents.addAll(leafDocuments[i]);
+            }
+            return;
+        }
+        try {
+            TermState states[] = snapshot.getTermStates(word);
+            for (int i = 0; i < snapshot.reader.length; i++) {
+                if (states[i] != null) {
+                    snapshot.addDocumentsOfLeaf(word, i, states[i], documents);
                 }
             }
         } catch (IOException e) {
             LOGGER.error("Error while requesting documents for word \"" + word + "\".", e);
         }
     }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * <p>
+     * The cursor keeps the current snapshot of the index open until it is
+     * closed.
+     * </p>
+     */
+    @Override
+    public DocumentCursor getDocumentCursor(String word) {
+        IndexSnapshot snapshot = acquireSnapshot();
+        try {
+            return new LuceneDocumentCursor(snapshot, word, snapshot.getTermStates(word));
+        } catch (IOException e) {
+            releaseSnapshot(snapshot);
+            LOGGER.error("Error while requesting documents for word \"" + word + "\".", e);
+            return new ArrayDocumentCursor(new int[0], 0);
+        }
+    }
+
+    /**
+     * Traverses the leaves of the given snapshot in parallel and returns the
+     * global ids of the documents containing the given word. The i-th list
+     * contains the documents of the i-th leaf, i.e., concatenating the lists
+     * leads to the same result as the sequential traversal.
+     */
+    protected IntArrayList[] requestDocumentsPerLeaf(IndexSnapshot snapshot, String word) {
+        IntArrayList leafDocuments[] = new IntArrayList[snapshot.reader.length];
+        TermState states[];
+        try {
+            states = snapshot.getTermStates(word);
+        } catch (IOException e) {
+            LOGGER.error("Error while requesting documents for word \"" + word + "\".", e);
+            for (int i = 0; i < leafDocuments.length; i++) {
+                leafDocuments[i] = new IntArrayList();
+            }
+            return leafDocuments;
+        }
+        LeafDocumentsTask tasks[] = new LeafDocumentsTask[snapshot.reader.length];
+        for (int i = 0; i < tasks.length; i++) {
+            tasks[i] = new LeafDocumentsTask(snapshot, word, i, states[i]);
+        }
+        invokeLeafTasks(tasks);
+        for (int i = 0; i < tasks.length; i++) {
+            leafDocuments[i] = tasks[i].join();
+        }
+        return leafDocuments;
+    }
+
+    /**
+     * Executes the given tasks using the {@link #leafTraversalPool} and returns
+     * after all of them are done.
+     */
+    protected void invokeLeafTasks(ForkJoinTask<?> tasks[]) {
+        leafTraversalPool.invoke(new InvokeAllAction(tasks));
+    }
+
+    /**
+     * Returns true if a pool for traversing the leaves in parallel has been set
+     * and the current version of the index has more than one leaf.
+     */
+    protected boolean isTraversingLeavesInParallel() {
+        return isTraversingLeavesInParallel(snapshot);
+    }
+
+    /**
+     * Returns true if a pool for traversing the leaves in parallel has been set
+     * and the given snapshot has more than one leaf.
+     */
+    protected boolean isTraversingLeavesInParallel(IndexSnapshot snapshot) {
+        return (leafTraversalPool != null) && (snapshot.reader.length > 1);
+    }
+
+    /**
+     * Returns the largest document id of the index plus one, i.e., the size of
+     * the document id space including deleted documents.
+     */
+    public int getMaxDoc() {
+        return snapshot.dirReader.maxDoc();
+    }
+
+    public ForkJoinPool getLeafTraversalPool() {
+        return leafTraversalPool;
+    }
+
+    /**
+     * Sets the pool that is used to traverse the leaves (i.e., segments) of the
+     * index in parallel. If it is set to null (the default), the leaves are
+     * traversed sequentially. The results of both modes are identical.
+     * 
+     * @param leafTraversalPool
+     *            the pool used for traversing the leaves or null
+     */
+    public void setLeafTraversalPool(ForkJoinPool leafTraversalPool) {
+        this.leafTraversalPool = leafTraversalPool;
+    }
+
+    /**
+     * A version of the index, i.e., a reader with its leaves and the data
+     * derived from them. The snapshot is replaced as a whole if the adapter is
+     * reopened. It uses the reference count of its reader, i.e., its term
+     * states and the enums of the threads are discarded when the reader is
+     * closed.
+     */
+    protected class IndexSnapshot implements ReaderClosedListener {
+
+        public final DirectoryReader dirReader;
+        public final AtomicReader reader[];
+        public final AtomicReaderContext contexts[];
+        /**
+         * The reusable enums of the threads.
+         */
+        protected final CloseableThreadLocal<LeafCursors> cursors = new CloseableThreadLocal<LeafCursors>();
+        /**
+         * The term states of recently requested words. The i-th state belongs
+         * to the i-th leaf and is null if the leaf does not contain the word.
+         */
+        protected final Cache<String, TermState[]> termStateCache = CacheBuilder.newBuilder()
+                .maximumSize(DEFAULT_TERM_STATE_CACHE_SIZE).build();
+        /**
+         * The vocabulary of the text field. It is read from the index when it
+         * is requested for the first time.
+         */
+        protected volatile CorpusVocabulary vocabulary;
+        /**
+         * The number of documents of the snapshot or -1 if it has not been
+         * requested, yet. It is requested by the probability suppliers for
+         * every word set, i.e., the reader is asked only once.
+         */
+        protected volatile int numberOfDocuments = -1;
+
+        public IndexSnapshot(DirectoryReader dirReader) {
+            this(dirReader, getLeafReaders(dirReader), dirReader.leaves().toArray(new AtomicReaderContext[0]));
+        }
+
+        public IndexSnapshot(DirectoryReader dirReader, AtomicReader reader[], AtomicReaderContext contexts[]) {
+            this.dirReader = dirReader;
+            this.reader = reader;
+            this.contexts = contexts;
+            dirReader.addReaderClosedListener(this);
+        }
+
+        @Override
+        public void onClose(IndexReader closedReader) {
+            cursors.close();
+            termStateCache.invalidateAll();
+        }
+
+        /**
+         * Returns the term states of the given word for all leaves. A state is
+         * null if the leaf does not contain the word. The states are cached,
+         * i.e., repeated requests for the same word do not have to seek inside
+         * the term dictionaries.
+         */
+        public TermState[] getTermStates(String word) throws IOException {
+            TermState states[] = termStateCache.getIfPresent(word);
+            if (states == null) {
+                LeafCursors leafCursors = getCursors();
+                leafCursors.term.copyChars(word);
+                states = new TermState[reader.length];
+                TermsEnum termsEnum;
+                for (int i = 0; i < reader.length; i++) {
+                    termsEnum = leafCursors.getTermsEnum(i);
+                    if ((termsEnum != null) && termsEnum.seekExact(leafCursors.term, true)) {
+                        states[i] = termsEnum.termState();
+                    }
+                }
+                termStateCache.put(word, states);
+            }
+            return states;
+        }
+
+        /**
+         * Returns the reusable enums of the current thread.
+         */
+        public LeafCursors getCursors() {
+            LeafCursors leafCursors = cursors.get();
+            if (leafCursors == null) {
+                leafCursors = new LeafCursors(reader);
+                cursors.set(leafCursors);
+            }
+            return leafCursors;
+        }
+
+        /**
+         * Returns the documents of the given leaf containing the given word.
+         * The returned enum is reused by the next call for this leaf in the
+         * same thread.
+         */
+        public DocsEnum getDocsEnum(String word, int leafId, TermState state) throws IOException {
+            LeafCursors leafCursors = getCursors();
+            TermsEnum termsEnum = leafCursors.seek(word, leafId, state);
+            leafCursors.docsEnums[leafId] = termsEnum.docs(reader[leafId].getLiveDocs(),
+                    leafCursors.docsEnums[leafId], DocsEnum.FLAG_NONE);
+            return leafCursors.docsEnums[leafId];
+        }
+
+        /**
+         * Returns the documents and positions of the given word inside the
+         * given leaf. The returned enum is reused by the next call for this
+         * leaf in the same thread.
+         */
+        public DocsAndPositionsEnum getPositionsEnum(String word, int leafId, TermState state) throws IOException {
+            LeafCursors leafCursors = getCursors();
+            TermsEnum termsEnum = leafCursors.seek(word, leafId, state);
+            leafCursors.positionsEnums[leafId] = termsEnum.docsAndPositions(reader[leafId].getLiveDocs(),
+                    leafCursors.positionsEnums[leafId], 0);
+            return leafCursors.positionsEnums[leafId];
+        }
+
+        /**
+         * Adds the global ids of the documents of the given leaf that contain
+         * the given word to the given list.
+         */
+        public void addDocumentsOfLeaf(String word, int leafId, TermState state, IntArrayList documents)
+                throws IOException {
+            DocsEnum docs = getDocsEnum(word, leafId, state);
+            int baseDocId = contexts[leafId].docBase;
+            while (docs.nextDoc() != DocsEnum.NO_MORE_DOCS) {
+                documents.add(docs.docID() + baseDocId);
+            }
+        }
+
+        public CorpusVocabulary getVocabulary() {
+            if (vocabulary == null) {
+                synchronized (this) {
+                    if (vocabulary == null) {
+                        try {
+                            Terms terms = MultiFields.getTerms(dirReader, fieldName);
+                            vocabulary = CorpusVocabulary.create(terms != null ? terms.iterator(null) : null,
+                                    dirReader.getVersion());
+                        } catch (IOException e) {
+                            LOGGER.error("Error while reading the vocabulary of the index.", e);
+                        }
+                    }
+                }
+            }
+            return vocabulary;
+        }
+
+        public int getNumberOfDocuments() {
+            if (numberOfDocuments < 0) {
+                try {
+                    int numDocs = dirReader.getDocCount(fieldName);
+                    if (numDocs < 0) {
+                        LOGGER.warn("Coudln't get the number of documents with the indexed field \"" + fieldName
+                                + "\". Using the number of all documents in the index instead.");
+                    }
+                } catch (IOException e) {
+                    LOGGER.warn("Coudln't get the number of documents with the indexed field \"" + fieldName
+                            + "\". Using the number of all documents in the index instead.", e);
+                }
+                numberOfDocuments = dirReader.numDocs();
+            }
+            return numberOfDocuments;
+        }
+    }
+
+    /**
+     * Returns the readers of the leaves of the given reader.
+     */
+    protected static AtomicReader[] getLeafReaders(DirectoryReader dirReader) {
+        List<AtomicReaderContext> leaves = dirReader.leaves();
+        AtomicReader reader[] = new AtomicReader[leaves.size()];
+        for (int i = 0; i < reader.length; i++) {
+            reader[i] = leaves.get(i).reader();
+        }
+        return reader;
+    }
+
+    /**
+     * Collects the documents of a single leaf that contain a given term.
+     */
+    @SuppressWarnings("serial")
+    protected class LeafDocumentsTask extends RecursiveTask<IntArrayList> {
+
+        private IndexSnapshot snapshot;
+        private String word;
+        private int leafId;
+        private TermState state;
+
+        public LeafDocumentsTask(IndexSnapshot snapshot, String word, int leafId, TermState state) {
+            this.snapshot = snapshot;
+            this.word = word;
+            this.leafId = leafId;
+            this.state = state;
+        }
+
+        @Override
+        protected IntArrayList compute() {
+            IntArrayList documents = new IntArrayList();
+            if (state != null) {
+                try {
+                    snapshot.addDocumentsOfLeaf(word, leafId, state, documents);
+                } catch (IOException e) {
+                    LOGGER.error("Error while requesting documents for word \"" + word + "\".", e);
+                }
+            }
+            return documents;
+        }
+    }
+
+    /**
+     * The enums of a single thread that are reused for every request. The
+     * arrays contain one enum per leaf of the given readers.
+     */
+    protected class LeafCursors {
+        protected AtomicReader reader[];
+        protected BytesRef term = new BytesRef();
+        protected TermsEnum termsEnums[];
+        protected DocsEnum docsEnums[];
+        protected DocsAndPositionsEnum positionsEnums[];
+
+        public LeafCursors(AtomicReader reader[]) {
+            this.reader = reader;
+            termsEnums = new TermsEnum[reader.length];
+            docsEnums = new DocsEnum[reader.length];
+            positionsEnums = new DocsAndPositionsEnum[reader.length];
+        }
+
+        /**
+         * Returns the terms enum of the given leaf or null if the leaf does not
+         * contain the field.
+         */
+        public TermsEnum getTermsEnum(int leafId) throws IOException {
+            if (termsEnums[leafId] == null) {
+                Terms terms = reader[leafId].terms(fieldName);
+                if (terms != null) {
+                    termsEnums[leafId] = terms.iterator(null);
+                }
+            }
+            return termsEnums[leafId];
+        }
+
+        /**
+         * Positions the terms enum of the given leaf on the given word using
+         * its known state, i.e., without seeking inside the term dictionary.
+         */
+        public TermsEnum seek(String word, int leafId, TermState state) throws IOException {
+            TermsEnum termsEnum = getTermsEnum(leafId);
+            term.copyChars(word);
+            termsEnum.seekExact(term, state);
+            return termsEnum;
+        }
+    }
+
+    /**
+     * A cursor over the documents of a single word that moves through the
+     * leaves of the index. It has its own enums, i.e., several cursors can be
+     * used at the same time, and skips documents using
+     * {@link DocsEnum#advance(int)}. It holds a reference to the snapshot it
+     * has been created for until it is closed.
+     */
+    protected class LuceneDocumentCursor implements DocumentCursor {
+
+        private IndexSnapshot snapshot;
+        private AtomicReader reader[];
+        private AtomicReaderContext contexts[];
+        private BytesRef term;
+        private TermState states[];
+        private TermsEnum termsEnums[];
+        private DocsEnum docsEnums[];
+        private int docFreq = -1;
+        private int leafId = -1;
+        private int docBase = 0;
+        private DocsEnum current = null;
+        private int docId = -1;
+
+        private boolean closed = false;
+
+        /**
+         * Creates a cursor using the given snapshot. The reference to the
+         * snapshot has to be acquired by the caller and is released when the
+         * cursor is closed.
+         */
+        public LuceneDocumentCursor(IndexSnapshot snapshot, String word, TermState states[]) {
+            this.snapshot = snapshot;
+            this.reader = snapshot.reader;
+            this.contexts = snapshot.contexts;
+            this.term = new BytesRef(word);
+            this.states = states;
+            termsEnums = new TermsEnum[reader.length];
+            docsEnums = new DocsEnum[reader.length];
+        }
+
+        @Override
+        public int getDocumentFrequency() {
+            if (docFreq < 0) {
+                int count = 0;
+                try {
+                    DocsEnum docs;
+                    for (int i = 0; i < reader.length; ++i) {
+                        if (states[i] != null) {
+                            if (reader[i].getLiveDocs() == null) {
+                                count += seek(i).docFreq();
+                            } else {
+                                // the document frequency contains deleted documents
+                                docs = seek(i).docs(reader[i].getLiveDocs(), null, DocsEnum.FLAG_NONE);
+                                while (docs.nextDoc() != DocsEnum.NO_MORE_DOCS) {
+                                    ++count;
+                                }
+                            }
+                        }
+                    }
+                } catch (IOException e) {
+                    LOGGER.error("Error while counting documents of word \"" + term.utf8ToString() + "\".", e);
+                }
+                docFreq = count;
+            }
+            return docFreq;
+        }
+
+        @Override
+        public int docId() {
+            return docId;
+        }
+
+        @Override
+        public int nextDoc() {
+            try {
+                int doc;
+                while (true) {
+                    if (current != null) {
+                        doc = current.nextDoc();
+                        if (doc != DocsEnum.NO_MORE_DOCS) {
+                            docId = docBase + doc;
+                            return docId;
+                        }
+                        current = null;
+                    }
+                    if ((leafId + 1) >= reader.length) {
+                        docId = NO_MORE_DOCS;
+                        return docId;
+                    }
+                    openLeaf(leafId + 1);
+                }
+            } catch (IOException e) {
+                LOGGER.error("Error while reading documents of word \"" + term.utf8ToString() + "\".", e);
+                return exhaust();
+            }
+        }
+
+        @Override
+        public int advance(int target) {
+            if (target >= snapshot.dirReader.maxDoc()) {
+                return exhaust();
+            }
+            try {
+                int targetLeaf = Math.max(leafId, 0);
+                while (((targetLeaf + 1) < reader.length) && (contexts[targetLeaf + 1].docBase <= target)) {
+                    ++targetLeaf;
+                }
+                if (targetLeaf != leafId) {
+                    openLeaf(targetLeaf);
+                }
+                if (current != null) {
+                    int doc = current.advance(target - docBase);
+                    if (doc != DocsEnum.NO_MORE_DOCS) {
+                        docId = docBase + doc;
+                        return docId;
+                    }
+                    current = null;
+                }
+            } catch (IOException e) {
+                LOGGER.error("Error while reading documents of word \"" + term.utf8ToString() + "\".", e);
+                return exhaust();
+            }
+            // the target leaf does not contain further documents
+            return nextDoc();
+        }
+
+        @Override
+        public void reset() {
+            leafId = -1;
+            docBase = 0;
+            current = null;
+            docId = -1;
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                releaseSnapshot(snapshot);
+            }
+        }
+
+        private int exhaust() {
+            leafId = reader.length;
+            current = null;
+            docId = NO_MORE_DOCS;
+            return docId;
+        }
+
+        /**
+         * Moves the cursor to the beginning of the given leaf. If the leaf
+         * does not contain the word, {@link #current} is null.
+         */
+        private void openLeaf(int id) throws IOException {
+            leafId = id;
+            docBase = contexts[id].docBase;
+            if (states[id] != null) {
+                docsEnums[id] = seek(id).docs(reader[id].getLiveDocs(), docsEnums[id], DocsEnum.FLAG_NONE);
+                current = docsEnums[id];
+            } else {
+                current = null;
+            }
+        }
+
+        private TermsEnum seek(int id) throws IOException {
+            if (termsEnums[id] == null) {
+                termsEnums[id] = reader[id].terms(fieldName).iterator(null);
+            }
+            termsEnums[id].seekExact(term, states[id]);
+            return termsEnums[id];
+        }
+    }
+
+    /**
+     * A view of this adapter that reads the documents from the given snapshot
+     * instead of the current one. The caller has to hold a reference to the
+     * snapshot while the view is used and closing the view does not release
+     * it.
+     */
+    protected class SnapshotDocumentsAdapter implements BooleanDocumentSupportingAdapter {
+
+        private IndexSnapshot snapshot;
+
+        public SnapshotDocumentsAdapter(IndexSnapshot snapshot) {
+            this.snapshot = snapshot;
+        }
+
+        @Override
+        public void getDocumentsWithWordsAsSet(ObjectObjectOpenHashMap<String, IntOpenHashSet> wordDocMapping) {
+            Object keys[] = (Object[]) wordDocMapping.keys;
+            Object values[] = (Object[]) wordDocMapping.values;
+            for (int i = 0; i < wordDocMapping.allocated.length; ++i) {
+                if (wordDocMapping.allocated[i]) {
+                    getDocumentsWithWordAsSet((String) keys[i], (IntOpenHashSet) values[i]);
+                }
+            }
+        }
+
+        @Override
+        public void getDocumentsWithWordAsSet(String word, IntOpenHashSet documents) {
+            LuceneCorpusAdapter.this.getDocumentsWithWordAsSet(snapshot, word, documents);
+        }
+
+        @Override
+        public void getDocumentsWithWords(ObjectObjectOpenHashMap<String, IntArrayList> wordDocMapping) {
+            Object keys[] = (Object[]) wordDocMapping.keys;
+            Object values[] = (Object[]) wordDocMapping.values;
+            for (int i = 0; i < wordDocMapping.allocated.length; ++i) {
+                if (wordDocMapping.allocated[i]) {
+                    getDocumentsWithWord((String) keys[i], (IntArrayList) values[i]);
+                }
+            }
+        }
+
+        @Override
+        public void getDocumentsWithWord(String word, IntArrayList documents) {
+            LuceneCorpusAdapter.this.getDocumentsWithWord(snapshot, word, documents);
+        }
+
+        @Override
+        public int getNumberOfDocuments() {
+            return snapshot.getNumberOfDocuments();
+        }
+
+        @Override
+        public void close() {
+            // the snapshot is released by the owner of the reference
+        }
+    }
+
+    /**
+     * Forks the given tasks and waits until all of them are done.
+     */
+    @SuppressWarnings("serial")
+    protected static class InvokeAllAction extends RecursiveAction {
+
+        private ForkJoinTask<?> tasks[];
+
+        public InvokeAllAction(ForkJoinTask<?> tasks[]) {
+            this.tasks = tasks;
+        }
+
+        @Override
+        protected void compute() {
+            invokeAll(tasks);
+        }
+    }
 }
@@ -0,0 +1,149 @@
+/**
+ * This file is part of Palmetto.
+ *
+ * Palmetto is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Palmetto is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Palmetto.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.aksw.palmetto.corpus.lucene;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexFileNames;
+import org.apache.lucene.store.CompoundFileDirectory;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class touches the term dictionary, postings and positions files of a
+ * Lucene index. If the index has been opened with a memory-mapping directory,
+ * this makes the pages of these files resident. For other directories it
+ * warms up the page cache of the operating system.
+ * 
+ * @author Michael R&ouml;der (roeder@informatik.uni-leipzig.de)
+ * 
+ */
+public class LuceneIndexWarmer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LuceneIndexWarmer.class);
+
+    /**
+     * Extensions of the files of the Lucene 4.1 postings format that are read
+     * while requesting documents and positions of words (term index, term
+     * dictionary, doc ids and frequencies, positions).
+     */
+    public static final Set<String> POSTINGS_FILE_EXTENSIONS = new HashSet<String>(Arrays.asList("tip", "tim",
+            "doc", "pos"));
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Touches the postings files of the commit the given reader is based on.
+     * Postings files that are part of compound files are touched as well.
+     * 
+     * @param dirReader
+     *            the reader of the index that should be warmed up
+     * @return the number of touched bytes and the needed time
+     * @throws IOException
+     *             if one of the files can not be read
+     */
+    public static WarmUpResult warmUp(DirectoryReader dirReader) throws IOException {
+        long startTime = System.currentTimeMillis();
+        Directory directory = dirReader.directory();
+        byte buffer[] = new byte[BUFFER_SIZE];
+        long bytes = 0;
+        int files = 0;
+        for (String fileName : dirReader.getIndexCommit().getFileNames()) {
+            if (POSTINGS_FILE_EXTENSIONS.contains(getExtension(fileName))) {
+                bytes += touchFile(directory, fileName, buffer);
+                ++files;
+            } else if (IndexFileNames.COMPOUND_FILE_EXTENSION.equals(getExtension(fileName))) {
+                CompoundFileDirectory cfsDirectory = new CompoundFileDirectory(directory, fileName,
+                        IOContext.READONCE, false);
+                try {
+                    for (String entryName : cfsDirectory.listAll()) {
+                        if (POSTINGS_FILE_EXTENSIONS.contains(getExtension(entryName))) {
+                            bytes += touchFile(cfsDirectory, entryName, buffer);
+                            ++files;
+                        }
+                    }
+                } finally {
+                    cfsDirectory.close();
+                }
+            }
+        }
+        WarmUpResult result = new WarmUpResult(files, bytes, System.currentTimeMillis() - startTime);
+        LOGGER.info("Warmed up {} postings files ({} bytes) in {} ms.",
+                new Object[] { result.numberOfFiles, result.bytes, result.time });
+        return result;
+    }
+
+    protected static long touchFile(Directory directory, String fileName, byte buffer[]) throws IOException {
+        IndexInput input = directory.openInput(fileName, IOContext.READONCE);
+        try {
+            long length = input.length();
+            long remaining = length;
+            int chunk;
+            while (remaining > 0) {
+                chunk = (int) Math.min(buffer.length, remaining);
+                input.readBytes(buffer, 0, chunk);
+                remaining -= chunk;
+            }
+            return length;
+        } finally {
+            input.close();
+        }
+    }
+
+    protected static String getExtension(String fileName) {
+        int pos = fileName.lastIndexOf('.');
+        if (pos < 0) {
+            return "";
+        }
+        return fileName.substring(pos + 1);
+    }
+
+    /**
+     * The result of a warm up, i.e., the number of touched files and bytes
+     * and the time (in milliseconds) the warm up needed.
+     */
+    public static class WarmUpResult {
+        public final int numberOfFiles;
+        public final long bytes;
+        public final long time;
+
+        public WarmUpResult(int numberOfFiles, long bytes, long time) {
+            this.numberOfFiles = numberOfFiles;
+            this.bytes = bytes;
+            this.time = time;
+        }
+
+        public int getNumberOfFiles() {
+            return numberOfFiles;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public long getTime() {
+            return time;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+/**
+ * This file is part of Palmetto.
+ *
+ * Palmetto is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Palmetto is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Palmetto.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.aksw.palmetto.corpus.lucene;
+
+import java.io.IOException;
+
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+
+/**
+ * A {@link TokenStream} returning the tokens of a document that has already
+ * been analyzed, e.g., by the {@link SimpleAnalyzer} inside another thread.
+ * Every token gets its own position.
+ * 
+ * @author Michael R&ouml;der (roeder@informatik.uni-leipzig.de)
+ *
+ */
+public final class PreAnalyzedTokenStream extends TokenStream {
+
+    private final CharTermAttribute termAttribute = addAttribute(CharTermAttribute.class);
+    private String tokens[];
+    private int position;
+
+    public PreAnalyzedTokenStream(String tokens[]) {
+        this.tokens = tokens;
+    }
+
+    @Override
+    public boolean incrementToken() throws IOException {
+        if (position >= tokens.length) {
+            return false;
+        }
+        clearAttributes();
+        termAttribute.setEmpty().append(tokens[position]);
+        ++position;
+        return true;
+    }
+
+    @Override
+    public void reset() throws IOException {
+        super.reset();
+        position = 0;
+    }
+}
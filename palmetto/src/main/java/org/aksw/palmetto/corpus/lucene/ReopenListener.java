@@ -0,0 +1,36 @@
+/**
+ * This file is part of Palmetto.
+ *
+ * Palmetto is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Palmetto is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Palmetto.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.aksw.palmetto.corpus.lucene;
+
+/**
+ * Interface of a listener that is informed after a
+ * {@link LuceneCorpusAdapter} switched to a new version of its index, e.g.,
+ * to reload data that has been derived from the former version.
+ * 
+ * @author Michael R&ouml;der (roeder@informatik.uni-leipzig.de)
+ *
+ */
+public interface ReopenListener {
+
+    /**
+     * Called after the given adapter switched to a new version of its index.
+     * 
+     * @param adapter
+     *            the adapter that has been reopened
+     */
+    public void onReopen(LuceneCorpusAdapter adapter);
+}
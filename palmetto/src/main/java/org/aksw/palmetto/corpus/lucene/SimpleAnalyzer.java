@@ -28,7 +28,10 @@ import org.apache.lucene.analysis.util.AbstractAnalysisFactory;
 import org.apache.lucene.util.Version;
 
 /**
- * A simple Lucene Analyzer used for the index creation.
+ * A simple Lucene Analyzer used for the index creation. The text is split
+ * into tokens either by the regular expression {@link #PATTERN} or by the
+ * {@link SimpleTokenizer} which returns the same tokens without using a
+ * regular expression.
  * 
  * @author m.roeder
  * 
@@ -36,18 +39,39 @@ import org.apache.lucene.util.Version;
 public class SimpleAnalyzer extends Analyzer {
 
     private static final Version version = Version.LUCENE_44;
-    private static final String PATTERN = "([^\\p{Punct}\\p{Space}]+([\\p{Punct}][^\\p{Punct}\\p{Space}]+)*)";
+    public static final String PATTERN = "([^\\p{Punct}\\p{Space}]+([\\p{Punct}][^\\p{Punct}\\p{Space}]+)*)";
 
     private PatternTokenizerFactory tokenizerFactory;
     private LowerCaseFilterFactory lowerCaseFilterFactory;
 
+    /**
+     * Creates an analyzer using the regular expression based tokenizer.
+     */
     public SimpleAnalyzer(boolean lowerCase) {
-        Map<String, String> parameters = new HashMap<String, String>();
-        parameters.put(PatternTokenizerFactory.PATTERN, PATTERN);
-        parameters.put(PatternTokenizerFactory.GROUP, "0");
-        parameters.put(AbstractAnalysisFactory.LUCENE_MATCH_VERSION_PARAM,
-                version.name());
-        tokenizerFactory = new PatternTokenizerFactory(parameters);
+        this(lowerCase, true);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param lowerCase
+     *            whether the tokens should be transformed to lower case
+     * @param usePatternTokenizer
+     *            whether the regular expression based tokenizer should be
+     *            used instead of the {@link SimpleTokenizer}
+     */
+    public SimpleAnalyzer(boolean lowerCase, boolean usePatternTokenizer) {
+        Map<String, String> parameters;
+        if (usePatternTokenizer) {
+            parameters = new HashMap<String, String>();
+            parameters.put(PatternTokenizerFactory.PATTERN, PATTERN);
+            parameters.put(PatternTokenizerFactory.GROUP, "0");
+            parameters.put(AbstractAnalysisFactory.LUCENE_MATCH_VERSION_PARAM,
+                    version.name());
+            tokenizerFactory = new PatternTokenizerFactory(parameters);
+        } else {
+            tokenizerFactory = null;
+        }
         if (lowerCase) {
             parameters = new HashMap<String, String>();
             parameters.put(AbstractAnalysisFactory.LUCENE_MATCH_VERSION_PARAM,
@@ -61,7 +85,8 @@ public class SimpleAnalyzer extends Analyzer {
     @Override
     protected TokenStreamComponents createComponents(String fieldName,
             Reader reader) {
-        Tokenizer tokenizer = tokenizerFactory.create(reader);
+        Tokenizer tokenizer = (tokenizerFactory != null) ? tokenizerFactory.create(reader) : new SimpleTokenizer(
+                reader);
         if (lowerCaseFilterFactory != null) {
             return new TokenStreamComponents(tokenizer,
                     lowerCaseFilterFactory.create(tokenizer));
@@ -0,0 +1,190 @@
+/**
+ * This file is part of Palmetto.
+ *
+ * Palmetto is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Palmetto is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Palmetto.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.aksw.palmetto.corpus.lucene;
+
+import java.io.IOException;
+import java.io.Reader;
+
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+
+/**
+ * A {@link Tokenizer} returning the same tokens as the pattern used by the
+ * {@link SimpleAnalyzer}. A token is a sequence of word characters that might
+ * contain single punctuation characters, e.g., "aksw.org" or "shouldn't".
+ * Punctuation and white space characters are the ASCII characters matched by
+ * <code>\p{Punct}</code> and <code>\p{Space}</code> of Java regular
+ * expressions. All other characters are word characters.
+ * 
+ * <p>
+ * In contrast to the pattern based tokenizer, the input is read into a small
+ * buffer and scanned only once without creating a String of the complete
+ * document.
+ * </p>
+ * 
+ * @author Michael R&ouml;der (roeder@informatik.uni-leipzig.de)
+ *
+ */
+public final class SimpleTokenizer extends Tokenizer {
+
+    private static final int BUFFER_SIZE = 4096;
+
+    private static final byte WORD_CHAR = 0;
+    private static final byte PUNCTUATION_CHAR = 1;
+    private static final byte SPACE_CHAR = 2;
+
+    /**
+     * The classes of the ASCII characters.
+     */
+    private static final byte CHAR_CLASSES[] = new byte[128];
+
+    static {
+        String punctuation = "!\"#$%&'()*+,-./:;<=>?@[\\]^_`{|}~";
+        for (int i = 0; i < punctuation.length(); ++i) {
+            CHAR_CLASSES[punctuation.charAt(i)] = PUNCTUATION_CHAR;
+        }
+        String space = " \t\n\u000B\f\r";
+        for (int i = 0; i < space.length(); ++i) {
+            CHAR_CLASSES[space.charAt(i)] = SPACE_CHAR;
+        }
+    }
+
+    private final CharTermAttribute termAttribute = addAttribute(CharTermAttribute.class);
+    private final OffsetAttribute offsetAttribute = addAttribute(OffsetAttribute.class);
+    private final char buffer[] = new char[BUFFER_SIZE];
+    /**
+     * The number of valid chars inside the {@link #buffer}.
+     */
+    private int bufferLength = 0;
+    /**
+     * The position of the next char inside the {@link #buffer}.
+     */
+    private int bufferPos = 0;
+    /**
+     * The offset of the first char of the {@link #buffer} inside the input.
+     */
+    private int bufferOffset = 0;
+    private boolean inputEnded = false;
+
+    public SimpleTokenizer(Reader input) {
+        super(input);
+    }
+
+    @Override
+    public boolean incrementToken() throws IOException {
+        clearAttributes();
+        // skip everything until the next word char
+        while (true) {
+            if ((bufferPos >= bufferLength) && (!fill(1))) {
+                return false;
+            }
+            if (charClass(buffer[bufferPos]) == WORD_CHAR) {
+                break;
+            }
+            ++bufferPos;
+        }
+        int start = bufferOffset + bufferPos;
+        char term[] = termAttribute.buffer();
+        int length = 0;
+        char c;
+        while ((bufferPos < bufferLength) || fill(1)) {
+            c = buffer[bufferPos];
+            switch (charClass(c)) {
+            case WORD_CHAR:
+                if (length == term.length) {
+                    term = termAttribute.resizeBuffer(length + 1);
+                }
+                term[length] = c;
+                ++length;
+                ++bufferPos;
+                continue;
+            case PUNCTUATION_CHAR:
+                // a punctuation char is part of the token if it is followed by a word char
+                if (((bufferPos + 1) < bufferLength) || fill(2)) {
+                    if (charClass(buffer[bufferPos + 1]) == WORD_CHAR) {
+                        if ((length + 1) >= term.length) {
+                            term = termAttribute.resizeBuffer(length + 2);
+                        }
+                        term[length] = c;
+                        term[length + 1] = buffer[bufferPos + 1];
+                        length += 2;
+                        bufferPos += 2;
+                        continue;
+                    }
+                }
+                break;
+            default:
+                break;
+            }
+            break;
+        }
+        termAttribute.setLength(length);
+        offsetAttribute.setOffset(correctOffset(start), correctOffset(start + length));
+        return true;
+    }
+
+    private static byte charClass(char c) {
+        return (c < 128) ? CHAR_CLASSES[c] : WORD_CHAR;
+    }
+
+    /**
+     * Makes sure that the buffer contains at least the given number of chars
+     * starting from the current position.
+     * 
+     * @return false if the input ended before
+     */
+    private boolean fill(int needed) throws IOException {
+        if (inputEnded) {
+            return (bufferLength - bufferPos) >= needed;
+        }
+        // move the remaining chars to the beginning of the buffer
+        int remaining = bufferLength - bufferPos;
+        if ((remaining > 0) && (bufferPos > 0)) {
+            System.arraycopy(buffer, bufferPos, buffer, 0, remaining);
+        }
+        bufferOffset += bufferPos;
+        bufferPos = 0;
+        bufferLength = remaining;
+        int read;
+        while (bufferLength < needed) {
+            read = input.read(buffer, bufferLength, buffer.length - bufferLength);
+            if (read < 0) {
+                inputEnded = true;
+                return false;
+            }
+            bufferLength += read;
+        }
+        return true;
+    }
+
+    @Override
+    public void end() throws IOException {
+        // the complete input has been read
+        int finalOffset = correctOffset(bufferOffset + bufferLength);
+        offsetAttribute.setOffset(finalOffset, finalOffset);
+    }
+
+    @Override
+    public void reset() throws IOException {
+        super.reset();
+        bufferLength = 0;
+        bufferPos = 0;
+        bufferOffset = 0;
+        inputEnded = false;
+    }
+}
@@ -20,17 +20,28 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
-import java.util.List;
+import java.io.RandomAccessFile;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.Arrays;
+import java.util.concurrent.RecursiveTask;
 
-import org.aksw.palmetto.corpus.WindowSupportingAdapter;
+import org.aksw.palmetto.corpus.CorpusStatistics;
+import org.aksw.palmetto.corpus.DocumentPositionsConsumer;
+import org.aksw.palmetto.corpus.StatisticsSupportingAdapter;
+import org.aksw.palmetto.corpus.StreamingWindowSupportingAdapter;
+import org.aksw.palmetto.corpus.TermWindowCounts;
+import org.aksw.palmetto.corpus.TermWindowCountsSupportingAdapter;
 import org.apache.lucene.index.AtomicReader;
 import org.apache.lucene.index.AtomicReaderContext;
 import org.apache.lucene.index.CorruptIndexException;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.DocsAndPositionsEnum;
 import org.apache.lucene.index.DocsEnum;
-import org.apache.lucene.index.Term;
-import org.apache.lucene.store.NIOFSDirectory;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.TermState;
+import org.apache.lucene.util.PriorityQueue;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -38,27 +49,64 @@ import com.carrotsearch.hppc.IntArrayList;
 import com.carrotsearch.hppc.IntIntOpenHashMap;
 import com.carrotsearch.hppc.IntObjectOpenHashMap;
 
-public class WindowSupportingLuceneCorpusAdapter extends LuceneCorpusAdapter implements WindowSupportingAdapter {
+public class WindowSupportingLuceneCorpusAdapter extends LuceneCorpusAdapter implements
+        StreamingWindowSupportingAdapter, StatisticsSupportingAdapter, TermWindowCountsSupportingAdapter {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(WindowSupportingLuceneCorpusAdapter.class);
 
     public static final String HISTOGRAM_FILE_SUFFIX = ".histogram";
+    /**
+     * Suffix of the sidecar file containing the document lengths as int column
+     * (indexed by the global document id). It is only used for indexes that do
+     * not have a document length doc values column.
+     */
+    public static final String DOC_LENGTH_FILE_SUFFIX = ".lengths";
+    /**
+     * Suffix of the file containing the {@link CorpusStatistics} of the index.
+     * If it exists, it is used instead of the histogram file.
+     */
+    public static final String STATISTICS_FILE_SUFFIX = ".stats";
+    /**
+     * Suffix of the file containing the {@link TermWindowCounts} of the index.
+     */
+    public static final String TERM_WINDOW_COUNTS_FILE_SUFFIX = ".termwindows";
 
     public static WindowSupportingLuceneCorpusAdapter create(String indexPath, String textFieldName,
             String docLengthFieldName) throws CorruptIndexException, IOException {
-        DirectoryReader dirReader = DirectoryReader.open(new NIOFSDirectory(new File(indexPath)));
-        List<AtomicReaderContext> leaves = dirReader.leaves();
-        AtomicReader reader[] = new AtomicReader[leaves.size()];
-        AtomicReaderContext contexts[] = new AtomicReaderContext[leaves.size()];
-        for (int i = 0; i < reader.length; i++) {
-            contexts[i] = leaves.get(i);
-            reader[i] = contexts[i].reader();
+        return create(indexPath, textFieldName, docLengthFieldName, DirectoryMode.DEFAULT);
+    }
+
+    public static WindowSupportingLuceneCorpusAdapter create(String indexPath, String textFieldName,
+            String docLengthFieldName, DirectoryMode mode) throws CorruptIndexException, IOException {
+        DirectoryReader dirReader = openIndex(indexPath, mode);
+        LuceneIndexWarmer.WarmUpResult preloadResult = preload(dirReader, mode);
+        WindowSupportingLuceneCorpusAdapter adapter = new WindowSupportingLuceneCorpusAdapter(indexPath,
+                textFieldName, docLengthFieldName);
+        WindowIndexSnapshot snapshot;
+        try {
+            snapshot = adapter.readIndexFiles(dirReader);
+        } catch (IOException e) {
+            dirReader.close();
+            throw e;
+        }
+        if (snapshot == null) {
+            dirReader.close();
+            return null;
         }
+        adapter.snapshot = snapshot;
+        adapter.preloadResult = preloadResult;
+        return adapter;
+    }
+
+    /**
+     * Reads the serialized histogram of an index that has no statistics file.
+     */
+    protected static int[][] readHistogram(String fileName) {
         int histogram[][] = null;
         FileInputStream fis = null;
         ObjectInputStream ois = null;
         try {
-            fis = new FileInputStream(indexPath + HISTOGRAM_FILE_SUFFIX);
+            fis = new FileInputStream(fileName);
             ois = new ObjectInputStream(fis);
             histogram = (int[][]) ois.readObject();
         } catch (Exception e) {
@@ -71,50 +119,247 @@ public class WindowSupportingLuceneCorpusAdapter extends LuceneCorpusAdapter imp
                 // nothing to do
             }
         }
-        if (histogram == null) {
+        return histogram;
+    }
+
+    /**
+     * Reads the term window counts from the given file. Returns null if the
+     * file does not exist or if the counts have been determined for a
+     * different state of the index, e.g., before documents have been deleted.
+     */
+    protected static TermWindowCounts readTermWindowCounts(String fileName, DirectoryReader dirReader) {
+        TermWindowCounts counts = TermWindowCounts.read(fileName);
+        if ((counts != null)
+                && ((counts.getMaxDoc() != dirReader.maxDoc()) || (counts.getNumberOfDocuments() != dirReader
+                        .numDocs()))) {
+            LOGGER.warn("The term window counts file \"" + fileName
+                    + "\" does not fit to the index. It will be ignored.");
             return null;
         }
+        return counts;
+    }
+
+    /**
+     * Returns the doc values of the document length field for every leaf or
+     * null if at least one of the leaves does not have them. Note that this
+     * loads the columns of the single segments.
+     */
+    protected static NumericDocValues[] loadDocLengthValues(AtomicReader reader[], String docLengthFieldName)
+            throws IOException {
+        NumericDocValues docLengthValues[] = new NumericDocValues[reader.length];
+        for (int i = 0; i < reader.length; i++) {
+            docLengthValues[i] = reader[i].getNumericDocValues(docLengthFieldName);
+            if (docLengthValues[i] == null) {
+                return null;
+            }
+        }
+        return docLengthValues;
+    }
 
-        return new WindowSupportingLuceneCorpusAdapter(dirReader, reader, contexts, textFieldName, docLengthFieldName,
-                histogram);
+    /**
+     * Maps the document length sidecar file with the given name into memory.
+     * Returns null if the file does not exist or does not fit to the index.
+     */
+    protected static IntBuffer mapDocLengthColumn(String fileName, int maxDoc) {
+        File file = new File(fileName);
+        if (!file.exists()) {
+            return null;
+        }
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(file, "r");
+            if (raf.length() != (4L * maxDoc)) {
+                LOGGER.warn("The document length file \"" + fileName + "\" does not fit to the index. It will be ignored.");
+                return null;
+            }
+            return raf.getChannel().map(MapMode.READ_ONLY, 0, raf.length()).asIntBuffer();
+        } catch (IOException e) {
+            LOGGER.error("Couldn't map document length file \"" + fileName + "\". It will be ignored.", e);
+            return null;
+        } finally {
+            // the mapping stays valid after the channel has been closed
+            if (raf != null) {
+                try {
+                    raf.close();
+                } catch (IOException e) {
+                }
+            }
+        }
     }
 
-    protected int histogram[][];
+    /**
+     * The path of the index used to read the files stored next to it.
+     */
+    protected String indexPath;
     protected String docLengthFieldName;
 
+    protected WindowSupportingLuceneCorpusAdapter(String indexPath, String textFieldName, String docLengthFieldName) {
+        super(textFieldName);
+        this.indexPath = indexPath;
+        this.docLengthFieldName = docLengthFieldName;
+    }
+
     protected WindowSupportingLuceneCorpusAdapter(DirectoryReader dirReader, AtomicReader[] reader,
             AtomicReaderContext contexts[], String textFieldName, String docLengthFieldName, int histogram[][]) {
-        super(dirReader, reader, contexts, textFieldName);
-        this.histogram = histogram;
-        this.docLengthFieldName = docLengthFieldName;
+        this(dirReader, reader, contexts, textFieldName, docLengthFieldName, histogram, null, null);
+    }
+
+    protected WindowSupportingLuceneCorpusAdapter(DirectoryReader dirReader, AtomicReader[] reader,
+            AtomicReaderContext contexts[], String textFieldName, String docLengthFieldName, int histogram[][],
+            NumericDocValues docLengthValues[], IntBuffer docLengthColumn) {
+        this(null, textFieldName, docLengthFieldName);
+        this.snapshot = new WindowIndexSnapshot(dirReader, reader, contexts, histogram, null, docLengthValues,
+                docLengthColumn, null);
+    }
+
+    /**
+     * Reads the statistics, the document lengths and the term window counts
+     * of the given version of the index.
+     * 
+     * @return the snapshot of the given reader or null if the document size
+     *         histogram is not available
+     */
+    protected WindowIndexSnapshot readIndexFiles(DirectoryReader dirReader) throws IOException {
+        int histogram[][] = null;
+        CorpusStatistics statistics = CorpusStatistics.read(indexPath + STATISTICS_FILE_SUFFIX);
+        if (statistics != null) {
+            if (statistics.getNumberOfDocuments() != dirReader.numDocs()) {
+                LOGGER.warn("The statistics file contains " + statistics.getNumberOfDocuments()
+                        + " documents while the index contains " + dirReader.numDocs() + " documents.");
+            }
+            histogram = statistics.getDocumentSizeHistogram();
+        } else {
+            histogram = readHistogram(indexPath + HISTOGRAM_FILE_SUFFIX);
+        }
+        if (histogram == null) {
+            return null;
+        }
+        return createSnapshot(dirReader, histogram, statistics);
+    }
+
+    /**
+     * Creates the snapshot of the given reader using the given histogram and
+     * statistics. The document lengths and the term window counts are read
+     * for the given reader.
+     */
+    protected WindowIndexSnapshot createSnapshot(DirectoryReader dirReader, int histogram[][],
+            CorpusStatistics statistics) throws IOException {
+        AtomicReader reader[] = getLeafReaders(dirReader);
+        NumericDocValues docLengthValues[] = loadDocLengthValues(reader, docLengthFieldName);
+        IntBuffer docLengthColumn = null;
+        TermWindowCounts termWindowCounts = null;
+        if (indexPath != null) {
+            if (docLengthValues == null) {
+                docLengthColumn = mapDocLengthColumn(indexPath + DOC_LENGTH_FILE_SUFFIX, dirReader.maxDoc());
+                if (docLengthColumn == null) {
+                    LOGGER.warn("The index has neither a document length doc values column nor a valid \""
+                            + DOC_LENGTH_FILE_SUFFIX
+                            + "\" file. Falling back to reading the document lengths from the stored documents.");
+                }
+            }
+            termWindowCounts = readTermWindowCounts(indexPath + TERM_WINDOW_COUNTS_FILE_SUFFIX, dirReader);
+        }
+        return new WindowIndexSnapshot(dirReader, reader, dirReader.leaves().toArray(new AtomicReaderContext[0]),
+                histogram, statistics, docLengthValues, docLengthColumn, termWindowCounts);
+    }
+
+    /**
+     * Reads the statistics, the document lengths and the term window counts
+     * of the new index version. Thus, the adapter should be reopened after
+     * the appending of documents has been finished completely.
+     */
+    @Override
+    protected IndexSnapshot createSnapshot(DirectoryReader dirReader, IndexSnapshot formerSnapshot)
+            throws IOException {
+        WindowIndexSnapshot newSnapshot = null;
+        if (indexPath != null) {
+            newSnapshot = readIndexFiles(dirReader);
+            if (newSnapshot == null) {
+                LOGGER.warn("Couldn't read the document size histogram of the new index version. "
+                        + "Keeping the former histogram.");
+            }
+        }
+        if (newSnapshot == null) {
+            WindowIndexSnapshot former = (WindowIndexSnapshot) formerSnapshot;
+            newSnapshot = createSnapshot(dirReader, former.histogram, former.statistics);
+        }
+        return newSnapshot;
+    }
+
+    @Override
+    protected WindowIndexSnapshot acquireSnapshot() {
+        return (WindowIndexSnapshot) super.acquireSnapshot();
     }
 
     @Override
     public int[][] getDocumentSizeHistogram() {
-        return histogram;
+        return ((WindowIndexSnapshot) snapshot).histogram;
+    }
+
+    @Override
+    public CorpusStatistics getStatistics() {
+        return ((WindowIndexSnapshot) snapshot).statistics;
+    }
+
+    @Override
+    public TermWindowCounts getTermWindowCounts() {
+        return ((WindowIndexSnapshot) snapshot).termWindowCounts;
     }
 
     @Override
     public IntObjectOpenHashMap<IntArrayList[]> requestWordPositionsInDocuments(String[] words,
             IntIntOpenHashMap docLengths) {
         IntObjectOpenHashMap<IntArrayList[]> positionsInDocs = new IntObjectOpenHashMap<IntArrayList[]>();
-        for (int i = 0; i < words.length; ++i) {
-            requestDocumentsWithWord(words[i], positionsInDocs, docLengths, i, words.length);
+        WindowIndexSnapshot snapshot = acquireSnapshot();
+        try {
+            for (int i = 0; i < words.length; ++i) {
+                requestDocumentsWithWord(snapshot, words[i], positionsInDocs, docLengths, i, words.length);
+            }
+        } finally {
+            releaseSnapshot(snapshot);
         }
         return positionsInDocs;
     }
 
-    protected void requestDocumentsWithWord(String word, IntObjectOpenHashMap<IntArrayList[]> positionsInDocs,
-            IntIntOpenHashMap docLengths, int wordId, int numberOfWords) {
+    protected void requestDocumentsWithWord(WindowIndexSnapshot snapshot, String word,
+            IntObjectOpenHashMap<IntArrayList[]> positionsInDocs, IntIntOpenHashMap docLengths, int wordId,
+            int numberOfWords) {
+        AtomicReader reader[] = snapshot.reader;
+        TermState states[];
+        try {
+            states = snapshot.getTermStates(word);
+        } catch (IOException e) {
+            LOGGER.error("Error while requesting documents for word \"" + word + "\".", e);
+            return;
+        }
+        if (isTraversingLeavesInParallel(snapshot)) {
+            LeafPositionsTask tasks[] = new LeafPositionsTask[reader.length];
+            for (int i = 0; i < tasks.length; i++) {
+                tasks[i] = new LeafPositionsTask(snapshot, word, i, states[i], docLengths);
+            }
+            invokeLeafTasks(tasks);
+            // merge the results in the order of the leaves
+            for (int i = 0; i < tasks.length; i++) {
+                addLeafPositions(tasks[i].join(), positionsInDocs, docLengths, wordId, numberOfWords);
+            }
+            return;
+        }
         DocsAndPositionsEnum docPosEnum = null;
-        Term term = new Term(fieldName, word);
         int localDocId, globalDocId, baseDocId;
         IntArrayList positions[];
+        NumericDocValues lengthValues = null;
         try {
             for (int i = 0; i < reader.length; i++) {
-                docPosEnum = reader[i].termPositionsEnum(term);
-                baseDocId = contexts[i].docBase;
-                if (docPosEnum != null) {
+                if (states[i] != null) {
+                    docPosEnum = snapshot.getPositionsEnum(word, i, states[i]);
+                    if (docPosEnum == null) {
+                        LOGGER.error("The index does not contain positions for the field \"" + fieldName + "\".");
+                        return;
+                    }
+                    baseDocId = snapshot.contexts[i].docBase;
+                    if (snapshot.docLengthValues != null) {
+                        lengthValues = reader[i].getNumericDocValues(docLengthFieldName);
+                    }
                     while (docPosEnum.nextDoc() != DocsEnum.NO_MORE_DOCS) {
                         localDocId = docPosEnum.docID();
                         globalDocId = localDocId + baseDocId;
@@ -133,9 +378,8 @@ public class WindowSupportingLuceneCorpusAdapter extends LuceneCorpusAdapter imp
                             positions[wordId].add(docPosEnum.nextPosition());
                         }
                         if (!docLengths.containsKey(globalDocId)) {
-                            // Get the length of the document
-                            docLengths.put(globalDocId, reader[i].document(localDocId).getField(docLengthFieldName)
-                                    .numericValue().intValue());
+                            docLengths.put(globalDocId,
+                                    getDocumentLength(snapshot, lengthValues, i, localDocId, globalDocId));
                         }
                     }
                 }
@@ -145,4 +389,320 @@ public class WindowSupportingLuceneCorpusAdapter extends LuceneCorpusAdapter imp
         }
     }
 
+    @Override
+    public void streamWordPositionsInDocuments(String[] words, DocumentPositionsConsumer consumer) {
+        streamWordPositionsInDocuments(words, 1, consumer);
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * <p>
+     * If a document contains less than the given number of words, the enums of
+     * the words it contains are advanced to the next document of one of the
+     * other words, i.e., the skip lists of the index are used to jump over
+     * documents that can not match.
+     * </p>
+     */
+    @Override
+    public void streamWordPositionsInDocuments(String[] words, int minNumberOfWords,
+            DocumentPositionsConsumer consumer) {
+        if (minNumberOfWords > words.length) {
+            return;
+        }
+        if (minNumberOfWords < 1) {
+            minNumberOfWords = 1;
+        }
+        WindowIndexSnapshot snapshot = acquireSnapshot();
+        try {
+            streamWordPositionsInDocuments(snapshot, words, minNumberOfWords, consumer);
+        } finally {
+            releaseSnapshot(snapshot);
+        }
+    }
+
+    protected void streamWordPositionsInDocuments(WindowIndexSnapshot snapshot, String[] words,
+            int minNumberOfWords, DocumentPositionsConsumer consumer) {
+        AtomicReader reader[] = snapshot.reader;
+        TermState states[][] = new TermState[words.length][];
+        try {
+            for (int w = 0; w < words.length; ++w) {
+                states[w] = snapshot.getTermStates(words[w]);
+            }
+        } catch (IOException e) {
+            LOGGER.error("Error while requesting documents for words " + Arrays.toString(words) + ".", e);
+            return;
+        }
+        // the lists are reused for every document
+        IntArrayList positionLists[] = new IntArrayList[words.length];
+        for (int w = 0; w < words.length; ++w) {
+            positionLists[w] = new IntArrayList();
+        }
+        IntArrayList docPositions[] = new IntArrayList[words.length];
+        // the entries of the words contained in the current document
+        PositionsEnumEntry entriesOfDoc[] = new PositionsEnumEntry[words.length];
+        int numberOfEntries;
+        PositionsEnumQueue queue = new PositionsEnumQueue(words.length);
+        LeafCursors leafCursors = snapshot.getCursors();
+        PositionsEnumEntry entry;
+        DocsAndPositionsEnum docPosEnum;
+        NumericDocValues lengthValues = null;
+        int localDocId, globalDocId, freq, target;
+        try {
+            for (int i = 0; i < reader.length; i++) {
+                // position the enums of all words on their first document inside this leaf
+                queue.clear();
+                for (int w = 0; w < words.length; ++w) {
+                    if (states[w][i] != null) {
+                        docPosEnum = leafCursors.seek(words[w], i, states[w][i]).docsAndPositions(
+                                reader[i].getLiveDocs(), null, 0);
+                        if (docPosEnum == null) {
+                            LOGGER.error("The index does not contain positions for the field \"" + fieldName
+                                    + "\".");
+                            return;
+                        }
+                        if (docPosEnum.nextDoc() != DocsEnum.NO_MORE_DOCS) {
+                            queue.add(new PositionsEnumEntry(w, docPosEnum));
+                        }
+                    }
+                }
+                if (queue.size() < minNumberOfWords) {
+                    continue;
+                }
+                if (snapshot.docLengthValues != null) {
+                    lengthValues = reader[i].getNumericDocValues(docLengthFieldName);
+                }
+                while (queue.size() >= minNumberOfWords) {
+                    // collect the enums of all words that are contained in the next document
+                    localDocId = queue.top().docPosEnum.docID();
+                    numberOfEntries = 0;
+                    do {
+                        entriesOfDoc[numberOfEntries] = queue.pop();
+                        ++numberOfEntries;
+                    } while ((queue.size() > 0) && (queue.top().docPosEnum.docID() == localDocId));
+                    if (numberOfEntries >= minNumberOfWords) {
+                        for (int e = 0; e < numberOfEntries; ++e) {
+                            entry = entriesOfDoc[e];
+                            positionLists[entry.wordId].clear();
+                            freq = entry.docPosEnum.freq();
+                            for (int p = 0; p < freq; ++p) {
+                                positionLists[entry.wordId].add(entry.docPosEnum.nextPosition());
+                            }
+                            docPositions[entry.wordId] = positionLists[entry.wordId];
+                        }
+                        globalDocId = localDocId + snapshot.contexts[i].docBase;
+                        consumer.consumeDocument(globalDocId, docPositions,
+                                getDocumentLength(snapshot, lengthValues, i, localDocId, globalDocId));
+                        for (int e = 0; e < numberOfEntries; ++e) {
+                            docPositions[entriesOfDoc[e].wordId] = null;
+                            if (entriesOfDoc[e].docPosEnum.nextDoc() != DocsEnum.NO_MORE_DOCS) {
+                                queue.add(entriesOfDoc[e]);
+                            }
+                        }
+                    } else if (queue.size() > 0) {
+                        // the document can not match, i.e., skip to the next document of one of the other words
+                        target = queue.top().docPosEnum.docID();
+                        for (int e = 0; e < numberOfEntries; ++e) {
+                            if (entriesOfDoc[e].docPosEnum.advance(target) != DocsEnum.NO_MORE_DOCS) {
+                                queue.add(entriesOfDoc[e]);
+                            }
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.error("Error while requesting documents for words " + Arrays.toString(words) + ".", e);
+        }
+    }
+
+    /**
+     * Returns the length of the given document. The length is read from the
+     * given doc values column of the leaf or the sidecar file if one of them is
+     * available. Otherwise, the stored document has to be loaded.
+     */
+    protected int getDocumentLength(WindowIndexSnapshot snapshot, NumericDocValues lengthValues, int leafId,
+            int localDocId, int globalDocId) throws IOException {
+        if (lengthValues != null) {
+            return (int) lengthValues.get(localDocId);
+        } else if (snapshot.docLengthColumn != null) {
+            return snapshot.docLengthColumn.get(globalDocId);
+        } else {
+            return snapshot.reader[leafId].document(localDocId).getField(docLengthFieldName).numericValue()
+                    .intValue();
+        }
+    }
+
+    /**
+     * Adds the positions collected from a single leaf to the given map.
+     */
+    protected void addLeafPositions(LeafPositions leafPositions,
+            IntObjectOpenHashMap<IntArrayList[]> positionsInDocs, IntIntOpenHashMap docLengths, int wordId,
+            int numberOfWords) {
+        int globalDocId, freq, docLength, pos = 0;
+        IntArrayList positions[];
+        for (int d = 0; d < leafPositions.docIds.elementsCount; ++d) {
+            globalDocId = leafPositions.docIds.buffer[d];
+            if (!positionsInDocs.containsKey(globalDocId)) {
+                positions = new IntArrayList[numberOfWords];
+                positionsInDocs.put(globalDocId, positions);
+            } else {
+                positions = positionsInDocs.get(globalDocId);
+            }
+            if (positions[wordId] == null) {
+                positions[wordId] = new IntArrayList();
+            }
+            freq = leafPositions.freqs.buffer[d];
+            positions[wordId].add(leafPositions.positions.buffer, pos, freq);
+            pos += freq;
+            docLength = leafPositions.docLengths.buffer[d];
+            if ((docLength >= 0) && !docLengths.containsKey(globalDocId)) {
+                docLengths.put(globalDocId, docLength);
+            }
+        }
+    }
+
+    /**
+     * A version of the index together with the data read from the files
+     * stored next to it.
+     */
+    protected class WindowIndexSnapshot extends IndexSnapshot {
+
+        public final int histogram[][];
+        /**
+         * The statistics of the index or null if the index has no statistics
+         * file.
+         */
+        public final CorpusStatistics statistics;
+        /**
+         * The document lengths stored as doc values column (one instance per
+         * leaf) or null if the index does not contain such a column. Note that
+         * Lucene hands out these instances per thread. Thus, they are only
+         * used to check whether the column is available while the single
+         * requests retrieve their own instances from the readers.
+         */
+        public final NumericDocValues docLengthValues[];
+        /**
+         * The memory-mapped document lengths sidecar (indexed by the global
+         * document id) or null if it is not used.
+         */
+        public final IntBuffer docLengthColumn;
+        /**
+         * The window counts of the single words or null if the index has no
+         * (valid) term window counts file.
+         */
+        public final TermWindowCounts termWindowCounts;
+
+        public WindowIndexSnapshot(DirectoryReader dirReader, AtomicReader reader[], AtomicReaderContext contexts[],
+                int histogram[][], CorpusStatistics statistics, NumericDocValues docLengthValues[],
+                IntBuffer docLengthColumn, TermWindowCounts termWindowCounts) {
+            super(dirReader, reader, contexts);
+            this.histogram = histogram;
+            this.statistics = statistics;
+            this.docLengthValues = docLengthValues;
+            this.docLengthColumn = docLengthColumn;
+            this.termWindowCounts = termWindowCounts;
+        }
+    }
+
+    /**
+     * The positions enum of a single word inside a {@link PositionsEnumQueue}.
+     */
+    protected static class PositionsEnumEntry {
+        public final int wordId;
+        public final DocsAndPositionsEnum docPosEnum;
+
+        public PositionsEnumEntry(int wordId, DocsAndPositionsEnum docPosEnum) {
+            this.wordId = wordId;
+            this.docPosEnum = docPosEnum;
+        }
+    }
+
+    /**
+     * A queue ordering the positions enums of the words of a single leaf by
+     * their current document.
+     */
+    protected static class PositionsEnumQueue extends PriorityQueue<PositionsEnumEntry> {
+
+        public PositionsEnumQueue(int maxSize) {
+            super(maxSize);
+        }
+
+        @Override
+        protected boolean lessThan(PositionsEnumEntry a, PositionsEnumEntry b) {
+            return a.docPosEnum.docID() < b.docPosEnum.docID();
+        }
+    }
+
+    /**
+     * The documents, term frequencies, positions and document lengths found
+     * for a term inside a single leaf. The positions of all documents are
+     * stored in a single list. A document length is -1 if it is already known.
+     */
+    protected static class LeafPositions {
+        public IntArrayList docIds = new IntArrayList();
+        public IntArrayList freqs = new IntArrayList();
+        public IntArrayList positions = new IntArrayList();
+        public IntArrayList docLengths = new IntArrayList();
+    }
+
+    /**
+     * Collects the positions of a term inside a single leaf. The given map of
+     * document lengths is only read while the task is running.
+     */
+    @SuppressWarnings("serial")
+    protected class LeafPositionsTask extends RecursiveTask<LeafPositions> {
+
+        private WindowIndexSnapshot snapshot;
+        private String word;
+        private int leafId;
+        private TermState state;
+        private IntIntOpenHashMap knownDocLengths;
+
+        public LeafPositionsTask(WindowIndexSnapshot snapshot, String word, int leafId, TermState state,
+                IntIntOpenHashMap knownDocLengths) {
+            this.snapshot = snapshot;
+            this.word = word;
+            this.leafId = leafId;
+            this.state = state;
+            this.knownDocLengths = knownDocLengths;
+        }
+
+        @Override
+        protected LeafPositions compute() {
+            LeafPositions result = new LeafPositions();
+            if (state == null) {
+                return result;
+            }
+            try {
+                DocsAndPositionsEnum docPosEnum = snapshot.getPositionsEnum(word, leafId, state);
+                if (docPosEnum != null) {
+                    int baseDocId = snapshot.contexts[leafId].docBase;
+                    int localDocId, globalDocId, freq;
+                    NumericDocValues lengthValues = null;
+                    if (snapshot.docLengthValues != null) {
+                        lengthValues = snapshot.reader[leafId].getNumericDocValues(docLengthFieldName);
+                    }
+                    while (docPosEnum.nextDoc() != DocsEnum.NO_MORE_DOCS) {
+                        localDocId = docPosEnum.docID();
+                        globalDocId = localDocId + baseDocId;
+                        freq = docPosEnum.freq();
+                        result.docIds.add(globalDocId);
+                        result.freqs.add(freq);
+                        for (int p = 0; p < freq; ++p) {
+                            result.positions.add(docPosEnum.nextPosition());
+                        }
+                        if (knownDocLengths.containsKey(globalDocId)) {
+                            result.docLengths.add(-1);
+                        } else {
+                            result.docLengths.add(getDocumentLength(snapshot, lengthValues, leafId, localDocId,
+                                    globalDocId));
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                LOGGER.error("Error while requesting documents for word \"" + word + "\".", e);
+            }
+            return result;
+        }
+    }
 }
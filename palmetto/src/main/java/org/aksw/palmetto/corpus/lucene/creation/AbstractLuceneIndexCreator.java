@@ -18,24 +18,67 @@ package org.aksw.palmetto.corpus.lucene.creation;
 
 import java.io.IOException;
 import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.aksw.palmetto.corpus.lucene.PreAnalyzedTokenStream;
+import org.aksw.palmetto.corpus.lucene.SimpleAnalyzer;
+import org.aksw.palmetto.corpus.lucene.SimpleTokenizer;
 import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.CachingTokenFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.document.FieldType;
 import org.apache.lucene.document.IntField;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.util.Version;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
- * This is an abstract class with general index creation functionality.
+ * This is an abstract class with general index creation functionality. The
+ * documents are analyzed and added to a single {@link IndexWriter} by several
+ * threads (see {@link #setNumberOfThreads(int)}). The writer flushes its
+ * segments based on the size of its RAM buffer and, by default, the changes
+ * are committed only once at the end. Intermediate commits after a fixed
+ * number of documents are opt-in (see {@link #setCommitInterval(int)}). Note
+ * that they do not make the index creation resumable since a new index is
+ * created from scratch and the side car files, e.g., the statistics and the
+ * term window counts, are written after the last document has been added.
  * 
  * @author Michael R&ouml;der (roeder@informatik.uni-leipzig.de)
  * 
  */
 public abstract class AbstractLuceneIndexCreator {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(AbstractLuceneIndexCreator.class);
+
     protected static final Version version = Version.LUCENE_44;
-    protected static final int DEFAULT_COMMIT_INTERVAL = 1000;
+    /**
+     * Commit interval that disables intermediate commits, i.e., the changes
+     * are committed only once at the end of the index creation.
+     */
+    public static final int NO_INTERMEDIATE_COMMITS = 0;
+    protected static final int DEFAULT_COMMIT_INTERVAL = NO_INTERMEDIATE_COMMITS;
+    public static final double DEFAULT_RAM_BUFFER_SIZE_MB = 256;
+    public static final int DEFAULT_NUMBER_OF_THREADS = 1;
+    /**
+     * The number of documents after which the progress is logged.
+     */
+    protected static final int PROGRESS_LOG_INTERVAL = 100000;
 
     /**
      * The name of the field in which the document texts are stored.
@@ -43,10 +86,31 @@ public abstract class AbstractLuceneIndexCreator {
     protected String textFieldName;
 
     /**
-     * The interval in which changes are committed to the index.
+     * The interval in which changes are committed to the index or
+     * {@link #NO_INTERMEDIATE_COMMITS}.
      */
     protected int commitInterval;
 
+    /**
+     * The size of the RAM buffer of the index writer. If it is full, the
+     * buffered documents are flushed to a new segment.
+     */
+    protected double ramBufferSizeMB = DEFAULT_RAM_BUFFER_SIZE_MB;
+
+    /**
+     * The number of threads analyzing documents and adding them to the index.
+     * Note that with more than one thread, the ids of the documents do not
+     * follow the order of the document iterator.
+     */
+    protected int numberOfThreads = DEFAULT_NUMBER_OF_THREADS;
+
+    /**
+     * Flag indicating whether the documents should be tokenized using the
+     * regular expression of the {@link SimpleAnalyzer} instead of the
+     * {@link SimpleTokenizer}. Both return the same tokens.
+     */
+    protected boolean usePatternTokenizer = false;
+
     /**
      * Constructor.
      * 
@@ -63,24 +127,158 @@ public abstract class AbstractLuceneIndexCreator {
      * @param textFieldName
      *            The name of the field in which the document texts are stored.
      * @param commitInterval
-     *            The interval in which changes are committed to the index.
+     *            The interval in which changes are committed to the index or
+     *            {@link #NO_INTERMEDIATE_COMMITS}.
      */
     public AbstractLuceneIndexCreator(String textFieldName, int commitInterval) {
         this.textFieldName = textFieldName;
         this.commitInterval = commitInterval;
     }
 
+    /**
+     * Creates the analyzer used to tokenize the documents.
+     */
+    protected Analyzer createAnalyzer() {
+        return new SimpleAnalyzer(true, usePatternTokenizer);
+    }
+
+    /**
+     * Configures the given writer config with the RAM buffer size and the
+     * number of threads of this creator.
+     */
+    protected void configure(IndexWriterConfig config) {
+        config.setRAMBufferSizeMB(ramBufferSizeMB);
+        config.setMaxBufferedDocs(IndexWriterConfig.DISABLE_AUTO_FLUSH);
+        if (numberOfThreads > config.getMaxThreadStates()) {
+            config.setMaxThreadStates(numberOfThreads);
+        }
+    }
+
+    /**
+     * Transforms the elements of the given iterator into Lucene documents and
+     * adds them to the given writer. The work is done by the given converters,
+     * i.e., one thread is started for every converter (if there is only one
+     * converter, the calling thread is used). The iterator is accessed
+     * synchronized, i.e., it does not have to be thread safe.
+     * 
+     * @return the number of documents added to the index
+     * @throws IOException
+     *             if one of the threads could not add a document
+     */
+    @SuppressWarnings("unchecked")
+    protected <T> long addDocuments(final IndexWriter writer, final Iterator<T> docIterator,
+            DocumentConverter<T> converters[]) throws IOException {
+        final AtomicLong documentCount = new AtomicLong();
+        final AtomicBoolean aborted = new AtomicBoolean(false);
+        final long startTime = System.currentTimeMillis();
+        IndexingTask<T> tasks[] = new IndexingTask[converters.length];
+        for (int i = 0; i < tasks.length; ++i) {
+            tasks[i] = new IndexingTask<T>(writer, docIterator, converters[i], documentCount, aborted, startTime);
+        }
+        if (tasks.length == 1) {
+            tasks[0].call();
+        } else {
+            ExecutorService executor = Executors.newFixedThreadPool(tasks.length);
+            try {
+                Future<?> futures[] = new Future<?>[tasks.length];
+                for (int i = 0; i < tasks.length; ++i) {
+                    futures[i] = executor.submit(tasks[i]);
+                }
+                IOException exception = null;
+                for (int i = 0; i < futures.length; ++i) {
+                    try {
+                        futures[i].get();
+                    } catch (ExecutionException e) {
+                        if (exception == null) {
+                            if (e.getCause() instanceof IOException) {
+                                exception = (IOException) e.getCause();
+                            } else {
+                                exception = new IOException("Exception while indexing documents.", e.getCause());
+                            }
+                        }
+                    } catch (InterruptedException e) {
+                        aborted.set(true);
+                        Thread.currentThread().interrupt();
+                        throw new IOException("Interrupted while waiting for the indexing threads.", e);
+                    }
+                }
+                if (exception != null) {
+                    throw exception;
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+        logProgress("Indexed ", documentCount.get(), startTime);
+        return documentCount.get();
+    }
+
+    protected static void logProgress(String prefix, long documentCount, long startTime) {
+        long duration = System.currentTimeMillis() - startTime;
+        LOGGER.info(prefix + documentCount + " documents in " + (duration / 1000.0) + "s ("
+                + ((duration > 0) ? Long.toString((1000L * documentCount) / duration) : "n/a") + " docs/s).");
+    }
+
+    /**
+     * Creates the field of the document text. If the given document length
+     * array is not null, the text is analyzed directly and the number of
+     * positions (i.e., the length of the document) is written to its first
+     * element. The analyzed tokens are cached and handed to the index writer,
+     * i.e., the text is analyzed only once.
+     */
+    protected Field createTextField(Analyzer analyzer, String text, FieldType fieldType, int documentLength[])
+            throws IOException {
+        TokenStream tokenStream = analyzer.tokenStream(textFieldName, new StringReader(text));
+        if (documentLength == null) {
+            return new Field(textFieldName, tokenStream, fieldType);
+        }
+        CachingTokenFilter cachingFilter = new CachingTokenFilter(tokenStream);
+        PositionIncrementAttribute posIncAttribute = cachingFilter.addAttribute(PositionIncrementAttribute.class);
+        int length = 0;
+        tokenStream.reset();
+        while (cachingFilter.incrementToken()) {
+            length += posIncAttribute.getPositionIncrement();
+        }
+        documentLength[0] = length;
+        return new Field(textFieldName, cachingFilter, fieldType);
+    }
+
+    /**
+     * Analyzes the given text and returns its tokens. The tokens can be
+     * indexed using a {@link PreAnalyzedTokenStream}.
+     */
+    protected String[] tokenize(Analyzer analyzer, String text) throws IOException {
+        List<String> tokens = new ArrayList<String>();
+        TokenStream tokenStream = analyzer.tokenStream(textFieldName, new StringReader(text));
+        try {
+            CharTermAttribute termAttribute = tokenStream.addAttribute(CharTermAttribute.class);
+            tokenStream.reset();
+            while (tokenStream.incrementToken()) {
+                tokens.add(termAttribute.toString());
+            }
+            tokenStream.end();
+        } finally {
+            tokenStream.close();
+        }
+        return tokens.toArray(new String[tokens.size()]);
+    }
+
     protected Document toLuceneDocument(Analyzer analyzer, String text, FieldType fieldType)
             throws IOException {
         Document document = new Document();
-        document.add(new Field(textFieldName, analyzer.tokenStream(textFieldName,
-                new StringReader(text)), fieldType));
+        document.add(createTextField(analyzer, text, fieldType, null));
         return document;
     }
 
+    /**
+     * Adds the length of the document as stored field and as numeric doc
+     * values column. The latter is used by the adapters to look up document
+     * lengths without loading stored documents.
+     */
     protected void addDocumentLength(Document document, String docLengthFieldName, FieldType docLengthFieldType,
             int documentLength) {
         document.add(new IntField(docLengthFieldName, documentLength, docLengthFieldType));
+        document.add(new NumericDocValuesField(docLengthFieldName, documentLength));
     }
 
     public int getCommitInterval() {
@@ -94,4 +292,117 @@ public abstract class AbstractLuceneIndexCreator {
     public String getTextFieldName() {
         return textFieldName;
     }
+
+    public double getRamBufferSizeMB() {
+        return ramBufferSizeMB;
+    }
+
+    public void setRamBufferSizeMB(double ramBufferSizeMB) {
+        this.ramBufferSizeMB = ramBufferSizeMB;
+    }
+
+    public int getNumberOfThreads() {
+        return numberOfThreads;
+    }
+
+    /**
+     * Sets the number of threads analyzing documents and adding them to the
+     * index. Note that with more than one thread, the ids of the documents do
+     * not follow the order of the document iterator.
+     */
+    public void setNumberOfThreads(int numberOfThreads) {
+        this.numberOfThreads = Math.max(1, numberOfThreads);
+    }
+
+    public boolean isUsingPatternTokenizer() {
+        return usePatternTokenizer;
+    }
+
+    /**
+     * Sets whether the documents should be tokenized using the regular
+     * expression of the {@link SimpleAnalyzer} instead of the
+     * {@link SimpleTokenizer} (default).
+     */
+    public void setUsePatternTokenizer(boolean usePatternTokenizer) {
+        this.usePatternTokenizer = usePatternTokenizer;
+    }
+
+    /**
+     * Transforms the elements of a document iterator into Lucene documents.
+     * Every indexing thread has its own converter, i.e., a converter does not
+     * have to be thread safe.
+     * 
+     * @author Michael R&ouml;der (roeder@informatik.uni-leipzig.de)
+     *
+     * @param <T>
+     *            the type of the elements of the document iterator
+     */
+    protected static interface DocumentConverter<T> {
+
+        /**
+         * Transforms the given element into a Lucene document or returns null
+         * if the element should not be indexed.
+         */
+        public Document convert(T element) throws IOException;
+    }
+
+    /**
+     * Takes elements from the shared document iterator, transforms them using
+     * its converter and adds them to the index writer until the iterator is
+     * empty or another task failed.
+     */
+    protected class IndexingTask<T> implements Callable<Object> {
+
+        private IndexWriter writer;
+        private Iterator<T> docIterator;
+        private DocumentConverter<T> converter;
+        private AtomicLong documentCount;
+        private AtomicBoolean aborted;
+        private long startTime;
+
+        public IndexingTask(IndexWriter writer, Iterator<T> docIterator, DocumentConverter<T> converter,
+                AtomicLong documentCount, AtomicBoolean aborted, long startTime) {
+            this.writer = writer;
+            this.docIterator = docIterator;
+            this.converter = converter;
+            this.documentCount = documentCount;
+            this.aborted = aborted;
+            this.startTime = startTime;
+        }
+
+        @Override
+        public Object call() throws IOException {
+            T element;
+            Document document;
+            long count;
+            try {
+                while (!aborted.get()) {
+                    synchronized (docIterator) {
+                        if (!docIterator.hasNext()) {
+                            return null;
+                        }
+                        element = docIterator.next();
+                    }
+                    document = converter.convert(element);
+                    if (document != null) {
+                        writer.addDocument(document);
+                        count = documentCount.incrementAndGet();
+                        if ((commitInterval > 0) && ((count % commitInterval) == 0)) {
+                            writer.commit();
+                        }
+                        if ((count % PROGRESS_LOG_INTERVAL) == 0) {
+                            logProgress("Added ", count, startTime);
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                aborted.set(true);
+                throw e;
+            } catch (RuntimeException e) {
+                aborted.set(true);
+                throw e;
+            }
+            return null;
+        }
+    }
 }
@@ -17,21 +17,43 @@
 package org.aksw.palmetto.corpus.lucene.creation;
 
 /**
- * A simple structure containing the text of a document and its number of tokens.
+ * A simple structure containing the text of a document and its number of tokens. If the number of tokens is not known
+ * ({@link #UNKNOWN_NUMBER_OF_TOKENS}), it is determined while the document is analyzed for the index. A document can
+ * also carry the tokens of its text if it has already been analyzed. In this case, the tokens are indexed directly.
  * 
  * @author Michael R&ouml;der (roeder@informatik.uni-leipzig.de)
  * 
  */
 public class IndexableDocument {
 
+    public static final int UNKNOWN_NUMBER_OF_TOKENS = -1;
+
     private String text;
     private int numberOfTokens;
+    private String tokens[];
+
+    public IndexableDocument(String text) {
+        this(text, UNKNOWN_NUMBER_OF_TOKENS);
+    }
 
     public IndexableDocument(String text, int numberOfTokens) {
         this.text = text;
         this.numberOfTokens = numberOfTokens;
     }
 
+    /**
+     * Constructor for an already analyzed document.
+     * 
+     * @param text
+     *            the text of the document
+     * @param tokens
+     *            the tokens of the text
+     */
+    public IndexableDocument(String text, String tokens[]) {
+        this(text, tokens.length);
+        this.tokens = tokens;
+    }
+
     public String getText() {
         return text;
     }
@@ -47,4 +69,16 @@ public class IndexableDocument {
     public void setNumberOfTokens(int numberOfTokens) {
         this.numberOfTokens = numberOfTokens;
     }
+
+    /**
+     * Returns the tokens of the text or null if the document has not been
+     * analyzed.
+     */
+    public String[] getTokens() {
+        return tokens;
+    }
+
+    public void setTokens(String[] tokens) {
+        this.tokens = tokens;
+    }
 }
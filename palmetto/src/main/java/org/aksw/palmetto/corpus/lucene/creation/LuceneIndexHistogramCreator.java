@@ -16,17 +16,21 @@
  */
 package org.aksw.palmetto.corpus.lucene.creation;
 
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectOutputStream;
 import java.util.List;
 
+import org.aksw.palmetto.corpus.CorpusStatistics;
 import org.aksw.palmetto.corpus.lucene.WindowSupportingLuceneCorpusAdapter;
 import org.apache.lucene.index.AtomicReader;
 import org.apache.lucene.index.AtomicReaderContext;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.index.NumericDocValues;
 import org.apache.lucene.store.SimpleFSDirectory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -35,7 +39,11 @@ import com.carrotsearch.hppc.IntIntOpenHashMap;
 
 /**
  * A simple class that iterates over a given Lucene index and creates a histogram of the document lengths stored inside
- * a documentLengthField.
+ * a documentLengthField. In the same pass, it writes the document lengths as int column (indexed by the global
+ * document id) into a sidecar file which can be memory-mapped by the {@link WindowSupportingLuceneCorpusAdapter}
+ * for indexes that have been created without a document length doc values column. Additionally, the
+ * {@link CorpusStatistics} file is written. Note that indexes created by the
+ * {@link PositionStoringLuceneIndexCreator} already have this file.
  * 
  * @author Michael R&ouml;der (roeder@informatik.uni-leipzig.de)
  * 
@@ -55,31 +63,53 @@ public class LuceneIndexHistogramCreator {
         int histogram[][] = createHistogram(indexPath);
         if (histogram != null) {
             storeHistogram(histogram, indexPath + WindowSupportingLuceneCorpusAdapter.HISTOGRAM_FILE_SUFFIX);
+            // indexes created before the statistics file has been introduced get it as well
+            try {
+                CorpusStatistics.create(histogram, CorpusStatistics.DEFAULT_WINDOW_SIZES).write(
+                        indexPath + WindowSupportingLuceneCorpusAdapter.STATISTICS_FILE_SUFFIX);
+            } catch (IOException e) {
+                LOGGER.error("Couldn't store statistics.", e);
+            }
         }
     }
 
     protected int[][] createHistogram(String indexPath) {
         IntIntOpenHashMap histogram = new IntIntOpenHashMap();
         DirectoryReader dirReader = null;
+        DataOutputStream lengthsOut = null;
         try {
             dirReader = DirectoryReader.open(new SimpleFSDirectory(
                     new File(indexPath)));
+            lengthsOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexPath
+                    + WindowSupportingLuceneCorpusAdapter.DOC_LENGTH_FILE_SUFFIX)));
             List<AtomicReaderContext> leaves = dirReader.leaves();
             AtomicReader reader;
+            NumericDocValues docLengths;
             int documentCount = 0;
+            int length;
             IndexableField field;
             Number number;
             for (int i = 0; i < leaves.size(); ++i) {
                 reader = leaves.get(i).reader();
+                docLengths = reader.getNumericDocValues(docLengthFieldName);
                 for (int d = 0; d < reader.maxDoc(); ++d) {
-                    field = reader.document(d).getField(docLengthFieldName);
-                    if (field != null) {
-                        number = field.numericValue().intValue();
-                        if (number != null) {
-                            ++documentCount;
-                            histogram.putOrAdd(number.intValue(), 1, 1);
+                    length = 0;
+                    if (docLengths != null) {
+                        length = (int) docLengths.get(d);
+                        ++documentCount;
+                        histogram.putOrAdd(length, 1, 1);
+                    } else {
+                        field = reader.document(d).getField(docLengthFieldName);
+                        if (field != null) {
+                            number = field.numericValue().intValue();
+                            if (number != null) {
+                                length = number.intValue();
+                                ++documentCount;
+                                histogram.putOrAdd(length, 1, 1);
+                            }
                         }
                     }
+                    lengthsOut.writeInt(length);
                 }
             }
             LOGGER.info("Saw " + documentCount + " documents.");
@@ -93,6 +123,12 @@ public class LuceneIndexHistogramCreator {
                 } catch (IOException e) {
                 }
             }
+            if (lengthsOut != null) {
+                try {
+                    lengthsOut.close();
+                } catch (IOException e) {
+                }
+            }
         }
         int result[][] = new int[histogram.size()][2];
         int posInResult = 0;
@@ -0,0 +1,679 @@
+/**
+ * This file is part of Palmetto.
+ *
+ * Palmetto is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Palmetto is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Palmetto.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.aksw.palmetto.corpus.lucene.creation;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.aksw.palmetto.corpus.PairCounts;
+import org.apache.commons.io.IOUtils;
+import org.apache.lucene.index.AtomicReader;
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.DocsAndPositionsEnum;
+import org.apache.lucene.index.DocsEnum;
+import org.apache.lucene.index.MultiFields;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.store.SimpleFSDirectory;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.LongLongOpenHashMap;
+
+/**
+ * Determines the {@link PairCounts} of a given vocabulary for an existing
+ * Lucene index, i.e., the boolean document counts and the boolean sliding
+ * window counts of all single words and all pairs of words.
+ * 
+ * <p>
+ * The documents of every leaf of the index are processed in blocks. For every
+ * block, the postings (and positions) of all vocabulary words are read and
+ * inverted into the single documents. The pairs of words of every document
+ * are counted. For the sliding windows, every word occurrence covers an
+ * interval of windows. The windows shared by two words are determined by a
+ * sweep over these intervals. The pair counts are collected in hash maps
+ * that are written to sorted temporary runs if they grow too large. At the
+ * end, the runs are merged, pairs with a count below the minimum count are
+ * pruned and the counts are written to a single file.
+ * </p>
+ * 
+ * <p>
+ * Note that the number of pairs of a document grows quadratically with the
+ * number of different vocabulary words it contains, i.e., the creation for a
+ * large vocabulary is an expensive offline task.
+ * </p>
+ * 
+ * @author Michael R&ouml;der (roeder@informatik.uni-leipzig.de)
+ *
+ */
+public class PairCountsCreator {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PairCountsCreator.class);
+
+    public static final int DEFAULT_MIN_COUNT = 1;
+    public static final int DEFAULT_DOCUMENTS_PER_BLOCK = 10000;
+    public static final int DEFAULT_MAX_PAIRS_IN_MEMORY = 1 << 22;
+
+    /**
+     * Returns the given number of words of the given index that occur in the
+     * largest number of documents. This can be used to select the vocabulary
+     * for which the pair counts are determined.
+     */
+    public static String[] selectFrequentWords(String indexPath, String textFieldName, int numberOfWords)
+            throws IOException {
+        DirectoryReader dirReader = DirectoryReader.open(new SimpleFSDirectory(new File(indexPath)));
+        try {
+            // a min heap of (document frequency, term) pairs
+            PriorityQueue<TermWithFrequency> queue = new PriorityQueue<TermWithFrequency>();
+            Terms terms = MultiFields.getTerms(dirReader, textFieldName);
+            if (terms != null) {
+                TermsEnum termsEnum = terms.iterator(null);
+                BytesRef term;
+                int docFreq;
+                while ((term = termsEnum.next()) != null) {
+                    docFreq = termsEnum.docFreq();
+                    if (queue.size() < numberOfWords) {
+                        queue.add(new TermWithFrequency(term.utf8ToString(), docFreq));
+                    } else if ((numberOfWords > 0) && (queue.peek().frequency < docFreq)) {
+                        queue.poll();
+                        queue.add(new TermWithFrequency(term.utf8ToString(), docFreq));
+                    }
+                }
+            }
+            String words[] = new String[queue.size()];
+            for (int i = words.length - 1; i >= 0; --i) {
+                words[i] = queue.poll().term;
+            }
+            return words;
+        } finally {
+            dirReader.close();
+        }
+    }
+
+    protected String textFieldName;
+    protected String docLengthFieldName;
+    protected int windowSizes[];
+    protected boolean countingBooleanDocuments = true;
+    protected int minCount = DEFAULT_MIN_COUNT;
+    protected int documentsPerBlock = DEFAULT_DOCUMENTS_PER_BLOCK;
+    protected int maxPairsInMemory = DEFAULT_MAX_PAIRS_IN_MEMORY;
+
+    public PairCountsCreator(String textFieldName, String docLengthFieldName, int windowSizes[]) {
+        this.textFieldName = textFieldName;
+        this.docLengthFieldName = docLengthFieldName;
+        this.windowSizes = windowSizes;
+    }
+
+    /**
+     * Determines the pair counts of the given words for the index with the
+     * given path and writes them into the given file.
+     * 
+     * @return true if the counts have been written successfully, else false.
+     */
+    public boolean createPairCounts(String indexPath, String words[], String outputFile) {
+        DirectoryReader dirReader = null;
+        PairCounts.Writer writer = null;
+        PairAccumulator accumulators[] = null;
+        boolean success = false;
+        try {
+            dirReader = DirectoryReader.open(new SimpleFSDirectory(new File(indexPath)));
+            byte vocabulary[][] = PairCounts.sortWords(words);
+            int docLengths[] = (new TermWindowCountsCreator(textFieldName, docLengthFieldName))
+                    .readDocumentLengths(dirReader);
+            Bits liveDocs = MultiFields.getLiveDocs(dirReader);
+
+            int models[] = getModels();
+            long totals[] = new long[models.length];
+            long singles[][] = new long[models.length][vocabulary.length];
+            accumulators = new PairAccumulator[models.length];
+            for (int m = 0; m < models.length; ++m) {
+                accumulators[m] = new PairAccumulator(maxPairsInMemory);
+                totals[m] = (models[m] == PairCounts.BOOLEAN_DOCUMENT_MODEL) ? dirReader.numDocs() : countWindows(
+                        docLengths, liveDocs, models[m]);
+            }
+            BytesRef terms[] = new BytesRef[vocabulary.length];
+            for (int i = 0; i < terms.length; ++i) {
+                terms[i] = new BytesRef(vocabulary[i]);
+            }
+            for (AtomicReaderContext context : dirReader.leaves()) {
+                countLeaf(context, terms, docLengths, models, singles, accumulators);
+            }
+            LOGGER.info("Counted the pairs of " + vocabulary.length + " words in " + dirReader.numDocs()
+                    + " documents. Writing the counts...");
+
+            writer = new PairCounts.Writer(outputFile, dirReader.numDocs(), dirReader.maxDoc(), minCount, vocabulary);
+            for (int m = 0; m < models.length; ++m) {
+                writer.startModel(models[m], totals[m], singles[m]);
+                accumulators[m].writePairs(writer, minCount);
+                writer.finishModel();
+            }
+            writer.close();
+            writer = null;
+            success = true;
+        } catch (IOException e) {
+            LOGGER.error("Error while determining the pair counts. Aborting.", e);
+        } finally {
+            if (writer != null) {
+                // an incomplete file must not be used
+                writer.abort();
+            }
+            if (accumulators != null) {
+                for (int m = 0; m < accumulators.length; ++m) {
+                    if (accumulators[m] != null) {
+                        accumulators[m].deleteRuns();
+                    }
+                }
+            }
+            if (dirReader != null) {
+                try {
+                    dirReader.close();
+                } catch (IOException e) {
+                }
+            }
+        }
+        return success;
+    }
+
+    /**
+     * Returns the ids of the models that should be counted.
+     */
+    protected int[] getModels() {
+        int models[] = new int[windowSizes.length + (countingBooleanDocuments ? 1 : 0)];
+        int pos = 0;
+        if (countingBooleanDocuments) {
+            models[pos] = PairCounts.BOOLEAN_DOCUMENT_MODEL;
+            ++pos;
+        }
+        for (int i = 0; i < windowSizes.length; ++i) {
+            models[pos] = windowSizes[i];
+            ++pos;
+        }
+        return models;
+    }
+
+    /**
+     * Counts the windows of the given size inside the live documents (a
+     * document that is not longer than the window forms a single window).
+     */
+    protected static long countWindows(int docLengths[], Bits liveDocs, int windowSize) {
+        long windows = 0;
+        for (int d = 0; d < docLengths.length; ++d) {
+            if ((liveDocs == null) || liveDocs.get(d)) {
+                windows += (docLengths[d] <= windowSize) ? 1 : (docLengths[d] - windowSize + 1);
+            }
+        }
+        return windows;
+    }
+
+    /**
+     * Counts the single words and pairs of the documents of the given leaf
+     * block by block.
+     */
+    protected void countLeaf(AtomicReaderContext context, BytesRef terms[], int docLengths[], int models[],
+            long singles[][], PairAccumulator accumulators[]) throws IOException {
+        AtomicReader reader = context.reader();
+        Terms leafTerms = reader.terms(textFieldName);
+        if (leafTerms == null) {
+            return;
+        }
+        boolean needsPositions = windowSizes.length > 0;
+        if (needsPositions && (!leafTerms.hasPositions())) {
+            throw new IOException("The index does not contain positions for the field \"" + textFieldName + "\".");
+        }
+        Bits liveDocs = reader.getLiveDocs();
+        TermsEnum termsEnum = leafTerms.iterator(null);
+        DocsEnum docsEnum = null;
+        DocsAndPositionsEnum docPosEnum = null;
+        int maxDoc = reader.maxDoc();
+        // the words and positions of the single documents of a block: word id, frequency, positions
+        IntArrayList documents[] = new IntArrayList[Math.min(documentsPerBlock, Math.max(1, maxDoc))];
+        for (int d = 0; d < documents.length; ++d) {
+            documents[d] = new IntArrayList();
+        }
+        DocumentCounter counter = new DocumentCounter(models, singles, accumulators);
+        int blockEnd, docId, freq;
+        for (int blockStart = 0; blockStart < maxDoc; blockStart = blockEnd) {
+            blockEnd = Math.min(maxDoc, blockStart + documents.length);
+            for (int w = 0; w < terms.length; ++w) {
+                if (!termsEnum.seekExact(terms[w], true)) {
+                    continue;
+                }
+                if (needsPositions) {
+                    docPosEnum = termsEnum.docsAndPositions(liveDocs, docPosEnum, DocsAndPositionsEnum.FLAG_NONE);
+                    docsEnum = docPosEnum;
+                } else {
+                    docsEnum = termsEnum.docs(liveDocs, docsEnum, DocsEnum.FLAG_NONE);
+                }
+                docId = docsEnum.advance(blockStart);
+                while (docId < blockEnd) {
+                    IntArrayList document = documents[docId - blockStart];
+                    document.add(w);
+                    if (needsPositions) {
+                        freq = docPosEnum.freq();
+                        document.add(freq);
+                        for (int p = 0; p < freq; ++p) {
+                            document.add(docPosEnum.nextPosition());
+                        }
+                    } else {
+                        document.add(0);
+                    }
+                    docId = docsEnum.nextDoc();
+                }
+            }
+            for (int d = 0; d < (blockEnd - blockStart); ++d) {
+                if (documents[d].elementsCount > 0) {
+                    counter.countDocument(documents[d], docLengths[context.docBase + blockStart + d]);
+                    documents[d].clear();
+                }
+            }
+        }
+    }
+
+    public boolean isCountingBooleanDocuments() {
+        return countingBooleanDocuments;
+    }
+
+    /**
+     * Sets whether the boolean document counts should be determined (default)
+     * additionally to the counts of the window sizes.
+     */
+    public void setCountingBooleanDocuments(boolean countingBooleanDocuments) {
+        this.countingBooleanDocuments = countingBooleanDocuments;
+    }
+
+    public int getMinCount() {
+        return minCount;
+    }
+
+    /**
+     * Sets the minimum count a pair needs to be stored. Pairs with a lower
+     * count are answered with a count of 0 afterwards, i.e., a minimum count
+     * larger than 1 trades exactness for a smaller file.
+     */
+    public void setMinCount(int minCount) {
+        this.minCount = minCount;
+    }
+
+    public int getDocumentsPerBlock() {
+        return documentsPerBlock;
+    }
+
+    public void setDocumentsPerBlock(int documentsPerBlock) {
+        this.documentsPerBlock = Math.max(1, documentsPerBlock);
+    }
+
+    public int getMaxPairsInMemory() {
+        return maxPairsInMemory;
+    }
+
+    /**
+     * Sets the maximum number of pairs of a single model that are held in
+     * memory before they are written to a temporary file.
+     */
+    public void setMaxPairsInMemory(int maxPairsInMemory) {
+        this.maxPairsInMemory = Math.max(1, maxPairsInMemory);
+    }
+
+    public int[] getWindowSizes() {
+        return windowSizes;
+    }
+
+    public void setWindowSizes(int[] windowSizes) {
+        this.windowSizes = windowSizes;
+    }
+
+    /**
+     * Counts the single words and pairs of single documents.
+     */
+    protected static class DocumentCounter {
+
+        protected int models[];
+        protected long singles[][];
+        protected PairAccumulator accumulators[];
+        // the words of the current document and the start of their positions
+        protected IntArrayList wordIds = new IntArrayList();
+        protected IntArrayList positionStarts = new IntArrayList();
+        protected IntArrayList frequencies = new IntArrayList();
+        // the intervals of windows covered by the single words
+        protected IntArrayList intervalWords = new IntArrayList();
+        protected IntArrayList intervalStarts = new IntArrayList();
+        protected IntArrayList intervalEnds = new IntArrayList();
+        protected IntArrayList active = new IntArrayList();
+        protected long sortedIntervals[] = new long[16];
+
+        public DocumentCounter(int models[], long singles[][], PairAccumulator accumulators[]) {
+            this.models = models;
+            this.singles = singles;
+            this.accumulators = accumulators;
+        }
+
+        public void countDocument(IntArrayList document, int docLength) {
+            wordIds.clear();
+            positionStarts.clear();
+            frequencies.clear();
+            int pos = 0;
+            while (pos < document.elementsCount) {
+                wordIds.add(document.buffer[pos]);
+                frequencies.add(document.buffer[pos + 1]);
+                positionStarts.add(pos + 2);
+                pos += 2 + document.buffer[pos + 1];
+            }
+            for (int m = 0; m < models.length; ++m) {
+                if (models[m] == PairCounts.BOOLEAN_DOCUMENT_MODEL) {
+                    countBooleanDocument(singles[m], accumulators[m]);
+                } else {
+                    countWindows(document, docLength, models[m], singles[m], accumulators[m]);
+                }
+            }
+        }
+
+        protected void countBooleanDocument(long singles[], PairAccumulator accumulator) {
+            int ids[] = wordIds.buffer;
+            for (int i = 0; i < wordIds.elementsCount; ++i) {
+                ++singles[ids[i]];
+                // the word ids are sorted
+                for (int j = i + 1; j < wordIds.elementsCount; ++j) {
+                    accumulator.add(ids[i], ids[j], 1);
+                }
+            }
+        }
+
+        /**
+         * Counts the windows of the given size. The windows are identified by
+         * their first position, i.e., [0, max(0, docLength - windowSize)]. A
+         * word at position p is part of the windows [p - windowSize + 1, p].
+         */
+        protected void countWindows(IntArrayList document, int docLength, int windowSize, long singles[],
+                PairAccumulator accumulator) {
+            int lastWindow = Math.max(0, docLength - windowSize);
+            intervalWords.clear();
+            intervalStarts.clear();
+            intervalEnds.clear();
+            int position, start, end, currentStart, currentEnd;
+            for (int i = 0; i < wordIds.elementsCount; ++i) {
+                currentStart = -1;
+                currentEnd = -2;
+                for (int p = 0; p < frequencies.buffer[i]; ++p) {
+                    position = document.buffer[positionStarts.buffer[i] + p];
+                    if (position >= docLength) {
+                        // positions outside of the document are ignored
+                        break;
+                    }
+                    start = Math.max(0, position - windowSize + 1);
+                    end = Math.min(position, lastWindow);
+                    if (start <= (currentEnd + 1)) {
+                        currentEnd = Math.max(currentEnd, end);
+                    } else {
+                        if (currentStart >= 0) {
+                            addInterval(wordIds.buffer[i], currentStart, currentEnd, singles);
+                        }
+                        currentStart = start;
+                        currentEnd = end;
+                    }
+                }
+                if (currentStart >= 0) {
+                    addInterval(wordIds.buffer[i], currentStart, currentEnd, singles);
+                }
+            }
+            // sort the intervals by their start
+            int numberOfIntervals = intervalWords.elementsCount;
+            if (sortedIntervals.length < numberOfIntervals) {
+                sortedIntervals = new long[Math.max(numberOfIntervals, 2 * sortedIntervals.length)];
+            }
+            for (int i = 0; i < numberOfIntervals; ++i) {
+                sortedIntervals[i] = (((long) intervalStarts.buffer[i]) << 32) | i;
+            }
+            Arrays.sort(sortedIntervals, 0, numberOfIntervals);
+            // sweep over the intervals. When an interval ends, its overlap with all active intervals is counted.
+            active.clear();
+            int interval;
+            for (int i = 0; i < numberOfIntervals; ++i) {
+                interval = (int) sortedIntervals[i];
+                removeEndedIntervals(intervalStarts.buffer[interval], accumulator);
+                active.add(interval);
+            }
+            removeEndedIntervals(Integer.MAX_VALUE, accumulator);
+        }
+
+        private void addInterval(int wordId, int start, int end, long singles[]) {
+            intervalWords.add(wordId);
+            intervalStarts.add(start);
+            intervalEnds.add(end);
+            singles[wordId] += end - start + 1;
+        }
+
+        /**
+         * Removes all active intervals that end before the given position (in
+         * the order of their ends) and counts their overlaps with the
+         * remaining active intervals.
+         */
+        private void removeEndedIntervals(int position, PairAccumulator accumulator) {
+            int minPos, ended, other, word1, word2, overlap;
+            while (active.elementsCount > 0) {
+                minPos = 0;
+                for (int i = 1; i < active.elementsCount; ++i) {
+                    if (intervalEnds.buffer[active.buffer[i]] < intervalEnds.buffer[active.buffer[minPos]]) {
+                        minPos = i;
+                    }
+                }
+                ended = active.buffer[minPos];
+                if (intervalEnds.buffer[ended] >= position) {
+                    return;
+                }
+                active.buffer[minPos] = active.buffer[active.elementsCount - 1];
+                --active.elementsCount;
+                for (int i = 0; i < active.elementsCount; ++i) {
+                    other = active.buffer[i];
+                    overlap = intervalEnds.buffer[ended]
+                            - Math.max(intervalStarts.buffer[ended], intervalStarts.buffer[other]) + 1;
+                    word1 = intervalWords.buffer[ended];
+                    word2 = intervalWords.buffer[other];
+                    if (word1 < word2) {
+                        accumulator.add(word1, word2, overlap);
+                    } else if (word2 < word1) {
+                        accumulator.add(word2, word1, overlap);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Collects the counts of pairs. If too many pairs are held in memory, they
+     * are written to a sorted temporary run.
+     */
+    protected static class PairAccumulator {
+
+        protected int maxPairsInMemory;
+        protected LongLongOpenHashMap counts = new LongLongOpenHashMap();
+        protected List<File> runs = new ArrayList<File>();
+
+        public PairAccumulator(int maxPairsInMemory) {
+            this.maxPairsInMemory = maxPairsInMemory;
+        }
+
+        public void add(int wordId1, int wordId2, long count) {
+            counts.putOrAdd((((long) wordId1) << 32) | wordId2, count, count);
+            if (counts.size() >= maxPairsInMemory) {
+                try {
+                    writeRun();
+                } catch (IOException e) {
+                    throw new IllegalStateException("Couldn't write pair counts to a temporary file.", e);
+                }
+            }
+        }
+
+        /**
+         * Returns the pairs held in memory sorted by their keys.
+         */
+        protected long[] getSortedKeys() {
+            long keys[] = new long[counts.size()];
+            int pos = 0;
+            for (int i = 0; i < counts.allocated.length; ++i) {
+                if (counts.allocated[i]) {
+                    keys[pos] = counts.keys[i];
+                    ++pos;
+                }
+            }
+            Arrays.sort(keys);
+            return keys;
+        }
+
+        protected void writeRun() throws IOException {
+            File run = File.createTempFile("paircounts", ".run");
+            runs.add(run);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(run)));
+            try {
+                long keys[] = getSortedKeys();
+                for (int i = 0; i < keys.length; ++i) {
+                    out.writeLong(keys[i]);
+                    out.writeLong(counts.get(keys[i]));
+                }
+            } finally {
+                out.close();
+            }
+            counts.clear();
+        }
+
+        /**
+         * Merges the runs and the pairs held in memory and adds all pairs with
+         * a count of at least the given minimum count to the given writer.
+         */
+        public void writePairs(PairCounts.Writer writer, int minCount) throws IOException {
+            if (runs.size() > 0) {
+                writeRun();
+            }
+            if (runs.size() == 0) {
+                long keys[] = getSortedKeys();
+                long count;
+                for (int i = 0; i < keys.length; ++i) {
+                    count = counts.get(keys[i]);
+                    if (count >= minCount) {
+                        writer.addPair((int) (keys[i] >>> 32), (int) keys[i], count);
+                    }
+                }
+                counts.clear();
+                return;
+            }
+            PriorityQueue<RunReader> queue = new PriorityQueue<RunReader>();
+            try {
+                RunReader reader;
+                for (File run : runs) {
+                    reader = new RunReader(run);
+                    if (reader.next()) {
+                        queue.add(reader);
+                    } else {
+                        reader.close();
+                    }
+                }
+                long key, count;
+                while (!queue.isEmpty()) {
+                    key = queue.peek().key;
+                    count = 0;
+                    while ((!queue.isEmpty()) && (queue.peek().key == key)) {
+                        reader = queue.poll();
+                        count += reader.count;
+                        if (reader.next()) {
+                            queue.add(reader);
+                        } else {
+                            reader.close();
+                        }
+                    }
+                    if (count >= minCount) {
+                        writer.addPair((int) (key >>> 32), (int) key, count);
+                    }
+                }
+            } finally {
+                for (RunReader reader : queue) {
+                    reader.close();
+                }
+                deleteRuns();
+            }
+        }
+
+        public void deleteRuns() {
+            for (File run : runs) {
+                run.delete();
+            }
+            runs.clear();
+        }
+    }
+
+    /**
+     * Reads the sorted pairs of a single run.
+     */
+    protected static class RunReader implements Comparable<RunReader> {
+
+        protected DataInputStream in;
+        protected long key;
+        protected long count;
+
+        public RunReader(File run) throws IOException {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(run)));
+        }
+
+        public boolean next() throws IOException {
+            try {
+                key = in.readLong();
+                count = in.readLong();
+                return true;
+            } catch (EOFException e) {
+                return false;
+            }
+        }
+
+        public void close() {
+            IOUtils.closeQuietly(in);
+        }
+
+        @Override
+        public int compareTo(RunReader other) {
+            return Long.compare(key, other.key);
+        }
+    }
+
+    protected static class TermWithFrequency implements Comparable<TermWithFrequency> {
+
+        public final String term;
+        public final int frequency;
+
+        public TermWithFrequency(String term, int frequency) {
+            this.term = term;
+            this.frequency = frequency;
+        }
+
+        @Override
+        public int compareTo(TermWithFrequency other) {
+            return Integer.compare(frequency, other.frequency);
+        }
+    }
+}
@@ -20,13 +20,17 @@ import java.io.File;
 import java.io.IOException;
 import java.util.Iterator;
 
-import org.aksw.palmetto.corpus.lucene.SimpleAnalyzer;
+import org.aksw.palmetto.corpus.CorpusStatistics;
+import org.aksw.palmetto.corpus.TermWindowCounts;
+import org.aksw.palmetto.corpus.lucene.PreAnalyzedTokenStream;
 import org.aksw.palmetto.corpus.lucene.WindowSupportingLuceneCorpusAdapter;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
 import org.apache.lucene.document.FieldType;
 import org.apache.lucene.document.IntField;
 import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.FieldInfo.IndexOptions;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
@@ -35,9 +39,18 @@ import org.apache.lucene.store.FSDirectory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.IntIntOpenHashMap;
+import com.carrotsearch.hppc.ObjectObjectOpenHashMap;
+
 /**
  * This class creates the Lucene indexes which are used to access the reference corpus during the coherence calculation
- * using a {@link WindowSupportingLuceneCorpusAdapter}.
+ * using a {@link WindowSupportingLuceneCorpusAdapter}. In the same pass, it determines the {@link CorpusStatistics}
+ * (e.g., the document length histogram) and stores them next to the index. Thus, the
+ * {@link LuceneIndexHistogramCreator} does not have to be used for indexes created with this class. Afterwards, the
+ * {@link TermWindowCounts} of the single terms are determined using a {@link TermWindowCountsCreator}. Documents can be
+ * appended to an existing index (see {@link #appendToIndex(File, Iterator)}) without reading the documents that are
+ * already part of the index again.
  * 
  * @author Michael R&ouml;der (roeder@informatik.uni-leipzig.de)
  * 
@@ -48,6 +61,11 @@ public class PositionStoringLuceneIndexCreator extends AbstractLuceneIndexCreato
             .getLogger(PositionStoringLuceneIndexCreator.class);
 
     protected String docLengthFieldName;
+    /**
+     * The window sizes for which the number of windows is stored in the
+     * statistics file and the term window counts file.
+     */
+    protected int windowSizes[] = CorpusStatistics.DEFAULT_WINDOW_SIZES;
 
     public PositionStoringLuceneIndexCreator(String textFieldName, String docLengthFieldName) {
         super(textFieldName);
@@ -70,12 +88,132 @@ public class PositionStoringLuceneIndexCreator extends AbstractLuceneIndexCreato
      */
     public boolean createIndex(File indexPath, Iterator<IndexableDocument> docIterator) {
         LOGGER.info("Starting index creation...");
-        IndexWriter writer = null;
         indexPath.mkdirs();
-        Analyzer analyzer = new SimpleAnalyzer(true);
+        IntIntOpenHashMap histogram = indexDocuments(indexPath, docIterator, OpenMode.CREATE, null, null);
+        if (histogram == null) {
+            return false;
+        }
+        LOGGER.info("Finished index creation.");
+        CorpusStatistics statistics = CorpusStatistics.create(histogram, windowSizes);
+        if (!writeStatistics(indexPath, statistics)) {
+            return false;
+        }
+        if (!(new TermWindowCountsCreator(textFieldName, docLengthFieldName, windowSizes))
+                .createTermWindowCounts(indexPath.getAbsolutePath())) {
+            LOGGER.error("Error while determining the window counts of the single terms. Aborting.");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Appends the given documents to the existing index with the given path.
+     * The lengths of the new documents are merged into the existing
+     * statistics of the index and the window counts of their terms are added
+     * to the existing term window counts, i.e., the documents that are already
+     * part of the index are not read again. If the term window counts of the
+     * index are missing or outdated, they are determined for the complete
+     * index. Adapters that are already using the index can switch to the
+     * extended index using {@link WindowSupportingLuceneCorpusAdapter#reopen()}.
+     * 
+     * @param indexPath
+     *            The path to the director containing the Lucene index created
+     *            by this class
+     * @param docIterator
+     *            Iterator that iterates over the new documents.
+     * @return true if the documents have been appended successfully, else
+     *         false.
+     */
+    public boolean appendToIndex(File indexPath, Iterator<IndexableDocument> docIterator) {
+        LOGGER.info("Starting to append documents to the index...");
+        CorpusStatistics statistics = CorpusStatistics.read(indexPath.getAbsolutePath()
+                + WindowSupportingLuceneCorpusAdapter.STATISTICS_FILE_SUFFIX);
+        if (statistics == null) {
+            LOGGER.error("The index has no statistics file. Documents can only be appended to indexes created by this class. Aborting.");
+            return false;
+        }
+        TermWindowCounts termWindowCounts = TermWindowCounts.read(indexPath.getAbsolutePath()
+                + WindowSupportingLuceneCorpusAdapter.TERM_WINDOW_COUNTS_FILE_SUFFIX);
+        // make sure that the statistics belong to the current state of the index
+        DirectoryReader dirReader = null;
+        try {
+            dirReader = DirectoryReader.open(FSDirectory.open(indexPath));
+            if (statistics.getNumberOfDocuments() != dirReader.numDocs()) {
+                LOGGER.error("The statistics of the index do not fit to the index (" + statistics.getNumberOfDocuments()
+                        + " documents instead of " + dirReader.numDocs() + "). Aborting.");
+                return false;
+            }
+            if ((termWindowCounts != null)
+                    && ((termWindowCounts.getNumberOfDocuments() != dirReader.numDocs()) || (termWindowCounts
+                            .getMaxDoc() != dirReader.maxDoc()))) {
+                LOGGER.warn("The term window counts do not fit to the index. They will be determined for the complete index.");
+                termWindowCounts = null;
+            }
+        } catch (IOException e) {
+            LOGGER.error("Error while opening the existing index. Aborting.", e);
+            return false;
+        } finally {
+            if (dirReader != null) {
+                try {
+                    dirReader.close();
+                } catch (IOException e) {
+                }
+            }
+        }
+
+        ObjectObjectOpenHashMap<String, long[]> additionalCounts = null;
+        if (termWindowCounts != null) {
+            additionalCounts = new ObjectObjectOpenHashMap<String, long[]>();
+        }
+        IntIntOpenHashMap histogram = indexDocuments(indexPath, docIterator, OpenMode.APPEND,
+                termWindowCounts != null ? termWindowCounts.getWindowSizes() : null, additionalCounts);
+        if (histogram == null) {
+            return false;
+        }
+        LOGGER.info("Finished appending documents.");
+        if (!writeStatistics(indexPath,
+                CorpusStatistics.merge(statistics, CorpusStatistics.create(histogram, statistics.getWindowSizes())))) {
+            return false;
+        }
+        TermWindowCountsCreator countsCreator = new TermWindowCountsCreator(textFieldName, docLengthFieldName,
+                windowSizes);
+        if (termWindowCounts != null) {
+            if (!countsCreator.appendTermWindowCounts(indexPath.getAbsolutePath(), termWindowCounts,
+                    additionalCounts)) {
+                LOGGER.error("Error while adding the window counts of the single terms. Aborting.");
+                return false;
+            }
+        } else {
+            if (!countsCreator.createTermWindowCounts(indexPath.getAbsolutePath())) {
+                LOGGER.error("Error while determining the window counts of the single terms. Aborting.");
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds the given documents to the index with the given path.
+     * 
+     * @param countedWindowSizes
+     *            the window sizes for which the window counts of the single
+     *            terms of the documents should be determined or null if they
+     *            should not be determined
+     * @param termWindowCounts
+     *            the map to which the window counts of the single terms are
+     *            added (if they are determined)
+     * @return the histogram of the lengths of the added documents or null if
+     *         an error occurred
+     */
+    protected IntIntOpenHashMap indexDocuments(File indexPath, Iterator<IndexableDocument> docIterator,
+            OpenMode openMode, int countedWindowSizes[], ObjectObjectOpenHashMap<String, long[]> termWindowCounts) {
+        IndexWriter writer = null;
+        IntIntOpenHashMap histogram = new IntIntOpenHashMap();
+        Analyzer analyzer = createAnalyzer();
         try {
             IndexWriterConfig config = new IndexWriterConfig(version, analyzer);
-            config.setOpenMode(OpenMode.CREATE);
+            config.setOpenMode(openMode);
+            configure(config);
 
             FieldType fieldType = new FieldType(TextField.TYPE_NOT_STORED);
             fieldType.setIndexed(true);
@@ -88,28 +226,27 @@ public class PositionStoringLuceneIndexCreator extends AbstractLuceneIndexCreato
             docLengthFieldType.freeze();
 
             writer = new IndexWriter(FSDirectory.open(indexPath), config);
-            int count = 0;
-            Document indexDocument;
-            IndexableDocument currentDocument;
-            while (docIterator.hasNext()) {
-                currentDocument = docIterator.next();
-                if (currentDocument.getText().length() > 0) {
-                    indexDocument = toLuceneDocument(analyzer, currentDocument.getText(), fieldType);
-                    addDocumentLength(indexDocument, docLengthFieldName, docLengthFieldType,
-                            currentDocument.getNumberOfTokens());
-                    writer.addDocument(indexDocument);
-                    ++count;
-                    if (count >= commitInterval) {
-                        writer.commit();
-                        System.gc();
-                        count = 0;
+            PositionStoringDocumentConverter converters[] = new PositionStoringDocumentConverter[numberOfThreads];
+            for (int i = 0; i < converters.length; ++i) {
+                converters[i] = new PositionStoringDocumentConverter(analyzer, fieldType, docLengthFieldType,
+                        countedWindowSizes);
+            }
+            addDocuments(writer, docIterator, converters);
+            // merge the histograms and counts of the single threads
+            for (int i = 0; i < converters.length; ++i) {
+                for (int j = 0; j < converters[i].histogram.allocated.length; ++j) {
+                    if (converters[i].histogram.allocated[j]) {
+                        histogram.putOrAdd(converters[i].histogram.keys[j], converters[i].histogram.values[j],
+                                converters[i].histogram.values[j]);
                     }
                 }
+                if (termWindowCounts != null) {
+                    converters[i].addTermWindowCounts(termWindowCounts);
+                }
             }
-            LOGGER.info("Finished index creation.");
         } catch (IOException e) {
             LOGGER.error("Error while creating Index. Aborting.", e);
-            return false;
+            return null;
         } finally {
             if (writer != null) {
                 try {
@@ -118,6 +255,148 @@ public class PositionStoringLuceneIndexCreator extends AbstractLuceneIndexCreato
                 }
             }
         }
+        return histogram;
+    }
+
+    protected boolean writeStatistics(File indexPath, CorpusStatistics statistics) {
+        try {
+            statistics.write(indexPath.getAbsolutePath() + WindowSupportingLuceneCorpusAdapter.STATISTICS_FILE_SUFFIX);
+        } catch (IOException e) {
+            LOGGER.error("Error while writing the statistics of the index. Aborting.", e);
+            return false;
+        }
+        LOGGER.info("The index contains " + statistics.getNumberOfDocuments() + " documents with "
+                + statistics.getNumberOfTokens() + " tokens.");
         return true;
     }
+
+    /**
+     * Transforms {@link IndexableDocument}s into Lucene documents and counts
+     * the lengths of the documents it has seen. If the number of tokens of a
+     * document is not known, it is determined while analyzing the text. The
+     * tokens of already analyzed documents are indexed directly. If window
+     * sizes are given, the converter determines the window counts of the
+     * single terms of its documents as well.
+     */
+    protected class PositionStoringDocumentConverter implements DocumentConverter<IndexableDocument> {
+
+        protected Analyzer analyzer;
+        protected FieldType fieldType;
+        protected FieldType docLengthFieldType;
+        protected IntIntOpenHashMap histogram = new IntIntOpenHashMap();
+        protected int documentLength[] = new int[1];
+        protected int countedWindowSizes[];
+        protected ObjectObjectOpenHashMap<String, long[]> termWindowCounts;
+        protected ObjectObjectOpenHashMap<String, IntArrayList> termPositions;
+
+        public PositionStoringDocumentConverter(Analyzer analyzer, FieldType fieldType, FieldType docLengthFieldType) {
+            this(analyzer, fieldType, docLengthFieldType, null);
+        }
+
+        public PositionStoringDocumentConverter(Analyzer analyzer, FieldType fieldType,
+                FieldType docLengthFieldType, int countedWindowSizes[]) {
+            this.analyzer = analyzer;
+            this.fieldType = fieldType;
+            this.docLengthFieldType = docLengthFieldType;
+            this.countedWindowSizes = countedWindowSizes;
+            if (countedWindowSizes != null) {
+                termWindowCounts = new ObjectObjectOpenHashMap<String, long[]>();
+                termPositions = new ObjectObjectOpenHashMap<String, IntArrayList>();
+            }
+        }
+
+        @Override
+        public Document convert(IndexableDocument element) throws IOException {
+            if (element.getText().length() == 0) {
+                return null;
+            }
+            Document document = new Document();
+            String tokens[] = element.getTokens();
+            if ((tokens == null) && (countedWindowSizes != null)) {
+                // the tokens are needed for counting the windows of the single terms
+                tokens = tokenize(analyzer, element.getText());
+            }
+            if (tokens != null) {
+                document.add(new Field(textFieldName, new PreAnalyzedTokenStream(tokens), fieldType));
+                documentLength[0] = (element.getNumberOfTokens() < 0) ? tokens.length : element
+                        .getNumberOfTokens();
+            } else if (element.getNumberOfTokens() < 0) {
+                document.add(createTextField(analyzer, element.getText(), fieldType, documentLength));
+            } else {
+                document.add(createTextField(analyzer, element.getText(), fieldType, null));
+                documentLength[0] = element.getNumberOfTokens();
+            }
+            addDocumentLength(document, docLengthFieldName, docLengthFieldType, documentLength[0]);
+            histogram.putOrAdd(documentLength[0], 1, 1);
+            if (countedWindowSizes != null) {
+                countTermWindows(tokens, documentLength[0]);
+            }
+            return document;
+        }
+
+        /**
+         * Adds the window counts of the terms of the given document to the
+         * counts of this converter.
+         */
+        protected void countTermWindows(String tokens[], int docLength) {
+            IntArrayList positions;
+            for (int i = 0; i < tokens.length; ++i) {
+                if (termPositions.containsKey(tokens[i])) {
+                    positions = termPositions.lget();
+                } else {
+                    positions = new IntArrayList();
+                    termPositions.put(tokens[i], positions);
+                }
+                positions.add(i);
+            }
+            long counts[];
+            for (int i = 0; i < termPositions.allocated.length; ++i) {
+                if (termPositions.allocated[i]) {
+                    String term = (String) ((Object[]) termPositions.keys)[i];
+                    positions = (IntArrayList) ((Object[]) termPositions.values)[i];
+                    if (termWindowCounts.containsKey(term)) {
+                        counts = termWindowCounts.lget();
+                    } else {
+                        counts = new long[countedWindowSizes.length];
+                        termWindowCounts.put(term, counts);
+                    }
+                    for (int w = 0; w < counts.length; ++w) {
+                        counts[w] += TermWindowCounts.countWindowsContainingWord(positions.buffer,
+                                positions.elementsCount, docLength, countedWindowSizes[w]);
+                    }
+                }
+            }
+            termPositions.clear();
+        }
+
+        /**
+         * Adds the window counts of the single terms determined by this
+         * converter to the given map.
+         */
+        public void addTermWindowCounts(ObjectObjectOpenHashMap<String, long[]> counts) {
+            long converterCounts[], mergedCounts[];
+            for (int i = 0; i < termWindowCounts.allocated.length; ++i) {
+                if (termWindowCounts.allocated[i]) {
+                    String term = (String) ((Object[]) termWindowCounts.keys)[i];
+                    converterCounts = (long[]) ((Object[]) termWindowCounts.values)[i];
+                    if (counts.containsKey(term)) {
+                        mergedCounts = counts.lget();
+                        for (int w = 0; w < mergedCounts.length; ++w) {
+                            mergedCounts[w] += converterCounts[w];
+                        }
+                    } else {
+                        counts.put(term, converterCounts);
+                    }
+                }
+            }
+        }
+    }
+
+    public int[] getWindowSizes() {
+        return windowSizes;
+    }
+
+    public void setWindowSizes(int[] windowSizes) {
+        this.windowSizes = windowSizes;
+    }
 }
@@ -21,8 +21,8 @@ import java.io.IOException;
 import java.util.Iterator;
 
 import org.aksw.palmetto.corpus.lucene.LuceneCorpusAdapter;
-import org.aksw.palmetto.corpus.lucene.SimpleAnalyzer;
 import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.document.Document;
 import org.apache.lucene.document.FieldType;
 import org.apache.lucene.document.TextField;
 import org.apache.lucene.index.FieldInfo.IndexOptions;
@@ -61,7 +61,8 @@ public class SimpleLuceneIndexCreator extends AbstractLuceneIndexCreator {
      * @param textFieldName
      *            The name of the field in which the document texts are stored.
      * @param commitInterval
-     *            The interval in which changes are committed to the index.
+     *            The interval in which changes are committed to the index or
+     *            {@link #NO_INTERMEDIATE_COMMITS}.
      */
     public SimpleLuceneIndexCreator(String textFieldName, int commitInterval) {
         super(textFieldName, commitInterval);
@@ -80,33 +81,34 @@ public class SimpleLuceneIndexCreator extends AbstractLuceneIndexCreator {
         LOGGER.info("Starting index creation...");
         IndexWriter writer = null;
         indexPath.mkdirs();
-        Analyzer analyzer = new SimpleAnalyzer(true);
+        final Analyzer analyzer = createAnalyzer();
         try {
             IndexWriterConfig config = new IndexWriterConfig(version, analyzer);
             config.setOpenMode(OpenMode.CREATE);
+            configure(config);
 
-            FieldType fieldType = new FieldType(TextField.TYPE_NOT_STORED);
+            final FieldType fieldType = new FieldType(TextField.TYPE_NOT_STORED);
             fieldType.setIndexed(true);
             fieldType.setIndexOptions(IndexOptions.DOCS_AND_FREQS);
             fieldType.freeze();
 
             writer = new IndexWriter(FSDirectory.open(indexPath), config);
-            String text;
-            int count = 0;
-            while (docIterator.hasNext()) {
-                text = docIterator.next();
-                if (text.length() > 0) {
-                    writer.addDocument(toLuceneDocument(analyzer, text, fieldType));
-                    ++count;
-                    if (count >= commitInterval) {
-                        writer.commit();
-                        System.gc();
-                        count = 0;
+            @SuppressWarnings("unchecked")
+            DocumentConverter<String> converters[] = new DocumentConverter[numberOfThreads];
+            for (int i = 0; i < converters.length; ++i) {
+                converters[i] = new DocumentConverter<String>() {
+                    @Override
+                    public Document convert(String text) throws IOException {
+                        if (text.length() > 0) {
+                            return toLuceneDocument(analyzer, text, fieldType);
+                        } else {
+                            LOGGER.warn("Got a document without content.");
+                            return null;
+                        }
                     }
-                } else {
-                    LOGGER.warn("Got a document without content.");
-                }
+                };
             }
+            addDocuments(writer, docIterator, converters);
             LOGGER.info("Finished index creation.");
         } catch (IOException e) {
             LOGGER.error("Error while creating Index. Aborting.", e);
@@ -0,0 +1,303 @@
+/**
+ * This file is part of Palmetto.
+ *
+ * Palmetto is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Palmetto is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Palmetto.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.aksw.palmetto.corpus.lucene.creation;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+import org.aksw.palmetto.corpus.CorpusStatistics;
+import org.aksw.palmetto.corpus.TermWindowCounts;
+import org.aksw.palmetto.corpus.lucene.WindowSupportingLuceneCorpusAdapter;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.DocsAndPositionsEnum;
+import org.apache.lucene.index.DocsEnum;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.index.MultiDocValues;
+import org.apache.lucene.index.MultiFields;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.store.SimpleFSDirectory;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.carrotsearch.hppc.ObjectObjectOpenHashMap;
+
+/**
+ * A class that iterates over the postings of a given Lucene index and
+ * determines the {@link TermWindowCounts}, i.e., the number of boolean sliding
+ * windows containing the single words for several window sizes. The counts are
+ * written next to the index. The {@link PositionStoringLuceneIndexCreator}
+ * uses this class after creating an index but it can be used for existing
+ * indexes as well.
+ * 
+ * @author Michael R&ouml;der (roeder@informatik.uni-leipzig.de)
+ *
+ */
+public class TermWindowCountsCreator {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TermWindowCountsCreator.class);
+
+    /**
+     * Suffix of the file the counts are written to before it replaces the
+     * counts file.
+     */
+    protected static final String TEMP_FILE_SUFFIX = ".tmp";
+
+    protected String textFieldName;
+    protected String docLengthFieldName;
+    protected int windowSizes[];
+
+    public TermWindowCountsCreator(String textFieldName, String docLengthFieldName) {
+        this(textFieldName, docLengthFieldName, CorpusStatistics.DEFAULT_WINDOW_SIZES);
+    }
+
+    public TermWindowCountsCreator(String textFieldName, String docLengthFieldName, int windowSizes[]) {
+        this.textFieldName = textFieldName;
+        this.docLengthFieldName = docLengthFieldName;
+        this.windowSizes = windowSizes;
+    }
+
+    /**
+     * Determines the term window counts of the index with the given path and
+     * writes them into the file next to the index.
+     * 
+     * @return true if the counts have been written successfully, else false.
+     */
+    public boolean createTermWindowCounts(String indexPath) {
+        DirectoryReader dirReader = null;
+        TermWindowCounts.Writer writer = null;
+        String fileName = indexPath + WindowSupportingLuceneCorpusAdapter.TERM_WINDOW_COUNTS_FILE_SUFFIX;
+        File tempFile = new File(fileName + TEMP_FILE_SUFFIX);
+        boolean success = false;
+        try {
+            dirReader = DirectoryReader.open(new SimpleFSDirectory(new File(indexPath)));
+            int docLengths[] = readDocumentLengths(dirReader);
+            writer = new TermWindowCounts.Writer(tempFile.getAbsolutePath(), dirReader.numDocs(),
+                    dirReader.maxDoc(), windowSizes);
+            int numberOfTerms = 0;
+            Terms terms = MultiFields.getTerms(dirReader, textFieldName);
+            if (terms != null) {
+                Bits liveDocs = MultiFields.getLiveDocs(dirReader);
+                TermsEnum termsEnum = terms.iterator(null);
+                DocsAndPositionsEnum docPosEnum = null;
+                long counts[] = new long[windowSizes.length];
+                int positions[] = new int[16];
+                int docId, freq;
+                BytesRef term = termsEnum.next();
+                while (term != null) {
+                    docPosEnum = termsEnum.docsAndPositions(liveDocs, docPosEnum, DocsAndPositionsEnum.FLAG_NONE);
+                    if (docPosEnum == null) {
+                        LOGGER.error("The index does not contain positions for the field \"" + textFieldName
+                                + "\". Aborting.");
+                        return false;
+                    }
+                    for (int w = 0; w < counts.length; ++w) {
+                        counts[w] = 0;
+                    }
+                    while (docPosEnum.nextDoc() != DocsEnum.NO_MORE_DOCS) {
+                        docId = docPosEnum.docID();
+                        freq = docPosEnum.freq();
+                        if (positions.length < freq) {
+                            positions = new int[Math.max(freq, 2 * positions.length)];
+                        }
+                        // the positions of a single document are returned in ascending order
+                        for (int p = 0; p < freq; ++p) {
+                            positions[p] = docPosEnum.nextPosition();
+                        }
+                        for (int w = 0; w < counts.length; ++w) {
+                            counts[w] += TermWindowCounts.countWindowsContainingWord(positions, freq,
+                                    docLengths[docId], windowSizes[w]);
+                        }
+                    }
+                    writer.add(term.bytes, term.offset, term.length, counts);
+                    ++numberOfTerms;
+                    term = termsEnum.next();
+                }
+            }
+            LOGGER.info("Determined the window counts of " + numberOfTerms + " terms.");
+            success = true;
+        } catch (IOException e) {
+            LOGGER.error("Error while determining the term window counts. Aborting.", e);
+        } finally {
+            success = finishFile(writer, tempFile, fileName, success);
+            if (dirReader != null) {
+                try {
+                    dirReader.close();
+                } catch (IOException e) {
+                }
+            }
+        }
+        return success;
+    }
+
+    /**
+     * Merges the given counts of the index with the given path with the
+     * counts of documents that have been appended to the index afterwards.
+     * The old documents do not have to be read again. The merged counts are
+     * written into the file next to the index and belong to the current state
+     * of the index.
+     * 
+     * @param indexPath
+     *            the path of the index
+     * @param counts
+     *            the counts of the index before the documents have been
+     *            appended
+     * @param additionalCounts
+     *            the counts of the appended documents (in the order of the
+     *            window sizes of the given counts)
+     * @return true if the counts have been written successfully, else false.
+     */
+    public boolean appendTermWindowCounts(String indexPath, TermWindowCounts counts,
+            ObjectObjectOpenHashMap<String, long[]> additionalCounts) {
+        DirectoryReader dirReader = null;
+        TermWindowCounts.Writer writer = null;
+        String fileName = indexPath + WindowSupportingLuceneCorpusAdapter.TERM_WINDOW_COUNTS_FILE_SUFFIX;
+        File tempFile = new File(fileName + TEMP_FILE_SUFFIX);
+        boolean success = false;
+        try {
+            dirReader = DirectoryReader.open(new SimpleFSDirectory(new File(indexPath)));
+            int windowSizes[] = counts.getWindowSizes();
+            writer = new TermWindowCounts.Writer(tempFile.getAbsolutePath(), dirReader.numDocs(),
+                    dirReader.maxDoc(), windowSizes);
+            // sort the additional terms like the Lucene term dictionary
+            BytesRef additionalTerms[] = new BytesRef[additionalCounts.size()];
+            int pos = 0;
+            for (int i = 0; i < additionalCounts.allocated.length; ++i) {
+                if (additionalCounts.allocated[i]) {
+                    additionalTerms[pos] = new BytesRef((String) ((Object[]) additionalCounts.keys)[i]);
+                    ++pos;
+                }
+            }
+            Arrays.sort(additionalTerms);
+            long oldCounts[] = new long[windowSizes.length];
+            long termCounts[];
+            BytesRef oldTerm = new BytesRef();
+            int oldId = 0, newId = 0, comparison;
+            while ((oldId < counts.getNumberOfWords()) || (newId < additionalTerms.length)) {
+                if (oldId < counts.getNumberOfWords()) {
+                    oldTerm.bytes = counts.getWordBytes(oldId);
+                    oldTerm.length = oldTerm.bytes.length;
+                    comparison = (newId < additionalTerms.length) ? oldTerm.compareTo(additionalTerms[newId]) : -1;
+                } else {
+                    comparison = 1;
+                }
+                if (comparison <= 0) {
+                    counts.getWindowCounts(oldId, oldCounts);
+                    if (comparison == 0) {
+                        termCounts = additionalCounts.get(additionalTerms[newId].utf8ToString());
+                        for (int w = 0; w < oldCounts.length; ++w) {
+                            oldCounts[w] += termCounts[w];
+                        }
+                        ++newId;
+                    }
+                    writer.add(oldTerm.bytes, 0, oldTerm.length, oldCounts);
+                    ++oldId;
+                } else {
+                    writer.add(additionalTerms[newId].bytes, additionalTerms[newId].offset,
+                            additionalTerms[newId].length,
+                            additionalCounts.get(additionalTerms[newId].utf8ToString()));
+                    ++newId;
+                }
+            }
+            LOGGER.info("Added the window counts of " + additionalTerms.length + " terms.");
+            success = true;
+        } catch (IOException e) {
+            LOGGER.error("Error while merging the term window counts. Aborting.", e);
+        } finally {
+            success = finishFile(writer, tempFile, fileName, success);
+            if (dirReader != null) {
+                try {
+                    dirReader.close();
+                } catch (IOException e) {
+                }
+            }
+        }
+        return success;
+    }
+
+    /**
+     * Closes the given writer and replaces the counts file with the
+     * temporary file if the counts have been written successfully. Otherwise,
+     * the temporary file is deleted since an incomplete file must not be
+     * used. Since the file is replaced instead of overwritten, adapters that
+     * have mapped the old file can still use it.
+     * 
+     * @return true if the file has been replaced successfully
+     */
+    protected static boolean finishFile(TermWindowCounts.Writer writer, File tempFile, String fileName,
+            boolean success) {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                LOGGER.error("Error while closing the term window counts file.", e);
+                success = false;
+            }
+        }
+        if (success) {
+            try {
+                Files.move(tempFile.toPath(), new File(fileName).toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                LOGGER.error("Couldn't replace the term window counts file \"" + fileName + "\".", e);
+                success = false;
+            }
+        }
+        if (!success) {
+            tempFile.delete();
+        }
+        return success;
+    }
+
+    /**
+     * Reads the lengths of all documents (indexed by the global document id)
+     * from the doc values column or from the stored documents if the index
+     * does not have such a column.
+     */
+    protected int[] readDocumentLengths(DirectoryReader dirReader) throws IOException {
+        int docLengths[] = new int[dirReader.maxDoc()];
+        NumericDocValues docLengthValues = MultiDocValues.getNumericValues(dirReader, docLengthFieldName);
+        Bits liveDocs = MultiFields.getLiveDocs(dirReader);
+        IndexableField field;
+        for (int d = 0; d < docLengths.length; ++d) {
+            if ((liveDocs == null) || liveDocs.get(d)) {
+                if (docLengthValues != null) {
+                    docLengths[d] = (int) docLengthValues.get(d);
+                } else {
+                    field = dirReader.document(d).getField(docLengthFieldName);
+                    if (field != null) {
+                        docLengths[d] = field.numericValue().intValue();
+                    }
+                }
+            }
+        }
+        return docLengths;
+    }
+
+    public int[] getWindowSizes() {
+        return windowSizes;
+    }
+
+    public void setWindowSizes(int[] windowSizes) {
+        this.windowSizes = windowSizes;
+    }
+}
@@ -0,0 +1,129 @@
+/**
+ * This file is part of Palmetto.
+ *
+ * Palmetto is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Palmetto is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Palmetto.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.aksw.palmetto.corpus.mapped;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+/**
+ * A read-only file that is memory-mapped using several buffers. Thus, it can be
+ * larger than 2GB. Every buffer covers {@link #CHUNK_SIZE} bytes. Since the
+ * chunk size is a multiple of 8, ints and longs that are aligned to their size
+ * inside the file never cross the border of two buffers.
+ * 
+ * @author Michael R&ouml;der (roeder@informatik.uni-leipzig.de)
+ *
+ */
+public class LargeMappedFile {
+
+    private static final int CHUNK_SIZE_BITS = 30;
+    /**
+     * The number of bytes covered by a single buffer (1GB).
+     */
+    public static final long CHUNK_SIZE = 1L << CHUNK_SIZE_BITS;
+    private static final long CHUNK_MASK = CHUNK_SIZE - 1;
+
+    /**
+     * Maps the given file into memory.
+     * 
+     * @param file
+     *            the file that should be mapped
+     * @return the mapped file
+     * @throws IOException
+     *             if the file can not be read
+     */
+    public static LargeMappedFile map(File file) throws IOException {
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(file, "r");
+            FileChannel channel = raf.getChannel();
+            long length = channel.size();
+            MappedByteBuffer buffers[] = new MappedByteBuffer[(int) ((length + CHUNK_SIZE - 1) >>> CHUNK_SIZE_BITS)];
+            long start;
+            for (int i = 0; i < buffers.length; ++i) {
+                start = ((long) i) << CHUNK_SIZE_BITS;
+                buffers[i] = channel.map(MapMode.READ_ONLY, start, Math.min(CHUNK_SIZE, length - start));
+            }
+            return new LargeMappedFile(buffers, length);
+        } finally {
+            // the mapping stays valid after the channel has been closed
+            if (raf != null) {
+                raf.close();
+            }
+        }
+    }
+
+    private MappedByteBuffer buffers[];
+    private long length;
+
+    protected LargeMappedFile(MappedByteBuffer[] buffers, long length) {
+        this.buffers = buffers;
+        this.length = length;
+    }
+
+    public byte getByte(long position) {
+        return buffers[(int) (position >>> CHUNK_SIZE_BITS)].get((int) (position & CHUNK_MASK));
+    }
+
+    /**
+     * Returns the int at the given position which has to be a multiple of 4.
+     */
+    public int getInt(long position) {
+        return buffers[(int) (position >>> CHUNK_SIZE_BITS)].getInt((int) (position & CHUNK_MASK));
+    }
+
+    /**
+     * Returns the long at the given position which has to be a multiple of 8.
+     */
+    public long getLong(long position) {
+        return buffers[(int) (position >>> CHUNK_SIZE_BITS)].getLong((int) (position & CHUNK_MASK));
+    }
+
+    /**
+     * Reads a variable-byte encoded int (7 bits per byte, lowest bits first)
+     * starting at the given position. The position following the value is
+     * stored in the given array.
+     */
+    public int getVInt(long position, long nextPosition[]) {
+        byte b = getByte(position);
+        ++position;
+        int value = b & 0x7F;
+        for (int shift = 7; b < 0; shift += 7) {
+            b = getByte(position);
+            ++position;
+            value |= (b & 0x7F) << shift;
+        }
+        nextPosition[0] = position;
+        return value;
+    }
+
+    public long length() {
+        return length;
+    }
+
+    /**
+     * Releases the references to the buffers. The mapping itself is released
+     * by the garbage collector.
+     */
+    public void close() {
+        buffers = null;
+    }
+}
@@ -0,0 +1,274 @@
+/**
+ * This file is part of Palmetto.
+ *
+ * Palmetto is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Palmetto is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Palmetto.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.aksw.palmetto.corpus.mapped;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.DocsAndPositionsEnum;
+import org.apache.lucene.index.DocsEnum;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.index.MultiDocValues;
+import org.apache.lucene.index.MultiFields;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.store.SimpleFSDirectory;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.IntIntOpenHashMap;
+
+/**
+ * Converts an existing Lucene index into the memory-mapped index format read
+ * by the {@link MappedCorpusAdapter}. Deleted documents are removed and the
+ * remaining documents are numbered consecutively in the order of their Lucene
+ * ids.
+ * 
+ * @author Michael R&ouml;der (roeder@informatik.uni-leipzig.de)
+ *
+ */
+public class LuceneToMappedIndexConverter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LuceneToMappedIndexConverter.class);
+
+    private String textFieldName;
+    private String docLengthFieldName;
+
+    public LuceneToMappedIndexConverter(String textFieldName, String docLengthFieldName) {
+        this.textFieldName = textFieldName;
+        this.docLengthFieldName = docLengthFieldName;
+    }
+
+    /**
+     * Converts the given Lucene index.
+     * 
+     * @param luceneIndexPath
+     *            the directory of the Lucene index
+     * @param outputPath
+     *            the directory to which the converted index will be written
+     * @return true if the conversion was successful
+     */
+    public boolean convert(String luceneIndexPath, String outputPath) {
+        File outputDir = new File(outputPath);
+        if (!outputDir.exists() && !outputDir.mkdirs()) {
+            LOGGER.error("Couldn't create output directory \"" + outputPath + "\".");
+            return false;
+        }
+        DirectoryReader dirReader = null;
+        try {
+            dirReader = DirectoryReader.open(new SimpleFSDirectory(new File(luceneIndexPath)));
+            Bits liveDocs = MultiFields.getLiveDocs(dirReader);
+            int newDocIds[] = new int[dirReader.maxDoc()];
+            int numberOfDocuments = 0;
+            for (int i = 0; i < newDocIds.length; ++i) {
+                if ((liveDocs == null) || liveDocs.get(i)) {
+                    newDocIds[i] = numberOfDocuments;
+                    ++numberOfDocuments;
+                } else {
+                    newDocIds[i] = -1;
+                }
+            }
+            writeLengthsAndHistogram(dirReader, newDocIds, outputDir);
+
+            Terms terms = MultiFields.getTerms(dirReader, textFieldName);
+            boolean hasPositions = (terms != null) && terms.hasPositions();
+            int numberOfTerms = 0;
+            if (terms != null) {
+                numberOfTerms = writeTerms(terms, liveDocs, hasPositions, newDocIds, outputDir);
+            } else {
+                LOGGER.warn("The index does not contain the field \"" + textFieldName + "\".");
+                writeTerms(null, liveDocs, hasPositions, newDocIds, outputDir);
+            }
+
+            DataOutputStream metaOut = null;
+            try {
+                metaOut = new DataOutputStream(new FileOutputStream(new File(outputDir,
+                        MappedCorpusAdapter.META_FILE_NAME)));
+                metaOut.writeInt(MappedCorpusAdapter.MAGIC_NUMBER);
+                metaOut.writeInt(MappedCorpusAdapter.VERSION);
+                metaOut.writeInt(numberOfDocuments);
+                metaOut.writeInt(numberOfTerms);
+                metaOut.writeInt(hasPositions ? 1 : 0);
+            } finally {
+                IOUtils.closeQuietly(metaOut);
+            }
+            LOGGER.info("Converted index with " + numberOfDocuments + " documents and " + numberOfTerms + " terms.");
+            return true;
+        } catch (IOException e) {
+            LOGGER.error("Error while converting index.", e);
+            return false;
+        } finally {
+            if (dirReader != null) {
+                try {
+                    dirReader.close();
+                } catch (IOException e) {
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the lengths of all live documents as well as the document length
+     * histogram.
+     */
+    protected void writeLengthsAndHistogram(DirectoryReader dirReader, int newDocIds[], File outputDir)
+            throws IOException {
+        IntIntOpenHashMap histogram = new IntIntOpenHashMap();
+        NumericDocValues lengthValues = MultiDocValues.getNumericValues(dirReader, docLengthFieldName);
+        DataOutputStream lengthsOut = null;
+        try {
+            lengthsOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(new File(outputDir,
+                    MappedCorpusAdapter.LENGTHS_FILE_NAME))));
+            int length;
+            IndexableField field;
+            for (int d = 0; d < newDocIds.length; ++d) {
+                if (newDocIds[d] >= 0) {
+                    if (lengthValues != null) {
+                        length = (int) lengthValues.get(d);
+                    } else {
+                        field = dirReader.document(d).getField(docLengthFieldName);
+                        length = (field != null) ? field.numericValue().intValue() : 0;
+                    }
+                    lengthsOut.writeInt(length);
+                    histogram.putOrAdd(length, 1, 1);
+                }
+            }
+        } finally {
+            IOUtils.closeQuietly(lengthsOut);
+        }
+
+        DataOutputStream histogramOut = null;
+        try {
+            histogramOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(new File(outputDir,
+                    MappedCorpusAdapter.HISTOGRAM_FILE_NAME))));
+            histogramOut.writeInt(histogram.size());
+            for (int i = 0; i < histogram.keys.length; ++i) {
+                if (histogram.allocated[i]) {
+                    histogramOut.writeInt(histogram.keys[i]);
+                    histogramOut.writeInt(histogram.values[i]);
+                }
+            }
+        } finally {
+            IOUtils.closeQuietly(histogramOut);
+        }
+    }
+
+    /**
+     * Writes the term dictionary, the postings and the positions of all terms
+     * that occur in at least one live document and returns the number of
+     * written terms.
+     */
+    protected int writeTerms(Terms terms, Bits liveDocs, boolean hasPositions, int newDocIds[], File outputDir)
+            throws IOException {
+        DataOutputStream termsOut = null, vocabularyOut = null, postingsOut = null, positionsOut = null;
+        int numberOfTerms = 0;
+        try {
+            termsOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(new File(outputDir,
+                    MappedCorpusAdapter.TERMS_FILE_NAME))));
+            vocabularyOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(new File(outputDir,
+                    MappedCorpusAdapter.VOCABULARY_FILE_NAME))));
+            postingsOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(new File(outputDir,
+                    MappedCorpusAdapter.POSTINGS_FILE_NAME))));
+            positionsOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(new File(outputDir,
+                    MappedCorpusAdapter.POSITIONS_FILE_NAME))));
+            if (terms == null) {
+                return 0;
+            }
+            long termsOffset = 0, postingsOffset = 0, positionsOffset = 0, termPositionsOffset;
+            IntArrayList docIds = new IntArrayList();
+            IntArrayList freqs = new IntArrayList();
+            TermsEnum termsEnum = terms.iterator(null);
+            DocsAndPositionsEnum docPosEnum = null;
+            DocsEnum docsEnum = null;
+            BytesRef term;
+            int freq, position, lastPosition;
+            while ((term = termsEnum.next()) != null) {
+                docIds.clear();
+                freqs.clear();
+                termPositionsOffset = positionsOffset;
+                if (hasPositions) {
+                    docPosEnum = termsEnum.docsAndPositions(liveDocs, docPosEnum);
+                    while (docPosEnum.nextDoc() != DocsEnum.NO_MORE_DOCS) {
+                        docIds.add(newDocIds[docPosEnum.docID()]);
+                        freq = docPosEnum.freq();
+                        freqs.add(freq);
+                        lastPosition = 0;
+                        for (int p = 0; p < freq; ++p) {
+                            position = docPosEnum.nextPosition();
+                            positionsOffset += writeVInt(position - lastPosition, positionsOut);
+                            lastPosition = position;
+                        }
+                    }
+                } else {
+                    docsEnum = termsEnum.docs(liveDocs, docsEnum, DocsEnum.FLAG_FREQS);
+                    while (docsEnum.nextDoc() != DocsEnum.NO_MORE_DOCS) {
+                        docIds.add(newDocIds[docsEnum.docID()]);
+                        freqs.add(docsEnum.freq());
+                    }
+                }
+                // terms that only occur in deleted documents are skipped
+                if (docIds.elementsCount > 0) {
+                    termsOut.write(term.bytes, term.offset, term.length);
+                    vocabularyOut.writeLong(termsOffset);
+                    vocabularyOut.writeInt(term.length);
+                    vocabularyOut.writeInt(docIds.elementsCount);
+                    vocabularyOut.writeLong(postingsOffset);
+                    vocabularyOut.writeLong(termPositionsOffset);
+                    termsOffset += term.length;
+                    for (int i = 0; i < docIds.elementsCount; ++i) {
+                        postingsOut.writeInt(docIds.buffer[i]);
+                    }
+                    for (int i = 0; i < freqs.elementsCount; ++i) {
+                        postingsOut.writeInt(freqs.buffer[i]);
+                    }
+                    postingsOffset += 8L * docIds.elementsCount;
+                    ++numberOfTerms;
+                }
+            }
+        } finally {
+            IOUtils.closeQuietly(termsOut);
+            IOUtils.closeQuietly(vocabularyOut);
+            IOUtils.closeQuietly(postingsOut);
+            IOUtils.closeQuietly(positionsOut);
+        }
+        return numberOfTerms;
+    }
+
+    /**
+     * Writes the given value using 7 bits per byte and returns the number of
+     * written bytes.
+     */
+    private static int writeVInt(int value, DataOutputStream out) throws IOException {
+        int bytes = 1;
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+            ++bytes;
+        }
+        out.writeByte(value);
+        return bytes;
+    }
+}
@@ -0,0 +1,419 @@
+/**
+ * This file is part of Palmetto.
+ *
+ * Palmetto is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Palmetto is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Palmetto.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.aksw.palmetto.corpus.mapped;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+import org.aksw.palmetto.corpus.AbstractRandomAccessDocumentCursor;
+import org.aksw.palmetto.corpus.CorpusVocabulary;
+import org.aksw.palmetto.corpus.DocumentCursor;
+import org.aksw.palmetto.corpus.DocumentCursorSupportingAdapter;
+import org.aksw.palmetto.corpus.VocabularySupportingAdapter;
+import org.aksw.palmetto.corpus.WindowSupportingAdapter;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.IntIntOpenHashMap;
+import com.carrotsearch.hppc.IntObjectOpenHashMap;
+import com.carrotsearch.hppc.IntOpenHashSet;
+import com.carrotsearch.hppc.ObjectObjectOpenHashMap;
+
+/**
+ * A corpus adapter reading a Palmetto index which has been created by the
+ * {@link LuceneToMappedIndexConverter}. All files of the index are
+ * memory-mapped and the postings are read directly from the mapped buffers.
+ * 
+ * <p>
+ * The index is a directory containing the following files.
+ * </p>
+ * <ul>
+ * <li>{@link #META_FILE_NAME}: magic number, version, number of documents,
+ * number of terms and a flag whether positions are stored (5 ints).</li>
+ * <li>{@link #TERMS_FILE_NAME}: the UTF-8 bytes of all terms in sorted order.</li>
+ * <li>{@link #VOCABULARY_FILE_NAME}: a record of {@link #VOCABULARY_RECORD_SIZE}
+ * bytes for every term containing the offset of the term inside the terms file
+ * (long), the length of the term (int), the document frequency (int), the
+ * offset of its postings (long) and the offset of its positions (long).</li>
+ * <li>{@link #POSTINGS_FILE_NAME}: for every term, the ids of the documents
+ * containing it followed by the frequencies of the term inside these documents
+ * (ints).</li>
+ * <li>{@link #POSITIONS_FILE_NAME}: for every term and document, the
+ * positions of the term as variable-byte encoded deltas.</li>
+ * <li>{@link #LENGTHS_FILE_NAME}: the length of every document (ints).</li>
+ * <li>{@link #HISTOGRAM_FILE_NAME}: the number of histogram entries followed by
+ * the (length, count) pairs (ints).</li>
+ * </ul>
+ * 
+ * @author Michael R&ouml;der (roeder@informatik.uni-leipzig.de)
+ *
+ */
+public class MappedCorpusAdapter implements DocumentCursorSupportingAdapter, WindowSupportingAdapter,
+        VocabularySupportingAdapter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MappedCorpusAdapter.class);
+
+    public static final int MAGIC_NUMBER = 0x50414C4D;
+    public static final int VERSION = 1;
+
+    public static final String META_FILE_NAME = "meta.bin";
+    public static final String TERMS_FILE_NAME = "terms.bin";
+    public static final String VOCABULARY_FILE_NAME = "vocabulary.bin";
+    public static final String POSTINGS_FILE_NAME = "postings.bin";
+    public static final String POSITIONS_FILE_NAME = "positions.bin";
+    public static final String LENGTHS_FILE_NAME = "lengths.bin";
+    public static final String HISTOGRAM_FILE_NAME = "histogram.bin";
+
+    public static final int VOCABULARY_RECORD_SIZE = 32;
+
+    protected static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Opens the index inside the given directory.
+     * 
+     * @param indexPath
+     *            the directory containing the index files
+     * @return the adapter for the index
+     * @throws IOException
+     *             if the index can not be read or has an unknown format
+     */
+    public static MappedCorpusAdapter create(String indexPath) throws IOException {
+        File indexDir = new File(indexPath);
+        int meta[] = readInts(new File(indexDir, META_FILE_NAME), 5);
+        if ((meta[0] != MAGIC_NUMBER) || (meta[1] != VERSION)) {
+            throw new IOException("\"" + indexPath + "\" does not contain a Palmetto index of version " + VERSION
+                    + ".");
+        }
+        int histogramData[] = readInts(new File(indexDir, HISTOGRAM_FILE_NAME), -1);
+        int histogram[][] = new int[histogramData[0]][2];
+        for (int i = 0; i < histogram.length; ++i) {
+            histogram[i][0] = histogramData[1 + (2 * i)];
+            histogram[i][1] = histogramData[2 + (2 * i)];
+        }
+        return new MappedCorpusAdapter(meta[2], meta[3], meta[4] != 0, histogram,
+                LargeMappedFile.map(new File(indexDir, TERMS_FILE_NAME)),
+                LargeMappedFile.map(new File(indexDir, VOCABULARY_FILE_NAME)),
+                LargeMappedFile.map(new File(indexDir, POSTINGS_FILE_NAME)),
+                LargeMappedFile.map(new File(indexDir, POSITIONS_FILE_NAME)),
+                LargeMappedFile.map(new File(indexDir, LENGTHS_FILE_NAME)));
+    }
+
+    /**
+     * Reads the given number of ints from the given file. If the number is
+     * negative, the first int of the file defines the number of pairs
+     * following it.
+     */
+    private static int[] readInts(File file, int numberOfInts) throws IOException {
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new FileInputStream(file));
+            int values[];
+            if (numberOfInts < 0) {
+                int numberOfPairs = in.readInt();
+                values = new int[1 + (2 * numberOfPairs)];
+                values[0] = numberOfPairs;
+                for (int i = 1; i < values.length; ++i) {
+                    values[i] = in.readInt();
+                }
+            } else {
+                values = new int[numberOfInts];
+                for (int i = 0; i < values.length; ++i) {
+                    values[i] = in.readInt();
+                }
+            }
+            return values;
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+    }
+
+    protected int numberOfDocuments;
+    protected int numberOfTerms;
+    protected boolean hasPositions;
+    protected int histogram[][];
+    protected LargeMappedFile termsFile;
+    protected LargeMappedFile vocabularyFile;
+    protected LargeMappedFile postingsFile;
+    protected LargeMappedFile positionsFile;
+    protected LargeMappedFile lengthsFile;
+    /**
+     * The vocabulary of the index. The id of a word is its term id. It is read
+     * from the term dictionary when it is requested for the first time.
+     */
+    protected volatile CorpusVocabulary vocabulary;
+
+    protected MappedCorpusAdapter(int numberOfDocuments, int numberOfTerms, boolean hasPositions,
+            int[][] histogram, LargeMappedFile termsFile, LargeMappedFile vocabularyFile,
+            LargeMappedFile postingsFile, LargeMappedFile positionsFile, LargeMappedFile lengthsFile) {
+        this.numberOfDocuments = numberOfDocuments;
+        this.numberOfTerms = numberOfTerms;
+        this.hasPositions = hasPositions;
+        this.histogram = histogram;
+        this.termsFile = termsFile;
+        this.vocabularyFile = vocabularyFile;
+        this.postingsFile = postingsFile;
+        this.positionsFile = positionsFile;
+        this.lengthsFile = lengthsFile;
+    }
+
+    /**
+     * Searches the given word in the term dictionary and returns its id or -1
+     * if the word is not known.
+     */
+    protected int getTermId(String word) {
+        byte wordBytes[] = word.getBytes(UTF_8);
+        int low = 0, high = numberOfTerms - 1, middle, comparison;
+        while (low <= high) {
+            middle = (low + high) >>> 1;
+            comparison = compareTerm(middle, wordBytes);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Compares the term with the given id with the given bytes using the
+     * unsigned byte order that has been used for sorting the terms.
+     */
+    protected int compareTerm(int termId, byte wordBytes[]) {
+        long record = ((long) termId) * VOCABULARY_RECORD_SIZE;
+        long termOffset = vocabularyFile.getLong(record);
+        int termLength = vocabularyFile.getInt(record + 8);
+        int length = Math.min(termLength, wordBytes.length);
+        int diff;
+        for (int i = 0; i < length; ++i) {
+            diff = (termsFile.getByte(termOffset + i) & 0xFF) - (wordBytes[i] & 0xFF);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return termLength - wordBytes.length;
+    }
+
+    /**
+     * Reads the term with the given id from the term dictionary.
+     */
+    protected String getTerm(int termId) {
+        long record = ((long) termId) * VOCABULARY_RECORD_SIZE;
+        long termOffset = vocabularyFile.getLong(record);
+        byte termBytes[] = new byte[vocabularyFile.getInt(record + 8)];
+        for (int i = 0; i < termBytes.length; ++i) {
+            termBytes[i] = termsFile.getByte(termOffset + i);
+        }
+        return new String(termBytes, UTF_8);
+    }
+
+    protected int getDocumentFrequency(int termId) {
+        return vocabularyFile.getInt((((long) termId) * VOCABULARY_RECORD_SIZE) + 12);
+    }
+
+    protected long getPostingsOffset(int termId) {
+        return vocabularyFile.getLong((((long) termId) * VOCABULARY_RECORD_SIZE) + 16);
+    }
+
+    protected long getPositionsOffset(int termId) {
+        return vocabularyFile.getLong((((long) termId) * VOCABULARY_RECORD_SIZE) + 24);
+    }
+
+    protected int getDocumentLength(int docId) {
+        return lengthsFile.getInt(4L * docId);
+    }
+
+    @Override
+    public void getDocumentsWithWordsAsSet(ObjectObjectOpenHashMap<String, IntOpenHashSet> wordDocMapping) {
+        Object keys[] = (Object[]) wordDocMapping.keys;
+        Object values[] = (Object[]) wordDocMapping.values;
+        for (int i = 0; i < wordDocMapping.allocated.length; ++i) {
+            if (wordDocMapping.allocated[i]) {
+                getDocumentsWithWordAsSet((String) keys[i], (IntOpenHashSet) values[i]);
+            }
+        }
+    }
+
+    @Override
+    public void getDocumentsWithWordAsSet(String word, IntOpenHashSet documents) {
+        int termId = getTermId(word);
+        if (termId < 0) {
+            return;
+        }
+        int docFreq = getDocumentFrequency(termId);
+        long offset = getPostingsOffset(termId);
+        for (int i = 0; i < docFreq; ++i) {
+            documents.add(postingsFile.getInt(offset));
+            offset += 4;
+        }
+    }
+
+    @Override
+    public void getDocumentsWithWords(ObjectObjectOpenHashMap<String, IntArrayList> wordDocMapping) {
+        Object keys[] = (Object[]) wordDocMapping.keys;
+        Object values[] = (Object[]) wordDocMapping.values;
+        for (int i = 0; i < wordDocMapping.allocated.length; ++i) {
+            if (wordDocMapping.allocated[i]) {
+                getDocumentsWithWord((String) keys[i], (IntArrayList) values[i]);
+            }
+        }
+    }
+
+    @Override
+    public void getDocumentsWithWord(String word, IntArrayList documents) {
+        int termId = getTermId(word);
+        if (termId < 0) {
+            return;
+        }
+        int docFreq = getDocumentFrequency(termId);
+        long offset = getPostingsOffset(termId);
+        documents.ensureCapacity(documents.elementsCount + docFreq);
+        for (int i = 0; i < docFreq; ++i) {
+            documents.add(postingsFile.getInt(offset));
+            offset += 4;
+        }
+    }
+
+    @Override
+    public DocumentCursor getDocumentCursor(String word) {
+        int termId = getTermId(word);
+        if (termId < 0) {
+            return new MappedDocumentCursor(0, 0);
+        }
+        return new MappedDocumentCursor(getPostingsOffset(termId), getDocumentFrequency(termId));
+    }
+
+    @Override
+    public IntObjectOpenHashMap<IntArrayList[]> requestWordPositionsInDocuments(String[] words,
+            IntIntOpenHashMap docLengths) {
+        IntObjectOpenHashMap<IntArrayList[]> positionsInDocs = new IntObjectOpenHashMap<IntArrayList[]>();
+        if (!hasPositions) {
+            LOGGER.error("The index does not contain positions. Returning an empty result.");
+            return positionsInDocs;
+        }
+        for (int i = 0; i < words.length; ++i) {
+            requestDocumentsWithWord(words[i], positionsInDocs, docLengths, i, words.length);
+        }
+        return positionsInDocs;
+    }
+
+    protected void requestDocumentsWithWord(String word, IntObjectOpenHashMap<IntArrayList[]> positionsInDocs,
+            IntIntOpenHashMap docLengths, int wordId, int numberOfWords) {
+        int termId = getTermId(word);
+        if (termId < 0) {
+            return;
+        }
+        int docFreq = getDocumentFrequency(termId);
+        long docOffset = getPostingsOffset(termId);
+        long freqOffset = docOffset + (4L * docFreq);
+        long positionsOffset[] = new long[] { getPositionsOffset(termId) };
+        int docId, freq, position;
+        IntArrayList positions[];
+        for (int d = 0; d < docFreq; ++d) {
+            docId = postingsFile.getInt(docOffset);
+            freq = postingsFile.getInt(freqOffset);
+            docOffset += 4;
+            freqOffset += 4;
+            if (positionsInDocs.containsKey(docId)) {
+                positions = positionsInDocs.lget();
+            } else {
+                positions = new IntArrayList[numberOfWords];
+                positionsInDocs.put(docId, positions);
+            }
+            if (positions[wordId] == null) {
+                positions[wordId] = new IntArrayList(freq);
+            }
+            position = 0;
+            for (int p = 0; p < freq; ++p) {
+                position += positionsFile.getVInt(positionsOffset[0], positionsOffset);
+                positions[wordId].add(position);
+            }
+            if (!docLengths.containsKey(docId)) {
+                docLengths.put(docId, getDocumentLength(docId));
+            }
+        }
+    }
+
+    @Override
+    public int[][] getDocumentSizeHistogram() {
+        return histogram;
+    }
+
+    @Override
+    public int getNumberOfDocuments() {
+        return numberOfDocuments;
+    }
+
+    @Override
+    public CorpusVocabulary getVocabulary() {
+        if (vocabulary == null) {
+            synchronized (this) {
+                if (vocabulary == null) {
+                    String words[] = new String[numberOfTerms];
+                    for (int i = 0; i < words.length; ++i) {
+                        words[i] = getTerm(i);
+                    }
+                    vocabulary = new CorpusVocabulary(words);
+                }
+            }
+        }
+        return vocabulary;
+    }
+
+    public int getNumberOfTerms() {
+        return numberOfTerms;
+    }
+
+    public boolean hasPositions() {
+        return hasPositions;
+    }
+
+    @Override
+    public void close() {
+        termsFile.close();
+        vocabularyFile.close();
+        postingsFile.close();
+        positionsFile.close();
+        lengthsFile.close();
+    }
+
+    /**
+     * A cursor reading the document ids of a single term directly from the
+     * mapped postings file.
+     */
+    protected class MappedDocumentCursor extends AbstractRandomAccessDocumentCursor {
+
+        private long offset;
+
+        public MappedDocumentCursor(long offset, int docFreq) {
+            super(docFreq);
+            this.offset = offset;
+        }
+
+        @Override
+        protected int getDocument(int position) {
+            return postingsFile.getInt(offset + (4L * position));
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/**
+ * This file is part of Palmetto.
+ *
+ * Palmetto is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Palmetto is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Palmetto.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.aksw.palmetto.corpus.remote;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.IntContainer;
+
+/**
+ * The binary format used by the document frequency service of the Palmetto
+ * webapp. For every requested word, the response contains the number of
+ * documents followed by the ids of these documents (all values are big-endian
+ * ints).
+ * 
+ * @author Michael R&ouml;der (roeder@informatik.uni-leipzig.de)
+ *
+ */
+public class DocumentListCodec {
+
+    /**
+     * The path of the service returning the documents of the given words.
+     */
+    public static final String DOCUMENTS_SERVICE_PATH = "df";
+    /**
+     * The path of the service returning the number of documents of the corpus.
+     */
+    public static final String NUMBER_OF_DOCUMENTS_SERVICE_PATH = "numdocs";
+    /**
+     * The path of the service returning the version of the corpus.
+     */
+    public static final String CORPUS_VERSION_SERVICE_PATH = "version";
+    /**
+     * The name of the request parameter containing the words.
+     */
+    public static final String WORDS_PARAMETER_NAME = "words";
+    /**
+     * The separator of the words inside the request parameter.
+     */
+    public static final String WORD_SEPARATOR = " ";
+
+    /**
+     * Splits the given request parameter into the requested words. Empty
+     * words (e.g., at the end of the parameter) are kept since the response
+     * has to contain a document list for every requested word.
+     * 
+     * @param words
+     *            the words of the request parameter
+     * @return the requested words
+     */
+    public static String[] splitWords(String words) {
+        return words.split(WORD_SEPARATOR, -1);
+    }
+
+    /**
+     * Encodes the given document lists.
+     * 
+     * @param documents
+     *            the documents of the single words
+     * @return the encoded lists
+     * @throws IllegalArgumentException
+     *             if the encoded lists would be larger than the maximum size
+     *             of an array
+     */
+    public static byte[] encode(IntContainer documents[]) {
+        long completeLength = 0;
+        for (int i = 0; i < documents.length; ++i) {
+            completeLength += 4L * (documents[i].size() + 1L);
+        }
+        if (completeLength > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("The encoded document lists would need " + completeLength
+                    + " bytes which is more than the maximum size of an array.");
+        }
+        ByteBuffer response = ByteBuffer.allocate((int) completeLength);
+        IntBuffer intView = response.asIntBuffer();
+        for (int i = 0; i < documents.length; ++i) {
+            intView.put(documents[i].size());
+            intView.put(documents[i].toArray());
+        }
+        return response.array();
+    }
+
+    /**
+     * Decodes the given number of document lists from the given stream.
+     * 
+     * @param in
+     *            the stream containing the encoded lists
+     * @param numberOfWords
+     *            the number of lists that should be read
+     * @return the decoded document lists
+     * @throws IOException
+     *             if the stream can not be read or ends before all lists
+     *             have been read
+     */
+    public static IntArrayList[] decode(InputStream in, int numberOfWords) throws IOException {
+        DataInputStream dataIn = new DataInputStream(in);
+        IntArrayList documents[] = new IntArrayList[numberOfWords];
+        int length;
+        for (int i = 0; i < numberOfWords; ++i) {
+            length = dataIn.readInt();
+            documents[i] = new IntArrayList(length);
+            for (int j = 0; j < length; ++j) {
+                documents[i].add(dataIn.readInt());
+            }
+        }
+        return documents;
+    }
+}
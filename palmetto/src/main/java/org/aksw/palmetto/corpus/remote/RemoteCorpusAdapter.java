@@ -0,0 +1,454 @@
+/**
+ * This file is part of Palmetto.
+ *
+ * Palmetto is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Palmetto is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Palmetto.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.aksw.palmetto.corpus.remote;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.aksw.palmetto.corpus.BooleanDocumentSupportingAdapter;
+import org.aksw.palmetto.corpus.VersionSupportingAdapter;
+import org.aksw.palmetto.corpus.decorator.CompressedDocumentIds;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.IntOpenHashSet;
+import com.carrotsearch.hppc.ObjectObjectOpenHashMap;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.Weigher;
+import com.google.common.util.concurrent.SettableFuture;
+
+/**
+ * A {@link BooleanDocumentSupportingAdapter} that requests the documents from
+ * the document frequency service of a Palmetto webapp. The words of a single
+ * call are sent in one request and the results are cached locally in
+ * compressed form. Several threads can use the adapter at the same time. Their
+ * requests are sent in parallel while a word that is already requested by
+ * another thread is not requested a second time. The connections are kept
+ * alive by reading the responses completely.
+ * 
+ * <p>
+ * The cached documents and the number of documents are bound to the version
+ * of the remote corpus. The version is requested from the service at most
+ * once per version check interval and the cache is discarded if it changed,
+ * e.g., because documents have been appended to the remote index. If the
+ * service does not offer a version, the cache is discarded after every
+ * interval, i.e., the interval is used as time to live.
+ * </p>
+ * 
+ * @author Michael R&ouml;der (roeder@informatik.uni-leipzig.de)
+ *
+ */
+public class RemoteCorpusAdapter implements BooleanDocumentSupportingAdapter, VersionSupportingAdapter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RemoteCorpusAdapter.class);
+
+    /**
+     * The default size of the local cache in bytes (128MB).
+     */
+    public static final long DEFAULT_CACHE_SIZE = 128L * 1024L * 1024L;
+    /**
+     * The default connect and read timeout in milliseconds.
+     */
+    public static final int DEFAULT_TIMEOUT = 60000;
+    /**
+     * The default interval in milliseconds after which the version of the
+     * remote corpus is checked again.
+     */
+    public static final long DEFAULT_VERSION_CHECK_INTERVAL = 60000;
+    /**
+     * The version that is used if the service does not offer a version.
+     */
+    protected static final long UNKNOWN_VERSION = -1;
+
+    protected String serviceUrl;
+    protected long cacheSize;
+    /**
+     * The cached documents of the current version. Requests that are still
+     * running while the cache is discarded put their documents into the
+     * discarded cache.
+     */
+    protected volatile Cache<String, byte[]> cache;
+    protected volatile ConcurrentHashMap<String, SettableFuture<byte[]>> pendingWords;
+    protected AtomicLong numberOfRequests = new AtomicLong();
+    protected int timeout = DEFAULT_TIMEOUT;
+    protected volatile int numberOfDocuments = -1;
+    protected long versionCheckInterval = DEFAULT_VERSION_CHECK_INTERVAL;
+    /**
+     * The version of the remote corpus the cache belongs to.
+     */
+    protected volatile long remoteVersion = UNKNOWN_VERSION;
+    /**
+     * The local version which is incremented every time the cache is
+     * discarded.
+     */
+    protected AtomicLong corpusVersion = new AtomicLong();
+    protected volatile long lastVersionCheck = 0;
+    private final Object versionCheckLock = new Object();
+
+    public RemoteCorpusAdapter(String serviceUrl) {
+        this(serviceUrl, DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param serviceUrl
+     *            the URL of the service, e.g.,
+     *            "http://localhost:8080/palmetto-webapp/service/"
+     * @param cacheSize
+     *            the number of bytes the cached documents may occupy
+     */
+    public RemoteCorpusAdapter(String serviceUrl, long cacheSize) {
+        this.serviceUrl = serviceUrl.endsWith("/") ? serviceUrl : (serviceUrl + "/");
+        this.cacheSize = cacheSize;
+        invalidateCache();
+    }
+
+    /**
+     * Discards the cached documents and the number of documents.
+     */
+    public void invalidateCache() {
+        pendingWords = new ConcurrentHashMap<String, SettableFuture<byte[]>>();
+        cache = CacheBuilder.newBuilder().maximumWeight(cacheSize).weigher(new Weigher<String, byte[]>() {
+            @Override
+            public int weigh(String word, byte[] documents) {
+                return documents.length + (2 * word.length());
+            }
+        }).recordStats().build();
+        numberOfDocuments = -1;
+        corpusVersion.incrementAndGet();
+    }
+
+    /**
+     * Requests the version of the remote corpus if the last check is longer
+     * ago than the version check interval and discards the cache if the
+     * version changed or is not offered by the service.
+     */
+    protected void checkVersion() {
+        if ((System.currentTimeMillis() - lastVersionCheck) < versionCheckInterval) {
+            return;
+        }
+        synchronized (versionCheckLock) {
+            long now = System.currentTimeMillis();
+            if ((now - lastVersionCheck) < versionCheckInterval) {
+                return;
+            }
+            long version = requestRemoteVersion();
+            if ((version == UNKNOWN_VERSION) || (version != remoteVersion)) {
+                if (lastVersionCheck > 0) {
+                    LOGGER.info("The version of the remote corpus changed or is unknown. Discarding the cache.");
+                }
+                invalidateCache();
+                remoteVersion = version;
+            }
+            lastVersionCheck = now;
+        }
+    }
+
+    /**
+     * Requests the version of the remote corpus from the service.
+     * 
+     * @return the version or {@link #UNKNOWN_VERSION} if the service does not
+     *         offer a version
+     */
+    protected long requestRemoteVersion() {
+        try {
+            HttpURLConnection connection = openConnection(DocumentListCodec.CORPUS_VERSION_SERVICE_PATH);
+            InputStream in = getResponseStream(connection);
+            try {
+                return Long.parseLong(IOUtils.toString(in, "UTF-8").trim());
+            } finally {
+                in.close();
+            }
+        } catch (Exception e) {
+            LOGGER.debug("Couldn't request the version of the remote corpus. The cache will be discarded.", e);
+            return UNKNOWN_VERSION;
+        }
+    }
+
+    @Override
+    public void getDocumentsWithWordsAsSet(ObjectObjectOpenHashMap<String, IntOpenHashSet> wordDocMapping) {
+        String words[] = new String[wordDocMapping.size()];
+        IntOpenHashSet documents[] = new IntOpenHashSet[words.length];
+        Object keys[] = (Object[]) wordDocMapping.keys;
+        Object values[] = (Object[]) wordDocMapping.values;
+        int pos = 0;
+        for (int i = 0; i < wordDocMapping.allocated.length; ++i) {
+            if (wordDocMapping.allocated[i]) {
+                words[pos] = (String) keys[i];
+                documents[pos] = (IntOpenHashSet) values[i];
+                ++pos;
+            }
+        }
+        byte compressedDocuments[][] = getCompressedDocuments(words);
+        for (int i = 0; i < words.length; ++i) {
+            CompressedDocumentIds.decode(compressedDocuments[i], documents[i]);
+        }
+    }
+
+    @Override
+    public void getDocumentsWithWordAsSet(String word, IntOpenHashSet documents) {
+        CompressedDocumentIds.decode(getCompressedDocuments(new String[] { word })[0], documents);
+    }
+
+    @Override
+    public void getDocumentsWithWords(ObjectObjectOpenHashMap<String, IntArrayList> wordDocMapping) {
+        String words[] = new String[wordDocMapping.size()];
+        IntArrayList documents[] = new IntArrayList[words.length];
+        Object keys[] = (Object[]) wordDocMapping.keys;
+        Object values[] = (Object[]) wordDocMapping.values;
+        int pos = 0;
+        for (int i = 0; i < wordDocMapping.allocated.length; ++i) {
+            if (wordDocMapping.allocated[i]) {
+                words[pos] = (String) keys[i];
+                documents[pos] = (IntArrayList) values[i];
+                ++pos;
+            }
+        }
+        byte compressedDocuments[][] = getCompressedDocuments(words);
+        for (int i = 0; i < words.length; ++i) {
+            CompressedDocumentIds.decode(compressedDocuments[i], documents[i]);
+        }
+    }
+
+    @Override
+    public void getDocumentsWithWord(String word, IntArrayList documents) {
+        CompressedDocumentIds.decode(getCompressedDocuments(new String[] { word })[0], documents);
+    }
+
+    /**
+     * Returns the compressed documents of the given words. Words that are
+     * neither cached nor requested by another thread are requested from the
+     * service using a single request.
+     */
+    protected byte[][] getCompressedDocuments(String words[]) {
+        checkVersion();
+        Cache<String, byte[]> cache = this.cache;
+        ConcurrentHashMap<String, SettableFuture<byte[]>> pendingWords = this.pendingWords;
+        byte compressedDocuments[][] = new byte[words.length][];
+        @SuppressWarnings("unchecked")
+        SettableFuture<byte[]> futures[] = new SettableFuture[words.length];
+        List<String> requestedWords = new ArrayList<String>();
+        List<SettableFuture<byte[]>> requestedFutures = new ArrayList<SettableFuture<byte[]>>();
+        SettableFuture<byte[]> future, pendingFuture;
+        for (int i = 0; i < words.length; ++i) {
+            compressedDocuments[i] = cache.getIfPresent(words[i]);
+            if (compressedDocuments[i] == null) {
+                future = SettableFuture.create();
+                pendingFuture = pendingWords.putIfAbsent(words[i], future);
+                if (pendingFuture == null) {
+                    // another thread might have finished its request in the meantime
+                    compressedDocuments[i] = cache.getIfPresent(words[i]);
+                    if (compressedDocuments[i] != null) {
+                        future.set(compressedDocuments[i]);
+                        pendingWords.remove(words[i], future);
+                    } else {
+                        requestedWords.add(words[i]);
+                        requestedFutures.add(future);
+                        futures[i] = future;
+                    }
+                } else {
+                    // the word is requested by another thread or appears twice in this request
+                    futures[i] = pendingFuture;
+                }
+            }
+        }
+        if (requestedWords.size() > 0) {
+            try {
+                IntArrayList documents[] = requestDocuments(requestedWords);
+                byte compressed[];
+                for (int i = 0; i < documents.length; ++i) {
+                    compressed = CompressedDocumentIds.encode(documents[i]);
+                    cache.put(requestedWords.get(i), compressed);
+                    requestedFutures.get(i).set(compressed);
+                }
+            } catch (Throwable e) {
+                for (SettableFuture<byte[]> requestedFuture : requestedFutures) {
+                    requestedFuture.setException(e);
+                }
+            } finally {
+                for (int i = 0; i < requestedWords.size(); ++i) {
+                    pendingWords.remove(requestedWords.get(i), requestedFutures.get(i));
+                }
+            }
+        }
+        for (int i = 0; i < words.length; ++i) {
+            if (compressedDocuments[i] == null) {
+                try {
+                    compressedDocuments[i] = futures[i].get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for the documents of \"" + words[i]
+                            + "\".", e);
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("Couldn't request documents of \"" + words[i] + "\".",
+                            e.getCause());
+                }
+            }
+        }
+        return compressedDocuments;
+    }
+
+    /**
+     * Requests the documents of the given words from the service.
+     */
+    protected IntArrayList[] requestDocuments(List<String> words) throws IOException {
+        StringBuilder builder = new StringBuilder();
+        for (String word : words) {
+            if (builder.length() > 0) {
+                builder.append(DocumentListCodec.WORD_SEPARATOR);
+            }
+            builder.append(word);
+        }
+        String body = DocumentListCodec.WORDS_PARAMETER_NAME + "=" + URLEncoder.encode(builder.toString(), "UTF-8");
+        numberOfRequests.incrementAndGet();
+        HttpURLConnection connection = openConnection(DocumentListCodec.DOCUMENTS_SERVICE_PATH);
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setRequestProperty("Content-Type", "application/x-www-form-urlencoded; charset=UTF-8");
+        OutputStream out = connection.getOutputStream();
+        try {
+            out.write(body.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+        InputStream in = getResponseStream(connection);
+        try {
+            return DocumentListCodec.decode(in, words.size());
+        } finally {
+            // read the remaining bytes to make sure that the connection can be reused
+            IOUtils.skip(in, Long.MAX_VALUE);
+            in.close();
+        }
+    }
+
+    protected HttpURLConnection openConnection(String servicePath) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(serviceUrl + servicePath).openConnection();
+        connection.setConnectTimeout(timeout);
+        connection.setReadTimeout(timeout);
+        return connection;
+    }
+
+    /**
+     * Returns the stream of the response or throws an exception if the
+     * service did not answer with 200.
+     */
+    protected InputStream getResponseStream(HttpURLConnection connection) throws IOException {
+        int responseCode = connection.getResponseCode();
+        if (responseCode != HttpURLConnection.HTTP_OK) {
+            InputStream errorStream = connection.getErrorStream();
+            if (errorStream != null) {
+                IOUtils.skip(errorStream, Long.MAX_VALUE);
+                errorStream.close();
+            }
+            throw new IOException("Service \"" + connection.getURL() + "\" responded with " + responseCode + ".");
+        }
+        return new BufferedInputStream(connection.getInputStream());
+    }
+
+    /**
+     * Returns the number of documents of the remote corpus. The number is
+     * requested from the service only once per version of the corpus.
+     */
+    @Override
+    public int getNumberOfDocuments() {
+        checkVersion();
+        int numberOfDocuments = this.numberOfDocuments;
+        if (numberOfDocuments < 0) {
+            try {
+                HttpURLConnection connection = openConnection(DocumentListCodec.NUMBER_OF_DOCUMENTS_SERVICE_PATH);
+                InputStream in = getResponseStream(connection);
+                try {
+                    numberOfDocuments = Integer.parseInt(IOUtils.toString(in, "UTF-8").trim());
+                } finally {
+                    in.close();
+                }
+            } catch (Exception e) {
+                LOGGER.error("Couldn't request the number of documents. Returning -1.", e);
+                return -1;
+            }
+            this.numberOfDocuments = numberOfDocuments;
+        }
+        return numberOfDocuments;
+    }
+
+    /**
+     * Returns the local version of the corpus which changes every time the
+     * cache is discarded because the remote corpus changed (or the time to
+     * live of the cache expired).
+     */
+    @Override
+    public long getCorpusVersion() {
+        checkVersion();
+        return corpusVersion.get();
+    }
+
+    /**
+     * Returns the statistics of the local cache.
+     */
+    public CacheStats getCacheStats() {
+        return cache.stats();
+    }
+
+    /**
+     * Returns the number of requests that have been sent to the document
+     * service.
+     */
+    public long getNumberOfRequests() {
+        return numberOfRequests.get();
+    }
+
+    public int getTimeout() {
+        return timeout;
+    }
+
+    public void setTimeout(int timeout) {
+        this.timeout = timeout;
+    }
+
+    public long getVersionCheckInterval() {
+        return versionCheckInterval;
+    }
+
+    /**
+     * Sets the interval in milliseconds after which the version of the remote
+     * corpus is checked again. If it is 0, the version is checked before every
+     * request.
+     */
+    public void setVersionCheckInterval(long versionCheckInterval) {
+        this.versionCheckInterval = versionCheckInterval;
+    }
+
+    @Override
+    public void close() {
+        cache.invalidateAll();
+    }
+}
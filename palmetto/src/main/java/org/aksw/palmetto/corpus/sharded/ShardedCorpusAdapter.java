@@ -0,0 +1,534 @@
+/**
+ * This file is part of Palmetto.
+ *
+ * Palmetto is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Palmetto is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Palmetto.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.aksw.palmetto.corpus.sharded;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.aksw.palmetto.corpus.BooleanDocumentSupportingAdapter;
+import org.aksw.palmetto.corpus.CorpusAdapter;
+import org.aksw.palmetto.corpus.VersionSupportingAdapter;
+import org.aksw.palmetto.corpus.WindowSupportingAdapter;
+import org.aksw.palmetto.corpus.lucene.LuceneCorpusAdapter;
+import org.aksw.palmetto.corpus.lucene.WindowSupportingLuceneCorpusAdapter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.IntIntOpenHashMap;
+import com.carrotsearch.hppc.IntObjectOpenHashMap;
+import com.carrotsearch.hppc.IntOpenHashSet;
+import com.carrotsearch.hppc.ObjectObjectOpenHashMap;
+
+/**
+ * A corpus adapter that distributes the requests to several shards, i.e.,
+ * adapters of independent indexes, and merges their results. The document ids
+ * of a shard are shifted by the offset of this shard. Thus, the offsets have to
+ * be chosen in a way that the id ranges of the single shards do not overlap.
+ * If an executor is given, the shards are queried in parallel.
+ * 
+ * <p>
+ * If the offsets are derived from the sizes of the shards (see
+ * {@link #ShardedCorpusAdapter(CorpusAdapter[], ExecutorService)}), the
+ * shards can be reopened (see {@link #reopen()}). Every request checks the
+ * versions of the shards that are {@link VersionSupportingAdapter}s and
+ * derives new offsets and a new histogram if one of them changed. A request
+ * during which a shard has been reopened is repeated. If the offsets are
+ * given explicitly, the shards have to be immutable and a request fails with
+ * an {@link IllegalStateException} if the version of a shard changed.
+ * </p>
+ * 
+ * @author Michael R&ouml;der (roeder@informatik.uni-leipzig.de)
+ *
+ */
+public class ShardedCorpusAdapter implements BooleanDocumentSupportingAdapter, WindowSupportingAdapter,
+        VersionSupportingAdapter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ShardedCorpusAdapter.class);
+
+    /**
+     * Opens the Lucene indexes with the given paths as shards. The shards are
+     * queried in parallel using one thread per shard.
+     * 
+     * @param indexPaths
+     *            the paths of the single shards
+     * @param textFieldName
+     *            the name of the field containing the text
+     * @param docLengthFieldName
+     *            the name of the field containing the document length
+     * @return the sharded adapter or null if one of the shards couldn't be
+     *         opened
+     * @throws IOException
+     *             if one of the indexes couldn't be read
+     */
+    public static ShardedCorpusAdapter create(String indexPaths[], String textFieldName, String docLengthFieldName)
+            throws IOException {
+        WindowSupportingLuceneCorpusAdapter shards[] = new WindowSupportingLuceneCorpusAdapter[indexPaths.length];
+        for (int i = 0; i < shards.length; ++i) {
+            shards[i] = WindowSupportingLuceneCorpusAdapter.create(indexPaths[i], textFieldName, docLengthFieldName);
+            if (shards[i] == null) {
+                LOGGER.error("Couldn't open shard \"" + indexPaths[i] + "\". Returning null.");
+                for (int j = 0; j < i; ++j) {
+                    shards[j].close();
+                }
+                return null;
+            }
+        }
+        ShardedCorpusAdapter adapter = new ShardedCorpusAdapter(shards, Executors.newFixedThreadPool(shards.length));
+        adapter.shutdownExecutorOnClose = true;
+        return adapter;
+    }
+
+    protected CorpusAdapter shards[];
+    /**
+     * The offsets given to the constructor or null if the offsets are derived
+     * from the sizes of the shards.
+     */
+    protected int fixedDocIdOffsets[];
+    /**
+     * The offsets and the histogram belonging to the current versions of the
+     * shards.
+     */
+    protected volatile ShardLayout layout;
+    protected ExecutorService executor;
+    protected boolean shutdownExecutorOnClose = false;
+
+    /**
+     * Constructor. The document id offsets are derived from the sizes of the
+     * shards, i.e., all shards have to be {@link LuceneCorpusAdapter}s. The
+     * offsets are derived again if a shard has been reopened.
+     * 
+     * @param shards
+     *            the adapters of the single shards
+     * @param executor
+     *            the executor used to query the shards in parallel or null if
+     *            they should be queried sequentially
+     */
+    public ShardedCorpusAdapter(CorpusAdapter shards[], ExecutorService executor) {
+        for (int i = 0; i < shards.length; ++i) {
+            if (!(shards[i] instanceof LuceneCorpusAdapter)) {
+                throw new IllegalArgumentException("Can't derive the document id offset of the shard " + shards[i]
+                        + " since it is not a LuceneCorpusAdapter.");
+            }
+        }
+        this.shards = shards;
+        this.executor = executor;
+        this.layout = createLayout();
+    }
+
+    /**
+     * Constructor. Since the offsets are fixed, the shards have to be
+     * immutable.
+     * 
+     * @param shards
+     *            the adapters of the single shards
+     * @param docIdOffsets
+     *            the offsets that are added to the document ids of the single
+     *            shards
+     * @param executor
+     *            the executor used to query the shards in parallel or null if
+     *            they should be queried sequentially
+     */
+    public ShardedCorpusAdapter(CorpusAdapter shards[], int docIdOffsets[], ExecutorService executor) {
+        this.shards = shards;
+        this.fixedDocIdOffsets = docIdOffsets;
+        this.executor = executor;
+        this.layout = createLayout();
+    }
+
+    @Override
+    public void getDocumentsWithWordsAsSet(ObjectObjectOpenHashMap<String, IntOpenHashSet> wordDocMapping) {
+        String words[] = getWords(wordDocMapping.keys, wordDocMapping.allocated);
+        List<IntArrayList[]> shardDocuments = requestDocuments(words);
+        for (int i = 0; i < words.length; ++i) {
+            IntOpenHashSet documents = wordDocMapping.get(words[i]);
+            for (IntArrayList docs[] : shardDocuments) {
+                documents.addAll(docs[i]);
+            }
+        }
+    }
+
+    @Override
+    public void getDocumentsWithWordAsSet(String word, IntOpenHashSet documents) {
+        List<IntArrayList[]> shardDocuments = requestDocuments(new String[] { word });
+        for (IntArrayList docs[] : shardDocuments) {
+            documents.addAll(docs[0]);
+        }
+    }
+
+    @Override
+    public void getDocumentsWithWords(ObjectObjectOpenHashMap<String, IntArrayList> wordDocMapping) {
+        String words[] = getWords(wordDocMapping.keys, wordDocMapping.allocated);
+        List<IntArrayList[]> shardDocuments = requestDocuments(words);
+        for (int i = 0; i < words.length; ++i) {
+            IntArrayList documents = wordDocMapping.get(words[i]);
+            for (IntArrayList docs[] : shardDocuments) {
+                documents.addAll(docs[i]);
+            }
+        }
+    }
+
+    @Override
+    public void getDocumentsWithWord(String word, IntArrayList documents) {
+        List<IntArrayList[]> shardDocuments = requestDocuments(new String[] { word });
+        for (IntArrayList docs[] : shardDocuments) {
+            documents.addAll(docs[0]);
+        }
+    }
+
+    private static String[] getWords(Object keys[], boolean allocated[]) {
+        List<String> words = new ArrayList<String>();
+        for (int i = 0; i < allocated.length; ++i) {
+            if (allocated[i]) {
+                words.add((String) keys[i]);
+            }
+        }
+        return words.toArray(new String[words.size()]);
+    }
+
+    /**
+     * Requests the documents containing the given words from all shards. Every
+     * shard gets the complete batch of words with a single request. The
+     * document ids of the returned lists are already shifted and the arrays
+     * are in the order of the shards and contain one list per word.
+     */
+    protected List<IntArrayList[]> requestDocuments(final String words[]) {
+        while (true) {
+            ShardLayout layout = getLayout();
+            List<Callable<IntArrayList[]>> tasks = new ArrayList<Callable<IntArrayList[]>>(shards.length);
+            for (int i = 0; i < shards.length; ++i) {
+                final BooleanDocumentSupportingAdapter shard = (BooleanDocumentSupportingAdapter) shards[i];
+                final int offset = layout.docIdOffsets[i];
+                tasks.add(new Callable<IntArrayList[]>() {
+                    @Override
+                    public IntArrayList[] call() throws Exception {
+                        ObjectObjectOpenHashMap<String, IntArrayList> wordDocMapping =
+                                new ObjectObjectOpenHashMap<String, IntArrayList>();
+                        IntArrayList documents[] = new IntArrayList[words.length];
+                        for (int j = 0; j < words.length; ++j) {
+                            documents[j] = new IntArrayList();
+                            wordDocMapping.put(words[j], documents[j]);
+                        }
+                        shard.getDocumentsWithWords(wordDocMapping);
+                        for (int j = 0; j < documents.length; ++j) {
+                            for (int k = 0; k < documents[j].elementsCount; ++k) {
+                                documents[j].buffer[k] += offset;
+                            }
+                        }
+                        return documents;
+                    }
+                });
+            }
+            List<IntArrayList[]> results = execute(tasks);
+            if (isCurrent(layout)) {
+                return results;
+            }
+        }
+    }
+
+    @Override
+    public IntObjectOpenHashMap<IntArrayList[]> requestWordPositionsInDocuments(final String[] words,
+            IntIntOpenHashMap docLengths) {
+        while (true) {
+            ShardLayout layout = getLayout();
+            List<Callable<ShardPositions>> tasks = new ArrayList<Callable<ShardPositions>>(shards.length);
+            for (int i = 0; i < shards.length; ++i) {
+                final WindowSupportingAdapter shard = (WindowSupportingAdapter) shards[i];
+                tasks.add(new Callable<ShardPositions>() {
+                    @Override
+                    public ShardPositions call() throws Exception {
+                        IntIntOpenHashMap shardDocLengths = new IntIntOpenHashMap();
+                        return new ShardPositions(shard.requestWordPositionsInDocuments(words, shardDocLengths),
+                                shardDocLengths);
+                    }
+                });
+            }
+            List<ShardPositions> results = execute(tasks);
+            if (isCurrent(layout)) {
+                return mergePositions(results, layout, docLengths);
+            }
+        }
+    }
+
+    /**
+     * Merges the positions and document lengths of the single shards after
+     * shifting their document ids.
+     */
+    protected IntObjectOpenHashMap<IntArrayList[]> mergePositions(List<ShardPositions> results, ShardLayout layout,
+            IntIntOpenHashMap docLengths) {
+        IntObjectOpenHashMap<IntArrayList[]> positionsInDocs = new IntObjectOpenHashMap<IntArrayList[]>();
+        ShardPositions result;
+        Object values[];
+        int offset;
+        for (int i = 0; i < results.size(); ++i) {
+            result = results.get(i);
+            offset = layout.docIdOffsets[i];
+            values = (Object[]) result.positionsInDocs.values;
+            for (int j = 0; j < result.positionsInDocs.allocated.length; ++j) {
+                if (result.positionsInDocs.allocated[j]) {
+                    positionsInDocs.put(result.positionsInDocs.keys[j] + offset, (IntArrayList[]) values[j]);
+                }
+            }
+            for (int j = 0; j < result.docLengths.allocated.length; ++j) {
+                if (result.docLengths.allocated[j]) {
+                    docLengths.put(result.docLengths.keys[j] + offset, result.docLengths.values[j]);
+                }
+            }
+        }
+        return positionsInDocs;
+    }
+
+    /**
+     * Executes the given tasks (one per shard) and returns their results in
+     * the order of the tasks.
+     */
+    protected <T> List<T> execute(List<Callable<T>> tasks) {
+        List<T> results = new ArrayList<T>(tasks.size());
+        try {
+            if (executor != null) {
+                List<Future<T>> futures = executor.invokeAll(tasks);
+                for (Future<T> future : futures) {
+                    results.add(future.get());
+                }
+            } else {
+                for (Callable<T> task : tasks) {
+                    results.add(task.call());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the shards.", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Error while requesting a shard.", e.getCause());
+        } catch (Exception e) {
+            throw new IllegalStateException("Error while requesting a shard.", e);
+        }
+        return results;
+    }
+
+    /**
+     * Returns the merged document length histograms of all shards.
+     */
+    @Override
+    public int[][] getDocumentSizeHistogram() {
+        while (true) {
+            ShardLayout layout = getLayout();
+            int histogram[][] = layout.histogram;
+            if (histogram == null) {
+                histogram = mergeHistograms();
+                if (!isCurrent(layout)) {
+                    continue;
+                }
+                layout.histogram = histogram;
+            }
+            return histogram;
+        }
+    }
+
+    protected int[][] mergeHistograms() {
+        IntIntOpenHashMap lengthCounts = new IntIntOpenHashMap();
+        int shardHistogram[][];
+        for (int i = 0; i < shards.length; ++i) {
+            shardHistogram = ((WindowSupportingAdapter) shards[i]).getDocumentSizeHistogram();
+            for (int j = 0; j < shardHistogram.length; ++j) {
+                lengthCounts.putOrAdd(shardHistogram[j][0], shardHistogram[j][1], shardHistogram[j][1]);
+            }
+        }
+        int mergedHistogram[][] = new int[lengthCounts.size()][2];
+        int pos = 0;
+        for (int i = 0; i < lengthCounts.allocated.length; ++i) {
+            if (lengthCounts.allocated[i]) {
+                mergedHistogram[pos][0] = lengthCounts.keys[i];
+                mergedHistogram[pos][1] = lengthCounts.values[i];
+                ++pos;
+            }
+        }
+        return mergedHistogram;
+    }
+
+    /**
+     * Reopens all shards that are {@link LuceneCorpusAdapter}s (see
+     * {@link LuceneCorpusAdapter#reopen()}). The offsets and the histogram
+     * are derived again with the next request.
+     * 
+     * @return true if at least one of the shards switched to a new commit
+     * @throws IOException
+     *             if one of the shards couldn't be reopened
+     * @throws IllegalStateException
+     *             if a shard changed although the offsets are fixed
+     */
+    public boolean reopen() throws IOException {
+        boolean reopened = false;
+        for (int i = 0; i < shards.length; ++i) {
+            if (shards[i] instanceof LuceneCorpusAdapter) {
+                reopened |= ((LuceneCorpusAdapter) shards[i]).reopen();
+            }
+        }
+        if (reopened) {
+            getLayout();
+        }
+        return reopened;
+    }
+
+    /**
+     * Returns the sum of the versions of all shards that are
+     * {@link VersionSupportingAdapter}s. Since the versions of the single
+     * shards only increase, the sum changes every time a shard changes.
+     */
+    @Override
+    public long getCorpusVersion() {
+        return sum(getShardVersions());
+    }
+
+    private static long sum(long values[]) {
+        long sum = 0;
+        for (int i = 0; i < values.length; ++i) {
+            sum += values[i];
+        }
+        return sum;
+    }
+
+    /**
+     * Returns the current versions of the shards. Shards that are no
+     * {@link VersionSupportingAdapter}s are assumed to be immutable and get
+     * the version 0.
+     */
+    protected long[] getShardVersions() {
+        long versions[] = new long[shards.length];
+        for (int i = 0; i < shards.length; ++i) {
+            if (shards[i] instanceof VersionSupportingAdapter) {
+                versions[i] = ((VersionSupportingAdapter) shards[i]).getCorpusVersion();
+            }
+        }
+        return versions;
+    }
+
+    /**
+     * Returns true if none of the shards changed since the given layout has
+     * been created.
+     */
+    protected boolean isCurrent(ShardLayout layout) {
+        return Arrays.equals(layout.versions, getShardVersions());
+    }
+
+    /**
+     * Returns the layout of the current versions of the shards. If one of the
+     * shards changed, a new layout is created.
+     */
+    protected ShardLayout getLayout() {
+        ShardLayout layout = this.layout;
+        if (isCurrent(layout)) {
+            return layout;
+        }
+        synchronized (this) {
+            layout = this.layout;
+            if (!isCurrent(layout)) {
+                layout = createLayout();
+                this.layout = layout;
+            }
+            return layout;
+        }
+    }
+
+    /**
+     * Creates the layout of the current versions of the shards. The versions
+     * are read before the sizes of the shards, i.e., if a shard is reopened
+     * meanwhile, the layout is not current and will be replaced.
+     * 
+     * @throws IllegalStateException
+     *             if a shard changed although the offsets are fixed
+     */
+    protected ShardLayout createLayout() {
+        long versions[] = getShardVersions();
+        if (fixedDocIdOffsets != null) {
+            if ((layout != null) && !Arrays.equals(layout.versions, versions)) {
+                throw new IllegalStateException("A shard has been changed although the document id offsets are fixed. "
+                        + "Use the constructor that derives the offsets if the shards can be reopened.");
+            }
+            return new ShardLayout(fixedDocIdOffsets, versions);
+        }
+        int docIdOffsets[] = new int[shards.length];
+        long offset = 0;
+        for (int i = 0; i < shards.length; ++i) {
+            docIdOffsets[i] = (int) offset;
+            offset += ((LuceneCorpusAdapter) shards[i]).getMaxDoc();
+            if (offset > Integer.MAX_VALUE) {
+                throw new IllegalStateException("The shards contain more than Integer.MAX_VALUE documents.");
+            }
+        }
+        return new ShardLayout(docIdOffsets, versions);
+    }
+
+    @Override
+    public int getNumberOfDocuments() {
+        int numberOfDocuments = 0;
+        for (int i = 0; i < shards.length; ++i) {
+            numberOfDocuments += ((BooleanDocumentSupportingAdapter) shards[i]).getNumberOfDocuments();
+        }
+        return numberOfDocuments;
+    }
+
+    public CorpusAdapter[] getShards() {
+        return shards;
+    }
+
+    @Override
+    public void close() {
+        for (int i = 0; i < shards.length; ++i) {
+            shards[i].close();
+        }
+        if (shutdownExecutorOnClose) {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * The document id offsets of the shards belonging to the versions of the
+     * shards they have been derived from. The merged histogram is created
+     * lazily.
+     */
+    protected static class ShardLayout {
+        public final int docIdOffsets[];
+        public final long versions[];
+        public volatile int histogram[][];
+
+        public ShardLayout(int[] docIdOffsets, long[] versions) {
+            this.docIdOffsets = docIdOffsets;
+            this.versions = versions;
+        }
+    }
+
+    /**
+     * The positions and document lengths returned by a single shard.
+     */
+    protected static class ShardPositions {
+        public IntObjectOpenHashMap<IntArrayList[]> positionsInDocs;
+        public IntIntOpenHashMap docLengths;
+
+        public ShardPositions(IntObjectOpenHashMap<IntArrayList[]> positionsInDocs, IntIntOpenHashMap docLengths) {
+            this.positionsInDocs = positionsInDocs;
+            this.docLengths = docLengths;
+        }
+    }
+}
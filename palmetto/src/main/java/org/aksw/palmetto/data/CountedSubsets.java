@@ -46,13 +46,32 @@ public class CountedSubsets {
      * word #1 and word #2</li>
      * <li>...</li>
      * </ul>
+     * If a {@link #lattice} is given, the index is the slot of the subset
+     * inside the lattice.
      */
-    public int counts[];
+    public long counts[];
+    /**
+     * The lattice of the subsets or null if the subsets are bit masks.
+     */
+    public SubsetLattice lattice;
+
+    public CountedSubsets(int[] segments, int[][] conditions, long counts[]) {
+        this(segments, conditions, counts, null);
+    }
 
-    public CountedSubsets(int[] segments, int[][] conditions, int counts[]) {
+    public CountedSubsets(int[] segments, int[][] conditions, long counts[], SubsetLattice lattice) {
         this.segments = segments;
         this.conditions = conditions;
         this.counts = counts;
+        this.lattice = lattice;
+    }
+
+    /**
+     * Creates counted subsets with the segments, conditions and lattice of
+     * the given definition.
+     */
+    public CountedSubsets(SegmentationDefinition definition, long counts[]) {
+        this(definition.segments, definition.conditions, counts, definition.lattice);
     }
 
     /**
@@ -88,7 +107,7 @@ public class CountedSubsets {
     /**
      * @return the counts
      */
-    public int[] getCounts() {
+    public long[] getCounts() {
         return counts;
     }
 
@@ -96,8 +115,22 @@ public class CountedSubsets {
      * @param counts
      *            the counts to set
      */
-    public void setCounts(int[] counts) {
+    public void setCounts(long[] counts) {
         this.counts = counts;
     }
 
+    /**
+     * @return the lattice or null if the subsets are bit masks
+     */
+    public SubsetLattice getLattice() {
+        return lattice;
+    }
+
+    /**
+     * @param lattice
+     *            the lattice to set
+     */
+    public void setLattice(SubsetLattice lattice) {
+        this.lattice = lattice;
+    }
 }
@@ -42,12 +42,26 @@ public class SegmentationDefinition {
      * used by the system.
      */
     public BitSet neededCounts;
+    /**
+     * The lattice of the needed subsets or null if the subsets are identified
+     * by bit masks of their words. If a lattice is given, the
+     * {@link #segments} and {@link #conditions} are slots of this lattice and
+     * {@link #neededCounts} is null since all subsets of the lattice are
+     * needed.
+     */
+    public SubsetLattice lattice;
 
     public SegmentationDefinition(int[] segments, int[][] conditions,
             BitSet neededCounts) {
+        this(segments, conditions, neededCounts, null);
+    }
+
+    public SegmentationDefinition(int[] segments, int[][] conditions,
+            BitSet neededCounts, SubsetLattice lattice) {
         this.segments = segments;
         this.conditions = conditions;
         this.neededCounts = neededCounts;
+        this.lattice = lattice;
     }
 
     /**
@@ -95,11 +109,27 @@ public class SegmentationDefinition {
         this.neededCounts = neededCounts;
     }
 
+    /**
+     * @return the lattice or null if the subsets are bit masks
+     */
+    public SubsetLattice getLattice() {
+        return lattice;
+    }
+
+    /**
+     * @param lattice
+     *            the lattice to set
+     */
+    public void setLattice(SubsetLattice lattice) {
+        this.lattice = lattice;
+    }
+
     @Override
     public int hashCode() {
         int result = Arrays.hashCode(segments);
         result = 31 * result + Arrays.hashCode(conditions);
         result = 31 * result + ((neededCounts == null) ? 0 : neededCounts.hashCode());
+        result = 31 * result + ((lattice == null) ? 0 : lattice.hashCode());
         return result;
     }
 
@@ -121,6 +151,11 @@ public class SegmentationDefinition {
             return false;
         if (!Arrays.equals(segments, other.segments))
             return false;
+        if (lattice == null) {
+            if (other.lattice != null)
+                return false;
+        } else if (!lattice.equals(other.lattice))
+            return false;
         return true;
     }
 }
@@ -0,0 +1,475 @@
+/**
+ * This file is part of Palmetto.
+ *
+ * Palmetto is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Palmetto is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Palmetto.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.aksw.palmetto.data;
+
+import java.util.Arrays;
+
+import com.carrotsearch.hppc.ObjectIntOpenHashMap;
+
+/**
+ * The subsets of a word set that are needed by a segmentation. In contrast to
+ * the dense representation in which a subset is identified by a bit mask of
+ * its words (and the counts and probabilities are arrays with
+ * <code>2<sup>n</sup></code> elements), every subset gets a slot inside the
+ * lattice and the counts and probabilities are arrays with one element per
+ * slot. This makes it possible to handle word sets with more than 31 words.
+ * 
+ * <p>
+ * The slots are organized as follows:
+ * </p>
+ * <ul>
+ * <li><code>[0, n)</code>: the single words, i.e., the slot of word
+ * <code>i</code> is <code>i</code>,</li>
+ * <li><code>[n, n + n(n-1)/2)</code>: all pairs of words in lexicographic
+ * order, i.e., <code>{0,1}, {0,2}, ..., {1,2}, ...</code>,</li>
+ * <li>the larger subsets in the order in which they have been added.</li>
+ * </ul>
+ * <p>
+ * The single words and pairs are always part of the lattice since they are
+ * needed by the indirect confirmation measures. The larger subsets are stored
+ * as bit masks of <code>long</code> values.
+ * </p>
+ * 
+ * <p>
+ * A lattice is created by the segmentator. Subsets must not be added after
+ * the lattice has been handed to a frequency determiner. After that, the
+ * lattice is only read and can be shared between threads.
+ * </p>
+ * 
+ * @author Michael R&ouml;der (roeder@informatik.uni-leipzig.de)
+ *
+ */
+public class SubsetLattice {
+
+    /**
+     * Word sets with up to this number of words are represented with dense
+     * bit masks since their <code>2<sup>n</sup></code> counts are cheap and
+     * can be addressed without any lookup.
+     */
+    public static final int MAX_DENSE_WORDS = 16;
+
+    /**
+     * The slot id returned for a subset that is not part of the lattice.
+     */
+    public static final int NOT_CONTAINED = -1;
+
+    /**
+     * Returns true if a word set with the given number of words should be
+     * represented by a lattice instead of dense bit masks.
+     */
+    public static boolean isNeeded(int numberOfWords) {
+        return numberOfWords > MAX_DENSE_WORDS;
+    }
+
+    private final int numberOfWords;
+    /**
+     * The number of <code>long</code> values of a single bit mask.
+     */
+    private final int numberOfBlocks;
+    /**
+     * The slot of the pair <code>{i, i+1}</code> for every word
+     * <code>i</code>. The pairs of a word are stored consecutively.
+     */
+    private final int pairOffsets[];
+    private final int firstLargeSlot;
+    /**
+     * The bit masks of the larger subsets, one after the other.
+     */
+    private long largeMasks[] = new long[0];
+    private int largeSizes[] = new int[0];
+    private int numberOfLargeSubsets = 0;
+    private final ObjectIntOpenHashMap<WordMask> largeSlots = new ObjectIntOpenHashMap<WordMask>();
+
+    public SubsetLattice(int numberOfWords) {
+        this.numberOfWords = numberOfWords;
+        numberOfBlocks = Math.max(1, (numberOfWords + 63) >>> 6);
+        pairOffsets = new int[numberOfWords + 1];
+        int slot = numberOfWords;
+        for (int i = 0; i < numberOfWords; ++i) {
+            pairOffsets[i] = slot;
+            slot += numberOfWords - (i + 1);
+        }
+        pairOffsets[numberOfWords] = slot;
+        firstLargeSlot = slot;
+    }
+
+    public int getNumberOfWords() {
+        return numberOfWords;
+    }
+
+    /**
+     * Returns the number of slots, i.e., the length of the counts and
+     * probabilities arrays.
+     */
+    public int size() {
+        return firstLargeSlot + numberOfLargeSubsets;
+    }
+
+    /**
+     * Returns the first slot of the subsets with more than two words.
+     */
+    public int getFirstLargeSlot() {
+        return firstLargeSlot;
+    }
+
+    /**
+     * Returns the number of subsets with more than two words.
+     */
+    public int getNumberOfLargeSubsets() {
+        return numberOfLargeSubsets;
+    }
+
+    public int getSingle(int word) {
+        return word;
+    }
+
+    /**
+     * Returns the slot of the pair of the two given words or the slot of the
+     * single word if both words are the same.
+     */
+    public int getPair(int word1, int word2) {
+        if (word1 == word2) {
+            return word1;
+        } else if (word1 < word2) {
+            return pairOffsets[word1] + (word2 - word1 - 1);
+        } else {
+            return pairOffsets[word2] + (word1 - word2 - 1);
+        }
+    }
+
+    /**
+     * Returns the number of words of the subset with the given slot.
+     */
+    public int getSubsetSize(int slot) {
+        if (slot < numberOfWords) {
+            return 1;
+        } else if (slot < firstLargeSlot) {
+            return 2;
+        } else {
+            return largeSizes[slot - firstLargeSlot];
+        }
+    }
+
+    /**
+     * Returns the ascending ids of the words of the subset with the given
+     * slot.
+     */
+    public int[] getWords(int slot) {
+        if (slot < numberOfWords) {
+            return new int[] { slot };
+        } else if (slot < firstLargeSlot) {
+            int word1 = getFirstWordOfPair(slot);
+            return new int[] { word1, slot - pairOffsets[word1] + word1 + 1 };
+        } else {
+            int large = slot - firstLargeSlot;
+            int words[] = new int[largeSizes[large]];
+            int pos = 0;
+            int offset = large * numberOfBlocks;
+            for (int b = 0; b < numberOfBlocks; ++b) {
+                for (long bits = largeMasks[offset + b]; bits != 0; bits &= bits - 1) {
+                    words[pos] = (b << 6) + Long.numberOfTrailingZeros(bits);
+                    ++pos;
+                }
+            }
+            return words;
+        }
+    }
+
+    private int getFirstWordOfPair(int slot) {
+        int pos = Arrays.binarySearch(pairOffsets, 0, numberOfWords, slot);
+        // if the slot is not the first pair of a word, it belongs to the word with the next smaller offset
+        return (pos < 0) ? (-pos - 2) : pos;
+    }
+
+    /**
+     * Returns true if the given word is part of the subset with the given
+     * slot.
+     */
+    public boolean isWordInSubset(int slot, int word) {
+        if (slot < firstLargeSlot) {
+            int words[] = getWords(slot);
+            return (words[0] == word) || ((words.length > 1) && (words[1] == word));
+        } else {
+            return (largeMasks[((slot - firstLargeSlot) * numberOfBlocks) + (word >>> 6)] & (1L << word)) != 0;
+        }
+    }
+
+    /**
+     * Returns the slot of the subset comprising the given words or
+     * {@link #NOT_CONTAINED} if the lattice does not contain it.
+     */
+    public int getSlot(int words[]) {
+        return getSlot(createMask(words));
+    }
+
+    /**
+     * Returns the slot of the union of the two given subsets or
+     * {@link #NOT_CONTAINED} if the lattice does not contain it.
+     */
+    public int getUnion(int slot1, int slot2) {
+        if (slot1 == slot2) {
+            return slot1;
+        }
+        if ((slot1 < numberOfWords) && (slot2 < numberOfWords)) {
+            return getPair(slot1, slot2);
+        }
+        long mask[] = new long[numberOfBlocks];
+        addToMask(slot1, mask);
+        addToMask(slot2, mask);
+        return getSlot(mask);
+    }
+
+    /**
+     * Adds the subset comprising the given words to the lattice (if it is
+     * not already contained) and returns its slot.
+     */
+    public int addSubset(int words[]) {
+        return addSubset(createMask(words));
+    }
+
+    /**
+     * Adds the subset comprising all words to the lattice (if it is not
+     * already contained) and returns its slot.
+     */
+    public int addCompleteSet() {
+        return addCompleteSetWithout(-1);
+    }
+
+    /**
+     * Adds the subset comprising all words except the given word to the
+     * lattice (if it is not already contained) and returns its slot.
+     */
+    public int addCompleteSetWithout(int word) {
+        long mask[] = new long[numberOfBlocks];
+        for (int w = 0; w < numberOfWords; ++w) {
+            if (w != word) {
+                mask[w >>> 6] |= 1L << w;
+            }
+        }
+        return addSubset(mask);
+    }
+
+    /**
+     * Adds the union of the two given subsets to the lattice (if it is not
+     * already contained) and returns its slot.
+     */
+    public int addUnion(int slot1, int slot2) {
+        if (slot1 == slot2) {
+            return slot1;
+        }
+        long mask[] = new long[numberOfBlocks];
+        addToMask(slot1, mask);
+        addToMask(slot2, mask);
+        return addSubset(mask);
+    }
+
+    /**
+     * Adds the given count to the counts of all subsets of the lattice that
+     * are part of the given set of words, e.g., the words of a document or a
+     * window.
+     * 
+     * @param wordMask
+     *            the bit mask of the words
+     * @param count
+     *            the count that is added
+     * @param counts
+     *            the counts of the lattice
+     */
+    public void addCounts(long wordMask[], int count, long counts[]) {
+        int word, pairOffset;
+        long bits, rest;
+        for (int b = 0; b < numberOfBlocks; ++b) {
+            for (bits = wordMask[b]; bits != 0; bits &= bits - 1) {
+                word = (b << 6) + Long.numberOfTrailingZeros(bits);
+                counts[word] += count;
+                // the slot of the pair {word, w} is pairOffset + w
+                pairOffset = pairOffsets[word] - word - 1;
+                for (rest = bits & (bits - 1); rest != 0; rest &= rest - 1) {
+                    counts[pairOffset + (b << 6) + Long.numberOfTrailingZeros(rest)] += count;
+                }
+                for (int b2 = b + 1; b2 < numberOfBlocks; ++b2) {
+                    for (rest = wordMask[b2]; rest != 0; rest &= rest - 1) {
+                        counts[pairOffset + (b2 << 6) + Long.numberOfTrailingZeros(rest)] += count;
+                    }
+                }
+            }
+        }
+        int offset = 0;
+        boolean contained;
+        for (int l = 0; l < numberOfLargeSubsets; ++l) {
+            contained = true;
+            for (int b = 0; contained && (b < numberOfBlocks); ++b) {
+                contained = (largeMasks[offset + b] & ~wordMask[b]) == 0;
+            }
+            if (contained) {
+                counts[firstLargeSlot + l] += count;
+            }
+            offset += numberOfBlocks;
+        }
+    }
+
+    /**
+     * Creates an empty bit mask that can be used for
+     * {@link #addCounts(long[], int, long[])}.
+     */
+    public long[] createWordMask() {
+        return new long[numberOfBlocks];
+    }
+
+    private long[] createMask(int words[]) {
+        long mask[] = new long[numberOfBlocks];
+        for (int i = 0; i < words.length; ++i) {
+            if ((words[i] < 0) || (words[i] >= numberOfWords)) {
+                throw new IllegalArgumentException("The word id " + words[i] + " is not in [0, " + numberOfWords
+                        + ").");
+            }
+            mask[words[i] >>> 6] |= 1L << words[i];
+        }
+        return mask;
+    }
+
+    private void addToMask(int slot, long mask[]) {
+        if (slot < firstLargeSlot) {
+            int words[] = getWords(slot);
+            for (int i = 0; i < words.length; ++i) {
+                mask[words[i] >>> 6] |= 1L << words[i];
+            }
+        } else {
+            int offset = (slot - firstLargeSlot) * numberOfBlocks;
+            for (int b = 0; b < numberOfBlocks; ++b) {
+                mask[b] |= largeMasks[offset + b];
+            }
+        }
+    }
+
+    private int getSlot(long mask[]) {
+        int size = 0, first = -1, second = -1, word;
+        for (int b = 0; b < numberOfBlocks; ++b) {
+            size += Long.bitCount(mask[b]);
+            for (long bits = mask[b]; (bits != 0) && (second < 0); bits &= bits - 1) {
+                word = (b << 6) + Long.numberOfTrailingZeros(bits);
+                if (first < 0) {
+                    first = word;
+                } else {
+                    second = word;
+                }
+            }
+        }
+        switch (size) {
+        case 0:
+            return NOT_CONTAINED;
+        case 1:
+            return first;
+        case 2:
+            return getPair(first, second);
+        default:
+            WordMask key = new WordMask(mask);
+            return largeSlots.containsKey(key) ? largeSlots.lget() : NOT_CONTAINED;
+        }
+    }
+
+    private int addSubset(long mask[]) {
+        int slot = getSlot(mask);
+        if (slot != NOT_CONTAINED) {
+            return slot;
+        }
+        int size = 0;
+        for (int b = 0; b < numberOfBlocks; ++b) {
+            size += Long.bitCount(mask[b]);
+        }
+        if (size == 0) {
+            throw new IllegalArgumentException("The empty set can not be added to the lattice.");
+        }
+        if (largeSizes.length == numberOfLargeSubsets) {
+            largeSizes = Arrays.copyOf(largeSizes, Math.max(4, 2 * numberOfLargeSubsets));
+            largeMasks = Arrays.copyOf(largeMasks, largeSizes.length * numberOfBlocks);
+        }
+        System.arraycopy(mask, 0, largeMasks, numberOfLargeSubsets * numberOfBlocks, numberOfBlocks);
+        largeSizes[numberOfLargeSubsets] = size;
+        slot = firstLargeSlot + numberOfLargeSubsets;
+        largeSlots.put(new WordMask(mask), slot);
+        ++numberOfLargeSubsets;
+        return slot;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = numberOfWords;
+        int offset = 0;
+        for (int l = 0; l < numberOfLargeSubsets; ++l) {
+            for (int b = 0; b < numberOfBlocks; ++b) {
+                result = 31 * result + (int) (largeMasks[offset] ^ (largeMasks[offset] >>> 32));
+                ++offset;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Two lattices are equal if they have the same number of words and the
+     * same larger subsets in the same order, i.e., if their slots are equal.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null)
+            return false;
+        if (getClass() != obj.getClass())
+            return false;
+        SubsetLattice other = (SubsetLattice) obj;
+        if ((numberOfWords != other.numberOfWords) || (numberOfLargeSubsets != other.numberOfLargeSubsets))
+            return false;
+        int length = numberOfLargeSubsets * numberOfBlocks;
+        for (int i = 0; i < length; ++i) {
+            if (largeMasks[i] != other.largeMasks[i])
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * A bit mask of words that can be used as key of a hash map.
+     * 
+     * @author Michael R&ouml;der (roeder@informatik.uni-leipzig.de)
+     *
+     */
+    private static final class WordMask {
+
+        private final long mask[];
+        private final int hashCode;
+
+        public WordMask(long mask[]) {
+            this.mask = mask;
+            this.hashCode = Arrays.hashCode(mask);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+            if ((obj == null) || (getClass() != obj.getClass()))
+                return false;
+            return Arrays.equals(mask, ((WordMask) obj).mask);
+        }
+    }
+}
@@ -47,13 +47,76 @@ public class SubsetProbabilities {
      * comprising word #1 and word #2</li>
      * <li>...</li>
      * </ul>
+     * If a {@link #lattice} is given, the index is the slot of the subset
+     * inside the lattice.
      */
     public double probabilities[];
+    /**
+     * The lattice of the subsets or null if the subsets are bit masks.
+     */
+    public SubsetLattice lattice;
 
     public SubsetProbabilities(int[] segments, int[][] conditions, double[] segmentProbabilities) {
+        this(segments, conditions, segmentProbabilities, null);
+    }
+
+    public SubsetProbabilities(int[] segments, int[][] conditions, double[] segmentProbabilities,
+            SubsetLattice lattice) {
         this.segments = segments;
         this.conditions = conditions;
         this.probabilities = segmentProbabilities;
+        this.lattice = lattice;
+    }
+
+    /**
+     * Returns the probability of the intersection of the j-th condition of the
+     * i-th segment with this segment, i.e., the probability of the union of
+     * their words.
+     */
+    public double getIntersectionProbability(int i, int j) {
+        return probabilities[getUnion(segments[i], conditions[i][j])];
+    }
+
+    /**
+     * Returns the id of the union of the two given subsets.
+     */
+    public int getUnion(int subset1, int subset2) {
+        return (lattice == null) ? (subset1 | subset2) : lattice.getUnion(subset1, subset2);
+    }
+
+    /**
+     * Returns the id of the subset comprising only the given word.
+     */
+    public int getSingle(int word) {
+        return (lattice == null) ? (1 << word) : lattice.getSingle(word);
+    }
+
+    /**
+     * Returns the id of the subset comprising the two given words.
+     */
+    public int getPair(int word1, int word2) {
+        return (lattice == null) ? ((1 << word1) | (1 << word2)) : lattice.getPair(word1, word2);
+    }
+
+    /**
+     * Returns the number of words of the given subset.
+     */
+    public int getSubsetSize(int subset) {
+        return (lattice == null) ? Integer.bitCount(subset) : lattice.getSubsetSize(subset);
+    }
+
+    /**
+     * Returns true if the given word is part of the given subset.
+     */
+    public boolean isWordInSubset(int subset, int word) {
+        return (lattice == null) ? ((subset & (1 << word)) != 0) : lattice.isWordInSubset(subset, word);
+    }
+
+    /**
+     * Returns the number of words of the complete word set.
+     */
+    public int getNumberOfWords() {
+        return (lattice == null) ? Integer.numberOfTrailingZeros(probabilities.length) : lattice.getNumberOfWords();
     }
 
     /**
@@ -70,4 +133,19 @@ public class SubsetProbabilities {
     public void setSegmentProbabilities(double[] segmentProbabilities) {
         this.probabilities = segmentProbabilities;
     }
+
+    /**
+     * @return the lattice or null if the subsets are bit masks
+     */
+    public SubsetLattice getLattice() {
+        return lattice;
+    }
+
+    /**
+     * @param lattice
+     *            the lattice to set
+     */
+    public void setLattice(SubsetLattice lattice) {
+        this.lattice = lattice;
+    }
 }
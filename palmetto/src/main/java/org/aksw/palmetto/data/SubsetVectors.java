@@ -30,4 +30,10 @@ public class SubsetVectors extends SubsetProbabilities {
         super(segments, conditions, segmentProbabilities);
         this.vectors = vectors;
     }
+
+    public SubsetVectors(int[] segments, int[][] conditions, double[][] vectors, double[] segmentProbabilities,
+            SubsetLattice lattice) {
+        super(segments, conditions, segmentProbabilities, lattice);
+        this.vectors = vectors;
+    }
 }
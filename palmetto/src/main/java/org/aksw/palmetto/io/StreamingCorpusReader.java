@@ -0,0 +1,506 @@
+/**
+ * This file is part of Palmetto.
+ *
+ * Palmetto is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Palmetto is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Palmetto.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.aksw.palmetto.io;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import org.aksw.palmetto.corpus.lucene.SimpleAnalyzer;
+import org.aksw.palmetto.corpus.lucene.creation.IndexableDocument;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+import org.apache.commons.io.IOUtils;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads the documents of a raw text corpus and hands them to an index creator
+ * as already tokenized {@link IndexableDocument}s. The corpus file can be
+ * compressed using gzip or bzip2.
+ * 
+ * <p>
+ * A single reader thread reads large chunks of bytes from the file and cuts
+ * them at the last document boundary. The chunks are tokenized by several
+ * worker threads using the {@link SimpleAnalyzer}. Both stages are connected by
+ * bounded queues, i.e., the reader is blocked if the workers or the consumer
+ * of the documents are too slow. Note that the order of the documents is only
+ * preserved if a single worker is used.
+ * </p>
+ * 
+ * <p>
+ * Empty documents (i.e., documents without a single token) are skipped. An
+ * error of one of the threads is rethrown as {@link IllegalStateException} by
+ * the iterator methods. The reader should be closed if not all documents have
+ * been consumed. A closed reader does not return any further documents.
+ * </p>
+ * 
+ * @author Michael R&ouml;der (roeder@informatik.uni-leipzig.de)
+ *
+ */
+public class StreamingCorpusReader implements Iterator<IndexableDocument>, Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StreamingCorpusReader.class);
+
+    /**
+     * The format of the corpus file.
+     */
+    public static enum Format {
+        /**
+         * Every line contains a single document.
+         */
+        ONE_DOCUMENT_PER_LINE,
+        /**
+         * Documents can span several lines and are separated by empty lines.
+         */
+        EMPTY_LINE_SEPARATED
+    }
+
+    /**
+     * The compression of the corpus file.
+     */
+    public static enum Compression {
+        NONE, GZIP, BZIP2;
+
+        /**
+         * Derives the compression from the suffix of the given file name.
+         */
+        public static Compression fromFileName(String fileName) {
+            String lowerCaseName = fileName.toLowerCase();
+            if (lowerCaseName.endsWith(".gz") || lowerCaseName.endsWith(".gzip")) {
+                return GZIP;
+            } else if (lowerCaseName.endsWith(".bz2")) {
+                return BZIP2;
+            } else {
+                return NONE;
+            }
+        }
+    }
+
+    public static final int DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024;
+    public static final int DEFAULT_NUMBER_OF_WORKERS = Runtime.getRuntime().availableProcessors();
+
+    private static final Charset CHARSET = Charset.forName("UTF-8");
+    private static final int STREAM_BUFFER_SIZE = 1 << 16;
+    private static final long QUEUE_TIMEOUT_MS = 100;
+    private static final String FIELD_NAME = "text";
+    /**
+     * Marks the end of the chunks or documents.
+     */
+    private static final Chunk END_OF_CHUNKS = new Chunk(new byte[0], 0);
+    private static final IndexableDocument END_OF_DOCUMENTS[] = new IndexableDocument[0];
+
+    /**
+     * Creates a reader for the given file using the default number of workers
+     * and the default chunk size. The compression is derived from the file
+     * name.
+     */
+    public static StreamingCorpusReader create(File corpusFile, Format format) throws IOException {
+        return create(corpusFile, format, DEFAULT_NUMBER_OF_WORKERS, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Creates a reader for the given file and starts its threads. The
+     * compression is derived from the file name.
+     * 
+     * @param corpusFile
+     *            the corpus file
+     * @param format
+     *            the format of the corpus file
+     * @param numberOfWorkers
+     *            the number of threads tokenizing the documents
+     * @param chunkSize
+     *            the number of bytes read at once. The chunk grows if a
+     *            single document is larger.
+     */
+    public static StreamingCorpusReader create(File corpusFile, Format format, int numberOfWorkers, int chunkSize)
+            throws IOException {
+        StreamingCorpusReader reader = new StreamingCorpusReader(openChannel(corpusFile,
+                Compression.fromFileName(corpusFile.getName())), format, numberOfWorkers, chunkSize);
+        reader.start();
+        return reader;
+    }
+
+    private static ReadableByteChannel openChannel(File corpusFile, Compression compression) throws IOException {
+        FileInputStream fin = new FileInputStream(corpusFile);
+        try {
+            switch (compression) {
+            case GZIP:
+                return Channels.newChannel(new GZIPInputStream(new BufferedInputStream(fin, STREAM_BUFFER_SIZE),
+                        STREAM_BUFFER_SIZE));
+            case BZIP2:
+                // concatenated streams, e.g., created by pbzip2, should be read completely
+                return Channels.newChannel(new BZip2CompressorInputStream(new BufferedInputStream(fin,
+                        STREAM_BUFFER_SIZE), true));
+            default:
+                return fin.getChannel();
+            }
+        } catch (IOException e) {
+            IOUtils.closeQuietly((InputStream) fin);
+            throw e;
+        }
+    }
+
+    private final ReadableByteChannel channel;
+    private final Format format;
+    private final int chunkSize;
+    private final BlockingQueue<Chunk> chunks;
+    private final BlockingQueue<IndexableDocument[]> documents;
+    private final Thread threads[];
+    private final AtomicInteger runningWorkers;
+    private volatile Throwable error = null;
+    private volatile boolean closed = false;
+
+    private IndexableDocument currentDocuments[] = null;
+    private int posInCurrentDocuments = 0;
+    private boolean endReached = false;
+
+    protected StreamingCorpusReader(ReadableByteChannel channel, Format format, int numberOfWorkers, int chunkSize) {
+        if (numberOfWorkers < 1) {
+            throw new IllegalArgumentException("The number of workers must be at least 1.");
+        }
+        this.channel = channel;
+        this.format = format;
+        this.chunkSize = chunkSize;
+        chunks = new ArrayBlockingQueue<Chunk>(2 * numberOfWorkers);
+        documents = new ArrayBlockingQueue<IndexableDocument[]>(4 * numberOfWorkers);
+        runningWorkers = new AtomicInteger(numberOfWorkers);
+        threads = new Thread[numberOfWorkers + 1];
+        threads[0] = new Thread(new ChunkReader(), "StreamingCorpusReader-reader");
+        for (int i = 1; i < threads.length; ++i) {
+            threads[i] = new Thread(new Tokenizer(), "StreamingCorpusReader-worker-" + i);
+        }
+    }
+
+    protected void start() {
+        for (int i = 0; i < threads.length; ++i) {
+            threads[i].setDaemon(true);
+            threads[i].start();
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (closed) {
+            return false;
+        }
+        while ((!endReached) && ((currentDocuments == null) || (posInCurrentDocuments >= currentDocuments.length))) {
+            currentDocuments = takeDocuments();
+            posInCurrentDocuments = 0;
+            if (currentDocuments == END_OF_DOCUMENTS) {
+                endReached = true;
+            }
+        }
+        checkError();
+        return !endReached;
+    }
+
+    @Override
+    public IndexableDocument next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        IndexableDocument document = currentDocuments[posInCurrentDocuments];
+        // free the document as early as possible
+        currentDocuments[posInCurrentDocuments] = null;
+        ++posInCurrentDocuments;
+        return document;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    private IndexableDocument[] takeDocuments() {
+        IndexableDocument nextDocuments[] = null;
+        try {
+            while (nextDocuments == null) {
+                checkError();
+                if (closed) {
+                    return END_OF_DOCUMENTS;
+                }
+                nextDocuments = documents.poll(QUEUE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for documents.", e);
+        }
+        return nextDocuments;
+    }
+
+    private void checkError() {
+        if (error != null) {
+            throw new IllegalStateException("Exception while reading the corpus.", error);
+        }
+    }
+
+    /**
+     * Stores the given error (if it is the first one) and stops all threads.
+     */
+    private void fail(Throwable e) {
+        if (error == null) {
+            error = e;
+        }
+        stopThreads();
+    }
+
+    private void stopThreads() {
+        for (int i = 0; i < threads.length; ++i) {
+            if (threads[i] != Thread.currentThread()) {
+                threads[i].interrupt();
+            }
+        }
+    }
+
+    /**
+     * Puts the given element into the given queue. Returns false if the reader
+     * has been closed or an error occurred in the meantime.
+     */
+    private <T> boolean put(BlockingQueue<T> queue, T element) throws InterruptedException {
+        while ((!closed) && (error == null)) {
+            if (queue.offer(element, QUEUE_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            stopThreads();
+            channel.close();
+        }
+    }
+
+    /**
+     * Returns the position directly behind the last document boundary inside
+     * the first length bytes of the given chunk or -1 if there is no boundary.
+     */
+    protected static int findLastBoundary(byte chunk[], int length, Format format) {
+        for (int i = length - 1; i >= 0; --i) {
+            if (chunk[i] == '\n') {
+                if (format == Format.ONE_DOCUMENT_PER_LINE) {
+                    return i + 1;
+                }
+                // check whether the line before is empty
+                int j = i - 1;
+                if ((j >= 0) && (chunk[j] == '\r')) {
+                    --j;
+                }
+                if ((j >= 0) && (chunk[j] == '\n')) {
+                    return i + 1;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Splits the given text into the texts of the single documents.
+     */
+    protected static List<String> splitDocuments(String text, Format format) {
+        List<String> texts = new ArrayList<String>();
+        int start = 0, end;
+        StringBuilder builder = null;
+        String line;
+        while (start < text.length()) {
+            end = text.indexOf('\n', start);
+            if (end < 0) {
+                end = text.length();
+            }
+            line = text.substring(start, ((end > start) && (text.charAt(end - 1) == '\r')) ? end - 1 : end);
+            if (format == Format.ONE_DOCUMENT_PER_LINE) {
+                texts.add(line);
+            } else if (line.trim().isEmpty()) {
+                if (builder != null) {
+                    texts.add(builder.toString());
+                    builder = null;
+                }
+            } else {
+                if (builder == null) {
+                    builder = new StringBuilder();
+                } else {
+                    builder.append('\n');
+                }
+                builder.append(line);
+            }
+            start = end + 1;
+        }
+        if (builder != null) {
+            texts.add(builder.toString());
+        }
+        return texts;
+    }
+
+    /**
+     * A chunk of bytes containing complete documents.
+     */
+    private static class Chunk {
+        public final byte data[];
+        public final int length;
+
+        public Chunk(byte[] data, int length) {
+            this.data = data;
+            this.length = length;
+        }
+    }
+
+    /**
+     * Reads the corpus file chunk by chunk.
+     */
+    private class ChunkReader implements Runnable {
+
+        @Override
+        public void run() {
+            long startTime = System.currentTimeMillis();
+            long bytesRead = 0;
+            try {
+                byte chunk[] = new byte[chunkSize];
+                int length = 0, read = 0, boundary;
+                ByteBuffer buffer;
+                while (read >= 0) {
+                    buffer = ByteBuffer.wrap(chunk, length, chunk.length - length);
+                    while (buffer.hasRemaining() && ((read = channel.read(buffer)) >= 0)) {
+                        // read until the chunk is full or the end of the file has been reached
+                    }
+                    bytesRead += buffer.position() - length;
+                    length = buffer.position();
+                    if (read < 0) {
+                        // the remaining bytes contain the last document
+                        if ((length > 0) && (!put(chunks, new Chunk(chunk, length)))) {
+                            return;
+                        }
+                    } else {
+                        boundary = findLastBoundary(chunk, length, format);
+                        if (boundary < 0) {
+                            // the chunk does not contain a complete document
+                            chunk = Arrays.copyOf(chunk, 2 * chunk.length);
+                        } else {
+                            byte nextChunk[] = new byte[Math.max(chunkSize, 2 * (length - boundary))];
+                            System.arraycopy(chunk, boundary, nextChunk, 0, length - boundary);
+                            if (!put(chunks, new Chunk(chunk, boundary))) {
+                                return;
+                            }
+                            chunk = nextChunk;
+                            length -= boundary;
+                        }
+                    }
+                }
+                for (int i = 1; i < threads.length; ++i) {
+                    if (!put(chunks, END_OF_CHUNKS)) {
+                        return;
+                    }
+                }
+                double seconds = Math.max(1, System.currentTimeMillis() - startTime) / 1000.0;
+                LOGGER.info("Read {} MB in {} s ({} MB/s).", new Object[] { bytesRead >> 20, seconds,
+                        String.format("%.1f", (bytesRead / 1048576.0) / seconds) });
+            } catch (InterruptedException e) {
+                // the reader has been closed
+            } catch (Throwable e) {
+                if (!closed) {
+                    fail(e);
+                }
+            } finally {
+                IOUtils.closeQuietly(channel);
+            }
+        }
+    }
+
+    /**
+     * Splits chunks into documents and tokenizes them.
+     */
+    private class Tokenizer implements Runnable {
+
+        private final Analyzer analyzer = new SimpleAnalyzer(true, false);
+        private final List<String> tokens = new ArrayList<String>();
+
+        @Override
+        public void run() {
+            try {
+                Chunk chunk = chunks.take();
+                List<IndexableDocument> chunkDocuments = new ArrayList<IndexableDocument>();
+                String tokenArray[];
+                while (chunk != END_OF_CHUNKS) {
+                    for (String text : splitDocuments(new String(chunk.data, 0, chunk.length, CHARSET), format)) {
+                        tokenArray = tokenize(text);
+                        if (tokenArray.length > 0) {
+                            chunkDocuments.add(new IndexableDocument(text, tokenArray));
+                        }
+                    }
+                    if ((chunkDocuments.size() > 0)
+                            && (!put(documents,
+                                    chunkDocuments.toArray(new IndexableDocument[chunkDocuments.size()])))) {
+                        return;
+                    }
+                    chunkDocuments.clear();
+                    chunk = chunks.take();
+                }
+                if (runningWorkers.decrementAndGet() == 0) {
+                    put(documents, END_OF_DOCUMENTS);
+                }
+            } catch (InterruptedException e) {
+                // the reader has been closed
+            } catch (Throwable e) {
+                if (!closed) {
+                    fail(e);
+                }
+            } finally {
+                analyzer.close();
+            }
+        }
+
+        private String[] tokenize(String text) throws IOException {
+            TokenStream stream = analyzer.tokenStream(FIELD_NAME, new StringReader(text));
+            try {
+                CharTermAttribute termAttribute = stream.addAttribute(CharTermAttribute.class);
+                stream.reset();
+                while (stream.incrementToken()) {
+                    tokens.add(termAttribute.toString());
+                }
+                stream.end();
+            } finally {
+                stream.close();
+            }
+            String tokenArray[] = tokens.toArray(new String[tokens.size()]);
+            tokens.clear();
+            return tokenArray;
+        }
+    }
+}
@@ -16,6 +16,7 @@
  */
 package org.aksw.palmetto.prob;
 
+import org.aksw.palmetto.corpus.CorpusVocabulary;
 import org.aksw.palmetto.data.CountedSubsets;
 import org.aksw.palmetto.data.SegmentationDefinition;
 import org.aksw.palmetto.data.SubsetProbabilities;
@@ -43,6 +44,17 @@ public abstract class AbstractProbabilitySupplier implements
         return probabilities;
     }
 
+    public SubsetProbabilities[] getProbabilities(int wordsets[][],
+            CorpusVocabulary vocabulary, SegmentationDefinition definitions[]) {
+        CountedSubsets subsets[] = freqDeterminer.determineCounts(wordsets,
+                vocabulary, definitions);
+        SubsetProbabilities probabilities[] = new SubsetProbabilities[subsets.length];
+        for (int i = 0; i < subsets.length; i++) {
+            probabilities[i] = getProbabilities(subsets[i]);
+        }
+        return probabilities;
+    }
+
     protected abstract SubsetProbabilities getProbabilities(
             CountedSubsets countedSubsets);
 
@@ -16,6 +16,7 @@
  */
 package org.aksw.palmetto.prob;
 
+import org.aksw.palmetto.corpus.CorpusVocabulary;
 import org.aksw.palmetto.data.CountedSubsets;
 import org.aksw.palmetto.data.SegmentationDefinition;
 
@@ -36,4 +37,37 @@ public interface FrequencyDeterminer {
      */
     public CountedSubsets[] determineCounts(String wordsets[][],
             SegmentationDefinition definitions[]);
+
+    /**
+     * Returns the frequencies of words and word sub sets of the given word sets.
+     * The word sets consist of ids of the given {@link CorpusVocabulary}. The
+     * ids have to belong to the current version of the corpus, i.e., ids that
+     * have been created before the corpus adapter has been reopened might
+     * name other words. Thus, determiners reject a vocabulary that is not
+     * current (see
+     * {@link CorpusVocabulary#isCurrent(org.aksw.palmetto.corpus.CorpusAdapter)}).
+     * 
+     * @param wordsets
+     * @param vocabulary
+     *            the vocabulary the word ids have been taken from
+     * @param definitions
+     * @return
+     * @throws IllegalArgumentException
+     *             if the vocabulary is not the current vocabulary of the
+     *             corpus
+     */
+    public CountedSubsets[] determineCounts(int wordsets[][], CorpusVocabulary vocabulary,
+            SegmentationDefinition definitions[]);
+
+    /**
+     * Checks whether the ids of the given vocabulary can be handed to this
+     * determiner, i.e., whether the vocabulary belongs to the current version
+     * of the corpus.
+     * 
+     * @param vocabulary
+     * @throws IllegalArgumentException
+     *             if the vocabulary is not the current vocabulary of the
+     *             corpus
+     */
+    public void checkVocabulary(CorpusVocabulary vocabulary);
 }
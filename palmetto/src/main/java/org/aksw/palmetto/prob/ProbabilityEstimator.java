@@ -16,6 +16,7 @@
  */
 package org.aksw.palmetto.prob;
 
+import org.aksw.palmetto.corpus.CorpusVocabulary;
 import org.aksw.palmetto.data.SegmentationDefinition;
 import org.aksw.palmetto.data.SubsetProbabilities;
 
@@ -40,6 +41,23 @@ public interface ProbabilityEstimator {
      */
     public SubsetProbabilities[] getProbabilities(String wordsets[][], SegmentationDefinition definitions[]);
 
+    /**
+     * Estimates the probabilities for the given word sets and the given
+     * segmentations. The word sets consist of ids of the given
+     * {@link CorpusVocabulary} of the corpus.
+     * 
+     * @param wordsets
+     *            word sets (as word ids) for which the probabilities should be
+     *            estimated
+     * @param vocabulary
+     *            the vocabulary the word ids have been taken from
+     * @param definitions
+     *            definitions how the word sets should be separated
+     * @return the subset probabilities for the single word sets
+     */
+    public SubsetProbabilities[] getProbabilities(int wordsets[][], CorpusVocabulary vocabulary,
+            SegmentationDefinition definitions[]);
+
     /**
      * Returns the frequency determiner used by this estimator.
      * 
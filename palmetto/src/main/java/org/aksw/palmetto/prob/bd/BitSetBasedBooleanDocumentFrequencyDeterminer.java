@@ -17,10 +17,13 @@
 package org.aksw.palmetto.prob.bd;
 
 import org.aksw.palmetto.corpus.BooleanDocumentSupportingAdapter;
+import org.aksw.palmetto.corpus.CorpusVocabulary;
 import org.aksw.palmetto.data.CountedSubsets;
 import org.aksw.palmetto.data.SegmentationDefinition;
+import org.aksw.palmetto.data.SubsetLattice;
 
 import com.carrotsearch.hppc.BitSet;
+import com.carrotsearch.hppc.IntObjectOpenHashMap;
 import com.carrotsearch.hppc.IntOpenHashSet;
 import com.carrotsearch.hppc.ObjectObjectOpenHashMap;
 
@@ -50,22 +53,73 @@ public class BitSetBasedBooleanDocumentFrequencyDeterminer implements BooleanDoc
         corpusAdapter.getDocumentsWithWordsAsSet(wordDocMapping);
 
         CountedSubsets countedSubsets[] = new CountedSubsets[definitions.length];
+        IntOpenHashSet hashSets[];
         for (int i = 0; i < definitions.length; ++i) {
-            countedSubsets[i] = new CountedSubsets(definitions[i].segments,
-                    definitions[i].conditions, createCounts(
-                            createBitSets(wordDocMapping, wordsets[i]),
-                            definitions[i].neededCounts));
+            hashSets = new IntOpenHashSet[wordsets[i].length];
+            for (int j = 0; j < hashSets.length; ++j) {
+                hashSets[j] = wordDocMapping.get(wordsets[i][j]);
+            }
+            if (definitions[i].lattice != null) {
+                countedSubsets[i] = new CountedSubsets(definitions[i], createCounts(createBitSets(hashSets),
+                        definitions[i].lattice));
+            } else {
+                countedSubsets[i] = new CountedSubsets(definitions[i], createCounts(createBitSets(hashSets),
+                        definitions[i].neededCounts));
+            }
         }
         return countedSubsets;
     }
 
-    private BitSet[] createBitSets(
-            ObjectObjectOpenHashMap<String, IntOpenHashSet> wordDocMapping,
-            String[] wordset) {
-        IntOpenHashSet hashSets[] = new IntOpenHashSet[wordset.length];
+    public CountedSubsets[] determineCounts(int[][] wordsets, CorpusVocabulary vocabulary,
+            SegmentationDefinition[] definitions) {
+        checkVocabulary(vocabulary);
+        IntOpenHashSet unknownWordDocs = new IntOpenHashSet();
+        IntObjectOpenHashMap<IntOpenHashSet> wordDocMapping = new IntObjectOpenHashMap<IntOpenHashSet>();
+        ObjectObjectOpenHashMap<String, IntOpenHashSet> requestedWords =
+                new ObjectObjectOpenHashMap<String, IntOpenHashSet>();
+        IntOpenHashSet documents;
+        for (int i = 0; i < wordsets.length; ++i) {
+            for (int j = 0; j < wordsets[i].length; ++j) {
+                if ((wordsets[i][j] != CorpusVocabulary.UNKNOWN_WORD_ID)
+                        && !wordDocMapping.containsKey(wordsets[i][j])) {
+                    documents = new IntOpenHashSet();
+                    requestedWords.put(vocabulary.getKnownWord(wordsets[i][j]), documents);
+                    wordDocMapping.put(wordsets[i][j], documents);
+                }
+            }
+        }
+        // all words are requested at once
+        corpusAdapter.getDocumentsWithWordsAsSet(requestedWords);
+
+        CountedSubsets countedSubsets[] = new CountedSubsets[definitions.length];
+        IntOpenHashSet hashSets[];
+        for (int i = 0; i < definitions.length; ++i) {
+            hashSets = new IntOpenHashSet[wordsets[i].length];
+            for (int j = 0; j < hashSets.length; ++j) {
+                if (wordsets[i][j] == CorpusVocabulary.UNKNOWN_WORD_ID) {
+                    hashSets[j] = unknownWordDocs;
+                } else {
+                    hashSets[j] = wordDocMapping.get(wordsets[i][j]);
+                }
+            }
+            if (definitions[i].lattice != null) {
+                countedSubsets[i] = new CountedSubsets(definitions[i], createCounts(createBitSets(hashSets),
+                        definitions[i].lattice));
+            } else {
+                countedSubsets[i] = new CountedSubsets(definitions[i], createCounts(createBitSets(hashSets),
+                        definitions[i].neededCounts));
+            }
+        }
+        return countedSubsets;
+    }
+
+    public void checkVocabulary(CorpusVocabulary vocabulary) {
+        vocabulary.checkIsCurrent(corpusAdapter);
+    }
+
+    private BitSet[] createBitSets(IntOpenHashSet hashSets[]) {
         IntOpenHashSet mergedHashSet = new IntOpenHashSet();
         for (int i = 0; i < hashSets.length; ++i) {
-            hashSets[i] = wordDocMapping.get(wordset[i]);
             mergedHashSet.addAll(hashSets[i]);
         }
         return createBitSets(hashSets, mergedHashSet);
@@ -93,7 +147,7 @@ public class BitSetBasedBooleanDocumentFrequencyDeterminer implements BooleanDoc
         return bitSets;
     }
 
-    private int[] createCounts(BitSet bitsets[], BitSet neededCounts) {
+    private long[] createCounts(BitSet bitsets[], BitSet neededCounts) {
         // TODO use the neededCounts bit set to avoid the creation of bit sets which are not needed
         // TODO Check the minimum frequency at this stage --> all BitSets with a lower cardinality can be set to null
         // and all following don't have to be created.
@@ -109,10 +163,37 @@ public class BitSetBasedBooleanDocumentFrequencyDeterminer implements BooleanDoc
                 ++pos2;
             }
         }
-        int cardinalities[] = new int[combinations.length];
+        long cardinalities[] = new long[combinations.length];
         for (int i = 1; i < combinations.length; ++i) {
-            cardinalities[i] = (int) combinations[i].cardinality();
+            cardinalities[i] = combinations[i].cardinality();
         }
         return cardinalities;
     }
+
+    /**
+     * Determines the counts of the subsets of the given lattice by
+     * intersecting the bit sets of their words.
+     */
+    private long[] createCounts(BitSet bitsets[], SubsetLattice lattice) {
+        long counts[] = new long[lattice.size()];
+        for (int i = 0; i < bitsets.length; ++i) {
+            counts[lattice.getSingle(i)] = bitsets[i].cardinality();
+        }
+        for (int i = 0; i < bitsets.length; ++i) {
+            for (int j = i + 1; j < bitsets.length; ++j) {
+                counts[lattice.getPair(i, j)] = BitSet.intersectionCount(bitsets[i], bitsets[j]);
+            }
+        }
+        BitSet intersection;
+        int words[];
+        for (int slot = lattice.getFirstLargeSlot(); slot < counts.length; ++slot) {
+            words = lattice.getWords(slot);
+            intersection = (BitSet) bitsets[words[0]].clone();
+            for (int w = 1; w < words.length; ++w) {
+                intersection.intersect(bitsets[words[w]]);
+            }
+            counts[slot] = intersection.cardinality();
+        }
+        return counts;
+    }
 }
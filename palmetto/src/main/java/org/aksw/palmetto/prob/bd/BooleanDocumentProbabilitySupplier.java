@@ -18,9 +18,14 @@ package org.aksw.palmetto.prob.bd;
 
 import org.aksw.palmetto.corpus.BooleanDocumentSupportingAdapter;
 import org.aksw.palmetto.corpus.CorpusAdapter;
+import org.aksw.palmetto.corpus.DocumentCursorSupportingAdapter;
+import org.aksw.palmetto.corpus.ResidentDocumentSets;
 import org.aksw.palmetto.data.CountedSubsets;
 import org.aksw.palmetto.data.SubsetProbabilities;
 import org.aksw.palmetto.prob.AbstractProbabilitySupplier;
+import org.aksw.palmetto.prob.FrequencyDeterminer;
+import org.aksw.palmetto.prob.decorator.FrequencyDeterminerDecorator;
+import org.aksw.palmetto.prob.decorator.PairCountsDeterminerDecorator;
 
 public class BooleanDocumentProbabilitySupplier extends AbstractProbabilitySupplier {
 
@@ -43,12 +48,28 @@ public class BooleanDocumentProbabilitySupplier extends AbstractProbabilitySuppl
         return null;
     }
 
+    /**
+     * Creates a supplier that uses the given resident document sets of the
+     * frequent words and requests the documents of all other words from the
+     * given adapter (see {@link HybridBooleanDocumentFrequencyDeterminer}).
+     */
+    public static BooleanDocumentProbabilitySupplier create(BooleanDocumentSupportingAdapter adapter,
+            String probModelName, ResidentDocumentSets residentSets) {
+        return new BooleanDocumentProbabilitySupplier(new HybridBooleanDocumentFrequencyDeterminer(adapter,
+                residentSets), probModelName);
+    }
+
     protected static BooleanDocumentFrequencyDeterminer createFrequencyDeterminer(CorpusAdapter adapter,
             boolean corpusIsLarge) {
+        if (corpusIsLarge && (adapter instanceof DocumentCursorSupportingAdapter)) {
+            // the adapter can skip documents, i.e., the intersections can be driven by the rare words
+            return new LeapfrogBooleanDocumentFrequencyDeterminer((DocumentCursorSupportingAdapter) adapter);
+        }
         if (adapter instanceof BooleanDocumentSupportingAdapter) {
             return (corpusIsLarge ? new ListBasedBooleanDocumentFrequencyDeterminer(
-                    (BooleanDocumentSupportingAdapter) adapter) : new BitSetBasedBooleanDocumentFrequencyDeterminer(
-                    (BooleanDocumentSupportingAdapter) adapter));
+                    (BooleanDocumentSupportingAdapter) adapter)
+                    : new PackedBitSetBasedBooleanDocumentFrequencyDeterminer(
+                            (BooleanDocumentSupportingAdapter) adapter));
         }
         return null;
     }
@@ -65,12 +86,43 @@ public class BooleanDocumentProbabilitySupplier extends AbstractProbabilitySuppl
          * know the number of documents at this point.
          */
         numberOfDocuments = freqDeterminer.getNumberOfDocuments();
+        setMinFrequency(minFrequency);
+    }
+
+    /**
+     * Sets the minimum frequency. If the frequency determiner can skip counts
+     * below the minimum frequency, it gets the same minimum frequency. The
+     * determiner is searched behind the decorators of the chain. A
+     * {@link PairCountsDeterminerDecorator} of the chain gets the minimum
+     * frequency, too.
+     */
+    @Override
+    public void setMinFrequency(int minFrequency) {
+        super.setMinFrequency(minFrequency);
+        FrequencyDeterminer determiner = freqDeterminer;
+        while (determiner instanceof FrequencyDeterminerDecorator) {
+            if (determiner instanceof PairCountsDeterminerDecorator) {
+                ((PairCountsDeterminerDecorator) determiner).setMinFrequency(minFrequency);
+            }
+            determiner = ((FrequencyDeterminerDecorator) determiner).getDeterminer();
+        }
+        if (determiner instanceof PackedBitSetBasedBooleanDocumentFrequencyDeterminer) {
+            ((PackedBitSetBasedBooleanDocumentFrequencyDeterminer) determiner).setMinFrequency(minFrequency);
+        } else if (determiner instanceof HybridBooleanDocumentFrequencyDeterminer) {
+            ((HybridBooleanDocumentFrequencyDeterminer) determiner).setMinFrequency(minFrequency);
+        }
+    }
+
+    @Override
+    public void setFrequencyDeterminer(FrequencyDeterminer freqDeterminer) {
+        super.setFrequencyDeterminer(freqDeterminer);
+        setMinFrequency(minFrequency);
     }
 
     @Override
     protected SubsetProbabilities getProbabilities(CountedSubsets countedSubsets) {
         double probabilities[] = new double[countedSubsets.counts.length];
-        double numberOfDocuments = this.numberOfDocuments;
+        double numberOfDocuments = getNumberOfDocuments();
         for (int i = 0; i < probabilities.length; ++i) {
             if (countedSubsets.counts[i] >= minFrequency) {
                 probabilities[i] = countedSubsets.counts[i] / numberOfDocuments;
@@ -78,7 +130,29 @@ public class BooleanDocumentProbabilitySupplier extends AbstractProbabilitySuppl
                 probabilities[i] = 0;
             }
         }
-        return new SubsetProbabilities(countedSubsets.segments, countedSubsets.conditions, probabilities);
+        return new SubsetProbabilities(countedSubsets.segments, countedSubsets.conditions, probabilities,
+                countedSubsets.lattice);
+    }
+
+    /**
+     * Returns the number of documents of the corpus. It is requested from the
+     * determiner every time since it changes if the corpus of the determiner
+     * changes, e.g., because the corpus adapter has been reopened. Decorators
+     * of the determiner are skipped. If the determiner has been replaced by a
+     * determiner that does not offer the number of documents, the number of
+     * the initial determiner is used.
+     */
+    protected int getNumberOfDocuments() {
+        FrequencyDeterminer determiner = freqDeterminer;
+        while (!(determiner instanceof BooleanDocumentFrequencyDeterminer)
+                && (determiner instanceof FrequencyDeterminerDecorator)) {
+            determiner = ((FrequencyDeterminerDecorator) determiner).getDeterminer();
+        }
+        if (determiner instanceof BooleanDocumentFrequencyDeterminer) {
+            return ((BooleanDocumentFrequencyDeterminer) determiner).getNumberOfDocuments();
+        } else {
+            return numberOfDocuments;
+        }
     }
 
     @Override
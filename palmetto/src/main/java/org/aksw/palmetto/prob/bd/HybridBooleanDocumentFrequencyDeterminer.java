@@ -0,0 +1,621 @@
+/**
+ * This file is part of Palmetto.
+ *
+ * Palmetto is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Palmetto is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Palmetto.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.aksw.palmetto.prob.bd;
+
+import java.util.Arrays;
+
+import org.aksw.palmetto.corpus.BooleanDocumentSupportingAdapter;
+import org.aksw.palmetto.corpus.CorpusVocabulary;
+import org.aksw.palmetto.corpus.ResidentDocumentSets;
+import org.aksw.palmetto.data.CountedSubsets;
+import org.aksw.palmetto.data.SegmentationDefinition;
+import org.aksw.palmetto.data.SubsetLattice;
+
+import com.carrotsearch.hppc.BitSet;
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.ObjectObjectOpenHashMap;
+
+/**
+ * A {@link BooleanDocumentFrequencyDeterminer} that uses the
+ * {@link ResidentDocumentSets} of the frequent words and requests only the
+ * documents of the other words from the corpus adapter. A document set is
+ * either a dense bit set over the global document id space or a sorted array
+ * of document ids. Two sets are intersected with a kernel that depends on
+ * their representations:
+ * <ul>
+ * <li>dense &times; dense: the blocks of the bit sets are combined with AND
+ * and the set bits are counted in the same pass,</li>
+ * <li>dense &times; sparse: the bits of the documents of the array are
+ * probed,</li>
+ * <li>sparse &times; sparse: the arrays are merged or, if their sizes differ
+ * strongly, the smaller array is searched inside the larger one using
+ * galloping.</li>
+ * </ul>
+ * 
+ * <p>
+ * Like the {@link PackedBitSetBasedBooleanDocumentFrequencyDeterminer}, only
+ * the counts needed by the {@link SegmentationDefinition} (together with the
+ * counts of all single words and pairs of words) are determined and the
+ * supersets of combinations with a count lower than the minimum frequency
+ * get a count of 0.
+ * </p>
+ * 
+ * @author Michael R&ouml;der (roeder@informatik.uni-leipzig.de)
+ *
+ */
+public class HybridBooleanDocumentFrequencyDeterminer implements BooleanDocumentFrequencyDeterminer {
+
+    /**
+     * The default minimum frequency. With a minimum frequency of 1, only the
+     * supersets of empty combinations are skipped, i.e., all counts are exact.
+     */
+    public static final int DEFAULT_MIN_FREQUENCY = 1;
+
+    /**
+     * If the larger of two sorted arrays is more than this factor larger than
+     * the smaller one, the intersection uses galloping instead of a linear
+     * merge.
+     */
+    private static final int GALLOPING_RATIO = 32;
+
+    private static final int EMPTY_SET[] = new int[0];
+    private static final long EMPTY_BIT_SET[] = new long[0];
+
+    private BooleanDocumentSupportingAdapter corpusAdapter;
+    private volatile ResidentDocumentSets residentSets;
+    private int minFrequency = DEFAULT_MIN_FREQUENCY;
+
+    public HybridBooleanDocumentFrequencyDeterminer(BooleanDocumentSupportingAdapter corpusAdapter,
+            ResidentDocumentSets residentSets) {
+        this.corpusAdapter = corpusAdapter;
+        this.residentSets = residentSets;
+    }
+
+    public int getNumberOfDocuments() {
+        return corpusAdapter.getNumberOfDocuments();
+    }
+
+    public CountedSubsets[] determineCounts(String[][] wordsets, SegmentationDefinition[] definitions) {
+        // all sets of a request are taken from the same resident sets even if they are replaced meanwhile
+        ResidentDocumentSets residentSets = this.residentSets;
+        ObjectObjectOpenHashMap<String, DocumentSet> wordSetMapping = new ObjectObjectOpenHashMap<String, DocumentSet>();
+        ObjectObjectOpenHashMap<String, IntArrayList> wordDocMapping = new ObjectObjectOpenHashMap<String, IntArrayList>();
+        int wordId;
+        for (int i = 0; i < wordsets.length; ++i) {
+            for (int j = 0; j < wordsets[i].length; ++j) {
+                if ((wordsets[i][j] != null) && !wordSetMapping.containsKey(wordsets[i][j])
+                        && !wordDocMapping.containsKey(wordsets[i][j])) {
+                    wordId = residentSets.getId(wordsets[i][j]);
+                    if (wordId != ResidentDocumentSets.NOT_RESIDENT) {
+                        wordSetMapping.put(wordsets[i][j], createResidentSet(residentSets, wordId));
+                    } else {
+                        wordDocMapping.put(wordsets[i][j], new IntArrayList());
+                    }
+                }
+            }
+        }
+        // request the documents of all words that are not resident at once
+        if (wordDocMapping.size() > 0) {
+            corpusAdapter.getDocumentsWithWords(wordDocMapping);
+            Object keys[] = (Object[]) wordDocMapping.keys;
+            Object values[] = (Object[]) wordDocMapping.values;
+            for (int i = 0; i < wordDocMapping.allocated.length; ++i) {
+                if (wordDocMapping.allocated[i]) {
+                    wordSetMapping.put((String) keys[i], createSparseSet((IntArrayList) values[i]));
+                }
+            }
+        }
+
+        DocumentSet emptySet = new DocumentSet(EMPTY_SET, 0);
+        CountedSubsets countedSubsets[] = new CountedSubsets[definitions.length];
+        DocumentSet wordDocuments[];
+        ScratchBuffers buffers = new ScratchBuffers();
+        for (int i = 0; i < definitions.length; ++i) {
+            wordDocuments = new DocumentSet[wordsets[i].length];
+            for (int j = 0; j < wordDocuments.length; ++j) {
+                wordDocuments[j] = (wordsets[i][j] != null) ? wordSetMapping.get(wordsets[i][j]) : emptySet;
+            }
+            if (definitions[i].lattice != null) {
+                countedSubsets[i] = new CountedSubsets(definitions[i], createCounts(wordDocuments,
+                        definitions[i].lattice, buffers));
+            } else {
+                countedSubsets[i] = new CountedSubsets(definitions[i], createCounts(wordDocuments,
+                        PackedBitSetBasedBooleanDocumentFrequencyDeterminer.getNeededCounts(definitions[i],
+                                wordDocuments.length), buffers));
+            }
+        }
+        return countedSubsets;
+    }
+
+    /**
+     * Determines the counts of the given word sets by transforming the ids
+     * into words. Unknown words are handled as words without documents.
+     */
+    public CountedSubsets[] determineCounts(int[][] wordsets, CorpusVocabulary vocabulary,
+            SegmentationDefinition[] definitions) {
+        checkVocabulary(vocabulary);
+        return determineCounts(vocabulary.getKnownWords(wordsets), definitions);
+    }
+
+    public void checkVocabulary(CorpusVocabulary vocabulary) {
+        vocabulary.checkIsCurrent(corpusAdapter);
+    }
+
+    private static DocumentSet createResidentSet(ResidentDocumentSets residentSets, int wordId) {
+        if (residentSets.isDense(wordId)) {
+            return new DocumentSet(residentSets.getDenseSet(wordId), residentSets.getFirstBlock(wordId),
+                    residentSets.getLastBlock(wordId), residentSets.getDocumentFrequency(wordId));
+        } else {
+            int documents[] = residentSets.getSparseSet(wordId);
+            return new DocumentSet(documents, documents.length);
+        }
+    }
+
+    /**
+     * Sorts the given documents and removes duplicates.
+     */
+    private static DocumentSet createSparseSet(IntArrayList documents) {
+        int buffer[] = documents.buffer;
+        Arrays.sort(buffer, 0, documents.elementsCount);
+        int size = 0;
+        for (int i = 0; i < documents.elementsCount; ++i) {
+            if ((size == 0) || (buffer[size - 1] != buffer[i])) {
+                buffer[size] = buffer[i];
+                ++size;
+            }
+        }
+        return new DocumentSet(buffer, size);
+    }
+
+    /**
+     * Determines the counts of the word sets marked in the given bit set (or
+     * of all word sets if it is null).
+     */
+    protected long[] createCounts(DocumentSet wordDocuments[], BitSet neededCounts, ScratchBuffers buffers) {
+        int numberOfWords = wordDocuments.length;
+        long counts[] = new long[1 << numberOfWords];
+        for (int i = 0; i < numberOfWords; ++i) {
+            counts[1 << i] = wordDocuments[i].count;
+        }
+        if (numberOfWords < 2) {
+            return counts;
+        }
+        boolean visit[] = PackedBitSetBasedBooleanDocumentFrequencyDeterminer.markCombinationsToVisit(
+                neededCounts, counts.length);
+        for (int i = 0; i < numberOfWords - 1; ++i) {
+            if (counts[1 << i] >= Math.max(1, minFrequency)) {
+                countSupersets(1 << i, i, wordDocuments[i], 0, wordDocuments, counts, visit, buffers);
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Determines the counts of the subsets of the given lattice. The pairs of
+     * words are counted by intersecting the sets of both words without
+     * storing the intersection. The sets of the words of a larger subset are
+     * intersected one after the other, starting with the smallest set.
+     * Subsets that contain a word with a count lower than the minimum
+     * frequency get a count of 0.
+     */
+    protected long[] createCounts(DocumentSet wordDocuments[], SubsetLattice lattice, ScratchBuffers buffers) {
+        int numberOfWords = wordDocuments.length;
+        long counts[] = new long[lattice.size()];
+        int minCount = Math.max(1, minFrequency);
+        for (int i = 0; i < numberOfWords; ++i) {
+            counts[lattice.getSingle(i)] = wordDocuments[i].count;
+        }
+        for (int i = 0; i < numberOfWords; ++i) {
+            if (wordDocuments[i].count < minCount) {
+                continue;
+            }
+            for (int j = i + 1; j < numberOfWords; ++j) {
+                if (wordDocuments[j].count >= minCount) {
+                    counts[lattice.getPair(i, j)] = intersect(wordDocuments[i], wordDocuments[j], null);
+                }
+            }
+        }
+        int words[];
+        for (int slot = lattice.getFirstLargeSlot(); slot < counts.length; ++slot) {
+            words = lattice.getWords(slot);
+            counts[slot] = countIntersection(words, wordDocuments, buffers, minCount);
+        }
+        return counts;
+    }
+
+    /**
+     * Intersects the sets of the given words and returns the number of
+     * documents containing all words. The intersections are written
+     * alternately to the first two scratch sets. If an intersection contains
+     * less documents than the given minimum count, 0 is returned.
+     */
+    private static int countIntersection(int words[], DocumentSet wordDocuments[], ScratchBuffers buffers,
+            int minCount) {
+        // start with the smallest set
+        int smallest = 0;
+        for (int w = 0; w < words.length; ++w) {
+            if (wordDocuments[words[w]].count < minCount) {
+                return 0;
+            }
+            if (wordDocuments[words[w]].count < wordDocuments[words[smallest]].count) {
+                smallest = w;
+            }
+        }
+        DocumentSet documents = wordDocuments[words[smallest]];
+        DocumentSet intersection;
+        int count = documents.count;
+        int depth = 0;
+        for (int w = 0; w < words.length; ++w) {
+            if (w != smallest) {
+                intersection = buffers.getIntersection(depth);
+                count = intersect(documents, wordDocuments[words[w]], intersection);
+                if (count < minCount) {
+                    return 0;
+                }
+                documents = intersection;
+                depth = 1 - depth;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Determines the counts of all visited supersets of the given combination
+     * that are created by adding words with a higher id than the given last
+     * word.
+     * 
+     * @param combination
+     *            the current combination of words
+     * @param lastWord
+     *            the highest word of the combination
+     * @param documents
+     *            the documents of the combination
+     * @param depth
+     *            the depth of the combination, i.e., the id of the scratch
+     *            buffer that can be used to store the supersets
+     */
+    private void countSupersets(int combination, int lastWord, DocumentSet documents, int depth,
+            DocumentSet wordDocuments[], long counts[], boolean visit[], ScratchBuffers buffers) {
+        int numberOfWords = wordDocuments.length;
+        int superset, count;
+        DocumentSet intersection;
+        boolean hasVisitedSupersets;
+        for (int word = lastWord + 1; word < numberOfWords; ++word) {
+            superset = combination | (1 << word);
+            if ((!visit[superset]) || (counts[1 << word] < Math.max(1, minFrequency))) {
+                continue;
+            }
+            hasVisitedSupersets = PackedBitSetBasedBooleanDocumentFrequencyDeterminer.hasVisitedSupersets(superset,
+                    word, numberOfWords, visit);
+            // the intersection is only stored if it is needed afterwards
+            intersection = hasVisitedSupersets ? buffers.getIntersection(depth) : null;
+            count = intersect(documents, wordDocuments[word], intersection);
+            counts[superset] = count;
+            if (hasVisitedSupersets && (count > 0) && (count >= minFrequency)) {
+                countSupersets(superset, word, intersection, depth + 1, wordDocuments, counts, visit, buffers);
+            }
+        }
+    }
+
+    /**
+     * Intersects the two given sets using the kernel for their
+     * representations.
+     * 
+     * @param result
+     *            the set the intersection is written to or null if only its
+     *            size is needed
+     * @return the size of the intersection
+     */
+    protected static int intersect(DocumentSet set1, DocumentSet set2, DocumentSet result) {
+        if (set1.bits != null) {
+            if (set2.bits != null) {
+                return intersectDense(set1, set2, result);
+            } else {
+                return intersectDenseSparse(set1, set2, result);
+            }
+        } else {
+            if (set2.bits != null) {
+                return intersectDenseSparse(set2, set1, result);
+            } else {
+                return intersectSparse(set1, set2, result);
+            }
+        }
+    }
+
+    /**
+     * Combines the blocks of two dense sets with AND and counts the set bits in
+     * the same pass.
+     */
+    protected static int intersectDense(DocumentSet dense1, DocumentSet dense2, DocumentSet result) {
+        int from = Math.max(dense1.firstBlock, dense2.firstBlock);
+        int to = Math.min(dense1.lastBlock, dense2.lastBlock);
+        long bits1[] = dense1.bits;
+        long bits2[] = dense2.bits;
+        int count = 0;
+        if (result != null) {
+            long resultBits[] = result.getDenseBuffer(bits1.length);
+            long block;
+            for (int b = from; b <= to; ++b) {
+                block = bits1[b] & bits2[b];
+                resultBits[b] = block;
+                count += Long.bitCount(block);
+            }
+            result.setDense(from, to, count);
+        } else {
+            for (int b = from; b <= to; ++b) {
+                count += Long.bitCount(bits1[b] & bits2[b]);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Probes the bits of the documents of the sparse set inside the dense set.
+     */
+    protected static int intersectDenseSparse(DocumentSet dense, DocumentSet sparse, DocumentSet result) {
+        if ((dense.count == 0) || (sparse.count == 0)) {
+            if (result != null) {
+                result.setSparse(0);
+            }
+            return 0;
+        }
+        long bits[] = dense.bits;
+        int documents[] = sparse.documents;
+        int size = sparse.count;
+        // documents outside of the non-zero blocks of the dense set can be skipped
+        int minDoc = dense.firstBlock << 6;
+        int maxDoc = (dense.lastBlock << 6) + 63;
+        int pos = 0;
+        if (documents[0] < minDoc) {
+            pos = gallop(documents, 0, size, minDoc);
+        }
+        int count = 0, docId;
+        if (result != null) {
+            int resultDocuments[] = result.getSparseBuffer(Math.min(size - pos, dense.count));
+            for (; (pos < size) && ((docId = documents[pos]) <= maxDoc); ++pos) {
+                if ((bits[docId >>> 6] & (1L << docId)) != 0) {
+                    resultDocuments[count] = docId;
+                    ++count;
+                }
+            }
+            result.setSparse(count);
+        } else {
+            for (; (pos < size) && ((docId = documents[pos]) <= maxDoc); ++pos) {
+                if ((bits[docId >>> 6] & (1L << docId)) != 0) {
+                    ++count;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Intersects two sorted arrays. If one array is much larger than the
+     * other, the documents of the smaller array are searched inside the
+     * larger one using galloping. Otherwise, the arrays are merged.
+     */
+    protected static int intersectSparse(DocumentSet sparse1, DocumentSet sparse2, DocumentSet result) {
+        DocumentSet smaller = sparse1, larger = sparse2;
+        if (smaller.count > larger.count) {
+            smaller = sparse2;
+            larger = sparse1;
+        }
+        int small[] = smaller.documents, large[] = larger.documents;
+        int smallSize = smaller.count, largeSize = larger.count;
+        int resultDocuments[] = (result != null) ? result.getSparseBuffer(smallSize) : null;
+        int count = 0, i = 0, j = 0, docId;
+        if ((smallSize * (long) GALLOPING_RATIO) < largeSize) {
+            for (; (i < smallSize) && (j < largeSize); ++i) {
+                docId = small[i];
+                if (large[j] < docId) {
+                    j = gallop(large, j, largeSize, docId);
+                }
+                if ((j < largeSize) && (large[j] == docId)) {
+                    if (resultDocuments != null) {
+                        resultDocuments[count] = docId;
+                    }
+                    ++count;
+                    ++j;
+                }
+            }
+        } else {
+            while ((i < smallSize) && (j < largeSize)) {
+                if (small[i] < large[j]) {
+                    ++i;
+                } else if (small[i] > large[j]) {
+                    ++j;
+                } else {
+                    if (resultDocuments != null) {
+                        resultDocuments[count] = small[i];
+                    }
+                    ++count;
+                    ++i;
+                    ++j;
+                }
+            }
+        }
+        if (result != null) {
+            result.setSparse(count);
+        }
+        return count;
+    }
+
+    /**
+     * Returns the position of the first element of the given sorted array in
+     * <code>[from, to)</code> that is not smaller than the given target or
+     * <code>to</code> if there is no such element. The position is found by
+     * doubling the step size followed by a binary search.
+     */
+    protected static int gallop(int array[], int from, int to, int target) {
+        int step = 1;
+        int low = from, high = from;
+        while ((high < to) && (array[high] < target)) {
+            low = high + 1;
+            high = from + step;
+            step <<= 1;
+        }
+        if (high > to) {
+            high = to;
+        }
+        // binary search in [low, high)
+        int middle;
+        while (low < high) {
+            middle = (low + high) >>> 1;
+            if (array[middle] < target) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    public ResidentDocumentSets getResidentSets() {
+        return residentSets;
+    }
+
+    /**
+     * Replaces the resident document sets, e.g., after the corpus adapter has
+     * been reopened since the sets contain the document ids of the former
+     * version of the index. Requests that are already running keep using the
+     * former sets.
+     */
+    public void setResidentSets(ResidentDocumentSets residentSets) {
+        this.residentSets = residentSets;
+    }
+
+    public int getMinFrequency() {
+        return minFrequency;
+    }
+
+    /**
+     * Sets the minimum frequency. The supersets of combinations with a lower
+     * count get a count of 0. Should be the minimum frequency of the
+     * probability supplier.
+     */
+    public void setMinFrequency(int minFrequency) {
+        this.minFrequency = minFrequency;
+    }
+
+    /**
+     * A set of documents that is either a dense bit set over the global
+     * document id space or a sorted array of document ids. Intersections are
+     * written to instances that own buffers for both representations.
+     * 
+     * @author Michael R&ouml;der (roeder@informatik.uni-leipzig.de)
+     *
+     */
+    protected static class DocumentSet {
+
+        /**
+         * The bit set or null if the set is stored as array.
+         */
+        protected long bits[];
+        protected int firstBlock;
+        protected int lastBlock;
+        /**
+         * The sorted document ids or null if the set is stored as bit set.
+         */
+        protected int documents[];
+        /**
+         * The number of documents of the set.
+         */
+        protected int count;
+        protected long denseBuffer[] = EMPTY_BIT_SET;
+        protected int sparseBuffer[] = EMPTY_SET;
+
+        public DocumentSet(long bits[], int firstBlock, int lastBlock, int count) {
+            this.bits = bits;
+            this.firstBlock = firstBlock;
+            this.lastBlock = lastBlock;
+            this.count = count;
+        }
+
+        public DocumentSet(int documents[], int count) {
+            this.documents = documents;
+            this.count = count;
+        }
+
+        /**
+         * Creates an empty set that can be used to store intersections.
+         */
+        public DocumentSet() {
+        }
+
+        /**
+         * Returns the dense buffer with at least the given number of blocks.
+         */
+        public long[] getDenseBuffer(int numberOfBlocks) {
+            if (denseBuffer.length < numberOfBlocks) {
+                denseBuffer = new long[numberOfBlocks];
+            }
+            return denseBuffer;
+        }
+
+        /**
+         * Marks the dense buffer as content of this set.
+         */
+        public void setDense(int firstBlock, int lastBlock, int count) {
+            bits = denseBuffer;
+            documents = null;
+            this.firstBlock = firstBlock;
+            this.lastBlock = lastBlock;
+            this.count = count;
+        }
+
+        /**
+         * Returns the sparse buffer with at least the given capacity.
+         */
+        public int[] getSparseBuffer(int capacity) {
+            if (sparseBuffer.length < capacity) {
+                sparseBuffer = new int[Math.max(capacity, 2 * sparseBuffer.length)];
+            }
+            return sparseBuffer;
+        }
+
+        /**
+         * Marks the sparse buffer as content of this set.
+         */
+        public void setSparse(int count) {
+            bits = null;
+            documents = sparseBuffer;
+            this.count = count;
+        }
+    }
+
+    /**
+     * The sets the intersections are written to. There is one set per depth
+     * and the sets are reused for all word sets of a single request.
+     * 
+     * @author Michael R&ouml;der (roeder@informatik.uni-leipzig.de)
+     *
+     */
+    protected static class ScratchBuffers {
+
+        protected DocumentSet intersections[] = new DocumentSet[0];
+
+        public DocumentSet getIntersection(int depth) {
+            if (intersections.length <= depth) {
+                intersections = Arrays.copyOf(intersections, depth + 1);
+            }
+            if (intersections[depth] == null) {
+                intersections[depth] = new DocumentSet();
+            }
+            return intersections[depth];
+        }
+    }
+}
@@ -0,0 +1,526 @@
+/**
+ * This file is part of Palmetto.
+ *
+ * Palmetto is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Palmetto is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Palmetto.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.aksw.palmetto.prob.bd;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.aksw.palmetto.corpus.ArrayDocumentCursor;
+import org.aksw.palmetto.corpus.BooleanDocumentSupportingAdapter;
+import org.aksw.palmetto.corpus.CorpusVocabulary;
+import org.aksw.palmetto.corpus.DocumentCursor;
+import org.aksw.palmetto.corpus.DocumentCursorSupportingAdapter;
+import org.aksw.palmetto.data.CountedSubsets;
+import org.aksw.palmetto.data.SegmentationDefinition;
+import org.aksw.palmetto.data.SubsetLattice;
+
+import com.carrotsearch.hppc.BitSet;
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.ObjectObjectOpenHashMap;
+
+/**
+ * A {@link BooleanDocumentFrequencyDeterminer} that counts the documents of
+ * a word set by intersecting {@link DocumentCursor}s. An intersection is driven
+ * by the word with the least documents and the other cursors skip to its
+ * documents using {@link DocumentCursor#advance(int)} (leapfrog intersection),
+ * i.e., the documents of frequent words are not read completely. The counts of
+ * single words are taken from their document frequencies and only the counts
+ * marked in {@link SegmentationDefinition#neededCounts} or used by its segments
+ * and conditions are determined.
+ * 
+ * <p>
+ * If a large number of word sets is needed and none of their words is rare
+ * (e.g., all word sets of the {@link org.aksw.palmetto.subsets.AnyAny}
+ * segmentation), the single intersections would read the same documents
+ * several times. In this case, the cursors are merged once and all counts are
+ * determined like in the {@link ListBasedBooleanDocumentFrequencyDeterminer}.
+ * </p>
+ * 
+ * <p>
+ * If the corpus adapter is not a {@link DocumentCursorSupportingAdapter}, the
+ * document lists of the words are requested and sorted before they are
+ * intersected.
+ * </p>
+ * 
+ * @author Michael R&ouml;der (roeder@informatik.uni-leipzig.de)
+ * 
+ */
+public class LeapfrogBooleanDocumentFrequencyDeterminer implements BooleanDocumentFrequencyDeterminer {
+
+    /**
+     * The factor with which the estimated costs of the leapfrog intersections
+     * are multiplied since skipping a document is more expensive than reading
+     * the next one.
+     */
+    private static final int LEAPFROG_COST_FACTOR = 2;
+
+    private BooleanDocumentSupportingAdapter corpusAdapter;
+
+    public LeapfrogBooleanDocumentFrequencyDeterminer(BooleanDocumentSupportingAdapter corpusAdapter) {
+        this.corpusAdapter = corpusAdapter;
+    }
+
+    public int getNumberOfDocuments() {
+        return corpusAdapter.getNumberOfDocuments();
+    }
+
+    public CountedSubsets[] determineCounts(String[][] wordsets, SegmentationDefinition[] definitions) {
+        List<DocumentCursor> createdCursors = new ArrayList<DocumentCursor>();
+        try {
+            ObjectObjectOpenHashMap<String, DocumentCursor> wordCursorMapping =
+                    new ObjectObjectOpenHashMap<String, DocumentCursor>();
+            for (int i = 0; i < wordsets.length; ++i) {
+                for (int j = 0; j < wordsets[i].length; ++j) {
+                    wordCursorMapping.put(wordsets[i][j], null);
+                }
+            }
+            createCursors(wordCursorMapping, createdCursors);
+
+            CountedSubsets countedSubsets[] = new CountedSubsets[definitions.length];
+            DocumentCursor cursors[];
+            for (int i = 0; i < definitions.length; ++i) {
+                cursors = new DocumentCursor[wordsets[i].length];
+                for (int j = 0; j < cursors.length; ++j) {
+                    cursors[j] = wordCursorMapping.get(wordsets[i][j]);
+                    if (isUsed(cursors[j], cursors, j)) {
+                        // a word occurring twice needs its own cursor
+                        cursors[j] = createCursor(wordsets[i][j], createdCursors);
+                    }
+                }
+                if (definitions[i].lattice != null) {
+                    countedSubsets[i] = new CountedSubsets(definitions[i], createCounts(cursors,
+                            definitions[i].lattice));
+                } else {
+                    countedSubsets[i] = new CountedSubsets(definitions[i], createCounts(cursors,
+                            getNeededCounts(definitions[i])));
+                }
+            }
+            return countedSubsets;
+        } finally {
+            closeCursors(createdCursors);
+        }
+    }
+
+    public CountedSubsets[] determineCounts(int[][] wordsets, CorpusVocabulary vocabulary,
+            SegmentationDefinition[] definitions) {
+        checkVocabulary(vocabulary);
+        List<DocumentCursor> createdCursors = new ArrayList<DocumentCursor>();
+        try {
+            DocumentCursor unknownWordCursor = new ArrayDocumentCursor(new int[0], 0);
+            ObjectObjectOpenHashMap<String, DocumentCursor> wordCursorMapping =
+                    new ObjectObjectOpenHashMap<String, DocumentCursor>();
+            for (int i = 0; i < wordsets.length; ++i) {
+                for (int j = 0; j < wordsets[i].length; ++j) {
+                    if (wordsets[i][j] != CorpusVocabulary.UNKNOWN_WORD_ID) {
+                        wordCursorMapping.put(vocabulary.getKnownWord(wordsets[i][j]), null);
+                    }
+                }
+            }
+            createCursors(wordCursorMapping, createdCursors);
+
+            CountedSubsets countedSubsets[] = new CountedSubsets[definitions.length];
+            DocumentCursor cursors[];
+            for (int i = 0; i < definitions.length; ++i) {
+                cursors = new DocumentCursor[wordsets[i].length];
+                for (int j = 0; j < cursors.length; ++j) {
+                    if (wordsets[i][j] == CorpusVocabulary.UNKNOWN_WORD_ID) {
+                        cursors[j] = unknownWordCursor;
+                    } else {
+                        cursors[j] = wordCursorMapping.get(vocabulary.getWord(wordsets[i][j]));
+                        if (isUsed(cursors[j], cursors, j)) {
+                            cursors[j] = createCursor(vocabulary.getWord(wordsets[i][j]), createdCursors);
+                        }
+                    }
+                }
+                if (definitions[i].lattice != null) {
+                    countedSubsets[i] = new CountedSubsets(definitions[i], createCounts(cursors,
+                            definitions[i].lattice));
+                } else {
+                    countedSubsets[i] = new CountedSubsets(definitions[i], createCounts(cursors,
+                            getNeededCounts(definitions[i])));
+                }
+            }
+            return countedSubsets;
+        } finally {
+            closeCursors(createdCursors);
+        }
+    }
+
+    public void checkVocabulary(CorpusVocabulary vocabulary) {
+        vocabulary.checkIsCurrent(corpusAdapter);
+    }
+
+    /**
+     * Creates the cursors of all words of the given mapping and adds them to
+     * the given list of cursors that have to be closed after the counting. If
+     * the corpus adapter does not offer cursors, the documents of all words
+     * are requested at once.
+     */
+    protected void createCursors(ObjectObjectOpenHashMap<String, DocumentCursor> wordCursorMapping,
+            List<DocumentCursor> createdCursors) {
+        Object words[] = (Object[]) wordCursorMapping.keys;
+        Object cursors[] = (Object[]) wordCursorMapping.values;
+        if (corpusAdapter instanceof DocumentCursorSupportingAdapter) {
+            for (int i = 0; i < wordCursorMapping.allocated.length; ++i) {
+                if (wordCursorMapping.allocated[i]) {
+                    cursors[i] = createCursor((String) words[i], createdCursors);
+                }
+            }
+        } else {
+            ObjectObjectOpenHashMap<String, IntArrayList> wordDocMapping =
+                    new ObjectObjectOpenHashMap<String, IntArrayList>();
+            for (int i = 0; i < wordCursorMapping.allocated.length; ++i) {
+                if (wordCursorMapping.allocated[i]) {
+                    wordDocMapping.put((String) words[i], new IntArrayList());
+                }
+            }
+            corpusAdapter.getDocumentsWithWords(wordDocMapping);
+            for (int i = 0; i < wordCursorMapping.allocated.length; ++i) {
+                if (wordCursorMapping.allocated[i]) {
+                    cursors[i] = ArrayDocumentCursor.create(wordDocMapping.get((String) words[i]));
+                    createdCursors.add((DocumentCursor) cursors[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates a cursor for the given word and adds it to the given list of
+     * cursors that have to be closed after the counting.
+     */
+    protected DocumentCursor createCursor(String word, List<DocumentCursor> createdCursors) {
+        DocumentCursor cursor = createCursor(word);
+        createdCursors.add(cursor);
+        return cursor;
+    }
+
+    protected static void closeCursors(List<DocumentCursor> cursors) {
+        for (DocumentCursor cursor : cursors) {
+            cursor.close();
+        }
+    }
+
+    protected DocumentCursor createCursor(String word) {
+        if (corpusAdapter instanceof DocumentCursorSupportingAdapter) {
+            return ((DocumentCursorSupportingAdapter) corpusAdapter).getDocumentCursor(word);
+        } else {
+            IntArrayList documents = new IntArrayList();
+            corpusAdapter.getDocumentsWithWord(word, documents);
+            return ArrayDocumentCursor.create(documents);
+        }
+    }
+
+    /**
+     * Returns the needed counts of the given definition. Since the confirmation
+     * measures rely on the counts of the segments, the conditions and their
+     * unions, these counts are added if the definition lacks them. Returns
+     * null if the definition does not define needed counts.
+     */
+    protected static BitSet getNeededCounts(SegmentationDefinition definition) {
+        if (definition.neededCounts == null) {
+            return null;
+        }
+        BitSet neededCounts = (BitSet) definition.neededCounts.clone();
+        for (int i = 0; i < definition.segments.length; ++i) {
+            neededCounts.set(definition.segments[i]);
+            for (int j = 0; j < definition.conditions[i].length; ++j) {
+                neededCounts.set(definition.conditions[i][j]);
+                neededCounts.set(definition.segments[i] | definition.conditions[i][j]);
+            }
+        }
+        return neededCounts;
+    }
+
+    private static boolean isUsed(DocumentCursor cursor, DocumentCursor cursors[], int length) {
+        for (int i = 0; i < length; ++i) {
+            if (cursors[i] == cursor) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Determines the number of documents containing all words of a word set
+     * for every word set that is marked in the given bit set. If the bit set
+     * is null, all counts are determined.
+     */
+    protected long[] createCounts(DocumentCursor cursors[], BitSet neededCounts) {
+        long counts[] = new long[1 << cursors.length];
+        int docFreqs[] = new int[cursors.length];
+        for (int i = 0; i < cursors.length; ++i) {
+            docFreqs[i] = cursors[i].getDocumentFrequency();
+            counts[1 << i] = docFreqs[i];
+        }
+        if (!isLeapfrogCheaper(docFreqs, neededCounts)) {
+            return countByMerging(cursors);
+        }
+        // marks the word sets that have been counted
+        boolean counted[] = new boolean[counts.length];
+        DocumentCursor wordSetCursors[];
+        int word, pos;
+        for (int wordSet = 1; wordSet < counts.length; ++wordSet) {
+            // single words are already counted
+            if (((wordSet & (wordSet - 1)) == 0) || ((neededCounts != null) && !neededCounts.get(wordSet))) {
+                continue;
+            }
+            counted[wordSet] = true;
+            if (hasEmptySubset(wordSet, counts, counted)) {
+                continue;
+            }
+            // sort the cursors of the word set by their frequency
+            wordSetCursors = new DocumentCursor[Integer.bitCount(wordSet)];
+            pos = 0;
+            for (int w = wordSet; w != 0; w &= w - 1) {
+                word = Integer.numberOfTrailingZeros(w);
+                int i = pos;
+                while ((i > 0) && (wordSetCursors[i - 1].getDocumentFrequency() > docFreqs[word])) {
+                    wordSetCursors[i] = wordSetCursors[i - 1];
+                    --i;
+                }
+                wordSetCursors[i] = cursors[word];
+                ++pos;
+            }
+            counts[wordSet] = countIntersection(wordSetCursors);
+        }
+        return counts;
+    }
+
+    /**
+     * Determines the number of documents containing all words of a subset for
+     * every subset of the given lattice.
+     */
+    protected long[] createCounts(DocumentCursor cursors[], SubsetLattice lattice) {
+        long counts[] = new long[lattice.size()];
+        int docFreqs[] = new int[cursors.length];
+        for (int i = 0; i < cursors.length; ++i) {
+            docFreqs[i] = cursors[i].getDocumentFrequency();
+            counts[lattice.getSingle(i)] = docFreqs[i];
+        }
+        if (!isLeapfrogCheaper(docFreqs, lattice)) {
+            return countByMerging(cursors, lattice);
+        }
+        DocumentCursor wordSetCursors[];
+        int words[];
+        boolean isEmpty;
+        // the slots of the single words are followed by the slots of the larger subsets
+        for (int slot = cursors.length; slot < counts.length; ++slot) {
+            words = lattice.getWords(slot);
+            // sort the cursors of the subset by their frequency
+            wordSetCursors = new DocumentCursor[words.length];
+            isEmpty = false;
+            for (int pos = 0; pos < words.length; ++pos) {
+                isEmpty |= docFreqs[words[pos]] == 0;
+                int i = pos;
+                while ((i > 0) && (wordSetCursors[i - 1].getDocumentFrequency() > docFreqs[words[pos]])) {
+                    wordSetCursors[i] = wordSetCursors[i - 1];
+                    --i;
+                }
+                wordSetCursors[i] = cursors[words[pos]];
+            }
+            if (!isEmpty) {
+                counts[slot] = countIntersection(wordSetCursors);
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Estimates whether the single intersections of the needed word sets are
+     * cheaper than a single merge of all document lists. An intersection is
+     * bounded by the least frequent word of the word set while the merge has
+     * to read all documents of all words.
+     */
+    protected static boolean isLeapfrogCheaper(int docFreqs[], BitSet neededCounts) {
+        long mergeCosts = 0;
+        for (int i = 0; i < docFreqs.length; ++i) {
+            mergeCosts += docFreqs[i];
+        }
+        mergeCosts *= docFreqs.length;
+        long leapfrogCosts = 0;
+        int minDocFreq;
+        for (int wordSet = 3; wordSet < (1 << docFreqs.length); ++wordSet) {
+            if (((wordSet & (wordSet - 1)) != 0) && ((neededCounts == null) || neededCounts.get(wordSet))) {
+                minDocFreq = Integer.MAX_VALUE;
+                for (int w = wordSet; w != 0; w &= w - 1) {
+                    minDocFreq = Math.min(minDocFreq, docFreqs[Integer.numberOfTrailingZeros(w)]);
+                }
+                leapfrogCosts += ((long) minDocFreq) * Integer.bitCount(wordSet);
+                if ((LEAPFROG_COST_FACTOR * leapfrogCosts) > mergeCosts) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Estimates whether the single intersections of the subsets of the given
+     * lattice are cheaper than a single merge of all document lists.
+     */
+    protected static boolean isLeapfrogCheaper(int docFreqs[], SubsetLattice lattice) {
+        long mergeCosts = 0;
+        for (int i = 0; i < docFreqs.length; ++i) {
+            mergeCosts += docFreqs[i];
+        }
+        mergeCosts *= docFreqs.length;
+        long leapfrogCosts = 0;
+        int minDocFreq;
+        for (int i = 0; i < docFreqs.length; ++i) {
+            for (int j = i + 1; j < docFreqs.length; ++j) {
+                leapfrogCosts += 2L * Math.min(docFreqs[i], docFreqs[j]);
+            }
+            if ((LEAPFROG_COST_FACTOR * leapfrogCosts) > mergeCosts) {
+                return false;
+            }
+        }
+        int words[];
+        for (int slot = lattice.getFirstLargeSlot(); slot < lattice.size(); ++slot) {
+            words = lattice.getWords(slot);
+            minDocFreq = Integer.MAX_VALUE;
+            for (int w = 0; w < words.length; ++w) {
+                minDocFreq = Math.min(minDocFreq, docFreqs[words[w]]);
+            }
+            leapfrogCosts += ((long) minDocFreq) * words.length;
+            if ((LEAPFROG_COST_FACTOR * leapfrogCosts) > mergeCosts) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads all cursors in parallel and counts the documents for every
+     * combination of words. In contrast to the leapfrog intersections, all
+     * counts are determined.
+     */
+    protected static long[] countByMerging(DocumentCursor cursors[]) {
+        long counts[] = new long[1 << cursors.length];
+        int docIds[] = new int[cursors.length];
+        int nextDocId = DocumentCursor.NO_MORE_DOCS;
+        for (int i = 0; i < cursors.length; ++i) {
+            cursors[i].reset();
+            docIds[i] = cursors[i].nextDoc();
+            nextDocId = Math.min(nextDocId, docIds[i]);
+        }
+        int documentSignature, docId;
+        while (nextDocId != DocumentCursor.NO_MORE_DOCS) {
+            docId = nextDocId;
+            nextDocId = DocumentCursor.NO_MORE_DOCS;
+            documentSignature = 0;
+            for (int i = 0; i < cursors.length; ++i) {
+                if (docIds[i] == docId) {
+                    documentSignature |= 1 << i;
+                    docIds[i] = cursors[i].nextDoc();
+                }
+                nextDocId = Math.min(nextDocId, docIds[i]);
+            }
+            ++counts[documentSignature];
+        }
+        // until now the counts contain only the documents which have exactly the matching word combination
+        // --> we have to add the counts of the larger word sets to their subsets
+        for (int bit = 1; bit < counts.length; bit <<= 1) {
+            for (int wordSet = 1; wordSet < counts.length; ++wordSet) {
+                if ((wordSet & bit) == 0) {
+                    counts[wordSet] += counts[wordSet | bit];
+                }
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Reads all cursors in parallel and adds every document to the counts of
+     * the subsets of the given lattice that it contains.
+     */
+    protected static long[] countByMerging(DocumentCursor cursors[], SubsetLattice lattice) {
+        long counts[] = new long[lattice.size()];
+        int docIds[] = new int[cursors.length];
+        int nextDocId = DocumentCursor.NO_MORE_DOCS;
+        for (int i = 0; i < cursors.length; ++i) {
+            cursors[i].reset();
+            docIds[i] = cursors[i].nextDoc();
+            nextDocId = Math.min(nextDocId, docIds[i]);
+        }
+        long documentSignature[] = lattice.createWordMask();
+        int docId;
+        while (nextDocId != DocumentCursor.NO_MORE_DOCS) {
+            docId = nextDocId;
+            nextDocId = DocumentCursor.NO_MORE_DOCS;
+            Arrays.fill(documentSignature, 0);
+            for (int i = 0; i < cursors.length; ++i) {
+                if (docIds[i] == docId) {
+                    documentSignature[i >>> 6] |= 1L << i;
+                    docIds[i] = cursors[i].nextDoc();
+                }
+                nextDocId = Math.min(nextDocId, docIds[i]);
+            }
+            lattice.addCounts(documentSignature, 1, counts);
+        }
+        return counts;
+    }
+
+    /**
+     * Returns true if a single word of the given word set does not occur or if
+     * one of its already counted subsets that lack a single word is empty. In
+     * both cases, the count of the word set is 0.
+     */
+    private static boolean hasEmptySubset(int wordSet, long counts[], boolean counted[]) {
+        int subset;
+        for (int w = wordSet; w != 0; w &= w - 1) {
+            if (counts[w & -w] == 0) {
+                return true;
+            }
+            subset = wordSet & ~(w & -w);
+            if (counted[subset] && (counts[subset] == 0)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Counts the documents that are contained in all given cursors. The
+     * cursors have to be sorted by their frequency.
+     */
+    protected static int countIntersection(DocumentCursor cursors[]) {
+        for (int i = 0; i < cursors.length; ++i) {
+            cursors[i].reset();
+        }
+        DocumentCursor lead = cursors[0];
+        int count = 0;
+        int doc = lead.nextDoc();
+        int other;
+        outer: while (doc != DocumentCursor.NO_MORE_DOCS) {
+            for (int i = 1; i < cursors.length; ++i) {
+                other = cursors[i].docId();
+                if (other < doc) {
+                    other = cursors[i].advance(doc);
+                }
+                if (other > doc) {
+                    // the lead has to catch up
+                    doc = lead.advance(other);
+                    continue outer;
+                }
+            }
+            ++count;
+            doc = lead.nextDoc();
+        }
+        return count;
+    }
+}
@@ -19,10 +19,13 @@ package org.aksw.palmetto.prob.bd;
 import java.util.Arrays;
 
 import org.aksw.palmetto.corpus.BooleanDocumentSupportingAdapter;
+import org.aksw.palmetto.corpus.CorpusVocabulary;
 import org.aksw.palmetto.data.CountedSubsets;
 import org.aksw.palmetto.data.SegmentationDefinition;
+import org.aksw.palmetto.data.SubsetLattice;
 
 import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.IntObjectOpenHashMap;
 import com.carrotsearch.hppc.ObjectObjectOpenHashMap;
 
 public class ListBasedBooleanDocumentFrequencyDeterminer implements BooleanDocumentFrequencyDeterminer {
@@ -51,17 +54,73 @@ public class ListBasedBooleanDocumentFrequencyDeterminer implements BooleanDocum
         corpusAdapter.getDocumentsWithWords(wordDocMapping);
 
         CountedSubsets countedSubsets[] = new CountedSubsets[definitions.length];
-        int counts[];
+        IntArrayList wordDocuments[];
+        long counts[];
         for (int i = 0; i < definitions.length; ++i) {
-            counts = createCounts(wordDocMapping, wordsets[i]);
-            addCountsOfSubsets(counts);
-            countedSubsets[i] = new CountedSubsets(definitions[i].segments,
-                    definitions[i].conditions, counts);
+            wordDocuments = new IntArrayList[wordsets[i].length];
+            for (int j = 0; j < wordDocuments.length; ++j) {
+                wordDocuments[j] = wordDocMapping.get(wordsets[i][j]);
+            }
+            if (definitions[i].lattice != null) {
+                counts = createCounts(wordDocuments, definitions[i].lattice);
+            } else {
+                counts = createCounts(wordDocuments);
+                addCountsOfSubsets(counts);
+            }
+            countedSubsets[i] = new CountedSubsets(definitions[i], counts);
+        }
+        return countedSubsets;
+    }
+
+    public CountedSubsets[] determineCounts(int[][] wordsets, CorpusVocabulary vocabulary,
+            SegmentationDefinition[] definitions) {
+        checkVocabulary(vocabulary);
+        IntArrayList unknownWordDocs = new IntArrayList();
+        IntObjectOpenHashMap<IntArrayList> wordDocMapping = new IntObjectOpenHashMap<IntArrayList>();
+        ObjectObjectOpenHashMap<String, IntArrayList> requestedWords =
+                new ObjectObjectOpenHashMap<String, IntArrayList>();
+        IntArrayList documents;
+        for (int i = 0; i < wordsets.length; ++i) {
+            for (int j = 0; j < wordsets[i].length; ++j) {
+                if ((wordsets[i][j] != CorpusVocabulary.UNKNOWN_WORD_ID)
+                        && !wordDocMapping.containsKey(wordsets[i][j])) {
+                    documents = new IntArrayList();
+                    requestedWords.put(vocabulary.getKnownWord(wordsets[i][j]), documents);
+                    wordDocMapping.put(wordsets[i][j], documents);
+                }
+            }
+        }
+        // all words are requested at once
+        corpusAdapter.getDocumentsWithWords(requestedWords);
+
+        CountedSubsets countedSubsets[] = new CountedSubsets[definitions.length];
+        IntArrayList wordDocuments[];
+        long counts[];
+        for (int i = 0; i < definitions.length; ++i) {
+            wordDocuments = new IntArrayList[wordsets[i].length];
+            for (int j = 0; j < wordDocuments.length; ++j) {
+                if (wordsets[i][j] == CorpusVocabulary.UNKNOWN_WORD_ID) {
+                    wordDocuments[j] = unknownWordDocs;
+                } else {
+                    wordDocuments[j] = wordDocMapping.get(wordsets[i][j]);
+                }
+            }
+            if (definitions[i].lattice != null) {
+                counts = createCounts(wordDocuments, definitions[i].lattice);
+            } else {
+                counts = createCounts(wordDocuments);
+                addCountsOfSubsets(counts);
+            }
+            countedSubsets[i] = new CountedSubsets(definitions[i], counts);
         }
         return countedSubsets;
     }
 
-    private void addCountsOfSubsets(int[] counts) {
+    public void checkVocabulary(CorpusVocabulary vocabulary) {
+        vocabulary.checkIsCurrent(corpusAdapter);
+    }
+
+    private void addCountsOfSubsets(long[] counts) {
         // until now the counts contain only the windows which have exactly the matching word combination
         // --> we have to add the counts of the larger word sets to their subsets
         for (int i = 1; i < counts.length; ++i) {
@@ -74,11 +133,9 @@ public class ListBasedBooleanDocumentFrequencyDeterminer implements BooleanDocum
         }
     }
 
-    private int[] createCounts(ObjectObjectOpenHashMap<String, IntArrayList> wordDocMapping, String[] wordset) {
-        int counts[] = new int[(1 << wordset.length)];
-        IntArrayList wordDocuments[] = new IntArrayList[wordset.length];
+    private long[] createCounts(IntArrayList wordDocuments[]) {
+        long counts[] = new long[(1 << wordDocuments.length)];
         for (int i = 0; i < wordDocuments.length; ++i) {
-            wordDocuments[i] = wordDocMapping.get(wordset[i]);
             Arrays.sort(wordDocuments[i].buffer, 0, wordDocuments[i].elementsCount);
         }
 
@@ -107,4 +164,40 @@ public class ListBasedBooleanDocumentFrequencyDeterminer implements BooleanDocum
         } while (nextDocId != Integer.MAX_VALUE);
         return counts;
     }
+
+    /**
+     * Merges the document lists and adds every document to the counts of the
+     * subsets of the given lattice that it contains.
+     */
+    private long[] createCounts(IntArrayList wordDocuments[], SubsetLattice lattice) {
+        long counts[] = new long[lattice.size()];
+        for (int i = 0; i < wordDocuments.length; ++i) {
+            Arrays.sort(wordDocuments[i].buffer, 0, wordDocuments[i].elementsCount);
+        }
+
+        int posInList[] = new int[wordDocuments.length];
+        long documentSignature[] = lattice.createWordMask();
+        int nextDocId;
+        while (true) {
+            nextDocId = Integer.MAX_VALUE;
+            for (int i = 0; i < wordDocuments.length; ++i) {
+                if ((posInList[i] < wordDocuments[i].elementsCount)
+                        && (wordDocuments[i].buffer[posInList[i]] < nextDocId)) {
+                    nextDocId = wordDocuments[i].buffer[posInList[i]];
+                }
+            }
+            if (nextDocId == Integer.MAX_VALUE) {
+                return counts;
+            }
+            Arrays.fill(documentSignature, 0);
+            for (int i = 0; i < wordDocuments.length; ++i) {
+                if ((posInList[i] < wordDocuments[i].elementsCount)
+                        && (wordDocuments[i].buffer[posInList[i]] == nextDocId)) {
+                    documentSignature[i >>> 6] |= 1L << i;
+                    ++posInList[i];
+                }
+            }
+            lattice.addCounts(documentSignature, 1, counts);
+        }
+    }
 }
@@ -0,0 +1,499 @@
+/**
+ * This file is part of Palmetto.
+ *
+ * Palmetto is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Palmetto is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Palmetto.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.aksw.palmetto.prob.bd;
+
+import java.util.Arrays;
+
+import org.aksw.palmetto.corpus.BooleanDocumentSupportingAdapter;
+import org.aksw.palmetto.corpus.CorpusVocabulary;
+import org.aksw.palmetto.data.CountedSubsets;
+import org.aksw.palmetto.data.SegmentationDefinition;
+import org.aksw.palmetto.data.SubsetLattice;
+
+import com.carrotsearch.hppc.BitSet;
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.IntObjectOpenHashMap;
+import com.carrotsearch.hppc.ObjectObjectOpenHashMap;
+
+/**
+ * A {@link BooleanDocumentFrequencyDeterminer} that represents the documents
+ * of the single words of a word set as packed bit sets (<code>long[]</code>)
+ * over the union of their documents. The count of a combination of words is
+ * determined by a single pass that intersects the bit set of its subset
+ * lacking the last word with the bit set of this word and counts the set bits
+ * at the same time. The intersections are written to scratch buffers that are
+ * reused for all word sets.
+ * 
+ * <p>
+ * Only the counts needed by the {@link SegmentationDefinition} are determined
+ * (together with the counts of all single words and pairs of words which are
+ * used by the indirect confirmation measures). If the count of a combination
+ * is lower than the minimum frequency, the counts of its supersets are not
+ * determined and are set to 0 since their probabilities would be set to 0 by
+ * the probability supplier, anyway.
+ * </p>
+ * 
+ * @author Michael R&ouml;der (roeder@informatik.uni-leipzig.de)
+ *
+ */
+public class PackedBitSetBasedBooleanDocumentFrequencyDeterminer implements BooleanDocumentFrequencyDeterminer {
+
+    /**
+     * The default minimum frequency. With a minimum frequency of 1, only the
+     * supersets of empty combinations are skipped, i.e., all counts are exact.
+     */
+    public static final int DEFAULT_MIN_FREQUENCY = 1;
+
+    private BooleanDocumentSupportingAdapter corpusAdapter;
+    private int minFrequency = DEFAULT_MIN_FREQUENCY;
+
+    public PackedBitSetBasedBooleanDocumentFrequencyDeterminer(BooleanDocumentSupportingAdapter corpusAdapter) {
+        this.corpusAdapter = corpusAdapter;
+    }
+
+    public int getNumberOfDocuments() {
+        return corpusAdapter.getNumberOfDocuments();
+    }
+
+    public CountedSubsets[] determineCounts(String[][] wordsets, SegmentationDefinition[] definitions) {
+        ObjectObjectOpenHashMap<String, IntArrayList> wordDocMapping = new ObjectObjectOpenHashMap<String, IntArrayList>();
+        for (int i = 0; i < wordsets.length; ++i) {
+            for (int j = 0; j < wordsets[i].length; ++j) {
+                if (!wordDocMapping.containsKey(wordsets[i][j])) {
+                    wordDocMapping.put(wordsets[i][j], new IntArrayList());
+                }
+            }
+        }
+
+        corpusAdapter.getDocumentsWithWords(wordDocMapping);
+        for (int i = 0; i < wordDocMapping.allocated.length; ++i) {
+            if (wordDocMapping.allocated[i]) {
+                sort((IntArrayList) ((Object[]) wordDocMapping.values)[i]);
+            }
+        }
+
+        CountedSubsets countedSubsets[] = new CountedSubsets[definitions.length];
+        IntArrayList wordDocuments[];
+        ScratchBuffers buffers = new ScratchBuffers();
+        for (int i = 0; i < definitions.length; ++i) {
+            wordDocuments = new IntArrayList[wordsets[i].length];
+            for (int j = 0; j < wordDocuments.length; ++j) {
+                wordDocuments[j] = wordDocMapping.get(wordsets[i][j]);
+            }
+            if (definitions[i].lattice != null) {
+                countedSubsets[i] = new CountedSubsets(definitions[i], createCounts(wordDocuments,
+                        definitions[i].lattice, buffers));
+            } else {
+                countedSubsets[i] = new CountedSubsets(definitions[i], createCounts(wordDocuments,
+                        getNeededCounts(definitions[i], wordDocuments.length), buffers));
+            }
+        }
+        return countedSubsets;
+    }
+
+    public CountedSubsets[] determineCounts(int[][] wordsets, CorpusVocabulary vocabulary,
+            SegmentationDefinition[] definitions) {
+        checkVocabulary(vocabulary);
+        IntArrayList unknownWordDocs = new IntArrayList();
+        IntObjectOpenHashMap<IntArrayList> wordDocMapping = new IntObjectOpenHashMap<IntArrayList>();
+        ObjectObjectOpenHashMap<String, IntArrayList> requestedWords =
+                new ObjectObjectOpenHashMap<String, IntArrayList>();
+        IntArrayList documents;
+        for (int i = 0; i < wordsets.length; ++i) {
+            for (int j = 0; j < wordsets[i].length; ++j) {
+                if ((wordsets[i][j] != CorpusVocabulary.UNKNOWN_WORD_ID)
+                        && !wordDocMapping.containsKey(wordsets[i][j])) {
+                    documents = new IntArrayList();
+                    requestedWords.put(vocabulary.getKnownWord(wordsets[i][j]), documents);
+                    wordDocMapping.put(wordsets[i][j], documents);
+                }
+            }
+        }
+        // all words are requested at once
+        corpusAdapter.getDocumentsWithWords(requestedWords);
+        for (int i = 0; i < requestedWords.allocated.length; ++i) {
+            if (requestedWords.allocated[i]) {
+                sort((IntArrayList) ((Object[]) requestedWords.values)[i]);
+            }
+        }
+
+        CountedSubsets countedSubsets[] = new CountedSubsets[definitions.length];
+        IntArrayList wordDocuments[];
+        ScratchBuffers buffers = new ScratchBuffers();
+        for (int i = 0; i < definitions.length; ++i) {
+            wordDocuments = new IntArrayList[wordsets[i].length];
+            for (int j = 0; j < wordDocuments.length; ++j) {
+                if (wordsets[i][j] == CorpusVocabulary.UNKNOWN_WORD_ID) {
+                    wordDocuments[j] = unknownWordDocs;
+                } else {
+                    wordDocuments[j] = wordDocMapping.get(wordsets[i][j]);
+                }
+            }
+            if (definitions[i].lattice != null) {
+                countedSubsets[i] = new CountedSubsets(definitions[i], createCounts(wordDocuments,
+                        definitions[i].lattice, buffers));
+            } else {
+                countedSubsets[i] = new CountedSubsets(definitions[i], createCounts(wordDocuments,
+                        getNeededCounts(definitions[i], wordDocuments.length), buffers));
+            }
+        }
+        return countedSubsets;
+    }
+
+    public void checkVocabulary(CorpusVocabulary vocabulary) {
+        vocabulary.checkIsCurrent(corpusAdapter);
+    }
+
+    private static void sort(IntArrayList documents) {
+        Arrays.sort(documents.buffer, 0, documents.elementsCount);
+    }
+
+    /**
+     * Returns the counts needed for the given definition, i.e., the counts of
+     * its segments, conditions and their unions, the counts marked in
+     * {@link SegmentationDefinition#neededCounts} and the counts of all single
+     * words and pairs of words. Returns null if the definition does not
+     * contain segments, i.e., if all counts are needed.
+     */
+    protected static BitSet getNeededCounts(SegmentationDefinition definition, int wordsetSize) {
+        if (definition.segments == null) {
+            return null;
+        }
+        BitSet neededCounts = (definition.neededCounts != null) ? (BitSet) definition.neededCounts.clone()
+                : new BitSet(1 << wordsetSize);
+        for (int i = 0; i < definition.segments.length; ++i) {
+            neededCounts.set(definition.segments[i]);
+            for (int j = 0; j < definition.conditions[i].length; ++j) {
+                neededCounts.set(definition.conditions[i][j]);
+                neededCounts.set(definition.segments[i] | definition.conditions[i][j]);
+            }
+        }
+        for (int i = 0; i < wordsetSize; ++i) {
+            for (int j = i + 1; j < wordsetSize; ++j) {
+                neededCounts.set((1 << i) | (1 << j));
+            }
+        }
+        return neededCounts;
+    }
+
+    /**
+     * Determines the counts of the word sets marked in the given bit set (or
+     * of all word sets if it is null). The document lists have to be sorted.
+     */
+    protected long[] createCounts(IntArrayList wordDocuments[], BitSet neededCounts, ScratchBuffers buffers) {
+        int numberOfWords = wordDocuments.length;
+        long counts[] = new long[1 << numberOfWords];
+        int numberOfBlocks = buffers.createBitSets(wordDocuments);
+        for (int i = 0; i < numberOfWords; ++i) {
+            counts[1 << i] = buffers.wordCounts[i];
+        }
+        if (numberOfWords < 2) {
+            return counts;
+        }
+        boolean visit[] = markCombinationsToVisit(neededCounts, counts.length);
+        for (int i = 0; i < numberOfWords - 1; ++i) {
+            if (counts[1 << i] >= Math.max(1, minFrequency)) {
+                countSupersets(1 << i, i, buffers.wordBitSets[i], buffers.wordFirstBlocks[i],
+                        buffers.wordLastBlocks[i], 0, counts, visit, buffers, numberOfBlocks);
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Determines the counts of the subsets of the given lattice. The count of
+     * a pair of words is determined by a single pass that combines the bit
+     * sets of both words and counts the set bits. The bit sets of the words of
+     * a larger subset are intersected one after the other. Subsets that
+     * contain a word with a count lower than the minimum frequency get a count
+     * of 0. The document lists have to be sorted.
+     */
+    protected long[] createCounts(IntArrayList wordDocuments[], SubsetLattice lattice, ScratchBuffers buffers) {
+        int numberOfWords = wordDocuments.length;
+        long counts[] = new long[lattice.size()];
+        int numberOfBlocks = buffers.createBitSets(wordDocuments);
+        int minCount = Math.max(1, minFrequency);
+        for (int i = 0; i < numberOfWords; ++i) {
+            counts[lattice.getSingle(i)] = buffers.wordCounts[i];
+        }
+        long bitSet[], wordBitSet[];
+        int from, to, count;
+        for (int i = 0; i < numberOfWords; ++i) {
+            if (buffers.wordCounts[i] < minCount) {
+                continue;
+            }
+            bitSet = buffers.wordBitSets[i];
+            for (int j = i + 1; j < numberOfWords; ++j) {
+                if (buffers.wordCounts[j] < minCount) {
+                    continue;
+                }
+                from = Math.max(buffers.wordFirstBlocks[i], buffers.wordFirstBlocks[j]);
+                to = Math.min(buffers.wordLastBlocks[i], buffers.wordLastBlocks[j]);
+                wordBitSet = buffers.wordBitSets[j];
+                count = 0;
+                for (int b = from; b <= to; ++b) {
+                    count += Long.bitCount(bitSet[b] & wordBitSet[b]);
+                }
+                counts[lattice.getPair(i, j)] = count;
+            }
+        }
+        long intersection[] = buffers.getIntersectionBuffer(0, numberOfBlocks);
+        for (int slot = lattice.getFirstLargeSlot(); slot < counts.length; ++slot) {
+            counts[slot] = countIntersection(lattice.getWords(slot), intersection, buffers, minCount);
+        }
+        return counts;
+    }
+
+    /**
+     * Intersects the bit sets of the given words one after the other and
+     * returns the number of documents containing all words. If an
+     * intersection contains less documents than the given minimum count, 0 is
+     * returned.
+     */
+    private static int countIntersection(int words[], long intersection[], ScratchBuffers buffers, int minCount) {
+        int from = 0, to = Integer.MAX_VALUE;
+        for (int w = 0; w < words.length; ++w) {
+            if (buffers.wordCounts[words[w]] < minCount) {
+                return 0;
+            }
+            from = Math.max(from, buffers.wordFirstBlocks[words[w]]);
+            to = Math.min(to, buffers.wordLastBlocks[words[w]]);
+        }
+        if (from > to) {
+            return 0;
+        }
+        System.arraycopy(buffers.wordBitSets[words[0]], from, intersection, from, (to - from) + 1);
+        long wordBitSet[], block;
+        int count = 0;
+        for (int w = 1; w < words.length; ++w) {
+            wordBitSet = buffers.wordBitSets[words[w]];
+            count = 0;
+            for (int b = from; b <= to; ++b) {
+                block = intersection[b] & wordBitSet[b];
+                intersection[b] = block;
+                count += Long.bitCount(block);
+            }
+            if (count < minCount) {
+                return 0;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Determines the counts of all visited supersets of the given combination
+     * that are created by adding words with a higher id than the given last
+     * word.
+     * 
+     * @param combination
+     *            the current combination of words
+     * @param lastWord
+     *            the highest word of the combination
+     * @param bitSet
+     *            the documents of the combination
+     * @param firstBlock
+     *            the first block of the bit set that might be non-zero
+     * @param lastBlock
+     *            the last block of the bit set that might be non-zero
+     * @param depth
+     *            the depth of the combination, i.e., the id of the scratch
+     *            buffer that can be used to store the supersets
+     */
+    private void countSupersets(int combination, int lastWord, long bitSet[], int firstBlock, int lastBlock,
+            int depth, long counts[], boolean visit[], ScratchBuffers buffers, int numberOfBlocks) {
+        int numberOfWords = buffers.numberOfWords;
+        int superset, from, to, count;
+        long intersection[] = buffers.getIntersectionBuffer(depth, numberOfBlocks);
+        long wordBitSet[];
+        long block;
+        boolean hasVisitedSupersets;
+        for (int word = lastWord + 1; word < numberOfWords; ++word) {
+            superset = combination | (1 << word);
+            if ((!visit[superset]) || (counts[1 << word] < minFrequency)) {
+                continue;
+            }
+            from = Math.max(firstBlock, buffers.wordFirstBlocks[word]);
+            to = Math.min(lastBlock, buffers.wordLastBlocks[word]);
+            wordBitSet = buffers.wordBitSets[word];
+            count = 0;
+            hasVisitedSupersets = hasVisitedSupersets(superset, word, numberOfWords, visit);
+            if (hasVisitedSupersets) {
+                // intersect, store and count in a single pass
+                for (int b = from; b <= to; ++b) {
+                    block = bitSet[b] & wordBitSet[b];
+                    intersection[b] = block;
+                    count += Long.bitCount(block);
+                }
+            } else {
+                // the intersection is not needed afterwards
+                for (int b = from; b <= to; ++b) {
+                    count += Long.bitCount(bitSet[b] & wordBitSet[b]);
+                }
+            }
+            counts[superset] = count;
+            if (hasVisitedSupersets && (count > 0) && (count >= minFrequency)) {
+                countSupersets(superset, word, intersection, from, to, depth + 1, counts, visit, buffers,
+                        numberOfBlocks);
+            }
+        }
+    }
+
+    /**
+     * Marks all combinations of two or more words that have to be visited to
+     * reach the needed combinations (or all combinations if the given bit set
+     * is null). Since the words are added in ascending order, these are the
+     * needed combinations together with their prefixes, i.e., the
+     * combinations without their highest words.
+     */
+    protected static boolean[] markCombinationsToVisit(BitSet neededCounts, int numberOfCombinations) {
+        boolean visit[] = new boolean[numberOfCombinations];
+        int combination;
+        for (int wordSet = 3; wordSet < numberOfCombinations; ++wordSet) {
+            if (((wordSet & (wordSet - 1)) != 0) && ((neededCounts == null) || neededCounts.get(wordSet))) {
+                combination = wordSet;
+                while (((combination & (combination - 1)) != 0) && (!visit[combination])) {
+                    visit[combination] = true;
+                    combination &= ~Integer.highestOneBit(combination);
+                }
+            }
+        }
+        return visit;
+    }
+
+    /**
+     * Returns true if at least one superset of the given combination that is
+     * created by adding a word with a higher id than the given last word has
+     * to be visited.
+     */
+    protected static boolean hasVisitedSupersets(int combination, int lastWord, int numberOfWords, boolean visit[]) {
+        for (int word = lastWord + 1; word < numberOfWords; ++word) {
+            if (visit[combination | (1 << word)]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int getMinFrequency() {
+        return minFrequency;
+    }
+
+    /**
+     * Sets the minimum frequency. The supersets of combinations with a lower
+     * count get a count of 0. Should be the minimum frequency of the
+     * probability supplier.
+     */
+    public void setMinFrequency(int minFrequency) {
+        this.minFrequency = minFrequency;
+    }
+
+    /**
+     * The bit sets of the single words of a word set and the buffers for the
+     * intersections. They grow if needed and are reused for all word sets of
+     * a single request.
+     * 
+     * @author Michael R&ouml;der (roeder@informatik.uni-leipzig.de)
+     *
+     */
+    protected static class ScratchBuffers {
+
+        protected int numberOfWords;
+        protected long wordBitSets[][] = new long[0][];
+        protected int wordCounts[] = new int[0];
+        protected int wordFirstBlocks[] = new int[0];
+        protected int wordLastBlocks[] = new int[0];
+        protected long intersections[][] = new long[0][];
+        protected int positions[] = new int[0];
+
+        /**
+         * Creates the bit sets of the given sorted document lists. The bits
+         * are the positions of the documents inside the union of all lists.
+         * 
+         * @return the number of blocks of the bit sets
+         */
+        public int createBitSets(IntArrayList wordDocuments[]) {
+            numberOfWords = wordDocuments.length;
+            int maxUnionSize = 0;
+            for (int i = 0; i < numberOfWords; ++i) {
+                maxUnionSize += wordDocuments[i].elementsCount;
+            }
+            int numberOfBlocks = (maxUnionSize + 63) >>> 6;
+            if (wordBitSets.length < numberOfWords) {
+                wordBitSets = Arrays.copyOf(wordBitSets, numberOfWords);
+                wordCounts = new int[numberOfWords];
+                wordFirstBlocks = new int[numberOfWords];
+                wordLastBlocks = new int[numberOfWords];
+                positions = new int[numberOfWords];
+            }
+            for (int i = 0; i < numberOfWords; ++i) {
+                if ((wordBitSets[i] == null) || (wordBitSets[i].length < numberOfBlocks)) {
+                    wordBitSets[i] = new long[numberOfBlocks];
+                } else {
+                    Arrays.fill(wordBitSets[i], 0, numberOfBlocks, 0);
+                }
+                wordCounts[i] = 0;
+                wordFirstBlocks[i] = Integer.MAX_VALUE;
+                wordLastBlocks[i] = -1;
+                positions[i] = 0;
+            }
+            // merge the sorted lists
+            int bit = 0, docId, block;
+            IntArrayList documents;
+            while (true) {
+                docId = Integer.MAX_VALUE;
+                for (int i = 0; i < numberOfWords; ++i) {
+                    if ((positions[i] < wordDocuments[i].elementsCount)
+                            && (wordDocuments[i].buffer[positions[i]] < docId)) {
+                        docId = wordDocuments[i].buffer[positions[i]];
+                    }
+                }
+                if (docId == Integer.MAX_VALUE) {
+                    break;
+                }
+                block = bit >>> 6;
+                for (int i = 0; i < numberOfWords; ++i) {
+                    documents = wordDocuments[i];
+                    if ((positions[i] < documents.elementsCount) && (documents.buffer[positions[i]] == docId)) {
+                        wordBitSets[i][block] |= 1L << bit;
+                        ++wordCounts[i];
+                        if (wordFirstBlocks[i] > block) {
+                            wordFirstBlocks[i] = block;
+                        }
+                        wordLastBlocks[i] = block;
+                        // skip duplicates
+                        do {
+                            ++positions[i];
+                        } while ((positions[i] < documents.elementsCount)
+                                && (documents.buffer[positions[i]] == docId));
+                    }
+                }
+                ++bit;
+            }
+            return (bit + 63) >>> 6;
+        }
+
+        public long[] getIntersectionBuffer(int depth, int numberOfBlocks) {
+            if (intersections.length <= depth) {
+                intersections = Arrays.copyOf(intersections, depth + 1);
+            }
+            if ((intersections[depth] == null) || (intersections[depth].length < numberOfBlocks)) {
+                intersections[depth] = new long[numberOfBlocks];
+            }
+            return intersections[depth];
+        }
+    }
+}
@@ -16,6 +16,7 @@
  */
 package org.aksw.palmetto.prob.decorator;
 
+import org.aksw.palmetto.corpus.CorpusVocabulary;
 import org.aksw.palmetto.prob.FrequencyDeterminer;
 
 public abstract class AbstractFrequencyDeterminerDecorator implements FrequencyDeterminerDecorator {
@@ -36,4 +37,8 @@ public abstract class AbstractFrequencyDeterminerDecorator implements FrequencyD
         this.determiner = determiner;
     }
 
+    @Override
+    public void checkVocabulary(CorpusVocabulary vocabulary) {
+        determiner.checkVocabulary(vocabulary);
+    }
 }
@@ -18,18 +18,51 @@ package org.aksw.palmetto.prob.decorator;
 
 import java.util.Arrays;
 
+import org.aksw.palmetto.corpus.CorpusVocabulary;
 import org.aksw.palmetto.data.CountedSubsets;
 import org.aksw.palmetto.data.SegmentationDefinition;
+import org.aksw.palmetto.data.SubsetLattice;
 import org.aksw.palmetto.prob.FrequencyDeterminer;
 
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 
+/**
+ * A decorator that caches the counts of the most recently requested word sets
+ * (see {@link #FrequencyCachingDeterminerDecorator(FrequencyDeterminer, int)}).
+ * 
+ * <p>
+ * The cached counts are the counts the decorated determiner returned. Some
+ * determiners skip counts below the minimum frequency of their probability
+ * supplier (e.g., the
+ * {@link org.aksw.palmetto.prob.bd.PackedBitSetBasedBooleanDocumentFrequencyDeterminer}),
+ * i.e., the cached counts depend on this pruning threshold. The cache should
+ * not be shared by suppliers with different minimum frequencies and has to be
+ * invalidated (see {@link #invalidateCache()}) if the minimum frequency is
+ * changed.
+ * </p>
+ * 
+ * @author Michael R&ouml;der (roeder@informatik.uni-leipzig.de)
+ *
+ */
 public class FrequencyCachingDeterminerDecorator extends AbstractSlidingWindowFrequencyDeterminerDecorator {
 
     private static final int DEFAULT_CACHE_SIZE = 2000;
 
-    private Cache<CachedWordSet, int[]> cache;
+    private int cacheSize;
+    private volatile Cache<CachedWordSet, long[]> cache;
+    private volatile Cache<CachedWordIdSet, long[]> wordIdCache;
+    /**
+     * The sums of the counts of the decorated determiner the cached counts
+     * belong to. If the determiner returns other sums, e.g., because its
+     * corpus adapter has been reopened or its window size has been changed,
+     * the cached counts are discarded.
+     */
+    private volatile long cooccurrenceCounts[];
+    /**
+     * The corpus version of the vocabulary the cached word ids belong to.
+     */
+    private volatile long wordIdsVersion = CorpusVocabulary.NO_VERSION;
 
     public FrequencyCachingDeterminerDecorator(FrequencyDeterminer determiner) {
         this(determiner, DEFAULT_CACHE_SIZE);
@@ -37,21 +70,53 @@ public class FrequencyCachingDeterminerDecorator extends AbstractSlidingWindowFr
 
     public FrequencyCachingDeterminerDecorator(FrequencyDeterminer determiner, int cacheSize) {
         super(determiner);
+        this.cacheSize = cacheSize;
+        invalidateCache();
+        cooccurrenceCounts = getCooccurrenceCounts();
+    }
+
+    /**
+     * Discards all cached counts. The decorator can detect a change of the
+     * corpus only if the decorated determiner is window based, i.e., this
+     * method has to be called if the corpus of another determiner changed.
+     * Requests that are still running put their counts into the discarded
+     * caches.
+     */
+    public void invalidateCache() {
         cache = CacheBuilder.newBuilder().maximumSize(cacheSize).build();
+        wordIdCache = CacheBuilder.newBuilder().maximumSize(cacheSize).build();
+    }
+
+    /**
+     * Discards the cached counts if the sums of the counts of the decorated
+     * determiner changed since they have been cached.
+     */
+    protected void checkCooccurrenceCounts() {
+        long sums[] = getCooccurrenceCounts();
+        if (sums != cooccurrenceCounts) {
+            synchronized (this) {
+                if (sums != cooccurrenceCounts) {
+                    invalidateCache();
+                    cooccurrenceCounts = sums;
+                }
+            }
+        }
     }
 
     @Override
     public CountedSubsets[] determineCounts(String[][] wordsets, SegmentationDefinition[] definitions) {
+        checkCooccurrenceCounts();
+        Cache<CachedWordSet, long[]> cache = this.cache;
         CountedSubsets countedSubsets[] = new CountedSubsets[definitions.length];
         CachedWordSet cacheObj;
-        int counts[];
+        long counts[];
         String singleWordSet[][] = new String[1][];
         SegmentationDefinition singleDefinition[] = new SegmentationDefinition[1];
         for (int i = 0; i < definitions.length; ++i) {
-            cacheObj = new CachedWordSet(wordsets[i]);
+            cacheObj = new CachedWordSet(wordsets[i], definitions[i].lattice);
             counts = cache.getIfPresent(cacheObj);
             if (counts != null) {
-                countedSubsets[i] = new CountedSubsets(definitions[i].segments, definitions[i].conditions, counts);
+                countedSubsets[i] = new CountedSubsets(definitions[i], counts);
             } else {
                 singleWordSet[0] = wordsets[i];
                 singleDefinition[0] = definitions[i];
@@ -62,11 +127,61 @@ public class FrequencyCachingDeterminerDecorator extends AbstractSlidingWindowFr
         return countedSubsets;
     }
 
-    protected class CachedWordSet {
+    /**
+     * Discards the cached counts of word ids if the given vocabulary belongs
+     * to another corpus version than the cached ids.
+     */
+    protected void checkWordIdsVersion(CorpusVocabulary vocabulary) {
+        long version = vocabulary.getCorpusVersion();
+        if (version != wordIdsVersion) {
+            synchronized (this) {
+                if (version != wordIdsVersion) {
+                    wordIdCache = CacheBuilder.newBuilder().maximumSize(cacheSize).build();
+                    wordIdsVersion = version;
+                }
+            }
+        }
+    }
+
+    @Override
+    public CountedSubsets[] determineCounts(int[][] wordsets, CorpusVocabulary vocabulary,
+            SegmentationDefinition[] definitions) {
+        // the cache can not tell whether the ids are still valid
+        checkVocabulary(vocabulary);
+        checkCooccurrenceCounts();
+        checkWordIdsVersion(vocabulary);
+        Cache<CachedWordIdSet, long[]> wordIdCache = this.wordIdCache;
+        CountedSubsets countedSubsets[] = new CountedSubsets[definitions.length];
+        CachedWordIdSet cacheObj;
+        long counts[];
+        int singleWordSet[][] = new int[1][];
+        SegmentationDefinition singleDefinition[] = new SegmentationDefinition[1];
+        for (int i = 0; i < definitions.length; ++i) {
+            cacheObj = new CachedWordIdSet(wordsets[i], vocabulary.getCorpusVersion(), definitions[i].lattice);
+            counts = wordIdCache.getIfPresent(cacheObj);
+            if (counts != null) {
+                countedSubsets[i] = new CountedSubsets(definitions[i], counts);
+            } else {
+                singleWordSet[0] = wordsets[i];
+                singleDefinition[0] = definitions[i];
+                countedSubsets[i] = this.determiner.determineCounts(singleWordSet, vocabulary, singleDefinition)[0];
+                wordIdCache.put(cacheObj, countedSubsets[i].counts);
+            }
+        }
+        return countedSubsets;
+    }
+
+    /**
+     * The counts of a word set depend on the lattice of its definition (if
+     * there is one) since it defines the subsets that are counted.
+     */
+    protected static class CachedWordSet {
         public String words[];
+        public SubsetLattice lattice;
 
-        public CachedWordSet(String[] words) {
+        public CachedWordSet(String[] words, SubsetLattice lattice) {
             this.words = words;
+            this.lattice = lattice;
         }
 
         @Override
@@ -74,6 +189,7 @@ public class FrequencyCachingDeterminerDecorator extends AbstractSlidingWindowFr
             final int prime = 31;
             int result = 1;
             result = prime * result + Arrays.hashCode(words);
+            result = prime * result + ((lattice == null) ? 0 : lattice.hashCode());
             return result;
         }
 
@@ -88,7 +204,43 @@ public class FrequencyCachingDeterminerDecorator extends AbstractSlidingWindowFr
             CachedWordSet other = (CachedWordSet) obj;
             if (!Arrays.equals(words, other.words))
                 return false;
+            if (lattice == null) {
+                if (other.lattice != null)
+                    return false;
+            } else if (!lattice.equals(other.lattice))
+                return false;
             return true;
         }
     }
+
+    protected static class CachedWordIdSet {
+        public int wordIds[];
+        public long corpusVersion;
+        public SubsetLattice lattice;
+
+        public CachedWordIdSet(int[] wordIds, long corpusVersion, SubsetLattice lattice) {
+            this.wordIds = wordIds;
+            this.corpusVersion = corpusVersion;
+            this.lattice = lattice;
+        }
+
+        @Override
+        public int hashCode() {
+            return (31 * Arrays.hashCode(wordIds)) + ((lattice == null) ? 0 : lattice.hashCode());
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+            if (obj == null)
+                return false;
+            if (getClass() != obj.getClass())
+                return false;
+            CachedWordIdSet other = (CachedWordIdSet) obj;
+            if ((corpusVersion != other.corpusVersion) || !Arrays.equals(wordIds, other.wordIds))
+                return false;
+            return (lattice == null) ? (other.lattice == null) : lattice.equals(other.lattice);
+        }
+    }
 }
@@ -0,0 +1,353 @@
+/**
+ * This file is part of Palmetto.
+ *
+ * Palmetto is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Palmetto is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Palmetto.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.aksw.palmetto.prob.decorator;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.aksw.palmetto.corpus.CorpusVocabulary;
+import org.aksw.palmetto.corpus.PairCounts;
+import org.aksw.palmetto.data.CountedSubsets;
+import org.aksw.palmetto.data.SegmentationDefinition;
+import org.aksw.palmetto.data.SubsetLattice;
+import org.aksw.palmetto.prob.FrequencyDeterminer;
+import org.aksw.palmetto.prob.bd.BooleanDocumentFrequencyDeterminer;
+import org.aksw.palmetto.prob.window.BooleanSlidingWindowFrequencyDeterminer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A decorator that answers the requests of its determiner using precomputed
+ * {@link PairCounts}. A word set is answered from the pair counts if all its
+ * words are part of their vocabulary and its segmentation needs only the
+ * counts of single words and pairs of words (e.g., the one-one
+ * segmentations). All other word sets are handed to the decorated determiner.
+ * 
+ * <p>
+ * The model of the pair counts is chosen based on the decorated determiner. A
+ * {@link BooleanSlidingWindowFrequencyDeterminer} uses the counts of its
+ * current window size while a {@link BooleanDocumentFrequencyDeterminer} uses
+ * the boolean document counts. If the pair counts do not contain this model or
+ * their number of documents or windows differs from the determiner (e.g.,
+ * because documents have been added to the index after the pair counts have
+ * been created), all requests are handed to the decorated determiner. The
+ * mismatch is logged once and checked again only if the pair counts, the
+ * model, the total of the determiner or the minimum frequency changes.
+ * </p>
+ * 
+ * <p>
+ * Pair counts that have been created with a minimum count (see
+ * {@link PairCounts#getMinCount()}) do not contain the pairs that occur less
+ * often, i.e., these pairs get a count of 0. This is only correct if the
+ * probability supplier ignores these counts anyway. Thus, the decorator needs
+ * the minimum frequency of the supplier (see {@link #setMinFrequency(int)})
+ * and hands all requests to the decorated determiner if the minimum count of
+ * the pair counts is larger.
+ * </p>
+ * 
+ * @author Michael R&ouml;der (roeder@informatik.uni-leipzig.de)
+ *
+ */
+public class PairCountsDeterminerDecorator extends AbstractSlidingWindowFrequencyDeterminerDecorator implements
+        BooleanDocumentFrequencyDeterminer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PairCountsDeterminerDecorator.class);
+
+    protected static final int NO_MODEL = -1;
+    /**
+     * The default minimum frequency which expects exact counts from the pair
+     * counts.
+     */
+    public static final int DEFAULT_MIN_FREQUENCY = 1;
+
+    private PairCounts pairCounts;
+    /**
+     * The minimum frequency of the probability supplier, i.e., counts below
+     * this frequency are ignored and do not have to be exact.
+     */
+    private volatile int minFrequency;
+    /**
+     * The result of the last check whether the pair counts match the
+     * decorated determiner. The check is only repeated (and a mismatch only
+     * logged again) if the pair counts, the model or the total of the
+     * determiner changed.
+     */
+    private volatile ModelCheck lastCheck;
+    /**
+     * The statistics are updated by all threads that use this decorator.
+     */
+    private AtomicLong answeredWordsets = new AtomicLong();
+    private AtomicLong delegatedWordsets = new AtomicLong();
+
+    public PairCountsDeterminerDecorator(FrequencyDeterminer determiner, PairCounts pairCounts) {
+        this(determiner, pairCounts, DEFAULT_MIN_FREQUENCY);
+    }
+
+    public PairCountsDeterminerDecorator(FrequencyDeterminer determiner, PairCounts pairCounts, int minFrequency) {
+        super(determiner);
+        this.pairCounts = pairCounts;
+        this.minFrequency = minFrequency;
+    }
+
+    @Override
+    public CountedSubsets[] determineCounts(String[][] wordsets, SegmentationDefinition[] definitions) {
+        int model = getModel();
+        if (model == NO_MODEL) {
+            delegatedWordsets.addAndGet(wordsets.length);
+            return determiner.determineCounts(wordsets, definitions);
+        }
+        CountedSubsets countedSubsets[] = new CountedSubsets[definitions.length];
+        int delegated[] = new int[definitions.length];
+        int numberOfDelegated = 0;
+        int wordIds[];
+        for (int i = 0; i < definitions.length; ++i) {
+            wordIds = getWordIds(wordsets[i]);
+            if ((wordIds != null) && needsOnlyPairs(definitions[i])) {
+                countedSubsets[i] = new CountedSubsets(definitions[i], determineCounts(model, wordIds,
+                        definitions[i].lattice));
+            } else {
+                delegated[numberOfDelegated] = i;
+                ++numberOfDelegated;
+            }
+        }
+        answeredWordsets.addAndGet(definitions.length - numberOfDelegated);
+        delegatedWordsets.addAndGet(numberOfDelegated);
+        if (numberOfDelegated > 0) {
+            // hand all remaining word sets to the determiner at once
+            String remainingWordsets[][] = new String[numberOfDelegated][];
+            SegmentationDefinition remainingDefinitions[] = new SegmentationDefinition[numberOfDelegated];
+            for (int i = 0; i < numberOfDelegated; ++i) {
+                remainingWordsets[i] = wordsets[delegated[i]];
+                remainingDefinitions[i] = definitions[delegated[i]];
+            }
+            CountedSubsets delegatedCounts[] = determiner.determineCounts(remainingWordsets, remainingDefinitions);
+            for (int i = 0; i < numberOfDelegated; ++i) {
+                countedSubsets[delegated[i]] = delegatedCounts[i];
+            }
+        }
+        return countedSubsets;
+    }
+
+    /**
+     * The ids of the given word sets belong to the vocabulary of the corpus
+     * adapter of the decorated determiner, i.e., these requests are handed to
+     * the decorated determiner.
+     */
+    @Override
+    public CountedSubsets[] determineCounts(int[][] wordsets, CorpusVocabulary vocabulary,
+            SegmentationDefinition[] definitions) {
+        delegatedWordsets.addAndGet(wordsets.length);
+        return determiner.determineCounts(wordsets, vocabulary, definitions);
+    }
+
+    /**
+     * Returns the ids of the given words inside the pair counts or null if
+     * one of the words is not known.
+     */
+    protected int[] getWordIds(String wordset[]) {
+        int wordIds[] = new int[wordset.length];
+        for (int i = 0; i < wordset.length; ++i) {
+            wordIds[i] = pairCounts.getWordId(wordset[i]);
+            if (wordIds[i] == PairCounts.UNKNOWN_WORD_ID) {
+                return null;
+            }
+        }
+        return wordIds;
+    }
+
+    /**
+     * Returns true if the given definition needs only the counts of single
+     * words and pairs of words.
+     */
+    protected static boolean needsOnlyPairs(SegmentationDefinition definition) {
+        if (definition.lattice != null) {
+            return definition.lattice.getNumberOfLargeSubsets() == 0;
+        }
+        for (int i = 0; i < definition.segments.length; ++i) {
+            if (Integer.bitCount(definition.segments[i]) > 2) {
+                return false;
+            }
+            for (int j = 0; j < definition.conditions[i].length; ++j) {
+                if (Integer.bitCount(definition.segments[i] | definition.conditions[i][j]) > 2) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Creates the counts of all single words and pairs of words of the given
+     * word set. The counts of larger subsets are not set. If a lattice is
+     * given, the counts are stored at its slots.
+     */
+    protected long[] determineCounts(int model, int wordIds[], SubsetLattice lattice) {
+        if (lattice == null) {
+            return determineCounts(model, wordIds);
+        }
+        long counts[] = new long[lattice.size()];
+        for (int i = 0; i < wordIds.length; ++i) {
+            counts[lattice.getSingle(i)] = pairCounts.getCount(model, wordIds[i]);
+            for (int j = i + 1; j < wordIds.length; ++j) {
+                counts[lattice.getPair(i, j)] = pairCounts.getCount(model, wordIds[i], wordIds[j]);
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Creates the counts of all single words and pairs of words of the given
+     * word set. The counts of larger subsets are not set.
+     */
+    protected long[] determineCounts(int model, int wordIds[]) {
+        long counts[] = new long[1 << wordIds.length];
+        for (int i = 0; i < wordIds.length; ++i) {
+            counts[1 << i] = pairCounts.getCount(model, wordIds[i]);
+            for (int j = i + 1; j < wordIds.length; ++j) {
+                counts[(1 << i) | (1 << j)] = pairCounts.getCount(model, wordIds[i], wordIds[j]);
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Returns the model of the pair counts that matches the decorated
+     * determiner or {@link #NO_MODEL} if the pair counts can not be used.
+     */
+    protected int getModel() {
+        PairCounts pairCounts = this.pairCounts;
+        if (pairCounts == null) {
+            return NO_MODEL;
+        }
+        FrequencyDeterminer baseDeterminer = determiner;
+        while (baseDeterminer instanceof FrequencyDeterminerDecorator) {
+            baseDeterminer = ((FrequencyDeterminerDecorator) baseDeterminer).getDeterminer();
+        }
+        int model;
+        long total;
+        if (baseDeterminer instanceof BooleanSlidingWindowFrequencyDeterminer) {
+            model = ((BooleanSlidingWindowFrequencyDeterminer) baseDeterminer).getWindowSize();
+            long sums[] = ((BooleanSlidingWindowFrequencyDeterminer) baseDeterminer).getCooccurrenceCounts();
+            total = ((sums != null) && (sums.length > 0)) ? sums[0] : -1;
+        } else if (baseDeterminer instanceof BooleanDocumentFrequencyDeterminer) {
+            model = PairCounts.BOOLEAN_DOCUMENT_MODEL;
+            total = ((BooleanDocumentFrequencyDeterminer) baseDeterminer).getNumberOfDocuments();
+        } else {
+            return NO_MODEL;
+        }
+        int minFrequency = this.minFrequency;
+        ModelCheck check = lastCheck;
+        if ((check != null) && (check.pairCounts == pairCounts) && (check.model == model)
+                && (check.total == total) && (check.minFrequency == minFrequency)) {
+            return check.result;
+        }
+        int result = checkModel(pairCounts, model, total, minFrequency);
+        lastCheck = new ModelCheck(pairCounts, model, total, minFrequency, result);
+        return result;
+    }
+
+    /**
+     * Returns the given model if the given pair counts contain it, their
+     * total matches the given total of the decorated determiner and they
+     * contain all pairs that reach the given minimum frequency. Otherwise, a
+     * mismatch is logged and {@link #NO_MODEL} is returned.
+     */
+    protected int checkModel(PairCounts pairCounts, int model, long total, int minFrequency) {
+        if (!pairCounts.hasModel(model)) {
+            return NO_MODEL;
+        }
+        if (pairCounts.getTotal(model) != total) {
+            LOGGER.warn("The pair counts do not match the corpus (" + pairCounts.getTotal(model) + " != " + total
+                    + " documents or windows). They won't be used.");
+            return NO_MODEL;
+        }
+        // pairs with a count below 1 are not missing
+        if (pairCounts.getMinCount() > Math.max(1, minFrequency)) {
+            LOGGER.warn("The pair counts have been created with a minimum count of " + pairCounts.getMinCount()
+                    + " which is larger than the minimum frequency " + minFrequency
+                    + ". They won't be used since they miss pairs that would be counted.");
+            return NO_MODEL;
+        }
+        return model;
+    }
+
+    @Override
+    public int getNumberOfDocuments() {
+        if (determiner instanceof BooleanDocumentFrequencyDeterminer) {
+            return ((BooleanDocumentFrequencyDeterminer) determiner).getNumberOfDocuments();
+        } else if ((pairCounts != null) && pairCounts.hasModel(PairCounts.BOOLEAN_DOCUMENT_MODEL)) {
+            return (int) pairCounts.getTotal(PairCounts.BOOLEAN_DOCUMENT_MODEL);
+        } else {
+            return 0;
+        }
+    }
+
+    public PairCounts getPairCounts() {
+        return pairCounts;
+    }
+
+    public void setPairCounts(PairCounts pairCounts) {
+        this.pairCounts = pairCounts;
+    }
+
+    public int getMinFrequency() {
+        return minFrequency;
+    }
+
+    /**
+     * Sets the minimum frequency of the probability supplier that uses this
+     * decorator.
+     */
+    public void setMinFrequency(int minFrequency) {
+        this.minFrequency = minFrequency;
+    }
+
+    /**
+     * Returns the number of word sets that have been answered using the pair
+     * counts.
+     */
+    public long getNumberOfAnsweredWordsets() {
+        return answeredWordsets.get();
+    }
+
+    /**
+     * Returns the number of word sets that have been handed to the decorated
+     * determiner.
+     */
+    public long getNumberOfDelegatedWordsets() {
+        return delegatedWordsets.get();
+    }
+
+    /**
+     * The result of checking the given pair counts against the model, the
+     * total of the decorated determiner and the minimum frequency.
+     */
+    private static class ModelCheck {
+        public final PairCounts pairCounts;
+        public final int model;
+        public final long total;
+        public final int minFrequency;
+        public final int result;
+
+        public ModelCheck(PairCounts pairCounts, int model, long total, int minFrequency, int result) {
+            this.pairCounts = pairCounts;
+            this.model = model;
+            this.total = total;
+            this.minFrequency = minFrequency;
+            this.result = result;
+        }
+    }
+}
@@ -16,47 +16,157 @@
  */
 package org.aksw.palmetto.prob.decorator;
 
-import java.util.Arrays;
-
+import org.aksw.palmetto.corpus.CorpusVocabulary;
 import org.aksw.palmetto.data.CountedSubsets;
 import org.aksw.palmetto.data.SegmentationDefinition;
 import org.aksw.palmetto.prob.FrequencyDeterminer;
+import org.aksw.palmetto.prob.decorator.FrequencyCachingDeterminerDecorator.CachedWordIdSet;
+import org.aksw.palmetto.prob.decorator.FrequencyCachingDeterminerDecorator.CachedWordSet;
 
-import com.carrotsearch.hppc.IntObjectOpenHashMap;
+import com.carrotsearch.hppc.ObjectObjectOpenHashMap;
 
 /**
  * This decorator implements a very simple cache. Note that it has
  * disadvantages, e.g., it will never stop growing. Thus, the
  * {@link org.aksw.palmetto.prob.decorator.FrequencyCachingDeterminerDecorator}
- * should be used instead.
+ * should be used instead. The maps of the cache are guarded by their own
+ * monitors, i.e., the decorator can be used by several threads. Note that two
+ * threads requesting the same word set at the same time might both hand it to
+ * the decorated determiner.
+ * 
+ * <p>
+ * The cached counts are the counts the decorated determiner returned. Some
+ * determiners skip counts below the minimum frequency of their probability
+ * supplier (e.g., the
+ * {@link org.aksw.palmetto.prob.bd.PackedBitSetBasedBooleanDocumentFrequencyDeterminer}),
+ * i.e., the cached counts depend on this pruning threshold. The cache should
+ * not be shared by suppliers with different minimum frequencies and has to be
+ * invalidated if the minimum frequency is changed.
+ * </p>
  * 
  * @author Michael R&ouml;der (roeder@informatik.uni-leipzig.de)
  *
  */
 public class SimpleFrequencyCachingDeterminerDecorator extends AbstractSlidingWindowFrequencyDeterminerDecorator {
 
-    private IntObjectOpenHashMap<int[]> cache = new IntObjectOpenHashMap<int[]>();
+    private volatile ObjectObjectOpenHashMap<CachedWordSet, long[]> cache = new ObjectObjectOpenHashMap<CachedWordSet, long[]>();
+    private volatile ObjectObjectOpenHashMap<CachedWordIdSet, long[]> wordIdCache = new ObjectObjectOpenHashMap<CachedWordIdSet, long[]>();
+    /**
+     * The sums of the counts of the decorated determiner the cached counts
+     * belong to. If the determiner returns other sums, e.g., because its
+     * corpus adapter has been reopened or its window size has been changed,
+     * the cached counts are discarded.
+     */
+    private volatile long cooccurrenceCounts[];
+    /**
+     * The corpus version of the vocabulary the cached word ids belong to.
+     */
+    private volatile long wordIdsVersion = CorpusVocabulary.NO_VERSION;
 
     public SimpleFrequencyCachingDeterminerDecorator(FrequencyDeterminer determiner) {
         super(determiner);
+        cooccurrenceCounts = getCooccurrenceCounts();
+    }
+
+    /**
+     * Discards all cached counts. The decorator can detect a change of the
+     * corpus only if the decorated determiner is window based, i.e., this
+     * method has to be called if the corpus of another determiner changed.
+     * Requests that are still running put their counts into the discarded
+     * maps.
+     */
+    public void invalidateCache() {
+        cache = new ObjectObjectOpenHashMap<CachedWordSet, long[]>();
+        wordIdCache = new ObjectObjectOpenHashMap<CachedWordIdSet, long[]>();
+    }
+
+    /**
+     * Discards the cached counts if the sums of the counts of the decorated
+     * determiner changed since they have been cached.
+     */
+    protected void checkCooccurrenceCounts() {
+        long sums[] = getCooccurrenceCounts();
+        if (sums != cooccurrenceCounts) {
+            synchronized (this) {
+                if (sums != cooccurrenceCounts) {
+                    invalidateCache();
+                    cooccurrenceCounts = sums;
+                }
+            }
+        }
     }
 
     @Override
     public CountedSubsets[] determineCounts(String[][] wordsets, SegmentationDefinition[] definitions) {
+        checkCooccurrenceCounts();
+        ObjectObjectOpenHashMap<CachedWordSet, long[]> cache = this.cache;
         CountedSubsets countedSubsets[] = new CountedSubsets[definitions.length];
-        int wordSetHash;
+        CachedWordSet cacheObj;
+        long counts[];
         String singleWordSet[][] = new String[1][];
         SegmentationDefinition singleDefinition[] = new SegmentationDefinition[1];
         for (int i = 0; i < definitions.length; ++i) {
-            wordSetHash = Arrays.hashCode(wordsets[i]);
-            if (cache.containsKey(wordSetHash)) {
-                countedSubsets[i] = new CountedSubsets(definitions[i].segments, definitions[i].conditions,
-                        cache.get(wordSetHash));
+            cacheObj = new CachedWordSet(wordsets[i], definitions[i].lattice);
+            synchronized (cache) {
+                counts = cache.get(cacheObj);
+            }
+            if (counts != null) {
+                countedSubsets[i] = new CountedSubsets(definitions[i], counts);
             } else {
                 singleWordSet[0] = wordsets[i];
                 singleDefinition[0] = definitions[i];
                 countedSubsets[i] = this.determiner.determineCounts(singleWordSet, singleDefinition)[0];
-                cache.put(wordSetHash, countedSubsets[i].counts);
+                synchronized (cache) {
+                    cache.put(cacheObj, countedSubsets[i].counts);
+                }
+            }
+        }
+        return countedSubsets;
+    }
+
+    /**
+     * Discards the cached counts of word ids if the given vocabulary belongs
+     * to another corpus version than the cached ids.
+     */
+    protected void checkWordIdsVersion(CorpusVocabulary vocabulary) {
+        long version = vocabulary.getCorpusVersion();
+        if (version != wordIdsVersion) {
+            synchronized (this) {
+                if (version != wordIdsVersion) {
+                    wordIdCache = new ObjectObjectOpenHashMap<CachedWordIdSet, long[]>();
+                    wordIdsVersion = version;
+                }
+            }
+        }
+    }
+
+    @Override
+    public CountedSubsets[] determineCounts(int[][] wordsets, CorpusVocabulary vocabulary,
+            SegmentationDefinition[] definitions) {
+        // the cache can not tell whether the ids are still valid
+        checkVocabulary(vocabulary);
+        checkCooccurrenceCounts();
+        checkWordIdsVersion(vocabulary);
+        ObjectObjectOpenHashMap<CachedWordIdSet, long[]> wordIdCache = this.wordIdCache;
+        CountedSubsets countedSubsets[] = new CountedSubsets[definitions.length];
+        CachedWordIdSet cacheObj;
+        long counts[];
+        int singleWordSet[][] = new int[1][];
+        SegmentationDefinition singleDefinition[] = new SegmentationDefinition[1];
+        for (int i = 0; i < definitions.length; ++i) {
+            cacheObj = new CachedWordIdSet(wordsets[i], vocabulary.getCorpusVersion(), definitions[i].lattice);
+            synchronized (wordIdCache) {
+                counts = wordIdCache.get(cacheObj);
+            }
+            if (counts != null) {
+                countedSubsets[i] = new CountedSubsets(definitions[i], counts);
+            } else {
+                singleWordSet[0] = wordsets[i];
+                singleDefinition[0] = definitions[i];
+                countedSubsets[i] = this.determiner.determineCounts(singleWordSet, vocabulary, singleDefinition)[0];
+                synchronized (wordIdCache) {
+                    wordIdCache.put(cacheObj, countedSubsets[i].counts);
+                }
             }
         }
         return countedSubsets;
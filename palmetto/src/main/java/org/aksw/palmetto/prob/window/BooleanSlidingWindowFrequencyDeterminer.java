@@ -18,9 +18,17 @@ package org.aksw.palmetto.prob.window;
 
 import java.util.Arrays;
 
+import org.aksw.palmetto.corpus.CorpusStatistics;
+import org.aksw.palmetto.corpus.CorpusVocabulary;
+import org.aksw.palmetto.corpus.DocumentPositionsConsumer;
+import org.aksw.palmetto.corpus.StreamingWindowSupportingAdapter;
+import org.aksw.palmetto.corpus.StatisticsSupportingAdapter;
+import org.aksw.palmetto.corpus.TermWindowCounts;
+import org.aksw.palmetto.corpus.TermWindowCountsSupportingAdapter;
 import org.aksw.palmetto.corpus.WindowSupportingAdapter;
 import org.aksw.palmetto.data.CountedSubsets;
 import org.aksw.palmetto.data.SegmentationDefinition;
+import org.aksw.palmetto.data.SubsetLattice;
 
 import com.carrotsearch.hppc.IntArrayList;
 import com.carrotsearch.hppc.IntIntOpenHashMap;
@@ -31,6 +39,23 @@ public class BooleanSlidingWindowFrequencyDeterminer implements WindowBasedFrequ
     protected WindowSupportingAdapter corpusAdapter;
     protected int windowSize;
     protected long wordSetCountSums[];
+    /**
+     * The statistics or histogram of the corpus the sums of the counts have
+     * been determined from. If the adapter returns a different object, e.g.,
+     * because it has been reopened, the sums are determined again.
+     */
+    protected volatile Object wordSetCountSumsSource;
+    /**
+     * Flag indicating whether the positions of the union vocabulary of several
+     * word sets should be requested at once instead of requesting them for
+     * every word set separately.
+     */
+    protected boolean useUnionVocabulary = true;
+    /**
+     * Flag indicating whether the {@link TermWindowCounts} offered by the
+     * adapter should be used for the counts of single words.
+     */
+    protected boolean useTermWindowCounts = true;
 
     public BooleanSlidingWindowFrequencyDeterminer(WindowSupportingAdapter corpusAdapter, int windowSize) {
         this.corpusAdapter = corpusAdapter;
@@ -40,32 +65,227 @@ public class BooleanSlidingWindowFrequencyDeterminer implements WindowBasedFrequ
     @Override
     public CountedSubsets[] determineCounts(String[][] wordsets, SegmentationDefinition[] definitions) {
         CountedSubsets countedSubsets[] = new CountedSubsets[definitions.length];
+        if (useUnionVocabulary && (wordsets.length > 1)) {
+            long counts[][] = determineCountsOfUnionVocabulary(wordsets, getLattices(definitions));
+            for (int i = 0; i < definitions.length; ++i) {
+                countedSubsets[i] = new CountedSubsets(definitions[i], counts[i]);
+            }
+        } else {
+            for (int i = 0; i < definitions.length; ++i) {
+                countedSubsets[i] = new CountedSubsets(definitions[i], determineCounts(wordsets[i],
+                        definitions[i].lattice));
+            }
+        }
+        return countedSubsets;
+    }
+
+    /**
+     * Determines the counts of the given word sets. The positions of all words
+     * are requested at once, i.e., the union vocabulary is always used.
+     */
+    @Override
+    public CountedSubsets[] determineCounts(int[][] wordsets, CorpusVocabulary vocabulary,
+            SegmentationDefinition[] definitions) {
+        checkVocabulary(vocabulary);
+        long counts[][] = determineCountsOfUnionVocabulary(UnionVocabularyWordPositions.create(vocabulary, wordsets),
+                getLattices(definitions));
+        CountedSubsets countedSubsets[] = new CountedSubsets[definitions.length];
         for (int i = 0; i < definitions.length; ++i) {
-            countedSubsets[i] = new CountedSubsets(definitions[i].segments,
-                    definitions[i].conditions, determineCounts(wordsets[i]));
+            countedSubsets[i] = new CountedSubsets(definitions[i], counts[i]);
         }
         return countedSubsets;
     }
 
-    protected int[] determineCounts(String wordset[]) {
-        int counts[] = new int[(1 << wordset.length)];
-        IntArrayList positions[];
-        IntIntOpenHashMap docLengths = new IntIntOpenHashMap();
-        IntObjectOpenHashMap<IntArrayList[]> positionsInDocs = corpusAdapter.requestWordPositionsInDocuments(wordset,
-                docLengths);
-        for (int i = 0; i < positionsInDocs.keys.length; ++i) {
-            if (positionsInDocs.allocated[i]) {
-                positions = ((IntArrayList[]) ((Object[]) positionsInDocs.values)[i]);
-                addCountsFromDocument(positions, counts, docLengths.get(positionsInDocs.keys[i]));
+    @Override
+    public void checkVocabulary(CorpusVocabulary vocabulary) {
+        vocabulary.checkIsCurrent(corpusAdapter);
+    }
+
+    /**
+     * Returns the lattices of the given definitions. The lattice of a
+     * definition with dense subsets is null.
+     */
+    protected static SubsetLattice[] getLattices(SegmentationDefinition definitions[]) {
+        SubsetLattice lattices[] = new SubsetLattice[definitions.length];
+        for (int i = 0; i < definitions.length; ++i) {
+            lattices[i] = definitions[i].lattice;
+        }
+        return lattices;
+    }
+
+    /**
+     * Creates the counts array for a word set with the given number of words
+     * and the given lattice (or null if the subsets are dense).
+     */
+    protected static long[] createCounts(int numberOfWords, SubsetLattice lattice) {
+        return (lattice != null) ? new long[lattice.size()] : new long[1 << numberOfWords];
+    }
+
+    /**
+     * Determines the counts of all given word sets by requesting the positions
+     * of their union vocabulary only once.
+     */
+    protected long[][] determineCountsOfUnionVocabulary(String wordsets[][], SubsetLattice lattices[]) {
+        return determineCountsOfUnionVocabulary(UnionVocabularyWordPositions.create(wordsets), lattices);
+    }
+
+    /**
+     * Determines the counts of all word sets of the given union vocabulary. If
+     * its positions have not been requested, yet, they are streamed from the
+     * adapter document by document (if the adapter supports it). If the
+     * adapter offers the {@link TermWindowCounts} of the single words, only
+     * documents containing at least two words of a word set are retrieved.
+     */
+    protected long[][] determineCountsOfUnionVocabulary(final UnionVocabularyWordPositions unionPositions,
+            final SubsetLattice lattices[]) {
+        final int wordsets[][] = unionPositions.wordIdsOfWordsets;
+        final long counts[][] = new long[wordsets.length][];
+        for (int i = 0; i < wordsets.length; ++i) {
+            counts[i] = createCounts(wordsets[i].length, lattices[i]);
+        }
+        TermWindowCounts termWindowCounts = null;
+        if (unionPositions.positionsInDocs == null) {
+            termWindowCounts = getTermWindowCounts();
+        }
+        // documents with a single word only contribute to the counts of single words
+        final int minNumberOfWords = (termWindowCounts != null) ? 2 : 1;
+        DocumentPositionsConsumer consumer = new DocumentPositionsConsumer() {
+            @Override
+            public void consumeDocument(int docId, IntArrayList docPositions[], int docLength) {
+                IntArrayList positions[];
+                for (int j = 0; j < wordsets.length; ++j) {
+                    positions = unionPositions.getPositionsOfWordset(j, docPositions);
+                    if ((positions != null) && (countWordsOfDocument(positions) >= minNumberOfWords)) {
+                        addCountsFromDocument(positions, counts[j], docLength, lattices[j]);
+                    }
+                }
+            }
+        };
+        if (unionPositions.positionsInDocs != null) {
+            unionPositions.consumePositions(consumer);
+        } else if (termWindowCounts != null) {
+            // a word set containing a word twice has to see documents containing only this word
+            ((StreamingWindowSupportingAdapter) corpusAdapter).streamWordPositionsInDocuments(
+                    unionPositions.vocabulary, containsDuplicateWords(wordsets) ? 1 : 2, consumer);
+        } else {
+            unionPositions.consumePositions(corpusAdapter, consumer);
+        }
+        for (int i = 0; i < counts.length; ++i) {
+            // the counts of a lattice already contain the counts of the larger word sets
+            if (lattices[i] == null) {
+                addCountsOfSubsets(counts[i]);
+            }
+        }
+        if (termWindowCounts != null) {
+            for (int i = 0; i < wordsets.length; ++i) {
+                for (int j = 0; j < wordsets[i].length; ++j) {
+                    if (wordsets[i][j] == CorpusVocabulary.UNKNOWN_WORD_ID) {
+                        counts[i][getSingle(j, lattices[i])] = 0;
+                    } else {
+                        counts[i][getSingle(j, lattices[i])] = termWindowCounts.getWindowCount(
+                                unionPositions.vocabulary[wordsets[i][j]], windowSize);
+                    }
+                }
+            }
+        }
+        return counts;
+    }
+
+    protected long[] determineCounts(String wordset[], final SubsetLattice lattice) {
+        final long counts[] = createCounts(wordset.length, lattice);
+        TermWindowCounts termWindowCounts = getTermWindowCounts();
+        DocumentPositionsConsumer consumer = new DocumentPositionsConsumer() {
+            @Override
+            public void consumeDocument(int docId, IntArrayList positions[], int docLength) {
+                addCountsFromDocument(positions, counts, docLength, lattice);
+            }
+        };
+        if (termWindowCounts != null) {
+            // documents with a single word only contribute to the counts of single words
+            ((StreamingWindowSupportingAdapter) corpusAdapter).streamWordPositionsInDocuments(wordset, 2, consumer);
+        } else if (corpusAdapter instanceof StreamingWindowSupportingAdapter) {
+            ((StreamingWindowSupportingAdapter) corpusAdapter).streamWordPositionsInDocuments(wordset, consumer);
+        } else {
+            IntArrayList positions[];
+            IntIntOpenHashMap docLengths = new IntIntOpenHashMap();
+            IntObjectOpenHashMap<IntArrayList[]> positionsInDocs = corpusAdapter.requestWordPositionsInDocuments(
+                    wordset, docLengths);
+            for (int i = 0; i < positionsInDocs.keys.length; ++i) {
+                if (positionsInDocs.allocated[i]) {
+                    positions = ((IntArrayList[]) ((Object[]) positionsInDocs.values)[i]);
+                    addCountsFromDocument(positions, counts, docLengths.get(positionsInDocs.keys[i]), lattice);
+                }
+            }
+        }
+        if (lattice == null) {
+            addCountsOfSubsets(counts);
+        }
+        if (termWindowCounts != null) {
+            for (int i = 0; i < wordset.length; ++i) {
+                counts[getSingle(i, lattice)] = termWindowCounts.getWindowCount(wordset[i], windowSize);
             }
         }
-        addCountsOfSubsets(counts);
         return counts;
     }
 
-    protected void addCountsFromDocument(IntArrayList[] positions, int[] counts, int docLength) {
+    /**
+     * Returns the window counts of the single words if they can be used, i.e.,
+     * if their usage is enabled, the adapter can stream the positions of
+     * documents containing at least two words and the counts of the current
+     * window size are available. Otherwise, null is returned.
+     */
+    protected TermWindowCounts getTermWindowCounts() {
+        if (useTermWindowCounts && (corpusAdapter instanceof StreamingWindowSupportingAdapter)
+                && (corpusAdapter instanceof TermWindowCountsSupportingAdapter)) {
+            TermWindowCounts termWindowCounts = ((TermWindowCountsSupportingAdapter) corpusAdapter)
+                    .getTermWindowCounts();
+            if ((termWindowCounts != null) && termWindowCounts.hasWindowSize(windowSize)) {
+                return termWindowCounts;
+            }
+        }
+        return null;
+    }
+
+    protected static int countWordsOfDocument(IntArrayList positions[]) {
+        int count = 0;
+        for (int i = 0; i < positions.length; ++i) {
+            if (positions[i] != null) {
+                ++count;
+            }
+        }
+        return count;
+    }
+
+    protected static boolean containsDuplicateWords(int wordsets[][]) {
+        for (int i = 0; i < wordsets.length; ++i) {
+            for (int j = 0; j < wordsets[i].length; ++j) {
+                for (int k = j + 1; k < wordsets[i].length; ++k) {
+                    if ((wordsets[i][j] == wordsets[i][k]) && (wordsets[i][j] != CorpusVocabulary.UNKNOWN_WORD_ID)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private static int getSingle(int word, SubsetLattice lattice) {
+        return (lattice != null) ? lattice.getSingle(word) : (1 << word);
+    }
+
+    /**
+     * Adds the counts of the windows of the given document. The words inside
+     * a window are represented by a bit mask. If a lattice is given, the
+     * counts of all its subsets that are part of a window are increased.
+     * Otherwise, only the count of the exact word combination of a window is
+     * increased and the counts have to be added to the subsets afterwards
+     * (see {@link #addCountsOfSubsets(long[])}).
+     */
+    protected void addCountsFromDocument(IntArrayList[] positions, long[] counts, int docLength,
+            SubsetLattice lattice) {
+        long windowWords[] = (lattice != null) ? lattice.createWordMask() : new long[1];
         if (docLength <= windowSize) {
-            addCountsFromSmallDocument(positions, counts);
+            addCountsFromSmallDocument(positions, counts, windowWords, lattice);
             return;
         }
         int posInList[] = new int[positions.length + 1];
@@ -86,18 +306,18 @@ public class BooleanSlidingWindowFrequencyDeterminer implements WindowBasedFrequ
         IntArrayList wordIdsInWindow = new IntArrayList(wordCount < windowSize ? wordCount : windowSize);
         IntArrayList wordPositionsInWindow = new IntArrayList(wordCount < windowSize ? wordCount : windowSize);
         int romaveableWordsPosId = posInList.length - 1;
-        int windowWords = 0;
-        int lastWordPos, wordEndPos;
+        int lastWordPos, wordEndPos, removedWordId;
         boolean countingEnabled = false;
         while (nextWordPos < docLength) {
             // create (or udpate) a signature containing a 1 for every word type inside this window
             // check whether a word will be removed
             if (nextWordId == positions.length) {
-                windowWords &= ~(1 << wordIdsInWindow.buffer[posInList[romaveableWordsPosId]]);
+                removedWordId = wordIdsInWindow.buffer[posInList[romaveableWordsPosId]];
+                windowWords[removedWordId >>> 6] &= ~(1L << removedWordId);
                 ++posInList[romaveableWordsPosId];
             } else {
                 // if this word is already inside the window
-                if ((windowWords & (1 << nextWordId)) > 0) {
+                if ((windowWords[nextWordId >>> 6] & (1L << nextWordId)) != 0) {
                     // we have to remove its first occurrence from the list
                     for (int i = posInList[romaveableWordsPosId]; i < wordIdsInWindow.elementsCount; ++i) {
                         if (wordIdsInWindow.buffer[i] == nextWordId) {
@@ -107,7 +327,7 @@ public class BooleanSlidingWindowFrequencyDeterminer implements WindowBasedFrequ
                     }
                 } else {
                     // add the word
-                    windowWords |= (1 << nextWordId);
+                    windowWords[nextWordId >>> 6] |= (1L << nextWordId);
                 }
                 // add its position to the list of tokens that should be removed (if this would be inside this document)
                 wordEndPos = nextWordPos + windowSize;
@@ -118,7 +338,8 @@ public class BooleanSlidingWindowFrequencyDeterminer implements WindowBasedFrequ
                 // check if on the same position a word should be removed
                 if ((posInList[romaveableWordsPosId] < wordPositionsInWindow.elementsCount)
                         && (wordPositionsInWindow.buffer[posInList[romaveableWordsPosId]] == nextWordPos)) {
-                    windowWords &= ~(1 << wordIdsInWindow.buffer[posInList[romaveableWordsPosId]]);
+                    removedWordId = wordIdsInWindow.buffer[posInList[romaveableWordsPosId]];
+                    windowWords[removedWordId >>> 6] &= ~(1L << removedWordId);
                     ++posInList[romaveableWordsPosId];
                 }
                 ++posInList[nextWordId];
@@ -146,28 +367,49 @@ public class BooleanSlidingWindowFrequencyDeterminer implements WindowBasedFrequ
                 }
                 countingEnabled = true;
             }
-            if ((countingEnabled) && (windowWords != 0)) {
+            if ((countingEnabled) && (!isEmpty(windowWords))) {
                 // increase counts
                 if (nextWordPos < docLength) {
-                    counts[windowWords] += nextWordPos - lastWordPos;
+                    addCount(windowWords, nextWordPos - lastWordPos, counts, lattice);
                 } else {
-                    counts[windowWords] += docLength - lastWordPos;
+                    addCount(windowWords, docLength - lastWordPos, counts, lattice);
                 }
             }
         }
     }
 
-    protected void addCountsFromSmallDocument(IntArrayList[] positions, int[] counts) {
-        int signature = 0;
+    protected void addCountsFromSmallDocument(IntArrayList[] positions, long[] counts, long signature[],
+            SubsetLattice lattice) {
         for (int i = 0; i < positions.length; ++i) {
             if ((positions[i] != null) && (positions[i].size() > 0)) {
-                signature |= 1 << i;
+                signature[i >>> 6] |= 1L << i;
+            }
+        }
+        addCount(signature, 1, counts, lattice);
+    }
+
+    private static boolean isEmpty(long wordMask[]) {
+        for (int i = 0; i < wordMask.length; ++i) {
+            if (wordMask[i] != 0) {
+                return false;
             }
         }
-        ++counts[signature];
+        return true;
     }
 
-    protected void addCountsOfSubsets(int[] counts) {
+    /**
+     * Adds the given count for the given word combination. Without a lattice,
+     * the bit mask is the index of the combination.
+     */
+    private static void addCount(long wordMask[], int count, long counts[], SubsetLattice lattice) {
+        if (lattice != null) {
+            lattice.addCounts(wordMask, count, counts);
+        } else {
+            counts[(int) wordMask[0]] += count;
+        }
+    }
+
+    protected void addCountsOfSubsets(long[] counts) {
         // until now the counts contain only the windows which have exactly the matching word combination
         // --> we have to add the counts of the larger word sets to their subsets
         for (int i = 1; i < counts.length; ++i) {
@@ -183,11 +425,19 @@ public class BooleanSlidingWindowFrequencyDeterminer implements WindowBasedFrequ
     @Override
     public void setWindowSize(int windowSize) {
         this.windowSize = windowSize;
-        determineWordSetCountSum();
+        determineWordSetCountSum(getWordSetCountSumsSource());
     }
 
+    /**
+     * Returns the sums of the counts. They are determined again if the
+     * statistics of the corpus changed since they have been determined.
+     */
     @Override
     public long[] getCooccurrenceCounts() {
+        Object source = getWordSetCountSumsSource();
+        if (source != wordSetCountSumsSource) {
+            determineWordSetCountSum(source);
+        }
         return wordSetCountSums;
     }
 
@@ -209,26 +459,40 @@ public class BooleanSlidingWindowFrequencyDeterminer implements WindowBasedFrequ
     // return (max - min) < this.windowSize;
     // }
 
-    protected void determineWordSetCountSum() {
-        // For determining the sum of the counts we rely on a histogram of documents length and the window size
-        wordSetCountSums = new long[this.windowSize];
-
-        // Go through the histogram, count the number of windows
-        int numberOfWindowsInDocs = 0;
-        int histogram[][] = corpusAdapter.getDocumentSizeHistogram();
-        for (int i = 0; i < histogram.length; ++i) {
-            // If this document is shorter than the window
-            if (histogram[i][0] < this.windowSize) {
-                numberOfWindowsInDocs += histogram[i][1];
-            } else {
-                numberOfWindowsInDocs += histogram[i][1] * (histogram[i][0] - (this.windowSize - 1));
-            }
+    /**
+     * Returns the statistics of the corpus or its document size histogram if
+     * the adapter does not offer statistics.
+     */
+    protected Object getWordSetCountSumsSource() {
+        CorpusStatistics statistics = null;
+        if (corpusAdapter instanceof StatisticsSupportingAdapter) {
+            statistics = ((StatisticsSupportingAdapter) corpusAdapter).getStatistics();
+        }
+        if (statistics != null) {
+            return statistics;
+        } else {
+            return corpusAdapter.getDocumentSizeHistogram();
+        }
+    }
+
+    protected void determineWordSetCountSum(Object source) {
+        // For determining the sum of the counts we rely on the number of windows determined while indexing or on a
+        // histogram of documents length and the window size
+        long sums[] = new long[this.windowSize];
+
+        long numberOfWindowsInDocs;
+        if (source instanceof CorpusStatistics) {
+            numberOfWindowsInDocs = ((CorpusStatistics) source).getNumberOfWindows(this.windowSize);
+        } else {
+            numberOfWindowsInDocs = CorpusStatistics.countWindows((int[][]) source, this.windowSize);
         }
 
         // Determine how many word sets would have been counted using the number of windows
-        for (int i = 0; i < wordSetCountSums.length; ++i) {
-            wordSetCountSums[i] = numberOfWindowsInDocs;
+        for (int i = 0; i < sums.length; ++i) {
+            sums[i] = numberOfWindowsInDocs;
         }
+        wordSetCountSums = sums;
+        wordSetCountSumsSource = source;
     }
 
     // protected int determineCount(IntArrayList[] positions) {
@@ -264,6 +528,35 @@ public class BooleanSlidingWindowFrequencyDeterminer implements WindowBasedFrequ
     // return count;
     // }
 
+    public boolean isUsingUnionVocabulary() {
+        return useUnionVocabulary;
+    }
+
+    /**
+     * Sets whether the positions of the union vocabulary of several word sets
+     * should be requested at once (default). This reduces the number of
+     * requests if the word sets share words. If the adapter is not a
+     * {@link StreamingWindowSupportingAdapter}, all positions have to be held
+     * in memory at the same time.
+     */
+    public void setUseUnionVocabulary(boolean useUnionVocabulary) {
+        this.useUnionVocabulary = useUnionVocabulary;
+    }
+
+    public boolean isUsingTermWindowCounts() {
+        return useTermWindowCounts;
+    }
+
+    /**
+     * Sets whether the window counts of single words determined while indexing
+     * should be used if the adapter offers them (default). In this case, only
+     * documents containing at least two words of a word set have to be
+     * retrieved. The resulting counts are the same.
+     */
+    public void setUseTermWindowCounts(boolean useTermWindowCounts) {
+        this.useTermWindowCounts = useTermWindowCounts;
+    }
+
     @Override
     public int getWindowSize() {
         return windowSize;
@@ -18,9 +18,13 @@ package org.aksw.palmetto.prob.window;
 
 import java.util.Arrays;
 
+import org.aksw.palmetto.corpus.CorpusVocabulary;
+import org.aksw.palmetto.corpus.DocumentPositionsConsumer;
+import org.aksw.palmetto.corpus.StreamingWindowSupportingAdapter;
 import org.aksw.palmetto.corpus.WindowSupportingAdapter;
 import org.aksw.palmetto.data.CountedSubsets;
 import org.aksw.palmetto.data.SegmentationDefinition;
+import org.aksw.palmetto.data.SubsetLattice;
 
 import com.carrotsearch.hppc.IntArrayList;
 import com.carrotsearch.hppc.IntIntOpenHashMap;
@@ -31,6 +35,18 @@ public class ContextWindowFrequencyDeterminer implements WindowBasedFrequencyDet
     private WindowSupportingAdapter corpusAdapter;
     private int windowSize;
     private long wordSetCountSums[];
+    /**
+     * The histogram the sums of the counts have been determined from. If the
+     * adapter returns a different histogram, e.g., because it has been
+     * reopened, the sums are determined again.
+     */
+    private volatile int wordSetCountSumsHistogram[][];
+    /**
+     * Flag indicating whether the positions of the union vocabulary of several
+     * word sets should be requested at once instead of requesting them for
+     * every word set separately.
+     */
+    private boolean useUnionVocabulary = true;
 
     public ContextWindowFrequencyDeterminer(WindowSupportingAdapter corpusAdapter, int windowSize) {
         this.corpusAdapter = corpusAdapter;
@@ -40,29 +56,109 @@ public class ContextWindowFrequencyDeterminer implements WindowBasedFrequencyDet
     @Override
     public CountedSubsets[] determineCounts(String[][] wordsets, SegmentationDefinition[] definitions) {
         CountedSubsets countedSubsets[] = new CountedSubsets[definitions.length];
+        if (useUnionVocabulary && (wordsets.length > 1)) {
+            long counts[][] = determineCountsOfUnionVocabulary(wordsets,
+                    BooleanSlidingWindowFrequencyDeterminer.getLattices(definitions));
+            for (int i = 0; i < definitions.length; ++i) {
+                countedSubsets[i] = new CountedSubsets(definitions[i], counts[i]);
+            }
+        } else {
+            for (int i = 0; i < definitions.length; ++i) {
+                countedSubsets[i] = new CountedSubsets(definitions[i], determineCounts(wordsets[i],
+                        definitions[i].lattice));
+            }
+        }
+        return countedSubsets;
+    }
+
+    /**
+     * Determines the counts of the given word sets. The positions of all words
+     * are requested at once, i.e., the union vocabulary is always used.
+     */
+    @Override
+    public CountedSubsets[] determineCounts(int[][] wordsets, CorpusVocabulary vocabulary,
+            SegmentationDefinition[] definitions) {
+        checkVocabulary(vocabulary);
+        long counts[][] = determineCountsOfUnionVocabulary(UnionVocabularyWordPositions.create(vocabulary, wordsets),
+                BooleanSlidingWindowFrequencyDeterminer.getLattices(definitions));
+        CountedSubsets countedSubsets[] = new CountedSubsets[definitions.length];
         for (int i = 0; i < definitions.length; ++i) {
-            countedSubsets[i] = new CountedSubsets(definitions[i].segments,
-                    definitions[i].conditions, determineCounts(wordsets[i]));
+            countedSubsets[i] = new CountedSubsets(definitions[i], counts[i]);
         }
         return countedSubsets;
     }
 
-    private int[] determineCounts(String wordset[]) {
-        int counts[] = new int[(1 << wordset.length)];
-        IntArrayList positions[];
-        IntIntOpenHashMap docLengths = new IntIntOpenHashMap();
-        IntObjectOpenHashMap<IntArrayList[]> positionsInDocs = corpusAdapter.requestWordPositionsInDocuments(wordset,
-                docLengths);
-        for (int i = 0; i < positionsInDocs.keys.length; ++i) {
-            if (positionsInDocs.allocated[i]) {
-                positions = ((IntArrayList[]) ((Object[]) positionsInDocs.values)[i]);
-                addCountsFromDocument(positions, counts, docLengths.get(positionsInDocs.keys[i]));
+    @Override
+    public void checkVocabulary(CorpusVocabulary vocabulary) {
+        vocabulary.checkIsCurrent(corpusAdapter);
+    }
+
+    /**
+     * Determines the counts of all given word sets by requesting the positions
+     * of their union vocabulary only once.
+     */
+    private long[][] determineCountsOfUnionVocabulary(String wordsets[][], SubsetLattice lattices[]) {
+        return determineCountsOfUnionVocabulary(UnionVocabularyWordPositions.create(wordsets), lattices);
+    }
+
+    /**
+     * Determines the counts of all word sets of the given union vocabulary. If
+     * its positions have not been requested, yet, they are streamed from the
+     * adapter document by document (if the adapter supports it).
+     */
+    private long[][] determineCountsOfUnionVocabulary(final UnionVocabularyWordPositions unionPositions,
+            final SubsetLattice lattices[]) {
+        final int wordsets[][] = unionPositions.wordIdsOfWordsets;
+        final long counts[][] = new long[wordsets.length][];
+        for (int i = 0; i < wordsets.length; ++i) {
+            counts[i] = BooleanSlidingWindowFrequencyDeterminer.createCounts(wordsets[i].length, lattices[i]);
+        }
+        DocumentPositionsConsumer consumer = new DocumentPositionsConsumer() {
+            @Override
+            public void consumeDocument(int docId, IntArrayList docPositions[], int docLength) {
+                IntArrayList positions[];
+                for (int j = 0; j < wordsets.length; ++j) {
+                    positions = unionPositions.getPositionsOfWordset(j, docPositions);
+                    if (positions != null) {
+                        addCountsFromDocument(positions, counts[j], docLength, lattices[j]);
+                    }
+                }
+            }
+        };
+        if (unionPositions.positionsInDocs != null) {
+            unionPositions.consumePositions(consumer);
+        } else {
+            unionPositions.consumePositions(corpusAdapter, consumer);
+        }
+        return counts;
+    }
+
+    private long[] determineCounts(String wordset[], final SubsetLattice lattice) {
+        final long counts[] = BooleanSlidingWindowFrequencyDeterminer.createCounts(wordset.length, lattice);
+        if (corpusAdapter instanceof StreamingWindowSupportingAdapter) {
+            ((StreamingWindowSupportingAdapter) corpusAdapter).streamWordPositionsInDocuments(wordset,
+                    new DocumentPositionsConsumer() {
+                        @Override
+                        public void consumeDocument(int docId, IntArrayList positions[], int docLength) {
+                            addCountsFromDocument(positions, counts, docLength, lattice);
+                        }
+                    });
+        } else {
+            IntArrayList positions[];
+            IntIntOpenHashMap docLengths = new IntIntOpenHashMap();
+            IntObjectOpenHashMap<IntArrayList[]> positionsInDocs = corpusAdapter.requestWordPositionsInDocuments(
+                    wordset, docLengths);
+            for (int i = 0; i < positionsInDocs.keys.length; ++i) {
+                if (positionsInDocs.allocated[i]) {
+                    positions = ((IntArrayList[]) ((Object[]) positionsInDocs.values)[i]);
+                    addCountsFromDocument(positions, counts, docLengths.get(positionsInDocs.keys[i]), lattice);
+                }
             }
         }
         return counts;
     }
 
-    private void addCountsFromDocument(IntArrayList[] positions, int[] counts, int docLength) {
+    private void addCountsFromDocument(IntArrayList[] positions, long[] counts, int docLength, SubsetLattice lattice) {
         int posInList[] = new int[positions.length];
         int nextWordId = 0, nextWordPos = Integer.MAX_VALUE;
         int wordCount = 0;
@@ -97,7 +193,7 @@ public class ContextWindowFrequencyDeterminer implements WindowBasedFrequencyDet
         }
 
         int windowStartPos, windowEndPos/* , windowWordSet */; // start inclusive, end exclusive
-        int currentWordBit;
+        int currentWordBit = 0;
         for (int i = 0; i < wordIds.length; ++i) {
             windowStartPos = i;
             windowEndPos = i + 1;
@@ -111,25 +207,43 @@ public class ContextWindowFrequencyDeterminer implements WindowBasedFrequencyDet
                 ++windowEndPos;
             }
             // windowWordSet = 0;
-            currentWordBit = 1 << wordIds[i];
+            if (lattice == null) {
+                currentWordBit = 1 << wordIds[i];
+            }
             for (int j = windowStartPos; j < windowEndPos; ++j) {
                 // windowWordSet |= wordIds[j];
                 if (wordIds[i] < wordIds[j]) {
-                    ++counts[currentWordBit | (1 << wordIds[j])];
+                    if (lattice != null) {
+                        ++counts[lattice.getPair(wordIds[i], wordIds[j])];
+                    } else {
+                        ++counts[currentWordBit | (1 << wordIds[j])];
+                    }
                 }
             }
-            ++counts[currentWordBit];
+            if (lattice != null) {
+                ++counts[lattice.getSingle(wordIds[i])];
+            } else {
+                ++counts[currentWordBit];
+            }
         }
     }
 
     @Override
     public void setWindowSize(int windowSize) {
         this.windowSize = windowSize;
-        determineWordSetCountSum();
+        determineWordSetCountSum(corpusAdapter.getDocumentSizeHistogram());
     }
 
+    /**
+     * Returns the sums of the counts. They are determined again if the
+     * histogram of the corpus changed since they have been determined.
+     */
     @Override
     public long[] getCooccurrenceCounts() {
+        int histogram[][] = corpusAdapter.getDocumentSizeHistogram();
+        if (histogram != wordSetCountSumsHistogram) {
+            determineWordSetCountSum(histogram);
+        }
         return wordSetCountSums;
     }
 
@@ -138,21 +252,37 @@ public class ContextWindowFrequencyDeterminer implements WindowBasedFrequencyDet
         return "P_cw" + windowSize;
     }
 
-    protected void determineWordSetCountSum() {
+    protected void determineWordSetCountSum(int histogram[][]) {
         // For determining the sum of the counts we rely on a histogram of documents length and the window size
-        wordSetCountSums = new long[this.windowSize];
+        long sums[] = new long[this.windowSize];
 
         // Go through the histogram, count the number of windows
-        int numberOfWindowsInDocs = 0;
-        int histogram[][] = corpusAdapter.getDocumentSizeHistogram();
+        long numberOfWindowsInDocs = 0;
         for (int i = 0; i < histogram.length; ++i) {
-            numberOfWindowsInDocs += histogram[i][1] * (histogram[i][0] - (this.windowSize - 1));
+            numberOfWindowsInDocs += ((long) histogram[i][1]) * (histogram[i][0] - (this.windowSize - 1));
         }
 
         // Determine how many word sets would have been counted using the number of windows
-        for (int i = 0; i < wordSetCountSums.length; ++i) {
-            wordSetCountSums[i] = numberOfWindowsInDocs;
+        for (int i = 0; i < sums.length; ++i) {
+            sums[i] = numberOfWindowsInDocs;
         }
+        wordSetCountSums = sums;
+        wordSetCountSumsHistogram = histogram;
+    }
+
+    public boolean isUsingUnionVocabulary() {
+        return useUnionVocabulary;
+    }
+
+    /**
+     * Sets whether the positions of the union vocabulary of several word sets
+     * should be requested at once (default). This reduces the number of
+     * requests if the word sets share words. If the adapter is not a
+     * {@link StreamingWindowSupportingAdapter}, all positions have to be held
+     * in memory at the same time.
+     */
+    public void setUseUnionVocabulary(boolean useUnionVocabulary) {
+        this.useUnionVocabulary = useUnionVocabulary;
     }
 
     @Override
@@ -0,0 +1,207 @@
+/**
+ * This file is part of Palmetto.
+ *
+ * Palmetto is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Palmetto is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Palmetto.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.aksw.palmetto.prob.window;
+
+import org.aksw.palmetto.corpus.CorpusVocabulary;
+import org.aksw.palmetto.corpus.DocumentPositionsConsumer;
+import org.aksw.palmetto.corpus.StreamingWindowSupportingAdapter;
+import org.aksw.palmetto.corpus.WindowSupportingAdapter;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.IntIntOpenHashMap;
+import com.carrotsearch.hppc.IntObjectOpenHashMap;
+import com.carrotsearch.hppc.ObjectIntOpenHashMap;
+
+/**
+ * The positions of the union vocabulary of several word sets. The positions of
+ * every word are requested only once from the corpus adapter and can be
+ * distributed to all word sets containing this word afterwards.
+ * 
+ * @author Michael R&ouml;der (roeder@informatik.uni-leipzig.de)
+ *
+ */
+public class UnionVocabularyWordPositions {
+
+    /**
+     * Requests the positions of all words of the given word sets from the
+     * given adapter. Every word is requested only once.
+     */
+    public static UnionVocabularyWordPositions request(WindowSupportingAdapter corpusAdapter, String wordsets[][]) {
+        return create(wordsets).request(corpusAdapter);
+    }
+
+    /**
+     * Creates the union vocabulary of the given word sets without requesting
+     * any positions.
+     */
+    public static UnionVocabularyWordPositions create(String wordsets[][]) {
+        ObjectIntOpenHashMap<String> wordIds = new ObjectIntOpenHashMap<String>();
+        int wordIdsOfWordsets[][] = new int[wordsets.length][];
+        for (int i = 0; i < wordsets.length; ++i) {
+            wordIdsOfWordsets[i] = new int[wordsets[i].length];
+            for (int j = 0; j < wordsets[i].length; ++j) {
+                if (wordIds.containsKey(wordsets[i][j])) {
+                    wordIdsOfWordsets[i][j] = wordIds.lget();
+                } else {
+                    wordIdsOfWordsets[i][j] = wordIds.size();
+                    wordIds.put(wordsets[i][j], wordIdsOfWordsets[i][j]);
+                }
+            }
+        }
+        String vocabulary[] = new String[wordIds.size()];
+        for (int i = 0; i < wordIds.allocated.length; ++i) {
+            if (wordIds.allocated[i]) {
+                vocabulary[wordIds.values[i]] = (String) ((Object[]) wordIds.keys)[i];
+            }
+        }
+        return new UnionVocabularyWordPositions(vocabulary, wordIdsOfWordsets, null, null);
+    }
+
+    /**
+     * Requests the positions of all words of the given word sets from the
+     * given adapter. The word sets consist of ids of the given corpus
+     * vocabulary. Every word is requested only once. Unknown words are not
+     * requested and get the id {@link CorpusVocabulary#UNKNOWN_WORD_ID}.
+     */
+    public static UnionVocabularyWordPositions request(WindowSupportingAdapter corpusAdapter,
+            CorpusVocabulary corpusVocabulary, int wordsets[][]) {
+        return create(corpusVocabulary, wordsets).request(corpusAdapter);
+    }
+
+    /**
+     * Creates the union vocabulary of the given word sets consisting of ids of
+     * the given corpus vocabulary without requesting any positions. Unknown
+     * words get the id {@link CorpusVocabulary#UNKNOWN_WORD_ID}.
+     */
+    public static UnionVocabularyWordPositions create(CorpusVocabulary corpusVocabulary, int wordsets[][]) {
+        IntIntOpenHashMap wordIds = new IntIntOpenHashMap();
+        IntArrayList corpusWordIds = new IntArrayList();
+        int wordIdsOfWordsets[][] = new int[wordsets.length][];
+        for (int i = 0; i < wordsets.length; ++i) {
+            wordIdsOfWordsets[i] = new int[wordsets[i].length];
+            for (int j = 0; j < wordsets[i].length; ++j) {
+                if (wordsets[i][j] == CorpusVocabulary.UNKNOWN_WORD_ID) {
+                    wordIdsOfWordsets[i][j] = CorpusVocabulary.UNKNOWN_WORD_ID;
+                } else if (wordIds.containsKey(wordsets[i][j])) {
+                    wordIdsOfWordsets[i][j] = wordIds.lget();
+                } else {
+                    wordIdsOfWordsets[i][j] = corpusWordIds.size();
+                    wordIds.put(wordsets[i][j], wordIdsOfWordsets[i][j]);
+                    corpusWordIds.add(wordsets[i][j]);
+                }
+            }
+        }
+        String vocabulary[] = new String[corpusWordIds.size()];
+        for (int i = 0; i < vocabulary.length; ++i) {
+            vocabulary[i] = corpusVocabulary.getKnownWord(corpusWordIds.get(i));
+        }
+        return new UnionVocabularyWordPositions(vocabulary, wordIdsOfWordsets, null, null);
+    }
+
+    /**
+     * The union vocabulary of all word sets.
+     */
+    public final String vocabulary[];
+    /**
+     * The ids of the words of the single word sets inside the
+     * {@link #vocabulary}. Words that are not known have the id
+     * {@link CorpusVocabulary#UNKNOWN_WORD_ID}.
+     */
+    public final int wordIdsOfWordsets[][];
+    /**
+     * The positions of the vocabulary words inside the single documents or
+     * null if the positions have not been requested.
+     */
+    public final IntObjectOpenHashMap<IntArrayList[]> positionsInDocs;
+    /**
+     * The lengths of the documents contained in {@link #positionsInDocs}.
+     */
+    public final IntIntOpenHashMap docLengths;
+
+    public UnionVocabularyWordPositions(String[] vocabulary, int[][] wordIdsOfWordsets,
+            IntObjectOpenHashMap<IntArrayList[]> positionsInDocs, IntIntOpenHashMap docLengths) {
+        this.vocabulary = vocabulary;
+        this.wordIdsOfWordsets = wordIdsOfWordsets;
+        this.positionsInDocs = positionsInDocs;
+        this.docLengths = docLengths;
+    }
+
+    /**
+     * Requests the positions of the vocabulary words from the given adapter.
+     * 
+     * @return a new instance containing the positions
+     */
+    public UnionVocabularyWordPositions request(WindowSupportingAdapter corpusAdapter) {
+        IntIntOpenHashMap docLengths = new IntIntOpenHashMap();
+        IntObjectOpenHashMap<IntArrayList[]> positionsInDocs = corpusAdapter.requestWordPositionsInDocuments(
+                vocabulary, docLengths);
+        return new UnionVocabularyWordPositions(vocabulary, wordIdsOfWordsets, positionsInDocs, docLengths);
+    }
+
+    /**
+     * Hands the positions of all documents to the given consumer. If the
+     * adapter supports streaming, the positions are streamed from the adapter
+     * document by document. Otherwise, the positions are requested at once.
+     */
+    public void consumePositions(WindowSupportingAdapter corpusAdapter, DocumentPositionsConsumer consumer) {
+        if (corpusAdapter instanceof StreamingWindowSupportingAdapter) {
+            ((StreamingWindowSupportingAdapter) corpusAdapter).streamWordPositionsInDocuments(vocabulary, consumer);
+        } else {
+            request(corpusAdapter).consumePositions(consumer);
+        }
+    }
+
+    /**
+     * Hands the requested positions of all documents to the given consumer.
+     */
+    public void consumePositions(DocumentPositionsConsumer consumer) {
+        for (int i = 0; i < positionsInDocs.keys.length; ++i) {
+            if (positionsInDocs.allocated[i]) {
+                consumer.consumeDocument(positionsInDocs.keys[i],
+                        ((IntArrayList[]) ((Object[]) positionsInDocs.values)[i]),
+                        docLengths.get(positionsInDocs.keys[i]));
+            }
+        }
+    }
+
+    /**
+     * Selects the positions of the words of the given word set from the given
+     * positions of the vocabulary words inside a single document. Returns null
+     * if the document does not contain any word of the word set, i.e., if the
+     * document would not have been retrieved for this word set alone.
+     * 
+     * @param wordsetId
+     *            the id of the word set
+     * @param docPositions
+     *            the positions of the vocabulary words inside the document
+     * @return the positions of the word set words or null
+     */
+    public IntArrayList[] getPositionsOfWordset(int wordsetId, IntArrayList docPositions[]) {
+        int wordIds[] = wordIdsOfWordsets[wordsetId];
+        IntArrayList positions[] = null;
+        for (int i = 0; i < wordIds.length; ++i) {
+            if ((wordIds[i] != CorpusVocabulary.UNKNOWN_WORD_ID) && (docPositions[wordIds[i]] != null)) {
+                if (positions == null) {
+                    positions = new IntArrayList[wordIds.length];
+                }
+                // the list is shared with other word sets, i.e., it must not be changed (except for sorting)
+                positions[i] = docPositions[wordIds[i]];
+            }
+        }
+        return positions;
+    }
+}
@@ -17,21 +17,28 @@
 package org.aksw.palmetto.prob.window;
 
 import org.aksw.palmetto.data.CountedSubsets;
+import org.aksw.palmetto.data.SubsetLattice;
 import org.aksw.palmetto.data.SubsetProbabilities;
 import org.aksw.palmetto.prob.AbstractProbabilitySupplier;
 
 public class WindowBasedProbabilityEstimator extends AbstractProbabilitySupplier {
 
-    private long cooccurrenceCountsSums[];
-
     public WindowBasedProbabilityEstimator(WindowBasedFrequencyDeterminer freqDeterminer) {
         super(freqDeterminer);
-        cooccurrenceCountsSums = freqDeterminer.getCooccurrenceCounts();
     }
 
+    /**
+     * Determines the probabilities of the given counted subsets. The sums of
+     * the counts are requested from the determiner every time since they
+     * change if the corpus of the determiner changes.
+     */
     @Override
     protected SubsetProbabilities getProbabilities(CountedSubsets countedSubsets) {
+        long cooccurrenceCountsSums[] = ((WindowBasedFrequencyDeterminer) freqDeterminer).getCooccurrenceCounts();
         double probabilities[] = new double[countedSubsets.counts.length];
+        if (countedSubsets.lattice != null) {
+            return getProbabilities(countedSubsets, probabilities, cooccurrenceCountsSums);
+        }
         int wordSet;
         for (int i = 1; i < probabilities.length; i = i << 1) {
             if (countedSubsets.counts[i] >= minFrequency) {
@@ -47,6 +54,25 @@ public class WindowBasedProbabilityEstimator extends AbstractProbabilitySupplier
         return new SubsetProbabilities(countedSubsets.segments, countedSubsets.conditions, probabilities);
     }
 
+    /**
+     * Determines the probabilities of the slots of the lattice of the given
+     * counted subsets. The count of a subset is divided by the sum of the
+     * counts of subsets with the same size.
+     */
+    protected SubsetProbabilities getProbabilities(CountedSubsets countedSubsets, double probabilities[],
+            long cooccurrenceCountsSums[]) {
+        SubsetLattice lattice = countedSubsets.lattice;
+        int subsetSize;
+        for (int i = 0; i < probabilities.length; ++i) {
+            if (countedSubsets.counts[i] >= minFrequency) {
+                // a window can not contain more words than its size
+                subsetSize = Math.min(lattice.getSubsetSize(i), cooccurrenceCountsSums.length);
+                probabilities[i] = countedSubsets.counts[i] / (double) cooccurrenceCountsSums[subsetSize - 1];
+            }
+        }
+        return new SubsetProbabilities(countedSubsets.segments, countedSubsets.conditions, probabilities, lattice);
+    }
+
     @Override
     public String getName() {
         return ((WindowBasedFrequencyDeterminer) freqDeterminer).getSlidingWindowModelName();
@@ -22,7 +22,7 @@ public abstract class AbstractAnyBasedSegmentator implements Segmentator {
 
     private int maxSingleSubSetSize = Integer.SIZE;
     private int maxSubSetUnionSize = Integer.SIZE;
-    private int factorials[];
+    private volatile int factorials[];
 
     public AbstractAnyBasedSegmentator() {
     }
@@ -36,27 +36,40 @@ public abstract class AbstractAnyBasedSegmentator implements Segmentator {
         createOrIncreaseFactorials(maxSubSetSize);
     }
 
-    private void createOrIncreaseFactorials(int subSetSize) {
+    /**
+     * Returns an array containing at least the factorials up to the given
+     * number. The array is completely filled before it replaces the current
+     * one, i.e., threads reading the factorials never see a partial array.
+     */
+    private synchronized int[] createOrIncreaseFactorials(int subSetSize) {
+        if ((factorials != null) && (factorials.length > subSetSize)) {
+            return factorials;
+        }
+        int temp[] = new int[subSetSize + 1];
         int startId;
         if (factorials == null) {
-            factorials = new int[subSetSize + 1];
-            factorials[0] = 1;
+            temp[0] = 1;
             startId = 1;
         } else {
             // the factorials array has to grow
-            int temp[] = new int[subSetSize + 1];
             System.arraycopy(factorials, 0, temp, 0, factorials.length);
             startId = factorials.length;
-            factorials = temp;
         }
         // create all needed factorials
-        for (int i = startId; i < factorials.length; ++i) {
-            factorials[i] = factorials[i - 1] * i;
+        for (int i = startId; i < temp.length; ++i) {
+            temp[i] = temp[i - 1] * i;
         }
+        factorials = temp;
+        return temp;
     }
 
     @Override
     public SegmentationDefinition getSubsetDefinition(int wordsetSize) {
+        // the number of subsets grows exponentially, i.e., they are always represented by bit masks
+        if (wordsetSize >= Integer.SIZE) {
+            throw new IllegalArgumentException("The any-based segmentations support word sets with less than "
+                    + Integer.SIZE + " words. Got " + wordsetSize + " words.");
+        }
         if ((maxSingleSubSetSize < (wordsetSize - 1)) || (maxSubSetUnionSize < wordsetSize)) {
             return getSubsetDefinitionWithRestrictions(wordsetSize, maxSingleSubSetSize, maxSubSetUnionSize);
         } else {
@@ -118,8 +131,9 @@ public abstract class AbstractAnyBasedSegmentator implements Segmentator {
     }
 
     protected int getNumberOfCombinations(int elementCount, int maxElementsPerCombination) {
-        if (factorials.length <= elementCount) {
-            createOrIncreaseFactorials(elementCount);
+        int factorials[] = this.factorials;
+        if ((factorials == null) || (factorials.length <= elementCount)) {
+            factorials = createOrIncreaseFactorials(elementCount);
         }
         int numberOfCombinations = elementCount;
         for (int i = 2; i <= maxElementsPerCombination; ++i) {
@@ -17,12 +17,16 @@
 package org.aksw.palmetto.subsets;
 
 import org.aksw.palmetto.data.SegmentationDefinition;
+import org.aksw.palmetto.data.SubsetLattice;
 
 import com.carrotsearch.hppc.BitSet;
 
-public class AllAll implements Segmentator {
+public class AllAll implements LatticeSupportingSegmentator {
 
     public SegmentationDefinition getSubsetDefinition(int wordsetSize) {
+        if (SubsetLattice.isNeeded(wordsetSize)) {
+            return getSubsetDefinition(new SubsetLattice(wordsetSize));
+        }
         /*
          * Code the combinations of elements not with ids but with bits. 01 is
          * only the first element, 10 is the second and 11 is the combination of
@@ -36,6 +40,13 @@ public class AllAll implements Segmentator {
         return new SegmentationDefinition(segments, conditions, neededCounts);
     }
 
+    public SegmentationDefinition getSubsetDefinition(SubsetLattice lattice) {
+        int completeSet = lattice.addCompleteSet();
+        int conditions[][] = new int[][] { { completeSet } };
+        int segments[] = new int[] { completeSet };
+        return new SegmentationDefinition(segments, conditions, null, lattice);
+    }
+
     @Override
     public String getName() {
         return "S^{all}_{all}";
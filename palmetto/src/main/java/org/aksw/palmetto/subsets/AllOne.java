@@ -17,12 +17,16 @@
 package org.aksw.palmetto.subsets;
 
 import org.aksw.palmetto.data.SegmentationDefinition;
+import org.aksw.palmetto.data.SubsetLattice;
 
 import com.carrotsearch.hppc.BitSet;
 
-public class AllOne implements Segmentator {
+public class AllOne implements LatticeSupportingSegmentator {
 
     public SegmentationDefinition getSubsetDefinition(int wordsetSize) {
+        if (SubsetLattice.isNeeded(wordsetSize)) {
+            return getSubsetDefinition(new SubsetLattice(wordsetSize));
+        }
         /*
          * Code the combinations of elements not with ids but with bits. 01 is
          * only the first element, 10 is the second and 11 is the combination of
@@ -44,6 +48,19 @@ public class AllOne implements Segmentator {
         return new SegmentationDefinition(segments, conditions, neededCounts);
     }
 
+    public SegmentationDefinition getSubsetDefinition(SubsetLattice lattice) {
+        int wordsetSize = lattice.getNumberOfWords();
+        int conditions[][] = new int[wordsetSize][];
+        int segments[] = new int[wordsetSize];
+        // the union of every segment and its condition
+        lattice.addCompleteSet();
+        for (int i = 0; i < wordsetSize; ++i) {
+            segments[i] = lattice.addCompleteSetWithout(i);
+            conditions[i] = new int[] { lattice.getSingle(i) };
+        }
+        return new SegmentationDefinition(segments, conditions, null, lattice);
+    }
+
     @Override
     public String getName() {
         return "S^{all}_{one}";
@@ -0,0 +1,38 @@
+/**
+ * This file is part of Palmetto.
+ *
+ * Palmetto is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Palmetto is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Palmetto.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.aksw.palmetto.subsets;
+
+import org.aksw.palmetto.data.SegmentationDefinition;
+import org.aksw.palmetto.data.SubsetLattice;
+
+/**
+ * A {@link Segmentator} that can define its segments and conditions as slots
+ * of a {@link SubsetLattice}. It is used for word sets with more than
+ * {@link SubsetLattice#MAX_DENSE_WORDS} words.
+ * 
+ * @author Michael R&ouml;der (roeder@informatik.uni-leipzig.de)
+ *
+ */
+public interface LatticeSupportingSegmentator extends Segmentator {
+
+    /**
+     * Creates the definition for the words of the given lattice. The
+     * segments and conditions are slots of the lattice. Subsets that are not
+     * part of the lattice are added to it.
+     */
+    public SegmentationDefinition getSubsetDefinition(SubsetLattice lattice);
+}
@@ -17,12 +17,16 @@
 package org.aksw.palmetto.subsets;
 
 import org.aksw.palmetto.data.SegmentationDefinition;
+import org.aksw.palmetto.data.SubsetLattice;
 
 import com.carrotsearch.hppc.BitSet;
 
-public class OneAll implements Segmentator {
+public class OneAll implements LatticeSupportingSegmentator {
 
     public SegmentationDefinition getSubsetDefinition(int wordsetSize) {
+	if (SubsetLattice.isNeeded(wordsetSize)) {
+	    return getSubsetDefinition(new SubsetLattice(wordsetSize));
+	}
 	/*
 	 * Code the combinations of elements not with ids but with bits. 01 is
 	 * only the first element, 10 is the second and 11 is the combination of
@@ -37,6 +41,7 @@ public class OneAll implements Segmentator {
 	    segments[pos] = bit;
 	    neededCounts.set(bit);
 	    conditions[pos] = new int[] { mask - bit };
+	    neededCounts.set(mask - bit);
 	    bit = bit << 1;
 	    ++pos;
 	}
@@ -44,6 +49,19 @@ public class OneAll implements Segmentator {
 	return new SegmentationDefinition(segments, conditions, neededCounts);
     }
 
+    public SegmentationDefinition getSubsetDefinition(SubsetLattice lattice) {
+        int wordsetSize = lattice.getNumberOfWords();
+        int conditions[][] = new int[wordsetSize][];
+        int segments[] = new int[wordsetSize];
+        // the union of every segment and its condition
+        lattice.addCompleteSet();
+        for (int i = 0; i < wordsetSize; ++i) {
+            segments[i] = lattice.getSingle(i);
+            conditions[i] = new int[] { lattice.addCompleteSetWithout(i) };
+        }
+        return new SegmentationDefinition(segments, conditions, null, lattice);
+    }
+
     @Override
     public String getName() {
         return "S^{one}_{all}";
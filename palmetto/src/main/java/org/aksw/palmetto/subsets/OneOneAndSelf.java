@@ -17,6 +17,7 @@
 package org.aksw.palmetto.subsets;
 
 import org.aksw.palmetto.data.SegmentationDefinition;
+import org.aksw.palmetto.data.SubsetLattice;
 import org.aksw.palmetto.vector.DirectConfirmationBasedVectorCreator;
 
 import com.carrotsearch.hppc.BitSet;
@@ -28,9 +29,12 @@ import com.carrotsearch.hppc.BitSet;
  * @author Micha
  * 
  */
-public class OneOneAndSelf implements Segmentator {
+public class OneOneAndSelf implements LatticeSupportingSegmentator {
 
     public SegmentationDefinition getSubsetDefinition(int wordsetSize) {
+        if (SubsetLattice.isNeeded(wordsetSize)) {
+            return getSubsetDefinition(new SubsetLattice(wordsetSize));
+        }
         /*
          * Code the combinations of elements not with ids but with bits. 01 is
          * only the first element, 10 is the second and 11 is the combination of
@@ -48,7 +52,6 @@ public class OneOneAndSelf implements Segmentator {
             condPos = 0;
             if (bit == 1) {
                 while (condBit < mask) {
-                    neededCounts.set(bit + condBit);
                     conditions[pos][condPos] = condBit;
                     ++condPos;
                     condBit = condBit << 1;
@@ -56,12 +59,28 @@ public class OneOneAndSelf implements Segmentator {
             } else {
                 System.arraycopy(conditions[0], 0, conditions[pos], 0, conditions[0].length);
             }
+            for (int i = 0; i < conditions[pos].length; ++i) {
+                neededCounts.set(bit | conditions[pos][i]);
+            }
             bit = bit << 1;
             ++pos;
         }
         return new SegmentationDefinition(segments, conditions, neededCounts);
     }
 
+    public SegmentationDefinition getSubsetDefinition(SubsetLattice lattice) {
+        int wordsetSize = lattice.getNumberOfWords();
+        int conditions[][] = new int[wordsetSize][wordsetSize];
+        int segments[] = new int[wordsetSize];
+        for (int i = 0; i < wordsetSize; ++i) {
+            segments[i] = lattice.getSingle(i);
+            for (int j = 0; j < wordsetSize; ++j) {
+                conditions[i][j] = lattice.getSingle(j);
+            }
+        }
+        return new SegmentationDefinition(segments, conditions, null, lattice);
+    }
+
     @Override
     public String getName() {
         return "S^{one}_{o&s}";
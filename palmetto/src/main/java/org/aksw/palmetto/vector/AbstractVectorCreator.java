@@ -16,6 +16,7 @@
  */
 package org.aksw.palmetto.vector;
 
+import org.aksw.palmetto.corpus.CorpusVocabulary;
 import org.aksw.palmetto.data.SegmentationDefinition;
 import org.aksw.palmetto.data.SubsetProbabilities;
 import org.aksw.palmetto.data.SubsetVectors;
@@ -40,10 +41,25 @@ public abstract class AbstractVectorCreator implements VectorCreator {
     @Override
     public SubsetVectors[] getVectors(String[][] wordsets, SegmentationDefinition[] definitions) {
         SubsetProbabilities probabilities[] = supplier.getProbabilities(wordsets, definitions);
-        return createVectors(wordsets, definitions, probabilities);
+        int wordsetSizes[] = new int[wordsets.length];
+        for (int i = 0; i < wordsetSizes.length; ++i) {
+            wordsetSizes[i] = wordsets[i].length;
+        }
+        return createVectors(wordsetSizes, definitions, probabilities);
     }
 
-    protected abstract SubsetVectors[] createVectors(String[][] wordsets, SegmentationDefinition[] definitions,
+    @Override
+    public SubsetVectors[] getVectors(int[][] wordsets, CorpusVocabulary vocabulary,
+            SegmentationDefinition[] definitions) {
+        SubsetProbabilities probabilities[] = supplier.getProbabilities(wordsets, vocabulary, definitions);
+        int wordsetSizes[] = new int[wordsets.length];
+        for (int i = 0; i < wordsetSizes.length; ++i) {
+            wordsetSizes[i] = wordsets[i].length;
+        }
+        return createVectors(wordsetSizes, definitions, probabilities);
+    }
+
+    protected abstract SubsetVectors[] createVectors(int wordsetSizes[], SegmentationDefinition[] definitions,
             SubsetProbabilities[] probabilities);
 
     @Override
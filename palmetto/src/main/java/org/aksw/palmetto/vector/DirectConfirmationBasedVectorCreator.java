@@ -58,39 +58,52 @@ public class DirectConfirmationBasedVectorCreator extends AbstractVectorCreator
     }
 
     @Override
-    protected SubsetVectors[] createVectors(String[][] wordsets, SegmentationDefinition[] definitions,
+    protected SubsetVectors[] createVectors(int[] wordsetSizes, SegmentationDefinition[] definitions,
             SubsetProbabilities[] probabilities) {
-        SubsetVectors vectors[] = new SubsetVectors[wordsets.length];
+        SubsetVectors vectors[] = new SubsetVectors[wordsetSizes.length];
         double currentVectors[][];
-        SegmentationDefinition oneOneAndSelfDef = oneOneAndSelfCreator.getSubsetDefinition(wordsets[0].length);
-        SubsetProbabilities oneOneAndSelfProbabilities = new SubsetProbabilities(oneOneAndSelfDef.segments,
-                oneOneAndSelfDef.conditions, null);
+        SegmentationDefinition oneOneAndSelfDef;
+        SubsetProbabilities oneOneAndSelfProbabilities = null;
         double calcResult[];
         int startId;
-        for (int w = 0; w < wordsets.length; ++w) {
-            oneOneAndSelfProbabilities.probabilities = probabilities[w].probabilities;
-            calcResult = calculation.calculateConfirmationValues(oneOneAndSelfProbabilities);
-            currentVectors = new double[wordsets[w].length][wordsets[w].length];
+        SegmentationDefinition latticeDef;
+        for (int w = 0; w < wordsetSizes.length; ++w) {
+            if (probabilities[w].lattice != null) {
+                // the single words and pairs are always part of the lattice
+                latticeDef = oneOneAndSelfCreator.getSubsetDefinition(probabilities[w].lattice);
+                calcResult = calculation.calculateConfirmationValues(new SubsetProbabilities(latticeDef.segments,
+                        latticeDef.conditions, probabilities[w].probabilities, latticeDef.lattice));
+            } else {
+                if ((oneOneAndSelfProbabilities == null)
+                        || (oneOneAndSelfProbabilities.segments.length != wordsetSizes[w])) {
+                    oneOneAndSelfDef = oneOneAndSelfCreator.getSubsetDefinition(wordsetSizes[w]);
+                    oneOneAndSelfProbabilities = new SubsetProbabilities(oneOneAndSelfDef.segments,
+                            oneOneAndSelfDef.conditions, null);
+                }
+                oneOneAndSelfProbabilities.probabilities = probabilities[w].probabilities;
+                calcResult = calculation.calculateConfirmationValues(oneOneAndSelfProbabilities);
+            }
+            currentVectors = new double[wordsetSizes[w]][wordsetSizes[w]];
             startId = 0;
             try {
-                for (int i = 0; i < wordsets[w].length; ++i) {
-                    System.arraycopy(calcResult, startId, currentVectors[i], 0, wordsets[w].length);
-                    startId += wordsets[w].length;
+                for (int i = 0; i < wordsetSizes[w]; ++i) {
+                    System.arraycopy(calcResult, startId, currentVectors[i], 0, wordsetSizes[w]);
+                    startId += wordsetSizes[w];
                 }
             } catch (Exception e) {
-                System.err.println("ERROR w=" + w + " wordsets[w]=" + Arrays.toString(wordsets[w]) + " calcResult="
+                System.err.println("ERROR w=" + w + " wordsetSizes[w]=" + wordsetSizes[w] + " calcResult="
                         + Arrays.toString(calcResult));
             }
 
             if (gamma != 1) {
-                for (int i = 0; i < wordsets[w].length; ++i) {
+                for (int i = 0; i < wordsetSizes[w]; ++i) {
                     for (int j = 0; j < currentVectors[i].length; ++j) {
                         currentVectors[i][j] = Math.pow(currentVectors[i][j], gamma);
                     }
                 }
             }
             vectors[w] = new SubsetVectors(definitions[w].segments, definitions[w].conditions, currentVectors,
-                    probabilities[w].probabilities);
+                    probabilities[w].probabilities, probabilities[w].lattice);
         }
         return vectors;
     }
@@ -41,23 +41,21 @@ public class ProbabilityBasedVectorCreator extends AbstractVectorCreator {
     }
 
     @Override
-    protected SubsetVectors[] createVectors(String[][] wordsets, SegmentationDefinition[] definitions,
+    protected SubsetVectors[] createVectors(int[] wordsetSizes, SegmentationDefinition[] definitions,
             SubsetProbabilities[] probabilities) {
-        SubsetVectors vectors[] = new SubsetVectors[wordsets.length];
+        SubsetVectors vectors[] = new SubsetVectors[wordsetSizes.length];
         double currentVectors[][];
-        int bit1;
-        for (int w = 0; w < wordsets.length; ++w) {
-            currentVectors = new double[wordsets[w].length][wordsets[w].length];
-            for (int i = 0; i < wordsets[w].length; ++i) {
-                bit1 = 1 << i;
-                currentVectors[i][i] = probabilities[w].probabilities[bit1];
-                for (int j = i + 1; j < wordsets[w].length; ++j) {
-                    currentVectors[i][j] = probabilities[w].probabilities[bit1 | (1 << j)];
+        for (int w = 0; w < wordsetSizes.length; ++w) {
+            currentVectors = new double[wordsetSizes[w]][wordsetSizes[w]];
+            for (int i = 0; i < wordsetSizes[w]; ++i) {
+                currentVectors[i][i] = probabilities[w].probabilities[probabilities[w].getSingle(i)];
+                for (int j = i + 1; j < wordsetSizes[w]; ++j) {
+                    currentVectors[i][j] = probabilities[w].probabilities[probabilities[w].getPair(i, j)];
                     currentVectors[j][i] = currentVectors[i][j];
                 }
             }
             vectors[w] = new SubsetVectors(definitions[w].segments, definitions[w].conditions, currentVectors,
-                    probabilities[w].probabilities);
+                    probabilities[w].probabilities, probabilities[w].lattice);
         }
         return vectors;
     }
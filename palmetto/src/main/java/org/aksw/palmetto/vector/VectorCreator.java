@@ -16,6 +16,7 @@
  */
 package org.aksw.palmetto.vector;
 
+import org.aksw.palmetto.corpus.CorpusVocabulary;
 import org.aksw.palmetto.data.SegmentationDefinition;
 import org.aksw.palmetto.data.SubsetVectors;
 import org.aksw.palmetto.prob.ProbabilityEstimator;
@@ -37,6 +38,18 @@ public interface VectorCreator {
      */
     public SubsetVectors[] getVectors(String wordsets[][], SegmentationDefinition definitions[]);
 
+    /**
+     * Creates vectors for the given word sets (consisting of the ids of the
+     * given {@link CorpusVocabulary} of the corpus) and their segmentations.
+     * 
+     * @param wordsets
+     * @param vocabulary
+     * @param definitions
+     * @return
+     */
+    public SubsetVectors[] getVectors(int wordsets[][], CorpusVocabulary vocabulary,
+            SegmentationDefinition definitions[]);
+
     /**
      * Sets the probability estimator used by the vector creator.
      * 
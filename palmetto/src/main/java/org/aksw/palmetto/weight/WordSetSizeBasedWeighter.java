@@ -24,7 +24,7 @@ public class WordSetSizeBasedWeighter implements Weighter {
     @Override
     public double[] createWeights(SubsetProbabilities probabilities) {
         // get the number of words the complete word set comprises of
-        int numberOfWords = Integer.numberOfTrailingZeros(probabilities.probabilities.length);
+        int numberOfWords = probabilities.getNumberOfWords();
         int pos = 0;
         for (int i = 0; i < probabilities.segments.length; ++i) {
             pos += probabilities.conditions[i].length;
@@ -34,8 +34,8 @@ public class WordSetSizeBasedWeighter implements Weighter {
         pos = 0;
         for (int i = 0; i < probabilities.segments.length; ++i) {
             for (int j = 0; j < probabilities.conditions[i].length; ++j) {
-                weights[pos] = ((numberOfWords - Integer.bitCount(probabilities.segments[i]
-                        | probabilities.conditions[i][j]))  + 2.0)
+                weights[pos] = ((numberOfWords - probabilities.getSubsetSize(probabilities.getUnion(
+                        probabilities.segments[i], probabilities.conditions[i][j])))  + 2.0)
                         / numberOfWords;
                 ++pos;
             }
@@ -0,0 +1,228 @@
+/**
+ * This file is part of Palmetto.
+ *
+ * Palmetto is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Palmetto is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Palmetto.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.aksw.palmetto;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.aksw.palmetto.aggregation.ArithmeticMean;
+import org.aksw.palmetto.calculations.direct.LogCondProbConfirmationMeasure;
+import org.aksw.palmetto.calculations.direct.NormalizedLogRatioConfirmationMeasure;
+import org.aksw.palmetto.calculations.indirect.CosinusConfirmationMeasure;
+import org.aksw.palmetto.corpus.CorpusVocabulary;
+import org.aksw.palmetto.prob.AbstractBooleanDocumentSupportingAdapterBasedTest;
+import org.aksw.palmetto.prob.bd.BooleanDocumentProbabilitySupplier;
+import org.aksw.palmetto.prob.decorator.FrequencyCachingDeterminerDecorator;
+import org.aksw.palmetto.prob.decorator.SimpleFrequencyCachingDeterminerDecorator;
+import org.aksw.palmetto.subsets.AnyAny;
+import org.aksw.palmetto.subsets.OnePreceding;
+import org.aksw.palmetto.subsets.OneSet;
+import org.aksw.palmetto.vector.DirectConfirmationBasedVectorCreator;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.carrotsearch.hppc.IntOpenHashSet;
+
+/**
+ * Checks that a {@link ParallelCoherence} returns the same coherences in the
+ * same order as its decorated coherence while the chunks share the
+ * probability estimator, the caching decorators and the corpus adapter.
+ * 
+ * @author Michael R&ouml;der (roeder@informatik.uni-leipzig.de)
+ *
+ */
+public class ParallelCoherenceTest extends AbstractBooleanDocumentSupportingAdapterBasedTest {
+
+    private static final int NUMBER_OF_THREADS = 4;
+    private static final int CHUNK_SIZE = 7;
+    private static final int NUMBER_OF_WORDS = 100;
+    private static final int NUMBER_OF_DOCUMENTS = 5000;
+    private static final int NUMBER_OF_TOPICS = 500;
+    private static final int TOPIC_SIZE = 10;
+
+    private static ExecutorService executor;
+
+    @BeforeClass
+    public static void startExecutor() {
+        executor = Executors.newFixedThreadPool(NUMBER_OF_THREADS);
+    }
+
+    @AfterClass
+    public static void stopExecutor() {
+        executor.shutdownNow();
+    }
+
+    public ParallelCoherenceTest() {
+        super(createRandomDocuments(new Random(NUMBER_OF_DOCUMENTS)), NUMBER_OF_DOCUMENTS);
+    }
+
+    @Test
+    public void testDirectConfirmationBasedCoherence() {
+        BooleanDocumentProbabilitySupplier supplier = BooleanDocumentProbabilitySupplier.create(this, "bd", false);
+        supplier.setFrequencyDeterminer(new SimpleFrequencyCachingDeterminerDecorator(supplier
+                .getFrequencyDeterminer()));
+        Coherence coherence = new DirectConfirmationBasedCoherence(new OnePreceding(), supplier,
+                new LogCondProbConfirmationMeasure(), new ArithmeticMean());
+        String topics[][] = createTopics(new Random(NUMBER_OF_TOPICS));
+
+        long time = System.currentTimeMillis();
+        double expected[] = coherence.calculateCoherences(topics);
+        time = System.currentTimeMillis() - time;
+        // the second run works on a filled cache, i.e., a new cache is used
+        supplier.setFrequencyDeterminer(new SimpleFrequencyCachingDeterminerDecorator(
+                BooleanDocumentProbabilitySupplier.create(this, "bd", false).getFrequencyDeterminer()));
+        long parallelTime = System.currentTimeMillis();
+        double coherences[] = new ParallelCoherence(coherence, executor, CHUNK_SIZE).calculateCoherences(topics);
+        parallelTime = System.currentTimeMillis() - parallelTime;
+        System.out.println("Parallel coherence performance test (UMass, " + NUMBER_OF_TOPICS + " topics, "
+                + NUMBER_OF_THREADS + " threads) sequential: " + time + " ms\tparallel: " + parallelTime + " ms");
+        Assert.assertArrayEquals(expected, coherences, 0);
+    }
+
+    @Test
+    public void testVectorBasedCoherence() {
+        BooleanDocumentProbabilitySupplier supplier = BooleanDocumentProbabilitySupplier.create(this, "bd", false);
+        supplier.setFrequencyDeterminer(new FrequencyCachingDeterminerDecorator(supplier.getFrequencyDeterminer()));
+        Coherence coherence = new VectorBasedCoherence(new OneSet(), new DirectConfirmationBasedVectorCreator(
+                supplier, new NormalizedLogRatioConfirmationMeasure()), new CosinusConfirmationMeasure(),
+                new ArithmeticMean());
+        String topics[][] = createTopics(new Random(NUMBER_OF_WORDS));
+        Assert.assertArrayEquals(coherence.calculateCoherences(topics),
+                new ParallelCoherence(coherence, executor, CHUNK_SIZE).calculateCoherences(topics), 0);
+    }
+
+    /**
+     * The any-any segmentation with a restricted subset size determines the
+     * number of combinations using factorials that are created lazily.
+     */
+    @Test
+    public void testRestrictedAnyAnySegmentation() {
+        BooleanDocumentProbabilitySupplier supplier = BooleanDocumentProbabilitySupplier.create(this, "bd", false);
+        Coherence coherence = new DirectConfirmationBasedCoherence(new AnyAny(2, false), supplier,
+                new LogCondProbConfirmationMeasure(), new ArithmeticMean());
+        String topics[][] = createTopics(new Random(TOPIC_SIZE));
+        Assert.assertArrayEquals(coherence.calculateCoherences(topics),
+                new ParallelCoherence(coherence, executor, CHUNK_SIZE).calculateCoherences(topics), 0);
+    }
+
+    @Test
+    public void testOrderOfResults() {
+        Coherence coherence = new FirstWordCoherence();
+        String topics[][] = new String[100][];
+        int wordIdTopics[][] = new int[topics.length][];
+        for (int i = 0; i < topics.length; ++i) {
+            topics[i] = new String[] { Integer.toString(i), "x" };
+            wordIdTopics[i] = new int[] { i, 0 };
+        }
+        double coherences[];
+        for (int chunkSize = 1; chunkSize <= topics.length; chunkSize += 33) {
+            coherences = new ParallelCoherence(coherence, executor, chunkSize).calculateCoherences(topics);
+            Assert.assertEquals(topics.length, coherences.length);
+            for (int i = 0; i < coherences.length; ++i) {
+                Assert.assertEquals(i, coherences[i], 0);
+            }
+            coherences = new ParallelCoherence(coherence, executor, chunkSize).calculateCoherences(wordIdTopics, null);
+            Assert.assertEquals(topics.length, coherences.length);
+            for (int i = 0; i < coherences.length; ++i) {
+                Assert.assertEquals(i, coherences[i], 0);
+            }
+        }
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void testExceptionInChunk() {
+        String topics[][] = new String[20][];
+        for (int i = 0; i < topics.length; ++i) {
+            topics[i] = new String[] { (i == 15) ? "x" : Integer.toString(i) };
+        }
+        new ParallelCoherence(new FirstWordCoherence(), executor, CHUNK_SIZE).calculateCoherences(topics);
+    }
+
+    private static String[][] createTopics(Random random) {
+        String topics[][] = new String[NUMBER_OF_TOPICS][];
+        IntOpenHashSet words = new IntOpenHashSet();
+        int word;
+        for (int i = 0; i < topics.length; ++i) {
+            // every fifth topic is a copy of an earlier one to let the chunks hit the same cache entries
+            if ((i > 0) && ((i % 5) == 0)) {
+                topics[i] = topics[random.nextInt(i)].clone();
+            } else {
+                topics[i] = new String[TOPIC_SIZE];
+                words.clear();
+                for (int w = 0; w < TOPIC_SIZE; ++w) {
+                    do {
+                        word = random.nextInt(NUMBER_OF_WORDS);
+                    } while (!words.add(word));
+                    topics[i][w] = Integer.toString(word);
+                }
+            }
+        }
+        return topics;
+    }
+
+    private static int[][] createRandomDocuments(Random random) {
+        IntOpenHashSet documentsOfWords[] = new IntOpenHashSet[NUMBER_OF_WORDS];
+        for (int w = 0; w < documentsOfWords.length; ++w) {
+            documentsOfWords[w] = new IntOpenHashSet();
+        }
+        int word, length;
+        for (int d = 0; d < NUMBER_OF_DOCUMENTS; ++d) {
+            word = random.nextInt(NUMBER_OF_WORDS);
+            length = 1 + random.nextInt(20);
+            for (int i = 0; i < length; ++i) {
+                documentsOfWords[(word + random.nextInt(10)) % NUMBER_OF_WORDS].add(d);
+            }
+        }
+        int documents[][] = new int[NUMBER_OF_WORDS][];
+        for (int w = 0; w < documents.length; ++w) {
+            documents[w] = documentsOfWords[w].toArray();
+        }
+        return documents;
+    }
+
+    /**
+     * Returns the first word (id) of a word set as its coherence.
+     */
+    private static class FirstWordCoherence implements Coherence {
+
+        @Override
+        public double[] calculateCoherences(String[][] wordsets) {
+            double coherences[] = new double[wordsets.length];
+            for (int i = 0; i < wordsets.length; ++i) {
+                coherences[i] = Integer.parseInt(wordsets[i][0]);
+            }
+            return coherences;
+        }
+
+        @Override
+        public double[] calculateCoherences(int[][] wordsets, CorpusVocabulary vocabulary) {
+            double coherences[] = new double[wordsets.length];
+            for (int i = 0; i < wordsets.length; ++i) {
+                coherences[i] = wordsets[i][0];
+            }
+            return coherences;
+        }
+
+        @Override
+        public String getName() {
+            return "first word";
+        }
+    }
+}
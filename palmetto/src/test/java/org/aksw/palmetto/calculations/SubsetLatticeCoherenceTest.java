@@ -0,0 +1,206 @@
+/**
+ * This file is part of Palmetto.
+ *
+ * Palmetto is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Palmetto is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Palmetto.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.aksw.palmetto.calculations;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.aksw.palmetto.DirectConfirmationBasedCoherence;
+import org.aksw.palmetto.VectorBasedCoherence;
+import org.aksw.palmetto.aggregation.ArithmeticMean;
+import org.aksw.palmetto.calculations.direct.DirectConfirmationMeasure;
+import org.aksw.palmetto.calculations.direct.FitelsonConfirmationMeasure;
+import org.aksw.palmetto.calculations.direct.LogCondProbConfirmationMeasure;
+import org.aksw.palmetto.calculations.direct.LogRatioConfirmationMeasure;
+import org.aksw.palmetto.calculations.direct.NormalizedLogRatioConfirmationMeasure;
+import org.aksw.palmetto.calculations.direct.OlssonsConfirmationMeasure;
+import org.aksw.palmetto.calculations.indirect.CentroidConfirmationMeasure;
+import org.aksw.palmetto.calculations.indirect.CosinusConfirmationMeasure;
+import org.aksw.palmetto.calculations.indirect.VectorBasedConfirmationMeasure;
+import org.aksw.palmetto.data.SegmentationDefinition;
+import org.aksw.palmetto.data.SubsetLattice;
+import org.aksw.palmetto.data.SubsetProbabilities;
+import org.aksw.palmetto.prob.AbstractBooleanDocumentSupportingAdapterBasedTest;
+import org.aksw.palmetto.prob.bd.BooleanDocumentProbabilitySupplier;
+import org.aksw.palmetto.subsets.AllOne;
+import org.aksw.palmetto.subsets.LatticeSupportingSegmentator;
+import org.aksw.palmetto.subsets.OneAll;
+import org.aksw.palmetto.subsets.OneOne;
+import org.aksw.palmetto.subsets.OnePreceding;
+import org.aksw.palmetto.subsets.OneSet;
+import org.aksw.palmetto.vector.DirectConfirmationBasedVectorCreator;
+import org.aksw.palmetto.vector.ProbabilityBasedVectorCreator;
+import org.aksw.palmetto.vector.VectorCreator;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.carrotsearch.hppc.IntOpenHashSet;
+
+/**
+ * Checks that the confirmation measures lead to the same results for word
+ * sets defined by a {@link SubsetLattice} as for their dense definitions and
+ * that topics that are too large for the dense definitions can be rated.
+ *
+ * @author Michael R&ouml;der (roeder@informatik.uni-leipzig.de)
+ *
+ */
+public class SubsetLatticeCoherenceTest extends AbstractBooleanDocumentSupportingAdapterBasedTest {
+
+    private static final int NUMBER_OF_WORDS = 100;
+    private static final int NUMBER_OF_DOCUMENTS = 5000;
+    private static final int DENSE_TOPIC_SIZE = 10;
+    private static final int LARGE_TOPIC_SIZE = 60;
+    private static final double DELTA = 0.0000001;
+
+    public SubsetLatticeCoherenceTest() {
+        super(createRandomDocuments(new Random(NUMBER_OF_WORDS)), NUMBER_OF_DOCUMENTS);
+    }
+
+    @Test
+    public void testDirectConfirmation() {
+        BooleanDocumentProbabilitySupplier supplier = BooleanDocumentProbabilitySupplier.create(this, "bd", false);
+        String wordsets[][] = new String[][] { createTopic(DENSE_TOPIC_SIZE, 0), createTopic(DENSE_TOPIC_SIZE, 50) };
+        LatticeSupportingSegmentator segmentators[] = new LatticeSupportingSegmentator[] { new OneOne(),
+                new OnePreceding(), new OneSet(), new OneAll(), new AllOne(), new OneOne() };
+        DirectConfirmationMeasure measures[] = new DirectConfirmationMeasure[] {
+                new NormalizedLogRatioConfirmationMeasure(), new LogCondProbConfirmationMeasure(),
+                new FitelsonConfirmationMeasure(), new LogRatioConfirmationMeasure(),
+                new LogCondProbConfirmationMeasure(), new OlssonsConfirmationMeasure() };
+        SubsetProbabilities expected[], probabilities[];
+        for (int m = 0; m < measures.length; ++m) {
+            expected = supplier.getProbabilities(wordsets, createDenseDefinitions(segmentators[m], wordsets));
+            probabilities = supplier.getProbabilities(wordsets, createLatticeDefinitions(segmentators[m], wordsets));
+            for (int i = 0; i < wordsets.length; ++i) {
+                Assert.assertArrayEquals(measures[m].calculateConfirmationValues(expected[i]),
+                        measures[m].calculateConfirmationValues(probabilities[i]), DELTA);
+            }
+        }
+    }
+
+    @Test
+    public void testIndirectConfirmation() {
+        BooleanDocumentProbabilitySupplier supplier = BooleanDocumentProbabilitySupplier.create(this, "bd", false);
+        String wordsets[][] = new String[][] { createTopic(DENSE_TOPIC_SIZE, 0), createTopic(DENSE_TOPIC_SIZE, 50) };
+        VectorCreator vectorCreators[] = new VectorCreator[] { new ProbabilityBasedVectorCreator(supplier),
+                new DirectConfirmationBasedVectorCreator(supplier, new NormalizedLogRatioConfirmationMeasure()) };
+        VectorBasedConfirmationMeasure measures[] = new VectorBasedConfirmationMeasure[] {
+                new CosinusConfirmationMeasure(), new CentroidConfirmationMeasure() };
+        LatticeSupportingSegmentator segmentators[] = new LatticeSupportingSegmentator[] { new OneSet(),
+                new OneAll() };
+        for (int v = 0; v < vectorCreators.length; ++v) {
+            for (int s = 0; s < segmentators.length; ++s) {
+                for (int m = 0; m < measures.length; ++m) {
+                    for (int i = 0; i < wordsets.length; ++i) {
+                        Assert.assertArrayEquals(measures[m].calculateConfirmationValues(vectorCreators[v].getVectors(
+                                wordsets, createDenseDefinitions(segmentators[s], wordsets))[i]),
+                                measures[m].calculateConfirmationValues(vectorCreators[v].getVectors(wordsets,
+                                        createLatticeDefinitions(segmentators[s], wordsets))[i]), DELTA);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Rates a topic with more words than a dense definition can handle. The
+     * UMass coherence is the mean of the confirmations of all pairs, i.e., it
+     * can be compared with the coherences of the single pairs.
+     */
+    @Test
+    public void testLargeTopic() {
+        BooleanDocumentProbabilitySupplier supplier = BooleanDocumentProbabilitySupplier.create(this, "bd", false);
+        String topic[] = createTopic(LARGE_TOPIC_SIZE, 0);
+        DirectConfirmationBasedCoherence umass = new DirectConfirmationBasedCoherence(new OnePreceding(), supplier,
+                new LogCondProbConfirmationMeasure(), new ArithmeticMean());
+        double coherence = umass.calculateCoherences(new String[][] { topic })[0];
+
+        String pairs[][] = new String[(LARGE_TOPIC_SIZE * (LARGE_TOPIC_SIZE - 1)) / 2][];
+        int pos = 0;
+        for (int i = 0; i < topic.length; ++i) {
+            for (int j = i + 1; j < topic.length; ++j) {
+                pairs[pos] = new String[] { topic[i], topic[j] };
+                ++pos;
+            }
+        }
+        double pairCoherences[] = umass.calculateCoherences(pairs);
+        double expected = 0;
+        for (int i = 0; i < pairCoherences.length; ++i) {
+            expected += pairCoherences[i];
+        }
+        expected /= pairCoherences.length;
+        Assert.assertEquals(expected, coherence, DELTA);
+
+        VectorBasedCoherence cv = new VectorBasedCoherence(new OneSet(), new DirectConfirmationBasedVectorCreator(
+                supplier, new NormalizedLogRatioConfirmationMeasure()), new CosinusConfirmationMeasure(),
+                new ArithmeticMean());
+        coherence = cv.calculateCoherences(new String[][] { topic })[0];
+        Assert.assertFalse(Double.isNaN(coherence));
+        Assert.assertTrue(coherence > 0);
+    }
+
+    private static SegmentationDefinition[] createDenseDefinitions(LatticeSupportingSegmentator segmentator,
+            String wordsets[][]) {
+        SegmentationDefinition definitions[] = new SegmentationDefinition[wordsets.length];
+        for (int i = 0; i < definitions.length; ++i) {
+            definitions[i] = segmentator.getSubsetDefinition(wordsets[i].length);
+            Assert.assertNull(definitions[i].lattice);
+        }
+        return definitions;
+    }
+
+    private static SegmentationDefinition[] createLatticeDefinitions(LatticeSupportingSegmentator segmentator,
+            String wordsets[][]) {
+        SegmentationDefinition definitions[] = new SegmentationDefinition[wordsets.length];
+        for (int i = 0; i < definitions.length; ++i) {
+            definitions[i] = segmentator.getSubsetDefinition(new SubsetLattice(wordsets[i].length));
+        }
+        return definitions;
+    }
+
+    private static String[] createTopic(int size, int firstWord) {
+        String topic[] = new String[size];
+        for (int i = 0; i < topic.length; ++i) {
+            topic[i] = Integer.toString(firstWord + i);
+        }
+        return topic;
+    }
+
+    /**
+     * Creates documents in which the words with neighboring ids co-occur
+     * more often than others.
+     */
+    private static int[][] createRandomDocuments(Random random) {
+        IntOpenHashSet documentsOfWords[] = new IntOpenHashSet[NUMBER_OF_WORDS];
+        for (int w = 0; w < documentsOfWords.length; ++w) {
+            documentsOfWords[w] = new IntOpenHashSet();
+        }
+        int word, length;
+        for (int d = 0; d < NUMBER_OF_DOCUMENTS; ++d) {
+            word = random.nextInt(NUMBER_OF_WORDS);
+            length = 1 + random.nextInt(20);
+            for (int i = 0; i < length; ++i) {
+                documentsOfWords[(word + random.nextInt(10)) % NUMBER_OF_WORDS].add(d);
+            }
+        }
+        int documents[][] = new int[NUMBER_OF_WORDS][];
+        for (int w = 0; w < documents.length; ++w) {
+            documents[w] = documentsOfWords[w].toArray();
+            Arrays.sort(documents[w]);
+        }
+        return documents;
+    }
+}
@@ -0,0 +1,80 @@
+/**
+ * This file is part of Palmetto.
+ *
+ * Palmetto is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Palmetto is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Palmetto.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.aksw.palmetto.corpus;
+
+import java.io.File;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.carrotsearch.hppc.IntIntOpenHashMap;
+
+public class CorpusStatisticsTest {
+
+    @Test
+    public void testCreation() {
+        IntIntOpenHashMap histogram = new IntIntOpenHashMap();
+        histogram.put(3, 2);
+        histogram.put(10, 5);
+        CorpusStatistics statistics = CorpusStatistics.create(histogram, new int[] { 4, 10 });
+        Assert.assertEquals(7, statistics.getNumberOfDocuments());
+        Assert.assertEquals(56, statistics.getNumberOfTokens());
+        // short documents form a single window
+        Assert.assertEquals(2 + (5 * 7), statistics.getNumberOfWindows(4));
+        Assert.assertEquals(2 + 5, statistics.getNumberOfWindows(10));
+        // not stored window sizes are calculated
+        Assert.assertEquals((2 * 2) + (5 * 9), statistics.getNumberOfWindows(2));
+        Assert.assertArrayEquals(new int[][] { { 3, 2 }, { 10, 5 } }, statistics.getDocumentSizeHistogram());
+    }
+
+    @Test
+    public void testLargeCounts() {
+        // 5M documents with 1000 tokens would overflow int counts
+        int histogram[][] = new int[][] { { 1000, 5000000 } };
+        CorpusStatistics statistics = CorpusStatistics.create(histogram, new int[] { 10 });
+        Assert.assertEquals(5000000000L, statistics.getNumberOfTokens());
+        Assert.assertEquals(4955000000L, statistics.getNumberOfWindows(10));
+        Assert.assertEquals(4955000000L, CorpusStatistics.countWindows(histogram, 10));
+    }
+
+    @Test
+    public void testWriteAndRead() throws Exception {
+        IntIntOpenHashMap histogram = new IntIntOpenHashMap();
+        for (int i = 1; i < 100; ++i) {
+            histogram.put(i * 7, i);
+        }
+        CorpusStatistics statistics = CorpusStatistics.create(histogram, CorpusStatistics.DEFAULT_WINDOW_SIZES);
+        File file = File.createTempFile("corpus", ".stats");
+        try {
+            statistics.write(file.getAbsolutePath());
+            CorpusStatistics read = CorpusStatistics.read(file.getAbsolutePath());
+            Assert.assertNotNull(read);
+            Assert.assertEquals(statistics.getNumberOfDocuments(), read.getNumberOfDocuments());
+            Assert.assertEquals(statistics.getNumberOfTokens(), read.getNumberOfTokens());
+            Assert.assertArrayEquals(statistics.getWindowSizes(), read.getWindowSizes());
+            for (int i = 0; i < CorpusStatistics.DEFAULT_WINDOW_SIZES.length; ++i) {
+                Assert.assertEquals(statistics.getNumberOfWindows(CorpusStatistics.DEFAULT_WINDOW_SIZES[i]),
+                        read.getNumberOfWindows(CorpusStatistics.DEFAULT_WINDOW_SIZES[i]));
+            }
+            Assert.assertArrayEquals(statistics.getDocumentSizeHistogram(), read.getDocumentSizeHistogram());
+        } finally {
+            FileUtils.deleteQuietly(file);
+        }
+        Assert.assertNull(CorpusStatistics.read(file.getAbsolutePath()));
+    }
+}
@@ -0,0 +1,199 @@
+/**
+ * This file is part of Palmetto.
+ *
+ * Palmetto is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Palmetto is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Palmetto.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.aksw.palmetto.corpus;
+
+import java.io.File;
+import java.util.Random;
+
+import org.aksw.palmetto.Coherence;
+import org.aksw.palmetto.Palmetto;
+import org.aksw.palmetto.corpus.lucene.RandomIndexes;
+import org.aksw.palmetto.corpus.lucene.WindowSupportingLuceneCorpusAdapter;
+import org.aksw.palmetto.corpus.lucene.creation.LuceneIndexHistogramCreator;
+import org.aksw.palmetto.corpus.lucene.creation.PositionStoringLuceneIndexCreator;
+import org.aksw.palmetto.data.CountedSubsets;
+import org.aksw.palmetto.data.SegmentationDefinition;
+import org.aksw.palmetto.prob.FrequencyDeterminer;
+import org.aksw.palmetto.prob.bd.BitSetBasedBooleanDocumentFrequencyDeterminer;
+import org.aksw.palmetto.prob.bd.LeapfrogBooleanDocumentFrequencyDeterminer;
+import org.aksw.palmetto.prob.bd.ListBasedBooleanDocumentFrequencyDeterminer;
+import org.aksw.palmetto.prob.bd.PackedBitSetBasedBooleanDocumentFrequencyDeterminer;
+import org.aksw.palmetto.prob.decorator.FrequencyCachingDeterminerDecorator;
+import org.aksw.palmetto.prob.decorator.SimpleFrequencyCachingDeterminerDecorator;
+import org.aksw.palmetto.subsets.OneSet;
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the {@link CorpusVocabulary} and compares the results of the word id
+ * based calculation with the results of the word based calculation.
+ *
+ * @author Michael R&ouml;der (roeder@informatik.uni-leipzig.de)
+ *
+ */
+public class CorpusVocabularyTest {
+
+    private static final int NUMBER_OF_DOCUMENTS = 2000;
+    private static final int VOCABULARY_SIZE = 500;
+    private static final int NUMBER_OF_WORDSETS = 10;
+    private static final int WORDS_PER_WORDSET = 8;
+    private static final String COHERENCES[] = { "umass", "uci", "npmi", "c_a", "c_p", "c_v" };
+    private static final double DOUBLE_PRECISION_DELTA = 0.00000001;
+
+    @Test
+    public void testVocabulary() {
+        CorpusVocabulary vocabulary = new CorpusVocabulary(new String[] { "apple", "banana", "cherry" });
+        Assert.assertEquals(3, vocabulary.size());
+        Assert.assertEquals(1, vocabulary.getId("banana"));
+        Assert.assertEquals(CorpusVocabulary.UNKNOWN_WORD_ID, vocabulary.getId("durian"));
+        Assert.assertEquals("cherry", vocabulary.getWord(2));
+        Assert.assertNull(vocabulary.getWord(3));
+        Assert.assertNull(vocabulary.getWord(CorpusVocabulary.UNKNOWN_WORD_ID));
+        int ids[][] = vocabulary.getIds(new String[][] { { "cherry", "apple" }, { "durian" } });
+        Assert.assertArrayEquals(new int[] { 2, 0 }, ids[0]);
+        Assert.assertArrayEquals(new int[] { CorpusVocabulary.UNKNOWN_WORD_ID }, ids[1]);
+        String words[][] = vocabulary.getWords(ids);
+        Assert.assertArrayEquals(new String[] { "cherry", "apple" }, words[0]);
+        Assert.assertArrayEquals(new String[] { null }, words[1]);
+        words = vocabulary.getKnownWords(ids);
+        Assert.assertArrayEquals(new String[] { "cherry", "apple" }, words[0]);
+        Assert.assertArrayEquals(new String[] { null }, words[1]);
+        try {
+            vocabulary.getKnownWord(3);
+            Assert.fail("An id that is not part of the vocabulary has been accepted.");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        Assert.assertEquals(CorpusVocabulary.NO_VERSION, vocabulary.getCorpusVersion());
+    }
+
+    @Test
+    public void testWordIdCalculation() throws Exception {
+        Random random = new Random(11);
+        File indexDir = RandomIndexes.createRandomIndex(random, NUMBER_OF_DOCUMENTS, VOCABULARY_SIZE, 20, 200);
+        String indexPath = indexDir.getAbsolutePath();
+        LuceneIndexHistogramCreator hCreator = new LuceneIndexHistogramCreator(
+                Palmetto.DEFAULT_DOCUMENT_LENGTH_INDEX_FIELD_NAME);
+        hCreator.createLuceneIndexHistogram(indexPath);
+        String wordsets[][] = RandomIndexes.createRandomWordsets(random,
+                NUMBER_OF_WORDSETS, WORDS_PER_WORDSET, VOCABULARY_SIZE);
+        // add a word that is not part of the corpus
+        wordsets[0][WORDS_PER_WORDSET - 1] = "unknown";
+
+        WindowSupportingLuceneCorpusAdapter adapter = WindowSupportingLuceneCorpusAdapter.create(indexPath,
+                Palmetto.DEFAULT_TEXT_INDEX_FIELD_NAME, Palmetto.DEFAULT_DOCUMENT_LENGTH_INDEX_FIELD_NAME);
+        try {
+            CorpusVocabulary vocabulary = adapter.getVocabulary();
+            Assert.assertNotNull(vocabulary);
+            Assert.assertSame(vocabulary, adapter.getVocabulary());
+            int wordIds[][] = vocabulary.getIds(wordsets);
+            Assert.assertEquals(CorpusVocabulary.UNKNOWN_WORD_ID, wordIds[0][WORDS_PER_WORDSET - 1]);
+            for (int i = 0; i < wordsets.length; ++i) {
+                for (int j = 0; j < wordsets[i].length; ++j) {
+                    if (wordIds[i][j] != CorpusVocabulary.UNKNOWN_WORD_ID) {
+                        Assert.assertEquals(wordsets[i][j], vocabulary.getWord(wordIds[i][j]));
+                    }
+                }
+            }
+
+            SegmentationDefinition definitions[] = new SegmentationDefinition[wordsets.length];
+            for (int i = 0; i < definitions.length; ++i) {
+                definitions[i] = (new OneSet()).getSubsetDefinition(WORDS_PER_WORDSET);
+            }
+            FrequencyDeterminer determiners[] = new FrequencyDeterminer[] {
+                    new BitSetBasedBooleanDocumentFrequencyDeterminer(adapter),
+                    new ListBasedBooleanDocumentFrequencyDeterminer(adapter),
+                    new PackedBitSetBasedBooleanDocumentFrequencyDeterminer(adapter),
+                    new LeapfrogBooleanDocumentFrequencyDeterminer(adapter) };
+            for (int d = 0; d < determiners.length; ++d) {
+                CountedSubsets expected[] = determiners[d].determineCounts(wordsets, definitions);
+                CountedSubsets counts[] = determiners[d].determineCounts(wordIds, vocabulary, definitions);
+                for (int i = 0; i < expected.length; ++i) {
+                    Assert.assertArrayEquals(expected[i].counts, counts[i].counts);
+                }
+            }
+
+            Coherence coherence;
+            for (int c = 0; c < COHERENCES.length; ++c) {
+                coherence = Palmetto.getCoherence(COHERENCES[c], adapter);
+                Assert.assertArrayEquals(COHERENCES[c], coherence.calculateCoherences(wordsets),
+                        coherence.calculateCoherences(wordIds, vocabulary), DOUBLE_PRECISION_DELTA);
+            }
+
+            // the ids of the vocabulary are bound to the current version of the index
+            Assert.assertTrue(vocabulary.isCurrent(adapter));
+            Assert.assertEquals(adapter.getCorpusVersion(), vocabulary.getCorpusVersion());
+            FrequencyDeterminer cachingDeterminers[] = new FrequencyDeterminer[] {
+                    new FrequencyCachingDeterminerDecorator(new ListBasedBooleanDocumentFrequencyDeterminer(adapter)),
+                    new SimpleFrequencyCachingDeterminerDecorator(
+                            new ListBasedBooleanDocumentFrequencyDeterminer(adapter)) };
+            for (int d = 0; d < cachingDeterminers.length; ++d) {
+                // fill the caches with the ids of the current vocabulary
+                cachingDeterminers[d].determineCounts(wordIds, vocabulary, definitions);
+            }
+            PositionStoringLuceneIndexCreator creator = new PositionStoringLuceneIndexCreator(
+                    Palmetto.DEFAULT_TEXT_INDEX_FIELD_NAME, Palmetto.DEFAULT_DOCUMENT_LENGTH_INDEX_FIELD_NAME);
+            Assert.assertTrue(creator.appendToIndex(indexDir,
+                    RandomIndexes.createRandomDocuments(random, 10, 2 * VOCABULARY_SIZE, 20, 200).iterator()));
+            Assert.assertTrue(adapter.reopen());
+            Assert.assertFalse(vocabulary.isCurrent(adapter));
+            Assert.assertTrue(adapter.getVocabulary().isCurrent(adapter));
+
+            // the ids of the old vocabulary have to be rejected
+            for (int d = 0; d < determiners.length; ++d) {
+                assertRejected(determiners[d], wordIds, vocabulary, definitions);
+            }
+            for (int d = 0; d < cachingDeterminers.length; ++d) {
+                assertRejected(cachingDeterminers[d], wordIds, vocabulary, definitions);
+            }
+            for (int c = 0; c < COHERENCES.length; ++c) {
+                coherence = Palmetto.getCoherence(COHERENCES[c], adapter);
+                try {
+                    coherence.calculateCoherences(wordIds, vocabulary);
+                    Assert.fail("The coherence " + COHERENCES[c] + " accepted the ids of an outdated vocabulary.");
+                } catch (IllegalArgumentException e) {
+                    // expected
+                }
+            }
+            // the ids of the new vocabulary are accepted
+            CorpusVocabulary newVocabulary = adapter.getVocabulary();
+            int newWordIds[][] = newVocabulary.getIds(wordsets);
+            for (int d = 0; d < cachingDeterminers.length; ++d) {
+                CountedSubsets expected[] = determiners[0].determineCounts(wordsets, definitions);
+                CountedSubsets counts[] = cachingDeterminers[d].determineCounts(newWordIds, newVocabulary,
+                        definitions);
+                for (int i = 0; i < expected.length; ++i) {
+                    Assert.assertArrayEquals(expected[i].counts, counts[i].counts);
+                }
+            }
+        } finally {
+            adapter.close();
+            FileUtils.deleteQuietly(indexDir);
+        }
+    }
+
+    private static void assertRejected(FrequencyDeterminer determiner, int wordIds[][], CorpusVocabulary vocabulary,
+            SegmentationDefinition definitions[]) {
+        try {
+            determiner.determineCounts(wordIds, vocabulary, definitions);
+            Assert.fail(determiner.getClass().getSimpleName() + " accepted the ids of an outdated vocabulary.");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/**
+ * This file is part of Palmetto.
+ *
+ * Palmetto is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Palmetto is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Palmetto.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.aksw.palmetto.corpus;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TermWindowCountsTest {
+
+    @Test
+    public void testCountWindowsContainingWord() {
+        // document of length 10, window size 3 --> windows end at 2, ..., 9
+        Assert.assertEquals(1, TermWindowCounts.countWindowsContainingWord(new int[] { 0 }, 1, 10, 3));
+        Assert.assertEquals(3, TermWindowCounts.countWindowsContainingWord(new int[] { 5 }, 1, 10, 3));
+        Assert.assertEquals(1, TermWindowCounts.countWindowsContainingWord(new int[] { 9 }, 1, 10, 3));
+        // overlapping windows are counted only once
+        Assert.assertEquals(4, TermWindowCounts.countWindowsContainingWord(new int[] { 4, 5 }, 2, 10, 3));
+        // positions outside of the document are ignored
+        Assert.assertEquals(0, TermWindowCounts.countWindowsContainingWord(new int[] { 12 }, 1, 10, 3));
+        // a short document forms a single window
+        Assert.assertEquals(1, TermWindowCounts.countWindowsContainingWord(new int[] { 1, 2 }, 2, 3, 3));
+        Assert.assertEquals(0, TermWindowCounts.countWindowsContainingWord(new int[] { 1 }, 0, 3, 3));
+    }
+
+    @Test
+    public void testCountWindowsContainingWordRandomly() {
+        Random random = new Random(42);
+        int positions[], numberOfPositions, docLength, windowSize;
+        for (int r = 0; r < 10000; ++r) {
+            docLength = 1 + random.nextInt(60);
+            windowSize = 1 + random.nextInt(20);
+            numberOfPositions = random.nextInt(5);
+            positions = new int[numberOfPositions];
+            for (int i = 0; i < numberOfPositions; ++i) {
+                positions[i] = random.nextInt(docLength);
+            }
+            Arrays.sort(positions);
+            Assert.assertEquals(countWindows(positions, docLength, windowSize),
+                    TermWindowCounts.countWindowsContainingWord(positions, numberOfPositions, docLength, windowSize));
+        }
+    }
+
+    private static long countWindows(int positions[], int docLength, int windowSize) {
+        if (positions.length == 0) {
+            return 0;
+        }
+        if (docLength <= windowSize) {
+            return 1;
+        }
+        long count = 0;
+        for (int end = windowSize - 1; end < docLength; ++end) {
+            for (int i = 0; i < positions.length; ++i) {
+                if ((positions[i] <= end) && (positions[i] > (end - windowSize))) {
+                    ++count;
+                    break;
+                }
+            }
+        }
+        return count;
+    }
+
+    @Test
+    public void testWriteAndRead() throws Exception {
+        Charset utf8 = Charset.forName("UTF-8");
+        // sorted by their UTF-8 bytes
+        String words[] = new String[] { "a", "ab", "b", "zz", "ä", "äb" };
+        int windowSizes[] = new int[] { 10, 110 };
+        File file = File.createTempFile("corpus", ".termwindows");
+        try {
+            TermWindowCounts.Writer writer = new TermWindowCounts.Writer(file.getAbsolutePath(), 42, 50,
+                    windowSizes);
+            byte bytes[];
+            for (int i = 0; i < words.length; ++i) {
+                bytes = words[i].getBytes(utf8);
+                writer.add(bytes, 0, bytes.length, new long[] { i, 5000000000L + i });
+            }
+            writer.close();
+
+            TermWindowCounts counts = TermWindowCounts.read(file.getAbsolutePath());
+            Assert.assertNotNull(counts);
+            Assert.assertEquals(42, counts.getNumberOfDocuments());
+            Assert.assertEquals(50, counts.getMaxDoc());
+            Assert.assertEquals(words.length, counts.getNumberOfWords());
+            Assert.assertArrayEquals(windowSizes, counts.getWindowSizes());
+            Assert.assertTrue(counts.hasWindowSize(110));
+            Assert.assertFalse(counts.hasWindowSize(20));
+            for (int i = 0; i < words.length; ++i) {
+                Assert.assertEquals(i, counts.getWindowCount(words[i], 10));
+                Assert.assertEquals(5000000000L + i, counts.getWindowCount(words[i], 110));
+            }
+            // unknown words have a count of 0
+            Assert.assertEquals(0, counts.getWindowCount("c", 10));
+            Assert.assertEquals(0, counts.getWindowCount("", 10));
+            // unknown window sizes can not be answered
+            Assert.assertEquals(-1, counts.getWindowCount("a", 20));
+        } finally {
+            FileUtils.deleteQuietly(file);
+        }
+        Assert.assertNull(TermWindowCounts.read(file.getAbsolutePath()));
+    }
+}
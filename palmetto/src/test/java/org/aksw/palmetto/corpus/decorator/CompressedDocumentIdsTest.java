@@ -0,0 +1,82 @@
+/**
+ * This file is part of Palmetto.
+ *
+ * Palmetto is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Palmetto is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Palmetto.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.aksw.palmetto.corpus.decorator;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.IntOpenHashSet;
+
+public class CompressedDocumentIdsTest {
+
+    @Test
+    public void testEmptyList() {
+        byte encoded[] = CompressedDocumentIds.encode(new IntArrayList());
+        Assert.assertEquals(0, CompressedDocumentIds.size(encoded));
+        IntArrayList decoded = new IntArrayList();
+        CompressedDocumentIds.decode(encoded, decoded);
+        Assert.assertEquals(0, decoded.size());
+    }
+
+    @Test
+    public void testSortedList() {
+        Random random = new Random(1);
+        IntArrayList documents = new IntArrayList();
+        int id = 0;
+        for (int i = 0; i < 10000; ++i) {
+            id += 1 + random.nextInt(300);
+            documents.add(id);
+        }
+        documents.add(Integer.MAX_VALUE);
+        byte encoded[] = CompressedDocumentIds.encode(documents);
+        // small gaps need at most 2 bytes
+        Assert.assertTrue(encoded.length < (2 * documents.size() + 10));
+        checkDecoding(documents, encoded);
+    }
+
+    @Test
+    public void testUnsortedList() {
+        Random random = new Random(2);
+        IntArrayList documents = new IntArrayList();
+        for (int i = 0; i < 10000; ++i) {
+            documents.add(random.nextInt(Integer.MAX_VALUE));
+        }
+        documents.add(0);
+        documents.add(Integer.MAX_VALUE);
+        documents.add(0);
+        checkDecoding(documents, CompressedDocumentIds.encode(documents));
+    }
+
+    private void checkDecoding(IntArrayList documents, byte encoded[]) {
+        Assert.assertEquals(documents.size(), CompressedDocumentIds.size(encoded));
+        IntArrayList decoded = new IntArrayList();
+        decoded.add(-1);
+        CompressedDocumentIds.decode(encoded, decoded);
+        Assert.assertEquals(-1, decoded.get(0));
+        decoded.remove(0);
+        Assert.assertArrayEquals(documents.toArray(), decoded.toArray());
+
+        IntOpenHashSet decodedSet = new IntOpenHashSet();
+        CompressedDocumentIds.decode(encoded, decodedSet);
+        IntOpenHashSet expectedSet = new IntOpenHashSet();
+        expectedSet.add(documents.toArray());
+        Assert.assertEquals(expectedSet, decodedSet);
+    }
+}
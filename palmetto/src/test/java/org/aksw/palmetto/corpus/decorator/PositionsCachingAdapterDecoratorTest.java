@@ -0,0 +1,224 @@
+/**
+ * This file is part of Palmetto.
+ *
+ * Palmetto is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Palmetto is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Palmetto.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.aksw.palmetto.corpus.decorator;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.aksw.palmetto.Palmetto;
+import org.aksw.palmetto.corpus.DocumentPositionsConsumer;
+import org.aksw.palmetto.corpus.StreamingWindowSupportingAdapter;
+import org.aksw.palmetto.corpus.WindowSupportingAdapter;
+import org.aksw.palmetto.corpus.lucene.RandomIndexes;
+import org.aksw.palmetto.corpus.lucene.WindowSupportingLuceneCorpusAdapter;
+import org.aksw.palmetto.corpus.lucene.creation.LuceneIndexHistogramCreator;
+import org.aksw.palmetto.data.CountedSubsets;
+import org.aksw.palmetto.data.SegmentationDefinition;
+import org.aksw.palmetto.prob.FrequencyDeterminer;
+import org.aksw.palmetto.prob.window.BooleanSlidingWindowFrequencyDeterminer;
+import org.aksw.palmetto.prob.window.ContextWindowFrequencyDeterminer;
+import org.aksw.palmetto.subsets.OneOne;
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.IntIntOpenHashMap;
+import com.carrotsearch.hppc.IntObjectOpenHashMap;
+
+public class PositionsCachingAdapterDecoratorTest {
+
+    private static final int NUMBER_OF_WORDSETS = 10;
+    private static final int WORDS_PER_WORDSET = 5;
+    private static final int VOCABULARY_SIZE = 300;
+
+    @Test
+    public void test() throws Exception {
+        Random random = new Random(5);
+        File indexDir = RandomIndexes.createRandomIndex(random, 2000, VOCABULARY_SIZE, 5, 150);
+        String indexPath = indexDir.getAbsolutePath();
+        LuceneIndexHistogramCreator hCreator = new LuceneIndexHistogramCreator(
+                Palmetto.DEFAULT_DOCUMENT_LENGTH_INDEX_FIELD_NAME);
+        hCreator.createLuceneIndexHistogram(indexPath);
+
+        String wordsets[][] = RandomIndexes.createRandomWordsets(random,
+                NUMBER_OF_WORDSETS, WORDS_PER_WORDSET, VOCABULARY_SIZE);
+        wordsets[0][0] = "unknown";
+        SegmentationDefinition definitions[] = new SegmentationDefinition[wordsets.length];
+        for (int i = 0; i < definitions.length; ++i) {
+            definitions[i] = (new OneOne()).getSubsetDefinition(WORDS_PER_WORDSET);
+        }
+
+        WindowSupportingAdapter adapter = WindowSupportingLuceneCorpusAdapter.create(indexPath,
+                Palmetto.DEFAULT_TEXT_INDEX_FIELD_NAME, Palmetto.DEFAULT_DOCUMENT_LENGTH_INDEX_FIELD_NAME);
+        PositionsCachingAdapterDecorator decorator = new PositionsCachingAdapterDecorator(adapter);
+        try {
+            // the different window models share the cached positions
+            FrequencyDeterminer expectedDeterminers[] = new FrequencyDeterminer[] {
+                    new BooleanSlidingWindowFrequencyDeterminer(adapter, 70),
+                    new BooleanSlidingWindowFrequencyDeterminer(adapter, 110),
+                    new BooleanSlidingWindowFrequencyDeterminer(adapter, 10),
+                    new ContextWindowFrequencyDeterminer(adapter, 5) };
+            FrequencyDeterminer determiners[] = new FrequencyDeterminer[] {
+                    new BooleanSlidingWindowFrequencyDeterminer(decorator, 70),
+                    new BooleanSlidingWindowFrequencyDeterminer(decorator, 110),
+                    new BooleanSlidingWindowFrequencyDeterminer(decorator, 10),
+                    new ContextWindowFrequencyDeterminer(decorator, 5) };
+            CountedSubsets expected[], counts[];
+            for (int d = 0; d < determiners.length; ++d) {
+                expected = expectedDeterminers[d].determineCounts(wordsets, definitions);
+                counts = determiners[d].determineCounts(wordsets, definitions);
+                for (int i = 0; i < expected.length; ++i) {
+                    Assert.assertArrayEquals(expected[i].counts, counts[i].counts);
+                }
+            }
+            long misses = decorator.getMissCount();
+            Assert.assertTrue(misses <= NUMBER_OF_WORDSETS * WORDS_PER_WORDSET);
+            Assert.assertEquals(3 * misses, decorator.getHitCount());
+            Assert.assertTrue(decorator.getResidentBytes() > 0);
+        } finally {
+            decorator.close();
+            FileUtils.deleteQuietly(indexDir);
+        }
+    }
+
+    /**
+     * Checks that the determiners stream the positions through the decorator
+     * instead of requesting the positions of all documents at once and that
+     * the streamed documents are the same as the documents of the decorated
+     * adapter if some of the words are cached.
+     */
+    @Test
+    public void testStreaming() throws Exception {
+        Random random = new Random(7);
+        File indexDir = RandomIndexes.createRandomIndex(random, 2000, VOCABULARY_SIZE, 5, 150);
+        String indexPath = indexDir.getAbsolutePath();
+        LuceneIndexHistogramCreator hCreator = new LuceneIndexHistogramCreator(
+                Palmetto.DEFAULT_DOCUMENT_LENGTH_INDEX_FIELD_NAME);
+        hCreator.createLuceneIndexHistogram(indexPath);
+
+        String wordsets[][] = RandomIndexes.createRandomWordsets(random,
+                NUMBER_OF_WORDSETS, WORDS_PER_WORDSET, VOCABULARY_SIZE);
+        wordsets[0][0] = "unknown";
+        SegmentationDefinition definitions[] = new SegmentationDefinition[wordsets.length];
+        for (int i = 0; i < definitions.length; ++i) {
+            definitions[i] = (new OneOne()).getSubsetDefinition(WORDS_PER_WORDSET);
+        }
+
+        WindowSupportingLuceneCorpusAdapter adapter = WindowSupportingLuceneCorpusAdapter.create(indexPath,
+                Palmetto.DEFAULT_TEXT_INDEX_FIELD_NAME, Palmetto.DEFAULT_DOCUMENT_LENGTH_INDEX_FIELD_NAME);
+        RequestCountingDecorator decorator = new RequestCountingDecorator(adapter);
+        try {
+            BooleanSlidingWindowFrequencyDeterminer expectedDeterminers[] = {
+                    new BooleanSlidingWindowFrequencyDeterminer(adapter, 70),
+                    new BooleanSlidingWindowFrequencyDeterminer(adapter, 10) };
+            BooleanSlidingWindowFrequencyDeterminer determiners[] = {
+                    new BooleanSlidingWindowFrequencyDeterminer(decorator, 70),
+                    new BooleanSlidingWindowFrequencyDeterminer(decorator, 10) };
+            ContextWindowFrequencyDeterminer expectedCwDeterminer = new ContextWindowFrequencyDeterminer(adapter, 5);
+            ContextWindowFrequencyDeterminer cwDeterminer = new ContextWindowFrequencyDeterminer(decorator, 5);
+            for (int u = 0; u < 2; ++u) {
+                // with and without the union vocabulary
+                for (int d = 0; d < determiners.length; ++d) {
+                    expectedDeterminers[d].setUseUnionVocabulary(u == 0);
+                    determiners[d].setUseUnionVocabulary(u == 0);
+                    compare(expectedDeterminers[d].determineCounts(wordsets, definitions),
+                            determiners[d].determineCounts(wordsets, definitions));
+                }
+                expectedCwDeterminer.setUseUnionVocabulary(u == 0);
+                cwDeterminer.setUseUnionVocabulary(u == 0);
+                compare(expectedCwDeterminer.determineCounts(wordsets, definitions),
+                        cwDeterminer.determineCounts(wordsets, definitions));
+            }
+            Assert.assertEquals(0, decorator.requests);
+            Assert.assertTrue(decorator.streams > 0);
+            // the positions of the streamed words have been cached
+            Assert.assertTrue(decorator.getResidentBytes() > 0);
+
+            // cache only a part of the words (closing the decorator would close the adapter)
+            decorator = new RequestCountingDecorator(adapter);
+            String words[] = wordsets[1];
+            decorator.requestWordPositionsInDocuments(Arrays.copyOf(words, 2), new IntIntOpenHashMap());
+            for (int minNumberOfWords = 1; minNumberOfWords <= 3; ++minNumberOfWords) {
+                Assert.assertEquals(streamToList(adapter, words, minNumberOfWords),
+                        streamToList(decorator, words, minNumberOfWords));
+            }
+        } finally {
+            decorator.close();
+            FileUtils.deleteQuietly(indexDir);
+        }
+    }
+
+    private static void compare(CountedSubsets expected[], CountedSubsets counts[]) {
+        for (int i = 0; i < expected.length; ++i) {
+            Assert.assertArrayEquals(expected[i].counts, counts[i].counts);
+        }
+    }
+
+    /**
+     * Streams the positions of the given words and returns a description of
+     * every document that has been handed to the consumer.
+     */
+    private static List<String> streamToList(StreamingWindowSupportingAdapter adapter, String words[],
+            int minNumberOfWords) {
+        final List<String> documents = new ArrayList<String>();
+        adapter.streamWordPositionsInDocuments(words, minNumberOfWords, new DocumentPositionsConsumer() {
+            @Override
+            public void consumeDocument(int docId, IntArrayList[] positions, int docLength) {
+                StringBuilder builder = new StringBuilder();
+                builder.append(docId).append(' ').append(docLength);
+                for (int i = 0; i < positions.length; ++i) {
+                    builder.append(' ');
+                    builder.append((positions[i] != null) ? Arrays.toString(positions[i].toArray()) : "-");
+                }
+                documents.add(builder.toString());
+            }
+        });
+        return documents;
+    }
+
+    /**
+     * A decorator counting the requests that materialize the positions of all
+     * documents and the streaming requests.
+     */
+    private static class RequestCountingDecorator extends PositionsCachingAdapterDecorator {
+
+        private int requests = 0;
+        private int streams = 0;
+
+        public RequestCountingDecorator(WindowSupportingAdapter decorated) {
+            super(decorated);
+        }
+
+        @Override
+        public IntObjectOpenHashMap<IntArrayList[]> requestWordPositionsInDocuments(String[] words,
+                IntIntOpenHashMap docLengths) {
+            ++requests;
+            return super.requestWordPositionsInDocuments(words, docLengths);
+        }
+
+        @Override
+        public void streamWordPositionsInDocuments(String[] words, int minNumberOfWords,
+                DocumentPositionsConsumer consumer) {
+            ++streams;
+            super.streamWordPositionsInDocuments(words, minNumberOfWords, consumer);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/**
+ * This file is part of Palmetto.
+ *
+ * Palmetto is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Palmetto is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Palmetto.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.aksw.palmetto.corpus.decorator;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.aksw.palmetto.corpus.BooleanDocumentSupportingAdapter;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.IntOpenHashSet;
+import com.carrotsearch.hppc.ObjectObjectOpenHashMap;
+
+public class PostingListCachingAdapterDecoratorTest implements BooleanDocumentSupportingAdapter {
+
+    private static final int NUMBER_OF_DOCUMENTS = 100000;
+
+    private AtomicInteger requests = new AtomicInteger();
+
+    @Test
+    public void testCaching() {
+        PostingListCachingAdapterDecorator decorator = new PostingListCachingAdapterDecorator(this);
+        IntArrayList expected, documents;
+        for (int r = 0; r < 3; ++r) {
+            for (int w = 1; w < 20; ++w) {
+                expected = new IntArrayList();
+                addDocuments(Integer.toString(w), expected);
+                documents = new IntArrayList();
+                decorator.getDocumentsWithWord(Integer.toString(w), documents);
+                Assert.assertArrayEquals(expected.toArray(), documents.toArray());
+            }
+        }
+        IntOpenHashSet set = new IntOpenHashSet();
+        decorator.getDocumentsWithWordAsSet("3", set);
+        Assert.assertEquals(((NUMBER_OF_DOCUMENTS - 1) / 3) + 1, set.size());
+
+        Assert.assertEquals(19, requests.get());
+        Assert.assertEquals(19, decorator.getMissCount());
+        Assert.assertEquals(39, decorator.getHitCount());
+        Assert.assertTrue(decorator.getResidentBytes() > 0);
+        // the compressed lists should be smaller than the lists of the decorated adapter
+        Assert.assertTrue(decorator.getResidentBytes() < (4 * 19 * NUMBER_OF_DOCUMENTS / 10));
+    }
+
+    @Test
+    public void testByteBudget() {
+        long byteBudget = 100000;
+        PostingListCachingAdapterDecorator decorator = new PostingListCachingAdapterDecorator(this, byteBudget);
+        IntArrayList documents;
+        for (int w = 1; w < 100; ++w) {
+            documents = new IntArrayList();
+            decorator.getDocumentsWithWord(Integer.toString(w), documents);
+            Assert.assertEquals(((NUMBER_OF_DOCUMENTS - 1) / w) + 1, documents.size());
+            Assert.assertTrue(decorator.getResidentBytes() <= byteBudget);
+        }
+        // the first (largest) lists can not be cached
+        documents = new IntArrayList();
+        decorator.getDocumentsWithWord("1", documents);
+        Assert.assertEquals(100, requests.get());
+    }
+
+    @Test
+    public void testConcurrentRequests() throws Exception {
+        final PostingListCachingAdapterDecorator decorator = new PostingListCachingAdapterDecorator(this);
+        final AtomicInteger errors = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int t = 0; t < 8; ++t) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    IntArrayList documents;
+                    for (int w = 1; w < 50; ++w) {
+                        documents = new IntArrayList();
+                        decorator.getDocumentsWithWord(Integer.toString(w), documents);
+                        if (documents.size() != (((NUMBER_OF_DOCUMENTS - 1) / w) + 1)) {
+                            errors.incrementAndGet();
+                        }
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+        Assert.assertEquals(0, errors.get());
+        // every word should have been requested only once
+        Assert.assertEquals(49, requests.get());
+    }
+
+    @Override
+    public void getDocumentsWithWordsAsSet(ObjectObjectOpenHashMap<String, IntOpenHashSet> wordDocMapping) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void getDocumentsWithWordAsSet(String word, IntOpenHashSet documents) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void getDocumentsWithWords(ObjectObjectOpenHashMap<String, IntArrayList> wordDocMapping) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void getDocumentsWithWord(String word, IntArrayList documents) {
+        requests.incrementAndGet();
+        addDocuments(word, documents);
+    }
+
+    /**
+     * The word "n" is contained in every n-th document.
+     */
+    private void addDocuments(String word, IntArrayList documents) {
+        int step = Integer.parseInt(word);
+        for (int i = 0; i < NUMBER_OF_DOCUMENTS; i += step) {
+            documents.add(i);
+        }
+    }
+
+    @Override
+    public int getNumberOfDocuments() {
+        return NUMBER_OF_DOCUMENTS;
+    }
+
+    @Override
+    public void close() {
+    }
+}
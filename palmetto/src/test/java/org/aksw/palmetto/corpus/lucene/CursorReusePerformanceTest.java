@@ -0,0 +1,243 @@
+/**
+ * This file is part of Palmetto.
+ *
+ * Palmetto is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Palmetto is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Palmetto.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.aksw.palmetto.corpus.lucene;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Random;
+
+import org.aksw.palmetto.Palmetto;
+import org.aksw.palmetto.corpus.lucene.creation.LuceneIndexHistogramCreator;
+import org.apache.commons.io.FileUtils;
+import org.apache.lucene.index.AtomicReader;
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.DocsAndPositionsEnum;
+import org.apache.lucene.index.DocsEnum;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.store.NIOFSDirectory;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.IntIntOpenHashMap;
+import com.carrotsearch.hppc.IntObjectOpenHashMap;
+
+/**
+ * Compares the adapter reusing its per-thread enums and caching the term
+ * states with an adapter that creates new enums and seeks inside the term
+ * dictionaries for every request (the former behavior). The test prints the
+ * latency and the bytes allocated per request.
+ *
+ * @author Michael R&ouml;der (roeder@informatik.uni-leipzig.de)
+ *
+ */
+public class CursorReusePerformanceTest {
+
+    private static final int NUMBER_OF_DOCUMENTS = 5000;
+    private static final int VOCABULARY_SIZE = 2000;
+    private static final int MIN_DOCUMENT_LENGTH = 10;
+    private static final int MAX_DOCUMENT_LENGTH = 50;
+    private static final int COMMIT_INTERVAL = 700;
+    private static final int NUMBER_OF_WORDSETS = 50;
+    private static final int WORDS_PER_WORDSET = 10;
+    private static final int NUMBER_OF_ROUNDS = 20;
+
+    @Test
+    public void test() throws Exception {
+        Random random = new Random(7);
+        File indexDir = RandomIndexes.createRandomIndex(random,
+                NUMBER_OF_DOCUMENTS, VOCABULARY_SIZE, MIN_DOCUMENT_LENGTH, MAX_DOCUMENT_LENGTH, COMMIT_INTERVAL);
+        String indexPath = indexDir.getAbsolutePath();
+        LuceneIndexHistogramCreator hCreator = new LuceneIndexHistogramCreator(
+                Palmetto.DEFAULT_DOCUMENT_LENGTH_INDEX_FIELD_NAME);
+        hCreator.createLuceneIndexHistogram(indexPath);
+        // the words of the wordsets are requested again and again
+        String wordsets[][] = RandomIndexes.createRandomWordsets(random,
+                NUMBER_OF_WORDSETS, WORDS_PER_WORDSET, VOCABULARY_SIZE);
+
+        WindowSupportingLuceneCorpusAdapter adapter = WindowSupportingLuceneCorpusAdapter.create(indexPath,
+                Palmetto.DEFAULT_TEXT_INDEX_FIELD_NAME, Palmetto.DEFAULT_DOCUMENT_LENGTH_INDEX_FIELD_NAME);
+        WindowSupportingLuceneCorpusAdapter baseline = createBaseline(indexPath, adapter.getDocumentSizeHistogram());
+        try {
+            for (int i = 0; i < wordsets.length; ++i) {
+                for (int j = 0; j < wordsets[i].length; ++j) {
+                    IntArrayList expected = new IntArrayList();
+                    baseline.getDocumentsWithWord(wordsets[i][j], expected);
+                    IntArrayList documents = new IntArrayList();
+                    adapter.getDocumentsWithWord(wordsets[i][j], documents);
+                    Assert.assertEquals(expected, documents);
+                }
+                IntIntOpenHashMap expectedLengths = new IntIntOpenHashMap();
+                IntObjectOpenHashMap<IntArrayList[]> expected = baseline.requestWordPositionsInDocuments(wordsets[i],
+                        expectedLengths);
+                IntIntOpenHashMap docLengths = new IntIntOpenHashMap();
+                IntObjectOpenHashMap<IntArrayList[]> positions = adapter.requestWordPositionsInDocuments(wordsets[i],
+                        docLengths);
+                Assert.assertEquals(expectedLengths, docLengths);
+                Assert.assertEquals(expected.size(), positions.size());
+                for (int d = 0; d < expected.allocated.length; ++d) {
+                    if (expected.allocated[d]) {
+                        Assert.assertArrayEquals(expected.get(expected.keys[d]), positions.get(expected.keys[d]));
+                    }
+                }
+            }
+            // warm up
+            run(baseline, wordsets);
+            run(adapter, wordsets);
+
+            long baselineResult[] = measure(baseline, wordsets);
+            long adapterResult[] = measure(adapter, wordsets);
+            int requests = NUMBER_OF_ROUNDS * NUMBER_OF_WORDSETS * (WORDS_PER_WORDSET + 1);
+            System.out.println("Cursor reuse performance test (" + adapter.snapshot.reader.length + " leaves, "
+                    + requests + " requests) new enums: " + baselineResult[0] + " ms, "
+                    + (baselineResult[1] < 0 ? "n/a" : Long.toString(baselineResult[1] / requests))
+                    + " bytes/request\treused enums: " + adapterResult[0] + " ms, "
+                    + (adapterResult[1] < 0 ? "n/a" : Long.toString(adapterResult[1] / requests)) + " bytes/request");
+        } finally {
+            adapter.close();
+            baseline.close();
+            FileUtils.deleteQuietly(indexDir);
+        }
+    }
+
+    /**
+     * Returns the runtime in ms and the bytes allocated by the current thread
+     * (or -1 if the JVM can not measure them).
+     */
+    protected long[] measure(WindowSupportingLuceneCorpusAdapter adapter, String wordsets[][]) {
+        java.lang.management.ThreadMXBean mxBean = ManagementFactory.getThreadMXBean();
+        com.sun.management.ThreadMXBean sunMxBean = null;
+        if ((mxBean instanceof com.sun.management.ThreadMXBean)
+                && ((com.sun.management.ThreadMXBean) mxBean).isThreadAllocatedMemorySupported()) {
+            sunMxBean = (com.sun.management.ThreadMXBean) mxBean;
+        }
+        long threadId = Thread.currentThread().getId();
+        long bytes = (sunMxBean != null) ? sunMxBean.getThreadAllocatedBytes(threadId) : 0;
+        long time = System.currentTimeMillis();
+        for (int r = 0; r < NUMBER_OF_ROUNDS; ++r) {
+            run(adapter, wordsets);
+        }
+        time = System.currentTimeMillis() - time;
+        bytes = (sunMxBean != null) ? (sunMxBean.getThreadAllocatedBytes(threadId) - bytes) : -1;
+        return new long[] { time, bytes };
+    }
+
+    protected void run(WindowSupportingLuceneCorpusAdapter adapter, String wordsets[][]) {
+        IntArrayList documents = new IntArrayList();
+        for (int i = 0; i < wordsets.length; ++i) {
+            for (int j = 0; j < wordsets[i].length; ++j) {
+                documents.elementsCount = 0;
+                adapter.getDocumentsWithWord(wordsets[i][j], documents);
+            }
+            adapter.requestWordPositionsInDocuments(wordsets[i], new IntIntOpenHashMap());
+        }
+    }
+
+    protected WindowSupportingLuceneCorpusAdapter createBaseline(String indexPath, int histogram[][])
+            throws IOException {
+        DirectoryReader dirReader = DirectoryReader.open(new NIOFSDirectory(new File(indexPath)));
+        List<AtomicReaderContext> leaves = dirReader.leaves();
+        AtomicReader reader[] = new AtomicReader[leaves.size()];
+        AtomicReaderContext contexts[] = new AtomicReaderContext[leaves.size()];
+        for (int i = 0; i < reader.length; i++) {
+            contexts[i] = leaves.get(i);
+            reader[i] = contexts[i].reader();
+        }
+        NumericDocValues docLengthValues[] = WindowSupportingLuceneCorpusAdapter.loadDocLengthValues(reader,
+                Palmetto.DEFAULT_DOCUMENT_LENGTH_INDEX_FIELD_NAME);
+        return new NewEnumsAdapter(dirReader, reader, contexts, histogram, docLengthValues);
+    }
+
+    /**
+     * Requests new enums from the readers for every word, i.e., every request
+     * seeks inside the term dictionaries.
+     */
+    protected static class NewEnumsAdapter extends WindowSupportingLuceneCorpusAdapter {
+
+        public NewEnumsAdapter(DirectoryReader dirReader, AtomicReader[] reader, AtomicReaderContext[] contexts,
+                int[][] histogram, NumericDocValues[] docLengthValues) {
+            super(dirReader, reader, contexts, Palmetto.DEFAULT_TEXT_INDEX_FIELD_NAME,
+                    Palmetto.DEFAULT_DOCUMENT_LENGTH_INDEX_FIELD_NAME, histogram, docLengthValues, null);
+        }
+
+        @Override
+        public void getDocumentsWithWord(String word, IntArrayList documents) {
+            Term term = new Term(fieldName, word);
+            AtomicReader reader[] = snapshot.reader;
+            AtomicReaderContext contexts[] = snapshot.contexts;
+            try {
+                DocsEnum docs;
+                for (int i = 0; i < reader.length; i++) {
+                    docs = reader[i].termDocsEnum(term);
+                    if (docs != null) {
+                        while (docs.nextDoc() != DocsEnum.NO_MORE_DOCS) {
+                            documents.add(docs.docID() + contexts[i].docBase);
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                Assert.fail(e.getMessage());
+            }
+        }
+
+        @Override
+        protected void requestDocumentsWithWord(WindowIndexSnapshot snapshot, String word,
+                IntObjectOpenHashMap<IntArrayList[]> positionsInDocs, IntIntOpenHashMap docLengths, int wordId,
+                int numberOfWords) {
+            Term term = new Term(fieldName, word);
+            AtomicReader reader[] = snapshot.reader;
+            AtomicReaderContext contexts[] = snapshot.contexts;
+            DocsAndPositionsEnum docPosEnum;
+            int localDocId, globalDocId;
+            IntArrayList positions[];
+            NumericDocValues lengthValues;
+            try {
+                for (int i = 0; i < reader.length; i++) {
+                    docPosEnum = reader[i].termPositionsEnum(term);
+                    if (docPosEnum != null) {
+                        lengthValues = reader[i].getNumericDocValues(docLengthFieldName);
+                        while (docPosEnum.nextDoc() != DocsEnum.NO_MORE_DOCS) {
+                            localDocId = docPosEnum.docID();
+                            globalDocId = localDocId + contexts[i].docBase;
+                            if (!positionsInDocs.containsKey(globalDocId)) {
+                                positions = new IntArrayList[numberOfWords];
+                                positionsInDocs.put(globalDocId, positions);
+                            } else {
+                                positions = positionsInDocs.get(globalDocId);
+                            }
+                            if (positions[wordId] == null) {
+                                positions[wordId] = new IntArrayList();
+                            }
+                            for (int p = 0; p < docPosEnum.freq(); ++p) {
+                                positions[wordId].add(docPosEnum.nextPosition());
+                            }
+                            if (!docLengths.containsKey(globalDocId)) {
+                                docLengths.put(globalDocId, (int) lengthValues.get(localDocId));
+                            }
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                Assert.fail(e.getMessage());
+            }
+        }
+    }
+}
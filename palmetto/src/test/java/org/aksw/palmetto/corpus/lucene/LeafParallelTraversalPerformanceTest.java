@@ -0,0 +1,126 @@
+/**
+ * This file is part of Palmetto.
+ *
+ * Palmetto is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Palmetto is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Palmetto.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.aksw.palmetto.corpus.lucene;
+
+import java.io.File;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.aksw.palmetto.Palmetto;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.carrotsearch.hppc.IntArrayList;
+
+/**
+ * Compares the latency of single posting list requests of an adapter that
+ * traverses the leaves sequentially with an adapter that traverses them in
+ * parallel. The same documents are indexed with different commit intervals,
+ * i.e., the indexes differ in their number of leaves. The test prints the
+ * latency per request for every leaf count.
+ *
+ * @author Michael R&ouml;der (roeder@informatik.uni-leipzig.de)
+ *
+ */
+public class LeafParallelTraversalPerformanceTest {
+
+    private static final int NUMBER_OF_DOCUMENTS = 20000;
+    private static final int VOCABULARY_SIZE = 2000;
+    private static final int MIN_DOCUMENT_LENGTH = 10;
+    private static final int MAX_DOCUMENT_LENGTH = 100;
+    /**
+     * The commit intervals of the indexes. The index creator does not force a
+     * merge, i.e., a smaller interval leads to more leaves.
+     */
+    private static final int COMMIT_INTERVALS[] = new int[] { NUMBER_OF_DOCUMENTS, NUMBER_OF_DOCUMENTS / 2,
+            NUMBER_OF_DOCUMENTS / 4, NUMBER_OF_DOCUMENTS / 8 };
+    /**
+     * The most frequent words are requested since their posting lists are
+     * long enough to make the traversal of a single request expensive.
+     */
+    private static final int NUMBER_OF_REQUESTED_WORDS = 20;
+    private static final int NUMBER_OF_ROUNDS = 20;
+    private static final int SEED = 13;
+
+    @Test
+    public void test() throws Exception {
+        String words[] = new String[NUMBER_OF_REQUESTED_WORDS];
+        for (int i = 0; i < words.length; ++i) {
+            words[i] = "w" + i;
+        }
+        ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        try {
+            for (int i = 0; i < COMMIT_INTERVALS.length; ++i) {
+                measure(COMMIT_INTERVALS[i], words, pool);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    protected void measure(int commitInterval, String words[], ForkJoinPool pool) throws Exception {
+        // every index contains the same documents
+        File indexDir = RandomIndexes.createRandomIndex(new Random(SEED), NUMBER_OF_DOCUMENTS, VOCABULARY_SIZE,
+                MIN_DOCUMENT_LENGTH, MAX_DOCUMENT_LENGTH, commitInterval);
+        String indexPath = indexDir.getAbsolutePath();
+        LuceneCorpusAdapter sequentialAdapter = LuceneCorpusAdapter.create(indexPath,
+                Palmetto.DEFAULT_TEXT_INDEX_FIELD_NAME);
+        LuceneCorpusAdapter parallelAdapter = LuceneCorpusAdapter.create(indexPath,
+                Palmetto.DEFAULT_TEXT_INDEX_FIELD_NAME);
+        parallelAdapter.setLeafTraversalPool(pool);
+        try {
+            IntArrayList expected, documents;
+            for (int i = 0; i < words.length; ++i) {
+                expected = new IntArrayList();
+                sequentialAdapter.getDocumentsWithWord(words[i], expected);
+                documents = new IntArrayList();
+                parallelAdapter.getDocumentsWithWord(words[i], documents);
+                Assert.assertArrayEquals(expected.toArray(), documents.toArray());
+            }
+            // warm up
+            run(sequentialAdapter, words);
+            run(parallelAdapter, words);
+
+            long sequentialTime = run(sequentialAdapter, words);
+            long parallelTime = run(parallelAdapter, words);
+            int requests = NUMBER_OF_ROUNDS * words.length;
+            System.out.println("Leaf parallel traversal performance test (" + parallelAdapter.snapshot.reader.length
+                    + " leaves, " + requests + " requests) sequential: " + (sequentialTime / (1000 * requests))
+                    + " us/request\tparallel (" + pool.getParallelism() + " threads): "
+                    + (parallelTime / (1000 * requests)) + " us/request");
+        } finally {
+            sequentialAdapter.close();
+            parallelAdapter.close();
+            RandomIndexes.deleteIndex(indexDir);
+        }
+    }
+
+    /**
+     * Returns the runtime in ns.
+     */
+    protected long run(LuceneCorpusAdapter adapter, String words[]) {
+        IntArrayList documents = new IntArrayList();
+        long time = System.nanoTime();
+        for (int r = 0; r < NUMBER_OF_ROUNDS; ++r) {
+            for (int i = 0; i < words.length; ++i) {
+                documents.elementsCount = 0;
+                adapter.getDocumentsWithWord(words[i], documents);
+            }
+        }
+        return System.nanoTime() - time;
+    }
+}
@@ -0,0 +1,119 @@
+/**
+ * This file is part of Palmetto.
+ *
+ * Palmetto is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Palmetto is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Palmetto.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.aksw.palmetto.corpus.lucene;
+
+import java.io.File;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.aksw.palmetto.Palmetto;
+import org.aksw.palmetto.corpus.lucene.creation.LuceneIndexHistogramCreator;
+import org.aksw.palmetto.data.CountedSubsets;
+import org.aksw.palmetto.data.SegmentationDefinition;
+import org.aksw.palmetto.prob.bd.BitSetBasedBooleanDocumentFrequencyDeterminer;
+import org.aksw.palmetto.prob.window.BooleanSlidingWindowFrequencyDeterminer;
+import org.aksw.palmetto.subsets.OneOne;
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.IntOpenHashSet;
+
+/**
+ * Checks that traversing the leaves of a multi-segment index in parallel leads
+ * to the same results as the sequential traversal.
+ *
+ * @author Michael R&ouml;der (roeder@informatik.uni-leipzig.de)
+ *
+ */
+public class LeafParallelTraversalTest {
+
+    private static final int NUMBER_OF_DOCUMENTS = 3000;
+    private static final int VOCABULARY_SIZE = 500;
+    private static final int NUMBER_OF_WORDSETS = 10;
+    private static final int WORDS_PER_WORDSET = 5;
+    private static final int WINDOW_SIZE = 20;
+
+    @Test
+    public void test() throws Exception {
+        Random random = new Random(7);
+        // a small commit interval leads to several segments
+        File indexDir = RandomIndexes.createRandomIndex(random, NUMBER_OF_DOCUMENTS, VOCABULARY_SIZE, 10, 100, 250);
+        String indexPath = indexDir.getAbsolutePath();
+        LuceneIndexHistogramCreator hCreator = new LuceneIndexHistogramCreator(
+                Palmetto.DEFAULT_DOCUMENT_LENGTH_INDEX_FIELD_NAME);
+        hCreator.createLuceneIndexHistogram(indexPath);
+
+        String wordsets[][] = RandomIndexes.createRandomWordsets(random,
+                NUMBER_OF_WORDSETS, WORDS_PER_WORDSET, VOCABULARY_SIZE);
+        SegmentationDefinition definitions[] = new SegmentationDefinition[wordsets.length];
+        for (int i = 0; i < definitions.length; ++i) {
+            definitions[i] = (new OneOne()).getSubsetDefinition(WORDS_PER_WORDSET);
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        WindowSupportingLuceneCorpusAdapter sequentialAdapter = WindowSupportingLuceneCorpusAdapter.create(indexPath,
+                Palmetto.DEFAULT_TEXT_INDEX_FIELD_NAME, Palmetto.DEFAULT_DOCUMENT_LENGTH_INDEX_FIELD_NAME);
+        WindowSupportingLuceneCorpusAdapter parallelAdapter = WindowSupportingLuceneCorpusAdapter.create(indexPath,
+                Palmetto.DEFAULT_TEXT_INDEX_FIELD_NAME, Palmetto.DEFAULT_DOCUMENT_LENGTH_INDEX_FIELD_NAME);
+        parallelAdapter.setLeafTraversalPool(pool);
+        try {
+            Assert.assertTrue(parallelAdapter.snapshot.reader.length > 1);
+            Assert.assertTrue(parallelAdapter.isTraversingLeavesInParallel());
+
+            IntArrayList expected, documents;
+            IntOpenHashSet expectedSet, documentSet;
+            for (int i = 0; i < wordsets.length; ++i) {
+                for (int j = 0; j < wordsets[i].length; ++j) {
+                    expected = new IntArrayList();
+                    sequentialAdapter.getDocumentsWithWord(wordsets[i][j], expected);
+                    documents = new IntArrayList();
+                    parallelAdapter.getDocumentsWithWord(wordsets[i][j], documents);
+                    Assert.assertArrayEquals(expected.toArray(), documents.toArray());
+
+                    expectedSet = new IntOpenHashSet();
+                    sequentialAdapter.getDocumentsWithWordAsSet(wordsets[i][j], expectedSet);
+                    documentSet = new IntOpenHashSet();
+                    parallelAdapter.getDocumentsWithWordAsSet(wordsets[i][j], documentSet);
+                    Assert.assertEquals(expectedSet, documentSet);
+                }
+            }
+
+            CountedSubsets expectedCounts[] = (new BitSetBasedBooleanDocumentFrequencyDeterminer(sequentialAdapter))
+                    .determineCounts(wordsets, definitions);
+            CountedSubsets counts[] = (new BitSetBasedBooleanDocumentFrequencyDeterminer(parallelAdapter)).determineCounts(
+                    wordsets, definitions);
+            for (int i = 0; i < expectedCounts.length; ++i) {
+                Assert.assertArrayEquals(expectedCounts[i].counts, counts[i].counts);
+            }
+
+            expectedCounts = (new BooleanSlidingWindowFrequencyDeterminer(sequentialAdapter, WINDOW_SIZE))
+                    .determineCounts(wordsets, definitions);
+            counts = (new BooleanSlidingWindowFrequencyDeterminer(parallelAdapter, WINDOW_SIZE)).determineCounts(
+                    wordsets, definitions);
+            for (int i = 0; i < expectedCounts.length; ++i) {
+                Assert.assertArrayEquals(expectedCounts[i].counts, counts[i].counts);
+            }
+        } finally {
+            sequentialAdapter.close();
+            parallelAdapter.close();
+            pool.shutdown();
+            FileUtils.deleteQuietly(indexDir);
+        }
+    }
+}
@@ -0,0 +1,200 @@
+/**
+ * This file is part of Palmetto.
+ *
+ * Palmetto is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Palmetto is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Palmetto.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.aksw.palmetto.corpus.lucene;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.aksw.palmetto.Palmetto;
+import org.aksw.palmetto.corpus.DocumentCursor;
+import org.apache.commons.io.FileUtils;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.store.SimpleFSDirectory;
+import org.apache.lucene.util.Version;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.IntOpenHashSet;
+
+public class LuceneCorpusAdapterReopenTest {
+
+    private static final int NUMBER_OF_WORDS = 100;
+    private static final int NUMBER_OF_THREADS = 4;
+    private static final int NUMBER_OF_REOPENS = 5;
+
+    @Test
+    public void testCursorKeepsFormerVersion() throws Exception {
+        File indexDir = RandomIndexes.createRandomIndex(new Random(3), 2000, NUMBER_OF_WORDS, 5, 50, 400);
+        LuceneCorpusAdapter adapter = LuceneCorpusAdapter.create(indexDir.getAbsolutePath(),
+                Palmetto.DEFAULT_TEXT_INDEX_FIELD_NAME);
+        try {
+            IntArrayList expected = new IntArrayList();
+            adapter.getDocumentsWithWord("w40", expected);
+            Assert.assertTrue(expected.size() > 0);
+            DocumentCursor cursor = adapter.getDocumentCursor("w40");
+            DirectoryReader formerReader = adapter.snapshot.dirReader;
+
+            deleteDocuments(indexDir, "w40");
+            Assert.assertTrue(adapter.reopen());
+            IntArrayList documents = new IntArrayList();
+            adapter.getDocumentsWithWord("w40", documents);
+            Assert.assertEquals(0, documents.size());
+
+            // the cursor keeps reading the former version until it is closed
+            Assert.assertTrue(formerReader.getRefCount() > 0);
+            Assert.assertEquals(expected, readCursor(cursor));
+            cursor.close();
+            Assert.assertEquals(0, formerReader.getRefCount());
+        } finally {
+            adapter.close();
+            FileUtils.deleteQuietly(indexDir);
+        }
+        Assert.assertEquals(0, adapter.snapshot.dirReader.getRefCount());
+        try {
+            adapter.getNumberOfDocuments();
+            Assert.fail("A closed adapter has been used without an exception.");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testReopenWhileRequesting() throws Exception {
+        File indexDir = RandomIndexes.createRandomIndex(new Random(5), 3000, NUMBER_OF_WORDS, 5, 50, 400);
+        final LuceneCorpusAdapter adapter = LuceneCorpusAdapter.create(indexDir.getAbsolutePath(),
+                Palmetto.DEFAULT_TEXT_INDEX_FIELD_NAME);
+        // documents are only deleted, i.e., the documents of the first version contain all later documents
+        final IntOpenHashSet initialDocuments[] = new IntOpenHashSet[NUMBER_OF_WORDS];
+        for (int i = 0; i < NUMBER_OF_WORDS; ++i) {
+            initialDocuments[i] = new IntOpenHashSet();
+            adapter.getDocumentsWithWordAsSet("w" + i, initialDocuments[i]);
+        }
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        final boolean running[] = new boolean[] { true };
+        Thread threads[] = new Thread[NUMBER_OF_THREADS];
+        List<DirectoryReader> formerReaders = new ArrayList<DirectoryReader>();
+        try {
+            for (int t = 0; t < threads.length; ++t) {
+                final int threadId = t;
+                threads[t] = new Thread() {
+                    @Override
+                    public void run() {
+                        try {
+                            IntArrayList documents = new IntArrayList();
+                            int word = threadId;
+                            while (isRunning(running)) {
+                                documents.clear();
+                                if ((word & 1) == 0) {
+                                    adapter.getDocumentsWithWord("w" + word, documents);
+                                } else {
+                                    DocumentCursor cursor = adapter.getDocumentCursor("w" + word);
+                                    try {
+                                        documents = readCursor(cursor);
+                                    } finally {
+                                        cursor.close();
+                                    }
+                                }
+                                for (int i = 0; i < documents.size(); ++i) {
+                                    Assert.assertTrue(initialDocuments[word].contains(documents.get(i)));
+                                    if (i > 0) {
+                                        Assert.assertTrue(documents.get(i - 1) < documents.get(i));
+                                    }
+                                }
+                                word = (word + 1) % NUMBER_OF_WORDS;
+                            }
+                        } catch (Throwable e) {
+                            error.compareAndSet(null, e);
+                        }
+                    }
+                };
+                threads[t].start();
+            }
+            for (int r = 0; r < NUMBER_OF_REOPENS; ++r) {
+                deleteDocuments(indexDir, "w" + (30 + r));
+                formerReaders.add(adapter.snapshot.dirReader);
+                Assert.assertTrue(adapter.reopen());
+                Thread.sleep(20);
+            }
+        } finally {
+            synchronized (running) {
+                running[0] = false;
+            }
+            for (int t = 0; t < threads.length; ++t) {
+                if (threads[t] != null) {
+                    threads[t].join();
+                }
+            }
+        }
+        try {
+            if (error.get() != null) {
+                throw new AssertionError(error.get());
+            }
+            // all former versions have been closed after their last request
+            for (DirectoryReader reader : formerReaders) {
+                Assert.assertEquals(0, reader.getRefCount());
+            }
+            LuceneCorpusAdapter freshAdapter = LuceneCorpusAdapter.create(indexDir.getAbsolutePath(),
+                    Palmetto.DEFAULT_TEXT_INDEX_FIELD_NAME);
+            try {
+                Assert.assertEquals(freshAdapter.getNumberOfDocuments(), adapter.getNumberOfDocuments());
+                IntArrayList expected, documents;
+                for (int i = 0; i < NUMBER_OF_WORDS; ++i) {
+                    expected = new IntArrayList();
+                    freshAdapter.getDocumentsWithWord("w" + i, expected);
+                    documents = new IntArrayList();
+                    adapter.getDocumentsWithWord("w" + i, documents);
+                    Assert.assertEquals(expected, documents);
+                }
+            } finally {
+                freshAdapter.close();
+            }
+        } finally {
+            adapter.close();
+            FileUtils.deleteQuietly(indexDir);
+        }
+    }
+
+    private static boolean isRunning(boolean running[]) {
+        synchronized (running) {
+            return running[0];
+        }
+    }
+
+    private static IntArrayList readCursor(DocumentCursor cursor) {
+        IntArrayList documents = new IntArrayList();
+        int docId;
+        while ((docId = cursor.nextDoc()) != DocumentCursor.NO_MORE_DOCS) {
+            documents.add(docId);
+        }
+        return documents;
+    }
+
+    private static void deleteDocuments(File indexDir, String word) throws IOException {
+        IndexWriter writer = new IndexWriter(new SimpleFSDirectory(indexDir), new IndexWriterConfig(
+                Version.LUCENE_44, new SimpleAnalyzer(true)));
+        writer.deleteDocuments(new Term(Palmetto.DEFAULT_TEXT_INDEX_FIELD_NAME, word));
+        writer.close();
+    }
+}
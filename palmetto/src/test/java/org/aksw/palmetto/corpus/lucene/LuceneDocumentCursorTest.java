@@ -0,0 +1,93 @@
+/**
+ * This file is part of Palmetto.
+ *
+ * Palmetto is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Palmetto is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Palmetto.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.aksw.palmetto.corpus.lucene;
+
+import java.io.File;
+import java.util.Random;
+
+import org.aksw.palmetto.Palmetto;
+import org.aksw.palmetto.corpus.DocumentCursor;
+import org.apache.commons.io.FileUtils;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.store.SimpleFSDirectory;
+import org.apache.lucene.util.Version;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.carrotsearch.hppc.IntArrayList;
+
+public class LuceneDocumentCursorTest {
+
+    private static final int NUMBER_OF_WORDS = 200;
+
+    @Test
+    public void test() throws Exception {
+        Random random = new Random(42);
+        // a small commit interval leads to several leaves
+        File indexDir = RandomIndexes.createRandomIndex(random, 3000, NUMBER_OF_WORDS, 5, 50, 400);
+        // deleted documents have to be skipped and must not be counted
+        IndexWriter writer = new IndexWriter(new SimpleFSDirectory(indexDir), new IndexWriterConfig(
+                Version.LUCENE_44, new SimpleAnalyzer(true)));
+        writer.deleteDocuments(new Term(Palmetto.DEFAULT_TEXT_INDEX_FIELD_NAME, "w50"));
+        writer.close();
+        LuceneCorpusAdapter adapter = LuceneCorpusAdapter.create(indexDir.getAbsolutePath(),
+                Palmetto.DEFAULT_TEXT_INDEX_FIELD_NAME);
+        try {
+            Assert.assertTrue(adapter.snapshot.reader.length > 1);
+            IntArrayList expected;
+            DocumentCursor cursor;
+            String word;
+            int target, pos;
+            for (int i = 0; i <= NUMBER_OF_WORDS; ++i) {
+                // the last word is unknown
+                word = "w" + i;
+                expected = new IntArrayList();
+                adapter.getDocumentsWithWord(word, expected);
+                cursor = adapter.getDocumentCursor(word);
+                Assert.assertEquals(expected.elementsCount, cursor.getDocumentFrequency());
+                // read all documents
+                for (int j = 0; j < expected.elementsCount; ++j) {
+                    Assert.assertEquals(expected.get(j), cursor.nextDoc());
+                }
+                Assert.assertEquals(DocumentCursor.NO_MORE_DOCS, cursor.nextDoc());
+                // skip documents
+                cursor.reset();
+                Assert.assertEquals(-1, cursor.docId());
+                target = 0;
+                pos = 0;
+                while (true) {
+                    target += 1 + random.nextInt(300);
+                    while ((pos < expected.elementsCount) && (expected.get(pos) < target)) {
+                        ++pos;
+                    }
+                    if (pos < expected.elementsCount) {
+                        Assert.assertEquals(expected.get(pos), cursor.advance(target));
+                        target = expected.get(pos);
+                    } else {
+                        Assert.assertEquals(DocumentCursor.NO_MORE_DOCS, cursor.advance(target));
+                        break;
+                    }
+                }
+            }
+        } finally {
+            adapter.close();
+            FileUtils.deleteQuietly(indexDir);
+        }
+    }
+}
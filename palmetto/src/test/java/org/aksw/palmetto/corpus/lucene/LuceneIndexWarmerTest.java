@@ -0,0 +1,73 @@
+/**
+ * This file is part of Palmetto.
+ *
+ * Palmetto is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Palmetto is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Palmetto.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.aksw.palmetto.corpus.lucene;
+
+import java.io.File;
+import java.util.Random;
+
+import org.aksw.palmetto.Palmetto;
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.carrotsearch.hppc.IntArrayList;
+
+public class LuceneIndexWarmerTest {
+
+    private static final String TEST_WORDS[] = { "w0", "w1", "w10", "w100", "unknown" };
+
+    @Test
+    public void test() throws Exception {
+        // a small commit interval leads to several segments, some of them in compound files
+        File indexDir = RandomIndexes.createRandomIndex(new Random(23), 2000, 500, 10, 100, 300);
+        LuceneCorpusAdapter nioAdapter = null;
+        LuceneCorpusAdapter mmapAdapter = null;
+        try {
+            nioAdapter = LuceneCorpusAdapter.create(indexDir.getAbsolutePath(),
+                    Palmetto.DEFAULT_TEXT_INDEX_FIELD_NAME, DirectoryMode.NIO);
+            mmapAdapter = LuceneCorpusAdapter.create(indexDir.getAbsolutePath(),
+                    Palmetto.DEFAULT_TEXT_INDEX_FIELD_NAME, DirectoryMode.MMAP_PRELOAD);
+
+            Assert.assertNull(nioAdapter.getPreloadResult());
+            LuceneIndexWarmer.WarmUpResult result = mmapAdapter.getPreloadResult();
+            Assert.assertNotNull(result);
+            Assert.assertTrue(result.getNumberOfFiles() > 0);
+
+            result = mmapAdapter.warmUp();
+            Assert.assertTrue(result.getNumberOfFiles() > 0);
+            Assert.assertTrue(result.getBytes() > 0);
+            Assert.assertTrue(result.getTime() >= 0);
+
+            IntArrayList expected, documents;
+            for (int i = 0; i < TEST_WORDS.length; ++i) {
+                expected = new IntArrayList();
+                nioAdapter.getDocumentsWithWord(TEST_WORDS[i], expected);
+                documents = new IntArrayList();
+                mmapAdapter.getDocumentsWithWord(TEST_WORDS[i], documents);
+                Assert.assertArrayEquals(expected.toArray(), documents.toArray());
+            }
+        } finally {
+            if (nioAdapter != null) {
+                nioAdapter.close();
+            }
+            if (mmapAdapter != null) {
+                mmapAdapter.close();
+            }
+            FileUtils.deleteQuietly(indexDir);
+        }
+    }
+}
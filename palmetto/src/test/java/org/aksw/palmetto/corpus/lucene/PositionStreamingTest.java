@@ -0,0 +1,254 @@
+/**
+ * This file is part of Palmetto.
+ *
+ * Palmetto is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Palmetto is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Palmetto.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.aksw.palmetto.corpus.lucene;
+
+import java.io.File;
+import java.util.Random;
+
+import org.aksw.palmetto.Palmetto;
+import org.aksw.palmetto.corpus.CorpusVocabulary;
+import org.aksw.palmetto.corpus.DocumentPositionsConsumer;
+import org.aksw.palmetto.corpus.VocabularySupportingAdapter;
+import org.aksw.palmetto.corpus.WindowSupportingAdapter;
+import org.aksw.palmetto.data.CountedSubsets;
+import org.aksw.palmetto.data.SegmentationDefinition;
+import org.aksw.palmetto.prob.window.BooleanSlidingWindowFrequencyDeterminer;
+import org.aksw.palmetto.prob.window.ContextWindowFrequencyDeterminer;
+import org.aksw.palmetto.prob.window.WindowBasedFrequencyDeterminer;
+import org.aksw.palmetto.subsets.OneOne;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.store.SimpleFSDirectory;
+import org.apache.lucene.util.Version;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.IntIntOpenHashMap;
+import com.carrotsearch.hppc.IntObjectOpenHashMap;
+
+/**
+ * Compares the positions and counts retrieved by streaming the documents one
+ * by one with the positions and counts retrieved by requesting the positions of
+ * all documents at once.
+ */
+public class PositionStreamingTest {
+
+    private static final int VOCABULARY_SIZE = 300;
+    private static final int NUMBER_OF_WORDSETS = 10;
+    private static final int WORDS_PER_WORDSET = 5;
+
+    @Test
+    public void testPositions() throws Exception {
+        Random random = new Random(3);
+        File indexDir = createIndex(random);
+        WindowSupportingLuceneCorpusAdapter adapter = WindowSupportingLuceneCorpusAdapter.create(
+                indexDir.getAbsolutePath(), Palmetto.DEFAULT_TEXT_INDEX_FIELD_NAME,
+                Palmetto.DEFAULT_DOCUMENT_LENGTH_INDEX_FIELD_NAME);
+        try {
+            Assert.assertTrue(adapter.snapshot.reader.length > 1);
+            // contains a frequent word, a deleted word, a duplicate and an unknown word
+            String words[] = new String[] { "w0", "w7", "w42", "w10", "w7", "unknown" };
+            IntIntOpenHashMap expectedDocLengths = new IntIntOpenHashMap();
+            final IntObjectOpenHashMap<IntArrayList[]> expected = adapter.requestWordPositionsInDocuments(words,
+                    expectedDocLengths);
+            final IntIntOpenHashMap docLengths = new IntIntOpenHashMap();
+            final IntObjectOpenHashMap<IntArrayList[]> streamed = new IntObjectOpenHashMap<IntArrayList[]>();
+            final int lastDocId[] = new int[] { -1 };
+            adapter.streamWordPositionsInDocuments(words, new DocumentPositionsConsumer() {
+                @Override
+                public void consumeDocument(int docId, IntArrayList[] positions, int docLength) {
+                    Assert.assertTrue(docId > lastDocId[0]);
+                    lastDocId[0] = docId;
+                    // the lists are reused, i.e., they have to be copied
+                    IntArrayList copy[] = new IntArrayList[positions.length];
+                    for (int i = 0; i < positions.length; ++i) {
+                        if (positions[i] != null) {
+                            copy[i] = new IntArrayList(positions[i]);
+                        }
+                    }
+                    streamed.put(docId, copy);
+                    docLengths.put(docId, docLength);
+                }
+            });
+            Assert.assertTrue(streamed.size() > 0);
+            Assert.assertEquals(expected.size(), streamed.size());
+            Assert.assertEquals(expectedDocLengths, docLengths);
+            IntArrayList expectedPositions[], positions[];
+            for (int i = 0; i < expected.allocated.length; ++i) {
+                if (expected.allocated[i]) {
+                    expectedPositions = (IntArrayList[]) ((Object[]) expected.values)[i];
+                    positions = streamed.get(expected.keys[i]);
+                    Assert.assertNotNull(positions);
+                    for (int j = 0; j < expectedPositions.length; ++j) {
+                        if (expectedPositions[j] == null) {
+                            Assert.assertNull(positions[j]);
+                        } else {
+                            Assert.assertArrayEquals(expectedPositions[j].toArray(), positions[j].toArray());
+                        }
+                    }
+                }
+            }
+        } finally {
+            adapter.close();
+            RandomIndexes.deleteIndex(indexDir);
+        }
+    }
+
+    @Test
+    public void testMinNumberOfWords() throws Exception {
+        Random random = new Random(5);
+        File indexDir = createIndex(random);
+        WindowSupportingLuceneCorpusAdapter adapter = WindowSupportingLuceneCorpusAdapter.create(
+                indexDir.getAbsolutePath(), Palmetto.DEFAULT_TEXT_INDEX_FIELD_NAME,
+                Palmetto.DEFAULT_DOCUMENT_LENGTH_INDEX_FIELD_NAME);
+        try {
+            String words[] = new String[] { "w3", "w42", "w50", "w80", "w80", "unknown" };
+            for (int minNumberOfWords = 1; minNumberOfWords <= words.length; ++minNumberOfWords) {
+                // stream all documents and filter them
+                final IntArrayList expectedDocIds = new IntArrayList();
+                final int min = minNumberOfWords;
+                adapter.streamWordPositionsInDocuments(words, new DocumentPositionsConsumer() {
+                    @Override
+                    public void consumeDocument(int docId, IntArrayList[] positions, int docLength) {
+                        int count = 0;
+                        for (int i = 0; i < positions.length; ++i) {
+                            if (positions[i] != null) {
+                                ++count;
+                            }
+                        }
+                        if (count >= min) {
+                            expectedDocIds.add(docId);
+                        }
+                    }
+                });
+                final IntArrayList docIds = new IntArrayList();
+                adapter.streamWordPositionsInDocuments(words, minNumberOfWords, new DocumentPositionsConsumer() {
+                    @Override
+                    public void consumeDocument(int docId, IntArrayList[] positions, int docLength) {
+                        docIds.add(docId);
+                    }
+                });
+                Assert.assertArrayEquals(expectedDocIds.toArray(), docIds.toArray());
+                if (minNumberOfWords <= 3) {
+                    Assert.assertTrue(docIds.size() > 0);
+                }
+            }
+        } finally {
+            adapter.close();
+            RandomIndexes.deleteIndex(indexDir);
+        }
+    }
+
+    @Test
+    public void testCounts() throws Exception {
+        Random random = new Random(4);
+        File indexDir = createIndex(random);
+        WindowSupportingLuceneCorpusAdapter adapter = WindowSupportingLuceneCorpusAdapter.create(
+                indexDir.getAbsolutePath(), Palmetto.DEFAULT_TEXT_INDEX_FIELD_NAME,
+                Palmetto.DEFAULT_DOCUMENT_LENGTH_INDEX_FIELD_NAME);
+        MaterializingAdapter materializingAdapter = new MaterializingAdapter(adapter);
+        try {
+            String wordsets[][] = RandomIndexes.createRandomWordsets(random,
+                    NUMBER_OF_WORDSETS, WORDS_PER_WORDSET, VOCABULARY_SIZE);
+            wordsets[0][1] = wordsets[0][0];
+            wordsets[1][2] = "unknown";
+            SegmentationDefinition definitions[] = new SegmentationDefinition[wordsets.length];
+            for (int i = 0; i < definitions.length; ++i) {
+                definitions[i] = (new OneOne()).getSubsetDefinition(WORDS_PER_WORDSET);
+            }
+            CorpusVocabulary vocabulary = adapter.getVocabulary();
+            int wordIds[][] = vocabulary.getIds(wordsets);
+
+            BooleanSlidingWindowFrequencyDeterminer booleanDeterminers[] = new BooleanSlidingWindowFrequencyDeterminer[] {
+                    new BooleanSlidingWindowFrequencyDeterminer(materializingAdapter, 10),
+                    new BooleanSlidingWindowFrequencyDeterminer(adapter, 10) };
+            ContextWindowFrequencyDeterminer contextDeterminers[] = new ContextWindowFrequencyDeterminer[] {
+                    new ContextWindowFrequencyDeterminer(materializingAdapter, 5),
+                    new ContextWindowFrequencyDeterminer(adapter, 5) };
+            for (int u = 0; u < 2; ++u) {
+                // with and without the union vocabulary
+                for (int i = 0; i < 2; ++i) {
+                    booleanDeterminers[i].setUseUnionVocabulary(u == 0);
+                    contextDeterminers[i].setUseUnionVocabulary(u == 0);
+                }
+                compare(booleanDeterminers, wordsets, vocabulary, wordIds, definitions);
+                compare(contextDeterminers, wordsets, vocabulary, wordIds, definitions);
+            }
+        } finally {
+            adapter.close();
+            RandomIndexes.deleteIndex(indexDir);
+        }
+    }
+
+    private static void compare(WindowBasedFrequencyDeterminer determiners[], String wordsets[][],
+            CorpusVocabulary vocabulary, int wordIds[][], SegmentationDefinition definitions[]) {
+        CountedSubsets expected[] = determiners[0].determineCounts(wordsets, definitions);
+        CountedSubsets counts[] = determiners[1].determineCounts(wordsets, definitions);
+        CountedSubsets idCounts[] = determiners[1].determineCounts(wordIds, vocabulary, definitions);
+        for (int i = 0; i < expected.length; ++i) {
+            Assert.assertArrayEquals(expected[i].counts, counts[i].counts);
+            Assert.assertArrayEquals(expected[i].counts, idCounts[i].counts);
+        }
+    }
+
+    private static File createIndex(Random random) throws Exception {
+        // a small commit interval leads to several leaves
+        File indexDir = RandomIndexes.createRandomIndex(random, 2000, VOCABULARY_SIZE, 5, 200, 300);
+        // the deleted documents must not be streamed
+        IndexWriter writer = new IndexWriter(new SimpleFSDirectory(indexDir), new IndexWriterConfig(
+                Version.LUCENE_44, new SimpleAnalyzer(true)));
+        writer.deleteDocuments(new Term(Palmetto.DEFAULT_TEXT_INDEX_FIELD_NAME, "w42"));
+        writer.close();
+        return indexDir;
+    }
+
+    /**
+     * An adapter hiding the streaming support of the given adapter, i.e., the
+     * determiners have to request the positions of all documents at once.
+     */
+    public static class MaterializingAdapter implements WindowSupportingAdapter, VocabularySupportingAdapter {
+
+        private WindowSupportingLuceneCorpusAdapter adapter;
+
+        public MaterializingAdapter(WindowSupportingLuceneCorpusAdapter adapter) {
+            this.adapter = adapter;
+        }
+
+        @Override
+        public int[][] getDocumentSizeHistogram() {
+            return adapter.getDocumentSizeHistogram();
+        }
+
+        @Override
+        public IntObjectOpenHashMap<IntArrayList[]> requestWordPositionsInDocuments(String[] words,
+                IntIntOpenHashMap docLengths) {
+            return adapter.requestWordPositionsInDocuments(words, docLengths);
+        }
+
+        @Override
+        public CorpusVocabulary getVocabulary() {
+            return adapter.getVocabulary();
+        }
+
+        @Override
+        public void close() {
+            adapter.close();
+        }
+    }
+}
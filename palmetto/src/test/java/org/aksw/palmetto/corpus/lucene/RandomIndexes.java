@@ -0,0 +1,122 @@
+/**
+ * This file is part of Palmetto.
+ *
+ * Palmetto is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Palmetto is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Palmetto.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.aksw.palmetto.corpus.lucene;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.aksw.palmetto.Palmetto;
+import org.aksw.palmetto.corpus.lucene.creation.IndexableDocument;
+import org.aksw.palmetto.corpus.lucene.creation.PositionStoringLuceneIndexCreator;
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+
+/**
+ * Creates the random documents, word sets and temporary positional indexes
+ * that are shared by the tests and removes the indexes together with their
+ * side car files.
+ *
+ * @author Michael R&ouml;der (roeder@informatik.uni-leipzig.de)
+ *
+ */
+public class RandomIndexes {
+
+    private RandomIndexes() {
+    }
+
+    /**
+     * Creates a positional index containing random documents. The words are
+     * named "w0", "w1", ... and are drawn from a skewed distribution, i.e.,
+     * words with a small id are more frequent.
+     */
+    public static File createRandomIndex(Random random, int numberOfDocuments, int vocabularySize,
+            int minDocumentLength, int maxDocumentLength) {
+        return createRandomIndex(random, numberOfDocuments, vocabularySize, minDocumentLength, maxDocumentLength,
+                numberOfDocuments);
+    }
+
+    /**
+     * Creates a positional index containing random documents. The index
+     * creator commits after every commitInterval documents, i.e., a small
+     * interval leads to an index with several segments.
+     */
+    public static File createRandomIndex(Random random, int numberOfDocuments, int vocabularySize,
+            int minDocumentLength, int maxDocumentLength, int commitInterval) {
+        File indexDir = new File(FileUtils.getTempDirectoryPath() + File.separator + "temp_index"
+                + Long.toString(System.nanoTime()));
+        Assert.assertTrue(indexDir.mkdir());
+        PositionStoringLuceneIndexCreator creator = new PositionStoringLuceneIndexCreator(
+                Palmetto.DEFAULT_TEXT_INDEX_FIELD_NAME, Palmetto.DEFAULT_DOCUMENT_LENGTH_INDEX_FIELD_NAME,
+                commitInterval);
+        Assert.assertTrue(creator.createIndex(indexDir,
+                createRandomDocuments(random, numberOfDocuments, vocabularySize, minDocumentLength, maxDocumentLength)
+                        .iterator()));
+        return indexDir;
+    }
+
+    public static List<IndexableDocument> createRandomDocuments(Random random, int numberOfDocuments,
+            int vocabularySize, int minDocumentLength, int maxDocumentLength) {
+        List<IndexableDocument> documents = new ArrayList<IndexableDocument>(numberOfDocuments);
+        StringBuilder builder = new StringBuilder();
+        int length;
+        for (int i = 0; i < numberOfDocuments; ++i) {
+            builder.delete(0, builder.length());
+            length = minDocumentLength + random.nextInt(maxDocumentLength - minDocumentLength + 1);
+            for (int j = 0; j < length; ++j) {
+                if (j > 0) {
+                    builder.append(' ');
+                }
+                builder.append('w');
+                builder.append(drawWordId(random, vocabularySize));
+            }
+            documents.add(new IndexableDocument(builder.toString(), length));
+        }
+        return documents;
+    }
+
+    public static String[][] createRandomWordsets(Random random, int numberOfWordsets, int wordsPerWordset,
+            int vocabularySize) {
+        String wordsets[][] = new String[numberOfWordsets][wordsPerWordset];
+        for (int i = 0; i < wordsets.length; ++i) {
+            for (int j = 0; j < wordsets[i].length; ++j) {
+                wordsets[i][j] = "w" + drawWordId(random, vocabularySize);
+            }
+        }
+        return wordsets;
+    }
+
+    /**
+     * Deletes the given index directory and the files that are stored next to
+     * it, e.g., the statistics, the term window counts, the document lengths
+     * and the histogram.
+     */
+    public static void deleteIndex(File indexDir) {
+        String indexPath = indexDir.getAbsolutePath();
+        FileUtils.deleteQuietly(indexDir);
+        FileUtils.deleteQuietly(new File(indexPath + WindowSupportingLuceneCorpusAdapter.STATISTICS_FILE_SUFFIX));
+        FileUtils.deleteQuietly(new File(indexPath + WindowSupportingLuceneCorpusAdapter.TERM_WINDOW_COUNTS_FILE_SUFFIX));
+        FileUtils.deleteQuietly(new File(indexPath + WindowSupportingLuceneCorpusAdapter.DOC_LENGTH_FILE_SUFFIX));
+        FileUtils.deleteQuietly(new File(indexPath + WindowSupportingLuceneCorpusAdapter.HISTOGRAM_FILE_SUFFIX));
+    }
+
+    private static int drawWordId(Random random, int vocabularySize) {
+        double r = random.nextDouble();
+        return (int) (r * r * r * vocabularySize);
+    }
+}
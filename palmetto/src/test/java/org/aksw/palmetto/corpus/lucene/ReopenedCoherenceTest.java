@@ -0,0 +1,158 @@
+/**
+ * This file is part of Palmetto.
+ *
+ * Palmetto is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Palmetto is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Palmetto.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.aksw.palmetto.corpus.lucene;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.aksw.palmetto.Coherence;
+import org.aksw.palmetto.DirectConfirmationBasedCoherence;
+import org.aksw.palmetto.Palmetto;
+import org.aksw.palmetto.VectorBasedCoherence;
+import org.aksw.palmetto.aggregation.ArithmeticMean;
+import org.aksw.palmetto.calculations.direct.LogCondProbConfirmationMeasure;
+import org.aksw.palmetto.calculations.direct.NormalizedLogRatioConfirmationMeasure;
+import org.aksw.palmetto.calculations.indirect.CosinusConfirmationMeasure;
+import org.aksw.palmetto.corpus.ResidentDocumentSets;
+import org.aksw.palmetto.corpus.decorator.PositionsCachingAdapterDecorator;
+import org.aksw.palmetto.corpus.decorator.PostingListCachingAdapterDecorator;
+import org.aksw.palmetto.corpus.lucene.creation.PositionStoringLuceneIndexCreator;
+import org.aksw.palmetto.prob.bd.BooleanDocumentProbabilitySupplier;
+import org.aksw.palmetto.prob.bd.HybridBooleanDocumentFrequencyDeterminer;
+import org.aksw.palmetto.prob.decorator.FrequencyCachingDeterminerDecorator;
+import org.aksw.palmetto.prob.decorator.SimpleFrequencyCachingDeterminerDecorator;
+import org.aksw.palmetto.prob.window.BooleanSlidingWindowFrequencyDeterminer;
+import org.aksw.palmetto.prob.window.ContextWindowFrequencyDeterminer;
+import org.aksw.palmetto.prob.window.WindowBasedProbabilityEstimator;
+import org.aksw.palmetto.subsets.OneOne;
+import org.aksw.palmetto.subsets.OnePreceding;
+import org.aksw.palmetto.subsets.OneSet;
+import org.aksw.palmetto.vector.DirectConfirmationBasedVectorCreator;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks that coherences that are calculated using caching decorators,
+ * window sums and resident document sets are equal to the coherences of a
+ * newly created adapter after documents have been appended to the index and
+ * the adapter has been reopened.
+ * 
+ * @author Michael R&ouml;der (roeder@informatik.uni-leipzig.de)
+ *
+ */
+public class ReopenedCoherenceTest {
+
+    private static final int NUMBER_OF_WORDS = 100;
+    private static final int NUMBER_OF_DOCUMENTS = 1000;
+    private static final int NUMBER_OF_TOPICS = 100;
+    private static final int TOPIC_SIZE = 5;
+
+    @Test
+    public void testCoherencesAfterReopen() throws Exception {
+        File indexDir = RandomIndexes.createRandomIndex(new Random(11), NUMBER_OF_DOCUMENTS, NUMBER_OF_WORDS, 5, 50);
+        String topics[][] = RandomIndexes.createRandomWordsets(new Random(13),
+                NUMBER_OF_TOPICS, TOPIC_SIZE, NUMBER_OF_WORDS);
+        WindowSupportingLuceneCorpusAdapter adapter = null, freshAdapter = null;
+        try {
+            adapter = WindowSupportingLuceneCorpusAdapter.create(indexDir.getAbsolutePath(),
+                    Palmetto.DEFAULT_TEXT_INDEX_FIELD_NAME, Palmetto.DEFAULT_DOCUMENT_LENGTH_INDEX_FIELD_NAME);
+            Coherence coherences[] = createCoherences(adapter);
+            // fill the caches with the counts of the first version
+            double formerCoherences[][] = new double[coherences.length][];
+            for (int i = 0; i < coherences.length; ++i) {
+                formerCoherences[i] = coherences[i].calculateCoherences(topics);
+            }
+
+            // the appended documents use only a part of the vocabulary to change the probabilities
+            PositionStoringLuceneIndexCreator creator = new PositionStoringLuceneIndexCreator(
+                    Palmetto.DEFAULT_TEXT_INDEX_FIELD_NAME, Palmetto.DEFAULT_DOCUMENT_LENGTH_INDEX_FIELD_NAME);
+            Assert.assertTrue(creator.appendToIndex(indexDir, RandomIndexes
+                    .createRandomDocuments(new Random(17), NUMBER_OF_DOCUMENTS, NUMBER_OF_WORDS / 2, 5, 50)
+                    .iterator()));
+            Assert.assertTrue(adapter.reopen());
+
+            freshAdapter = WindowSupportingLuceneCorpusAdapter.create(indexDir.getAbsolutePath(),
+                    Palmetto.DEFAULT_TEXT_INDEX_FIELD_NAME, Palmetto.DEFAULT_DOCUMENT_LENGTH_INDEX_FIELD_NAME);
+            Coherence freshCoherences[] = createCoherences(freshAdapter);
+            double expected[], reopened[];
+            for (int i = 0; i < coherences.length; ++i) {
+                expected = freshCoherences[i].calculateCoherences(topics);
+                reopened = coherences[i].calculateCoherences(topics);
+                Assert.assertFalse("The appended documents did not change the coherences of "
+                        + coherences[i].getName() + ".", Arrays.equals(formerCoherences[i], expected));
+                Assert.assertArrayEquals("Coherence " + coherences[i].getName() + " differs after reopening.",
+                        expected, reopened, 0);
+            }
+        } finally {
+            if (adapter != null) {
+                adapter.close();
+            }
+            if (freshAdapter != null) {
+                freshAdapter.close();
+            }
+            RandomIndexes.deleteIndex(indexDir);
+        }
+    }
+
+    /**
+     * Creates window based coherences sharing a positions cache and a UMass
+     * coherence using resident document sets and a posting list cache. The
+     * determiner of the UMass coherence does not know the sums of the counts,
+     * i.e., its cache is invalidated by a listener like the resident sets.
+     */
+    private static Coherence[] createCoherences(LuceneCorpusAdapter adapter) throws Exception {
+        PositionsCachingAdapterDecorator positionsCache = new PositionsCachingAdapterDecorator(
+                (WindowSupportingLuceneCorpusAdapter) adapter);
+        WindowBasedProbabilityEstimator npmiEstimator = new WindowBasedProbabilityEstimator(
+                new FrequencyCachingDeterminerDecorator(new BooleanSlidingWindowFrequencyDeterminer(positionsCache,
+                        10)));
+        WindowBasedProbabilityEstimator caEstimator = new WindowBasedProbabilityEstimator(
+                new SimpleFrequencyCachingDeterminerDecorator(new ContextWindowFrequencyDeterminer(positionsCache,
+                        5)));
+
+        final BooleanDocumentProbabilitySupplier umassSupplier = BooleanDocumentProbabilitySupplier.create(
+                new PostingListCachingAdapterDecorator(adapter), "bd", adapter.loadResidentDocumentSets(10,
+                        ResidentDocumentSets.DEFAULT_BYTE_BUDGET));
+        final HybridBooleanDocumentFrequencyDeterminer hybridDeterminer =
+                (HybridBooleanDocumentFrequencyDeterminer) umassSupplier.getFrequencyDeterminer();
+        final FrequencyCachingDeterminerDecorator umassCache = new FrequencyCachingDeterminerDecorator(
+                hybridDeterminer);
+        umassSupplier.setFrequencyDeterminer(umassCache);
+        adapter.addReopenListener(new ReopenListener() {
+            @Override
+            public void onReopen(LuceneCorpusAdapter reopenedAdapter) {
+                try {
+                    hybridDeterminer.setResidentSets(reopenedAdapter.loadResidentDocumentSets(10,
+                            ResidentDocumentSets.DEFAULT_BYTE_BUDGET));
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+                umassCache.invalidateCache();
+            }
+        });
+
+        return new Coherence[] {
+                new DirectConfirmationBasedCoherence(new OneOne(), npmiEstimator,
+                        new NormalizedLogRatioConfirmationMeasure(), new ArithmeticMean()),
+                new VectorBasedCoherence(new OneSet(), new DirectConfirmationBasedVectorCreator(caEstimator,
+                        new NormalizedLogRatioConfirmationMeasure()), new CosinusConfirmationMeasure(),
+                        new ArithmeticMean()),
+                new DirectConfirmationBasedCoherence(new OnePreceding(), umassSupplier,
+                        new LogCondProbConfirmationMeasure(), new ArithmeticMean()) };
+    }
+}
@@ -0,0 +1,176 @@
+/**
+ * This file is part of Palmetto.
+ *
+ * Palmetto is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Palmetto is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Palmetto.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.aksw.palmetto.corpus.lucene;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.aksw.palmetto.Palmetto;
+import org.aksw.palmetto.corpus.ResidentDocumentSets;
+import org.aksw.palmetto.data.SegmentationDefinition;
+import org.aksw.palmetto.prob.AbstractProbabilitySupplier;
+import org.aksw.palmetto.prob.bd.BooleanDocumentFrequencyDeterminer;
+import org.aksw.palmetto.prob.bd.HybridBooleanDocumentFrequencyDeterminer;
+import org.aksw.palmetto.prob.bd.LeapfrogBooleanDocumentFrequencyDeterminer;
+import org.aksw.palmetto.subsets.OnePreceding;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.carrotsearch.hppc.IntArrayList;
+
+/**
+ * Loads the resident document sets of a random index and compares the UMass
+ * counting of the leapfrog determiner, which decodes the postings of every
+ * word for every request, with the hybrid determiner using the resident sets.
+ * The test prints the loading time and the time needed for the word sets.
+ *
+ * @author Michael R&ouml;der (roeder@informatik.uni-leipzig.de)
+ *
+ */
+public class ResidentDocumentSetsPerformanceTest {
+
+    private static final int NUMBER_OF_DOCUMENTS = 20000;
+    private static final int VOCABULARY_SIZE = 2000;
+    private static final int MIN_DOCUMENT_LENGTH = 50;
+    private static final int MAX_DOCUMENT_LENGTH = 500;
+    private static final int COMMIT_INTERVAL = 3000;
+    private static final int NUMBER_OF_WORDSETS = 50;
+    private static final int WORDS_PER_WORDSET = 10;
+    private static final int NUMBER_OF_ROUNDS = 10;
+    private static final int NUMBER_OF_DENSE_WORDS = 100;
+    /**
+     * The budget is smaller than the size of all postings, i.e., the rare
+     * words are not resident.
+     */
+    private static final long BYTE_BUDGET = 4L * 1024L * 1024L;
+
+    @Test
+    public void test() throws Exception {
+        Random random = new Random(22);
+        File indexDir = RandomIndexes.createRandomIndex(random,
+                NUMBER_OF_DOCUMENTS, VOCABULARY_SIZE, MIN_DOCUMENT_LENGTH, MAX_DOCUMENT_LENGTH, COMMIT_INTERVAL);
+        String indexPath = indexDir.getAbsolutePath();
+        String wordsets[][] = RandomIndexes.createRandomWordsets(random,
+                NUMBER_OF_WORDSETS, WORDS_PER_WORDSET, VOCABULARY_SIZE);
+        LuceneCorpusAdapter adapter = LuceneCorpusAdapter.create(indexPath, Palmetto.DEFAULT_TEXT_INDEX_FIELD_NAME);
+        try {
+            long loadingTime = System.currentTimeMillis();
+            ResidentDocumentSets residentSets = adapter.loadResidentDocumentSets(NUMBER_OF_DENSE_WORDS, BYTE_BUDGET);
+            loadingTime = System.currentTimeMillis() - loadingTime;
+            Assert.assertTrue(residentSets.getNumberOfBytes() <= BYTE_BUDGET);
+            Assert.assertEquals(NUMBER_OF_DENSE_WORDS, residentSets.getNumberOfDenseSets());
+            int nonResidentWords = checkResidentSets(adapter, residentSets);
+            Assert.assertTrue(nonResidentWords > 0);
+
+            SegmentationDefinition definitions[] = new SegmentationDefinition[wordsets.length];
+            Arrays.fill(definitions, (new OnePreceding()).getSubsetDefinition(WORDS_PER_WORDSET));
+            BooleanDocumentFrequencyDeterminer leapfrogDeterminer = new LeapfrogBooleanDocumentFrequencyDeterminer(
+                    adapter);
+            HybridBooleanDocumentFrequencyDeterminer hybridDeterminer = new HybridBooleanDocumentFrequencyDeterminer(
+                    adapter, residentSets);
+            hybridDeterminer.setMinFrequency(AbstractProbabilitySupplier.DEFAULT_MIN_FREQUENCY);
+            // warm up and compare
+            compare(leapfrogDeterminer, hybridDeterminer, wordsets, definitions);
+
+            long leapfrogTime = measure(leapfrogDeterminer, wordsets, definitions);
+            long hybridTime = measure(hybridDeterminer, wordsets, definitions);
+            System.out.println("Resident document sets performance test (" + residentSets.size() + " of "
+                    + (residentSets.size() + nonResidentWords) + " words resident, "
+                    + residentSets.getNumberOfDenseSets() + " dense, " + residentSets.getNumberOfBytes()
+                    + " bytes, loaded in " + loadingTime + " ms, " + NUMBER_OF_ROUNDS + "x" + NUMBER_OF_WORDSETS
+                    + " word sets, UMass) Leapfrog: " + leapfrogTime + " ms\tHybrid: " + hybridTime + " ms");
+        } finally {
+            adapter.close();
+            RandomIndexes.deleteIndex(indexDir);
+        }
+    }
+
+    /**
+     * Checks that the resident sets contain the documents returned by the
+     * adapter and that the dense sets belong to the most frequent words.
+     * 
+     * @return the number of words that are not resident
+     */
+    protected int checkResidentSets(LuceneCorpusAdapter adapter, ResidentDocumentSets residentSets) {
+        int nonResidentWords = 0, minDenseFrequency = Integer.MAX_VALUE, maxSparseFrequency = 0;
+        IntArrayList documents = new IntArrayList();
+        int wordId;
+        for (int w = 0; w < VOCABULARY_SIZE; ++w) {
+            documents.clear();
+            adapter.getDocumentsWithWord("w" + w, documents);
+            wordId = residentSets.getId("w" + w);
+            if (wordId == ResidentDocumentSets.NOT_RESIDENT) {
+                if (documents.size() > 0) {
+                    ++nonResidentWords;
+                }
+                continue;
+            }
+            Assert.assertEquals(documents.size(), residentSets.getDocumentFrequency(wordId));
+            if (residentSets.isDense(wordId)) {
+                long bitSet[] = residentSets.getDenseSet(wordId);
+                int count = 0;
+                for (int b = 0; b < bitSet.length; ++b) {
+                    count += Long.bitCount(bitSet[b]);
+                }
+                Assert.assertEquals(documents.size(), count);
+                for (int i = 0; i < documents.size(); ++i) {
+                    Assert.assertTrue((bitSet[documents.get(i) >>> 6] & (1L << documents.get(i))) != 0);
+                }
+                minDenseFrequency = Math.min(minDenseFrequency, documents.size());
+            } else {
+                Assert.assertArrayEquals(documents.toArray(), residentSets.getSparseSet(wordId));
+                maxSparseFrequency = Math.max(maxSparseFrequency, documents.size());
+            }
+        }
+        Assert.assertTrue(minDenseFrequency >= maxSparseFrequency);
+        return nonResidentWords;
+    }
+
+    protected void compare(BooleanDocumentFrequencyDeterminer expectedDeterminer,
+            BooleanDocumentFrequencyDeterminer determiner, String wordsets[][], SegmentationDefinition definitions[]) {
+        long expected[], counts[];
+        for (int i = 0; i < wordsets.length; ++i) {
+            expected = expectedDeterminer.determineCounts(new String[][] { wordsets[i] },
+                    new SegmentationDefinition[] { definitions[i] })[0].counts;
+            counts = determiner.determineCounts(new String[][] { wordsets[i] },
+                    new SegmentationDefinition[] { definitions[i] })[0].counts;
+            for (int j = 1; j < expected.length; ++j) {
+                if (definitions[i].neededCounts.get(j)
+                        && (expected[j] >= AbstractProbabilitySupplier.DEFAULT_MIN_FREQUENCY)) {
+                    Assert.assertEquals(expected[j], counts[j]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Determines the counts of every word set with a single request (like the
+     * web service does) and returns the runtime in ms.
+     */
+    protected long measure(BooleanDocumentFrequencyDeterminer determiner, String wordsets[][],
+            SegmentationDefinition definitions[]) {
+        long time = System.currentTimeMillis();
+        for (int r = 0; r < NUMBER_OF_ROUNDS; ++r) {
+            for (int i = 0; i < wordsets.length; ++i) {
+                determiner.determineCounts(new String[][] { wordsets[i] },
+                        new SegmentationDefinition[] { definitions[i] });
+            }
+        }
+        return System.currentTimeMillis() - time;
+    }
+}
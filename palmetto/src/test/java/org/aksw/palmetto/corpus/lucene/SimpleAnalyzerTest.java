@@ -65,7 +65,14 @@ public class SimpleAnalyzerTest {
     }
 
     public void test(boolean lowercase) throws Exception {
-	SimpleAnalyzer analyzer = new SimpleAnalyzer(lowercase);
+	test(lowercase, true);
+	test(lowercase, false);
+    }
+
+    public void test(boolean lowercase, boolean usePatternTokenizer)
+	    throws Exception {
+	SimpleAnalyzer analyzer = new SimpleAnalyzer(lowercase,
+		usePatternTokenizer);
 	TokenStream stream = analyzer.tokenStream("test", text);
 
 	CharTermAttribute token;
@@ -0,0 +1,114 @@
+/**
+ * This file is part of Palmetto.
+ *
+ * Palmetto is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Palmetto is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Palmetto.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.aksw.palmetto.corpus.lucene;
+
+import java.io.StringReader;
+import java.util.Random;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Compares the throughput of the regular expression based tokenization of the
+ * {@link SimpleAnalyzer} with the throughput of the {@link SimpleTokenizer}.
+ * 
+ * @author Michael R&ouml;der (roeder@informatik.uni-leipzig.de)
+ *
+ */
+public class SimpleTokenizerPerformanceTest {
+
+    private static final int NUMBER_OF_DOCUMENTS = 20000;
+    private static final int VOCABULARY_SIZE = 5000;
+    private static final int MIN_DOCUMENT_LENGTH = 50;
+    private static final int MAX_DOCUMENT_LENGTH = 500;
+    private static final String SEPARATORS[] = new String[] { " ", " ", " ", " ", ", ", ". ", " - ", "'s ", " (",
+            ") ", ".", "\n" };
+    private static final int ROUNDS = 3;
+
+    @Test
+    public void test() throws Exception {
+        Random random = new Random(29);
+        String documents[] = new String[NUMBER_OF_DOCUMENTS];
+        StringBuilder builder = new StringBuilder();
+        long numberOfChars = 0;
+        int length;
+        for (int i = 0; i < documents.length; ++i) {
+            builder.delete(0, builder.length());
+            length = MIN_DOCUMENT_LENGTH + random.nextInt(MAX_DOCUMENT_LENGTH - MIN_DOCUMENT_LENGTH + 1);
+            for (int j = 0; j < length; ++j) {
+                builder.append(random.nextBoolean() ? 'W' : 'w');
+                builder.append(random.nextInt(VOCABULARY_SIZE));
+                builder.append(SEPARATORS[random.nextInt(SEPARATORS.length)]);
+            }
+            documents[i] = builder.toString();
+            numberOfChars += documents[i].length();
+        }
+        Analyzer patternAnalyzer = new SimpleAnalyzer(true, true);
+        Analyzer analyzer = new SimpleAnalyzer(true, false);
+        long patternTime = 0, time = 0, patternHash, hash, t0, t1, t2;
+        try {
+            for (int r = 0; r <= ROUNDS; ++r) {
+                t0 = System.currentTimeMillis();
+                patternHash = tokenize(patternAnalyzer, documents);
+                t1 = System.currentTimeMillis();
+                hash = tokenize(analyzer, documents);
+                t2 = System.currentTimeMillis();
+                Assert.assertEquals(patternHash, hash);
+                // the first round is used as warm up
+                if (r > 0) {
+                    patternTime += t1 - t0;
+                    time += t2 - t1;
+                }
+            }
+        } finally {
+            patternAnalyzer.close();
+            analyzer.close();
+        }
+        patternTime /= ROUNDS;
+        time /= ROUNDS;
+        System.out.println("Tokenizing " + NUMBER_OF_DOCUMENTS + " documents (" + (numberOfChars >> 20)
+                + " MChars, avg. of " + ROUNDS + " rounds) pattern: " + patternTime + " ms ("
+                + (numberOfChars / Math.max(1, patternTime * 1000)) + " MChars/s)\tSimpleTokenizer: " + time
+                + " ms (" + (numberOfChars / Math.max(1, time * 1000)) + " MChars/s)");
+    }
+
+    /**
+     * Tokenizes the given documents and returns a hash of the tokens.
+     */
+    private long tokenize(Analyzer analyzer, String documents[]) throws Exception {
+        long hash = 0;
+        TokenStream stream;
+        CharTermAttribute termAttribute;
+        for (int i = 0; i < documents.length; ++i) {
+            stream = analyzer.tokenStream("test", new StringReader(documents[i]));
+            try {
+                termAttribute = stream.addAttribute(CharTermAttribute.class);
+                stream.reset();
+                while (stream.incrementToken()) {
+                    hash = (31 * hash) + termAttribute.toString().hashCode();
+                }
+                stream.end();
+            } finally {
+                stream.close();
+            }
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,129 @@
+/**
+ * This file is part of Palmetto.
+ *
+ * Palmetto is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Palmetto is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Palmetto.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.aksw.palmetto.corpus.lucene;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Compares the tokens of the {@link SimpleTokenizer} with the tokens of the
+ * regular expression used by the {@link SimpleAnalyzer}.
+ * 
+ * @author Michael R&ouml;der (roeder@informatik.uni-leipzig.de)
+ *
+ */
+public class SimpleTokenizerTest {
+
+    /**
+     * Characters that are used to create the random texts. They contain
+     * punctuation and white space characters as well as non ASCII characters
+     * that are neither punctuation nor white space for the regular expression.
+     */
+    private static final String CHARACTERS = "abcXYZ019.,'-!?/:@_~\\\"() \t\n\r\f\u000B\u00A0\u00E4\u00DF\u00BF\u2014\u3000";
+    private static final String SURROGATE_PAIR = "\uD83D\uDE00";
+    private static final int NUMBER_OF_TEXTS = 20000;
+
+    @Test
+    public void testSpecialCases() throws Exception {
+        String texts[] = new String[] { "", " ", ".", "a", "a.", ".a", "a..b", "a.b.c", "a. b", "'quoted'",
+                "don't stop", "a-.b", "--a--", "a\u00A0b", "end.", SURROGATE_PAIR + "." + SURROGATE_PAIR };
+        for (int i = 0; i < texts.length; ++i) {
+            compare(texts[i]);
+        }
+    }
+
+    @Test
+    public void testRandomTexts() throws Exception {
+        Random random = new Random(31);
+        StringBuilder builder = new StringBuilder();
+        int length;
+        for (int i = 0; i < NUMBER_OF_TEXTS; ++i) {
+            builder.delete(0, builder.length());
+            // some texts are longer than the buffer of the tokenizer
+            length = ((i % 100) == 0) ? random.nextInt(20000) : random.nextInt(200);
+            for (int j = 0; j < length; ++j) {
+                if (random.nextInt(50) == 0) {
+                    builder.append(SURROGATE_PAIR);
+                } else {
+                    builder.append(CHARACTERS.charAt(random.nextInt(CHARACTERS.length())));
+                }
+            }
+            compare(builder.toString());
+        }
+    }
+
+    @Test
+    public void testLongTokens() throws Exception {
+        // tokens crossing the border of the buffer of the tokenizer
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 10000; ++i) {
+            builder.append((i % 7) == 0 ? '.' : 'a');
+        }
+        builder.append(". ");
+        for (int i = 0; i < 4095; ++i) {
+            builder.append(' ');
+        }
+        builder.append("a.b");
+        compare(builder.toString());
+    }
+
+    private void compare(String text) throws Exception {
+        for (int l = 0; l < 2; ++l) {
+            Analyzer expectedAnalyzer = new SimpleAnalyzer(l == 0, true);
+            Analyzer analyzer = new SimpleAnalyzer(l == 0, false);
+            try {
+                Assert.assertEquals("text=\"" + text + "\"", tokenize(expectedAnalyzer, text),
+                        tokenize(analyzer, text));
+            } finally {
+                expectedAnalyzer.close();
+                analyzer.close();
+            }
+        }
+    }
+
+    /**
+     * Returns the tokens, their offsets and the final offset of the given
+     * text.
+     */
+    private List<String> tokenize(Analyzer analyzer, String text) throws Exception {
+        List<String> tokens = new ArrayList<String>();
+        TokenStream stream = analyzer.tokenStream("test", new StringReader(text));
+        try {
+            CharTermAttribute termAttribute = stream.addAttribute(CharTermAttribute.class);
+            OffsetAttribute offsetAttribute = stream.addAttribute(OffsetAttribute.class);
+            stream.reset();
+            while (stream.incrementToken()) {
+                tokens.add(termAttribute.toString() + "[" + offsetAttribute.startOffset() + ","
+                        + offsetAttribute.endOffset() + "]");
+            }
+            stream.end();
+            tokens.add("end[" + offsetAttribute.startOffset() + "," + offsetAttribute.endOffset() + "]");
+        } finally {
+            stream.close();
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,138 @@
+/**
+ * This file is part of Palmetto.
+ *
+ * Palmetto is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Palmetto is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Palmetto.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.aksw.palmetto.corpus.lucene;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.util.List;
+import java.util.Random;
+
+import org.aksw.palmetto.Palmetto;
+import org.aksw.palmetto.corpus.lucene.creation.LuceneIndexHistogramCreator;
+import org.aksw.palmetto.data.CountedSubsets;
+import org.aksw.palmetto.data.SegmentationDefinition;
+import org.aksw.palmetto.prob.window.BooleanSlidingWindowFrequencyDeterminer;
+import org.aksw.palmetto.subsets.OneSet;
+import org.apache.commons.io.FileUtils;
+import org.apache.lucene.index.AtomicReader;
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.store.NIOFSDirectory;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Compares the C_V path (boolean sliding window of size 110) of a
+ * {@link WindowSupportingLuceneCorpusAdapter} that reads the document lengths
+ * from the stored documents with adapters that use the doc values column or the
+ * memory-mapped document length file.
+ *
+ * @author Michael R&ouml;der (roeder@informatik.uni-leipzig.de)
+ *
+ */
+public class WindowSupportingLuceneCorpusAdapterPerformanceTest {
+
+    private static final int NUMBER_OF_DOCUMENTS = 20000;
+    private static final int VOCABULARY_SIZE = 2000;
+    private static final int MIN_DOCUMENT_LENGTH = 50;
+    private static final int MAX_DOCUMENT_LENGTH = 500;
+    private static final int NUMBER_OF_WORDSETS = 20;
+    private static final int WORDS_PER_WORDSET = 10;
+    private static final int WINDOW_SIZE = 110;
+
+    @Test
+    public void test() throws Exception {
+        Random random = new Random(42);
+        File indexDir = RandomIndexes.createRandomIndex(random, NUMBER_OF_DOCUMENTS, VOCABULARY_SIZE,
+                MIN_DOCUMENT_LENGTH, MAX_DOCUMENT_LENGTH);
+        String indexPath = indexDir.getAbsolutePath();
+        LuceneIndexHistogramCreator hCreator = new LuceneIndexHistogramCreator(
+                Palmetto.DEFAULT_DOCUMENT_LENGTH_INDEX_FIELD_NAME);
+        hCreator.createLuceneIndexHistogram(indexPath);
+
+        String wordsets[][] = RandomIndexes.createRandomWordsets(random, NUMBER_OF_WORDSETS, WORDS_PER_WORDSET,
+                VOCABULARY_SIZE);
+        SegmentationDefinition definitions[] = new SegmentationDefinition[wordsets.length];
+        for (int i = 0; i < definitions.length; ++i) {
+            definitions[i] = (new OneSet()).getSubsetDefinition(WORDS_PER_WORDSET);
+        }
+
+        WindowSupportingLuceneCorpusAdapter columnAdapter = WindowSupportingLuceneCorpusAdapter.create(indexPath,
+                Palmetto.DEFAULT_TEXT_INDEX_FIELD_NAME, Palmetto.DEFAULT_DOCUMENT_LENGTH_INDEX_FIELD_NAME);
+        WindowSupportingLuceneCorpusAdapter storedFieldAdapter = createAdapter(indexPath,
+                columnAdapter.getDocumentSizeHistogram(), null);
+        WindowSupportingLuceneCorpusAdapter sidecarAdapter = createAdapter(indexPath,
+                columnAdapter.getDocumentSizeHistogram(), WindowSupportingLuceneCorpusAdapter.mapDocLengthColumn(
+                        indexPath + WindowSupportingLuceneCorpusAdapter.DOC_LENGTH_FILE_SUFFIX,
+                        columnAdapter.getMaxDoc()));
+        try {
+            Assert.assertNotNull(((WindowSupportingLuceneCorpusAdapter.WindowIndexSnapshot) columnAdapter.snapshot)
+                    .docLengthValues);
+            Assert.assertNotNull(((WindowSupportingLuceneCorpusAdapter.WindowIndexSnapshot) sidecarAdapter.snapshot)
+                    .docLengthColumn);
+            // warm up
+            run(storedFieldAdapter, wordsets, definitions);
+            run(columnAdapter, wordsets, definitions);
+            run(sidecarAdapter, wordsets, definitions);
+
+            long time = System.currentTimeMillis();
+            CountedSubsets expected[] = run(storedFieldAdapter, wordsets, definitions);
+            long storedFieldTime = System.currentTimeMillis() - time;
+            time = System.currentTimeMillis();
+            CountedSubsets columnResult[] = run(columnAdapter, wordsets, definitions);
+            long columnTime = System.currentTimeMillis() - time;
+            time = System.currentTimeMillis();
+            CountedSubsets sidecarResult[] = run(sidecarAdapter, wordsets, definitions);
+            long sidecarTime = System.currentTimeMillis() - time;
+
+            System.out.println("C_V (window " + WINDOW_SIZE + ") document lengths performance test stored fields: "
+                    + storedFieldTime + " ms\tdoc values: " + columnTime + " ms\tsidecar: " + sidecarTime + " ms");
+            for (int i = 0; i < expected.length; ++i) {
+                Assert.assertArrayEquals(expected[i].counts, columnResult[i].counts);
+                Assert.assertArrayEquals(expected[i].counts, sidecarResult[i].counts);
+            }
+        } finally {
+            columnAdapter.close();
+            storedFieldAdapter.close();
+            sidecarAdapter.close();
+            FileUtils.deleteQuietly(indexDir);
+        }
+    }
+
+    protected CountedSubsets[] run(WindowSupportingLuceneCorpusAdapter adapter, String wordsets[][],
+            SegmentationDefinition definitions[]) {
+        BooleanSlidingWindowFrequencyDeterminer determiner = new BooleanSlidingWindowFrequencyDeterminer(adapter,
+                WINDOW_SIZE);
+        return determiner.determineCounts(wordsets, definitions);
+    }
+
+    protected WindowSupportingLuceneCorpusAdapter createAdapter(String indexPath, int histogram[][],
+            IntBuffer docLengthColumn) throws IOException {
+        DirectoryReader dirReader = DirectoryReader.open(new NIOFSDirectory(new File(indexPath)));
+        List<AtomicReaderContext> leaves = dirReader.leaves();
+        AtomicReader reader[] = new AtomicReader[leaves.size()];
+        AtomicReaderContext contexts[] = new AtomicReaderContext[leaves.size()];
+        for (int i = 0; i < reader.length; i++) {
+            contexts[i] = leaves.get(i);
+            reader[i] = contexts[i].reader();
+        }
+        return new WindowSupportingLuceneCorpusAdapter(dirReader, reader, contexts,
+                Palmetto.DEFAULT_TEXT_INDEX_FIELD_NAME, Palmetto.DEFAULT_DOCUMENT_LENGTH_INDEX_FIELD_NAME, histogram,
+                null, docLengthColumn);
+    }
+}
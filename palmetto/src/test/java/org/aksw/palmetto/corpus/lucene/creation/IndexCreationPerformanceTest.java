@@ -0,0 +1,84 @@
+/**
+ * This file is part of Palmetto.
+ *
+ * Palmetto is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Palmetto is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Palmetto.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.aksw.palmetto.corpus.lucene.creation;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.aksw.palmetto.Palmetto;
+import org.aksw.palmetto.corpus.lucene.RandomIndexes;
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Compares the runtime of the index creation with frequent commits (the former
+ * behavior), with flushing based on the RAM buffer and with several indexing
+ * threads.
+ *
+ * @author Michael R&ouml;der (roeder@informatik.uni-leipzig.de)
+ *
+ */
+public class IndexCreationPerformanceTest {
+
+    private static final int NUMBER_OF_DOCUMENTS = 10000;
+    private static final int VOCABULARY_SIZE = 5000;
+    private static final int MIN_DOCUMENT_LENGTH = 50;
+    private static final int MAX_DOCUMENT_LENGTH = 500;
+    private static final int FORMER_COMMIT_INTERVAL = 1000;
+
+    @Test
+    public void test() throws Exception {
+        List<IndexableDocument> documents = RandomIndexes.createRandomDocuments(
+                new Random(11), NUMBER_OF_DOCUMENTS, VOCABULARY_SIZE, MIN_DOCUMENT_LENGTH, MAX_DOCUMENT_LENGTH);
+        // the number of tokens is determined while indexing
+        List<IndexableDocument> documentsWithoutLengths = new ArrayList<IndexableDocument>(documents.size());
+        for (IndexableDocument document : documents) {
+            documentsWithoutLengths.add(new IndexableDocument(document.getText()));
+        }
+        int numberOfThreads = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+        // warm up
+        measure(documents, FORMER_COMMIT_INTERVAL, 1);
+        long committingTime = measure(documents, FORMER_COMMIT_INTERVAL, 1);
+        long bufferingTime = measure(documentsWithoutLengths,
+                AbstractLuceneIndexCreator.NO_INTERMEDIATE_COMMITS, 1);
+        long parallelTime = measure(documentsWithoutLengths, AbstractLuceneIndexCreator.NO_INTERMEDIATE_COMMITS,
+                numberOfThreads);
+        System.out.println("Index creation performance test (" + NUMBER_OF_DOCUMENTS + " documents) commit every "
+                + FORMER_COMMIT_INTERVAL + " documents: " + committingTime + " ms\tRAM buffer: " + bufferingTime
+                + " ms\tRAM buffer + " + numberOfThreads + " threads: " + parallelTime + " ms");
+    }
+
+    private static long measure(List<IndexableDocument> documents, int commitInterval, int numberOfThreads) {
+        File indexDir = new File(FileUtils.getTempDirectoryPath() + File.separator + "temp_index"
+                + Long.toString(System.nanoTime()));
+        Assert.assertTrue(indexDir.mkdir());
+        try {
+            PositionStoringLuceneIndexCreator creator = new PositionStoringLuceneIndexCreator(
+                    Palmetto.DEFAULT_TEXT_INDEX_FIELD_NAME, Palmetto.DEFAULT_DOCUMENT_LENGTH_INDEX_FIELD_NAME,
+                    commitInterval);
+            creator.setNumberOfThreads(numberOfThreads);
+            long time = System.currentTimeMillis();
+            Assert.assertTrue(creator.createIndex(indexDir, documents.iterator()));
+            return System.currentTimeMillis() - time;
+        } finally {
+            RandomIndexes.deleteIndex(indexDir);
+        }
+    }
+}
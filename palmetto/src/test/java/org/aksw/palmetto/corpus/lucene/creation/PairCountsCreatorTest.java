@@ -0,0 +1,163 @@
+/**
+ * This file is part of Palmetto.
+ *
+ * Palmetto is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Palmetto is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Palmetto.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.aksw.palmetto.corpus.lucene.creation;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.aksw.palmetto.Palmetto;
+import org.aksw.palmetto.corpus.PairCounts;
+import org.aksw.palmetto.corpus.lucene.RandomIndexes;
+import org.aksw.palmetto.corpus.lucene.WindowSupportingLuceneCorpusAdapter;
+import org.aksw.palmetto.data.CountedSubsets;
+import org.aksw.palmetto.data.SegmentationDefinition;
+import org.aksw.palmetto.prob.FrequencyDeterminer;
+import org.aksw.palmetto.prob.bd.LeapfrogBooleanDocumentFrequencyDeterminer;
+import org.aksw.palmetto.prob.window.BooleanSlidingWindowFrequencyDeterminer;
+import org.aksw.palmetto.subsets.OneOne;
+import org.apache.commons.io.FileUtils;
+import org.apache.lucene.index.CorruptIndexException;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PairCountsCreatorTest {
+
+    private static final int VOCABULARY_SIZE = 200;
+    private static final int NUMBER_OF_SELECTED_WORDS = 40;
+    private static final int WINDOW_SIZES[] = new int[] { 10, 200 };
+
+    @Test
+    public void testCounts() throws CorruptIndexException, IOException {
+        // the small commit interval leads to several leaves
+        File indexDir = RandomIndexes.createRandomIndex(new Random(11), 1000, VOCABULARY_SIZE, 1, 150, 300);
+        String indexPath = indexDir.getAbsolutePath();
+        File pairCountsFile = new File(indexPath + ".pairs");
+        WindowSupportingLuceneCorpusAdapter adapter = null;
+        PairCounts pairCounts = null;
+        try {
+            String words[] = PairCountsCreator.selectFrequentWords(indexPath, Palmetto.DEFAULT_TEXT_INDEX_FIELD_NAME,
+                    NUMBER_OF_SELECTED_WORDS);
+            Assert.assertEquals(NUMBER_OF_SELECTED_WORDS, words.length);
+            // w0 is the most frequent word
+            Assert.assertEquals("w0", words[0]);
+
+            PairCountsCreator creator = new PairCountsCreator(Palmetto.DEFAULT_TEXT_INDEX_FIELD_NAME,
+                    Palmetto.DEFAULT_DOCUMENT_LENGTH_INDEX_FIELD_NAME, WINDOW_SIZES);
+            // small blocks and runs make sure that all parts of the creation are used
+            creator.setDocumentsPerBlock(64);
+            creator.setMaxPairsInMemory(100);
+            Assert.assertTrue(creator.createPairCounts(indexPath, words, pairCountsFile.getAbsolutePath()));
+            pairCounts = PairCounts.read(pairCountsFile.getAbsolutePath());
+            Assert.assertNotNull(pairCounts);
+            Assert.assertEquals(NUMBER_OF_SELECTED_WORDS, pairCounts.getNumberOfWords());
+
+            adapter = WindowSupportingLuceneCorpusAdapter.create(indexPath, Palmetto.DEFAULT_TEXT_INDEX_FIELD_NAME,
+                    Palmetto.DEFAULT_DOCUMENT_LENGTH_INDEX_FIELD_NAME);
+            LeapfrogBooleanDocumentFrequencyDeterminer documentDeterminer = new LeapfrogBooleanDocumentFrequencyDeterminer(
+                    adapter);
+            Assert.assertEquals(documentDeterminer.getNumberOfDocuments(),
+                    pairCounts.getTotal(PairCounts.BOOLEAN_DOCUMENT_MODEL));
+            compareCounts(pairCounts, PairCounts.BOOLEAN_DOCUMENT_MODEL, words, documentDeterminer);
+            for (int i = 0; i < WINDOW_SIZES.length; ++i) {
+                BooleanSlidingWindowFrequencyDeterminer windowDeterminer = new BooleanSlidingWindowFrequencyDeterminer(
+                        adapter, WINDOW_SIZES[i]);
+                Assert.assertEquals(windowDeterminer.getCooccurrenceCounts()[0], pairCounts.getTotal(WINDOW_SIZES[i]));
+                compareCounts(pairCounts, WINDOW_SIZES[i], words, windowDeterminer);
+            }
+            Assert.assertFalse(pairCounts.hasModel(5));
+            Assert.assertEquals(PairCounts.UNKNOWN_WORD_ID, pairCounts.getWordId("w" + (VOCABULARY_SIZE - 1)));
+        } finally {
+            if (adapter != null) {
+                adapter.close();
+            }
+            FileUtils.deleteQuietly(pairCountsFile);
+            RandomIndexes.deleteIndex(indexDir);
+        }
+    }
+
+    @Test
+    public void testMinCount() throws CorruptIndexException, IOException {
+        File indexDir = RandomIndexes.createRandomIndex(new Random(13), 500, VOCABULARY_SIZE, 1, 100);
+        String indexPath = indexDir.getAbsolutePath();
+        File fullFile = new File(indexPath + ".pairs");
+        File prunedFile = new File(indexPath + ".pruned.pairs");
+        try {
+            String words[] = PairCountsCreator.selectFrequentWords(indexPath, Palmetto.DEFAULT_TEXT_INDEX_FIELD_NAME,
+                    NUMBER_OF_SELECTED_WORDS);
+            PairCountsCreator creator = new PairCountsCreator(Palmetto.DEFAULT_TEXT_INDEX_FIELD_NAME,
+                    Palmetto.DEFAULT_DOCUMENT_LENGTH_INDEX_FIELD_NAME, new int[] { 10 });
+            Assert.assertTrue(creator.createPairCounts(indexPath, words, fullFile.getAbsolutePath()));
+            PairCounts full = PairCounts.read(fullFile.getAbsolutePath());
+            // use the count of a pair of rare words as minimum count
+            int minCount = (int) full.getCount(10, full.getWordId(words[words.length - 2]),
+                    full.getWordId(words[words.length - 1])) + 1;
+            creator.setMinCount(minCount);
+            creator.setCountingBooleanDocuments(false);
+            Assert.assertTrue(creator.createPairCounts(indexPath, words, prunedFile.getAbsolutePath()));
+            PairCounts pruned = PairCounts.read(prunedFile.getAbsolutePath());
+            Assert.assertFalse(pruned.hasModel(PairCounts.BOOLEAN_DOCUMENT_MODEL));
+            Assert.assertEquals(minCount, pruned.getMinCount());
+            Assert.assertTrue(pruned.getNumberOfPairs(10) < full.getNumberOfPairs(10));
+            long count;
+            for (int i = 0; i < words.length; ++i) {
+                Assert.assertEquals(full.getCount(10, i), pruned.getCount(10, i));
+                for (int j = i + 1; j < words.length; ++j) {
+                    count = full.getCount(10, i, j);
+                    Assert.assertEquals(count >= minCount ? count : 0, pruned.getCount(10, i, j));
+                }
+            }
+        } finally {
+            FileUtils.deleteQuietly(fullFile);
+            FileUtils.deleteQuietly(prunedFile);
+            RandomIndexes.deleteIndex(indexDir);
+        }
+    }
+
+    /**
+     * Compares the counts of all single words and pairs with the counts of the
+     * given determiner.
+     */
+    private static void compareCounts(PairCounts pairCounts, int model, String words[],
+            FrequencyDeterminer determiner) {
+        String wordsets[][] = new String[words.length * (words.length - 1) / 2][];
+        SegmentationDefinition definitions[] = new SegmentationDefinition[wordsets.length];
+        SegmentationDefinition definition = new OneOne().getSubsetDefinition(2);
+        int pos = 0;
+        for (int i = 0; i < words.length; ++i) {
+            for (int j = i + 1; j < words.length; ++j) {
+                wordsets[pos] = new String[] { words[i], words[j] };
+                definitions[pos] = definition;
+                ++pos;
+            }
+        }
+        CountedSubsets expected[] = determiner.determineCounts(wordsets, definitions);
+        int wordId1, wordId2;
+        for (int i = 0; i < wordsets.length; ++i) {
+            wordId1 = pairCounts.getWordId(wordsets[i][0]);
+            wordId2 = pairCounts.getWordId(wordsets[i][1]);
+            Assert.assertEquals("model=" + model + " words=" + Arrays.toString(wordsets[i]), expected[i].counts[1],
+                    pairCounts.getCount(model, wordId1));
+            Assert.assertEquals("model=" + model + " words=" + Arrays.toString(wordsets[i]), expected[i].counts[2],
+                    pairCounts.getCount(model, wordId2));
+            Assert.assertEquals("model=" + model + " words=" + Arrays.toString(wordsets[i]), expected[i].counts[3],
+                    pairCounts.getCount(model, wordId1, wordId2));
+        }
+    }
+
+}
@@ -18,14 +18,21 @@ package org.aksw.palmetto.corpus.lucene.creation;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
 
 import org.aksw.palmetto.Palmetto;
+import org.aksw.palmetto.corpus.CorpusStatistics;
+import org.aksw.palmetto.corpus.TermWindowCounts;
+import org.aksw.palmetto.corpus.lucene.RandomIndexes;
 import org.aksw.palmetto.corpus.lucene.WindowSupportingLuceneCorpusAdapter;
 import org.aksw.palmetto.data.CountedSubsets;
 import org.aksw.palmetto.data.SegmentationDefinition;
 import org.aksw.palmetto.prob.window.BooleanSlidingWindowFrequencyDeterminer;
+import org.aksw.palmetto.subsets.OneOne;
 import org.apache.commons.io.FileUtils;
 import org.apache.lucene.index.CorruptIndexException;
 import org.junit.Assert;
@@ -49,7 +56,7 @@ public class PositionStoringLuceneIndexCreatorTest {
     // counts for windows of size 4 containing { ALWAYS 0, "is", "document",
     // "is"+"document", "dog", "is"+"dog", "document"+"dog",
     // "is"+"document"+"dog"}
-    public static int EXPECTED_COUNTS[] = new int[] { 0, 5, 2, 2, 0, 0, 0, 0 };
+    public static long EXPECTED_COUNTS[] = new long[] { 0, 5, 2, 2, 0, 0, 0, 0 };
 
     @Test
     public void test() throws CorruptIndexException, IOException {
@@ -108,4 +115,224 @@ public class PositionStoringLuceneIndexCreatorTest {
         }
     }
 
+    @Test
+    public void testStatistics() throws CorruptIndexException, IOException {
+        // the histogram creator is not needed since the statistics are written while indexing
+        File indexDir = RandomIndexes.createRandomIndex(new Random(5), 1000, 200, 1, 150);
+        String indexPath = indexDir.getAbsolutePath();
+        WindowSupportingLuceneCorpusAdapter adapter = null;
+        try {
+            Assert.assertTrue(new File(indexPath + WindowSupportingLuceneCorpusAdapter.STATISTICS_FILE_SUFFIX)
+                    .exists());
+            Assert.assertFalse(new File(indexPath + WindowSupportingLuceneCorpusAdapter.HISTOGRAM_FILE_SUFFIX)
+                    .exists());
+            adapter = WindowSupportingLuceneCorpusAdapter.create(indexPath, Palmetto.DEFAULT_TEXT_INDEX_FIELD_NAME,
+                    Palmetto.DEFAULT_DOCUMENT_LENGTH_INDEX_FIELD_NAME);
+            Assert.assertNotNull(adapter);
+            CorpusStatistics statistics = adapter.getStatistics();
+            Assert.assertNotNull(statistics);
+            Assert.assertEquals(adapter.getNumberOfDocuments(), statistics.getNumberOfDocuments());
+
+            // compare with the histogram created by a second pass over the index
+            int expectedHistogram[][] = new LuceneIndexHistogramCreator(
+                    Palmetto.DEFAULT_DOCUMENT_LENGTH_INDEX_FIELD_NAME).createHistogram(indexPath);
+            Assert.assertEquals(toMap(expectedHistogram), toMap(adapter.getDocumentSizeHistogram()));
+            long tokens = 0;
+            for (int i = 0; i < expectedHistogram.length; ++i) {
+                tokens += expectedHistogram[i][0] * expectedHistogram[i][1];
+            }
+            Assert.assertEquals(tokens, statistics.getNumberOfTokens());
+            for (int i = 0; i < CorpusStatistics.DEFAULT_WINDOW_SIZES.length; ++i) {
+                Assert.assertEquals(CorpusStatistics.countWindows(expectedHistogram,
+                        CorpusStatistics.DEFAULT_WINDOW_SIZES[i]), statistics
+                        .getNumberOfWindows(CorpusStatistics.DEFAULT_WINDOW_SIZES[i]));
+            }
+        } finally {
+            if (adapter != null) {
+                adapter.close();
+            }
+            RandomIndexes.deleteIndex(indexDir);
+        }
+    }
+
+    @Test
+    public void testParallelCreation() throws CorruptIndexException, IOException {
+        List<IndexableDocument> documents = RandomIndexes.createRandomDocuments(new Random(7), 3000, 300, 1, 150);
+        // the number of tokens is determined while indexing
+        List<IndexableDocument> documentsWithoutLengths = new ArrayList<IndexableDocument>(documents.size());
+        for (IndexableDocument document : documents) {
+            documentsWithoutLengths.add(new IndexableDocument(document.getText()));
+        }
+        File sequentialDir = createIndex(documents, 1);
+        File parallelDir = createIndex(documentsWithoutLengths, 4);
+        WindowSupportingLuceneCorpusAdapter sequentialAdapter = null, parallelAdapter = null;
+        try {
+            sequentialAdapter = WindowSupportingLuceneCorpusAdapter.create(sequentialDir.getAbsolutePath(),
+                    Palmetto.DEFAULT_TEXT_INDEX_FIELD_NAME, Palmetto.DEFAULT_DOCUMENT_LENGTH_INDEX_FIELD_NAME);
+            parallelAdapter = WindowSupportingLuceneCorpusAdapter.create(parallelDir.getAbsolutePath(),
+                    Palmetto.DEFAULT_TEXT_INDEX_FIELD_NAME, Palmetto.DEFAULT_DOCUMENT_LENGTH_INDEX_FIELD_NAME);
+            Assert.assertEquals(documents.size(), parallelAdapter.getNumberOfDocuments());
+            Assert.assertEquals(toMap(sequentialAdapter.getDocumentSizeHistogram()),
+                    toMap(parallelAdapter.getDocumentSizeHistogram()));
+            Assert.assertEquals(sequentialAdapter.getStatistics().getNumberOfTokens(), parallelAdapter
+                    .getStatistics().getNumberOfTokens());
+            // the ids of the documents differ but the counts have to be the same
+            String wordsets[][] = new String[][] { { "w0", "w1", "w5", "w20" }, { "w3", "w100", "w250", "unknown" } };
+            SegmentationDefinition definitions[] = new SegmentationDefinition[wordsets.length];
+            for (int i = 0; i < definitions.length; ++i) {
+                definitions[i] = (new OneOne()).getSubsetDefinition(wordsets[i].length);
+            }
+            BooleanSlidingWindowFrequencyDeterminer determiner;
+            CountedSubsets expected[], counts[];
+            for (int u = 0; u < 2; ++u) {
+                // with and without the window counts of single words determined while indexing
+                determiner = new BooleanSlidingWindowFrequencyDeterminer(sequentialAdapter, 10);
+                determiner.setUseTermWindowCounts(u == 0);
+                expected = determiner.determineCounts(wordsets, definitions);
+                determiner = new BooleanSlidingWindowFrequencyDeterminer(parallelAdapter, 10);
+                determiner.setUseTermWindowCounts(u == 0);
+                counts = determiner.determineCounts(wordsets, definitions);
+                for (int i = 0; i < expected.length; ++i) {
+                    Assert.assertArrayEquals(expected[i].counts, counts[i].counts);
+                }
+            }
+        } finally {
+            if (sequentialAdapter != null) {
+                sequentialAdapter.close();
+            }
+            if (parallelAdapter != null) {
+                parallelAdapter.close();
+            }
+            RandomIndexes.deleteIndex(sequentialDir);
+            RandomIndexes.deleteIndex(parallelDir);
+        }
+    }
+
+    @Test
+    public void testAppend() throws CorruptIndexException, IOException {
+        runAppendTest(true);
+    }
+
+    @Test
+    public void testAppendWithoutTermWindowCounts() throws CorruptIndexException, IOException {
+        // the term window counts have to be determined for the complete index
+        runAppendTest(false);
+    }
+
+    private void runAppendTest(boolean keepTermWindowCounts) throws CorruptIndexException, IOException {
+        List<IndexableDocument> documents = RandomIndexes.createRandomDocuments(new Random(9), 2000, 300, 1, 150);
+        List<IndexableDocument> firstBatch = documents.subList(0, 1500);
+        List<IndexableDocument> secondBatch = new ArrayList<IndexableDocument>();
+        for (IndexableDocument document : documents.subList(1500, documents.size())) {
+            // the number of tokens of some documents is determined while indexing
+            secondBatch.add((secondBatch.size() % 2) == 0 ? document : new IndexableDocument(document.getText()));
+        }
+        File completeDir = createIndex(documents, 1);
+        File appendedDir = createIndex(firstBatch, 1);
+        WindowSupportingLuceneCorpusAdapter completeAdapter = null, appendedAdapter = null;
+        try {
+            if (!keepTermWindowCounts) {
+                Assert.assertTrue(new File(appendedDir.getAbsolutePath()
+                        + WindowSupportingLuceneCorpusAdapter.TERM_WINDOW_COUNTS_FILE_SUFFIX).delete());
+            }
+            completeAdapter = WindowSupportingLuceneCorpusAdapter.create(completeDir.getAbsolutePath(),
+                    Palmetto.DEFAULT_TEXT_INDEX_FIELD_NAME, Palmetto.DEFAULT_DOCUMENT_LENGTH_INDEX_FIELD_NAME);
+            // the adapter is opened before the documents are appended
+            appendedAdapter = WindowSupportingLuceneCorpusAdapter.create(appendedDir.getAbsolutePath(),
+                    Palmetto.DEFAULT_TEXT_INDEX_FIELD_NAME, Palmetto.DEFAULT_DOCUMENT_LENGTH_INDEX_FIELD_NAME);
+            Assert.assertEquals(firstBatch.size(), appendedAdapter.getNumberOfDocuments());
+            Assert.assertFalse(appendedAdapter.reopen());
+
+            PositionStoringLuceneIndexCreator creator = new PositionStoringLuceneIndexCreator(
+                    Palmetto.DEFAULT_TEXT_INDEX_FIELD_NAME, Palmetto.DEFAULT_DOCUMENT_LENGTH_INDEX_FIELD_NAME);
+            creator.setNumberOfThreads(2);
+            Assert.assertTrue(creator.appendToIndex(appendedDir, secondBatch.iterator()));
+            // the adapter still sees the former state of the index
+            Assert.assertEquals(firstBatch.size(), appendedAdapter.getNumberOfDocuments());
+            Assert.assertTrue(appendedAdapter.reopen());
+            Assert.assertFalse(appendedAdapter.reopen());
+
+            Assert.assertEquals(documents.size(), appendedAdapter.getNumberOfDocuments());
+            CorpusStatistics expectedStatistics = completeAdapter.getStatistics();
+            CorpusStatistics statistics = appendedAdapter.getStatistics();
+            Assert.assertEquals(expectedStatistics.getNumberOfDocuments(), statistics.getNumberOfDocuments());
+            Assert.assertEquals(expectedStatistics.getNumberOfTokens(), statistics.getNumberOfTokens());
+            Assert.assertEquals(toMap(expectedStatistics.getDocumentSizeHistogram()),
+                    toMap(statistics.getDocumentSizeHistogram()));
+            Assert.assertArrayEquals(expectedStatistics.getWindowSizes(), statistics.getWindowSizes());
+            for (int i = 0; i < expectedStatistics.getWindowSizes().length; ++i) {
+                Assert.assertEquals(expectedStatistics.getNumberOfWindows(expectedStatistics.getWindowSizes()[i]),
+                        statistics.getNumberOfWindows(expectedStatistics.getWindowSizes()[i]));
+            }
+            Assert.assertEquals(completeAdapter.getVocabulary().size(), appendedAdapter.getVocabulary().size());
+
+            TermWindowCounts expectedTermCounts = completeAdapter.getTermWindowCounts();
+            TermWindowCounts termCounts = appendedAdapter.getTermWindowCounts();
+            Assert.assertNotNull(termCounts);
+            Assert.assertEquals(expectedTermCounts.getNumberOfWords(), termCounts.getNumberOfWords());
+            long expectedCounts[] = new long[expectedTermCounts.getWindowSizes().length];
+            long counts[] = new long[expectedCounts.length];
+            for (int i = 0; i < expectedTermCounts.getNumberOfWords(); ++i) {
+                Assert.assertArrayEquals(expectedTermCounts.getWordBytes(i), termCounts.getWordBytes(i));
+                expectedTermCounts.getWindowCounts(i, expectedCounts);
+                termCounts.getWindowCounts(i, counts);
+                Assert.assertArrayEquals(expectedCounts, counts);
+            }
+
+            String wordsets[][] = new String[][] { { "w0", "w1", "w5", "w20" }, { "w3", "w100", "w250", "unknown" } };
+            SegmentationDefinition definitions[] = new SegmentationDefinition[wordsets.length];
+            for (int i = 0; i < definitions.length; ++i) {
+                definitions[i] = (new OneOne()).getSubsetDefinition(wordsets[i].length);
+            }
+            CountedSubsets expected[] = new BooleanSlidingWindowFrequencyDeterminer(completeAdapter, 10)
+                    .determineCounts(wordsets, definitions);
+            CountedSubsets actual[] = new BooleanSlidingWindowFrequencyDeterminer(appendedAdapter, 10)
+                    .determineCounts(wordsets, definitions);
+            for (int i = 0; i < expected.length; ++i) {
+                Assert.assertArrayEquals(expected[i].counts, actual[i].counts);
+            }
+        } finally {
+            if (completeAdapter != null) {
+                completeAdapter.close();
+            }
+            if (appendedAdapter != null) {
+                appendedAdapter.close();
+            }
+            RandomIndexes.deleteIndex(completeDir);
+            RandomIndexes.deleteIndex(appendedDir);
+        }
+    }
+
+    @Test
+    public void testAppendWithoutStatistics() throws CorruptIndexException, IOException {
+        File indexDir = createIndex(Arrays.asList(DOCUMENTS), 1);
+        try {
+            Assert.assertTrue(new File(indexDir.getAbsolutePath()
+                    + WindowSupportingLuceneCorpusAdapter.STATISTICS_FILE_SUFFIX).delete());
+            PositionStoringLuceneIndexCreator creator = new PositionStoringLuceneIndexCreator(
+                    Palmetto.DEFAULT_TEXT_INDEX_FIELD_NAME, Palmetto.DEFAULT_DOCUMENT_LENGTH_INDEX_FIELD_NAME);
+            Assert.assertFalse(creator.appendToIndex(indexDir, Arrays.asList(DOCUMENTS).iterator()));
+        } finally {
+            RandomIndexes.deleteIndex(indexDir);
+        }
+    }
+
+    private static File createIndex(List<IndexableDocument> documents, int numberOfThreads) {
+        File indexDir = new File(FileUtils.getTempDirectoryPath() + File.separator + "temp_index"
+                + Long.toString(System.nanoTime()));
+        Assert.assertTrue(indexDir.mkdir());
+        PositionStoringLuceneIndexCreator creator = new PositionStoringLuceneIndexCreator(
+                Palmetto.DEFAULT_TEXT_INDEX_FIELD_NAME, Palmetto.DEFAULT_DOCUMENT_LENGTH_INDEX_FIELD_NAME);
+        creator.setNumberOfThreads(numberOfThreads);
+        Assert.assertTrue(creator.createIndex(indexDir, documents.iterator()));
+        return indexDir;
+    }
+
+    private static IntIntOpenHashMap toMap(int histogram[][]) {
+        IntIntOpenHashMap map = new IntIntOpenHashMap();
+        for (int i = 0; i < histogram.length; ++i) {
+            map.put(histogram[i][0], histogram[i][1]);
+        }
+        return map;
+    }
 }
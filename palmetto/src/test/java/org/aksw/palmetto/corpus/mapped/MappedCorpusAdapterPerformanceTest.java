@@ -0,0 +1,133 @@
+/**
+ * This file is part of Palmetto.
+ *
+ * Palmetto is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Palmetto is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Palmetto.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.aksw.palmetto.corpus.mapped;
+
+import java.io.File;
+import java.util.Random;
+
+import org.aksw.palmetto.Palmetto;
+import org.aksw.palmetto.corpus.BooleanDocumentSupportingAdapter;
+import org.aksw.palmetto.corpus.WindowSupportingAdapter;
+import org.aksw.palmetto.corpus.lucene.RandomIndexes;
+import org.aksw.palmetto.corpus.lucene.WindowSupportingLuceneCorpusAdapter;
+import org.aksw.palmetto.corpus.lucene.creation.LuceneIndexHistogramCreator;
+import org.aksw.palmetto.data.CountedSubsets;
+import org.aksw.palmetto.data.SegmentationDefinition;
+import org.aksw.palmetto.prob.bd.ListBasedBooleanDocumentFrequencyDeterminer;
+import org.aksw.palmetto.prob.window.BooleanSlidingWindowFrequencyDeterminer;
+import org.aksw.palmetto.subsets.OneSet;
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Compares the {@link MappedCorpusAdapter} with the
+ * {@link WindowSupportingLuceneCorpusAdapter} on the same corpus using the
+ * boolean document model and the C_V boolean sliding window of size 110.
+ *
+ * @author Michael R&ouml;der (roeder@informatik.uni-leipzig.de)
+ *
+ */
+public class MappedCorpusAdapterPerformanceTest {
+
+    private static final int NUMBER_OF_DOCUMENTS = 20000;
+    private static final int VOCABULARY_SIZE = 2000;
+    private static final int MIN_DOCUMENT_LENGTH = 50;
+    private static final int MAX_DOCUMENT_LENGTH = 500;
+    private static final int NUMBER_OF_WORDSETS = 20;
+    private static final int WORDS_PER_WORDSET = 10;
+    private static final int WINDOW_SIZE = 110;
+
+    @Test
+    public void test() throws Exception {
+        Random random = new Random(42);
+        File indexDir = RandomIndexes.createRandomIndex(random,
+                NUMBER_OF_DOCUMENTS, VOCABULARY_SIZE, MIN_DOCUMENT_LENGTH, MAX_DOCUMENT_LENGTH, 5000);
+        String indexPath = indexDir.getAbsolutePath();
+        File mappedDir = new File(indexPath + "_mapped");
+        LuceneIndexHistogramCreator hCreator = new LuceneIndexHistogramCreator(
+                Palmetto.DEFAULT_DOCUMENT_LENGTH_INDEX_FIELD_NAME);
+        hCreator.createLuceneIndexHistogram(indexPath);
+        long time = System.currentTimeMillis();
+        LuceneToMappedIndexConverter converter = new LuceneToMappedIndexConverter(
+                Palmetto.DEFAULT_TEXT_INDEX_FIELD_NAME, Palmetto.DEFAULT_DOCUMENT_LENGTH_INDEX_FIELD_NAME);
+        Assert.assertTrue(converter.convert(indexPath, mappedDir.getAbsolutePath()));
+        long conversionTime = System.currentTimeMillis() - time;
+
+        String wordsets[][] = RandomIndexes.createRandomWordsets(random,
+                NUMBER_OF_WORDSETS, WORDS_PER_WORDSET, VOCABULARY_SIZE);
+        SegmentationDefinition definitions[] = new SegmentationDefinition[wordsets.length];
+        for (int i = 0; i < definitions.length; ++i) {
+            definitions[i] = (new OneSet()).getSubsetDefinition(WORDS_PER_WORDSET);
+        }
+
+        WindowSupportingLuceneCorpusAdapter luceneAdapter = WindowSupportingLuceneCorpusAdapter.create(indexPath,
+                Palmetto.DEFAULT_TEXT_INDEX_FIELD_NAME, Palmetto.DEFAULT_DOCUMENT_LENGTH_INDEX_FIELD_NAME);
+        MappedCorpusAdapter mappedAdapter = MappedCorpusAdapter.create(mappedDir.getAbsolutePath());
+        try {
+            // warm up
+            runBooleanDocument(luceneAdapter, wordsets, definitions);
+            runBooleanDocument(mappedAdapter, wordsets, definitions);
+            runWindow(luceneAdapter, wordsets, definitions);
+            runWindow(mappedAdapter, wordsets, definitions);
+
+            time = System.currentTimeMillis();
+            CountedSubsets expected[] = runBooleanDocument(luceneAdapter, wordsets, definitions);
+            long luceneBdTime = System.currentTimeMillis() - time;
+            time = System.currentTimeMillis();
+            CountedSubsets counts[] = runBooleanDocument(mappedAdapter, wordsets, definitions);
+            long mappedBdTime = System.currentTimeMillis() - time;
+            for (int i = 0; i < expected.length; ++i) {
+                Assert.assertArrayEquals(expected[i].counts, counts[i].counts);
+            }
+
+            time = System.currentTimeMillis();
+            expected = runWindow(luceneAdapter, wordsets, definitions);
+            long luceneWindowTime = System.currentTimeMillis() - time;
+            time = System.currentTimeMillis();
+            counts = runWindow(mappedAdapter, wordsets, definitions);
+            long mappedWindowTime = System.currentTimeMillis() - time;
+            for (int i = 0; i < expected.length; ++i) {
+                Assert.assertArrayEquals(expected[i].counts, counts[i].counts);
+            }
+
+            System.out.println("Mapped index performance test (conversion: " + conversionTime
+                    + " ms) boolean document Lucene: " + luceneBdTime + " ms\tmapped: " + mappedBdTime
+                    + " ms\tC_V (window " + WINDOW_SIZE + ") Lucene: " + luceneWindowTime + " ms\tmapped: "
+                    + mappedWindowTime + " ms");
+        } finally {
+            luceneAdapter.close();
+            mappedAdapter.close();
+            FileUtils.deleteQuietly(indexDir);
+            FileUtils.deleteQuietly(mappedDir);
+        }
+    }
+
+    protected CountedSubsets[] runBooleanDocument(BooleanDocumentSupportingAdapter adapter, String wordsets[][],
+            SegmentationDefinition definitions[]) {
+        return (new ListBasedBooleanDocumentFrequencyDeterminer(adapter)).determineCounts(wordsets, definitions);
+    }
+
+    protected CountedSubsets[] runWindow(WindowSupportingAdapter adapter, String wordsets[][],
+            SegmentationDefinition definitions[]) {
+        BooleanSlidingWindowFrequencyDeterminer determiner = new BooleanSlidingWindowFrequencyDeterminer(adapter,
+                WINDOW_SIZE);
+        // request every word set separately to measure the adapters instead of the determiner
+        determiner.setUseUnionVocabulary(false);
+        return determiner.determineCounts(wordsets, definitions);
+    }
+}
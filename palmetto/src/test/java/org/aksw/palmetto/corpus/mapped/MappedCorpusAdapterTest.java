@@ -0,0 +1,203 @@
+/**
+ * This file is part of Palmetto.
+ *
+ * Palmetto is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Palmetto is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Palmetto.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.aksw.palmetto.corpus.mapped;
+
+import java.io.File;
+import java.util.Random;
+
+import org.aksw.palmetto.Palmetto;
+import org.aksw.palmetto.corpus.CorpusVocabulary;
+import org.aksw.palmetto.corpus.lucene.RandomIndexes;
+import org.aksw.palmetto.corpus.lucene.SimpleAnalyzer;
+import org.aksw.palmetto.corpus.lucene.WindowSupportingLuceneCorpusAdapter;
+import org.aksw.palmetto.corpus.lucene.creation.LuceneIndexHistogramCreator;
+import org.aksw.palmetto.data.CountedSubsets;
+import org.aksw.palmetto.data.SegmentationDefinition;
+import org.aksw.palmetto.prob.bd.BitSetBasedBooleanDocumentFrequencyDeterminer;
+import org.aksw.palmetto.prob.bd.LeapfrogBooleanDocumentFrequencyDeterminer;
+import org.aksw.palmetto.prob.window.BooleanSlidingWindowFrequencyDeterminer;
+import org.aksw.palmetto.prob.window.ContextWindowFrequencyDeterminer;
+import org.aksw.palmetto.subsets.AnyAny;
+import org.aksw.palmetto.subsets.OneOne;
+import org.apache.commons.io.FileUtils;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.store.SimpleFSDirectory;
+import org.apache.lucene.util.Version;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.IntIntOpenHashMap;
+import com.carrotsearch.hppc.IntObjectOpenHashMap;
+import com.carrotsearch.hppc.IntOpenHashSet;
+
+public class MappedCorpusAdapterTest {
+
+    private static final int NUMBER_OF_WORDSETS = 10;
+    private static final int WORDS_PER_WORDSET = 5;
+    private static final int VOCABULARY_SIZE = 500;
+
+    @Test
+    public void testConversion() throws Exception {
+        Random random = new Random(11);
+        File indexDir = RandomIndexes.createRandomIndex(random, 2000, VOCABULARY_SIZE, 5, 100, 500);
+        String indexPath = indexDir.getAbsolutePath();
+        File mappedDir = new File(indexPath + "_mapped");
+        LuceneIndexHistogramCreator hCreator = new LuceneIndexHistogramCreator(
+                Palmetto.DEFAULT_DOCUMENT_LENGTH_INDEX_FIELD_NAME);
+        hCreator.createLuceneIndexHistogram(indexPath);
+        LuceneToMappedIndexConverter converter = new LuceneToMappedIndexConverter(
+                Palmetto.DEFAULT_TEXT_INDEX_FIELD_NAME, Palmetto.DEFAULT_DOCUMENT_LENGTH_INDEX_FIELD_NAME);
+        Assert.assertTrue(converter.convert(indexPath, mappedDir.getAbsolutePath()));
+
+        WindowSupportingLuceneCorpusAdapter luceneAdapter = WindowSupportingLuceneCorpusAdapter.create(indexPath,
+                Palmetto.DEFAULT_TEXT_INDEX_FIELD_NAME, Palmetto.DEFAULT_DOCUMENT_LENGTH_INDEX_FIELD_NAME);
+        MappedCorpusAdapter mappedAdapter = MappedCorpusAdapter.create(mappedDir.getAbsolutePath());
+        try {
+            Assert.assertTrue(mappedAdapter.hasPositions());
+            Assert.assertEquals(luceneAdapter.getNumberOfDocuments(), mappedAdapter.getNumberOfDocuments());
+            Assert.assertEquals(toMap(luceneAdapter.getDocumentSizeHistogram()),
+                    toMap(mappedAdapter.getDocumentSizeHistogram()));
+            // the ids of the mapped vocabulary are the term ids, i.e., they are sorted like the Lucene terms
+            CorpusVocabulary expectedVocabulary = luceneAdapter.getVocabulary();
+            CorpusVocabulary vocabulary = mappedAdapter.getVocabulary();
+            Assert.assertEquals(expectedVocabulary.size(), vocabulary.size());
+            for (int i = 0; i < vocabulary.size(); ++i) {
+                Assert.assertEquals(expectedVocabulary.getWord(i), vocabulary.getWord(i));
+            }
+
+            // without deletions, the document ids are the same
+            String words[] = new String[VOCABULARY_SIZE + 1];
+            for (int i = 0; i < VOCABULARY_SIZE; ++i) {
+                words[i] = "w" + i;
+            }
+            words[VOCABULARY_SIZE] = "unknown";
+            IntArrayList expected, documents;
+            IntOpenHashSet expectedSet, documentSet;
+            for (int i = 0; i < words.length; ++i) {
+                expected = new IntArrayList();
+                luceneAdapter.getDocumentsWithWord(words[i], expected);
+                documents = new IntArrayList();
+                mappedAdapter.getDocumentsWithWord(words[i], documents);
+                Assert.assertArrayEquals(expected.toArray(), documents.toArray());
+                expectedSet = new IntOpenHashSet();
+                luceneAdapter.getDocumentsWithWordAsSet(words[i], expectedSet);
+                documentSet = new IntOpenHashSet();
+                mappedAdapter.getDocumentsWithWordAsSet(words[i], documentSet);
+                Assert.assertEquals(expectedSet, documentSet);
+            }
+
+            IntIntOpenHashMap expectedLengths = new IntIntOpenHashMap();
+            IntObjectOpenHashMap<IntArrayList[]> expectedPositions = luceneAdapter.requestWordPositionsInDocuments(
+                    words, expectedLengths);
+            IntIntOpenHashMap lengths = new IntIntOpenHashMap();
+            IntObjectOpenHashMap<IntArrayList[]> positions = mappedAdapter.requestWordPositionsInDocuments(words,
+                    lengths);
+            Assert.assertEquals(expectedLengths, lengths);
+            Assert.assertEquals(expectedPositions.size(), positions.size());
+            for (int i = 0; i < expectedPositions.keys.length; ++i) {
+                if (expectedPositions.allocated[i]) {
+                    Assert.assertArrayEquals((IntArrayList[]) ((Object[]) expectedPositions.values)[i],
+                            positions.get(expectedPositions.keys[i]));
+                }
+            }
+        } finally {
+            luceneAdapter.close();
+            mappedAdapter.close();
+            FileUtils.deleteQuietly(indexDir);
+            FileUtils.deleteQuietly(mappedDir);
+        }
+    }
+
+    @Test
+    public void testConversionWithDeletedDocuments() throws Exception {
+        Random random = new Random(12);
+        File indexDir = RandomIndexes.createRandomIndex(random, 2000, VOCABULARY_SIZE, 5, 100);
+        String indexPath = indexDir.getAbsolutePath();
+        File mappedDir = new File(indexPath + "_mapped");
+        // delete all documents containing a word of medium frequency
+        IndexWriter writer = new IndexWriter(new SimpleFSDirectory(indexDir), new IndexWriterConfig(
+                Version.LUCENE_44, new SimpleAnalyzer(true)));
+        writer.deleteDocuments(new Term(Palmetto.DEFAULT_TEXT_INDEX_FIELD_NAME, "w100"));
+        writer.close();
+
+        LuceneToMappedIndexConverter converter = new LuceneToMappedIndexConverter(
+                Palmetto.DEFAULT_TEXT_INDEX_FIELD_NAME, Palmetto.DEFAULT_DOCUMENT_LENGTH_INDEX_FIELD_NAME);
+        Assert.assertTrue(converter.convert(indexPath, mappedDir.getAbsolutePath()));
+        LuceneIndexHistogramCreator hCreator = new LuceneIndexHistogramCreator(
+                Palmetto.DEFAULT_DOCUMENT_LENGTH_INDEX_FIELD_NAME);
+        hCreator.createLuceneIndexHistogram(indexPath);
+
+        String wordsets[][] = RandomIndexes.createRandomWordsets(random,
+                NUMBER_OF_WORDSETS, WORDS_PER_WORDSET, VOCABULARY_SIZE);
+        wordsets[0][0] = "w100";
+        SegmentationDefinition definitions[] = new SegmentationDefinition[wordsets.length];
+        for (int i = 0; i < definitions.length; ++i) {
+            definitions[i] = (new OneOne()).getSubsetDefinition(WORDS_PER_WORDSET);
+        }
+        WindowSupportingLuceneCorpusAdapter luceneAdapter = WindowSupportingLuceneCorpusAdapter.create(indexPath,
+                Palmetto.DEFAULT_TEXT_INDEX_FIELD_NAME, Palmetto.DEFAULT_DOCUMENT_LENGTH_INDEX_FIELD_NAME);
+        MappedCorpusAdapter mappedAdapter = MappedCorpusAdapter.create(mappedDir.getAbsolutePath());
+        try {
+            Assert.assertTrue(mappedAdapter.getNumberOfDocuments() < 2000);
+            Assert.assertEquals(luceneAdapter.getNumberOfDocuments(), mappedAdapter.getNumberOfDocuments());
+            compare((new BitSetBasedBooleanDocumentFrequencyDeterminer(luceneAdapter)).determineCounts(wordsets,
+                    definitions), (new BitSetBasedBooleanDocumentFrequencyDeterminer(mappedAdapter)).determineCounts(
+                    wordsets, definitions));
+            compare((new BooleanSlidingWindowFrequencyDeterminer(luceneAdapter, 20)).determineCounts(wordsets,
+                    definitions), (new BooleanSlidingWindowFrequencyDeterminer(mappedAdapter, 20)).determineCounts(
+                    wordsets, definitions));
+            compare((new ContextWindowFrequencyDeterminer(luceneAdapter, 5)).determineCounts(wordsets, definitions),
+                    (new ContextWindowFrequencyDeterminer(mappedAdapter, 5)).determineCounts(wordsets, definitions));
+            // the cursors of both adapters have to skip the deleted documents
+            SegmentationDefinition anyAnyDefinitions[] = new SegmentationDefinition[wordsets.length];
+            for (int i = 0; i < anyAnyDefinitions.length; ++i) {
+                anyAnyDefinitions[i] = (new AnyAny()).getSubsetDefinition(WORDS_PER_WORDSET);
+            }
+            CountedSubsets expected[] = (new BitSetBasedBooleanDocumentFrequencyDeterminer(luceneAdapter))
+                    .determineCounts(wordsets, anyAnyDefinitions);
+            compare(expected, (new LeapfrogBooleanDocumentFrequencyDeterminer(luceneAdapter)).determineCounts(
+                    wordsets, anyAnyDefinitions));
+            compare(expected, (new LeapfrogBooleanDocumentFrequencyDeterminer(mappedAdapter)).determineCounts(
+                    wordsets, anyAnyDefinitions));
+            compare(expected, (new LeapfrogBooleanDocumentFrequencyDeterminer(mappedAdapter)).determineCounts(
+                    mappedAdapter.getVocabulary().getIds(wordsets), mappedAdapter.getVocabulary(), anyAnyDefinitions));
+        } finally {
+            luceneAdapter.close();
+            mappedAdapter.close();
+            FileUtils.deleteQuietly(indexDir);
+            FileUtils.deleteQuietly(mappedDir);
+        }
+    }
+
+    private static void compare(CountedSubsets expected[], CountedSubsets counts[]) {
+        Assert.assertEquals(expected.length, counts.length);
+        for (int i = 0; i < expected.length; ++i) {
+            Assert.assertArrayEquals(expected[i].counts, counts[i].counts);
+        }
+    }
+
+    private static IntIntOpenHashMap toMap(int histogram[][]) {
+        IntIntOpenHashMap map = new IntIntOpenHashMap();
+        for (int i = 0; i < histogram.length; ++i) {
+            map.put(histogram[i][0], histogram[i][1]);
+        }
+        return map;
+    }
+}
@@ -0,0 +1,230 @@
+/**
+ * This file is part of Palmetto.
+ *
+ * Palmetto is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Palmetto is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Palmetto.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.aksw.palmetto.corpus.remote;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.aksw.palmetto.data.CountedSubsets;
+import org.aksw.palmetto.data.SegmentationDefinition;
+import org.aksw.palmetto.prob.bd.ListBasedBooleanDocumentFrequencyDeterminer;
+import org.aksw.palmetto.subsets.OnePreceding;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.IntOpenHashSet;
+import com.carrotsearch.hppc.ObjectObjectOpenHashMap;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Tests the {@link RemoteCorpusAdapter} against an in-process server that
+ * simulates the document frequency service of the webapp. The word "n" is
+ * contained in every n-th document.
+ *
+ * @author Michael R&ouml;der (roeder@informatik.uni-leipzig.de)
+ *
+ */
+public class RemoteCorpusAdapterTest {
+
+    private static final int NUMBER_OF_DOCUMENTS = 10000;
+
+    private HttpServer server;
+    private String serviceUrl;
+    private AtomicInteger requests = new AtomicInteger();
+    private AtomicInteger requestedWords = new AtomicInteger();
+    private volatile int numberOfDocuments = NUMBER_OF_DOCUMENTS;
+    private AtomicLong version = new AtomicLong(1);
+
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/service/" + DocumentListCodec.DOCUMENTS_SERVICE_PATH, new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                requests.incrementAndGet();
+                String body = IOUtils.toString(exchange.getRequestBody(), "UTF-8");
+                String words[] = DocumentListCodec.splitWords(URLDecoder.decode(
+                        body.substring(DocumentListCodec.WORDS_PARAMETER_NAME.length() + 1), "UTF-8"));
+                requestedWords.addAndGet(words.length);
+                IntArrayList documents[] = new IntArrayList[words.length];
+                for (int i = 0; i < words.length; ++i) {
+                    documents[i] = getDocuments(words[i]);
+                }
+                sendResponse(exchange, DocumentListCodec.encode(documents));
+            }
+        });
+        server.createContext("/service/" + DocumentListCodec.NUMBER_OF_DOCUMENTS_SERVICE_PATH, new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                sendResponse(exchange, Integer.toString(numberOfDocuments).getBytes("UTF-8"));
+            }
+        });
+        server.createContext("/service/" + DocumentListCodec.CORPUS_VERSION_SERVICE_PATH, new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                sendResponse(exchange, Long.toString(version.get()).getBytes("UTF-8"));
+            }
+        });
+        server.setExecutor(Executors.newFixedThreadPool(4));
+        server.start();
+        serviceUrl = "http://localhost:" + server.getAddress().getPort() + "/service";
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testBatchingAndCaching() {
+        RemoteCorpusAdapter adapter = new RemoteCorpusAdapter(serviceUrl);
+        Assert.assertEquals(NUMBER_OF_DOCUMENTS, adapter.getNumberOfDocuments());
+
+        String wordsets[][] = new String[][] { { "2", "3", "5", "7" }, { "3", "4", "6", "unknown" } };
+        SegmentationDefinition definitions[] = new SegmentationDefinition[wordsets.length];
+        for (int i = 0; i < definitions.length; ++i) {
+            definitions[i] = (new OnePreceding()).getSubsetDefinition(wordsets[i].length);
+        }
+        CountedSubsets counts[] = (new ListBasedBooleanDocumentFrequencyDeterminer(adapter)).determineCounts(
+                wordsets, definitions);
+        // all words of the call are requested at once
+        Assert.assertEquals(1, adapter.getNumberOfRequests());
+        Assert.assertEquals(7, requestedWords.get());
+        Assert.assertEquals(5000, counts[0].counts[1]);
+        // documents containing 2 and 3
+        Assert.assertEquals(1667, counts[0].counts[3]);
+        Assert.assertEquals(0, counts[1].counts[8]);
+
+        // the second call is answered by the cache
+        (new ListBasedBooleanDocumentFrequencyDeterminer(adapter)).determineCounts(wordsets, definitions);
+        Assert.assertEquals(1, adapter.getNumberOfRequests());
+        Assert.assertEquals(7, adapter.getCacheStats().hitCount());
+
+        IntArrayList documents = new IntArrayList();
+        adapter.getDocumentsWithWord("5", documents);
+        Assert.assertArrayEquals(getDocuments("5").toArray(), documents.toArray());
+        IntOpenHashSet documentSet = new IntOpenHashSet();
+        adapter.getDocumentsWithWordAsSet("11", documentSet);
+        Assert.assertEquals(getDocuments("11").size(), documentSet.size());
+        Assert.assertEquals(2, adapter.getNumberOfRequests());
+        adapter.close();
+    }
+
+    @Test
+    public void testConcurrentRequests() throws Exception {
+        final RemoteCorpusAdapter adapter = new RemoteCorpusAdapter(serviceUrl);
+        final AtomicInteger errors = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int t = 0; t < 8; ++t) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    ObjectObjectOpenHashMap<String, IntArrayList> wordDocMapping;
+                    for (int w = 1; w < 40; ++w) {
+                        wordDocMapping = new ObjectObjectOpenHashMap<String, IntArrayList>();
+                        wordDocMapping.put(Integer.toString(w), new IntArrayList());
+                        wordDocMapping.put(Integer.toString(w + 1), new IntArrayList());
+                        adapter.getDocumentsWithWords(wordDocMapping);
+                        if ((wordDocMapping.get(Integer.toString(w)).size() != getDocuments(Integer.toString(w))
+                                .size())
+                                || (wordDocMapping.get(Integer.toString(w + 1)).size() != getDocuments(
+                                        Integer.toString(w + 1)).size())) {
+                            errors.incrementAndGet();
+                        }
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+        Assert.assertEquals(0, errors.get());
+        // every word has been requested only once
+        Assert.assertEquals(40, requestedWords.get());
+        adapter.close();
+    }
+
+    @Test
+    public void testVersionChange() {
+        RemoteCorpusAdapter adapter = new RemoteCorpusAdapter(serviceUrl);
+        adapter.setVersionCheckInterval(0);
+        Assert.assertEquals(NUMBER_OF_DOCUMENTS, adapter.getNumberOfDocuments());
+        long corpusVersion = adapter.getCorpusVersion();
+        IntArrayList documents = new IntArrayList();
+        adapter.getDocumentsWithWord("5", documents);
+        adapter.getDocumentsWithWord("5", new IntArrayList());
+        // the version did not change, i.e., the second request is answered by the cache
+        Assert.assertEquals(1, adapter.getNumberOfRequests());
+        Assert.assertEquals(corpusVersion, adapter.getCorpusVersion());
+
+        // documents have been appended to the remote corpus
+        numberOfDocuments = 2 * NUMBER_OF_DOCUMENTS;
+        version.incrementAndGet();
+        Assert.assertEquals(2 * NUMBER_OF_DOCUMENTS, adapter.getNumberOfDocuments());
+        Assert.assertTrue(adapter.getCorpusVersion() > corpusVersion);
+        documents = new IntArrayList();
+        adapter.getDocumentsWithWord("5", documents);
+        Assert.assertEquals(2, adapter.getNumberOfRequests());
+        Assert.assertArrayEquals(getDocuments("5").toArray(), documents.toArray());
+        adapter.close();
+    }
+
+    @Test
+    public void testTimeToLiveWithoutVersion() {
+        server.removeContext("/service/" + DocumentListCodec.CORPUS_VERSION_SERVICE_PATH);
+        RemoteCorpusAdapter adapter = new RemoteCorpusAdapter(serviceUrl);
+        adapter.setVersionCheckInterval(0);
+        adapter.getDocumentsWithWord("5", new IntArrayList());
+        adapter.getDocumentsWithWord("5", new IntArrayList());
+        // without a version, the cache is discarded after every interval
+        Assert.assertEquals(2, adapter.getNumberOfRequests());
+        adapter.close();
+    }
+
+    private IntArrayList getDocuments(String word) {
+        IntArrayList documents = new IntArrayList();
+        int step;
+        try {
+            step = Integer.parseInt(word);
+        } catch (NumberFormatException e) {
+            return documents;
+        }
+        for (int i = 0; i < numberOfDocuments; i += step) {
+            documents.add(i);
+        }
+        return documents;
+    }
+
+    private static void sendResponse(HttpExchange exchange, byte response[]) throws IOException {
+        exchange.sendResponseHeaders(200, response.length);
+        OutputStream out = exchange.getResponseBody();
+        out.write(response);
+        out.close();
+    }
+}
@@ -0,0 +1,202 @@
+/**
+ * This file is part of Palmetto.
+ *
+ * Palmetto is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Palmetto is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Palmetto.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.aksw.palmetto.corpus.sharded;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.aksw.palmetto.Coherence;
+import org.aksw.palmetto.DirectConfirmationBasedCoherence;
+import org.aksw.palmetto.Palmetto;
+import org.aksw.palmetto.VectorBasedCoherence;
+import org.aksw.palmetto.aggregation.ArithmeticMean;
+import org.aksw.palmetto.calculations.direct.LogCondProbConfirmationMeasure;
+import org.aksw.palmetto.calculations.direct.NormalizedLogRatioConfirmationMeasure;
+import org.aksw.palmetto.calculations.indirect.CosinusConfirmationMeasure;
+import org.aksw.palmetto.corpus.WindowSupportingAdapter;
+import org.aksw.palmetto.corpus.lucene.RandomIndexes;
+import org.aksw.palmetto.corpus.lucene.WindowSupportingLuceneCorpusAdapter;
+import org.aksw.palmetto.corpus.lucene.creation.IndexableDocument;
+import org.aksw.palmetto.corpus.lucene.creation.LuceneIndexHistogramCreator;
+import org.aksw.palmetto.corpus.lucene.creation.PositionStoringLuceneIndexCreator;
+import org.aksw.palmetto.prob.bd.BooleanDocumentProbabilitySupplier;
+import org.aksw.palmetto.prob.window.BooleanSlidingWindowFrequencyDeterminer;
+import org.aksw.palmetto.prob.window.WindowBasedProbabilityEstimator;
+import org.aksw.palmetto.subsets.OnePreceding;
+import org.aksw.palmetto.subsets.OneSet;
+import org.aksw.palmetto.vector.DirectConfirmationBasedVectorCreator;
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.ObjectObjectOpenHashMap;
+
+/**
+ * Compares the coherence values calculated on a single index with the values
+ * calculated on the same documents distributed over several shards.
+ *
+ * @author Michael R&ouml;der (roeder@informatik.uni-leipzig.de)
+ *
+ */
+public class ShardedCorpusAdapterTest {
+
+    private static final int NUMBER_OF_DOCUMENTS = 6000;
+    private static final int NUMBER_OF_SHARDS = 3;
+    private static final int VOCABULARY_SIZE = 1000;
+    private static final int NUMBER_OF_WORDSETS = 20;
+    private static final int WORDS_PER_WORDSET = 10;
+    private static final int WINDOW_SIZE = 110;
+
+    @Test
+    public void test() throws Exception {
+        Random random = new Random(17);
+        List<IndexableDocument> documents = RandomIndexes.createRandomDocuments(
+                random, NUMBER_OF_DOCUMENTS, VOCABULARY_SIZE, 20, 300);
+        File indexDir = createIndex(documents);
+        File shardDirs[] = new File[NUMBER_OF_SHARDS];
+        String shardPaths[] = new String[NUMBER_OF_SHARDS];
+        int shardSize = NUMBER_OF_DOCUMENTS / NUMBER_OF_SHARDS;
+        for (int i = 0; i < NUMBER_OF_SHARDS; ++i) {
+            shardDirs[i] = createIndex(documents.subList(i * shardSize,
+                    (i == (NUMBER_OF_SHARDS - 1)) ? NUMBER_OF_DOCUMENTS : ((i + 1) * shardSize)));
+            shardPaths[i] = shardDirs[i].getAbsolutePath();
+        }
+        String wordsets[][] = RandomIndexes.createRandomWordsets(random,
+                NUMBER_OF_WORDSETS, WORDS_PER_WORDSET, VOCABULARY_SIZE);
+
+        WindowSupportingLuceneCorpusAdapter singleAdapter = WindowSupportingLuceneCorpusAdapter.create(
+                indexDir.getAbsolutePath(), Palmetto.DEFAULT_TEXT_INDEX_FIELD_NAME,
+                Palmetto.DEFAULT_DOCUMENT_LENGTH_INDEX_FIELD_NAME);
+        ShardedCorpusAdapter shardedAdapter = ShardedCorpusAdapter.create(shardPaths,
+                Palmetto.DEFAULT_TEXT_INDEX_FIELD_NAME, Palmetto.DEFAULT_DOCUMENT_LENGTH_INDEX_FIELD_NAME);
+        try {
+            Assert.assertEquals(singleAdapter.getNumberOfDocuments(), shardedAdapter.getNumberOfDocuments());
+
+            // warm up
+            createCVCoherence(singleAdapter).calculateCoherences(wordsets);
+            createCVCoherence(shardedAdapter).calculateCoherences(wordsets);
+
+            long time = System.currentTimeMillis();
+            double expected[] = createCVCoherence(singleAdapter).calculateCoherences(wordsets);
+            long singleTime = System.currentTimeMillis() - time;
+            time = System.currentTimeMillis();
+            double coherences[] = createCVCoherence(shardedAdapter).calculateCoherences(wordsets);
+            long shardedTime = System.currentTimeMillis() - time;
+            Assert.assertArrayEquals(expected, coherences, 0.000001);
+            System.out.println("C_V (window " + WINDOW_SIZE + ") single index: " + singleTime + " ms\t"
+                    + NUMBER_OF_SHARDS + " shards: " + shardedTime + " ms");
+
+            expected = createUMassCoherence(singleAdapter).calculateCoherences(wordsets);
+            coherences = createUMassCoherence(shardedAdapter).calculateCoherences(wordsets);
+            Assert.assertArrayEquals(expected, coherences, 0.000001);
+        } finally {
+            singleAdapter.close();
+            shardedAdapter.close();
+            FileUtils.deleteQuietly(indexDir);
+            for (int i = 0; i < shardDirs.length; ++i) {
+                FileUtils.deleteQuietly(shardDirs[i]);
+            }
+        }
+    }
+
+    @Test
+    public void testReopenAfterAppend() throws Exception {
+        Random random = new Random(23);
+        List<IndexableDocument> documents = RandomIndexes.createRandomDocuments(random, 600, VOCABULARY_SIZE, 20, 300);
+        File shardDirs[] = new File[] { createIndex(documents.subList(0, 200)), createIndex(documents.subList(200,
+                400)) };
+        String shardPaths[] = new String[] { shardDirs[0].getAbsolutePath(), shardDirs[1].getAbsolutePath() };
+        ShardedCorpusAdapter shardedAdapter = ShardedCorpusAdapter.create(shardPaths,
+                Palmetto.DEFAULT_TEXT_INDEX_FIELD_NAME, Palmetto.DEFAULT_DOCUMENT_LENGTH_INDEX_FIELD_NAME);
+        try {
+            long version = shardedAdapter.getCorpusVersion();
+            Assert.assertEquals(400, shardedAdapter.getNumberOfDocuments());
+            // make sure that the histogram of the former version has been cached
+            shardedAdapter.getDocumentSizeHistogram();
+
+            PositionStoringLuceneIndexCreator creator = new PositionStoringLuceneIndexCreator(
+                    Palmetto.DEFAULT_TEXT_INDEX_FIELD_NAME, Palmetto.DEFAULT_DOCUMENT_LENGTH_INDEX_FIELD_NAME);
+            Assert.assertTrue(creator.appendToIndex(shardDirs[0], documents.subList(400, 600).iterator()));
+            Assert.assertTrue(shardedAdapter.reopen());
+            Assert.assertTrue(shardedAdapter.getCorpusVersion() > version);
+            Assert.assertEquals(600, shardedAdapter.getNumberOfDocuments());
+
+            // the adapter has to behave like a new adapter of the extended shards
+            ShardedCorpusAdapter freshAdapter = ShardedCorpusAdapter.create(shardPaths,
+                    Palmetto.DEFAULT_TEXT_INDEX_FIELD_NAME, Palmetto.DEFAULT_DOCUMENT_LENGTH_INDEX_FIELD_NAME);
+            try {
+                Assert.assertArrayEquals(toSortedArray(freshAdapter.getDocumentSizeHistogram()),
+                        toSortedArray(shardedAdapter.getDocumentSizeHistogram()));
+                ObjectObjectOpenHashMap<String, IntArrayList> expected, documentsWithWords;
+                expected = new ObjectObjectOpenHashMap<String, IntArrayList>();
+                documentsWithWords = new ObjectObjectOpenHashMap<String, IntArrayList>();
+                for (int i = 0; i < VOCABULARY_SIZE; i += 10) {
+                    expected.put("w" + i, new IntArrayList());
+                    documentsWithWords.put("w" + i, new IntArrayList());
+                }
+                freshAdapter.getDocumentsWithWords(expected);
+                shardedAdapter.getDocumentsWithWords(documentsWithWords);
+                Assert.assertEquals(expected, documentsWithWords);
+            } finally {
+                freshAdapter.close();
+            }
+        } finally {
+            shardedAdapter.close();
+            for (int i = 0; i < shardDirs.length; ++i) {
+                FileUtils.deleteQuietly(shardDirs[i]);
+            }
+        }
+    }
+
+    private static long[] toSortedArray(int histogram[][]) {
+        long values[] = new long[histogram.length];
+        for (int i = 0; i < histogram.length; ++i) {
+            values[i] = (((long) histogram[i][0]) << 32) | histogram[i][1];
+        }
+        Arrays.sort(values);
+        return values;
+    }
+
+    private static File createIndex(List<IndexableDocument> documents) {
+        File indexDir = new File(FileUtils.getTempDirectoryPath() + File.separator + "temp_index"
+                + Long.toString(System.nanoTime()));
+        Assert.assertTrue(indexDir.mkdir());
+        PositionStoringLuceneIndexCreator creator = new PositionStoringLuceneIndexCreator(
+                Palmetto.DEFAULT_TEXT_INDEX_FIELD_NAME, Palmetto.DEFAULT_DOCUMENT_LENGTH_INDEX_FIELD_NAME);
+        Assert.assertTrue(creator.createIndex(indexDir, documents.iterator()));
+        LuceneIndexHistogramCreator hCreator = new LuceneIndexHistogramCreator(
+                Palmetto.DEFAULT_DOCUMENT_LENGTH_INDEX_FIELD_NAME);
+        hCreator.createLuceneIndexHistogram(indexDir.getAbsolutePath());
+        return indexDir;
+    }
+
+    private static Coherence createCVCoherence(WindowSupportingAdapter adapter) {
+        WindowBasedProbabilityEstimator probEstimator = new WindowBasedProbabilityEstimator(
+                new BooleanSlidingWindowFrequencyDeterminer(adapter, WINDOW_SIZE));
+        probEstimator.setMinFrequency(WindowBasedProbabilityEstimator.DEFAULT_MIN_FREQUENCY * WINDOW_SIZE);
+        return new VectorBasedCoherence(new OneSet(), new DirectConfirmationBasedVectorCreator(probEstimator,
+                new NormalizedLogRatioConfirmationMeasure()), new CosinusConfirmationMeasure(), new ArithmeticMean());
+    }
+
+    private static Coherence createUMassCoherence(WindowSupportingAdapter adapter) {
+        return new DirectConfirmationBasedCoherence(new OnePreceding(), BooleanDocumentProbabilitySupplier.create(
+                adapter, "bd", true), new LogCondProbConfirmationMeasure(), new ArithmeticMean());
+    }
+}
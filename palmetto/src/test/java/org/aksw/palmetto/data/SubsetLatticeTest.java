@@ -0,0 +1,140 @@
+/**
+ * This file is part of Palmetto.
+ *
+ * Palmetto is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Palmetto is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Palmetto.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.aksw.palmetto.data;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SubsetLatticeTest {
+
+    /**
+     * A word set with more than 64 words, i.e., the bit masks of the large
+     * subsets need more than one block.
+     */
+    private static final int NUMBER_OF_WORDS = 70;
+
+    @Test
+    public void testSinglesAndPairs() {
+        SubsetLattice lattice = new SubsetLattice(NUMBER_OF_WORDS);
+        Assert.assertEquals(NUMBER_OF_WORDS + ((NUMBER_OF_WORDS * (NUMBER_OF_WORDS - 1)) / 2), lattice.size());
+        Assert.assertEquals(lattice.size(), lattice.getFirstLargeSlot());
+        int expectedSlot = NUMBER_OF_WORDS;
+        int words[];
+        for (int i = 0; i < NUMBER_OF_WORDS; ++i) {
+            Assert.assertEquals(i, lattice.getSingle(i));
+            Assert.assertEquals(1, lattice.getSubsetSize(i));
+            Assert.assertArrayEquals(new int[] { i }, lattice.getWords(i));
+            Assert.assertEquals(i, lattice.getPair(i, i));
+            for (int j = i + 1; j < NUMBER_OF_WORDS; ++j) {
+                Assert.assertEquals(expectedSlot, lattice.getPair(i, j));
+                Assert.assertEquals(expectedSlot, lattice.getPair(j, i));
+                Assert.assertEquals(expectedSlot, lattice.getUnion(i, j));
+                Assert.assertEquals(expectedSlot, lattice.getSlot(new int[] { j, i }));
+                Assert.assertEquals(2, lattice.getSubsetSize(expectedSlot));
+                words = lattice.getWords(expectedSlot);
+                Assert.assertArrayEquals(new int[] { i, j }, words);
+                Assert.assertTrue(lattice.isWordInSubset(expectedSlot, i));
+                Assert.assertTrue(lattice.isWordInSubset(expectedSlot, j));
+                for (int k = 0; k < NUMBER_OF_WORDS; ++k) {
+                    Assert.assertEquals((k == i) || (k == j), lattice.isWordInSubset(expectedSlot, k));
+                }
+                ++expectedSlot;
+            }
+        }
+    }
+
+    @Test
+    public void testLargeSubsets() {
+        SubsetLattice lattice = new SubsetLattice(NUMBER_OF_WORDS);
+        int pair = lattice.getPair(1, 65);
+        Assert.assertEquals(SubsetLattice.NOT_CONTAINED, lattice.getUnion(pair, lattice.getSingle(3)));
+        int triple = lattice.addUnion(pair, lattice.getSingle(3));
+        Assert.assertEquals(lattice.getFirstLargeSlot(), triple);
+        Assert.assertEquals(1, lattice.getNumberOfLargeSubsets());
+        Assert.assertEquals(triple, lattice.getUnion(pair, lattice.getSingle(3)));
+        Assert.assertEquals(triple, lattice.getSlot(new int[] { 65, 3, 1 }));
+        Assert.assertEquals(triple, lattice.addSubset(new int[] { 3, 1, 65 }));
+        Assert.assertEquals(1, lattice.getNumberOfLargeSubsets());
+        Assert.assertEquals(3, lattice.getSubsetSize(triple));
+        Assert.assertArrayEquals(new int[] { 1, 3, 65 }, lattice.getWords(triple));
+        Assert.assertTrue(lattice.isWordInSubset(triple, 65));
+        Assert.assertFalse(lattice.isWordInSubset(triple, 64));
+
+        int all = lattice.addCompleteSet();
+        Assert.assertEquals(NUMBER_OF_WORDS, lattice.getSubsetSize(all));
+        int allButOne = lattice.addCompleteSetWithout(66);
+        Assert.assertEquals(NUMBER_OF_WORDS - 1, lattice.getSubsetSize(allButOne));
+        Assert.assertFalse(lattice.isWordInSubset(allButOne, 66));
+        Assert.assertEquals(all, lattice.getUnion(allButOne, lattice.getSingle(66)));
+        Assert.assertEquals(all, lattice.getUnion(triple, all));
+        Assert.assertEquals(3, lattice.getNumberOfLargeSubsets());
+        Assert.assertEquals(lattice.getFirstLargeSlot() + 3, lattice.size());
+
+        SubsetLattice other = new SubsetLattice(NUMBER_OF_WORDS);
+        other.addSubset(new int[] { 1, 3, 65 });
+        other.addCompleteSet();
+        Assert.assertFalse(lattice.equals(other));
+        other.addCompleteSetWithout(66);
+        Assert.assertEquals(lattice, other);
+        Assert.assertEquals(lattice.hashCode(), other.hashCode());
+    }
+
+    /**
+     * Compares the counts added for random word masks with the counts that
+     * are expected by checking every slot separately.
+     */
+    @Test
+    public void testAddCounts() {
+        Random random = new Random(NUMBER_OF_WORDS);
+        SubsetLattice lattice = new SubsetLattice(NUMBER_OF_WORDS);
+        lattice.addSubset(new int[] { 0, 1, 2 });
+        lattice.addSubset(new int[] { 10, 63, 64 });
+        lattice.addCompleteSetWithout(5);
+        lattice.addCompleteSet();
+        long counts[] = new long[lattice.size()];
+        long expectedCounts[] = new long[lattice.size()];
+        long wordMask[];
+        boolean wordsInMask[] = new boolean[NUMBER_OF_WORDS];
+        boolean contained;
+        int count;
+        for (int r = 0; r < 200; ++r) {
+            wordMask = lattice.createWordMask();
+            // dense masks make sure that the large subsets are counted, too
+            for (int w = 0; w < NUMBER_OF_WORDS; ++w) {
+                wordsInMask[w] = random.nextInt(40) > 0;
+                if (wordsInMask[w]) {
+                    wordMask[w >>> 6] |= 1L << w;
+                }
+            }
+            count = 1 + random.nextInt(5);
+            lattice.addCounts(wordMask, count, counts);
+            for (int s = 0; s < expectedCounts.length; ++s) {
+                contained = true;
+                for (int w : lattice.getWords(s)) {
+                    contained &= wordsInMask[w];
+                }
+                if (contained) {
+                    expectedCounts[s] += count;
+                }
+            }
+        }
+        Assert.assertArrayEquals(expectedCounts, counts);
+        Assert.assertTrue(counts[lattice.size() - 1] > 0);
+    }
+}
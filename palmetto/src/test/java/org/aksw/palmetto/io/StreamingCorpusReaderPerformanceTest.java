@@ -0,0 +1,140 @@
+/**
+ * This file is part of Palmetto.
+ *
+ * Palmetto is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Palmetto is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Palmetto.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.aksw.palmetto.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.Random;
+
+import org.aksw.palmetto.corpus.lucene.RandomIndexes;
+import org.aksw.palmetto.corpus.lucene.SimpleAnalyzer;
+import org.aksw.palmetto.corpus.lucene.creation.IndexableDocument;
+import org.aksw.palmetto.io.StreamingCorpusReader.Format;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Compares the runtime of reading and tokenizing a raw corpus line by line
+ * with a {@link SimpleDocumentTextSupplier} with the runtime of the
+ * {@link StreamingCorpusReader}.
+ *
+ * @author Michael R&ouml;der (roeder@informatik.uni-leipzig.de)
+ *
+ */
+@SuppressWarnings("deprecation")
+public class StreamingCorpusReaderPerformanceTest {
+
+    private static final int NUMBER_OF_DOCUMENTS = 20000;
+    private static final int VOCABULARY_SIZE = 5000;
+    private static final int MIN_DOCUMENT_LENGTH = 50;
+    private static final int MAX_DOCUMENT_LENGTH = 500;
+    private static final int ROUNDS = 2;
+
+    @Test
+    public void test() throws Exception {
+        List<IndexableDocument> documents = RandomIndexes.createRandomDocuments(
+                new Random(13), NUMBER_OF_DOCUMENTS, VOCABULARY_SIZE, MIN_DOCUMENT_LENGTH, MAX_DOCUMENT_LENGTH);
+        long expectedTokens = 0;
+        StringBuilder builder = new StringBuilder();
+        for (IndexableDocument document : documents) {
+            builder.append(document.getText()).append('\n');
+            expectedTokens += document.getNumberOfTokens();
+        }
+        String corpus = builder.toString();
+        builder = null;
+        documents = null;
+        File plainFile = StreamingCorpusReaderTest.writeCorpus(corpus, ".txt");
+        File gzipFile = StreamingCorpusReaderTest.writeCorpus(corpus, ".gz");
+        corpus = null;
+        int numberOfWorkers = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+        long times[] = new long[4];
+        try {
+            for (int r = 0; r <= ROUNDS; ++r) {
+                long t0 = System.currentTimeMillis();
+                Assert.assertEquals(expectedTokens, readWithSupplier(plainFile));
+                long t1 = System.currentTimeMillis();
+                Assert.assertEquals(expectedTokens, readWithStreamingReader(plainFile, 1));
+                long t2 = System.currentTimeMillis();
+                Assert.assertEquals(expectedTokens, readWithStreamingReader(plainFile, numberOfWorkers));
+                long t3 = System.currentTimeMillis();
+                Assert.assertEquals(expectedTokens, readWithStreamingReader(gzipFile, numberOfWorkers));
+                long t4 = System.currentTimeMillis();
+                // the first round is used as warm up
+                if (r > 0) {
+                    times[0] += t1 - t0;
+                    times[1] += t2 - t1;
+                    times[2] += t3 - t2;
+                    times[3] += t4 - t3;
+                }
+            }
+        } finally {
+            plainFile.delete();
+            gzipFile.delete();
+        }
+        System.out.println("Reading and tokenizing " + NUMBER_OF_DOCUMENTS + " documents (avg. of " + ROUNDS
+                + " rounds, " + Runtime.getRuntime().availableProcessors() + " processors):");
+        System.out.println("  SimpleDocumentTextSupplier:                " + (times[0] / ROUNDS) + " ms");
+        System.out.println("  StreamingCorpusReader (1 worker):          " + (times[1] / ROUNDS) + " ms");
+        System.out.println("  StreamingCorpusReader (" + numberOfWorkers + " workers):         "
+                + (times[2] / ROUNDS) + " ms");
+        System.out.println("  StreamingCorpusReader (" + numberOfWorkers + " workers, gzip):   "
+                + (times[3] / ROUNDS) + " ms");
+    }
+
+    private long readWithSupplier(File file) throws IOException {
+        long tokens = 0;
+        Analyzer analyzer = new SimpleAnalyzer(true);
+        try {
+            SimpleDocumentTextSupplier supplier = SimpleDocumentTextSupplier.create(file);
+            String text = supplier.getNextDocumentText();
+            while (text != null) {
+                TokenStream stream = analyzer.tokenStream("text", new StringReader(text));
+                try {
+                    stream.reset();
+                    while (stream.incrementToken()) {
+                        ++tokens;
+                    }
+                    stream.end();
+                } finally {
+                    stream.close();
+                }
+                text = supplier.getNextDocumentText();
+            }
+        } finally {
+            analyzer.close();
+        }
+        return tokens;
+    }
+
+    private long readWithStreamingReader(File file, int numberOfWorkers) throws IOException {
+        long tokens = 0;
+        StreamingCorpusReader reader = StreamingCorpusReader.create(file, Format.ONE_DOCUMENT_PER_LINE,
+                numberOfWorkers, StreamingCorpusReader.DEFAULT_CHUNK_SIZE);
+        try {
+            while (reader.hasNext()) {
+                tokens += reader.next().getNumberOfTokens();
+            }
+        } finally {
+            reader.close();
+        }
+        return tokens;
+    }
+}
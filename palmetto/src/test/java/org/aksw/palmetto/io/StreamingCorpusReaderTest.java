@@ -0,0 +1,226 @@
+/**
+ * This file is part of Palmetto.
+ *
+ * Palmetto is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Palmetto is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Palmetto.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.aksw.palmetto.io;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import org.aksw.palmetto.Palmetto;
+import org.aksw.palmetto.corpus.lucene.RandomIndexes;
+import org.aksw.palmetto.corpus.lucene.WindowSupportingLuceneCorpusAdapter;
+import org.aksw.palmetto.corpus.lucene.creation.IndexableDocument;
+import org.aksw.palmetto.corpus.lucene.creation.PositionStoringLuceneIndexCreator;
+import org.aksw.palmetto.data.CountedSubsets;
+import org.aksw.palmetto.data.SegmentationDefinition;
+import org.aksw.palmetto.io.StreamingCorpusReader.Format;
+import org.aksw.palmetto.prob.window.BooleanSlidingWindowFrequencyDeterminer;
+import org.aksw.palmetto.subsets.OneOne;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class StreamingCorpusReaderTest {
+
+    private static final String LINE_CORPUS = "This is a test document.\r\n\nThis is   another test-document!\n"
+            + "The third, üñíçødé document\n...\nlast line without line break";
+    private static final String EXPECTED_LINE_DOCUMENTS[][] = { { "this", "is", "a", "test", "document" },
+            { "this", "is", "another", "test-document" }, { "the", "third", "üñíçødé", "document" },
+            { "last", "line", "without", "line", "break" } };
+    private static final String EMPTY_LINE_CORPUS = "\n\nThis is a\ntest document.\r\n\r\nThis is\n"
+            + "another\ntest-document!\n\n\n \nThe third document\n\n";
+    private static final String EXPECTED_EMPTY_LINE_DOCUMENTS[][] = { { "this", "is", "a", "test", "document" },
+            { "this", "is", "another", "test-document" }, { "the", "third", "document" } };
+    private static final int CHUNK_SIZES[] = { 3, 16, StreamingCorpusReader.DEFAULT_CHUNK_SIZE };
+    private static final int NUMBERS_OF_WORKERS[] = { 1, 3 };
+    private static final String SUFFIXES[] = { ".txt", ".gz", ".bz2" };
+
+    @Test
+    public void testFindLastBoundary() {
+        byte chunk[] = "a\nb\n\nc\r\n\r\nd".getBytes();
+        Assert.assertEquals(10, StreamingCorpusReader.findLastBoundary(chunk, chunk.length, Format.ONE_DOCUMENT_PER_LINE));
+        Assert.assertEquals(10, StreamingCorpusReader.findLastBoundary(chunk, chunk.length, Format.EMPTY_LINE_SEPARATED));
+        Assert.assertEquals(8, StreamingCorpusReader.findLastBoundary(chunk, 9, Format.ONE_DOCUMENT_PER_LINE));
+        Assert.assertEquals(5, StreamingCorpusReader.findLastBoundary(chunk, 9, Format.EMPTY_LINE_SEPARATED));
+        Assert.assertEquals(4, StreamingCorpusReader.findLastBoundary(chunk, 4, Format.ONE_DOCUMENT_PER_LINE));
+        Assert.assertEquals(-1, StreamingCorpusReader.findLastBoundary(chunk, 4, Format.EMPTY_LINE_SEPARATED));
+        Assert.assertEquals(-1, StreamingCorpusReader.findLastBoundary(chunk, 1, Format.ONE_DOCUMENT_PER_LINE));
+    }
+
+    @Test
+    public void testOneDocumentPerLine() throws IOException {
+        runTest(LINE_CORPUS, Format.ONE_DOCUMENT_PER_LINE, EXPECTED_LINE_DOCUMENTS);
+    }
+
+    @Test
+    public void testEmptyLineSeparated() throws IOException {
+        runTest(EMPTY_LINE_CORPUS, Format.EMPTY_LINE_SEPARATED, EXPECTED_EMPTY_LINE_DOCUMENTS);
+    }
+
+    @Test
+    public void testEmptyFile() throws IOException {
+        runTest("", Format.ONE_DOCUMENT_PER_LINE, new String[0][]);
+        runTest("\n\n", Format.EMPTY_LINE_SEPARATED, new String[0][]);
+    }
+
+    @Test
+    public void testClosingBeforeEnd() throws IOException {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 10000; ++i) {
+            builder.append("document number ").append(i).append('\n');
+        }
+        File file = writeCorpus(builder.toString(), ".txt");
+        try {
+            StreamingCorpusReader reader = StreamingCorpusReader.create(file, Format.ONE_DOCUMENT_PER_LINE, 2, 64);
+            Assert.assertTrue(reader.hasNext());
+            reader.next();
+            reader.close();
+            Assert.assertFalse(reader.hasNext());
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testIndexCreation() throws Exception {
+        List<IndexableDocument> documents = RandomIndexes.createRandomDocuments(new Random(5), 500, 100, 1, 50);
+        StringBuilder builder = new StringBuilder();
+        for (IndexableDocument document : documents) {
+            builder.append(document.getText()).append('\n');
+        }
+        File file = writeCorpus(builder.toString(), ".gz");
+        File expectedIndex = createTempDir();
+        File streamedIndex = createTempDir();
+        StreamingCorpusReader reader = null;
+        WindowSupportingLuceneCorpusAdapter expectedAdapter = null, streamedAdapter = null;
+        try {
+            PositionStoringLuceneIndexCreator creator = new PositionStoringLuceneIndexCreator(
+                    Palmetto.DEFAULT_TEXT_INDEX_FIELD_NAME, Palmetto.DEFAULT_DOCUMENT_LENGTH_INDEX_FIELD_NAME);
+            Assert.assertTrue(creator.createIndex(expectedIndex, documents.iterator()));
+            reader = StreamingCorpusReader.create(file, Format.ONE_DOCUMENT_PER_LINE, 3, 1024);
+            Assert.assertTrue(creator.createIndex(streamedIndex, reader));
+
+            expectedAdapter = WindowSupportingLuceneCorpusAdapter.create(expectedIndex.getAbsolutePath(),
+                    Palmetto.DEFAULT_TEXT_INDEX_FIELD_NAME, Palmetto.DEFAULT_DOCUMENT_LENGTH_INDEX_FIELD_NAME);
+            streamedAdapter = WindowSupportingLuceneCorpusAdapter.create(streamedIndex.getAbsolutePath(),
+                    Palmetto.DEFAULT_TEXT_INDEX_FIELD_NAME, Palmetto.DEFAULT_DOCUMENT_LENGTH_INDEX_FIELD_NAME);
+            Assert.assertArrayEquals(expectedAdapter.getDocumentSizeHistogram(),
+                    streamedAdapter.getDocumentSizeHistogram());
+            String wordsets[][] = RandomIndexes.createRandomWordsets(new Random(7), 10, 4, 100);
+            SegmentationDefinition definitions[] = new SegmentationDefinition[wordsets.length];
+            OneOne segmentation = new OneOne();
+            for (int i = 0; i < wordsets.length; ++i) {
+                definitions[i] = segmentation.getSubsetDefinition(wordsets[i].length);
+            }
+            CountedSubsets expectedCounts[] = new BooleanSlidingWindowFrequencyDeterminer(expectedAdapter, 10)
+                    .determineCounts(wordsets, definitions);
+            CountedSubsets streamedCounts[] = new BooleanSlidingWindowFrequencyDeterminer(streamedAdapter, 10)
+                    .determineCounts(wordsets, definitions);
+            for (int i = 0; i < wordsets.length; ++i) {
+                Assert.assertArrayEquals(expectedCounts[i].counts, streamedCounts[i].counts);
+            }
+        } finally {
+            IOUtils.closeQuietly(reader);
+            if (expectedAdapter != null) {
+                expectedAdapter.close();
+            }
+            if (streamedAdapter != null) {
+                streamedAdapter.close();
+            }
+            file.delete();
+            FileUtils.deleteDirectory(expectedIndex);
+            FileUtils.deleteDirectory(streamedIndex);
+            deleteSidecarFiles(expectedIndex);
+            deleteSidecarFiles(streamedIndex);
+        }
+    }
+
+    private void runTest(String corpus, Format format, String expectedDocuments[][]) throws IOException {
+        List<String> expected = new ArrayList<String>();
+        for (int i = 0; i < expectedDocuments.length; ++i) {
+            expected.add(Arrays.toString(expectedDocuments[i]));
+        }
+        Collections.sort(expected);
+        for (int s = 0; s < SUFFIXES.length; ++s) {
+            File file = writeCorpus(corpus, SUFFIXES[s]);
+            try {
+                for (int c = 0; c < CHUNK_SIZES.length; ++c) {
+                    for (int w = 0; w < NUMBERS_OF_WORKERS.length; ++w) {
+                        List<String> read = new ArrayList<String>();
+                        StreamingCorpusReader reader = StreamingCorpusReader.create(file, format,
+                                NUMBERS_OF_WORKERS[w], CHUNK_SIZES[c]);
+                        try {
+                            IndexableDocument document;
+                            while (reader.hasNext()) {
+                                document = reader.next();
+                                Assert.assertEquals(document.getTokens().length, document.getNumberOfTokens());
+                                read.add(Arrays.toString(document.getTokens()));
+                            }
+                        } finally {
+                            reader.close();
+                        }
+                        // the order is only preserved by a single worker
+                        Collections.sort(read);
+                        Assert.assertEquals("suffix=" + SUFFIXES[s] + " chunkSize=" + CHUNK_SIZES[c]
+                                + " workers=" + NUMBERS_OF_WORKERS[w], expected, read);
+                    }
+                }
+            } finally {
+                file.delete();
+            }
+        }
+    }
+
+    public static File writeCorpus(String corpus, String suffix) throws IOException {
+        File file = File.createTempFile("corpus", suffix);
+        OutputStream out = new FileOutputStream(file);
+        try {
+            if (suffix.equals(".gz")) {
+                out = new GZIPOutputStream(out);
+            } else if (suffix.equals(".bz2")) {
+                out = new BZip2CompressorOutputStream(out);
+            }
+            out.write(corpus.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    private static File createTempDir() {
+        File dir = new File(FileUtils.getTempDirectoryPath() + File.separator + "temp_index"
+                + Long.toString(System.nanoTime()));
+        Assert.assertTrue(dir.mkdir());
+        return dir;
+    }
+
+    private static void deleteSidecarFiles(File indexDir) {
+        new File(indexDir.getAbsolutePath() + WindowSupportingLuceneCorpusAdapter.STATISTICS_FILE_SUFFIX).delete();
+        new File(indexDir.getAbsolutePath() + WindowSupportingLuceneCorpusAdapter.TERM_WINDOW_COUNTS_FILE_SUFFIX)
+                .delete();
+        new File(indexDir.getAbsolutePath() + WindowSupportingLuceneCorpusAdapter.DOC_LENGTH_FILE_SUFFIX).delete();
+    }
+}
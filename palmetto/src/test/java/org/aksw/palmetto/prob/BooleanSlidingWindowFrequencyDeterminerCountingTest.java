@@ -45,37 +45,37 @@ public class BooleanSlidingWindowFrequencyDeterminerCountingTest implements Wind
                          */
                         // We ask for A and B with a window size of 3
                         { 7, new int[][] { { 0, 4 }, { 1, 3 }, {} }, 3,
-                                new int[] { 0, 4, 4, 3, 0, 0, 0, 0 } },
+                                new long[] { 0, 4, 4, 3, 0, 0, 0, 0 } },
                         // We ask for A and C with a window size of 3
                         { 7, new int[][] { { 0, 4 }, {}, { 2, 5, 6 } }, 3,
-                                new int[] { 0, 4, 0, 0, 5, 4, 0, 0 } },
+                                new long[] { 0, 4, 0, 0, 5, 4, 0, 0 } },
                         // We ask for B and C with a window size of 3
                         { 7, new int[][] { {}, { 1, 3 }, { 2, 5, 6 } }, 3,
-                                new int[] { 0, 0, 4, 0, 5, 0, 4, 0 } },
+                                new long[] { 0, 0, 4, 0, 5, 0, 4, 0 } },
                         // We ask for A, B and C with a window size of 3
                         { 7, new int[][] { { 0, 4 }, { 1, 3 }, { 2, 5, 6 } }, 3,
-                                new int[] { 0, 4, 4, 3, 5, 4, 4, 3 } },
+                                new long[] { 0, 4, 4, 3, 5, 4, 4, 3 } },
                         // We ask for A and B with a window size of 4
                         { 7, new int[][] { { 0, 4 }, { 1, 3 }, {} }, 4,
-                                new int[] { 0, 4, 4, 4, 0, 0, 0, 0 } },
+                                new long[] { 0, 4, 4, 4, 0, 0, 0, 0 } },
                         // We ask for A and C with a window size of 4
                         { 7, new int[][] { { 0, 4 }, {}, { 2, 5, 6 } }, 4,
-                                new int[] { 0, 4, 0, 0, 4, 4, 0, 0 } },
+                                new long[] { 0, 4, 0, 0, 4, 4, 0, 0 } },
                         // We ask for B and C with a window size of 4
                         { 7, new int[][] { {}, { 1, 3 }, { 2, 5, 6 } }, 4,
-                                new int[] { 0, 0, 4, 0, 4, 0, 4, 0 } },
+                                new long[] { 0, 0, 4, 0, 4, 0, 4, 0 } },
                         // We ask for A, B and C with a window size of 4
                         { 7, new int[][] { { 0, 4 }, { 1, 3 }, { 2, 5, 6 } }, 4,
-                                new int[] { 0, 4, 4, 4, 4, 4, 4, 4 } },
+                                new long[] { 0, 4, 4, 4, 4, 4, 4, 4 } },
                         // We have a new very short document A B C
                         { 3, new int[][] { { 0 }, { 1 }, { 2 } }, 4,
-                                new int[] { 0, 1, 1, 1, 1, 1, 1, 1 } },
+                                new long[] { 0, 1, 1, 1, 1, 1, 1, 1 } },
                         // A more realistic example
                         {
                                 328,
                                 new int[][] { null, null, null, null, null, { 166, 256 }, null, null, { 259 }, null },
                                 10,
-                                new int[] { 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+                                new long[] { 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
                                         0, 0, 0, 0, 0, 0, 0, 20, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
                                         0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
                                         0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
@@ -123,10 +123,10 @@ public class BooleanSlidingWindowFrequencyDeterminerCountingTest implements Wind
     private int docLength;
     private int positions[][];
     private int windowSize;
-    private int expectedCounts[];
+    private long expectedCounts[];
 
     public BooleanSlidingWindowFrequencyDeterminerCountingTest(int docLength, int[][] positions, int windowSize,
-            int expectedCounts[]) {
+            long expectedCounts[]) {
         this.docLength = docLength;
         this.histogram = new int[][] { { docLength, 1 } };
         this.positions = positions;
@@ -145,7 +145,7 @@ public class BooleanSlidingWindowFrequencyDeterminerCountingTest implements Wind
                 lists[i].add(positions[i]);
             }
         }
-        int counts[] = determiner.determineCounts(
+        long counts[] = determiner.determineCounts(
                 new String[1][lists.length]/* new String[][] { { "A", "B", "C" } } */,
                 new SegmentationDefinition[] { new SegmentationDefinition(
                         new int[0], new int[0][0], null) })[0].counts;
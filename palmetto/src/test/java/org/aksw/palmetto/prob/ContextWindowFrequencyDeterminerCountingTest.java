@@ -45,31 +45,31 @@ public class ContextWindowFrequencyDeterminerCountingTest implements WindowSuppo
                          */
                         // We ask for A and B with a window size of +-1
                         { 7, new int[][] { { 0, 4 }, { 1, 3 }, {} }, 1,
-                                new int[] { 0, 2, 2, 2, 0, 0, 0, 0 } },
+                                new long[] { 0, 2, 2, 2, 0, 0, 0, 0 } },
                         // We ask for A and C with a window size of +-1
                         { 7, new int[][] { { 0, 4 }, {}, { 2, 5, 6 } }, 1,
-                                new int[] { 0, 2, 0, 0, 3, 1, 0, 0 } },
+                                new long[] { 0, 2, 0, 0, 3, 1, 0, 0 } },
                         // We ask for B and C with a window size of +-1
                         { 7, new int[][] { {}, { 1, 3 }, { 2, 5, 6 } }, 1,
-                                new int[] { 0, 0, 2, 0, 3, 0, 2, 0 } },
+                                new long[] { 0, 0, 2, 0, 3, 0, 2, 0 } },
                         // We ask for A, B and C with a window size of +-1
                         { 7, new int[][] { { 0, 4 }, { 1, 3 }, { 2, 5, 6 } }, 1,
-                                new int[] { 0, 2, 2, 2, 3, 1, 2, 0 } },
+                                new long[] { 0, 2, 2, 2, 3, 1, 2, 0 } },
                         // We ask for A and B with a window size of +-2
                         { 7, new int[][] { { 0, 4 }, { 1, 3 }, {} }, 2,
-                                new int[] { 0, 2, 2, 2, 0, 0, 0, 0 } },
+                                new long[] { 0, 2, 2, 2, 0, 0, 0, 0 } },
                         // We ask for A and C with a window size of +-2
                         { 7, new int[][] { { 0, 4 }, {}, { 2, 5, 6 } }, 2,
-                                new int[] { 0, 2, 0, 0, 3, 4, 0, 0 } },
+                                new long[] { 0, 2, 0, 0, 3, 4, 0, 0 } },
                         // We ask for B and C with a window size of +-2
                         { 7, new int[][] { {}, { 1, 3 }, { 2, 5, 6 } }, 2,
-                                new int[] { 0, 0, 2, 0, 3, 0, 3, 0 } },
+                                new long[] { 0, 0, 2, 0, 3, 0, 3, 0 } },
                         // We ask for A, B and C with a window size of +-2
                         { 7, new int[][] { { 0, 4 }, { 1, 3 }, { 2, 5, 6 } }, 2,
-                                new int[] { 0, 2, 2, 2, 3, 4, 3, 0 } },
+                                new long[] { 0, 2, 2, 2, 3, 4, 3, 0 } },
                         // We have a new very short document A B C
                         { 3, new int[][] { { 0 }, { 1 }, { 2 } }, 2,
-                                new int[] { 0, 1, 1, 1, 1, 1, 1, 0 } }
+                                new long[] { 0, 1, 1, 1, 1, 1, 1, 0 } }
 
                 });
     }
@@ -78,10 +78,10 @@ public class ContextWindowFrequencyDeterminerCountingTest implements WindowSuppo
     private int docLength;
     private int positions[][];
     private int windowSize;
-    private int expectedCounts[];
+    private long expectedCounts[];
 
     public ContextWindowFrequencyDeterminerCountingTest(int docLength, int[][] positions, int windowSize,
-            int expectedCounts[]) {
+            long expectedCounts[]) {
         this.docLength = docLength;
         this.histogram = new int[][] { { docLength, 1 } };
         this.positions = positions;
@@ -100,7 +100,7 @@ public class ContextWindowFrequencyDeterminerCountingTest implements WindowSuppo
                 lists[i].add(positions[i]);
             }
         }
-        int counts[] = determiner.determineCounts(
+        long counts[] = determiner.determineCounts(
                 new String[1][lists.length]/* new String[][] { { "A", "B", "C" } } */,
                 new SegmentationDefinition[] { new SegmentationDefinition(
                         new int[0], new int[0][0], null) })[0].counts;
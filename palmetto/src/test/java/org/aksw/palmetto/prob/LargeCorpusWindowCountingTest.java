@@ -0,0 +1,106 @@
+/**
+ * This file is part of Palmetto.
+ *
+ * Palmetto is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Palmetto is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Palmetto.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.aksw.palmetto.prob;
+
+import org.aksw.palmetto.corpus.WindowSupportingAdapter;
+import org.aksw.palmetto.data.SegmentationDefinition;
+import org.aksw.palmetto.data.SubsetProbabilities;
+import org.aksw.palmetto.prob.window.BooleanSlidingWindowFrequencyDeterminer;
+import org.aksw.palmetto.prob.window.ContextWindowFrequencyDeterminer;
+import org.aksw.palmetto.prob.window.WindowBasedProbabilityEstimator;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.IntIntOpenHashMap;
+import com.carrotsearch.hppc.IntObjectOpenHashMap;
+
+/**
+ * Checks that the window counts of a synthetic corpus containing more than
+ * {@link Integer#MAX_VALUE} windows do not overflow. The corpus comprises a
+ * few very long documents in which the words A and B occur every half
+ * window, i.e., every window of a document contains both words.
+ * 
+ * @author Michael R&ouml;der (roeder@informatik.uni-leipzig.de)
+ * 
+ */
+public class LargeCorpusWindowCountingTest implements WindowSupportingAdapter {
+
+    private static final int NUMBER_OF_DOCUMENTS = 3;
+    private static final int DOCUMENT_LENGTH = 1000000000;
+    private static final int WINDOW_SIZE = 10000;
+    private static final int WORD_DISTANCE = WINDOW_SIZE / 2;
+
+    private static final long NUMBER_OF_WINDOWS = NUMBER_OF_DOCUMENTS * (DOCUMENT_LENGTH - (WINDOW_SIZE - 1L));
+
+    private static final SegmentationDefinition DEFINITION = new SegmentationDefinition(new int[0], new int[0][0],
+            null);
+
+    @Test
+    public void testBooleanSlidingWindow() {
+        BooleanSlidingWindowFrequencyDeterminer determiner = new BooleanSlidingWindowFrequencyDeterminer(this,
+                WINDOW_SIZE);
+        Assert.assertTrue(NUMBER_OF_WINDOWS > Integer.MAX_VALUE);
+        Assert.assertEquals(NUMBER_OF_WINDOWS, determiner.getCooccurrenceCounts()[0]);
+        Assert.assertEquals(NUMBER_OF_WINDOWS, determiner.getCooccurrenceCounts()[1]);
+
+        long counts[] = determiner.determineCounts(new String[][] { { "A", "B" } },
+                new SegmentationDefinition[] { DEFINITION })[0].counts;
+        Assert.assertArrayEquals(new long[] { 0, NUMBER_OF_WINDOWS, NUMBER_OF_WINDOWS, NUMBER_OF_WINDOWS }, counts);
+
+        SubsetProbabilities probabilities = new WindowBasedProbabilityEstimator(determiner).getProbabilities(
+                new String[][] { { "A", "B" } }, new SegmentationDefinition[] { DEFINITION })[0];
+        for (int i = 1; i < probabilities.probabilities.length; ++i) {
+            Assert.assertEquals(1.0, probabilities.probabilities[i], 0);
+        }
+    }
+
+    @Test
+    public void testContextWindow() {
+        ContextWindowFrequencyDeterminer determiner = new ContextWindowFrequencyDeterminer(this, WINDOW_SIZE);
+        Assert.assertEquals(NUMBER_OF_WINDOWS, determiner.getCooccurrenceCounts()[0]);
+        Assert.assertEquals(NUMBER_OF_WINDOWS, determiner.getCooccurrenceCounts()[1]);
+    }
+
+    @Override
+    public int[][] getDocumentSizeHistogram() {
+        return new int[][] { { DOCUMENT_LENGTH, NUMBER_OF_DOCUMENTS } };
+    }
+
+    @Override
+    public IntObjectOpenHashMap<IntArrayList[]> requestWordPositionsInDocuments(String[] words,
+            IntIntOpenHashMap docLengths) {
+        IntObjectOpenHashMap<IntArrayList[]> positionsInDocuments = new IntObjectOpenHashMap<IntArrayList[]>();
+        IntArrayList positions[];
+        for (int d = 0; d < NUMBER_OF_DOCUMENTS; ++d) {
+            positions = new IntArrayList[words.length];
+            for (int w = 0; w < words.length; ++w) {
+                positions[w] = new IntArrayList(DOCUMENT_LENGTH / WORD_DISTANCE);
+                for (int p = w; p < DOCUMENT_LENGTH; p += WORD_DISTANCE) {
+                    positions[w].add(p);
+                }
+            }
+            positionsInDocuments.put(d, positions);
+            docLengths.put(d, DOCUMENT_LENGTH);
+        }
+        return positionsInDocuments;
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -44,7 +44,7 @@ public class ListBasedBooleanDocumentFrequencyDeterminerTest extends AbstractBoo
                          * word2 0 0 1
                          */
 
-                        { new int[][] { { 0, 1, 2 }, { 1, 2 }, { 2 } }, new int[] { 0, 3, 2, 2, 1, 1, 1, 1 } },
+                        { new int[][] { { 0, 1, 2 }, { 1, 2 }, { 2 } }, new long[] { 0, 3, 2, 2, 1, 1, 1, 1 } },
 
                         /*
                          * word0 1 1 0 0
@@ -54,7 +54,7 @@ public class ListBasedBooleanDocumentFrequencyDeterminerTest extends AbstractBoo
                          * word2 0 0 1 1
                          */
 
-                        { new int[][] { { 0, 1 }, { 1, 2, 3 }, { 2, 3 } }, new int[] { 0, 2, 3, 1, 2, 0, 2, 0 } },
+                        { new int[][] { { 0, 1 }, { 1, 2, 3 }, { 2, 3 } }, new long[] { 0, 2, 3, 1, 2, 0, 2, 0 } },
 
                         /*
                          * word0 1 1 0 0
@@ -67,13 +67,13 @@ public class ListBasedBooleanDocumentFrequencyDeterminerTest extends AbstractBoo
                          */
 
                         { new int[][] { { 0, 1 }, { 1, 2 }, { 2, 3 }, { 0, 1, 3 } },
-                                new int[] { 0, 2, 2, 1, 2, 0, 1, 0, 3, 2, 1, 1, 1, 0, 0, 0 } } });
+                                new long[] { 0, 2, 2, 1, 2, 0, 1, 0, 3, 2, 1, 1, 1, 0, 0, 0 } } });
     }
 
     private int wordDocuments[][];
-    private int expectedCounts[];
+    private long expectedCounts[];
 
-    public ListBasedBooleanDocumentFrequencyDeterminerTest(int[][] wordDocuments, int[] expectedCounts) {
+    public ListBasedBooleanDocumentFrequencyDeterminerTest(int[][] wordDocuments, long[] expectedCounts) {
         super(wordDocuments, 0);
         this.wordDocuments = wordDocuments;
         this.expectedCounts = expectedCounts;
@@ -90,7 +90,7 @@ public class ListBasedBooleanDocumentFrequencyDeterminerTest extends AbstractBoo
         CountedSubsets countedSubsets[] = freqDeterminer.determineCounts(new String[][] { words },
                 new SegmentationDefinition[] { (new AnyAny()).getSubsetDefinition(words.length) });
 
-        int counts[] = countedSubsets[0].counts;
+        long counts[] = countedSubsets[0].counts;
         Assert.assertArrayEquals(expectedCounts, counts);
     }
 }
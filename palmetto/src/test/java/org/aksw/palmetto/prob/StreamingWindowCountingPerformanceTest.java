@@ -0,0 +1,184 @@
+/**
+ * This file is part of Palmetto.
+ *
+ * Palmetto is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Palmetto is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Palmetto.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.aksw.palmetto.prob;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import org.aksw.palmetto.Palmetto;
+import org.aksw.palmetto.corpus.DocumentPositionsConsumer;
+import org.aksw.palmetto.corpus.WindowSupportingAdapter;
+import org.aksw.palmetto.corpus.lucene.PositionStreamingTest;
+import org.aksw.palmetto.corpus.lucene.RandomIndexes;
+import org.aksw.palmetto.corpus.lucene.WindowSupportingLuceneCorpusAdapter;
+import org.aksw.palmetto.data.CountedSubsets;
+import org.aksw.palmetto.data.SegmentationDefinition;
+import org.aksw.palmetto.prob.window.BooleanSlidingWindowFrequencyDeterminer;
+import org.aksw.palmetto.prob.window.UnionVocabularyWordPositions;
+import org.aksw.palmetto.prob.window.WindowBasedFrequencyDeterminer;
+import org.aksw.palmetto.subsets.OneSet;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.carrotsearch.hppc.IntArrayList;
+
+/**
+ * Compares the counting of sliding windows based on positions that are
+ * streamed document by document with the counting based on the positions of
+ * all documents that are requested at once. The test prints the runtime, the
+ * allocated bytes and the maximum number of positions that have to be held in
+ * memory at the same time. Additionally, the two-phase counting that streams
+ * only documents containing at least two words of a word set (and takes the
+ * counts of single words from the counts determined while indexing) is
+ * measured.
+ *
+ * @author Michael R&ouml;der (roeder@informatik.uni-leipzig.de)
+ *
+ */
+public class StreamingWindowCountingPerformanceTest {
+
+    private static final int NUMBER_OF_DOCUMENTS = 2000;
+    private static final int VOCABULARY_SIZE = 1000;
+    private static final int MIN_DOCUMENT_LENGTH = 100;
+    private static final int MAX_DOCUMENT_LENGTH = 1000;
+    private static final int NUMBER_OF_WORDSETS = 20;
+    private static final int WORDS_PER_WORDSET = 10;
+    private static final int WINDOW_SIZE = 110;
+    private static final int NUMBER_OF_ROUNDS = 5;
+
+    @Test
+    public void test() throws Exception {
+        Random random = new Random(17);
+        File indexDir = RandomIndexes.createRandomIndex(random,
+                NUMBER_OF_DOCUMENTS, VOCABULARY_SIZE, MIN_DOCUMENT_LENGTH, MAX_DOCUMENT_LENGTH, 1000);
+        String indexPath = indexDir.getAbsolutePath();
+        // word sets containing frequent words
+        String frequentWordsets[][] = RandomIndexes.createRandomWordsets(
+                random, NUMBER_OF_WORDSETS, WORDS_PER_WORDSET, VOCABULARY_SIZE / 10);
+        // word sets containing rare words, i.e., most documents contain only one of the words
+        String rareWordsets[][] = new String[NUMBER_OF_WORDSETS][WORDS_PER_WORDSET];
+        for (int i = 0; i < rareWordsets.length; ++i) {
+            for (int j = 0; j < rareWordsets[i].length; ++j) {
+                rareWordsets[i][j] = "w" + ((VOCABULARY_SIZE / 2) + random.nextInt(VOCABULARY_SIZE / 2));
+            }
+        }
+        SegmentationDefinition definitions[] = new SegmentationDefinition[NUMBER_OF_WORDSETS];
+        for (int i = 0; i < definitions.length; ++i) {
+            definitions[i] = (new OneSet()).getSubsetDefinition(WORDS_PER_WORDSET);
+        }
+        WindowSupportingLuceneCorpusAdapter adapter = WindowSupportingLuceneCorpusAdapter.create(indexPath,
+                Palmetto.DEFAULT_TEXT_INDEX_FIELD_NAME, Palmetto.DEFAULT_DOCUMENT_LENGTH_INDEX_FIELD_NAME);
+        WindowSupportingAdapter materializingAdapter = new PositionStreamingTest.MaterializingAdapter(adapter);
+        try {
+            Assert.assertNotNull(adapter.getTermWindowCounts());
+            WindowBasedFrequencyDeterminer materializing = new BooleanSlidingWindowFrequencyDeterminer(
+                    materializingAdapter, WINDOW_SIZE);
+            BooleanSlidingWindowFrequencyDeterminer streaming = new BooleanSlidingWindowFrequencyDeterminer(adapter,
+                    WINDOW_SIZE);
+            streaming.setUseTermWindowCounts(false);
+            // only documents with at least two words are streamed
+            WindowBasedFrequencyDeterminer twoPhase = new BooleanSlidingWindowFrequencyDeterminer(adapter,
+                    WINDOW_SIZE);
+            String names[] = new String[] { "frequent", "rare" };
+            String wordsets[][];
+            for (int w = 0; w < names.length; ++w) {
+                wordsets = (w == 0) ? frequentWordsets : rareWordsets;
+                CountedSubsets expected[] = materializing.determineCounts(wordsets, definitions);
+                CountedSubsets counts[] = streaming.determineCounts(wordsets, definitions);
+                CountedSubsets twoPhaseCounts[] = twoPhase.determineCounts(wordsets, definitions);
+                for (int i = 0; i < expected.length; ++i) {
+                    Assert.assertArrayEquals(expected[i].counts, counts[i].counts);
+                    Assert.assertArrayEquals(expected[i].counts, twoPhaseCounts[i].counts);
+                }
+
+                long results[][] = measure(new WindowBasedFrequencyDeterminer[] { materializing, streaming,
+                        twoPhase }, wordsets, definitions);
+                long heldPositions[] = countHeldPositions(adapter,
+                        UnionVocabularyWordPositions.create(wordsets).vocabulary);
+                System.out.println("Streaming window counting performance test (" + names[w] + " words, "
+                        + NUMBER_OF_ROUNDS + " rounds) materialized: " + toString(results[0]) + ", "
+                        + heldPositions[0] + " positions held\tstreamed: " + toString(results[1]) + ", "
+                        + heldPositions[1] + " positions held\ttwo-phase: " + toString(results[2]));
+            }
+        } finally {
+            adapter.close();
+            RandomIndexes.deleteIndex(indexDir);
+        }
+    }
+
+    private static String toString(long result[]) {
+        return result[0] + " ms, " + (result[1] < 0 ? "n/a" : Long.toString(result[1] >> 20)) + " MB allocated";
+    }
+
+    /**
+     * Returns the runtime in ms and the bytes allocated by the current thread
+     * (or -1 if the JVM can not measure them) for every given determiner. The
+     * rounds of the single determiners are interleaved to reduce the influence
+     * of the JIT compiler on the comparison.
+     */
+    protected long[][] measure(WindowBasedFrequencyDeterminer determiners[], String wordsets[][],
+            SegmentationDefinition definitions[]) {
+        java.lang.management.ThreadMXBean mxBean = ManagementFactory.getThreadMXBean();
+        com.sun.management.ThreadMXBean sunMxBean = null;
+        if ((mxBean instanceof com.sun.management.ThreadMXBean)
+                && ((com.sun.management.ThreadMXBean) mxBean).isThreadAllocatedMemorySupported()) {
+            sunMxBean = (com.sun.management.ThreadMXBean) mxBean;
+        }
+        long threadId = Thread.currentThread().getId();
+        long results[][] = new long[determiners.length][2];
+        long bytes, time;
+        for (int r = 0; r < NUMBER_OF_ROUNDS; ++r) {
+            for (int d = 0; d < determiners.length; ++d) {
+                bytes = (sunMxBean != null) ? sunMxBean.getThreadAllocatedBytes(threadId) : 0;
+                time = System.currentTimeMillis();
+                determiners[d].determineCounts(wordsets, definitions);
+                results[d][0] += System.currentTimeMillis() - time;
+                if (sunMxBean != null) {
+                    results[d][1] += sunMxBean.getThreadAllocatedBytes(threadId) - bytes;
+                } else {
+                    results[d][1] = -1;
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Returns the number of positions of all documents, i.e., the positions
+     * that are held if they are requested at once, and the maximum number of
+     * positions inside a single document, i.e., the positions that are held
+     * while streaming.
+     */
+    protected long[] countHeldPositions(WindowSupportingLuceneCorpusAdapter adapter, String words[]) {
+        final long heldPositions[] = new long[2];
+        adapter.streamWordPositionsInDocuments(words, new DocumentPositionsConsumer() {
+            @Override
+            public void consumeDocument(int docId, IntArrayList[] positions, int docLength) {
+                long docPositions = 0;
+                for (int i = 0; i < positions.length; ++i) {
+                    if (positions[i] != null) {
+                        docPositions += positions[i].elementsCount;
+                    }
+                }
+                heldPositions[0] += docPositions;
+                heldPositions[1] = Math.max(heldPositions[1], docPositions);
+            }
+        });
+        return heldPositions;
+    }
+}
@@ -0,0 +1,116 @@
+/**
+ * This file is part of Palmetto.
+ *
+ * Palmetto is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Palmetto is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Palmetto.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.aksw.palmetto.prob;
+
+import java.io.File;
+import java.util.Random;
+
+import org.aksw.palmetto.Palmetto;
+import org.aksw.palmetto.corpus.WindowSupportingAdapter;
+import org.aksw.palmetto.corpus.lucene.RandomIndexes;
+import org.aksw.palmetto.corpus.lucene.WindowSupportingLuceneCorpusAdapter;
+import org.aksw.palmetto.corpus.lucene.creation.LuceneIndexHistogramCreator;
+import org.aksw.palmetto.data.CountedSubsets;
+import org.aksw.palmetto.data.SegmentationDefinition;
+import org.aksw.palmetto.data.SubsetLattice;
+import org.aksw.palmetto.prob.window.BooleanSlidingWindowFrequencyDeterminer;
+import org.aksw.palmetto.prob.window.ContextWindowFrequencyDeterminer;
+import org.aksw.palmetto.prob.window.WindowBasedFrequencyDeterminer;
+import org.aksw.palmetto.subsets.LatticeSupportingSegmentator;
+import org.aksw.palmetto.subsets.OneAll;
+import org.aksw.palmetto.subsets.OneOne;
+import org.aksw.palmetto.subsets.OneSet;
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Compares the window counts of word sets that are defined by a
+ * {@link SubsetLattice} with the dense counts of the same word sets.
+ *
+ * @author Michael R&ouml;der (roeder@informatik.uni-leipzig.de)
+ *
+ */
+public class SubsetLatticeWindowCountingTest {
+
+    private static final int NUMBER_OF_WORDSETS = 10;
+    private static final int WORDS_PER_WORDSET = 6;
+    private static final int VOCABULARY_SIZE = 30;
+    private static final int WINDOW_SIZE = 10;
+
+    @Test
+    public void test() throws Exception {
+        Random random = new Random(17);
+        File indexDir = RandomIndexes.createRandomIndex(random, 1000, 200, 5, VOCABULARY_SIZE);
+        String indexPath = indexDir.getAbsolutePath();
+        LuceneIndexHistogramCreator hCreator = new LuceneIndexHistogramCreator(
+                Palmetto.DEFAULT_DOCUMENT_LENGTH_INDEX_FIELD_NAME);
+        hCreator.createLuceneIndexHistogram(indexPath);
+
+        String wordsets[][] = RandomIndexes.createRandomWordsets(random,
+                NUMBER_OF_WORDSETS, WORDS_PER_WORDSET, VOCABULARY_SIZE);
+        wordsets[0][0] = "unknown";
+        LatticeSupportingSegmentator segmentators[] = new LatticeSupportingSegmentator[] { new OneOne(),
+                new OneSet(), new OneAll() };
+        SegmentationDefinition denseDefinitions[] = new SegmentationDefinition[wordsets.length];
+        SegmentationDefinition latticeDefinitions[] = new SegmentationDefinition[wordsets.length];
+
+        WindowSupportingAdapter adapter = WindowSupportingLuceneCorpusAdapter.create(indexPath,
+                Palmetto.DEFAULT_TEXT_INDEX_FIELD_NAME, Palmetto.DEFAULT_DOCUMENT_LENGTH_INDEX_FIELD_NAME);
+        try {
+            BooleanSlidingWindowFrequencyDeterminer bsDeterminer = new BooleanSlidingWindowFrequencyDeterminer(
+                    adapter, WINDOW_SIZE);
+            ContextWindowFrequencyDeterminer cwDeterminer = new ContextWindowFrequencyDeterminer(adapter,
+                    WINDOW_SIZE);
+            for (int s = 0; s < segmentators.length; ++s) {
+                for (int i = 0; i < wordsets.length; ++i) {
+                    denseDefinitions[i] = segmentators[s].getSubsetDefinition(WORDS_PER_WORDSET);
+                    latticeDefinitions[i] = segmentators[s]
+                            .getSubsetDefinition(new SubsetLattice(WORDS_PER_WORDSET));
+                }
+                for (int u = 0; u < 2; ++u) {
+                    bsDeterminer.setUseUnionVocabulary(u == 0);
+                    compareCounts(bsDeterminer, wordsets, denseDefinitions, latticeDefinitions);
+                    cwDeterminer.setUseUnionVocabulary(u == 0);
+                    compareCounts(cwDeterminer, wordsets, denseDefinitions, latticeDefinitions);
+                }
+            }
+        } finally {
+            adapter.close();
+            FileUtils.deleteQuietly(indexDir);
+        }
+    }
+
+    private static void compareCounts(WindowBasedFrequencyDeterminer determiner, String wordsets[][],
+            SegmentationDefinition denseDefinitions[], SegmentationDefinition latticeDefinitions[]) {
+        CountedSubsets expected[] = determiner.determineCounts(wordsets, denseDefinitions);
+        CountedSubsets counts[] = determiner.determineCounts(wordsets, latticeDefinitions);
+        SubsetLattice lattice;
+        int denseId;
+        for (int i = 0; i < wordsets.length; ++i) {
+            lattice = counts[i].lattice;
+            Assert.assertEquals(lattice.size(), counts[i].counts.length);
+            for (int slot = 0; slot < lattice.size(); ++slot) {
+                denseId = 0;
+                for (int word : lattice.getWords(slot)) {
+                    denseId |= 1 << word;
+                }
+                Assert.assertEquals(expected[i].counts[denseId], counts[i].counts[slot]);
+            }
+        }
+    }
+}
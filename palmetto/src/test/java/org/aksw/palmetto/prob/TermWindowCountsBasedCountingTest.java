@@ -0,0 +1,153 @@
+/**
+ * This file is part of Palmetto.
+ *
+ * Palmetto is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Palmetto is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Palmetto.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.aksw.palmetto.prob;
+
+import java.io.File;
+import java.util.Random;
+
+import org.aksw.palmetto.Palmetto;
+import org.aksw.palmetto.corpus.CorpusVocabulary;
+import org.aksw.palmetto.corpus.TermWindowCounts;
+import org.aksw.palmetto.corpus.WindowSupportingAdapter;
+import org.aksw.palmetto.corpus.decorator.PositionsCachingAdapterDecorator;
+import org.aksw.palmetto.corpus.lucene.RandomIndexes;
+import org.aksw.palmetto.corpus.lucene.SimpleAnalyzer;
+import org.aksw.palmetto.corpus.lucene.WindowSupportingLuceneCorpusAdapter;
+import org.aksw.palmetto.data.CountedSubsets;
+import org.aksw.palmetto.data.SegmentationDefinition;
+import org.aksw.palmetto.prob.window.BooleanSlidingWindowFrequencyDeterminer;
+import org.aksw.palmetto.subsets.OneOne;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.store.SimpleFSDirectory;
+import org.apache.lucene.util.Version;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks that the counts of the {@link BooleanSlidingWindowFrequencyDeterminer}
+ * are the same if the window counts of single words determined while indexing
+ * are used, i.e., if only documents containing at least two words of a word
+ * set are retrieved.
+ *
+ * @author Michael R&ouml;der (roeder@informatik.uni-leipzig.de)
+ *
+ */
+public class TermWindowCountsBasedCountingTest {
+
+    private static final int NUMBER_OF_WORDSETS = 20;
+    private static final int WORDS_PER_WORDSET = 5;
+    private static final int VOCABULARY_SIZE = 200;
+    /**
+     * Window sizes with (10, 50) and without (15) stored counts.
+     */
+    private static final int WINDOW_SIZES[] = { 10, 50, 15 };
+
+    @Test
+    public void test() throws Exception {
+        Random random = new Random(23);
+        // short documents form a single window
+        File indexDir = RandomIndexes.createRandomIndex(random, 2000, VOCABULARY_SIZE, 5, 200, 700);
+        String indexPath = indexDir.getAbsolutePath();
+        String wordsets[][] = RandomIndexes.createRandomWordsets(random,
+                NUMBER_OF_WORDSETS, WORDS_PER_WORDSET, VOCABULARY_SIZE);
+        // a duplicate word and an unknown word
+        wordsets[0][1] = wordsets[0][0];
+        wordsets[1][2] = "unknown";
+        SegmentationDefinition definitions[] = new SegmentationDefinition[wordsets.length];
+        for (int i = 0; i < definitions.length; ++i) {
+            definitions[i] = (new OneOne()).getSubsetDefinition(WORDS_PER_WORDSET);
+        }
+        try {
+            WindowSupportingLuceneCorpusAdapter adapter = WindowSupportingLuceneCorpusAdapter.create(indexPath,
+                    Palmetto.DEFAULT_TEXT_INDEX_FIELD_NAME, Palmetto.DEFAULT_DOCUMENT_LENGTH_INDEX_FIELD_NAME);
+            try {
+                Assert.assertNotNull(adapter.getTermWindowCounts());
+                compare(adapter, wordsets, definitions);
+                // the decorator offers the window counts of the decorated adapter
+                PositionsCachingAdapterDecorator decorator = new PositionsCachingAdapterDecorator(adapter);
+                Assert.assertSame(adapter.getTermWindowCounts(), decorator.getTermWindowCounts());
+                // the determiner uses the window counts, i.e., it only streams documents with two words
+                Assert.assertNotNull(new BooleanSlidingWindowFrequencyDeterminer(decorator, WINDOW_SIZES[0]) {
+                    public TermWindowCounts getUsedTermWindowCounts() {
+                        return getTermWindowCounts();
+                    }
+                }.getUsedTermWindowCounts());
+                compare(decorator, wordsets, definitions);
+            } finally {
+                adapter.close();
+            }
+
+            // after deleting documents, the counts do not fit to the index anymore
+            IndexWriter writer = new IndexWriter(new SimpleFSDirectory(indexDir), new IndexWriterConfig(
+                    Version.LUCENE_44, new SimpleAnalyzer(true)));
+            writer.deleteDocuments(new Term(Palmetto.DEFAULT_TEXT_INDEX_FIELD_NAME, "w3"));
+            writer.close();
+            adapter = WindowSupportingLuceneCorpusAdapter.create(indexPath, Palmetto.DEFAULT_TEXT_INDEX_FIELD_NAME,
+                    Palmetto.DEFAULT_DOCUMENT_LENGTH_INDEX_FIELD_NAME);
+            try {
+                Assert.assertNull(adapter.getTermWindowCounts());
+                compare(adapter, wordsets, definitions);
+                compare(new PositionsCachingAdapterDecorator(adapter), wordsets, definitions);
+            } finally {
+                adapter.close();
+            }
+        } finally {
+            RandomIndexes.deleteIndex(indexDir);
+        }
+    }
+
+    private static void compare(WindowSupportingLuceneCorpusAdapter adapter, String wordsets[][],
+            SegmentationDefinition definitions[]) {
+        compare(adapter, adapter, wordsets, definitions);
+    }
+
+    /**
+     * Compares the counts of a determiner using the window counts of the
+     * given decorator with the counts determined without window counts.
+     */
+    private static void compare(PositionsCachingAdapterDecorator decorator, String wordsets[][],
+            SegmentationDefinition definitions[]) {
+        compare((WindowSupportingLuceneCorpusAdapter) decorator.getDecorated(), decorator, wordsets, definitions);
+    }
+
+    private static void compare(WindowSupportingLuceneCorpusAdapter expectedAdapter, WindowSupportingAdapter adapter,
+            String wordsets[][], SegmentationDefinition definitions[]) {
+        CorpusVocabulary vocabulary = expectedAdapter.getVocabulary();
+        int wordIds[][] = vocabulary.getIds(wordsets);
+        BooleanSlidingWindowFrequencyDeterminer expectedDeterminer, determiner;
+        CountedSubsets expected[], counts[], idCounts[];
+        for (int w = 0; w < WINDOW_SIZES.length; ++w) {
+            expectedDeterminer = new BooleanSlidingWindowFrequencyDeterminer(expectedAdapter, WINDOW_SIZES[w]);
+            expectedDeterminer.setUseTermWindowCounts(false);
+            determiner = new BooleanSlidingWindowFrequencyDeterminer(adapter, WINDOW_SIZES[w]);
+            for (int u = 0; u < 2; ++u) {
+                // with and without the union vocabulary
+                expectedDeterminer.setUseUnionVocabulary(u == 0);
+                determiner.setUseUnionVocabulary(u == 0);
+                expected = expectedDeterminer.determineCounts(wordsets, definitions);
+                counts = determiner.determineCounts(wordsets, definitions);
+                idCounts = determiner.determineCounts(wordIds, vocabulary, definitions);
+                for (int i = 0; i < expected.length; ++i) {
+                    Assert.assertArrayEquals(expected[i].counts, counts[i].counts);
+                    Assert.assertArrayEquals(expected[i].counts, idCounts[i].counts);
+                }
+            }
+        }
+    }
+}
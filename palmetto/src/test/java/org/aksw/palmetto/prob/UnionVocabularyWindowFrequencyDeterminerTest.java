@@ -0,0 +1,135 @@
+/**
+ * This file is part of Palmetto.
+ *
+ * Palmetto is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Palmetto is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Palmetto.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.aksw.palmetto.prob;
+
+import java.io.File;
+import java.util.Random;
+
+import org.aksw.palmetto.Palmetto;
+import org.aksw.palmetto.corpus.WindowSupportingAdapter;
+import org.aksw.palmetto.corpus.lucene.RandomIndexes;
+import org.aksw.palmetto.corpus.lucene.WindowSupportingLuceneCorpusAdapter;
+import org.aksw.palmetto.corpus.lucene.creation.LuceneIndexHistogramCreator;
+import org.aksw.palmetto.data.CountedSubsets;
+import org.aksw.palmetto.data.SegmentationDefinition;
+import org.aksw.palmetto.prob.window.BooleanSlidingWindowFrequencyDeterminer;
+import org.aksw.palmetto.prob.window.ContextWindowFrequencyDeterminer;
+import org.aksw.palmetto.subsets.OneOne;
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.IntIntOpenHashMap;
+import com.carrotsearch.hppc.IntObjectOpenHashMap;
+
+/**
+ * Checks that requesting the positions of the union vocabulary of several word
+ * sets leads to the same counts as requesting them for every word set
+ * separately while requesting less words from the adapter.
+ *
+ * @author Michael R&ouml;der (roeder@informatik.uni-leipzig.de)
+ *
+ */
+public class UnionVocabularyWindowFrequencyDeterminerTest {
+
+    private static final int NUMBER_OF_WORDSETS = 30;
+    private static final int WORDS_PER_WORDSET = 6;
+    // a small vocabulary leads to word sets sharing a lot of words
+    private static final int VOCABULARY_SIZE = 60;
+    private static final int WINDOW_SIZE = 10;
+
+    @Test
+    public void test() throws Exception {
+        Random random = new Random(13);
+        File indexDir = RandomIndexes.createRandomIndex(random, 2000, 500, 5, 60);
+        String indexPath = indexDir.getAbsolutePath();
+        LuceneIndexHistogramCreator hCreator = new LuceneIndexHistogramCreator(
+                Palmetto.DEFAULT_DOCUMENT_LENGTH_INDEX_FIELD_NAME);
+        hCreator.createLuceneIndexHistogram(indexPath);
+
+        String wordsets[][] = RandomIndexes.createRandomWordsets(random,
+                NUMBER_OF_WORDSETS, WORDS_PER_WORDSET, VOCABULARY_SIZE);
+        // add an unknown word to make sure that documents of other word sets are not counted
+        wordsets[0][0] = "unknown";
+        SegmentationDefinition definitions[] = new SegmentationDefinition[wordsets.length];
+        for (int i = 0; i < definitions.length; ++i) {
+            definitions[i] = (new OneOne()).getSubsetDefinition(WORDS_PER_WORDSET);
+        }
+
+        CountingAdapter adapter = new CountingAdapter(WindowSupportingLuceneCorpusAdapter.create(indexPath,
+                Palmetto.DEFAULT_TEXT_INDEX_FIELD_NAME, Palmetto.DEFAULT_DOCUMENT_LENGTH_INDEX_FIELD_NAME));
+        try {
+            BooleanSlidingWindowFrequencyDeterminer bsDeterminer = new BooleanSlidingWindowFrequencyDeterminer(
+                    adapter, WINDOW_SIZE);
+            bsDeterminer.setUseUnionVocabulary(false);
+            CountedSubsets expected[] = bsDeterminer.determineCounts(wordsets, definitions);
+            int separateRequests = adapter.requestedWords;
+            adapter.requestedWords = 0;
+            bsDeterminer.setUseUnionVocabulary(true);
+            CountedSubsets counts[] = bsDeterminer.determineCounts(wordsets, definitions);
+            int unionRequests = adapter.requestedWords;
+            for (int i = 0; i < expected.length; ++i) {
+                Assert.assertArrayEquals(expected[i].counts, counts[i].counts);
+            }
+            Assert.assertEquals(NUMBER_OF_WORDSETS * WORDS_PER_WORDSET, separateRequests);
+            Assert.assertTrue(unionRequests < separateRequests);
+            System.out.println("Union vocabulary requested " + unionRequests + " instead of " + separateRequests
+                    + " words.");
+
+            ContextWindowFrequencyDeterminer cwDeterminer = new ContextWindowFrequencyDeterminer(adapter,
+                    WINDOW_SIZE);
+            cwDeterminer.setUseUnionVocabulary(false);
+            expected = cwDeterminer.determineCounts(wordsets, definitions);
+            cwDeterminer.setUseUnionVocabulary(true);
+            counts = cwDeterminer.determineCounts(wordsets, definitions);
+            for (int i = 0; i < expected.length; ++i) {
+                Assert.assertArrayEquals(expected[i].counts, counts[i].counts);
+            }
+        } finally {
+            adapter.close();
+            FileUtils.deleteQuietly(indexDir);
+        }
+    }
+
+    private static class CountingAdapter implements WindowSupportingAdapter {
+
+        private WindowSupportingAdapter decorated;
+        private int requestedWords = 0;
+
+        public CountingAdapter(WindowSupportingAdapter decorated) {
+            this.decorated = decorated;
+        }
+
+        @Override
+        public IntObjectOpenHashMap<IntArrayList[]> requestWordPositionsInDocuments(String[] words,
+                IntIntOpenHashMap docLengths) {
+            requestedWords += words.length;
+            return decorated.requestWordPositionsInDocuments(words, docLengths);
+        }
+
+        @Override
+        public int[][] getDocumentSizeHistogram() {
+            return decorated.getDocumentSizeHistogram();
+        }
+
+        @Override
+        public void close() {
+            decorated.close();
+        }
+    }
+}
@@ -20,29 +20,41 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Random;
 
+import org.aksw.palmetto.corpus.ArrayDocumentCursor;
+import org.aksw.palmetto.corpus.DocumentCursor;
+import org.aksw.palmetto.corpus.DocumentCursorSupportingAdapter;
 import org.aksw.palmetto.data.CountedSubsets;
 import org.aksw.palmetto.data.SegmentationDefinition;
+import org.aksw.palmetto.data.SubsetLattice;
 import org.aksw.palmetto.prob.AbstractBooleanDocumentSupportingAdapterBasedTest;
+import org.aksw.palmetto.prob.AbstractProbabilitySupplier;
 import org.aksw.palmetto.prob.bd.BitSetBasedBooleanDocumentFrequencyDeterminer;
 import org.aksw.palmetto.prob.bd.BooleanDocumentFrequencyDeterminer;
+import org.aksw.palmetto.prob.bd.LeapfrogBooleanDocumentFrequencyDeterminer;
 import org.aksw.palmetto.prob.bd.ListBasedBooleanDocumentFrequencyDeterminer;
 import org.aksw.palmetto.subsets.AnyAny;
+import org.aksw.palmetto.subsets.OnePreceding;
+import org.aksw.palmetto.subsets.OneSet;
+import org.aksw.palmetto.subsets.Segmentator;
 import org.junit.Assert;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.Parameterized;
 import org.junit.runners.Parameterized.Parameters;
 
+import com.carrotsearch.hppc.BitSet;
 import com.carrotsearch.hppc.IntOpenHashSet;
 
 @RunWith(Parameterized.class)
 public class BooleanDocumentFrequencyDeterminerPerformanceTest extends
-        AbstractBooleanDocumentSupportingAdapterBasedTest {
+        AbstractBooleanDocumentSupportingAdapterBasedTest implements DocumentCursorSupportingAdapter {
 
     private static final int NUMBER_OF_TEST_CASES = 3;
     private static final int WORDS_PER_TEST_CASE = 10;
     private static final int MAX_NUMBER_OF_DOCUMENTS_PER_WORD = 100000;
     private static final int DOCUMENT_ID_RANGE = 3 * MAX_NUMBER_OF_DOCUMENTS_PER_WORD;
+    private static final int SKEWED_TEST_REPETITIONS = 20;
+    private static final int LATTICE_TEST_WORDS[] = new int[] { 16, 32, 100 };
 
     @Parameters
     public static Collection<Object[]> data() {
@@ -67,40 +79,233 @@ public class BooleanDocumentFrequencyDeterminerPerformanceTest extends
 
     public BooleanDocumentFrequencyDeterminerPerformanceTest(int[][] wordDocuments) {
         super(wordDocuments, 0);
+        // the postings of an index are sorted
+        for (int i = 0; i < wordDocuments.length; ++i) {
+            Arrays.sort(wordDocuments[i]);
+        }
+    }
+
+    @Override
+    public DocumentCursor getDocumentCursor(String word) {
+        int documents[] = wordDocuments[Integer.parseInt(word)];
+        return new ArrayDocumentCursor(documents, documents.length);
     }
 
     @Test
     public void test() {
-        long neededTimes[] = new long[2];
+        long neededTimes[] = new long[4];
         Random random = new Random(System.currentTimeMillis());
-        BooleanDocumentFrequencyDeterminer freqDeterminer = new BitSetBasedBooleanDocumentFrequencyDeterminer(this);
-        ListBasedBooleanDocumentFrequencyDeterminer listBasedFreqDeterminer = new ListBasedBooleanDocumentFrequencyDeterminer(
-                this);
+        BooleanDocumentFrequencyDeterminer determiners[] = new BooleanDocumentFrequencyDeterminer[] {
+                new BitSetBasedBooleanDocumentFrequencyDeterminer(this),
+                new ListBasedBooleanDocumentFrequencyDeterminer(this),
+                new LeapfrogBooleanDocumentFrequencyDeterminer(this),
+                new PackedBitSetBasedBooleanDocumentFrequencyDeterminer(this) };
         String words[][] = new String[1][wordDocuments.length];
         for (int i = 0; i < wordDocuments.length; ++i) {
             words[0][i] = Integer.toString(i);
         }
-        SegmentationDefinition definitions[] = new SegmentationDefinition[] { (new AnyAny()).getSubsetDefinition(words.length) };
-        CountedSubsets subsets[][] = new CountedSubsets[2][];
+        SegmentationDefinition definitions[] = new SegmentationDefinition[] { (new AnyAny()).getSubsetDefinition(words[0].length) };
+        CountedSubsets subsets[][] = new CountedSubsets[determiners.length][];
 
+        // run the determiners in a random order
+        int order[] = new int[determiners.length];
+        for (int i = 0; i < order.length; ++i) {
+            order[i] = i;
+        }
+        int swap, j;
+        for (int i = order.length - 1; i > 0; --i) {
+            j = random.nextInt(i + 1);
+            swap = order[i];
+            order[i] = order[j];
+            order[j] = swap;
+        }
         long time;
-        if (random.nextBoolean()) {
-            time = System.currentTimeMillis();
-            subsets[0] = freqDeterminer.determineCounts(words, definitions);
-            neededTimes[0] = System.currentTimeMillis() - time;
-            time = System.currentTimeMillis();
-            subsets[1] = listBasedFreqDeterminer.determineCounts(words, definitions);
-            neededTimes[1] = System.currentTimeMillis() - time;
-        } else {
+        for (int i = 0; i < order.length; ++i) {
             time = System.currentTimeMillis();
-            subsets[1] = listBasedFreqDeterminer.determineCounts(words, definitions);
-            neededTimes[1] = System.currentTimeMillis() - time;
-            time = System.currentTimeMillis();
-            subsets[0] = freqDeterminer.determineCounts(words, definitions);
-            neededTimes[0] = System.currentTimeMillis() - time;
+            subsets[order[i]] = determiners[order[i]].determineCounts(words, definitions);
+            neededTimes[order[i]] = System.currentTimeMillis() - time;
         }
 
-        System.out.println("BooleanDocument performance test BitSetBased: " + neededTimes[0] + " ms\tListBased: " + neededTimes[1] + " ms");
+        System.out.println("BooleanDocument performance test BitSetBased: " + neededTimes[0] + " ms\tListBased: "
+                + neededTimes[1] + " ms\tLeapfrog: " + neededTimes[2] + " ms\tPackedBitSetBased: " + neededTimes[3]
+                + " ms");
         Assert.assertArrayEquals(subsets[0][0].counts, subsets[1][0].counts);
+        Assert.assertArrayEquals(subsets[0][0].counts, subsets[2][0].counts);
+        Assert.assertArrayEquals(subsets[0][0].counts, subsets[3][0].counts);
+    }
+
+    /**
+     * Compares the bit set based determiners for segmentations that need only
+     * a part of the counts. The packed bit sets skip the counts that are not
+     * needed and the supersets of combinations below the minimum frequency.
+     */
+    @Test
+    public void testNeededCounts() {
+        String words[][] = new String[1][wordDocuments.length];
+        for (int i = 0; i < wordDocuments.length; ++i) {
+            words[0][i] = Integer.toString(i);
+        }
+        Segmentator segmentators[] = new Segmentator[] { new OnePreceding(), new OneSet() };
+        BitSetBasedBooleanDocumentFrequencyDeterminer bitSetDeterminer = new BitSetBasedBooleanDocumentFrequencyDeterminer(
+                this);
+        PackedBitSetBasedBooleanDocumentFrequencyDeterminer packedDeterminer = new PackedBitSetBasedBooleanDocumentFrequencyDeterminer(
+                this);
+        packedDeterminer.setMinFrequency(AbstractProbabilitySupplier.DEFAULT_MIN_FREQUENCY);
+        long expected[] = null, counts[] = null;
+        long bitSetTime, packedTime, time;
+        BitSet neededCounts;
+        for (int s = 0; s < segmentators.length; ++s) {
+            SegmentationDefinition definitions[] = new SegmentationDefinition[] { segmentators[s]
+                    .getSubsetDefinition(words[0].length) };
+            // warm up
+            bitSetDeterminer.determineCounts(words, definitions);
+            packedDeterminer.determineCounts(words, definitions);
+            bitSetTime = 0;
+            packedTime = 0;
+            for (int r = 0; r < SKEWED_TEST_REPETITIONS; ++r) {
+                time = System.currentTimeMillis();
+                expected = bitSetDeterminer.determineCounts(words, definitions)[0].counts;
+                bitSetTime += System.currentTimeMillis() - time;
+                time = System.currentTimeMillis();
+                counts = packedDeterminer.determineCounts(words, definitions)[0].counts;
+                packedTime += System.currentTimeMillis() - time;
+            }
+            System.out.println("BooleanDocument performance test (" + segmentators[s].getName() + ", "
+                    + SKEWED_TEST_REPETITIONS + " repetitions) BitSetBased: " + bitSetTime
+                    + " ms\tPackedBitSetBased: " + packedTime + " ms");
+            neededCounts = PackedBitSetBasedBooleanDocumentFrequencyDeterminer.getNeededCounts(definitions[0],
+                    words[0].length);
+            for (int i = 1; i < expected.length; ++i) {
+                if (neededCounts.get(i) && (expected[i] >= AbstractProbabilitySupplier.DEFAULT_MIN_FREQUENCY)) {
+                    Assert.assertEquals(expected[i], counts[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Compares the list based and the leapfrog determiner for the UMass
+     * segmentation of word sets with skewed document frequencies, i.e., the
+     * i-th word occurs in roughly half of the documents of the (i-1)-th word.
+     */
+    @Test
+    public void testSkewedFrequencies() {
+        int originalDocuments[][] = wordDocuments;
+        Random random = new Random(wordDocuments[0].length);
+        wordDocuments = new int[WORDS_PER_TEST_CASE][];
+        IntOpenHashSet documentsOfWord = new IntOpenHashSet();
+        for (int w = 0; w < wordDocuments.length; ++w) {
+            documentsOfWord.clear();
+            while (documentsOfWord.assigned < (MAX_NUMBER_OF_DOCUMENTS_PER_WORD >> w)) {
+                documentsOfWord.add(random.nextInt(DOCUMENT_ID_RANGE));
+            }
+            wordDocuments[w] = documentsOfWord.toArray();
+            Arrays.sort(wordDocuments[w]);
+        }
+        try {
+            String words[][] = new String[1][wordDocuments.length];
+            for (int i = 0; i < wordDocuments.length; ++i) {
+                words[0][i] = Integer.toString(i);
+            }
+            SegmentationDefinition definitions[] = new SegmentationDefinition[] { (new OnePreceding())
+                    .getSubsetDefinition(words[0].length) };
+            BooleanDocumentFrequencyDeterminer listBasedDeterminer = new ListBasedBooleanDocumentFrequencyDeterminer(
+                    this);
+            BooleanDocumentFrequencyDeterminer leapfrogDeterminer = new LeapfrogBooleanDocumentFrequencyDeterminer(
+                    this);
+            long expected[] = null, counts[] = null;
+            long listBasedTime = 0, leapfrogTime = 0, time;
+            for (int r = 0; r < SKEWED_TEST_REPETITIONS; ++r) {
+                time = System.currentTimeMillis();
+                expected = listBasedDeterminer.determineCounts(words, definitions)[0].counts;
+                listBasedTime += System.currentTimeMillis() - time;
+                time = System.currentTimeMillis();
+                counts = leapfrogDeterminer.determineCounts(words, definitions)[0].counts;
+                leapfrogTime += System.currentTimeMillis() - time;
+            }
+
+            System.out.println("BooleanDocument performance test (skewed frequencies, UMass) ListBased: "
+                    + listBasedTime + " ms\tLeapfrog: " + leapfrogTime + " ms");
+            BitSet neededCounts = LeapfrogBooleanDocumentFrequencyDeterminer.getNeededCounts(definitions[0]);
+            for (int i = 1; i < expected.length; ++i) {
+                if (neededCounts.get(i)) {
+                    Assert.assertEquals(expected[i], counts[i]);
+                }
+            }
+        } finally {
+            wordDocuments = originalDocuments;
+        }
+    }
+
+    /**
+     * Compares the dense counts and the counts of a {@link SubsetLattice} for
+     * the UMass segmentation of the largest word set that is still dense and
+     * determines the lattice counts of larger word sets.
+     */
+    @Test
+    public void testSubsetLattice() {
+        int originalDocuments[][] = wordDocuments;
+        Random random = new Random(wordDocuments[0].length);
+        wordDocuments = new int[LATTICE_TEST_WORDS[LATTICE_TEST_WORDS.length - 1]][];
+        IntOpenHashSet documentsOfWord = new IntOpenHashSet();
+        int numberOfDocsForWord;
+        for (int w = 0; w < wordDocuments.length; ++w) {
+            documentsOfWord.clear();
+            numberOfDocsForWord = random.nextInt(MAX_NUMBER_OF_DOCUMENTS_PER_WORD / 10);
+            while (documentsOfWord.assigned < numberOfDocsForWord) {
+                documentsOfWord.add(random.nextInt(DOCUMENT_ID_RANGE / 10));
+            }
+            wordDocuments[w] = documentsOfWord.toArray();
+            Arrays.sort(wordDocuments[w]);
+        }
+        try {
+            PackedBitSetBasedBooleanDocumentFrequencyDeterminer determiner = new PackedBitSetBasedBooleanDocumentFrequencyDeterminer(
+                    this);
+            OnePreceding segmentator = new OnePreceding();
+            String words[][] = new String[1][];
+            SegmentationDefinition definitions[] = new SegmentationDefinition[1];
+            long expected[] = null;
+            CountedSubsets counts = null;
+            long time;
+            for (int s = 0; s < LATTICE_TEST_WORDS.length; ++s) {
+                words[0] = new String[LATTICE_TEST_WORDS[s]];
+                for (int i = 0; i < words[0].length; ++i) {
+                    words[0][i] = Integer.toString(i);
+                }
+                if (!SubsetLattice.isNeeded(words[0].length)) {
+                    definitions[0] = segmentator.getSubsetDefinition(words[0].length);
+                    time = System.currentTimeMillis();
+                    for (int r = 0; r < SKEWED_TEST_REPETITIONS; ++r) {
+                        expected = determiner.determineCounts(words, definitions)[0].counts;
+                    }
+                    System.out.println("BooleanDocument performance test (UMass, " + words[0].length + " words, "
+                            + SKEWED_TEST_REPETITIONS + " repetitions) dense: "
+                            + (System.currentTimeMillis() - time) + " ms");
+                    definitions[0] = segmentator.getSubsetDefinition(new SubsetLattice(words[0].length));
+                } else {
+                    expected = null;
+                    definitions[0] = segmentator.getSubsetDefinition(words[0].length);
+                }
+                time = System.currentTimeMillis();
+                for (int r = 0; r < SKEWED_TEST_REPETITIONS; ++r) {
+                    counts = determiner.determineCounts(words, definitions)[0];
+                }
+                System.out.println("BooleanDocument performance test (UMass, " + words[0].length + " words, "
+                        + SKEWED_TEST_REPETITIONS + " repetitions) lattice: " + (System.currentTimeMillis() - time)
+                        + " ms (" + counts.counts.length + " counts)");
+                Assert.assertNotNull(counts.lattice);
+                if (expected != null) {
+                    for (int i = 0; i < words[0].length; ++i) {
+                        Assert.assertEquals(expected[1 << i], counts.counts[counts.lattice.getSingle(i)]);
+                        for (int j = i + 1; j < words[0].length; ++j) {
+                            Assert.assertEquals(expected[(1 << i) | (1 << j)],
+                                    counts.counts[counts.lattice.getPair(i, j)]);
+                        }
+                    }
+                }
+            }
+        } finally {
+            wordDocuments = originalDocuments;
+        }
     }
 }
@@ -23,6 +23,8 @@ import org.aksw.palmetto.data.SegmentationDefinition;
 import org.aksw.palmetto.data.SubsetProbabilities;
 import org.aksw.palmetto.prob.AbstractBooleanDocumentSupportingAdapterBasedTest;
 import org.aksw.palmetto.prob.bd.BooleanDocumentProbabilitySupplier;
+import org.aksw.palmetto.prob.decorator.FrequencyCachingDeterminerDecorator;
+import org.aksw.palmetto.prob.decorator.PairCountsDeterminerDecorator;
 import org.junit.Assert;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -95,13 +97,33 @@ public class BooleanDocumentProbabilitySupplierTest extends AbstractBooleanDocum
 
     @Test
     public void test() {
+        BooleanDocumentProbabilitySupplier probSupplier = BooleanDocumentProbabilitySupplier.create(this);
+        probSupplier.setMinFrequency(minFrequency);
+        checkProbabilities(probSupplier);
+    }
+
+    /**
+     * The minimum frequency has to reach the determiner and the pair counts
+     * decorator behind the other decorators.
+     */
+    @Test
+    public void testDecoratedDeterminer() {
+        BooleanDocumentProbabilitySupplier probSupplier = BooleanDocumentProbabilitySupplier.create(this);
+        PackedBitSetBasedBooleanDocumentFrequencyDeterminer determiner =
+                (PackedBitSetBasedBooleanDocumentFrequencyDeterminer) probSupplier.getFrequencyDeterminer();
+        PairCountsDeterminerDecorator pairCountsDecorator = new PairCountsDeterminerDecorator(determiner, null);
+        probSupplier.setFrequencyDeterminer(new FrequencyCachingDeterminerDecorator(pairCountsDecorator));
+        probSupplier.setMinFrequency(minFrequency);
+        Assert.assertEquals(minFrequency, determiner.getMinFrequency());
+        Assert.assertEquals(minFrequency, pairCountsDecorator.getMinFrequency());
+        checkProbabilities(probSupplier);
+    }
+
+    private void checkProbabilities(BooleanDocumentProbabilitySupplier probSupplier) {
         String words[] = new String[wordDocuments.length];
         for (int i = 0; i < words.length; i++) {
             words[i] = Integer.toString(i);
         }
-
-        BooleanDocumentProbabilitySupplier probSupplier = BooleanDocumentProbabilitySupplier.create(this);
-        probSupplier.setMinFrequency(minFrequency);
         SubsetProbabilities subsetProbs[] = probSupplier
                 .getProbabilities(new String[][] { words }, new SegmentationDefinition[] { new SegmentationDefinition(null, null,
                         new BitSet(expectedProbabilities.length - 1)) });
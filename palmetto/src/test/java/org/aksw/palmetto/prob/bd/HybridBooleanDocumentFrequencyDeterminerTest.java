@@ -0,0 +1,298 @@
+/**
+ * This file is part of Palmetto.
+ *
+ * Palmetto is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Palmetto is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Palmetto.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.aksw.palmetto.prob.bd;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Random;
+
+import org.aksw.palmetto.corpus.ResidentDocumentSets;
+import org.aksw.palmetto.data.CountedSubsets;
+import org.aksw.palmetto.data.SegmentationDefinition;
+import org.aksw.palmetto.prob.AbstractBooleanDocumentSupportingAdapterBasedTest;
+import org.aksw.palmetto.subsets.AnyAny;
+import org.aksw.palmetto.subsets.OneAll;
+import org.aksw.palmetto.subsets.OneOne;
+import org.aksw.palmetto.subsets.OnePreceding;
+import org.aksw.palmetto.subsets.OneSet;
+import org.aksw.palmetto.subsets.Segmentator;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import com.carrotsearch.hppc.BitSet;
+import com.carrotsearch.hppc.IntOpenHashSet;
+
+@RunWith(Parameterized.class)
+public class HybridBooleanDocumentFrequencyDeterminerTest extends AbstractBooleanDocumentSupportingAdapterBasedTest {
+
+    private static final int NUMBER_OF_RANDOM_WORDSETS = 50;
+    private static final int WORDS_PER_WORDSET = 8;
+    private static final int DOCUMENT_ID_RANGE = 5000;
+
+    /**
+     * The numbers of dense words of the resident sets. 0 leads to sparse sets
+     * only.
+     */
+    private static final int NUMBER_OF_DENSE_WORDS[] = new int[] { 0, 4, 16 };
+
+    @Parameters
+    public static Collection<Object[]> data() {
+        return Arrays.asList(new Object[][] {
+                /*
+                 * word0 1 1 1
+                 * 
+                 * word1 0 1 1
+                 * 
+                 * word2 0 0 1
+                 */
+                { new int[][] { { 0, 1, 2 }, { 1, 2 }, { 2 } }, new long[] { 0, 3, 2, 2, 1, 1, 1, 1 } },
+                /*
+                 * word0 1 1 0 0
+                 * 
+                 * word1 0 1 1 1
+                 * 
+                 * word2 0 0 1 1
+                 */
+                { new int[][] { { 0, 1 }, { 1, 2, 3 }, { 2, 3 } }, new long[] { 0, 2, 3, 1, 2, 0, 2, 0 } },
+                /*
+                 * word0 1 1 0 0
+                 * 
+                 * word1 0 1 1 0
+                 * 
+                 * word2 0 0 1 1
+                 * 
+                 * word3 1 1 0 1 (unsorted)
+                 */
+                { new int[][] { { 0, 1 }, { 1, 2 }, { 2, 3 }, { 3, 1, 0 } },
+                        new long[] { 0, 2, 2, 1, 2, 0, 1, 0, 3, 2, 1, 1, 1, 0, 0, 0 } } });
+    }
+
+    private long expectedCounts[];
+
+    public HybridBooleanDocumentFrequencyDeterminerTest(int[][] wordDocuments, long[] expectedCounts) {
+        super(wordDocuments, 0);
+        this.expectedCounts = expectedCounts;
+    }
+
+    /**
+     * Determines the counts with all words stored as dense sets, all words
+     * stored as sorted arrays, a mixture of both and without any resident
+     * words.
+     */
+    @Test
+    public void test() {
+        String words[] = createWords(wordDocuments.length);
+        int frequencies[] = new int[words.length];
+        for (int i = 0; i < frequencies.length; ++i) {
+            frequencies[i] = wordDocuments[i].length;
+        }
+        // a tiny document id space, i.e., the bit sets are smaller than the arrays of most words
+        int maxDoc = 4;
+        for (int numberOfDenseWords = 0; numberOfDenseWords <= words.length; ++numberOfDenseWords) {
+            ResidentDocumentSets residentSets = ResidentDocumentSets.create(this, words, frequencies, maxDoc,
+                    numberOfDenseWords, Long.MAX_VALUE);
+            Assert.assertEquals(words.length, residentSets.size());
+            Assert.assertTrue(residentSets.getNumberOfDenseSets() <= numberOfDenseWords);
+            Assert.assertArrayEquals(expectedCounts, determineAllCounts(residentSets, words));
+        }
+        ResidentDocumentSets emptySets = ResidentDocumentSets.create(this, words, frequencies, maxDoc, 0, 0);
+        Assert.assertEquals(0, emptySets.size());
+        Assert.assertArrayEquals(expectedCounts, determineAllCounts(emptySets, words));
+    }
+
+    private long[] determineAllCounts(ResidentDocumentSets residentSets, String words[]) {
+        return new HybridBooleanDocumentFrequencyDeterminer(this, residentSets).determineCounts(
+                new String[][] { words },
+                new SegmentationDefinition[] { (new AnyAny()).getSubsetDefinition(words.length) })[0].counts;
+    }
+
+    /**
+     * Compares the needed counts with the counts of the list based determiner
+     * for random word sets (containing duplicate words), several
+     * segmentations and resident sets containing dense sets, sparse sets and
+     * words that are not resident.
+     */
+    @Test
+    public void testRandomWordsets() {
+        int originalDocuments[][] = wordDocuments;
+        Random random = new Random(expectedCounts.length);
+        wordDocuments = createRandomDocuments(random, 4 * WORDS_PER_WORDSET);
+        try {
+            String wordsets[][] = new String[NUMBER_OF_RANDOM_WORDSETS][WORDS_PER_WORDSET];
+            for (int i = 0; i < wordsets.length; ++i) {
+                for (int j = 0; j < wordsets[i].length; ++j) {
+                    wordsets[i][j] = Integer.toString(random.nextInt(wordDocuments.length));
+                }
+            }
+            Segmentator segmentators[] = new Segmentator[] { new OneOne(), new OnePreceding(), new OneSet(),
+                    new OneAll(), new AnyAny() };
+            BooleanDocumentFrequencyDeterminer expectedDeterminer = new ListBasedBooleanDocumentFrequencyDeterminer(
+                    this);
+            int minFrequencies[] = new int[] { 1, 100, 400 };
+            SegmentationDefinition definitions[] = new SegmentationDefinition[wordsets.length];
+            CountedSubsets expected[], counts[];
+            BitSet neededCounts;
+            for (int d = 0; d < NUMBER_OF_DENSE_WORDS.length; ++d) {
+                HybridBooleanDocumentFrequencyDeterminer determiner = new HybridBooleanDocumentFrequencyDeterminer(
+                        this, createResidentSets(NUMBER_OF_DENSE_WORDS[d]));
+                for (int s = 0; s < segmentators.length; ++s) {
+                    Arrays.fill(definitions, segmentators[s].getSubsetDefinition(WORDS_PER_WORDSET));
+                    neededCounts = PackedBitSetBasedBooleanDocumentFrequencyDeterminer.getNeededCounts(
+                            definitions[0], WORDS_PER_WORDSET);
+                    expected = expectedDeterminer.determineCounts(wordsets, definitions);
+                    for (int m = 0; m < minFrequencies.length; ++m) {
+                        determiner.setMinFrequency(minFrequencies[m]);
+                        counts = determiner.determineCounts(wordsets, definitions);
+                        for (int i = 0; i < wordsets.length; ++i) {
+                            for (int j = 1; j < expected[i].counts.length; ++j) {
+                                if (neededCounts.get(j) || ((j & (j - 1)) == 0)) {
+                                    if (expected[i].counts[j] >= minFrequencies[m]) {
+                                        Assert.assertEquals(expected[i].counts[j], counts[i].counts[j]);
+                                    } else {
+                                        // counts below the minimum frequency might be set to 0
+                                        Assert.assertTrue(counts[i].counts[j] < minFrequencies[m]);
+                                    }
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        } finally {
+            wordDocuments = originalDocuments;
+        }
+    }
+
+    /**
+     * Creates resident sets containing the given number of dense sets. The
+     * budget is chosen so that a quarter of the (less frequent) words is not
+     * resident.
+     */
+    private ResidentDocumentSets createResidentSets(int numberOfDenseWords) {
+        // sort the words by their frequencies (the random lists do not contain duplicates)
+        long sortKeys[] = new long[wordDocuments.length];
+        for (int i = 0; i < sortKeys.length; ++i) {
+            sortKeys[i] = (((long) (Integer.MAX_VALUE - wordDocuments[i].length)) << 32) | i;
+        }
+        Arrays.sort(sortKeys);
+        String words[] = new String[sortKeys.length];
+        int frequencies[] = new int[sortKeys.length];
+        int numberOfResidentWords = (3 * words.length) / 4;
+        long budget = 0;
+        for (int i = 0; i < sortKeys.length; ++i) {
+            words[i] = Integer.toString((int) sortKeys[i]);
+            frequencies[i] = wordDocuments[(int) sortKeys[i]].length;
+            if (i < numberOfResidentWords) {
+                budget += (i < numberOfDenseWords) ? (8 * ((DOCUMENT_ID_RANGE + 63) / 64)) : (4L * frequencies[i]);
+                budget += (2 * words[i].length()) + 64;
+            }
+        }
+        ResidentDocumentSets residentSets = ResidentDocumentSets.create(this, words, frequencies,
+                DOCUMENT_ID_RANGE, numberOfDenseWords, budget);
+        Assert.assertEquals(numberOfResidentWords, residentSets.size());
+        Assert.assertEquals(numberOfDenseWords, residentSets.getNumberOfDenseSets());
+        for (int i = 0; i < words.length; ++i) {
+            if (i < numberOfResidentWords) {
+                Assert.assertEquals(i < numberOfDenseWords, residentSets.isDense(residentSets.getId(words[i])));
+                Assert.assertEquals(frequencies[i], residentSets.getDocumentFrequency(residentSets.getId(words[i])));
+            } else {
+                Assert.assertEquals(ResidentDocumentSets.NOT_RESIDENT, residentSets.getId(words[i]));
+            }
+        }
+        return residentSets;
+    }
+
+    @Test
+    public void testEmptyWords() {
+        int originalDocuments[][] = wordDocuments;
+        wordDocuments = new int[][] { {}, { 1, 2 }, {} };
+        try {
+            String words[] = createWords(3);
+            ResidentDocumentSets residentSets = ResidentDocumentSets.create(this, new String[] { "1", "0" },
+                    new int[] { 2, 0 }, 3, 1, Long.MAX_VALUE);
+            CountedSubsets countedSubsets[] = new HybridBooleanDocumentFrequencyDeterminer(this, residentSets)
+                    .determineCounts(new String[][] { words },
+                            new SegmentationDefinition[] { (new AnyAny()).getSubsetDefinition(3) });
+            Assert.assertArrayEquals(new long[] { 0, 0, 2, 0, 0, 0, 0, 0 }, countedSubsets[0].counts);
+        } finally {
+            wordDocuments = originalDocuments;
+        }
+    }
+
+    /**
+     * Intersects sorted arrays with strongly differing sizes, i.e., the
+     * smaller array is searched inside the larger one using galloping.
+     */
+    @Test
+    public void testGalloping() {
+        int large[] = new int[10000];
+        for (int i = 0; i < large.length; ++i) {
+            large[i] = 3 * i;
+        }
+        int small[] = new int[] { 0, 1, 3, 299, 300, 15000, 29997, 29998, 40000 };
+        HybridBooleanDocumentFrequencyDeterminer.DocumentSet result = new HybridBooleanDocumentFrequencyDeterminer.DocumentSet();
+        Assert.assertEquals(5, HybridBooleanDocumentFrequencyDeterminer.intersect(
+                new HybridBooleanDocumentFrequencyDeterminer.DocumentSet(small, small.length),
+                new HybridBooleanDocumentFrequencyDeterminer.DocumentSet(large, large.length), result));
+        Assert.assertArrayEquals(new int[] { 0, 3, 300, 15000, 29997 }, Arrays.copyOf(result.documents, result.count));
+        // the position of the first element that is not smaller than the target
+        for (int i = 0; i < small.length; ++i) {
+            Assert.assertEquals(Math.min(large.length, (small[i] + 2) / 3),
+                    HybridBooleanDocumentFrequencyDeterminer.gallop(large, 0, large.length, small[i]));
+            Assert.assertEquals(Math.max(100, Math.min(large.length, (small[i] + 2) / 3)),
+                    HybridBooleanDocumentFrequencyDeterminer.gallop(large, 100, large.length, small[i]));
+        }
+    }
+
+    private static String[] createWords(int numberOfWords) {
+        String words[] = new String[numberOfWords];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = Integer.toString(i);
+        }
+        return words;
+    }
+
+    /**
+     * Creates random document lists. The words have different frequencies
+     * and some of them share a large part of their documents.
+     */
+    private static int[][] createRandomDocuments(Random random, int numberOfWords) {
+        int documents[][] = new int[numberOfWords][];
+        IntOpenHashSet documentsOfWord = new IntOpenHashSet();
+        int numberOfDocuments, previous[];
+        for (int w = 0; w < numberOfWords; ++w) {
+            documentsOfWord.clear();
+            numberOfDocuments = random.nextInt(DOCUMENT_ID_RANGE / 2);
+            for (int d = 0; d < numberOfDocuments; ++d) {
+                if ((w > 0) && random.nextBoolean()) {
+                    // take the document of a previous word
+                    previous = documents[random.nextInt(w)];
+                    if (previous.length > 0) {
+                        documentsOfWord.add(previous[random.nextInt(previous.length)]);
+                    }
+                } else {
+                    documentsOfWord.add(random.nextInt(DOCUMENT_ID_RANGE));
+                }
+            }
+            documents[w] = documentsOfWord.toArray();
+        }
+        return documents;
+    }
+}
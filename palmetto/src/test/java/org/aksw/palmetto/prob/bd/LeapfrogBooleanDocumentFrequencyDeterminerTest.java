@@ -0,0 +1,146 @@
+/**
+ * This file is part of Palmetto.
+ *
+ * Palmetto is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Palmetto is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Palmetto.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.aksw.palmetto.prob.bd;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import org.aksw.palmetto.data.CountedSubsets;
+import org.aksw.palmetto.data.SegmentationDefinition;
+import org.aksw.palmetto.prob.AbstractBooleanDocumentSupportingAdapterBasedTest;
+import org.aksw.palmetto.subsets.AllAll;
+import org.aksw.palmetto.subsets.AllOne;
+import org.aksw.palmetto.subsets.AnyAny;
+import org.aksw.palmetto.subsets.OneAll;
+import org.aksw.palmetto.subsets.OneAny;
+import org.aksw.palmetto.subsets.OneOne;
+import org.aksw.palmetto.subsets.OneOneAndSelf;
+import org.aksw.palmetto.subsets.OnePreceding;
+import org.aksw.palmetto.subsets.OneSet;
+import org.aksw.palmetto.subsets.OneSucceeding;
+import org.aksw.palmetto.subsets.Segmentator;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import com.carrotsearch.hppc.BitSet;
+
+@RunWith(Parameterized.class)
+public class LeapfrogBooleanDocumentFrequencyDeterminerTest extends AbstractBooleanDocumentSupportingAdapterBasedTest {
+
+    private static final Segmentator SEGMENTATORS[] = new Segmentator[] { new AllAll(), new AllOne(), new AnyAny(),
+            new OneAll(), new OneAny(), new OneOne(), new OneOneAndSelf(), new OnePreceding(), new OneSet(),
+            new OneSucceeding() };
+
+    @Parameters
+    public static Collection<Object[]> data() {
+        return Arrays.asList(new Object[][] {
+                /*
+                 * word0 1 1 1
+                 * 
+                 * word1 0 1 1
+                 * 
+                 * word2 0 0 1
+                 */
+                { new int[][] { { 0, 1, 2 }, { 1, 2 }, { 2 } }, new long[] { 0, 3, 2, 2, 1, 1, 1, 1 } },
+                /*
+                 * word0 1 1 0 0
+                 * 
+                 * word1 0 1 1 1
+                 * 
+                 * word2 0 0 1 1
+                 */
+                { new int[][] { { 0, 1 }, { 1, 2, 3 }, { 2, 3 } }, new long[] { 0, 2, 3, 1, 2, 0, 2, 0 } },
+                /*
+                 * word0 1 1 0 0
+                 * 
+                 * word1 0 1 1 0
+                 * 
+                 * word2 0 0 1 1
+                 * 
+                 * word3 1 1 0 1
+                 */
+                { new int[][] { { 0, 1 }, { 1, 2 }, { 2, 3 }, { 0, 1, 3 } },
+                        new long[] { 0, 2, 2, 1, 2, 0, 1, 0, 3, 2, 1, 1, 1, 0, 0, 0 } },
+                /*
+                 * unsorted lists, a word without documents and lists that have
+                 * to be skipped in large steps
+                 */
+                { new int[][] { { 900, 3, 500, 7, 1000 }, { 1000, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 500, 999 }, {},
+                        { 7, 1000 } }, new long[] { 0, 5, 13, 4, 0, 0, 0, 0, 2, 2, 2, 2, 0, 0, 0, 0 } } });
+    }
+
+    private long expectedCounts[];
+
+    public LeapfrogBooleanDocumentFrequencyDeterminerTest(int[][] wordDocuments, long[] expectedCounts) {
+        super(wordDocuments, 0);
+        this.expectedCounts = expectedCounts;
+    }
+
+    @Test
+    public void test() {
+        BooleanDocumentFrequencyDeterminer freqDeterminer = new LeapfrogBooleanDocumentFrequencyDeterminer(this);
+        CountedSubsets countedSubsets[] = freqDeterminer.determineCounts(new String[][] { createWords() },
+                new SegmentationDefinition[] { (new AnyAny()).getSubsetDefinition(wordDocuments.length) });
+
+        Assert.assertArrayEquals(expectedCounts, countedSubsets[0].counts);
+    }
+
+    @Test
+    public void testNeededCounts() {
+        String words[][] = new String[][] { createWords() };
+        BooleanDocumentFrequencyDeterminer freqDeterminer = new LeapfrogBooleanDocumentFrequencyDeterminer(this);
+        BooleanDocumentFrequencyDeterminer listBasedDeterminer = new ListBasedBooleanDocumentFrequencyDeterminer(this);
+        SegmentationDefinition definitions[];
+        long counts[], expected[];
+        BitSet neededCounts;
+        for (int s = 0; s < SEGMENTATORS.length; ++s) {
+            definitions = new SegmentationDefinition[] { SEGMENTATORS[s].getSubsetDefinition(words[0].length) };
+            expected = listBasedDeterminer.determineCounts(words, definitions)[0].counts;
+            counts = freqDeterminer.determineCounts(words, definitions)[0].counts;
+            neededCounts = LeapfrogBooleanDocumentFrequencyDeterminer.getNeededCounts(definitions[0]);
+            for (int i = 1; i < expected.length; ++i) {
+                if (neededCounts.get(i)) {
+                    Assert.assertEquals("count " + i + " of " + SEGMENTATORS[s].getName(), expected[i], counts[i]);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testDuplicateWords() {
+        String words[] = createWords();
+        String wordsWithDuplicate[][] = new String[][] { { words[0], words[words.length - 1], words[0] } };
+        SegmentationDefinition definitions[] = new SegmentationDefinition[] { (new AnyAny())
+                .getSubsetDefinition(3) };
+        Assert.assertArrayEquals(
+                (new ListBasedBooleanDocumentFrequencyDeterminer(this)).determineCounts(wordsWithDuplicate,
+                        definitions)[0].counts,
+                (new LeapfrogBooleanDocumentFrequencyDeterminer(this)).determineCounts(wordsWithDuplicate,
+                        definitions)[0].counts);
+    }
+
+    private String[] createWords() {
+        String words[] = new String[wordDocuments.length];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = Integer.toString(i);
+        }
+        return words;
+    }
+}
@@ -0,0 +1,200 @@
+/**
+ * This file is part of Palmetto.
+ *
+ * Palmetto is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Palmetto is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Palmetto.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.aksw.palmetto.prob.bd;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Random;
+
+import org.aksw.palmetto.data.CountedSubsets;
+import org.aksw.palmetto.data.SegmentationDefinition;
+import org.aksw.palmetto.prob.AbstractBooleanDocumentSupportingAdapterBasedTest;
+import org.aksw.palmetto.subsets.AnyAny;
+import org.aksw.palmetto.subsets.OneAll;
+import org.aksw.palmetto.subsets.OneOne;
+import org.aksw.palmetto.subsets.OnePreceding;
+import org.aksw.palmetto.subsets.OneSet;
+import org.aksw.palmetto.subsets.Segmentator;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import com.carrotsearch.hppc.BitSet;
+import com.carrotsearch.hppc.IntOpenHashSet;
+
+@RunWith(Parameterized.class)
+public class PackedBitSetBasedBooleanDocumentFrequencyDeterminerTest extends
+        AbstractBooleanDocumentSupportingAdapterBasedTest {
+
+    private static final int NUMBER_OF_RANDOM_WORDSETS = 50;
+    private static final int WORDS_PER_WORDSET = 8;
+    private static final int DOCUMENT_ID_RANGE = 5000;
+
+    @Parameters
+    public static Collection<Object[]> data() {
+        return Arrays.asList(new Object[][] {
+                /*
+                 * word0 1 1 1
+                 * 
+                 * word1 0 1 1
+                 * 
+                 * word2 0 0 1
+                 */
+                { new int[][] { { 0, 1, 2 }, { 1, 2 }, { 2 } }, new long[] { 0, 3, 2, 2, 1, 1, 1, 1 } },
+                /*
+                 * word0 1 1 0 0
+                 * 
+                 * word1 0 1 1 1
+                 * 
+                 * word2 0 0 1 1
+                 */
+                { new int[][] { { 0, 1 }, { 1, 2, 3 }, { 2, 3 } }, new long[] { 0, 2, 3, 1, 2, 0, 2, 0 } },
+                /*
+                 * word0 1 1 0 0
+                 * 
+                 * word1 0 1 1 0
+                 * 
+                 * word2 0 0 1 1
+                 * 
+                 * word3 1 1 0 1 (unsorted)
+                 */
+                { new int[][] { { 0, 1 }, { 1, 2 }, { 2, 3 }, { 3, 1, 0 } },
+                        new long[] { 0, 2, 2, 1, 2, 0, 1, 0, 3, 2, 1, 1, 1, 0, 0, 0 } } });
+    }
+
+    private long expectedCounts[];
+
+    public PackedBitSetBasedBooleanDocumentFrequencyDeterminerTest(int[][] wordDocuments, long[] expectedCounts) {
+        super(wordDocuments, 0);
+        this.expectedCounts = expectedCounts;
+    }
+
+    @Test
+    public void test() {
+        String words[] = createWords(wordDocuments.length);
+        BooleanDocumentFrequencyDeterminer freqDeterminer = new PackedBitSetBasedBooleanDocumentFrequencyDeterminer(
+                this);
+        CountedSubsets countedSubsets[] = freqDeterminer.determineCounts(new String[][] { words },
+                new SegmentationDefinition[] { (new AnyAny()).getSubsetDefinition(words.length) });
+        Assert.assertArrayEquals(expectedCounts, countedSubsets[0].counts);
+    }
+
+    /**
+     * Compares the needed counts with the counts of the list based determiner
+     * for random word sets (containing duplicate words) and several
+     * segmentations.
+     */
+    @Test
+    public void testRandomWordsets() {
+        int originalDocuments[][] = wordDocuments;
+        Random random = new Random(expectedCounts.length);
+        wordDocuments = createRandomDocuments(random, 2 * WORDS_PER_WORDSET);
+        try {
+            String wordsets[][] = new String[NUMBER_OF_RANDOM_WORDSETS][WORDS_PER_WORDSET];
+            for (int i = 0; i < wordsets.length; ++i) {
+                for (int j = 0; j < wordsets[i].length; ++j) {
+                    wordsets[i][j] = Integer.toString(random.nextInt(wordDocuments.length));
+                }
+            }
+            Segmentator segmentators[] = new Segmentator[] { new OneOne(), new OnePreceding(), new OneSet(),
+                    new OneAll(), new AnyAny() };
+            BooleanDocumentFrequencyDeterminer expectedDeterminer = new ListBasedBooleanDocumentFrequencyDeterminer(
+                    this);
+            PackedBitSetBasedBooleanDocumentFrequencyDeterminer determiner = new PackedBitSetBasedBooleanDocumentFrequencyDeterminer(
+                    this);
+            int minFrequencies[] = new int[] { 1, 100, 400 };
+            SegmentationDefinition definitions[] = new SegmentationDefinition[wordsets.length];
+            CountedSubsets expected[], counts[];
+            BitSet neededCounts;
+            for (int s = 0; s < segmentators.length; ++s) {
+                Arrays.fill(definitions, segmentators[s].getSubsetDefinition(WORDS_PER_WORDSET));
+                neededCounts = PackedBitSetBasedBooleanDocumentFrequencyDeterminer.getNeededCounts(definitions[0],
+                        WORDS_PER_WORDSET);
+                expected = expectedDeterminer.determineCounts(wordsets, definitions);
+                for (int m = 0; m < minFrequencies.length; ++m) {
+                    determiner.setMinFrequency(minFrequencies[m]);
+                    counts = determiner.determineCounts(wordsets, definitions);
+                    for (int i = 0; i < wordsets.length; ++i) {
+                        for (int j = 1; j < expected[i].counts.length; ++j) {
+                            if (neededCounts.get(j) || ((j & (j - 1)) == 0)) {
+                                if (expected[i].counts[j] >= minFrequencies[m]) {
+                                    Assert.assertEquals(expected[i].counts[j], counts[i].counts[j]);
+                                } else {
+                                    // counts below the minimum frequency might be set to 0
+                                    Assert.assertTrue(counts[i].counts[j] < minFrequencies[m]);
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        } finally {
+            wordDocuments = originalDocuments;
+        }
+    }
+
+    @Test
+    public void testEmptyWords() {
+        int originalDocuments[][] = wordDocuments;
+        wordDocuments = new int[][] { {}, { 1, 2 }, {} };
+        try {
+            CountedSubsets countedSubsets[] = new PackedBitSetBasedBooleanDocumentFrequencyDeterminer(this)
+                    .determineCounts(new String[][] { createWords(3) },
+                            new SegmentationDefinition[] { (new AnyAny()).getSubsetDefinition(3) });
+            Assert.assertArrayEquals(new long[] { 0, 0, 2, 0, 0, 0, 0, 0 }, countedSubsets[0].counts);
+        } finally {
+            wordDocuments = originalDocuments;
+        }
+    }
+
+    private static String[] createWords(int numberOfWords) {
+        String words[] = new String[numberOfWords];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = Integer.toString(i);
+        }
+        return words;
+    }
+
+    /**
+     * Creates random document lists. The words have different frequencies
+     * and some of them share a large part of their documents.
+     */
+    private static int[][] createRandomDocuments(Random random, int numberOfWords) {
+        int documents[][] = new int[numberOfWords][];
+        IntOpenHashSet documentsOfWord = new IntOpenHashSet();
+        int numberOfDocuments, previous[];
+        for (int w = 0; w < numberOfWords; ++w) {
+            documentsOfWord.clear();
+            numberOfDocuments = random.nextInt(DOCUMENT_ID_RANGE / 2);
+            for (int d = 0; d < numberOfDocuments; ++d) {
+                if ((w > 0) && random.nextBoolean()) {
+                    // take the document of a previous word
+                    previous = documents[random.nextInt(w)];
+                    if (previous.length > 0) {
+                        documentsOfWord.add(previous[random.nextInt(previous.length)]);
+                    }
+                } else {
+                    documentsOfWord.add(random.nextInt(DOCUMENT_ID_RANGE));
+                }
+            }
+            documents[w] = documentsOfWord.toArray();
+        }
+        return documents;
+    }
+}
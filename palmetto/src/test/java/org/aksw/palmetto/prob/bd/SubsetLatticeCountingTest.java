@@ -0,0 +1,161 @@
+/**
+ * This file is part of Palmetto.
+ *
+ * Palmetto is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Palmetto is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Palmetto.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.aksw.palmetto.prob.bd;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.aksw.palmetto.corpus.ArrayDocumentCursor;
+import org.aksw.palmetto.corpus.DocumentCursor;
+import org.aksw.palmetto.corpus.DocumentCursorSupportingAdapter;
+import org.aksw.palmetto.corpus.ResidentDocumentSets;
+import org.aksw.palmetto.data.CountedSubsets;
+import org.aksw.palmetto.data.SegmentationDefinition;
+import org.aksw.palmetto.data.SubsetLattice;
+import org.aksw.palmetto.prob.AbstractBooleanDocumentSupportingAdapterBasedTest;
+import org.aksw.palmetto.subsets.AllAll;
+import org.aksw.palmetto.subsets.AllOne;
+import org.aksw.palmetto.subsets.LatticeSupportingSegmentator;
+import org.aksw.palmetto.subsets.OneAll;
+import org.aksw.palmetto.subsets.OneOne;
+import org.aksw.palmetto.subsets.OnePreceding;
+import org.aksw.palmetto.subsets.OneSet;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.carrotsearch.hppc.IntOpenHashSet;
+
+/**
+ * Compares the counts of word sets that are defined by a {@link SubsetLattice}
+ * with the dense counts of the same word sets. The lattices are forced for
+ * small word sets to be able to determine all dense counts.
+ * 
+ * @author Michael R&ouml;der (roeder@informatik.uni-leipzig.de)
+ *
+ */
+public class SubsetLatticeCountingTest extends AbstractBooleanDocumentSupportingAdapterBasedTest implements
+        DocumentCursorSupportingAdapter {
+
+    private static final int NUMBER_OF_WORDSETS = 20;
+    private static final int WORDS_PER_WORDSET = 8;
+    private static final int NUMBER_OF_WORDS = 4 * WORDS_PER_WORDSET;
+    private static final int DOCUMENT_ID_RANGE = 2000;
+    private static final int MIN_FREQUENCY = 50;
+
+    public SubsetLatticeCountingTest() {
+        super(null, DOCUMENT_ID_RANGE);
+    }
+
+    @Override
+    public DocumentCursor getDocumentCursor(String word) {
+        int documents[] = wordDocuments[Integer.parseInt(word)];
+        return new ArrayDocumentCursor(documents, documents.length);
+    }
+
+    @Test
+    public void test() {
+        Random random = new Random(WORDS_PER_WORDSET);
+        wordDocuments = createRandomDocuments(random);
+        String wordsets[][] = new String[NUMBER_OF_WORDSETS][WORDS_PER_WORDSET];
+        for (int i = 0; i < wordsets.length; ++i) {
+            for (int j = 0; j < wordsets[i].length; ++j) {
+                wordsets[i][j] = Integer.toString(random.nextInt(NUMBER_OF_WORDS));
+            }
+        }
+        String words[] = new String[NUMBER_OF_WORDS];
+        int frequencies[] = new int[NUMBER_OF_WORDS];
+        for (int i = 0; i < words.length; ++i) {
+            words[i] = Integer.toString(i);
+            frequencies[i] = wordDocuments[i].length;
+        }
+        ResidentDocumentSets residentSets = ResidentDocumentSets.create(this, words, frequencies, DOCUMENT_ID_RANGE,
+                NUMBER_OF_WORDS / 4, 8L * DOCUMENT_ID_RANGE);
+
+        PackedBitSetBasedBooleanDocumentFrequencyDeterminer packedDeterminer = new PackedBitSetBasedBooleanDocumentFrequencyDeterminer(
+                this);
+        packedDeterminer.setMinFrequency(MIN_FREQUENCY);
+        HybridBooleanDocumentFrequencyDeterminer hybridDeterminer = new HybridBooleanDocumentFrequencyDeterminer(this,
+                residentSets);
+        hybridDeterminer.setMinFrequency(MIN_FREQUENCY);
+        BooleanDocumentFrequencyDeterminer determiners[] = new BooleanDocumentFrequencyDeterminer[] {
+                new ListBasedBooleanDocumentFrequencyDeterminer(this),
+                new BitSetBasedBooleanDocumentFrequencyDeterminer(this),
+                new LeapfrogBooleanDocumentFrequencyDeterminer(this), packedDeterminer, hybridDeterminer };
+        LatticeSupportingSegmentator segmentators[] = new LatticeSupportingSegmentator[] { new OneOne(),
+                new OnePreceding(), new OneSet(), new OneAll(), new AllOne(), new AllAll() };
+        ListBasedBooleanDocumentFrequencyDeterminer expectedDeterminer = new ListBasedBooleanDocumentFrequencyDeterminer(
+                this);
+        SegmentationDefinition denseDefinitions[] = new SegmentationDefinition[wordsets.length];
+        SegmentationDefinition latticeDefinitions[] = new SegmentationDefinition[wordsets.length];
+        CountedSubsets expected[], counts[];
+        for (int s = 0; s < segmentators.length; ++s) {
+            Arrays.fill(denseDefinitions, segmentators[s].getSubsetDefinition(WORDS_PER_WORDSET));
+            for (int i = 0; i < latticeDefinitions.length; ++i) {
+                latticeDefinitions[i] = segmentators[s].getSubsetDefinition(new SubsetLattice(WORDS_PER_WORDSET));
+            }
+            expected = expectedDeterminer.determineCounts(wordsets, denseDefinitions);
+            for (int d = 0; d < determiners.length; ++d) {
+                counts = determiners[d].determineCounts(wordsets, latticeDefinitions);
+                for (int i = 0; i < wordsets.length; ++i) {
+                    Assert.assertSame(latticeDefinitions[i].lattice, counts[i].lattice);
+                    compareCounts(expected[i].counts, counts[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Compares the count of every slot with the dense count of its words.
+     * Counts below the minimum frequency might have been skipped.
+     */
+    private static void compareCounts(long expectedCounts[], CountedSubsets counts) {
+        SubsetLattice lattice = counts.lattice;
+        Assert.assertEquals(lattice.size(), counts.counts.length);
+        int denseId;
+        long expected;
+        for (int slot = 0; slot < lattice.size(); ++slot) {
+            denseId = 0;
+            for (int word : lattice.getWords(slot)) {
+                denseId |= 1 << word;
+            }
+            expected = expectedCounts[denseId];
+            if (expected >= MIN_FREQUENCY) {
+                Assert.assertEquals(expected, counts.counts[slot]);
+            } else {
+                Assert.assertTrue(counts.counts[slot] < MIN_FREQUENCY);
+            }
+        }
+    }
+
+    private static int[][] createRandomDocuments(Random random) {
+        int documents[][] = new int[NUMBER_OF_WORDS][];
+        IntOpenHashSet documentsOfWord = new IntOpenHashSet();
+        int numberOfDocuments;
+        for (int w = 0; w < documents.length; ++w) {
+            documentsOfWord.clear();
+            // frequent words lead to large subsets that are above the minimum frequency
+            numberOfDocuments = random.nextInt(DOCUMENT_ID_RANGE);
+            while (documentsOfWord.assigned < numberOfDocuments) {
+                documentsOfWord.add(random.nextInt(DOCUMENT_ID_RANGE));
+            }
+            documents[w] = documentsOfWord.toArray();
+            // the postings of an index are sorted
+            Arrays.sort(documents[w]);
+        }
+        return documents;
+    }
+}
@@ -23,6 +23,7 @@ import java.util.Iterator;
 import java.util.Map;
 import java.util.Random;
 
+import org.aksw.palmetto.corpus.CorpusVocabulary;
 import org.aksw.palmetto.data.CountedSubsets;
 import org.aksw.palmetto.data.SegmentationDefinition;
 import org.aksw.palmetto.prob.FrequencyDeterminer;
@@ -43,6 +44,11 @@ public class FrequencyCachingDeterminerDecoratorTest implements FrequencyDetermi
 
     private static final int NUMBER_OF_TEST_INSTANCES = 1000;
     private static final int NUMBER_OF_REQUESTS = 100000;
+    /**
+     * The word ids of the test are the words themselves, i.e., the vocabulary
+     * is only handed over.
+     */
+    private static final CorpusVocabulary VOCABULARY = new CorpusVocabulary(new String[0]);
 
     @Parameters
     public static Collection<Object[]> data() {
@@ -50,8 +56,8 @@ public class FrequencyCachingDeterminerDecoratorTest implements FrequencyDetermi
                 { new FrequencyCachingDeterminerDecorator(null) } });
     }
 
-    private Map<WordSet, int[]> values = new HashMap<WordSet, int[]>();
-    private Map<WordSet, int[]> notRequested = new HashMap<WordSet, int[]>();
+    private Map<WordSet, long[]> values = new HashMap<WordSet, long[]>();
+    private Map<WordSet, long[]> notRequested = new HashMap<WordSet, long[]>();
     private FrequencyDeterminerDecorator cache;
     private Random rand;
 
@@ -59,7 +65,7 @@ public class FrequencyCachingDeterminerDecoratorTest implements FrequencyDetermi
         this.cache = cache;
         cache.setDeterminer(this);
         String words[];
-        int counts[];
+        long counts[];
         rand = new Random(System.currentTimeMillis());
         for (int i = 0; i < NUMBER_OF_TEST_INSTANCES; ++i) {
             words = new String[rand.nextInt(10) + 1];
@@ -68,9 +74,9 @@ public class FrequencyCachingDeterminerDecoratorTest implements FrequencyDetermi
             }
             Arrays.sort(words);
             if (!values.containsKey(words)) {
-                counts = new int[words.length];
+                counts = new long[words.length];
                 for (int j = 0; j < counts.length; ++j) {
-                    counts[j] = rand.nextInt();
+                    counts[j] = rand.nextLong();
                 }
                 values.put(new WordSet(words), counts);
                 notRequested.put(new WordSet(words.clone()), counts);
@@ -100,6 +106,85 @@ public class FrequencyCachingDeterminerDecoratorTest implements FrequencyDetermi
         }
     }
 
+    @Test
+    public void testWordIds() {
+        LOGGER.info("Testing word id cache...");
+        String wordset[];
+        int wordsets[][];
+        SegmentationDefinition[] definitions;
+        SegmentationDefinition definition = new SegmentationDefinition(new int[0], new int[0][0], new BitSet(0));
+        CountedSubsets result[];
+        for (int i = 0; i < NUMBER_OF_REQUESTS; ++i) {
+            wordsets = new int[rand.nextInt(5) + 1][];
+            definitions = new SegmentationDefinition[wordsets.length];
+            for (int j = 0; j < wordsets.length; ++j) {
+                // the words of the test are ints
+                wordset = chooseWordSet();
+                wordsets[j] = new int[wordset.length];
+                for (int k = 0; k < wordset.length; ++k) {
+                    wordsets[j][k] = Integer.parseInt(wordset[k]);
+                }
+                definitions[j] = definition;
+            }
+            result = cache.determineCounts(wordsets, VOCABULARY, definitions);
+            Assert.assertEquals(wordsets.length, result.length);
+            for (int j = 0; j < result.length; ++j) {
+                Assert.assertArrayEquals(values.get(new WordSet(toWords(wordsets[j]))), result[j].counts);
+            }
+        }
+    }
+
+    /**
+     * Small dense word ids lead to colliding hash codes, e.g., {0,31} and
+     * {1,0}. The cache must not return the counts of the other word set.
+     */
+    @Test
+    public void testCollidingWordIds() throws Exception {
+        int wordsets[][] = new int[][] { { 0, 31 }, { 1, 0 } };
+        Assert.assertEquals(Arrays.hashCode(wordsets[0]), Arrays.hashCode(wordsets[1]));
+        long counts[][] = new long[][] { { 1, 2 }, { 3, 4 } };
+        for (int i = 0; i < wordsets.length; ++i) {
+            notRequested.put(new WordSet(toWords(wordsets[i])), counts[i]);
+        }
+        // use a new decorator since the cache has been filled by other tests
+        FrequencyDeterminerDecorator cache = this.cache.getClass().getConstructor(FrequencyDeterminer.class)
+                .newInstance(this);
+        SegmentationDefinition definition = new SegmentationDefinition(new int[0], new int[0][0], new BitSet(0));
+        SegmentationDefinition definitions[] = new SegmentationDefinition[] { definition };
+        for (int i = 0; i < wordsets.length; ++i) {
+            Assert.assertArrayEquals(counts[i],
+                    cache.determineCounts(new int[][] { wordsets[i] }, VOCABULARY, definitions)[0].counts);
+        }
+        // the second request has to be answered from the cache
+        for (int i = 0; i < wordsets.length; ++i) {
+            Assert.assertArrayEquals(counts[i],
+                    cache.determineCounts(new int[][] { wordsets[i] }, VOCABULARY, definitions)[0].counts);
+        }
+    }
+
+    @Override
+    public CountedSubsets[] determineCounts(int[][] wordsets, CorpusVocabulary vocabulary,
+            SegmentationDefinition[] definitions) {
+        String words[][] = new String[wordsets.length][];
+        for (int i = 0; i < wordsets.length; ++i) {
+            words[i] = toWords(wordsets[i]);
+        }
+        return determineCounts(words, definitions);
+    }
+
+    @Override
+    public void checkVocabulary(CorpusVocabulary vocabulary) {
+        // the ids of the test are always valid
+    }
+
+    protected String[] toWords(int wordIds[]) {
+        String words[] = new String[wordIds.length];
+        for (int i = 0; i < wordIds.length; ++i) {
+            words[i] = Integer.toString(wordIds[i]);
+        }
+        return words;
+    }
+
     @Override
     public CountedSubsets[] determineCounts(String[][] wordsets, SegmentationDefinition[] definitions) {
         CountedSubsets countedSubsets[] = new CountedSubsets[definitions.length];
@@ -0,0 +1,129 @@
+/**
+ * This file is part of Palmetto.
+ *
+ * Palmetto is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Palmetto is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Palmetto.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.aksw.palmetto.prob.decorator;
+
+import java.io.File;
+import java.util.Random;
+
+import org.aksw.palmetto.Palmetto;
+import org.aksw.palmetto.corpus.PairCounts;
+import org.aksw.palmetto.corpus.lucene.RandomIndexes;
+import org.aksw.palmetto.corpus.lucene.WindowSupportingLuceneCorpusAdapter;
+import org.aksw.palmetto.corpus.lucene.creation.PairCountsCreator;
+import org.aksw.palmetto.data.CountedSubsets;
+import org.aksw.palmetto.data.SegmentationDefinition;
+import org.aksw.palmetto.prob.FrequencyDeterminer;
+import org.aksw.palmetto.prob.window.BooleanSlidingWindowFrequencyDeterminer;
+import org.aksw.palmetto.subsets.OneOne;
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Compares the time needed to answer one-one word set requests using the
+ * Lucene index and using precomputed pair counts.
+ * 
+ * @author Michael R&ouml;der (roeder@informatik.uni-leipzig.de)
+ *
+ */
+public class PairCountsDeterminerDecoratorPerformanceTest {
+
+    private static final int NUMBER_OF_DOCUMENTS = 5000;
+    private static final int VOCABULARY_SIZE = 2000;
+    private static final int MIN_DOCUMENT_LENGTH = 50;
+    private static final int MAX_DOCUMENT_LENGTH = 200;
+    private static final int NUMBER_OF_SELECTED_WORDS = 500;
+    private static final int NUMBER_OF_WORDSETS = 200;
+    private static final int WORDS_PER_WORDSET = 10;
+    private static final int WINDOW_SIZE = 10;
+
+    @Test
+    public void test() throws Exception {
+        Random random = new Random(23);
+        File indexDir = RandomIndexes.createRandomIndex(random,
+                NUMBER_OF_DOCUMENTS, VOCABULARY_SIZE, MIN_DOCUMENT_LENGTH, MAX_DOCUMENT_LENGTH);
+        String indexPath = indexDir.getAbsolutePath();
+        File pairCountsFile = new File(indexPath + ".pairs");
+        WindowSupportingLuceneCorpusAdapter adapter = null;
+        try {
+            long time = System.currentTimeMillis();
+            PairCountsCreator creator = new PairCountsCreator(Palmetto.DEFAULT_TEXT_INDEX_FIELD_NAME,
+                    Palmetto.DEFAULT_DOCUMENT_LENGTH_INDEX_FIELD_NAME, new int[] { WINDOW_SIZE });
+            String words[] = PairCountsCreator.selectFrequentWords(indexPath, Palmetto.DEFAULT_TEXT_INDEX_FIELD_NAME,
+                    NUMBER_OF_SELECTED_WORDS);
+            Assert.assertTrue(creator.createPairCounts(indexPath, words, pairCountsFile.getAbsolutePath()));
+            long creationTime = System.currentTimeMillis() - time;
+            PairCounts pairCounts = PairCounts.read(pairCountsFile.getAbsolutePath());
+            Assert.assertNotNull(pairCounts);
+
+            adapter = WindowSupportingLuceneCorpusAdapter.create(indexPath, Palmetto.DEFAULT_TEXT_INDEX_FIELD_NAME,
+                    Palmetto.DEFAULT_DOCUMENT_LENGTH_INDEX_FIELD_NAME);
+            // all word sets can be answered using the pair counts
+            String wordsets[][] = new String[NUMBER_OF_WORDSETS][WORDS_PER_WORDSET];
+            for (int i = 0; i < wordsets.length; ++i) {
+                for (int j = 0; j < wordsets[i].length; ++j) {
+                    wordsets[i][j] = words[random.nextInt(words.length)];
+                }
+            }
+            SegmentationDefinition definitions[] = new SegmentationDefinition[wordsets.length];
+            for (int i = 0; i < definitions.length; ++i) {
+                definitions[i] = (new OneOne()).getSubsetDefinition(WORDS_PER_WORDSET);
+            }
+            BooleanSlidingWindowFrequencyDeterminer determiner = new BooleanSlidingWindowFrequencyDeterminer(adapter,
+                    WINDOW_SIZE);
+            PairCountsDeterminerDecorator decorator = new PairCountsDeterminerDecorator(determiner, pairCounts);
+            // warm up
+            run(determiner, wordsets, definitions);
+            run(decorator, wordsets, definitions);
+
+            time = System.nanoTime();
+            CountedSubsets expected[] = run(determiner, wordsets, definitions);
+            long luceneTime = System.nanoTime() - time;
+            time = System.nanoTime();
+            CountedSubsets counts[] = run(decorator, wordsets, definitions);
+            long pairCountsTime = System.nanoTime() - time;
+
+            System.out.println("Pair counts (" + NUMBER_OF_SELECTED_WORDS + " words, "
+                    + pairCounts.getNumberOfPairs(WINDOW_SIZE)
+                    + " pairs) created in " + creationTime + " ms. Time per word set Lucene: "
+                    + (luceneTime / (1000 * NUMBER_OF_WORDSETS)) + " us\tpair counts: "
+                    + (pairCountsTime / (1000 * NUMBER_OF_WORDSETS)) + " us");
+            Assert.assertEquals(0, decorator.getNumberOfDelegatedWordsets());
+            int mask;
+            for (int i = 0; i < expected.length; ++i) {
+                for (int j = 0; j < WORDS_PER_WORDSET; ++j) {
+                    Assert.assertEquals(expected[i].counts[1 << j], counts[i].counts[1 << j]);
+                    for (int k = j + 1; k < WORDS_PER_WORDSET; ++k) {
+                        mask = (1 << j) | (1 << k);
+                        Assert.assertEquals(expected[i].counts[mask], counts[i].counts[mask]);
+                    }
+                }
+            }
+        } finally {
+            if (adapter != null) {
+                adapter.close();
+            }
+            FileUtils.deleteQuietly(pairCountsFile);
+            RandomIndexes.deleteIndex(indexDir);
+        }
+    }
+
+    protected CountedSubsets[] run(FrequencyDeterminer determiner, String wordsets[][],
+            SegmentationDefinition definitions[]) {
+        return determiner.determineCounts(wordsets, definitions);
+    }
+}
@@ -0,0 +1,235 @@
+/**
+ * This file is part of Palmetto.
+ *
+ * Palmetto is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Palmetto is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Palmetto.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.aksw.palmetto.prob.decorator;
+
+import java.io.File;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.aksw.palmetto.Palmetto;
+import org.aksw.palmetto.corpus.PairCounts;
+import org.aksw.palmetto.corpus.lucene.RandomIndexes;
+import org.aksw.palmetto.corpus.lucene.WindowSupportingLuceneCorpusAdapter;
+import org.aksw.palmetto.corpus.lucene.creation.PairCountsCreator;
+import org.aksw.palmetto.corpus.lucene.creation.PositionStoringLuceneIndexCreator;
+import org.aksw.palmetto.data.CountedSubsets;
+import org.aksw.palmetto.data.SegmentationDefinition;
+import org.aksw.palmetto.prob.FrequencyDeterminer;
+import org.aksw.palmetto.prob.bd.LeapfrogBooleanDocumentFrequencyDeterminer;
+import org.aksw.palmetto.prob.window.BooleanSlidingWindowFrequencyDeterminer;
+import org.aksw.palmetto.subsets.OneAll;
+import org.aksw.palmetto.subsets.OneOne;
+import org.aksw.palmetto.subsets.Segmentator;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PairCountsDeterminerDecoratorTest {
+
+    private static final int VOCABULARY_SIZE = 200;
+    private static final int NUMBER_OF_SELECTED_WORDS = 30;
+    private static final int WINDOW_SIZE = 10;
+    private static final int NUMBER_OF_WORDSETS = 50;
+    private static final int WORDS_PER_WORDSET = 5;
+    private static final int MIN_COUNT = 5;
+
+    private File indexDir;
+    private File pairCountsFile;
+    private WindowSupportingLuceneCorpusAdapter adapter;
+    private PairCounts pairCounts;
+    private String wordsets[][];
+
+    @Before
+    public void prepare() {
+        Random random = new Random(17);
+        indexDir = RandomIndexes.createRandomIndex(random, 500, VOCABULARY_SIZE, 1, 100);
+        String indexPath = indexDir.getAbsolutePath();
+        pairCountsFile = new File(indexPath + ".pairs");
+        PairCountsCreator creator = new PairCountsCreator(Palmetto.DEFAULT_TEXT_INDEX_FIELD_NAME,
+                Palmetto.DEFAULT_DOCUMENT_LENGTH_INDEX_FIELD_NAME, new int[] { WINDOW_SIZE });
+        try {
+            Assert.assertTrue(creator.createPairCounts(indexPath, PairCountsCreator.selectFrequentWords(indexPath,
+                    Palmetto.DEFAULT_TEXT_INDEX_FIELD_NAME, NUMBER_OF_SELECTED_WORDS), pairCountsFile
+                    .getAbsolutePath()));
+            adapter = WindowSupportingLuceneCorpusAdapter.create(indexPath, Palmetto.DEFAULT_TEXT_INDEX_FIELD_NAME,
+                    Palmetto.DEFAULT_DOCUMENT_LENGTH_INDEX_FIELD_NAME);
+        } catch (Exception e) {
+            Assert.fail(e.toString());
+        }
+        pairCounts = PairCounts.read(pairCountsFile.getAbsolutePath());
+        Assert.assertNotNull(pairCounts);
+        // some of the word sets contain words that are not part of the pair counts
+        wordsets = RandomIndexes.createRandomWordsets(random, NUMBER_OF_WORDSETS, WORDS_PER_WORDSET, VOCABULARY_SIZE);
+    }
+
+    @After
+    public void cleanUp() {
+        if (adapter != null) {
+            adapter.close();
+        }
+        String indexPath = indexDir.getAbsolutePath();
+        FileUtils.deleteQuietly(pairCountsFile);
+        RandomIndexes.deleteIndex(indexDir);
+    }
+
+    @Test
+    public void testSlidingWindow() {
+        PairCountsDeterminerDecorator decorator = new PairCountsDeterminerDecorator(
+                new BooleanSlidingWindowFrequencyDeterminer(adapter, WINDOW_SIZE), pairCounts);
+        compare(new BooleanSlidingWindowFrequencyDeterminer(adapter, WINDOW_SIZE), decorator, new OneOne());
+        Assert.assertTrue(decorator.getNumberOfAnsweredWordsets() > 0);
+        Assert.assertTrue(decorator.getNumberOfDelegatedWordsets() > 0);
+        Assert.assertEquals(NUMBER_OF_WORDSETS,
+                decorator.getNumberOfAnsweredWordsets() + decorator.getNumberOfDelegatedWordsets());
+        Assert.assertEquals("P_sw" + WINDOW_SIZE, decorator.getSlidingWindowModelName());
+    }
+
+    @Test
+    public void testBooleanDocument() {
+        PairCountsDeterminerDecorator decorator = new PairCountsDeterminerDecorator(
+                new LeapfrogBooleanDocumentFrequencyDeterminer(adapter), pairCounts);
+        Assert.assertEquals(adapter.getNumberOfDocuments(), decorator.getNumberOfDocuments());
+        compare(new LeapfrogBooleanDocumentFrequencyDeterminer(adapter), decorator, new OneOne());
+        Assert.assertTrue(decorator.getNumberOfAnsweredWordsets() > 0);
+    }
+
+    @Test
+    public void testDecoratorChain() {
+        // the model is determined based on the determiner at the end of the chain
+        PairCountsDeterminerDecorator decorator = new PairCountsDeterminerDecorator(
+                new FrequencyCachingDeterminerDecorator(new BooleanSlidingWindowFrequencyDeterminer(adapter,
+                        WINDOW_SIZE)), pairCounts);
+        compare(new BooleanSlidingWindowFrequencyDeterminer(adapter, WINDOW_SIZE), decorator, new OneOne());
+        Assert.assertTrue(decorator.getNumberOfAnsweredWordsets() > 0);
+    }
+
+    @Test
+    public void testDelegation() {
+        // segmentations with larger subsets are delegated
+        PairCountsDeterminerDecorator decorator = new PairCountsDeterminerDecorator(
+                new BooleanSlidingWindowFrequencyDeterminer(adapter, WINDOW_SIZE), pairCounts);
+        compare(new BooleanSlidingWindowFrequencyDeterminer(adapter, WINDOW_SIZE), decorator, new OneAll());
+        Assert.assertEquals(0, decorator.getNumberOfAnsweredWordsets());
+        Assert.assertEquals(NUMBER_OF_WORDSETS, decorator.getNumberOfDelegatedWordsets());
+
+        // window sizes that are not part of the pair counts are delegated
+        decorator = new PairCountsDeterminerDecorator(new BooleanSlidingWindowFrequencyDeterminer(adapter,
+                WINDOW_SIZE + 1), pairCounts);
+        compare(new BooleanSlidingWindowFrequencyDeterminer(adapter, WINDOW_SIZE + 1), decorator, new OneOne());
+        Assert.assertEquals(0, decorator.getNumberOfAnsweredWordsets());
+        // changing the window size of the decorator changes the model
+        decorator.setWindowSize(WINDOW_SIZE);
+        compare(new BooleanSlidingWindowFrequencyDeterminer(adapter, WINDOW_SIZE), decorator, new OneOne());
+        Assert.assertTrue(decorator.getNumberOfAnsweredWordsets() > 0);
+    }
+
+    @Test
+    public void testMismatchIsCheckedOnce() throws Exception {
+        final AtomicInteger checks = new AtomicInteger();
+        PairCountsDeterminerDecorator decorator = new PairCountsDeterminerDecorator(
+                new BooleanSlidingWindowFrequencyDeterminer(adapter, WINDOW_SIZE), pairCounts) {
+            @Override
+            protected int checkModel(PairCounts pairCounts, int model, long total, int minFrequency) {
+                checks.incrementAndGet();
+                return super.checkModel(pairCounts, model, total, minFrequency);
+            }
+        };
+        compare(new BooleanSlidingWindowFrequencyDeterminer(adapter, WINDOW_SIZE), decorator, new OneOne());
+        Assert.assertTrue(decorator.getNumberOfAnsweredWordsets() > 0);
+        Assert.assertEquals(1, checks.get());
+
+        // after appending documents, the pair counts do not match the corpus anymore
+        PositionStoringLuceneIndexCreator creator = new PositionStoringLuceneIndexCreator(
+                Palmetto.DEFAULT_TEXT_INDEX_FIELD_NAME, Palmetto.DEFAULT_DOCUMENT_LENGTH_INDEX_FIELD_NAME);
+        Assert.assertTrue(creator.appendToIndex(indexDir,
+                RandomIndexes.createRandomDocuments(new Random(19), 50, VOCABULARY_SIZE, 1, 100).iterator()));
+        Assert.assertTrue(adapter.reopen());
+        long answered = decorator.getNumberOfAnsweredWordsets();
+        for (int i = 0; i < 3; ++i) {
+            compare(new BooleanSlidingWindowFrequencyDeterminer(adapter, WINDOW_SIZE), decorator, new OneOne());
+        }
+        Assert.assertEquals(answered, decorator.getNumberOfAnsweredWordsets());
+        // the mismatch is detected (and logged) once
+        Assert.assertEquals(2, checks.get());
+    }
+
+    @Test
+    public void testMinCount() throws Exception {
+        // pair counts that do not contain the rare pairs
+        File prunedFile = new File(indexDir.getAbsolutePath() + ".pruned.pairs");
+        try {
+            PairCountsCreator creator = new PairCountsCreator(Palmetto.DEFAULT_TEXT_INDEX_FIELD_NAME,
+                    Palmetto.DEFAULT_DOCUMENT_LENGTH_INDEX_FIELD_NAME, new int[] { WINDOW_SIZE });
+            creator.setMinCount(MIN_COUNT);
+            Assert.assertTrue(creator.createPairCounts(indexDir.getAbsolutePath(), PairCountsCreator
+                    .selectFrequentWords(indexDir.getAbsolutePath(), Palmetto.DEFAULT_TEXT_INDEX_FIELD_NAME,
+                            NUMBER_OF_SELECTED_WORDS), prunedFile.getAbsolutePath()));
+            PairCounts prunedCounts = PairCounts.read(prunedFile.getAbsolutePath());
+            Assert.assertEquals(MIN_COUNT, prunedCounts.getMinCount());
+
+            // the default minimum frequency needs exact counts, i.e., all requests are delegated
+            PairCountsDeterminerDecorator decorator = new PairCountsDeterminerDecorator(
+                    new BooleanSlidingWindowFrequencyDeterminer(adapter, WINDOW_SIZE), prunedCounts);
+            compare(new BooleanSlidingWindowFrequencyDeterminer(adapter, WINDOW_SIZE), decorator, new OneOne());
+            Assert.assertEquals(0, decorator.getNumberOfAnsweredWordsets());
+
+            // a supplier that ignores counts below the minimum count can use the pruned counts
+            decorator.setMinFrequency(MIN_COUNT);
+            decorator.determineCounts(wordsets, createDefinitions(new OneOne()));
+            Assert.assertTrue(decorator.getNumberOfAnsweredWordsets() > 0);
+            decorator = new PairCountsDeterminerDecorator(new BooleanSlidingWindowFrequencyDeterminer(adapter,
+                    WINDOW_SIZE), prunedCounts, MIN_COUNT - 1);
+            decorator.determineCounts(wordsets, createDefinitions(new OneOne()));
+            Assert.assertEquals(0, decorator.getNumberOfAnsweredWordsets());
+        } finally {
+            FileUtils.deleteQuietly(prunedFile);
+        }
+    }
+
+    private static SegmentationDefinition[] createDefinitions(Segmentator segmentator) {
+        SegmentationDefinition definitions[] = new SegmentationDefinition[NUMBER_OF_WORDSETS];
+        for (int i = 0; i < definitions.length; ++i) {
+            definitions[i] = segmentator.getSubsetDefinition(WORDS_PER_WORDSET);
+        }
+        return definitions;
+    }
+
+    /**
+     * Compares the counts needed by the given segmentator.
+     */
+    private void compare(FrequencyDeterminer expectedDeterminer, FrequencyDeterminer determiner,
+            Segmentator segmentator) {
+        SegmentationDefinition definitions[] = createDefinitions(segmentator);
+        CountedSubsets expected[] = expectedDeterminer.determineCounts(wordsets, definitions);
+        CountedSubsets counts[] = determiner.determineCounts(wordsets, definitions);
+        int segment, condition;
+        for (int i = 0; i < expected.length; ++i) {
+            for (int j = 0; j < definitions[i].segments.length; ++j) {
+                segment = definitions[i].segments[j];
+                Assert.assertEquals(expected[i].counts[segment], counts[i].counts[segment]);
+                for (int k = 0; k < definitions[i].conditions[j].length; ++k) {
+                    condition = definitions[i].conditions[j][k];
+                    Assert.assertEquals(expected[i].counts[condition], counts[i].counts[condition]);
+                    Assert.assertEquals(expected[i].counts[segment | condition],
+                            counts[i].counts[segment | condition]);
+                }
+            }
+        }
+    }
+}
@@ -16,6 +16,7 @@
  */
 package org.aksw.palmetto.vector;
 
+import org.aksw.palmetto.corpus.CorpusVocabulary;
 import org.aksw.palmetto.data.SegmentationDefinition;
 import org.aksw.palmetto.data.SubsetProbabilities;
 import org.aksw.palmetto.data.SubsetVectors;
@@ -71,6 +72,17 @@ public abstract class AbstractVectorCreatorTest implements ProbabilityEstimator
         return subsetProbs;
     }
 
+    @Override
+    public SubsetProbabilities[] getProbabilities(int[][] wordsets, CorpusVocabulary vocabulary,
+            SegmentationDefinition[] definitions) {
+        SubsetProbabilities subsetProbs[] = new SubsetProbabilities[wordsets.length];
+        for (int i = 0; i < wordsets.length; ++i) {
+            subsetProbs[i] = new SubsetProbabilities(definitions[i].segments, definitions[i].conditions,
+                    probabilities[i]);
+        }
+        return subsetProbs;
+    }
+
     @Override
     public FrequencyDeterminer getFrequencyDeterminer() {
         throw new IllegalAccessError("This method shouldn't be accessed. Therefore it have not been implemented.");
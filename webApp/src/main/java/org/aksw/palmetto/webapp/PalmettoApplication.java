@@ -16,26 +16,27 @@
  */
 package org.aksw.palmetto.webapp;
 
-import java.nio.ByteBuffer;
-import java.nio.IntBuffer;
+import java.util.Map;
 
 import javax.annotation.PostConstruct;
-import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
 
 import org.aksw.palmetto.Coherence;
 import org.aksw.palmetto.corpus.BooleanDocumentSupportingAdapter;
+import org.aksw.palmetto.corpus.VersionSupportingAdapter;
 import org.aksw.palmetto.corpus.WindowSupportingAdapter;
+import org.aksw.palmetto.corpus.remote.DocumentListCodec;
 import org.aksw.palmetto.webapp.config.PalmettoConfiguration;
-import org.aksw.palmetto.webapp.config.RootConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 
-import com.carrotsearch.hppc.IntOpenHashSet;
+import com.carrotsearch.hppc.IntArrayList;
 
 @Controller
 public class PalmettoApplication {
@@ -49,7 +50,15 @@ public class PalmettoApplication {
 
     private static final int GC_TRIGGER = 10;
 
+    /**
+     * The adapter and the coherences are the beans of the
+     * {@link org.aksw.palmetto.webapp.config.RootConfig}, i.e., the caches and
+     * resident document sets are created only once.
+     */
+    @Autowired
     protected WindowSupportingAdapter luceneAdapter;
+    @Resource(name = "coherences")
+    protected Map<String, Coherence> coherences;
     protected Coherence caCoherence;
     protected Coherence cpCoherence;
     protected Coherence cvCoherence;
@@ -72,18 +81,12 @@ public class PalmettoApplication {
 
     @PostConstruct
     public void init() throws Exception {
-        luceneAdapter = RootConfig.createLuceneAdapter();
-        caCoherence = RootConfig.createCACoherence(luceneAdapter);
-        cpCoherence = RootConfig.createCPCoherence(luceneAdapter);
-        cvCoherence = RootConfig.createCVCoherence(luceneAdapter);
-        npmiCoherence = RootConfig.createNPMICoherence(luceneAdapter);
-        uciCoherence = RootConfig.createUCICoherence(luceneAdapter);
-        umassCoherence = RootConfig.createUMassCoherence(luceneAdapter);
-    }
-
-    @PreDestroy
-    public void close() {
-        luceneAdapter.close();
+        caCoherence = coherences.get("ca");
+        cpCoherence = coherences.get("cp");
+        cvCoherence = coherences.get("cv");
+        npmiCoherence = coherences.get("npmi");
+        uciCoherence = coherences.get("uci");
+        umassCoherence = coherences.get("umass");
     }
 
     @RequestMapping(value = "ca")
@@ -144,33 +147,46 @@ public class PalmettoApplication {
         }
     }
 
-    @RequestMapping(value = "df")
-    public ResponseEntity<byte[]> requestDocFreq(@RequestParam(value = "words") String words) {
+    /**
+     * Returns the ids of the documents containing the given words using the
+     * format of the {@link DocumentListCodec}. The ids of a single word are
+     * sorted.
+     */
+    @RequestMapping(value = DocumentListCodec.DOCUMENTS_SERVICE_PATH)
+    public ResponseEntity<byte[]> requestDocFreq(
+            @RequestParam(value = DocumentListCodec.WORDS_PARAMETER_NAME) String words) {
         if (luceneAdapter instanceof BooleanDocumentSupportingAdapter) {
-            String array[] = words.split(WORD_SEPARATOR);
-            IntOpenHashSet documentIds = new IntOpenHashSet();
-            IntBuffer buffers[] = new IntBuffer[array.length];
-            int completeLength = 0;
+            String array[] = DocumentListCodec.splitWords(words);
+            IntArrayList documents[] = new IntArrayList[array.length];
             for (int j = 0; j < array.length; ++j) {
-                documentIds.clear();
-                ((BooleanDocumentSupportingAdapter) luceneAdapter).getDocumentsWithWordAsSet(array[j], documentIds);
-                completeLength += (4 * documentIds.size()) + 4;
-                buffers[j] = IntBuffer.allocate(documentIds.size());
-                if (documentIds.size() > 0) {
-                    for (int i = 0; i < documentIds.keys.length; ++i) {
-                        if (documentIds.allocated[i]) {
-                            buffers[j].put(documentIds.keys[i]);
-                        }
-                    }
-                }
+                documents[j] = new IntArrayList();
+                ((BooleanDocumentSupportingAdapter) luceneAdapter).getDocumentsWithWord(array[j], documents[j]);
             }
-            ByteBuffer response = ByteBuffer.allocate(completeLength);
-            IntBuffer intView = response.asIntBuffer();
-            for (int j = 0; j < buffers.length; ++j) {
-                intView.put(buffers[j].capacity());
-                intView.put(buffers[j].array());
-            }
-            return new ResponseEntity<byte[]>(response.array(), HttpStatus.OK);
+            return new ResponseEntity<byte[]>(DocumentListCodec.encode(documents), HttpStatus.OK);
+        } else {
+            return new ResponseEntity<>(HttpStatus.NOT_IMPLEMENTED);
+        }
+    }
+
+    @RequestMapping(value = DocumentListCodec.NUMBER_OF_DOCUMENTS_SERVICE_PATH)
+    public ResponseEntity<String> requestNumberOfDocuments() {
+        if (luceneAdapter instanceof BooleanDocumentSupportingAdapter) {
+            return new ResponseEntity<String>(Integer.toString(((BooleanDocumentSupportingAdapter) luceneAdapter)
+                    .getNumberOfDocuments()), HttpStatus.OK);
+        } else {
+            return new ResponseEntity<>(HttpStatus.NOT_IMPLEMENTED);
+        }
+    }
+
+    /**
+     * Returns the version of the corpus which changes every time the index is
+     * changed, e.g., after it has been reopened.
+     */
+    @RequestMapping(value = DocumentListCodec.CORPUS_VERSION_SERVICE_PATH)
+    public ResponseEntity<String> requestCorpusVersion() {
+        if (luceneAdapter instanceof VersionSupportingAdapter) {
+            return new ResponseEntity<String>(Long.toString(((VersionSupportingAdapter) luceneAdapter)
+                    .getCorpusVersion()), HttpStatus.OK);
         } else {
             return new ResponseEntity<>(HttpStatus.NOT_IMPLEMENTED);
         }
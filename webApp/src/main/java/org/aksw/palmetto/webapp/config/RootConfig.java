@@ -32,6 +32,7 @@
  */
 package org.aksw.palmetto.webapp.config;
 
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -45,10 +46,18 @@ import org.aksw.palmetto.calculations.direct.LogCondProbConfirmationMeasure;
 import org.aksw.palmetto.calculations.direct.LogRatioConfirmationMeasure;
 import org.aksw.palmetto.calculations.direct.NormalizedLogRatioConfirmationMeasure;
 import org.aksw.palmetto.calculations.indirect.CosinusConfirmationMeasure;
+import org.aksw.palmetto.corpus.BooleanDocumentSupportingAdapter;
 import org.aksw.palmetto.corpus.CorpusAdapter;
+import org.aksw.palmetto.corpus.ResidentDocumentSets;
 import org.aksw.palmetto.corpus.WindowSupportingAdapter;
+import org.aksw.palmetto.corpus.decorator.PositionsCachingAdapterDecorator;
+import org.aksw.palmetto.corpus.decorator.PostingListCachingAdapterDecorator;
+import org.aksw.palmetto.corpus.lucene.DirectoryMode;
+import org.aksw.palmetto.corpus.lucene.LuceneCorpusAdapter;
+import org.aksw.palmetto.corpus.lucene.ReopenListener;
 import org.aksw.palmetto.corpus.lucene.WindowSupportingLuceneCorpusAdapter;
 import org.aksw.palmetto.prob.bd.BooleanDocumentProbabilitySupplier;
+import org.aksw.palmetto.prob.bd.HybridBooleanDocumentFrequencyDeterminer;
 import org.aksw.palmetto.prob.window.BooleanSlidingWindowFrequencyDeterminer;
 import org.aksw.palmetto.prob.window.ContextWindowFrequencyDeterminer;
 import org.aksw.palmetto.prob.window.WindowBasedProbabilityEstimator;
@@ -88,8 +97,13 @@ public class RootConfig {
     private static final String UCI_WINDOW_SIZE_PROPERTY_KEY = "org.aksw.palmetto.webapp.resources.UCIResource.windowSize";
 
     private static final String UMASS_REQUEST_PATH = "umass";
+    private static final String UMASS_CACHE_SIZE_PROPERTY_KEY = "org.aksw.palmetto.webapp.resources.UMassResource.cacheSize";
+    private static final String UMASS_RESIDENT_SETS_SIZE_PROPERTY_KEY = "org.aksw.palmetto.webapp.resources.UMassResource.residentSetsSize";
+    private static final String UMASS_DENSE_WORDS_PROPERTY_KEY = "org.aksw.palmetto.webapp.resources.UMassResource.denseWords";
 
     private static final String INDEX_PATH_PROPERTY_KEY = "org.aksw.palmetto.webapp.resources.AbstractCoherenceResource.indexPath";
+    private static final String POSITIONS_CACHE_SIZE_PROPERTY_KEY = "org.aksw.palmetto.webapp.resources.AbstractCoherenceResource.positionsCacheSize";
+    private static final String DIRECTORY_MODE_PROPERTY_KEY = "org.aksw.palmetto.webapp.resources.AbstractCoherenceResource.directoryMode";
 
     static @Bean public WindowSupportingAdapter createLuceneAdapter() throws Exception {
         String indexPath = PalmettoConfiguration.getInstance().getString(INDEX_PATH_PROPERTY_KEY);
@@ -99,21 +113,52 @@ public class RootConfig {
             throw new IllegalStateException(errormsg);
         }
         return WindowSupportingLuceneCorpusAdapter.create(indexPath, Palmetto.DEFAULT_TEXT_INDEX_FIELD_NAME,
-                Palmetto.DEFAULT_DOCUMENT_LENGTH_INDEX_FIELD_NAME);
+                Palmetto.DEFAULT_DOCUMENT_LENGTH_INDEX_FIELD_NAME, getDirectoryMode());
+    }
+
+    public static DirectoryMode getDirectoryMode() {
+        String modeName = PalmettoConfiguration.getInstance().getString(DIRECTORY_MODE_PROPERTY_KEY);
+        if (modeName == null) {
+            return DirectoryMode.DEFAULT;
+        }
+        try {
+            return DirectoryMode.valueOf(modeName.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            LOGGER.warn("Couldn't parse \"{}\"=\"{}\". Using default directory mode={}.",
+                    new Object[] { DIRECTORY_MODE_PROPERTY_KEY, modeName, DirectoryMode.DEFAULT });
+            return DirectoryMode.DEFAULT;
+        }
     }
 
     @Bean(name="coherences")
     static public Map<String, Coherence> createCoherences(WindowSupportingAdapter corpusAdapter) {
         Map<String, Coherence> coherences = new HashMap<String, Coherence>();
-        coherences.put(CA_REQUEST_PATH, createCACoherence(corpusAdapter));
-        coherences.put(CP_REQUEST_PATH, createCPCoherence(corpusAdapter));
-        coherences.put(CV_REQUEST_PATH, createCVCoherence(corpusAdapter));
-        coherences.put(NPMI_REQUEST_PATH, createNPMICoherence(corpusAdapter));
-        coherences.put(UCI_REQUEST_PATH, createUCICoherence(corpusAdapter));
+        // all window based coherences share the same positions cache
+        WindowSupportingAdapter windowAdapter = createPositionsCachingAdapter(corpusAdapter);
+        coherences.put(CA_REQUEST_PATH, createCACoherence(windowAdapter));
+        coherences.put(CP_REQUEST_PATH, createCPCoherence(windowAdapter));
+        coherences.put(CV_REQUEST_PATH, createCVCoherence(windowAdapter));
+        coherences.put(NPMI_REQUEST_PATH, createNPMICoherence(windowAdapter));
+        coherences.put(UCI_REQUEST_PATH, createUCICoherence(windowAdapter));
         coherences.put(UMASS_REQUEST_PATH, createUMassCoherence(corpusAdapter));
         return coherences;
     }
 
+    public static WindowSupportingAdapter createPositionsCachingAdapter(WindowSupportingAdapter corpusAdapter) {
+        long cacheSize = PositionsCachingAdapterDecorator.DEFAULT_BYTE_BUDGET;
+        try {
+            cacheSize = PalmettoConfiguration.getInstance().getLong(POSITIONS_CACHE_SIZE_PROPERTY_KEY);
+        } catch (Exception e) {
+            LOGGER.warn("Couldn't load \"{}\" from properties. Using default cache size={}.",
+                    POSITIONS_CACHE_SIZE_PROPERTY_KEY, PositionsCachingAdapterDecorator.DEFAULT_BYTE_BUDGET);
+        }
+        if (cacheSize > 0) {
+            return new PositionsCachingAdapterDecorator(corpusAdapter, cacheSize);
+        } else {
+            return corpusAdapter;
+        }
+    }
+
     public static Coherence createCACoherence(WindowSupportingAdapter corpusAdapter) {
         int windowSize = CA_DEFAULT_WINDOW_SIZE;
         try {
@@ -192,9 +237,90 @@ public class RootConfig {
     }
 
     public static Coherence createUMassCoherence(CorpusAdapter corpusAdapter) {
-        return new DirectConfirmationBasedCoherence(new OnePreceding(),
-                BooleanDocumentProbabilitySupplier.create(corpusAdapter, "bd", true),
+        CorpusAdapter indexAdapter = corpusAdapter;
+        ResidentDocumentSets residentSets = loadResidentDocumentSets(corpusAdapter);
+        if (corpusAdapter instanceof BooleanDocumentSupportingAdapter) {
+            long cacheSize = PostingListCachingAdapterDecorator.DEFAULT_BYTE_BUDGET;
+            try {
+                cacheSize = PalmettoConfiguration.getInstance().getLong(UMASS_CACHE_SIZE_PROPERTY_KEY);
+            } catch (Exception e) {
+                LOGGER.warn("Couldn't load \"{}\" from properties. Using default cache size={}.",
+                        UMASS_CACHE_SIZE_PROPERTY_KEY, PostingListCachingAdapterDecorator.DEFAULT_BYTE_BUDGET);
+            }
+            if (cacheSize > 0) {
+                corpusAdapter = new PostingListCachingAdapterDecorator((BooleanDocumentSupportingAdapter) corpusAdapter,
+                        cacheSize);
+            }
+        }
+        BooleanDocumentProbabilitySupplier probSupplier;
+        if (residentSets != null) {
+            probSupplier = BooleanDocumentProbabilitySupplier.create((BooleanDocumentSupportingAdapter) corpusAdapter,
+                    "bd", residentSets);
+            // the resident sets are only loaded from Lucene adapters
+            reloadResidentSetsOnReopen((LuceneCorpusAdapter) indexAdapter,
+                    (HybridBooleanDocumentFrequencyDeterminer) probSupplier.getFrequencyDeterminer());
+        } else {
+            probSupplier = BooleanDocumentProbabilitySupplier.create(corpusAdapter, "bd", true);
+        }
+        return new DirectConfirmationBasedCoherence(new OnePreceding(), probSupplier,
                 new LogCondProbConfirmationMeasure(), new ArithmeticMean());
     }
 
+    /**
+     * Registers a listener at the given adapter that replaces the resident
+     * document sets of the given determiner every time the adapter has been
+     * reopened since the sets contain the document ids of the former version
+     * of the index. If the sets couldn't be loaded again, the determiner gets
+     * empty sets, i.e., it requests the documents of all words from the
+     * adapter.
+     */
+    public static void reloadResidentSetsOnReopen(LuceneCorpusAdapter corpusAdapter,
+            final HybridBooleanDocumentFrequencyDeterminer determiner) {
+        corpusAdapter.addReopenListener(new ReopenListener() {
+            @Override
+            public void onReopen(LuceneCorpusAdapter adapter) {
+                ResidentDocumentSets residentSets = loadResidentDocumentSets(adapter);
+                if (residentSets == null) {
+                    residentSets = ResidentDocumentSets.create(adapter, new String[0], new int[0],
+                            adapter.getMaxDoc(), 0, 0);
+                }
+                determiner.setResidentSets(residentSets);
+            }
+        });
+    }
+
+    /**
+     * Loads the document sets of the most frequent words of the given Lucene
+     * adapter into memory. Returns null if the adapter is not a Lucene adapter,
+     * if the configured size is 0 or if the sets couldn't be loaded.
+     */
+    public static ResidentDocumentSets loadResidentDocumentSets(CorpusAdapter corpusAdapter) {
+        if (!(corpusAdapter instanceof LuceneCorpusAdapter)) {
+            return null;
+        }
+        long residentSetsSize = 0;
+        try {
+            residentSetsSize = PalmettoConfiguration.getInstance().getLong(UMASS_RESIDENT_SETS_SIZE_PROPERTY_KEY);
+        } catch (Exception e) {
+            LOGGER.warn("Couldn't load \"{}\" from properties. The document sets of frequent words won't be resident.",
+                    UMASS_RESIDENT_SETS_SIZE_PROPERTY_KEY);
+        }
+        if (residentSetsSize <= 0) {
+            return null;
+        }
+        int denseWords = ResidentDocumentSets.DEFAULT_NUMBER_OF_DENSE_WORDS;
+        try {
+            denseWords = PalmettoConfiguration.getInstance().getInt(UMASS_DENSE_WORDS_PROPERTY_KEY);
+        } catch (Exception e) {
+            LOGGER.warn("Couldn't load \"{}\" from properties. Using default number of dense words={}.",
+                    UMASS_DENSE_WORDS_PROPERTY_KEY, ResidentDocumentSets.DEFAULT_NUMBER_OF_DENSE_WORDS);
+        }
+        try {
+            return ((LuceneCorpusAdapter) corpusAdapter).loadResidentDocumentSets(denseWords, residentSetsSize);
+        } catch (IOException e) {
+            LOGGER.error("Couldn't load the document sets of frequent words. They won't be resident.", e);
+            return null;
+        }
+    }
+
 }
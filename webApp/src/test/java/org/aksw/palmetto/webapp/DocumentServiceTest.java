@@ -0,0 +1,240 @@
+/**
+ * This file is part of Palmetto.
+ *
+ * Palmetto is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Palmetto is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Palmetto.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.aksw.palmetto.webapp;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.aksw.palmetto.Palmetto;
+import org.aksw.palmetto.corpus.lucene.WindowSupportingLuceneCorpusAdapter;
+import org.aksw.palmetto.corpus.lucene.creation.IndexableDocument;
+import org.aksw.palmetto.corpus.lucene.creation.PositionStoringLuceneIndexCreator;
+import org.aksw.palmetto.corpus.remote.DocumentListCodec;
+import org.aksw.palmetto.corpus.remote.RemoteCorpusAdapter;
+import org.aksw.palmetto.data.CountedSubsets;
+import org.aksw.palmetto.data.SegmentationDefinition;
+import org.aksw.palmetto.prob.bd.ListBasedBooleanDocumentFrequencyDeterminer;
+import org.aksw.palmetto.subsets.OnePreceding;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Tests the document services of the {@link PalmettoApplication} using a small
+ * index. The services are called directly and through an in-process server
+ * that hands the requests of a {@link RemoteCorpusAdapter} to the controller.
+ * The document d contains the word "wn" if d is a multiple of n.
+ *
+ * @author Michael R&ouml;der (roeder@informatik.uni-leipzig.de)
+ *
+ */
+public class DocumentServiceTest {
+
+    private static final int NUMBER_OF_DOCUMENTS = 1000;
+    private static final int NUMBER_OF_WORDS = 20;
+
+    private File indexDir;
+    private WindowSupportingLuceneCorpusAdapter luceneAdapter;
+    private PalmettoApplication controller;
+    private HttpServer server;
+    private String serviceUrl;
+
+    @Before
+    public void prepare() throws Exception {
+        indexDir = new File(FileUtils.getTempDirectoryPath() + File.separator + "temp_index"
+                + Long.toString(System.nanoTime()));
+        Assert.assertTrue(indexDir.mkdir());
+        List<IndexableDocument> documents = new ArrayList<IndexableDocument>(NUMBER_OF_DOCUMENTS);
+        StringBuilder builder = new StringBuilder();
+        int length;
+        for (int d = 0; d < NUMBER_OF_DOCUMENTS; ++d) {
+            builder.delete(0, builder.length());
+            length = 0;
+            for (int n = 1; n <= NUMBER_OF_WORDS; ++n) {
+                if ((d % n) == 0) {
+                    builder.append(" w");
+                    builder.append(n);
+                    ++length;
+                }
+            }
+            documents.add(new IndexableDocument(builder.toString().trim(), length));
+        }
+        PositionStoringLuceneIndexCreator creator = new PositionStoringLuceneIndexCreator(
+                Palmetto.DEFAULT_TEXT_INDEX_FIELD_NAME, Palmetto.DEFAULT_DOCUMENT_LENGTH_INDEX_FIELD_NAME);
+        Assert.assertTrue(creator.createIndex(indexDir, documents.iterator()));
+        luceneAdapter = WindowSupportingLuceneCorpusAdapter.create(indexDir.getAbsolutePath(),
+                Palmetto.DEFAULT_TEXT_INDEX_FIELD_NAME, Palmetto.DEFAULT_DOCUMENT_LENGTH_INDEX_FIELD_NAME);
+        controller = new PalmettoApplication();
+        controller.luceneAdapter = luceneAdapter;
+        startServer();
+    }
+
+    /**
+     * Starts a server that hands the requests to the controller.
+     */
+    private void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/service/" + DocumentListCodec.DOCUMENTS_SERVICE_PATH, new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                String body = IOUtils.toString(exchange.getRequestBody(), "UTF-8");
+                sendResponse(exchange, controller.requestDocFreq(URLDecoder.decode(
+                        body.substring(DocumentListCodec.WORDS_PARAMETER_NAME.length() + 1), "UTF-8")));
+            }
+        });
+        server.createContext("/service/" + DocumentListCodec.NUMBER_OF_DOCUMENTS_SERVICE_PATH, new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                sendResponse(exchange, controller.requestNumberOfDocuments());
+            }
+        });
+        server.createContext("/service/" + DocumentListCodec.CORPUS_VERSION_SERVICE_PATH, new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                sendResponse(exchange, controller.requestCorpusVersion());
+            }
+        });
+        server.start();
+        serviceUrl = "http://localhost:" + server.getAddress().getPort() + "/service";
+    }
+
+    @After
+    public void cleanUp() {
+        if (server != null) {
+            server.stop(0);
+        }
+        if (luceneAdapter != null) {
+            luceneAdapter.close();
+        }
+        String indexPath = indexDir.getAbsolutePath();
+        FileUtils.deleteQuietly(indexDir);
+        FileUtils.deleteQuietly(new File(indexPath + WindowSupportingLuceneCorpusAdapter.STATISTICS_FILE_SUFFIX));
+        FileUtils.deleteQuietly(new File(indexPath + WindowSupportingLuceneCorpusAdapter.TERM_WINDOW_COUNTS_FILE_SUFFIX));
+        FileUtils.deleteQuietly(new File(indexPath + WindowSupportingLuceneCorpusAdapter.DOC_LENGTH_FILE_SUFFIX));
+        FileUtils.deleteQuietly(new File(indexPath + WindowSupportingLuceneCorpusAdapter.HISTOGRAM_FILE_SUFFIX));
+    }
+
+    @Test
+    public void testRequestDocFreq() throws Exception {
+        ResponseEntity<byte[]> response = controller.requestDocFreq("w2 unknown w5");
+        Assert.assertEquals(HttpStatus.OK, response.getStatusCode());
+        IntArrayList documents[] = DocumentListCodec.decode(new ByteArrayInputStream(response.getBody()), 3);
+        Assert.assertArrayEquals(getDocuments(2), documents[0].toArray());
+        Assert.assertEquals(0, documents[1].size());
+        Assert.assertArrayEquals(getDocuments(5), documents[2].toArray());
+    }
+
+    /**
+     * Empty words have to get their own (empty) list. Otherwise, the lists of
+     * the response would be assigned to the wrong words or the response would
+     * end too early.
+     */
+    @Test
+    public void testEmptyWords() throws Exception {
+        String requests[] = new String[] { "w2 ", "w2  w3", " w3", "w2 w3  " };
+        int expectedLists[][][] = new int[][][] { { getDocuments(2), {} },
+                { getDocuments(2), {}, getDocuments(3) }, { {}, getDocuments(3) },
+                { getDocuments(2), getDocuments(3), {}, {} } };
+        ResponseEntity<byte[]> response;
+        IntArrayList documents[];
+        for (int i = 0; i < requests.length; ++i) {
+            response = controller.requestDocFreq(requests[i]);
+            Assert.assertEquals(4 * (expectedLists[i].length + countDocuments(expectedLists[i])),
+                    response.getBody().length);
+            documents = DocumentListCodec.decode(new ByteArrayInputStream(response.getBody()),
+                    expectedLists[i].length);
+            for (int j = 0; j < documents.length; ++j) {
+                Assert.assertArrayEquals(expectedLists[i][j], documents[j].toArray());
+            }
+        }
+    }
+
+    @Test
+    public void testRemoteCorpusAdapter() {
+        RemoteCorpusAdapter remoteAdapter = new RemoteCorpusAdapter(serviceUrl);
+        // check the version of the service before every request
+        remoteAdapter.setVersionCheckInterval(0);
+        try {
+            Assert.assertEquals(NUMBER_OF_DOCUMENTS, remoteAdapter.getNumberOfDocuments());
+            long version = remoteAdapter.getCorpusVersion();
+            // the empty word is the last word of the second word set
+            String wordsets[][] = new String[][] { { "w2", "w3", "w5", "w7" }, { "w3", "w4", "unknown", "" } };
+            SegmentationDefinition definitions[] = new SegmentationDefinition[wordsets.length];
+            for (int i = 0; i < definitions.length; ++i) {
+                definitions[i] = (new OnePreceding()).getSubsetDefinition(wordsets[i].length);
+            }
+            CountedSubsets expected[] = (new ListBasedBooleanDocumentFrequencyDeterminer(luceneAdapter))
+                    .determineCounts(wordsets, definitions);
+            CountedSubsets counts[] = (new ListBasedBooleanDocumentFrequencyDeterminer(remoteAdapter))
+                    .determineCounts(wordsets, definitions);
+            for (int i = 0; i < expected.length; ++i) {
+                Assert.assertArrayEquals(expected[i].counts, counts[i].counts);
+            }
+            // the version offered by the controller did not change, i.e., the cache has not been discarded
+            Assert.assertEquals(version, remoteAdapter.getCorpusVersion());
+        } finally {
+            remoteAdapter.close();
+        }
+    }
+
+    private static int[] getDocuments(int n) {
+        IntArrayList documents = new IntArrayList();
+        for (int d = 0; d < NUMBER_OF_DOCUMENTS; d += n) {
+            documents.add(d);
+        }
+        return documents.toArray();
+    }
+
+    private static int countDocuments(int lists[][]) {
+        int count = 0;
+        for (int i = 0; i < lists.length; ++i) {
+            count += lists[i].length;
+        }
+        return count;
+    }
+
+    private static void sendResponse(HttpExchange exchange, ResponseEntity<?> response) throws IOException {
+        byte body[];
+        if (response.getBody() instanceof byte[]) {
+            body = (byte[]) response.getBody();
+        } else if (response.getBody() != null) {
+            body = response.getBody().toString().getBytes("UTF-8");
+        } else {
+            body = new byte[0];
+        }
+        exchange.sendResponseHeaders(response.getStatusCode().value(), (body.length > 0) ? body.length : -1);
+        OutputStream out = exchange.getResponseBody();
+        out.write(body);
+        out.close();
+    }
+}